@@ -0,0 +1,277 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2020 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Executor;
+
+import net.evonit.thumbnailator2.tasks.io.BufferedImageSink;
+import net.evonit.thumbnailator2.tasks.io.Cancellation;
+import net.evonit.thumbnailator2.tasks.io.ImageSource;
+
+/**
+ * An {@link Iterator} of thumbnails which creates the next thumbnails on
+ * an executor while the caller handles the current one.
+ * <p>
+ * The thumbnails are created one at a time, in the order of the source
+ * images. No more thumbnails are held ahead than the prefetch depth, and
+ * no further thumbnail is started once the thumbnails held ahead and one
+ * more of the size of the last one would exceed the byte limit. At least
+ * one thumbnail is always created ahead.
+ * <p>
+ * No thread waits for the caller: a thumbnail is only started when there
+ * is room for it, so an iterator which is abandoned stops by itself once
+ * the thumbnail in progress is done. {@link #close()} stops it at once,
+ * aborting the thumbnail in progress.
+ * 
+ * @param <T>		The type of the source images.
+ * @author coobird
+ *
+ */
+final class PrefetchingIterator<T> implements Iterator<BufferedImage>, Closeable {
+	private final ThumbnailPlan plan;
+	private final Iterator<? extends ImageSource<T>> sources;
+	private final Executor executor;
+	private final int depth;
+	private final long maxBytes;
+	private final Cancellation cancellation = new Cancellation();
+	
+	/*
+	 * The following fields are guarded by this iterator.
+	 */
+	private final Deque<ThumbnailResult<T>> ready = new ArrayDeque<ThumbnailResult<T>>();
+	private long readyBytes;
+	private long lastBytes;
+	private int nextIndex;
+	private boolean producing;
+	private boolean exhausted;
+	private boolean closed;
+	
+	/**
+	 * Creates an iterator, which starts creating thumbnails at once.
+	 * 
+	 * @param plan			The plan to create the thumbnails with.
+	 * @param sources		The source images.
+	 * @param executor		The executor to create the thumbnails on.
+	 * @param depth			The maximum number of thumbnails held ahead.
+	 * @param maxBytes		The maximum number of bytes of pixel data of the
+	 * 						thumbnails held ahead.
+	 */
+	PrefetchingIterator(ThumbnailPlan plan, Iterator<? extends ImageSource<T>> sources, Executor executor, int depth, long maxBytes) {
+		this.plan = plan;
+		this.sources = sources;
+		this.executor = executor;
+		this.depth = depth;
+		this.maxBytes = maxBytes;
+		
+		schedule();
+	}
+	
+	public boolean hasNext() {
+		synchronized (this) {
+			awaitProduction();
+			if (!ready.isEmpty()) {
+				return true;
+			}
+			if (exhausted || closed) {
+				return false;
+			}
+			producing = true;
+		}
+		
+		// The executor has not run the next thumbnail, so it is created
+		// on the calling thread.
+		produce();
+		
+		synchronized (this) {
+			return !ready.isEmpty();
+		}
+	}
+	
+	public BufferedImage next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		
+		ThumbnailResult<T> result;
+		synchronized (this) {
+			result = ready.poll();
+			readyBytes -= sizeOf(result.getThumbnail());
+		}
+		schedule();
+		
+		Throwable failure = result.getFailure();
+		if (failure == null) {
+			return result.getThumbnail();
+		} else if (failure instanceof IOException) {
+			return null;
+		} else if (failure instanceof RuntimeException) {
+			throw (RuntimeException)failure;
+		} else if (failure instanceof Error) {
+			throw (Error)failure;
+		}
+		throw new IllegalStateException(failure);
+	}
+	
+	public void remove() {
+		throw new UnsupportedOperationException(
+				"Cannot remove elements from this iterator."
+		);
+	}
+	
+	/**
+	 * Stops creating thumbnails. The thumbnail in progress is aborted, and
+	 * the thumbnails held ahead are released.
+	 */
+	public void close() {
+		synchronized (this) {
+			closed = true;
+			ready.clear();
+			readyBytes = 0;
+			notifyAll();
+		}
+		cancellation.cancel();
+	}
+	
+	/**
+	 * Waits while a thumbnail is being created and none is ready.
+	 */
+	private void awaitProduction() {
+		boolean interrupted = false;
+		while (ready.isEmpty() && producing) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Starts the next thumbnail on the executor, if there is room for it.
+	 */
+	private void schedule() {
+		synchronized (this) {
+			if (producing || exhausted || closed || !hasRoom()) {
+				return;
+			}
+			producing = true;
+		}
+		
+		try {
+			executor.execute(new Runnable() {
+				public void run() {
+					produce();
+				}
+			});
+		} catch (RuntimeException e) {
+			// The executor rejected the thumbnail, which will be created
+			// when the caller asks for it.
+			synchronized (this) {
+				producing = false;
+				notifyAll();
+			}
+		}
+	}
+	
+	private boolean hasRoom() {
+		return ready.isEmpty() ||
+				(ready.size() < depth && readyBytes + lastBytes <= maxBytes);
+	}
+	
+	/**
+	 * Creates the next thumbnail. Only called by the thread which set
+	 * {@link #producing}.
+	 */
+	private void produce() {
+		ThumbnailResult<T> result = null;
+		try {
+			synchronized (this) {
+				if (closed) {
+					return;
+				}
+			}
+			
+			if (!sources.hasNext()) {
+				synchronized (this) {
+					exhausted = true;
+				}
+				return;
+			}
+			int index = nextIndex++;
+			ImageSource<T> source = sources.next();
+			
+			BufferedImageSink destination = new BufferedImageSink();
+			Cancellation previous = Cancellation.setThreadCancellation(cancellation);
+			try {
+				plan.apply(source, destination);
+				result = ThumbnailResult.of(index, source, destination.getSink());
+			} finally {
+				Cancellation.setThreadCancellation(previous);
+			}
+			
+		} catch (Throwable t) {
+			result = ThumbnailResult.failed(nextIndex - 1, null, t);
+			
+		} finally {
+			synchronized (this) {
+				producing = false;
+				if (result != null && !closed) {
+					long size = sizeOf(result.getThumbnail());
+					ready.add(result);
+					readyBytes += size;
+					if (size > 0) {
+						lastBytes = size;
+					}
+				}
+				notifyAll();
+			}
+		}
+		
+		schedule();
+	}
+	
+	/**
+	 * Returns the number of bytes used by the pixel data of a thumbnail.
+	 */
+	private static long sizeOf(BufferedImage img) {
+		if (img == null) {
+			return 0;
+		}
+		DataBuffer db = img.getRaster().getDataBuffer();
+		return (long)db.getSize() * db.getNumBanks()
+				* DataBuffer.getDataTypeSize(db.getDataType()) / 8;
+	}
+}
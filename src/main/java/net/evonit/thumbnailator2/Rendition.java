@@ -0,0 +1,206 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2020 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2;
+
+import java.io.File;
+import java.io.OutputStream;
+
+import net.evonit.thumbnailator2.tasks.io.ImageSink;
+
+/**
+ * One of several thumbnails of different sizes which are created from a
+ * single source image by {@link Thumbnails.Builder#toRenditions(java.util.List)}.
+ * <p>
+ * A rendition has the size the thumbnail should fit in, a destination, and
+ * optionally an output format and output quality which take precedence
+ * over those given to the builder.
+ * <p>
+ * Usage:
+ * <pre>
+Thumbnails.of(new File("original.jpg"))
+    .toRenditions(Arrays.asList(
+        new Rendition(1600, 1600, new File("large.jpg")),
+        new Rendition(400, 400, new File("small.jpg")).outputQuality(0.8f),
+        new Rendition(100, 100, new File("tiny.png")).outputFormat("png")
+    ));
+ * </pre>
+ *
+ * @author coobird
+ *
+ */
+public final class Rendition {
+	private final int width;
+	private final int height;
+	private final Object destination;
+	private String outputFormat;
+	private float outputQuality = ThumbnailParameter.DEFAULT_QUALITY;
+
+	private Rendition(int width, int height, Object destination) {
+		if (width <= 0 || height <= 0) {
+			throw new IllegalArgumentException(
+					"Width and height must be greater than zero."
+			);
+		}
+		if (destination == null) {
+			throw new NullPointerException("Destination cannot be null.");
+		}
+		this.width = width;
+		this.height = height;
+		this.destination = destination;
+	}
+
+	/**
+	 * Creates a rendition which is written to a file.
+	 *
+	 * @param width			The width the thumbnail should fit in.
+	 * @param height		The height the thumbnail should fit in.
+	 * @param destination	The file to write the thumbnail to.
+	 * @throws IllegalArgumentException	If the width or height is less than
+	 * 									or equal to zero.
+	 * @throws NullPointerException		If the destination is {@code null}.
+	 */
+	public Rendition(int width, int height, File destination) {
+		this(width, height, (Object)destination);
+	}
+
+	/**
+	 * Creates a rendition which is written to an {@link OutputStream}.
+	 * The stream is not closed after the thumbnail has been written.
+	 *
+	 * @param width			The width the thumbnail should fit in.
+	 * @param height		The height the thumbnail should fit in.
+	 * @param destination	The stream to write the thumbnail to.
+	 * @throws IllegalArgumentException	If the width or height is less than
+	 * 									or equal to zero.
+	 * @throws NullPointerException		If the destination is {@code null}.
+	 */
+	public Rendition(int width, int height, OutputStream destination) {
+		this(width, height, (Object)destination);
+	}
+
+	/**
+	 * Creates a rendition which is written to an {@link ImageSink}.
+	 *
+	 * @param width			The width the thumbnail should fit in.
+	 * @param height		The height the thumbnail should fit in.
+	 * @param destination	The sink to write the thumbnail to.
+	 * @throws IllegalArgumentException	If the width or height is less than
+	 * 									or equal to zero.
+	 * @throws NullPointerException		If the destination is {@code null}.
+	 */
+	public Rendition(int width, int height, ImageSink<?> destination) {
+		this(width, height, (Object)destination);
+	}
+
+	/**
+	 * Sets the output format of this rendition, in place of the output
+	 * format given to the builder.
+	 *
+	 * @param format		The output format, such as {@code png}.
+	 * @return				This rendition.
+	 */
+	public Rendition outputFormat(String format) {
+		if (format == null) {
+			throw new NullPointerException("Output format cannot be null.");
+		}
+		this.outputFormat = format;
+		return this;
+	}
+
+	/**
+	 * Sets the output quality of this rendition, in place of the output
+	 * quality given to the builder.
+	 *
+	 * @param quality		The output quality, between {@code 0.0f} and
+	 * 						{@code 1.0f}.
+	 * @return				This rendition.
+	 * @throws IllegalArgumentException	If the quality is out of range.
+	 */
+	public Rendition outputQuality(float quality) {
+		if (quality < 0.0f || quality > 1.0f) {
+			throw new IllegalArgumentException(
+					"The quality setting must be in the range 0.0f and " +
+					"1.0f, inclusive."
+			);
+		}
+		this.outputQuality = quality;
+		return this;
+	}
+
+	/**
+	 * Returns the width the thumbnail should fit in.
+	 *
+	 * @return				The width.
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Returns the height the thumbnail should fit in.
+	 *
+	 * @return				The height.
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Returns the destination of the thumbnail, which is a {@link File},
+	 * an {@link OutputStream} or an {@link ImageSink}.
+	 *
+	 * @return				The destination.
+	 */
+	public Object getDestination() {
+		return destination;
+	}
+
+	/**
+	 * Returns the output format of this rendition.
+	 *
+	 * @return				The output format, or {@code null} if the output
+	 * 						format given to the builder is used.
+	 */
+	public String getOutputFormat() {
+		return outputFormat;
+	}
+
+	/**
+	 * Returns the output quality of this rendition.
+	 *
+	 * @return				The output quality, or
+	 * 						{@link ThumbnailParameter#DEFAULT_QUALITY} if the
+	 * 						output quality given to the builder is used.
+	 */
+	public float getOutputQuality() {
+		return outputQuality;
+	}
+
+	@Override
+	public String toString() {
+		return "Rendition [width=" + width + ", height=" + height
+				+ ", destination=" + destination + "]";
+	}
+}
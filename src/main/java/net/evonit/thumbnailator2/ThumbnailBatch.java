@@ -0,0 +1,289 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2020 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+import net.evonit.thumbnailator2.tasks.io.ImageSink;
+import net.evonit.thumbnailator2.tasks.io.ImageSource;
+
+/**
+ * Creates the thumbnails of a batch of source images, either one after the
+ * other on the calling thread, concurrently on an {@link Executor} or on
+ * a thread each, or in a {@link ThumbnailPipeline}.
+ * <p>
+ * Thumbnails are submitted in the order of their source images, so that
+ * anything which depends on that order, such as the names of the
+ * destination files, is decided on the calling thread before the
+ * thumbnails are created.
+ * <p>
+ * When the thumbnails are created concurrently, at most
+ * {@code parallelism} thumbnails are in progress at any time, and a
+ * failure is recorded against the position of its source image rather
+ * than stopping the batch.
+ * 
+ * @author coobird
+ *
+ */
+final class ThumbnailBatch {
+	/**
+	 * The executor on which thumbnails are created, or {@code null} to
+	 * create them on the calling thread.
+	 */
+	private final Executor executor;
+	
+	/**
+	 * An executor created by this batch, which is shut down by
+	 * {@link #close()}.
+	 */
+	private final ExecutorService ownedExecutor;
+	
+	/**
+	 * The pipeline in which thumbnails are created, or {@code null} to
+	 * create them on the executor.
+	 */
+	private final ThumbnailPipeline pipeline;
+	
+	/**
+	 * The maximum number of thumbnails in progress.
+	 */
+	private final int parallelism;
+	
+	/**
+	 * Permits for the thumbnails in progress.
+	 */
+	private final Semaphore permits;
+	
+	/**
+	 * Permits for resizing and writing thumbnails, or {@code null} if they
+	 * are not limited apart from the thumbnails in progress.
+	 */
+	private final Semaphore cpuPermits;
+	
+	/**
+	 * The failures, keyed by the position of the source image.
+	 */
+	private final SortedMap<Integer, Throwable> failures =
+			Collections.synchronizedSortedMap(new TreeMap<Integer, Throwable>());
+	
+	/**
+	 * The position of the next source image.
+	 */
+	private int index = 0;
+	
+	/**
+	 * Creates a batch.
+	 * 
+	 * @param executor		The executor on which thumbnails are created,
+	 * 						or {@code null} to create an executor when
+	 * 						{@code parallelism} is greater than 1.
+	 * @param parallelism	The maximum number of thumbnails in progress.
+	 * 						When this is 1 and no executor is given, the
+	 * 						thumbnails are created on the calling thread.
+	 */
+	ThumbnailBatch(Executor executor, int parallelism) {
+		if (executor == null && parallelism > 1) {
+			this.ownedExecutor = Executors.newFixedThreadPool(parallelism, new BatchThreadFactory());
+			this.executor = ownedExecutor;
+		} else {
+			this.ownedExecutor = null;
+			this.executor = executor;
+		}
+		this.pipeline = null;
+		this.parallelism = parallelism;
+		this.permits = new Semaphore(parallelism);
+		this.cpuPermits = null;
+	}
+	
+	/**
+	 * Creates a batch which creates each thumbnail on a new thread, and
+	 * limits the thumbnails which are resized and written at the same time
+	 * separately from those whose source images are being read.
+	 * <p>
+	 * This suits threads which are cheap to create, such as virtual
+	 * threads, and source images which are slow to arrive, such as those
+	 * from URLs: many source images can be waited for at once, while no
+	 * more thumbnails are resized than there are processors to do so.
+	 * 
+	 * @param threadFactory		The factory of the threads on which the
+	 * 							thumbnails are created.
+	 * @param parallelism		The maximum number of thumbnails in progress.
+	 * @param cpuParallelism	The maximum number of thumbnails which are
+	 * 							resized and written at the same time.
+	 */
+	ThumbnailBatch(final ThreadFactory threadFactory, int parallelism, int cpuParallelism) {
+		this.executor = new Executor() {
+			public void execute(Runnable command) {
+				threadFactory.newThread(command).start();
+			}
+		};
+		this.ownedExecutor = null;
+		this.pipeline = null;
+		this.parallelism = parallelism;
+		this.permits = new Semaphore(parallelism);
+		this.cpuPermits = new Semaphore(cpuParallelism);
+	}
+	
+	/**
+	 * Creates a batch whose thumbnails are created in a
+	 * {@link ThumbnailPipeline}.
+	 * 
+	 * @param pipeline		The pipeline in which thumbnails are created.
+	 * @param parallelism	The maximum number of thumbnails in progress.
+	 */
+	ThumbnailBatch(ThumbnailPipeline pipeline, int parallelism) {
+		this.executor = null;
+		this.ownedExecutor = null;
+		this.pipeline = pipeline;
+		this.parallelism = parallelism;
+		this.permits = new Semaphore(parallelism);
+		this.cpuPermits = null;
+	}
+	
+	/**
+	 * Creates a thumbnail of the next source image of this batch.
+	 * <p>
+	 * When the batch is processed on the calling thread, the thumbnail is
+	 * created before this method returns, and a failure is thrown by this
+	 * method. Otherwise, this method waits until fewer than
+	 * {@code parallelism} thumbnails are in progress, and returns once the
+	 * thumbnail has been handed to the executor.
+	 * 
+	 * @param plan			The plan used to create the thumbnail.
+	 * @param source		The source image.
+	 * @param destination	The destination of the thumbnail.
+	 * @param <S>			The type of the source.
+	 * @param <D>			The type of the destination.
+	 * @return				The position of the source image in this batch.
+	 * @throws IOException	If the thumbnail is created on the calling thread
+	 * 						and could not be created.
+	 */
+	<S, D> int submit(final ThumbnailPlan plan, final ImageSource<S> source, final ImageSink<D> destination) throws IOException {
+		final int position = index++;
+		
+		if (pipeline != null) {
+			permits.acquireUninterruptibly();
+			try {
+				pipeline.submit(plan, source, destination).whenComplete(new BiConsumer<Void, Throwable>() {
+					public void accept(Void result, Throwable t) {
+						if (t != null) {
+							failures.put(position, t);
+						}
+						permits.release();
+					}
+				});
+			} catch (RuntimeException e) {
+				// The pipeline has been closed.
+				permits.release();
+				failures.put(position, e);
+			}
+			return position;
+		}
+		
+		if (executor == null) {
+			plan.apply(source, destination);
+			return position;
+		}
+		
+		permits.acquireUninterruptibly();
+		try {
+			executor.execute(new Runnable() {
+				public void run() {
+					try {
+						plan.apply(source, destination, cpuPermits);
+					} catch (Throwable t) {
+						failures.put(position, t);
+					} finally {
+						permits.release();
+					}
+				}
+			});
+		} catch (RuntimeException e) {
+			// The executor rejected the thumbnail.
+			permits.release();
+			failures.put(position, e);
+		}
+		
+		return position;
+	}
+	
+	/**
+	 * Waits until all thumbnails of this batch have been created, and
+	 * returns the failures.
+	 * 
+	 * @return				The failures, keyed by the position of the
+	 * 						source image. Empty if all thumbnails were
+	 * 						created.
+	 */
+	SortedMap<Integer, Throwable> await() {
+		permits.acquireUninterruptibly(parallelism);
+		permits.release(parallelism);
+		
+		synchronized (failures) {
+			return new TreeMap<Integer, Throwable>(failures);
+		}
+	}
+	
+	/**
+	 * Waits until the thumbnails in progress have been created, and
+	 * releases the threads created by this batch, if any.
+	 */
+	void close() {
+		permits.acquireUninterruptibly(parallelism);
+		permits.release(parallelism);
+		
+		if (ownedExecutor != null) {
+			ownedExecutor.shutdown();
+		}
+	}
+	
+	/**
+	 * Creates the daemon threads of the executors created by batches.
+	 */
+	private static final class BatchThreadFactory implements ThreadFactory {
+		private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
+		private final int poolNumber = POOL_NUMBER.incrementAndGet();
+		private final AtomicInteger threadNumber = new AtomicInteger();
+		
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(
+					r,
+					"thumbnailator-batch-" + poolNumber + "-" + threadNumber.incrementAndGet()
+			);
+			t.setDaemon(true);
+			return t;
+		}
+	}
+}
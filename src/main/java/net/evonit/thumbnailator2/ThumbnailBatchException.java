@@ -0,0 +1,93 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2020 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * An exception used to indicate that some of the thumbnails of a batch could
+ * not be created, when the batch is processed concurrently.
+ * <p>
+ * When thumbnails are created concurrently, a failure does not stop the
+ * other thumbnails of the batch from being created. The failures are
+ * collected, and thrown as this exception once the whole batch has been
+ * processed. Each failure is given with the position of its source image
+ * among the source images of the batch.
+ * 
+ * @author coobird
+ *
+ * @see Thumbnails.Builder#parallelism(int)
+ */
+public class ThumbnailBatchException extends IOException {
+	/**
+	 * An ID used for serialization.
+	 */
+	private static final long serialVersionUID = -3571240876520315784L;
+	
+	/**
+	 * The failures, keyed by the position of the source image.
+	 */
+	private final SortedMap<Integer, Throwable> failures;
+	
+	/**
+	 * Instantiates a {@link ThumbnailBatchException} with the failures of
+	 * a batch. The first failure becomes the cause of this exception.
+	 * 
+	 * @param failures		The failures, keyed by the position of the
+	 * 						source image which could not be processed.
+	 * @throws IllegalArgumentException	If no failures are given.
+	 */
+	public ThumbnailBatchException(Map<Integer, ? extends Throwable> failures) {
+		super(message(failures));
+		this.failures = Collections.unmodifiableSortedMap(
+				new TreeMap<Integer, Throwable>(failures)
+		);
+		initCause(this.failures.get(this.failures.firstKey()));
+	}
+	
+	private static String message(Map<Integer, ? extends Throwable> failures) {
+		if (failures == null || failures.isEmpty()) {
+			throw new IllegalArgumentException("No failures given.");
+		}
+		int first = Collections.min(failures.keySet());
+		return failures.size() + " thumbnail(s) could not be created. " +
+				"First failure at source " + first + ": " + failures.get(first);
+	}
+	
+	/**
+	 * Returns the failures of the batch, keyed by the position of the
+	 * source image which could not be processed, in the order of the
+	 * source images.
+	 * 
+	 * @return			The failures of the batch.
+	 */
+	public SortedMap<Integer, Throwable> getFailures() {
+		return failures;
+	}
+}
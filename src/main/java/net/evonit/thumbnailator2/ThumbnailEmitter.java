@@ -0,0 +1,324 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2020 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import net.evonit.thumbnailator2.tasks.io.BufferedImageSink;
+import net.evonit.thumbnailator2.tasks.io.Cancellation;
+import net.evonit.thumbnailator2.tasks.io.ImageSource;
+
+/**
+ * Creates thumbnails as they are requested by a consumer, and delivers
+ * them as {@link ThumbnailResult}s in the order in which they are created.
+ * <p>
+ * No more thumbnails are created ahead than the consumer has requested and
+ * not yet received, and no more than the parallelism are created at once.
+ * A slow consumer therefore holds back the reading of the source images,
+ * rather than collecting thumbnails in the heap.
+ * <p>
+ * The results are delivered to a {@link Receiver} one at a time, either
+ * on the thread which requested them or on a thread of the executor, which
+ * follows the rules for signalling subscribers of the Reactive Streams
+ * specification.
+ * 
+ * @param <T>		The type of the source images.
+ * @author coobird
+ *
+ */
+final class ThumbnailEmitter<T> {
+	/**
+	 * Receives the results of a {@link ThumbnailEmitter}. The methods are
+	 * never called concurrently.
+	 * 
+	 * @param <T>		The type of the source images.
+	 */
+	interface Receiver<T> {
+		/**
+		 * Receives the result of one source image.
+		 */
+		void onNext(ThumbnailResult<T> result);
+		
+		/**
+		 * Called when the source images could not be obtained, or when
+		 * a request was not valid. No more results are delivered.
+		 */
+		void onError(Throwable t);
+		
+		/**
+		 * Called once the results of all source images have been
+		 * delivered.
+		 */
+		void onComplete();
+	}
+	
+	private final ThumbnailPlan plan;
+	private final Iterator<? extends ImageSource<T>> sources;
+	private final Executor executor;
+	private final int parallelism;
+	private final Receiver<T> receiver;
+	
+	/**
+	 * Aborts the thumbnails which are being created when the emitter is
+	 * cancelled.
+	 */
+	private final Cancellation cancellation = new Cancellation();
+	
+	/*
+	 * The following fields are guarded by this emitter.
+	 */
+	private final Deque<ThumbnailResult<T>> ready = new ArrayDeque<ThumbnailResult<T>>();
+	private long requested;
+	private int inFlight;
+	private int nextIndex;
+	private boolean draining;
+	private boolean terminated;
+	private Throwable invalidRequest;
+	
+	/**
+	 * Creates an emitter, which does nothing until {@link #start()} is
+	 * called.
+	 * 
+	 * @param plan			The plan to create the thumbnails with.
+	 * @param sources		The source images.
+	 * @param executor		The executor to create the thumbnails on.
+	 * @param parallelism	The maximum number of thumbnails which are
+	 * 						created at once.
+	 * @param receiver		The receiver of the results.
+	 */
+	ThumbnailEmitter(ThumbnailPlan plan, Iterator<? extends ImageSource<T>> sources, Executor executor, int parallelism, Receiver<T> receiver) {
+		this.plan = plan;
+		this.sources = sources;
+		this.executor = executor;
+		this.parallelism = parallelism;
+		this.receiver = receiver;
+	}
+	
+	/**
+	 * Starts the emitter. If there are no source images, the receiver is
+	 * completed without any results being requested.
+	 */
+	void start() {
+		drain();
+	}
+	
+	/**
+	 * Requests further results. Thumbnails are created up to the number of
+	 * results which have been requested and not yet delivered.
+	 * 
+	 * @param n			The number of further results, which is added to
+	 * 					the results not yet delivered. If it is not
+	 * 					positive, the receiver is sent an
+	 * 					{@link IllegalArgumentException}.
+	 */
+	void request(long n) {
+		synchronized (this) {
+			if (n <= 0) {
+				if (invalidRequest == null) {
+					invalidRequest = new IllegalArgumentException(
+							"The number of requested thumbnails must be positive: " + n
+					);
+				}
+			} else {
+				requested += n;
+				if (requested < 0) {
+					// Overflow, which means an unbounded number of results.
+					requested = Long.MAX_VALUE;
+				}
+			}
+		}
+		drain();
+	}
+	
+	/**
+	 * Stops the emitter. No more thumbnails are started, the thumbnails
+	 * which are being created are aborted, and no more results are
+	 * delivered.
+	 */
+	void cancel() {
+		synchronized (this) {
+			terminated = true;
+			ready.clear();
+		}
+		cancellation.cancel();
+	}
+	
+	/**
+	 * Delivers the results which are ready and requested, and starts the
+	 * thumbnails which fit in the window of requested results.
+	 * <p>
+	 * Only one thread drains at a time. A thread which finds another thread
+	 * draining leaves the work to it, as the draining thread examines the
+	 * state again before it stops.
+	 */
+	private void drain() {
+		synchronized (this) {
+			if (draining) {
+				return;
+			}
+			draining = true;
+		}
+		
+		try {
+			while (true) {
+				ThumbnailResult<T> result = null;
+				List<Job> jobs = new ArrayList<Job>();
+				Throwable error = null;
+				boolean complete = false;
+				
+				synchronized (this) {
+					if (terminated) {
+						draining = false;
+						return;
+					}
+					
+					if (invalidRequest != null) {
+						error = invalidRequest;
+						
+					} else if (!ready.isEmpty() && requested > 0) {
+						result = ready.poll();
+						if (requested != Long.MAX_VALUE) {
+							requested--;
+						}
+						
+					} else {
+						try {
+							while (inFlight < parallelism && inFlight + ready.size() < requested && sources.hasNext()) {
+								jobs.add(new Job(nextIndex++, sources.next()));
+								inFlight++;
+							}
+							complete = inFlight == 0 && ready.isEmpty() && !sources.hasNext();
+							
+						} catch (RuntimeException e) {
+							error = e;
+						}
+						
+						if (error == null && !complete && jobs.isEmpty()) {
+							// Stopping in the same block in which the state
+							// was examined, so that no change is missed.
+							draining = false;
+							return;
+						}
+					}
+					
+					if (error != null || complete) {
+						terminated = true;
+						ready.clear();
+					}
+				}
+				
+				if (result != null) {
+					receiver.onNext(result);
+				} else if (error != null) {
+					cancellation.cancel();
+					receiver.onError(error);
+					return;
+				} else if (complete) {
+					receiver.onComplete();
+					return;
+				} else {
+					for (Job job : jobs) {
+						job.start();
+					}
+				}
+			}
+			
+		} catch (RuntimeException e) {
+			synchronized (this) {
+				draining = false;
+			}
+			throw e;
+			
+		} catch (Error e) {
+			synchronized (this) {
+				draining = false;
+			}
+			throw e;
+		}
+	}
+	
+	/**
+	 * Makes a result available to the receiver.
+	 */
+	private void finished(ThumbnailResult<T> result) {
+		synchronized (this) {
+			inFlight--;
+			if (terminated) {
+				return;
+			}
+			ready.add(result);
+		}
+		drain();
+	}
+	
+	/**
+	 * The creation of the thumbnail of one source image.
+	 */
+	private final class Job implements Runnable {
+		private final int index;
+		private final ImageSource<T> source;
+		
+		private Job(int index, ImageSource<T> source) {
+			this.index = index;
+			this.source = source;
+		}
+		
+		private void start() {
+			try {
+				executor.execute(this);
+			} catch (RuntimeException e) {
+				// The executor rejected the thumbnail.
+				finished(ThumbnailResult.failed(index, source.getSource(), e));
+			}
+		}
+		
+		public void run() {
+			if (cancellation.isCancelled()) {
+				finished(null);
+				return;
+			}
+			
+			BufferedImageSink destination = new BufferedImageSink();
+			ThumbnailResult<T> result;
+			Cancellation previous = Cancellation.setThreadCancellation(cancellation);
+			try {
+				plan.apply(source, destination);
+				result = ThumbnailResult.of(index, source, destination.getSink());
+				
+			} catch (Throwable t) {
+				result = ThumbnailResult.failed(index, source.getSource(), t);
+				
+			} finally {
+				Cancellation.setThreadCancellation(previous);
+			}
+			finished(result);
+		}
+	}
+}
@@ -0,0 +1,53 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2020 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2;
+
+/**
+ * A listener which is told how long each stage of creating a thumbnail
+ * took, such as to record the timings of a service which creates
+ * thumbnails.
+ * <p>
+ * A listener is either registered for all thumbnails with
+ * {@link Thumbnailator#addListener(ThumbnailListener)}, or for the
+ * thumbnails of one builder with
+ * {@link Thumbnails.Builder#listener(ThumbnailListener)}. When no listener
+ * is registered, the stages are not timed.
+ * <p>
+ * The listener is called by the thread which performed the stage, right
+ * after the stage, so it should return quickly. It may be called by
+ * several threads at once. An exception thrown by the listener is ignored.
+ * 
+ * @author coobird
+ *
+ */
+public interface ThumbnailListener {
+	/**
+	 * Called when a stage of creating a thumbnail has completed, or has
+	 * failed.
+	 * 
+	 * @param event			The stage which has completed.
+	 */
+	public void stageCompleted(ThumbnailStageEvent event);
+}
@@ -334,6 +334,33 @@ public class ThumbnailParameter {
 		this.useExifOrientation = useExifOrientation;
 	}
 	
+	/**
+	 * Creates a copy of the given parameters.
+	 * <p>
+	 * The copy has its own list of image filters, so filters which are
+	 * added while a thumbnail is created, such as the filter for the Exif
+	 * orientation of the source image, do not affect the original.
+	 * 
+	 * @param param		The parameters to copy.
+	 */
+	ThumbnailParameter(ThumbnailParameter param) {
+		this(
+				param.thumbnailSize == null ? null : new Dimension(param.thumbnailSize),
+				param.widthScalingFactor,
+				param.heightScalingFactor,
+				param.sourceRegion,
+				param.keepAspectRatio,
+				param.outputFormat,
+				param.outputFormatType,
+				param.outputQuality,
+				param.imageType,
+				param.filters,
+				param.resizerFactory,
+				param.fitWithinDimensions,
+				param.useExifOrientation
+		);
+	}
+	
 	/**
 	 * Perform validations on the {@code thumbnailSize} field.
 	 */
@@ -840,6 +867,44 @@ public class ThumbnailParameter {
 	public double getHeightScalingFactor() {
 		return heightScalingFactor;
 	}
+	
+	/**
+	 * Returns a copy of these parameters whose scaling factors are
+	 * multiplied by the given factor.
+	 * <p>
+	 * This is used when the source image was read at a reduced resolution,
+	 * such as when it was subsampled, so that the thumbnail has the same
+	 * size as one made from the image at its full resolution.
+	 * 
+	 * @param factor	The factor to multiply the scaling factors by.
+	 * @return			The parameters with the multiplied scaling factors.
+	 * @throws IllegalStateException		If the thumbnail size is set
+	 * 										rather than the scaling factors.
+	 * @throws IllegalArgumentException		If the factor is not positive.
+	 */
+	ThumbnailParameter multiplyScalingFactors(double factor) {
+		if (thumbnailSize != null) {
+			throw new IllegalStateException("The thumbnail size is set rather than the scaling factors.");
+		}
+		if (!(factor > 0.0) || Double.isInfinite(factor)) {
+			throw new IllegalArgumentException("The factor must be positive.");
+		}
+		return new ThumbnailParameter(
+				null,
+				widthScalingFactor * factor,
+				heightScalingFactor * factor,
+				sourceRegion,
+				keepAspectRatio,
+				outputFormat,
+				outputFormatType,
+				outputQuality,
+				imageType,
+				filters,
+				resizerFactory,
+				fitWithinDimensions,
+				useExifOrientation
+		);
+	}
 
 	/**
 	 * Returns the type of image. The value returned is the constant used for
@@ -0,0 +1,527 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2020 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2;
+
+import java.io.Closeable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.evonit.thumbnailator2.builders.BufferedImageBuilder;
+import net.evonit.thumbnailator2.builders.ImageAllocator;
+import net.evonit.thumbnailator2.tasks.io.Cancellation;
+import net.evonit.thumbnailator2.tasks.io.ImageLimits;
+import net.evonit.thumbnailator2.tasks.io.ImageSink;
+import net.evonit.thumbnailator2.tasks.io.ImageSource;
+
+/**
+ * Creates thumbnails in three stages, each with its own threads: the
+ * source images are read by the decode stage, resized and filtered by the
+ * resize stage, and written by the encode stage.
+ * <p>
+ * Reading an image mostly waits for I/O and inflates compressed data,
+ * while resizing and encoding are bound by the processor. Running the
+ * stages on separate threads lets an image be read while others are
+ * resized and written, and lets the number of threads of each stage be
+ * chosen for its work, rather than running as many complete thumbnails
+ * at the same time as there are threads.
+ * <p>
+ * The stages are connected by queues of a fixed capacity. When a stage
+ * falls behind, its queue fills up and the stage before it waits, up to
+ * {@link #submit(ThumbnailPlan, ImageSource, ImageSink)}, which keeps the
+ * number of images in memory bounded. The queue depth and utilization of
+ * each stage are available from {@link #getDecodeStage()},
+ * {@link #getResizeStage()} and {@link #getEncodeStage()}, to find the
+ * stage which limits the throughput.
+ * <p>
+ * A pipeline can be shared, and is used for the thumbnails of a
+ * {@link Thumbnails.Builder} with {@link Thumbnails.Builder#pipeline(ThumbnailPipeline)}:
+ * <pre>
+ThumbnailPipeline pipeline = new ThumbnailPipeline(4, 2, 2, 8);
+
+Thumbnails.of(directory.listFiles())
+    .size(200, 200)
+    .pipeline(pipeline)
+    .toFiles(Rename.PREFIX_DOT_THUMBNAIL);
+
+pipeline.close();
+ * </pre>
+ * 
+ * @author coobird
+ *
+ */
+public final class ThumbnailPipeline implements Closeable {
+	/**
+	 * The statistics of one stage of a {@link ThumbnailPipeline}.
+	 */
+	public static final class Stage {
+		private final String name;
+		private final int threadCount;
+		private final BlockingQueue<Item> queue;
+		private final long startTime = System.nanoTime();
+		private final AtomicLong busyTime = new AtomicLong();
+		private final AtomicLong completedCount = new AtomicLong();
+		private final AtomicInteger activeCount = new AtomicInteger();
+		
+		private Stage(String name, int threadCount, int queueCapacity) {
+			this.name = name;
+			this.threadCount = threadCount;
+			this.queue = new ArrayBlockingQueue<Item>(queueCapacity);
+		}
+		
+		/**
+		 * Returns the name of this stage.
+		 * 
+		 * @return		The name of this stage.
+		 */
+		public String getName() {
+			return name;
+		}
+		
+		/**
+		 * Returns the number of threads of this stage.
+		 * 
+		 * @return		The number of threads.
+		 */
+		public int getThreadCount() {
+			return threadCount;
+		}
+		
+		/**
+		 * Returns the number of images waiting for this stage.
+		 * 
+		 * @return		The number of images in the queue of this stage.
+		 */
+		public int getQueueDepth() {
+			return queue.size();
+		}
+		
+		/**
+		 * Returns the number of images which can wait for this stage before
+		 * the stage before it has to wait.
+		 * 
+		 * @return		The capacity of the queue of this stage.
+		 */
+		public int getQueueCapacity() {
+			return queue.size() + queue.remainingCapacity();
+		}
+		
+		/**
+		 * Returns the number of images this stage is working on.
+		 * 
+		 * @return		The number of images in progress.
+		 */
+		public int getActiveCount() {
+			return activeCount.get();
+		}
+		
+		/**
+		 * Returns the number of images this stage has finished, whether or
+		 * not successfully.
+		 * 
+		 * @return		The number of images processed by this stage.
+		 */
+		public long getCompletedCount() {
+			return completedCount.get();
+		}
+		
+		/**
+		 * Returns the fraction of the time the threads of this stage have
+		 * been working since the pipeline was created, from {@code 0.0} for
+		 * threads which were always idle to {@code 1.0} for threads which
+		 * were always busy.
+		 * 
+		 * @return		The utilization of this stage.
+		 */
+		public double getUtilization() {
+			long elapsed = System.nanoTime() - startTime;
+			if (elapsed <= 0) {
+				return 0.0;
+			}
+			return Math.min(1.0, (double)busyTime.get() / ((double)elapsed * threadCount));
+		}
+		
+		@Override
+		public String toString() {
+			return String.format(
+					"%s[threads=%d, queue=%d/%d, active=%d, completed=%d, utilization=%.2f]",
+					name, threadCount, getQueueDepth(), getQueueCapacity(),
+					getActiveCount(), getCompletedCount(), getUtilization()
+			);
+		}
+	}
+	
+	/**
+	 * A thumbnail which passes through the stages.
+	 */
+	private static final class Item {
+		private final ThumbnailPlan plan;
+		private final ImageSource<?> source;
+		private final ImageSink<?> destination;
+		private final CompletableFuture<Void> future = new CompletableFuture<Void>();
+		private Thumbnailator.Work work;
+		
+		/**
+		 * The cancellation which times out the thumbnail, created when the
+		 * source image starts to be read, or {@code null}.
+		 */
+		private Cancellation cancellation;
+		
+		private Item(ThumbnailPlan plan, ImageSource<?> source, ImageSink<?> destination) {
+			this.plan = plan;
+			this.source = source;
+			this.destination = destination;
+		}
+	}
+	
+	private static final AtomicInteger PIPELINE_NUMBER = new AtomicInteger();
+	
+	/**
+	 * How long a thread waits for a queue before checking whether the
+	 * pipeline has been closed, in milliseconds.
+	 */
+	private static final long POLL_INTERVAL = 100;
+	
+	private final Stage decodeStage;
+	private final Stage resizeStage;
+	private final Stage encodeStage;
+	private volatile boolean closed;
+	
+	/**
+	 * Creates a pipeline, and starts the threads of its stages.
+	 * <p>
+	 * The threads are daemon threads, which are stopped by
+	 * {@link #close()}.
+	 * 
+	 * @param decodeThreads		The number of threads which read source
+	 * 							images.
+	 * @param resizeThreads		The number of threads which resize images
+	 * 							and apply the image filters.
+	 * @param encodeThreads		The number of threads which write
+	 * 							thumbnails.
+	 * @param queueCapacity		The number of images which can wait for
+	 * 							each stage.
+	 * @throws IllegalArgumentException	If any of the numbers is less
+	 * 									than 1.
+	 */
+	public ThumbnailPipeline(int decodeThreads, int resizeThreads, int encodeThreads, int queueCapacity) {
+		if (decodeThreads < 1 || resizeThreads < 1 || encodeThreads < 1) {
+			throw new IllegalArgumentException("Each stage must have at least 1 thread.");
+		}
+		if (queueCapacity < 1) {
+			throw new IllegalArgumentException("Queue capacity must be at least 1.");
+		}
+		
+		decodeStage = new Stage("decode", decodeThreads, queueCapacity);
+		resizeStage = new Stage("resize", resizeThreads, queueCapacity);
+		encodeStage = new Stage("encode", encodeThreads, queueCapacity);
+		
+		int pipelineNumber = PIPELINE_NUMBER.incrementAndGet();
+		startThreads(decodeStage, resizeStage, pipelineNumber);
+		startThreads(resizeStage, encodeStage, pipelineNumber);
+		startThreads(encodeStage, null, pipelineNumber);
+	}
+	
+	private void startThreads(final Stage stage, final Stage next, int pipelineNumber) {
+		for (int i = 1; i <= stage.threadCount; i++) {
+			Thread t = new Thread(
+					new Runnable() {
+						public void run() {
+							work(stage, next);
+						}
+					},
+					"thumbnailator-pipeline-" + pipelineNumber + "-" + stage.name + "-" + i
+			);
+			t.setDaemon(true);
+			t.start();
+		}
+	}
+	
+	/**
+	 * Creates a thumbnail of the image from the given source with the
+	 * given plan, and writes it to the given sink.
+	 * <p>
+	 * This method waits while the queue of the decode stage is full, and
+	 * returns once the thumbnail has been queued. The returned future
+	 * completes once the thumbnail has been written, or exceptionally with
+	 * the failure. Cancelling the future skips the stages which have not
+	 * started yet.
+	 * 
+	 * @param plan			The plan used to create the thumbnail.
+	 * @param source		The source of the image.
+	 * @param destination	The sink to write the thumbnail to.
+	 * @param <S>			The type of the source.
+	 * @param <D>			The type of the destination.
+	 * @return				A future which completes once the thumbnail has
+	 * 						been written.
+	 * @throws NullPointerException		If any argument is {@code null}.
+	 * @throws IllegalStateException	If this pipeline has been closed.
+	 */
+	public <S, D> CompletableFuture<Void> submit(ThumbnailPlan plan, ImageSource<S> source, ImageSink<D> destination) {
+		if (plan == null) {
+			throw new NullPointerException("Plan is null.");
+		}
+		if (source == null) {
+			throw new NullPointerException("ImageSource cannot be null.");
+		}
+		if (destination == null) {
+			throw new NullPointerException("ImageSink cannot be null.");
+		}
+		if (closed) {
+			throw new IllegalStateException("The pipeline has been closed.");
+		}
+		
+		Item item = new Item(plan, source, destination);
+		try {
+			decodeStage.queue.put(item);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			item.future.cancel(false);
+		}
+		
+		if (closed) {
+			// The pipeline was closed while this item was being queued.
+			cancelQueued();
+		}
+		return item.future;
+	}
+	
+	/**
+	 * Takes items from the queue of a stage and works on them, until the
+	 * pipeline is closed.
+	 */
+	private void work(Stage stage, Stage next) {
+		while (!closed) {
+			Item item;
+			try {
+				item = stage.queue.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				return;
+			}
+			
+			if (item == null) {
+				continue;
+			}
+			if (item.future.isDone()) {
+				// The thumbnail was cancelled.
+				discard(item);
+				continue;
+			}
+			
+			boolean forward = false;
+			Throwable failure = null;
+			long start = System.nanoTime();
+			stage.activeCount.incrementAndGet();
+			
+			if (stage == decodeStage) {
+				item.cancellation = item.plan.newCancellation();
+			}
+			
+			ImageAllocator allocator = item.plan.getImageAllocator();
+			ImageAllocator previous = allocator == null ?
+					null : BufferedImageBuilder.setThreadAllocator(allocator);
+			Cancellation previousCancellation = item.cancellation == null ?
+					null : Cancellation.setThreadCancellation(item.cancellation);
+			ImageLimits limits = item.plan.getImageLimits();
+			ImageLimits previousLimits = limits == null ?
+					null : ImageLimits.setThreadLimits(limits);
+			try {
+				forward = process(stage, item);
+			} catch (Throwable t) {
+				failure = t;
+			} finally {
+				if (limits != null) {
+					ImageLimits.setThreadLimits(previousLimits);
+				}
+				if (item.cancellation != null) {
+					Cancellation.setThreadCancellation(previousCancellation);
+				}
+				if (allocator != null) {
+					BufferedImageBuilder.setThreadAllocator(previous);
+				}
+				stage.activeCount.decrementAndGet();
+				stage.busyTime.addAndGet(System.nanoTime() - start);
+				stage.completedCount.incrementAndGet();
+			}
+			
+			// The future is completed after the statistics are updated.
+			if (failure != null) {
+				discard(item);
+				item.future.completeExceptionally(failure);
+			} else if (forward) {
+				forward(item, next);
+			} else {
+				item.future.complete(null);
+			}
+		}
+	}
+	
+	/**
+	 * Hands an item to the next stage, waiting while its queue is full.
+	 */
+	private void forward(Item item, Stage next) {
+		try {
+			while (!closed) {
+				if (next.queue.offer(item, POLL_INTERVAL, TimeUnit.MILLISECONDS)) {
+					if (closed) {
+						// The pipeline was closed while the item was queued.
+						cancelQueued();
+					}
+					return;
+				}
+			}
+			discard(item);
+			item.future.cancel(false);
+		} catch (InterruptedException e) {
+			discard(item);
+			item.future.cancel(false);
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Performs the work of a stage on an item.
+	 * 
+	 * @return				{@code true} if the item should be handed to
+	 * 						the next stage.
+	 */
+	private boolean process(Stage stage, Item item) throws Exception {
+		if (stage == decodeStage) {
+			Thumbnailator.Work work = Thumbnailator.decode(
+					item.plan.createTask(item.source, item.destination),
+					item.plan.getListener()
+			);
+			if (work.isDone()) {
+				return false;
+			}
+			item.work = work;
+			return true;
+			
+		} else if (stage == resizeStage) {
+			Thumbnailator.resize(item.work);
+			return true;
+			
+		} else {
+			Thumbnailator.encode(item.work);
+			item.work = null;
+			return false;
+		}
+	}
+	
+	/**
+	 * Cancels the thumbnails which are waiting in the queues.
+	 */
+	private void cancelQueued() {
+		for (Stage stage : new Stage[] {decodeStage, resizeStage, encodeStage}) {
+			Item item;
+			while ((item = stage.queue.poll()) != null) {
+				discard(item);
+				item.future.cancel(false);
+			}
+		}
+	}
+	
+	/**
+	 * Releases the images of an item which is dropped from the pipeline, to
+	 * the allocator they were allocated from. The item must not be in a
+	 * queue or worked on by another thread.
+	 */
+	private static void discard(Item item) {
+		if (item.work == null) {
+			return;
+		}
+		ImageAllocator allocator = item.plan.getImageAllocator();
+		ImageAllocator previous = allocator == null ?
+				null : BufferedImageBuilder.setThreadAllocator(allocator);
+		try {
+			Thumbnailator.discard(item.work);
+		} finally {
+			if (allocator != null) {
+				BufferedImageBuilder.setThreadAllocator(previous);
+			}
+		}
+		item.work = null;
+	}
+	
+	/**
+	 * Returns the number of thumbnails which can be in this pipeline at
+	 * the same time, in the queues and in the threads of its stages.
+	 * 
+	 * @return				The capacity of this pipeline.
+	 */
+	int getCapacity() {
+		int capacity = 0;
+		for (Stage stage : new Stage[] {decodeStage, resizeStage, encodeStage}) {
+			capacity += stage.threadCount + stage.getQueueCapacity();
+		}
+		return capacity;
+	}
+	
+	/**
+	 * Returns the statistics of the stage which reads the source images.
+	 * 
+	 * @return				The decode stage.
+	 */
+	public Stage getDecodeStage() {
+		return decodeStage;
+	}
+	
+	/**
+	 * Returns the statistics of the stage which resizes the images and
+	 * applies the image filters.
+	 * 
+	 * @return				The resize stage.
+	 */
+	public Stage getResizeStage() {
+		return resizeStage;
+	}
+	
+	/**
+	 * Returns the statistics of the stage which writes the thumbnails.
+	 * 
+	 * @return				The encode stage.
+	 */
+	public Stage getEncodeStage() {
+		return encodeStage;
+	}
+	
+	/**
+	 * Stops the threads of this pipeline. The threads finish the stage
+	 * they are working on, and the futures of the thumbnails which have not
+	 * been written are cancelled.
+	 */
+	public void close() {
+		closed = true;
+		cancelQueued();
+	}
+	
+	@Override
+	public String toString() {
+		return "ThumbnailPipeline[" + decodeStage + ", " + resizeStage + ", " + encodeStage + "]";
+	}
+}
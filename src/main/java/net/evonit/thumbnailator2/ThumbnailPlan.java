@@ -0,0 +1,307 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2020 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import net.evonit.thumbnailator2.builders.BufferedImageBuilder;
+import net.evonit.thumbnailator2.builders.ImageAllocator;
+import net.evonit.thumbnailator2.tasks.SourceSinkThumbnailTask;
+import net.evonit.thumbnailator2.tasks.ThumbnailTask;
+import net.evonit.thumbnailator2.tasks.io.BufferedImageSink;
+import net.evonit.thumbnailator2.tasks.io.BufferedImageSource;
+import net.evonit.thumbnailator2.tasks.io.Cancellation;
+import net.evonit.thumbnailator2.tasks.io.FileImageSink;
+import net.evonit.thumbnailator2.tasks.io.FileImageSource;
+import net.evonit.thumbnailator2.tasks.io.ImageLimits;
+import net.evonit.thumbnailator2.tasks.io.ImageSink;
+import net.evonit.thumbnailator2.tasks.io.ImageSource;
+import net.evonit.thumbnailator2.tasks.io.InputStreamImageSource;
+import net.evonit.thumbnailator2.tasks.io.OutputStreamImageSink;
+
+/**
+ * The settings of a {@link Thumbnails.Builder}, compiled once so that they
+ * can be applied to any number of source images.
+ * <p>
+ * The size, resizer, image filters, output format and output quality are
+ * resolved when the plan is created, so applying the plan does not repeat
+ * the work the builder does for each thumbnail. A plan cannot be changed
+ * once created, and can be shared by threads which create thumbnails at
+ * the same time.
+ * <p>
+ * Usage:
+ * <pre>
+// Compiled once, for example when a service starts.
+ThumbnailPlan plan = Thumbnails.newPlan()
+    .size(200, 200)
+    .outputFormat("jpg")
+    .toPlan();
+
+// Applied for each request.
+plan.apply(request.getInputStream(), response.getOutputStream());
+ * </pre>
+ *
+ * @author coobird
+ *
+ */
+public final class ThumbnailPlan {
+	/**
+	 * The parameters from which the parameters of each thumbnail are
+	 * copied. This is never given to a task, as tasks add filters to the
+	 * parameters they are given.
+	 */
+	private final ThumbnailParameter param;
+	
+	/**
+	 * The allocator for the images of each thumbnail, or {@code null} to
+	 * allocate the images on the heap.
+	 */
+	private final ImageAllocator imageAllocator;
+	
+	/**
+	 * Whether existing files can be overwritten by
+	 * {@link #apply(File, File)}.
+	 */
+	private final boolean allowOverwrite;
+	
+	/**
+	 * The time within which each thumbnail should be created, in
+	 * nanoseconds, or {@code 0} if the time is not limited.
+	 */
+	private final long timeout;
+	
+	/**
+	 * The limits on the source images, or {@code null} to use the
+	 * configured limits.
+	 */
+	private final ImageLimits imageLimits;
+	
+	/**
+	 * The listener to tell about the stages of each thumbnail, or
+	 * {@code null}.
+	 */
+	private final ThumbnailListener listener;
+	
+	/**
+	 * Creates a plan. Plans are created by {@link Thumbnails.Builder#toPlan()}.
+	 * 
+	 * @param param				The parameters of the thumbnails.
+	 * @param imageAllocator	The allocator for the images, or
+	 * 							{@code null}.
+	 * @param allowOverwrite	Whether existing files can be overwritten.
+	 * @param timeout			The time within which each thumbnail should
+	 * 							be created, in nanoseconds, or {@code 0}.
+	 * @param imageLimits		The limits on the source images, or
+	 * 							{@code null}.
+	 * @param listener			The listener to tell about the stages of
+	 * 							each thumbnail, or {@code null}.
+	 */
+	ThumbnailPlan(ThumbnailParameter param, ImageAllocator imageAllocator, boolean allowOverwrite, long timeout, ImageLimits imageLimits, ThumbnailListener listener) {
+		this.param = new ThumbnailParameter(param);
+		this.imageAllocator = imageAllocator;
+		this.allowOverwrite = allowOverwrite;
+		this.timeout = timeout;
+		this.imageLimits = imageLimits;
+		this.listener = listener;
+	}
+	
+	/**
+	 * Returns the parameters of the thumbnails created by this plan.
+	 * <p>
+	 * Each call returns a new copy, which can be changed without affecting
+	 * this plan.
+	 * 
+	 * @return		The parameters of the thumbnails.
+	 */
+	public ThumbnailParameter getParameter() {
+		return new ThumbnailParameter(param);
+	}
+	
+	/**
+	 * Creates a thumbnail of the image from the given source, and writes
+	 * it to the given sink.
+	 * 
+	 * @param source		The source of the image.
+	 * @param destination	The sink to write the thumbnail to.
+	 * @param <S>			The type of the source.
+	 * @param <D>			The type of the destination.
+	 * @throws IOException	If a problem occurs while reading the image or
+	 * 						writing the thumbnail.
+	 * @throws NullPointerException	If the source or destination is
+	 * 								{@code null}.
+	 */
+	public <S, D> void apply(ImageSource<S> source, ImageSink<D> destination) throws IOException {
+		apply(source, destination, null);
+	}
+	
+	/**
+	 * Creates a thumbnail of the image from the given source, and writes
+	 * it to the given sink, holding a permit from the given semaphore
+	 * while the image is resized and the thumbnail is written.
+	 * 
+	 * @param source		The source of the image.
+	 * @param destination	The sink to write the thumbnail to.
+	 * @param cpuPermits	The permits for resizing and writing, or
+	 * 						{@code null} to not limit them.
+	 * @param <S>			The type of the source.
+	 * @param <D>			The type of the destination.
+	 * @throws IOException	If a problem occurs while reading the image or
+	 * 						writing the thumbnail.
+	 * @see Thumbnailator#createThumbnail(ThumbnailTask, Semaphore, ThumbnailListener)
+	 */
+	<S, D> void apply(ImageSource<S> source, ImageSink<D> destination, Semaphore cpuPermits) throws IOException {
+		ThumbnailTask<S, D> task = createTask(source, destination);
+		
+		Cancellation cancellation = newCancellation();
+		Cancellation previousCancellation = cancellation == null
+				? null
+				: Cancellation.setThreadCancellation(cancellation);
+		ImageAllocator previous = imageAllocator == null
+				? null
+				: BufferedImageBuilder.setThreadAllocator(imageAllocator);
+		ImageLimits previousLimits = imageLimits == null
+				? null
+				: ImageLimits.setThreadLimits(imageLimits);
+		try {
+			Thumbnailator.createThumbnail(task, cpuPermits, listener);
+		} finally {
+			if (imageLimits != null) {
+				ImageLimits.setThreadLimits(previousLimits);
+			}
+			if (imageAllocator != null) {
+				BufferedImageBuilder.setThreadAllocator(previous);
+			}
+			if (cancellation != null) {
+				Cancellation.setThreadCancellation(previousCancellation);
+			}
+		}
+	}
+	
+	/**
+	 * Returns a cancellation which times out once the time within which a
+	 * thumbnail should be created has passed, starting now.
+	 * 
+	 * @return				The cancellation, or {@code null} if the time is
+	 * 						not limited.
+	 */
+	Cancellation newCancellation() {
+		return timeout == 0 ? null : Cancellation.withTimeout(timeout, TimeUnit.NANOSECONDS);
+	}
+	
+	/**
+	 * Returns a task which creates a thumbnail of the image from the given
+	 * source with the parameters of this plan.
+	 * 
+	 * @param source		The source of the image.
+	 * @param destination	The sink to write the thumbnail to.
+	 * @param <S>			The type of the source.
+	 * @param <D>			The type of the destination.
+	 * @return				The task.
+	 */
+	<S, D> ThumbnailTask<S, D> createTask(ImageSource<S> source, ImageSink<D> destination) {
+		return new SourceSinkThumbnailTask<S, D>(getParameter(), source, destination);
+	}
+	
+	/**
+	 * Returns the allocator for the images of each thumbnail, or
+	 * {@code null} to allocate the images on the heap.
+	 * 
+	 * @return				The allocator, or {@code null}.
+	 */
+	ImageAllocator getImageAllocator() {
+		return imageAllocator;
+	}
+	
+	/**
+	 * Returns the limits on the source images, or {@code null} to use the
+	 * configured limits.
+	 * 
+	 * @return				The limits, or {@code null}.
+	 */
+	ImageLimits getImageLimits() {
+		return imageLimits;
+	}
+	
+	/**
+	 * Returns the listener to tell about the stages of each thumbnail, or
+	 * {@code null} to only tell the registered listeners.
+	 * 
+	 * @return				The listener, or {@code null}.
+	 */
+	ThumbnailListener getListener() {
+		return listener;
+	}
+	
+	/**
+	 * Creates a thumbnail of the image in the given file, and writes it to
+	 * the given file.
+	 * 
+	 * @param source		The file of the image.
+	 * @param destination	The file to write the thumbnail to.
+	 * @throws IOException	If a problem occurs while reading the image or
+	 * 						writing the thumbnail.
+	 * @throws IllegalArgumentException	If the destination file exists, and
+	 * 									overwriting files was disabled on
+	 * 									the builder.
+	 */
+	public void apply(File source, File destination) throws IOException {
+		apply(new FileImageSource(source), new FileImageSink(destination, allowOverwrite));
+	}
+	
+	/**
+	 * Creates a thumbnail of the image read from the given stream, and
+	 * writes it to the given stream.
+	 * <p>
+	 * Neither stream is closed by this method.
+	 * 
+	 * @param is			The stream to read the image from.
+	 * @param os			The stream to write the thumbnail to.
+	 * @throws IOException	If a problem occurs while reading the image or
+	 * 						writing the thumbnail.
+	 */
+	public void apply(InputStream is, OutputStream os) throws IOException {
+		apply(new InputStreamImageSource(is), new OutputStreamImageSink(os));
+	}
+	
+	/**
+	 * Creates a thumbnail of the given image.
+	 * 
+	 * @param img			The image.
+	 * @return				The thumbnail.
+	 * @throws IOException	If a problem occurs while creating the
+	 * 						thumbnail.
+	 */
+	public BufferedImage apply(BufferedImage img) throws IOException {
+		BufferedImageSink destination = new BufferedImageSink();
+		apply(new BufferedImageSource(img), destination);
+		return destination.getSink();
+	}
+}
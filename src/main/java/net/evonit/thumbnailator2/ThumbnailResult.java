@@ -0,0 +1,149 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2020 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2;
+
+import java.awt.image.BufferedImage;
+
+import net.evonit.thumbnailator2.tasks.io.DegradableImageSource;
+import net.evonit.thumbnailator2.tasks.io.ImageSource;
+
+/**
+ * The outcome of creating the thumbnail of one source image, when
+ * thumbnails are delivered one at a time rather than as a list.
+ * <p>
+ * A result carries the source image it was created from and its position
+ * among the source images, as results may be delivered in a different
+ * order than the source images. A thumbnail which could not be created is
+ * reported by a result with the failure, so that the other thumbnails are
+ * still delivered.
+ * 
+ * @param <T>		The type of the source images.
+ * @author coobird
+ *
+ */
+public final class ThumbnailResult<T> {
+	private final int index;
+	private final T source;
+	private final BufferedImage thumbnail;
+	private final Throwable failure;
+	private final boolean degraded;
+	
+	private ThumbnailResult(int index, T source, BufferedImage thumbnail, Throwable failure, boolean degraded) {
+		this.index = index;
+		this.source = source;
+		this.thumbnail = thumbnail;
+		this.failure = failure;
+		this.degraded = degraded;
+	}
+	
+	/**
+	 * Returns the result of a thumbnail which was created from the image
+	 * read by the given source.
+	 */
+	static <T> ThumbnailResult<T> of(int index, ImageSource<T> source, BufferedImage thumbnail) {
+		boolean degraded = source instanceof DegradableImageSource &&
+				((DegradableImageSource)source).isDegraded();
+		return new ThumbnailResult<T>(index, source.getSource(), thumbnail, null, degraded);
+	}
+	
+	/**
+	 * Returns the result of a thumbnail which could not be created.
+	 */
+	static <T> ThumbnailResult<T> failed(int index, T source, Throwable failure) {
+		return new ThumbnailResult<T>(index, source, null, failure, false);
+	}
+	
+	/**
+	 * Returns the position of the source image among the source images
+	 * given to {@link Thumbnails#of}, starting from {@code 0}.
+	 * 
+	 * @return			The position of the source image, or {@code -1} if
+	 * 					it is not known, as in a parallel stream of source
+	 * 					images whose number is not known.
+	 */
+	public int getIndex() {
+		return index;
+	}
+	
+	/**
+	 * Returns the source image, such as the {@link java.io.File} or
+	 * {@link java.net.URL} given to {@link Thumbnails#of}.
+	 * 
+	 * @return			The source image.
+	 */
+	public T getSource() {
+		return source;
+	}
+	
+	/**
+	 * Returns the thumbnail.
+	 * 
+	 * @return			The thumbnail, or {@code null} if it could not be
+	 * 					created.
+	 */
+	public BufferedImage getThumbnail() {
+		return thumbnail;
+	}
+	
+	/**
+	 * Returns the reason the thumbnail could not be created.
+	 * 
+	 * @return			The failure, or {@code null} if the thumbnail was
+	 * 					created.
+	 */
+	public Throwable getFailure() {
+		return failure;
+	}
+	
+	/**
+	 * Returns whether the thumbnail was created.
+	 * 
+	 * @return			{@code true} if the thumbnail was created.
+	 */
+	public boolean isSuccessful() {
+		return failure == null;
+	}
+	
+	/**
+	 * Returns whether the thumbnail was created from the source image read
+	 * at a reduced resolution, as there was not enough memory to read it at
+	 * its full resolution.
+	 * 
+	 * @return			{@code true} if the thumbnail has less detail than
+	 * 					it would otherwise have.
+	 * @see net.evonit.thumbnailator2.util.Configurations#DEGRADE_ON_LOW_MEMORY
+	 */
+	public boolean isDegraded() {
+		return degraded;
+	}
+	
+	@Override
+	public String toString() {
+		return "ThumbnailResult[index=" + index + ", source=" + source
+				+ (failure == null ? ", thumbnail=" + thumbnail : ", failure=" + failure)
+				+ (degraded ? ", degraded" : "")
+				+ "]";
+	}
+}
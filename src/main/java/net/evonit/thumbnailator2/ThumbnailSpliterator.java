@@ -0,0 +1,116 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2020 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import net.evonit.thumbnailator2.tasks.io.BufferedImageSink;
+import net.evonit.thumbnailator2.tasks.io.ImageSource;
+
+/**
+ * A {@link Spliterator} which creates the thumbnail of each source image
+ * as it is traversed, for {@link Thumbnails.Builder#stream()}.
+ * <p>
+ * It splits as the spliterator of the source images does, so that a
+ * parallel stream creates the thumbnails of the parts on different
+ * threads. The source images of an array or a collection can be split
+ * into parts of known sizes, and the positions of the source images
+ * given to the {@link ThumbnailResult}s are kept as long as the sizes of
+ * the parts which are split off are known.
+ * 
+ * @param <T>		The type of the source images.
+ * @author coobird
+ *
+ */
+final class ThumbnailSpliterator<T> implements Spliterator<ThumbnailResult<T>> {
+	private final ThumbnailPlan plan;
+	private final Spliterator<ImageSource<T>> sources;
+	
+	/**
+	 * The position of the next source image, or {@code -1} if it is not
+	 * known.
+	 */
+	private long index;
+	
+	/**
+	 * Creates a spliterator of the thumbnails of the given source images.
+	 * 
+	 * @param plan			The plan to create the thumbnails with.
+	 * @param sources		The source images.
+	 * @param index			The position of the first source image, or
+	 * 						{@code -1} if it is not known.
+	 */
+	ThumbnailSpliterator(ThumbnailPlan plan, Spliterator<ImageSource<T>> sources, long index) {
+		this.plan = plan;
+		this.sources = sources;
+		this.index = index;
+	}
+	
+	public boolean tryAdvance(final Consumer<? super ThumbnailResult<T>> action) {
+		return sources.tryAdvance(new Consumer<ImageSource<T>>() {
+			public void accept(ImageSource<T> source) {
+				int position = index < 0 || index > Integer.MAX_VALUE ? -1 : (int)index;
+				if (index >= 0) {
+					index++;
+				}
+				action.accept(createThumbnail(position, source));
+			}
+		});
+	}
+	
+	private ThumbnailResult<T> createThumbnail(int position, ImageSource<T> source) {
+		BufferedImageSink destination = new BufferedImageSink();
+		try {
+			plan.apply(source, destination);
+			return ThumbnailResult.of(position, source, destination.getSink());
+			
+		} catch (Exception e) {
+			return ThumbnailResult.failed(position, source.getSource(), e);
+		}
+	}
+	
+	public Spliterator<ThumbnailResult<T>> trySplit() {
+		Spliterator<ImageSource<T>> prefix = sources.trySplit();
+		if (prefix == null) {
+			return null;
+		}
+		
+		long prefixIndex = index;
+		if (index >= 0) {
+			long prefixSize = prefix.getExactSizeIfKnown();
+			index = prefixSize < 0 ? -1 : index + prefixSize;
+		}
+		return new ThumbnailSpliterator<T>(plan, prefix, prefixIndex);
+	}
+	
+	public long estimateSize() {
+		return sources.estimateSize();
+	}
+	
+	public int characteristics() {
+		return (sources.characteristics() & (ORDERED | SIZED | SUBSIZED)) | NONNULL;
+	}
+}
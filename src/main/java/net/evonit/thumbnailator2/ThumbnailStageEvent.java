@@ -0,0 +1,242 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2020 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2;
+
+import net.evonit.thumbnailator2.filters.ImageFilter;
+import net.evonit.thumbnailator2.resizers.Resizer;
+
+/**
+ * The completion of a stage of creating a thumbnail, as told to a
+ * {@link ThumbnailListener}.
+ * <p>
+ * Besides the time the stage took, an event carries what was known about
+ * the thumbnail when the stage completed: the source image is known from
+ * the {@link Stage#READ} stage, the thumbnail from the
+ * {@link Stage#RESIZE} stage, and the number of bytes written from the
+ * {@link Stage#WRITE} stage.
+ * 
+ * @author coobird
+ *
+ */
+public final class ThumbnailStageEvent {
+	/**
+	 * The stages of creating a thumbnail, in the order they are performed.
+	 */
+	public static enum Stage {
+		/**
+		 * The source image is read and decoded.
+		 */
+		READ,
+		
+		/**
+		 * The source image is resized to the size of the thumbnail.
+		 */
+		RESIZE,
+		
+		/**
+		 * An image filter is applied to the thumbnail. This stage is
+		 * reported once for each image filter.
+		 */
+		FILTER,
+		
+		/**
+		 * The thumbnail is encoded and written to the destination. When
+		 * the source image is copied or transformed without being decoded,
+		 * this is the only stage which is reported.
+		 */
+		WRITE
+	}
+	
+	private final Stage stage;
+	private final Object source;
+	private final long durationNanos;
+	private final Throwable failure;
+	private final String sourceFormatName;
+	private final int sourceWidth;
+	private final int sourceHeight;
+	private final int thumbnailWidth;
+	private final int thumbnailHeight;
+	private final Class<? extends Resizer> resizerClass;
+	private final Class<? extends ImageFilter> filterClass;
+	private final long bytesWritten;
+	
+	ThumbnailStageEvent(
+			Stage stage,
+			Object source,
+			long durationNanos,
+			Throwable failure,
+			String sourceFormatName,
+			int sourceWidth,
+			int sourceHeight,
+			int thumbnailWidth,
+			int thumbnailHeight,
+			Class<? extends Resizer> resizerClass,
+			Class<? extends ImageFilter> filterClass,
+			long bytesWritten
+	) {
+		this.stage = stage;
+		this.source = source;
+		this.durationNanos = durationNanos;
+		this.failure = failure;
+		this.sourceFormatName = sourceFormatName;
+		this.sourceWidth = sourceWidth;
+		this.sourceHeight = sourceHeight;
+		this.thumbnailWidth = thumbnailWidth;
+		this.thumbnailHeight = thumbnailHeight;
+		this.resizerClass = resizerClass;
+		this.filterClass = filterClass;
+		this.bytesWritten = bytesWritten;
+	}
+	
+	/**
+	 * Returns the stage which has completed.
+	 * 
+	 * @return			The stage.
+	 */
+	public Stage getStage() {
+		return stage;
+	}
+	
+	/**
+	 * Returns the source image, such as the {@link java.io.File} or
+	 * {@link java.net.URL} given to {@link Thumbnails#of}.
+	 * 
+	 * @return			The source image.
+	 */
+	public Object getSource() {
+		return source;
+	}
+	
+	/**
+	 * Returns the time the stage took.
+	 * 
+	 * @return			The time in nanoseconds.
+	 */
+	public long getDurationNanos() {
+		return durationNanos;
+	}
+	
+	/**
+	 * Returns the reason the stage failed. The thumbnail is not created
+	 * when a stage fails, so no later stage is reported.
+	 * 
+	 * @return			The failure, or {@code null} if the stage
+	 * 					completed.
+	 */
+	public Throwable getFailure() {
+		return failure;
+	}
+	
+	/**
+	 * Returns the format of the source image.
+	 * 
+	 * @return			The format name, such as {@code "JPEG"}, or
+	 * 					{@code null} if it is not known.
+	 */
+	public String getSourceFormatName() {
+		return sourceFormatName;
+	}
+	
+	/**
+	 * Returns the width of the source image as it was decoded, which is
+	 * smaller than the width of the image if only part of it was decoded,
+	 * or it was decoded at a reduced resolution.
+	 * 
+	 * @return			The width, or {@code -1} if it is not known.
+	 */
+	public int getSourceWidth() {
+		return sourceWidth;
+	}
+	
+	/**
+	 * Returns the height of the source image as it was decoded.
+	 * 
+	 * @return			The height, or {@code -1} if it is not known.
+	 * @see #getSourceWidth()
+	 */
+	public int getSourceHeight() {
+		return sourceHeight;
+	}
+	
+	/**
+	 * Returns the width of the thumbnail after the stage.
+	 * 
+	 * @return			The width, or {@code -1} if it is not known.
+	 */
+	public int getThumbnailWidth() {
+		return thumbnailWidth;
+	}
+	
+	/**
+	 * Returns the height of the thumbnail after the stage.
+	 * 
+	 * @return			The height, or {@code -1} if it is not known.
+	 */
+	public int getThumbnailHeight() {
+		return thumbnailHeight;
+	}
+	
+	/**
+	 * Returns the class of the {@link Resizer} which resized the source
+	 * image.
+	 * 
+	 * @return			The class of the resizer, or {@code null} if the
+	 * 					source image has not been resized yet.
+	 */
+	public Class<? extends Resizer> getResizerClass() {
+		return resizerClass;
+	}
+	
+	/**
+	 * Returns the class of the {@link ImageFilter} which was applied in a
+	 * {@link Stage#FILTER} stage.
+	 * 
+	 * @return			The class of the image filter, or {@code null} for
+	 * 					the other stages.
+	 */
+	public Class<? extends ImageFilter> getFilterClass() {
+		return filterClass;
+	}
+	
+	/**
+	 * Returns the number of bytes of the thumbnail written to the
+	 * destination in a {@link Stage#WRITE} stage.
+	 * 
+	 * @return			The number of bytes, or {@code -1} for the other
+	 * 					stages, or if the destination does not tell the
+	 * 					number, as for a {@link java.awt.image.BufferedImage}.
+	 */
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+	
+	@Override
+	public String toString() {
+		return "ThumbnailStageEvent[stage=" + stage + ", source=" + source
+				+ ", durationNanos=" + durationNanos
+				+ (failure == null ? "" : ", failure=" + failure)
+				+ "]";
+	}
+}
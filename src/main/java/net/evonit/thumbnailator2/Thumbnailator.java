@@ -31,23 +31,43 @@ import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import net.evonit.thumbnailator2.builders.BufferedImageBuilder;
+import net.evonit.thumbnailator2.builders.ImageAllocator;
 import net.evonit.thumbnailator2.builders.ThumbnailParameterBuilder;
 import net.evonit.thumbnailator2.filters.ImageFilter;
 import net.evonit.thumbnailator2.filters.Pipeline;
 import net.evonit.thumbnailator2.filters.SwapDimensions;
 import net.evonit.thumbnailator2.makers.FixedSizeThumbnailMaker;
 import net.evonit.thumbnailator2.makers.ScaledThumbnailMaker;
+import net.evonit.thumbnailator2.makers.ThumbnailMaker;
 import net.evonit.thumbnailator2.name.Rename;
 import net.evonit.thumbnailator2.resizers.DefaultResizerFactory;
 import net.evonit.thumbnailator2.resizers.Resizer;
 import net.evonit.thumbnailator2.tasks.ThumbnailTask;
+import net.evonit.thumbnailator2.tasks.ThumbnailTimeoutException;
+import net.evonit.thumbnailator2.tasks.io.Cancellation;
+import net.evonit.thumbnailator2.tasks.io.ImageSink;
+import net.evonit.thumbnailator2.tasks.io.ImageSource;
+import net.evonit.thumbnailator2.tasks.io.jpeg.YCbCrImage;
+import net.evonit.thumbnailator2.util.raster.RasterImages;
 
 /**
  * This class provides static utility methods which perform generation of
@@ -64,6 +84,51 @@ public final class Thumbnailator {
 	 */
 	private Thumbnailator() {}
 	
+	/**
+	 * The listeners which are told about the stages of all thumbnails.
+	 */
+	private static final List<ThumbnailListener> listeners =
+			new CopyOnWriteArrayList<ThumbnailListener>();
+	
+	/**
+	 * Registers a listener which is told how long each stage of creating
+	 * a thumbnail took, for all thumbnails which are created from then on.
+	 * 
+	 * @param listener			The listener to register.
+	 * @throws NullPointerException		If the listener is {@code null}.
+	 */
+	public static void addListener(ThumbnailListener listener) {
+		if (listener == null) {
+			throw new NullPointerException("Listener cannot be null.");
+		}
+		listeners.add(listener);
+	}
+	
+	/**
+	 * Removes a listener which was registered by
+	 * {@link #addListener(ThumbnailListener)}.
+	 * 
+	 * @param listener			The listener to remove.
+	 */
+	public static void removeListener(ThumbnailListener listener) {
+		listeners.remove(listener);
+	}
+	
+	/**
+	 * Returns the registered listeners and the given listener, or
+	 * {@code null} if there are none, so that the stages are not timed.
+	 */
+	private static ThumbnailListener[] getListeners(ThumbnailListener listener) {
+		if (listeners.isEmpty()) {
+			return listener == null ? null : new ThumbnailListener[] {listener};
+		}
+		List<ThumbnailListener> all = new ArrayList<ThumbnailListener>(listeners);
+		if (listener != null) {
+			all.add(listener);
+		}
+		return all.isEmpty() ? null : all.toArray(new ThumbnailListener[all.size()]);
+	}
+	
 	/**
 	 * Creates a thumbnail from parameters specified in a {@link ThumbnailTask}.
 	 * 
@@ -72,10 +137,284 @@ public final class Thumbnailator {
 	 * 							thumbnail.
 	 */
 	public static void createThumbnail(ThumbnailTask<?, ?> task) throws IOException {
+		createThumbnail(task, null, null);
+	}
+	
+	/**
+	 * Creates a thumbnail from parameters specified in a {@link ThumbnailTask},
+	 * stopping if it is not created within the given time.
+	 * <p>
+	 * The time is checked while the image is read, for each row or tile of
+	 * the image while it is decoded and resized, between the image filters,
+	 * and while the thumbnail is written. An {@link javax.imageio.ImageReader}
+	 * or {@link javax.imageio.ImageWriter} in use is aborted once the time
+	 * has passed.
+	 * <p>
+	 * If the current thread has a {@link Cancellation}, cancelling it still
+	 * stops the thumbnail.
+	 * 
+	 * @param task				A {@link ThumbnailTask} to execute.
+	 * @param timeout			The time within which the thumbnail should
+	 * 							be created.
+	 * @param unit				The unit of the time.
+	 * @throws IOException		Thrown when a problem occurs when creating a
+	 * 							thumbnail.
+	 * @throws ThumbnailTimeoutException	If the thumbnail was not created
+	 * 										within the time.
+	 * @throws IllegalArgumentException		If the time is not positive.
+	 */
+	public static void createThumbnail(ThumbnailTask<?, ?> task, long timeout, TimeUnit unit) throws IOException {
+		Cancellation previous = Cancellation.setThreadCancellation(Cancellation.withTimeout(timeout, unit));
+		try {
+			createThumbnail(task, null, null);
+		} finally {
+			Cancellation.setThreadCancellation(previous);
+		}
+	}
+	
+	/**
+	 * Creates a thumbnail from parameters specified in a {@link ThumbnailTask},
+	 * holding a permit from the given semaphore while the image is resized
+	 * and the thumbnail is written.
+	 * <p>
+	 * The source image is read without a permit, so that threads which
+	 * mostly wait for the source image to arrive, such as from a URL, do not
+	 * keep other threads from using the processors.
+	 * 
+	 * @param task				A {@link ThumbnailTask} to execute.
+	 * @param cpuPermits		The permits for resizing and writing, or
+	 * 							{@code null} to not limit them.
+	 * @param listener			A listener to tell about the stages, in
+	 * 							addition to the registered listeners, or
+	 * 							{@code null}.
+	 * @throws IOException		Thrown when a problem occurs when creating a
+	 * 							thumbnail, or when the thread is interrupted
+	 * 							while it waits for a permit.
+	 */
+	static void createThumbnail(ThumbnailTask<?, ?> task, Semaphore cpuPermits, ThumbnailListener listener) throws IOException {
+		Work work = decode(task, listener);
+		if (work.isDone()) {
+			return;
+		}
+		
+		boolean encoded = false;
+		try {
+			Cancellation.checkThread();
+			
+			if (cpuPermits != null) {
+				try {
+					cpuPermits.acquire();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Interrupted while waiting to resize the image.");
+				}
+			}
+			try {
+				resize(work);
+				Cancellation.checkThread();
+				encode(work);
+				encoded = true;
+			} finally {
+				if (cpuPermits != null) {
+					cpuPermits.release();
+				}
+			}
+		} finally {
+			if (!encoded) {
+				discard(work);
+			}
+		}
+	}
+	
+	/**
+	 * The state of a thumbnail which is created in separate steps by
+	 * {@link Thumbnailator#decode(ThumbnailTask, ThumbnailListener)},
+	 * {@link Thumbnailator#resize(Work)} and
+	 * {@link Thumbnailator#encode(Work)}, so that each step can be
+	 * performed by a different thread.
+	 */
+	static final class Work {
+		private final ThumbnailTask<?, ?> task;
+		private boolean done;
+		private BufferedImage sourceImage;
+		private YCbCrImage sourcePlanes;
+		private BufferedImage thumbnail;
+		private YCbCrImage thumbnailPlanes;
+		
+		/**
+		 * The listeners to tell about the stages, or {@code null} if the
+		 * stages are not timed.
+		 */
+		private final ThumbnailListener[] listeners;
+		private int sourceWidth = -1;
+		private int sourceHeight = -1;
+		private int thumbnailWidth = -1;
+		private int thumbnailHeight = -1;
+		private Class<? extends Resizer> resizerClass;
+		
+		private Work(ThumbnailTask<?, ?> task, ThumbnailListener[] listeners) {
+			this.task = task;
+			this.listeners = listeners;
+		}
+		
+		/**
+		 * Returns whether the thumbnail was already written when the source
+		 * image was read, so that it should not be resized or encoded.
+		 */
+		boolean isDone() {
+			return done;
+		}
+		
+		/**
+		 * Returns the time a stage starts at, or {@code 0} if the stages
+		 * are not timed.
+		 */
+		long startStage() {
+			return listeners == null ? 0 : System.nanoTime();
+		}
+		
+		/**
+		 * Tells the listeners that a stage has completed, or has failed.
+		 */
+		void stageCompleted(ThumbnailStageEvent.Stage stage, long startTime, Throwable failure, Class<? extends ImageFilter> filterClass) {
+			if (listeners == null) {
+				return;
+			}
+			ThumbnailStageEvent event = new ThumbnailStageEvent(
+					stage,
+					task.getSource(),
+					System.nanoTime() - startTime,
+					failure,
+					task.getInputFormatName(),
+					sourceWidth,
+					sourceHeight,
+					thumbnailWidth,
+					thumbnailHeight,
+					resizerClass,
+					filterClass,
+					stage == ThumbnailStageEvent.Stage.WRITE ? task.getBytesWritten() : -1
+			);
+			for (ThumbnailListener listener : listeners) {
+				try {
+					listener.stageCompleted(event);
+				} catch (RuntimeException e) {
+					// A listener does not affect the thumbnail.
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Reads the source image of a task. This is the first step of
+	 * {@link #createThumbnail(ThumbnailTask)}.
+	 * <p>
+	 * When the source image is copied or transformed without being decoded,
+	 * the thumbnail is written by this step, and the returned work is done.
+	 * 
+	 * @param task				The task to execute.
+	 * @param listener			A listener to tell about the stages, in
+	 * 							addition to the registered listeners, or
+	 * 							{@code null}.
+	 * @return					The work for the remaining steps.
+	 * @throws IOException		Thrown when a problem occurs when reading the
+	 * 							source image.
+	 */
+	static Work decode(ThumbnailTask<?, ?> task, ThumbnailListener listener) throws IOException {
+		Work work = new Work(task, getListeners(listener));
+		
+		long startTime = work.startStage();
+		try {
+			if (task.passThrough() || task.transformLosslessly()) {
+				work.done = true;
+				work.stageCompleted(ThumbnailStageEvent.Stage.WRITE, startTime, null, null);
+				return work;
+			}
+		} catch (Throwable t) {
+			work.stageCompleted(ThumbnailStageEvent.Stage.WRITE, startTime, t, null);
+			throw t;
+		}
+		
+		try {
+			work.sourcePlanes = task.readYCbCr();
+			if (work.sourcePlanes == null) {
+				// Obtain the original image.
+				work.sourceImage = task.read();
+			}
+		} catch (Throwable t) {
+			work.stageCompleted(ThumbnailStageEvent.Stage.READ, startTime, t, null);
+			throw t;
+		}
+		
+		if (work.listeners != null) {
+			BufferedImage img = work.sourcePlanes != null
+					? work.sourcePlanes.getPlane(0)
+					: work.sourceImage;
+			work.sourceWidth = img.getWidth();
+			work.sourceHeight = img.getHeight();
+			work.stageCompleted(ThumbnailStageEvent.Stage.READ, startTime, null, null);
+		}
+		return work;
+	}
+	
+	/**
+	 * Resizes the source image and applies the image filters. This is the
+	 * second step of {@link #createThumbnail(ThumbnailTask)}.
+	 * 
+	 * @param work				The work returned by
+	 * 							{@link #decode(ThumbnailTask, ThumbnailListener)}.
+	 */
+	static void resize(Work work) {
+		long startTime = work.startStage();
+		try {
+			resizeImage(work);
+		} catch (Throwable t) {
+			work.stageCompleted(ThumbnailStageEvent.Stage.RESIZE, startTime, t, null);
+			throw t;
+		}
+		
+		if (work.listeners != null) {
+			BufferedImage img = work.thumbnailPlanes != null
+					? work.thumbnailPlanes.getPlane(0)
+					: work.thumbnail;
+			work.thumbnailWidth = img.getWidth();
+			work.thumbnailHeight = img.getHeight();
+			work.stageCompleted(ThumbnailStageEvent.Stage.RESIZE, startTime, null, null);
+		}
+		
+		if (work.thumbnail != null) {
+			applyFilters(work);
+		}
+	}
+	
+	/**
+	 * Returns the parameters to resize the source image with. When the
+	 * source image was subsampled as it was read, the scaling factors are
+	 * multiplied by the subsampling, so that the thumbnail has the size it
+	 * would have had from the image at its full resolution.
+	 */
+	private static ThumbnailParameter getResizeParameter(ThumbnailTask<?, ?> task) {
 		ThumbnailParameter param = task.getParam();
+		int subsampling = task.getSourceSubsampling();
+		if (subsampling == 1 || param.getSize() != null) {
+			return param;
+		}
+		return param.multiplyScalingFactors(subsampling);
+	}
+	
+	/**
+	 * Resizes the source image, or its planes, to the size of the thumbnail.
+	 */
+	private static void resizeImage(Work work) {
+		ThumbnailParameter param = getResizeParameter(work.task);
+		
+		if (work.sourcePlanes != null) {
+			YCbCrImage sourcePlanes = work.sourcePlanes;
+			work.sourcePlanes = null;
+			work.thumbnailPlanes = resizePlanes(work, sourcePlanes);
+			return;
+		}
 		
-		// Obtain the original image.
-		BufferedImage sourceImage = task.read();
+		BufferedImage sourceImage = work.sourceImage;
 
 		// Decide the image type of the destination image.
 		int imageType = param.getType();
@@ -88,19 +427,19 @@ public final class Thumbnailator {
 		 * will be used.
 		 */
 		if (param.useOriginalImageType()) {
-			int imageTypeToUse = sourceImage.getType();
+			int imageTypeToUse = RasterImages.getImageType(sourceImage);
 			
 			if (imageTypeToUse == BufferedImage.TYPE_CUSTOM) {
 				imageType = ThumbnailParameter.DEFAULT_IMAGE_TYPE;
 			} else {
-				imageType = sourceImage.getType();
+				imageType = imageTypeToUse;
 			}
 		}
 
 		// Check for presence of marker indicating to swap the width and height.
 		boolean isSwapDimensions = hasSwapDimensionsFilter(param.getImageFilters());
 
-		BufferedImage destinationImage;
+		ThumbnailMaker maker;
 		
 		if (param.getSize() != null) {
 			// Get the dimensions of the original and thumbnail images.
@@ -108,15 +447,13 @@ public final class Thumbnailator {
 			int destinationWidth = !isSwapDimensions ? size.width : size.height;
 			int destinationHeight = !isSwapDimensions ? size.height : size.width;
 			
-			// Create the thumbnail.
-			destinationImage =
+			maker =
 				new FixedSizeThumbnailMaker()
 					.size(destinationWidth, destinationHeight)
 					.keepAspectRatio(param.isKeepAspectRatio())
 					.fitWithinDimensions(param.fitWithinDimenions())
 					.imageType(imageType)
-					.resizerFactory(param.getResizerFactory())
-					.make(sourceImage);
+					.resizerFactory(param.getResizerFactory());
 
 		} else if (!Double.isNaN(param.getWidthScalingFactor())) {
 			// Create the thumbnail.
@@ -125,28 +462,551 @@ public final class Thumbnailator {
 			double heightScalingFactor = !isSwapDimensions ?
 					param.getHeightScalingFactor() : param.getWidthScalingFactor();
 
-			destinationImage =
+			maker =
 				new ScaledThumbnailMaker()
 					.scale(widthScalingFactor, heightScalingFactor)
 					.imageType(imageType)
-					.resizerFactory(param.getResizerFactory())
-					.make(sourceImage);
+					.resizerFactory(param.getResizerFactory());
 
 		} else {
 			throw new IllegalStateException("Parameters to make thumbnail" +
 					" does not have scaling factor nor thumbnail size specified.");
 		}
 		
+		// Create the thumbnail.
+		work.thumbnail = maker.make(sourceImage);
+		work.resizerClass = maker.getLastResizer().getClass();
+	}
+	
+	/**
+	 * Applies the image filters to the thumbnail.
+	 */
+	private static void applyFilters(Work work) {
+		BufferedImage destinationImage = work.thumbnail;
+		
 		// Perform the image filters
-		for (ImageFilter filter : param.getImageFilters()) {
-			destinationImage = filter.apply(destinationImage);
+		for (ImageFilter filter : work.task.getParam().getImageFilters()) {
+			Cancellation.checkThread();
+			long startTime = work.startStage();
+			BufferedImage filteredImage;
+			try {
+				filteredImage = filter.apply(destinationImage);
+			} catch (Throwable t) {
+				work.stageCompleted(ThumbnailStageEvent.Stage.FILTER, startTime, t, filter.getClass());
+				throw t;
+			}
+			releaseIntermediate(destinationImage, filteredImage);
+			destinationImage = filteredImage;
+			work.thumbnail = destinationImage;
+			
+			if (work.listeners != null) {
+				work.thumbnailWidth = destinationImage.getWidth();
+				work.thumbnailHeight = destinationImage.getHeight();
+				work.stageCompleted(ThumbnailStageEvent.Stage.FILTER, startTime, null, filter.getClass());
+			}
 		}
+	}
+	
+	/**
+	 * Writes the thumbnail to the destination of the task, and releases the
+	 * images. This is the last step of {@link #createThumbnail(ThumbnailTask)}.
+	 * 
+	 * @param work				The work given to {@link #resize(Work)}.
+	 * @throws IOException		Thrown when a problem occurs when writing
+	 * 							the thumbnail.
+	 */
+	static void encode(Work work) throws IOException {
+		long startTime = work.startStage();
+		try {
+			encodeImage(work);
+		} catch (Throwable t) {
+			work.stageCompleted(ThumbnailStageEvent.Stage.WRITE, startTime, t, null);
+			throw t;
+		}
+		work.stageCompleted(ThumbnailStageEvent.Stage.WRITE, startTime, null, null);
+	}
+	
+	/**
+	 * Writes the thumbnail, or its planes, to the destination of the task.
+	 */
+	private static void encodeImage(Work work) throws IOException {
+		ThumbnailTask<?, ?> task = work.task;
+		
+		if (work.thumbnailPlanes != null) {
+			try {
+				task.writeYCbCr(work.thumbnailPlanes);
+			} finally {
+				work.thumbnailPlanes.release();
+				work.thumbnailPlanes = null;
+			}
+			return;
+		}
+		
+		BufferedImage sourceImage = work.sourceImage;
+		BufferedImage destinationImage = work.thumbnail;
 		
 		// Write the thumbnail image to the destination.
 		task.write(destinationImage);
 		
-		sourceImage.flush();
-		destinationImage.flush();
+		/*
+		 * Hand back the images to the allocator, so that pooled images can
+		 * be reused. Images which are owned by the caller, such as a source
+		 * image given as a BufferedImage, or a thumbnail which is returned as
+		 * a BufferedImage, are only flushed.
+		 */
+		if (task.getSource() instanceof BufferedImage) {
+			sourceImage.flush();
+		} else {
+			BufferedImageBuilder.release(sourceImage);
+		}
+		
+		if (task.getDestination() instanceof BufferedImage) {
+			destinationImage.flush();
+		} else {
+			BufferedImageBuilder.release(destinationImage);
+		}
+	}
+	
+	/**
+	 * Releases the images of a work whose thumbnail is not going to be
+	 * written, such as when it was cancelled or a step failed. A source
+	 * image which is owned by the caller is only flushed.
+	 * 
+	 * @param work				The work to discard.
+	 */
+	static void discard(Work work) {
+		if (work.sourcePlanes != null) {
+			work.sourcePlanes.release();
+			work.sourcePlanes = null;
+		}
+		if (work.thumbnailPlanes != null) {
+			work.thumbnailPlanes.release();
+			work.thumbnailPlanes = null;
+		}
+		if (work.thumbnail != null && work.thumbnail != work.sourceImage) {
+			BufferedImageBuilder.release(work.thumbnail);
+		}
+		work.thumbnail = null;
+		if (work.sourceImage != null) {
+			if (work.task.getSource() instanceof BufferedImage) {
+				work.sourceImage.flush();
+			} else {
+				BufferedImageBuilder.release(work.sourceImage);
+			}
+			work.sourceImage = null;
+		}
+	}
+	
+	/**
+	 * Resizes the luma and chroma planes of a JPEG image.
+	 * <p>
+	 * The luma plane is resized to the size of the thumbnail, and the chroma
+	 * planes to half its width and height, which is the chroma resolution
+	 * the thumbnail is written with.
+	 * 
+	 * @param work				The work of the thumbnail, which is told
+	 * 							about the resizer of the luma plane.
+	 * @param source			The planes of the source image, which are
+	 * 							released by this method.
+	 * @return					The planes of the thumbnail.
+	 */
+	private static YCbCrImage resizePlanes(Work work, YCbCrImage source) {
+		ThumbnailParameter param = getResizeParameter(work.task);
+		BufferedImage[] planes = new BufferedImage[source.getPlaneCount()];
+		boolean resized = false;
+		try {
+			ThumbnailMaker lumaMaker;
+			if (param.getSize() != null) {
+				Dimension size = param.getSize();
+				lumaMaker =
+					new FixedSizeThumbnailMaker()
+						.size(size.width, size.height)
+						.keepAspectRatio(param.isKeepAspectRatio())
+						.fitWithinDimensions(param.fitWithinDimenions())
+						.imageType(BufferedImage.TYPE_BYTE_GRAY)
+						.resizerFactory(param.getResizerFactory());
+
+			} else if (!Double.isNaN(param.getWidthScalingFactor())) {
+				lumaMaker =
+					new ScaledThumbnailMaker()
+						.scale(param.getWidthScalingFactor(), param.getHeightScalingFactor())
+						.imageType(BufferedImage.TYPE_BYTE_GRAY)
+						.resizerFactory(param.getResizerFactory());
+
+			} else {
+				throw new IllegalStateException("Parameters to make thumbnail" +
+						" does not have scaling factor nor thumbnail size specified.");
+			}
+			planes[0] = lumaMaker.make(source.getPlane(0));
+			work.resizerClass = lumaMaker.getLastResizer().getClass();
+			
+			int chromaWidth = (planes[0].getWidth() + 1) / 2;
+			int chromaHeight = (planes[0].getHeight() + 1) / 2;
+			for (int i = 1; i < planes.length; i++) {
+				planes[i] =
+					new FixedSizeThumbnailMaker(chromaWidth, chromaHeight, false, true)
+						.imageType(BufferedImage.TYPE_BYTE_GRAY)
+						.resizerFactory(param.getResizerFactory())
+						.make(source.getPlane(i));
+			}
+			resized = true;
+		} finally {
+			source.release();
+			if (!resized) {
+				// Release the planes resized before the failure.
+				for (BufferedImage plane : planes) {
+					if (plane != null) {
+						BufferedImageBuilder.release(plane);
+					}
+				}
+			}
+		}
+		
+		return new YCbCrImage(planes);
+	}
+	
+	/**
+	 * Creates several thumbnails of different sizes from one source image,
+	 * which is read only once.
+	 * <p>
+	 * The thumbnails are made as a cascade from the largest to the smallest:
+	 * each thumbnail is resized from the smallest thumbnail made so far which
+	 * is at least as large in both dimensions, rather than from the source
+	 * image. The image filters of each parameter are applied to a copy of
+	 * the resized image before it is written, so that the filters of one
+	 * thumbnail do not appear in the thumbnails resized from it.
+	 * <p>
+	 * The source region and whether to use the Exif orientation are taken
+	 * from the first parameter, as the source image is read once for all
+	 * thumbnails. Each parameter must specify the size of its thumbnail.
+	 * 
+	 * @param source			The source of the image.
+	 * @param params			The parameters of each thumbnail.
+	 * @param destinations		The destination of each thumbnail, in the
+	 * 							same order as the parameters.
+	 * @param executor			An executor which applies the image filters
+	 * 							to and writes the thumbnails while smaller
+	 * 							thumbnails are being resized, or {@code null}
+	 * 							to write each thumbnail on the calling thread.
+	 * @throws IOException		Thrown when a problem occurs when reading the
+	 * 							image or writing a thumbnail.
+	 * @throws IllegalArgumentException	If no parameters are given, the
+	 * 									number of parameters and destinations
+	 * 									differ, or a parameter does not
+	 * 									specify a size.
+	 */
+	public static void createRenditions(
+			ImageSource<?> source,
+			List<ThumbnailParameter> params,
+			List<? extends ImageSink<?>> destinations,
+			Executor executor
+	) throws IOException {
+		if (params.isEmpty()) {
+			throw new IllegalArgumentException("No renditions specified.");
+		}
+		if (params.size() != destinations.size()) {
+			throw new IllegalArgumentException(
+					"Number of parameters and destinations differ."
+			);
+		}
+		
+		// Read the source with a size which covers every thumbnail.
+		int decodeWidth = 0;
+		int decodeHeight = 0;
+		for (ThumbnailParameter param : params) {
+			Dimension size = getRenditionSize(param);
+			decodeWidth = Math.max(decodeWidth, size.width);
+			decodeHeight = Math.max(decodeHeight, size.height);
+		}
+		ThumbnailParameter first = params.get(0);
+		ThumbnailParameter decodeParam = new ThumbnailParameter(
+				new Dimension(decodeWidth, decodeHeight),
+				first.getSourceRegion(),
+				first.isKeepAspectRatio(),
+				first.getOutputFormat(),
+				first.getOutputFormatType(),
+				first.getOutputQuality(),
+				first.getType(),
+				null,
+				first.getResizerFactory(),
+				first.fitWithinDimenions(),
+				first.useExifOrientation()
+		);
+		source.setThumbnailParameter(decodeParam);
+		BufferedImage sourceImage = source.read();
+		String inputFormatName = source.getInputFormatName();
+		
+		// The Exif orientation is applied once, before the image is resized.
+		for (ImageFilter filter : decodeParam.getImageFilters()) {
+			BufferedImage filteredImage = filter.apply(sourceImage);
+			releaseIntermediate(sourceImage, filteredImage);
+			sourceImage = filteredImage;
+		}
+		
+		// Resize from the largest to the smallest thumbnail.
+		int count = params.size();
+		Dimension[] sizes = new Dimension[count];
+		Integer[] order = new Integer[count];
+		for (int i = 0; i < count; i++) {
+			ThumbnailParameter param = params.get(i);
+			Dimension box = getRenditionSize(param);
+			sizes[i] = new FixedSizeThumbnailMaker(box.width, box.height, param.isKeepAspectRatio(), param.fitWithinDimenions())
+					.calculateSize(sourceImage.getWidth(), sourceImage.getHeight());
+			order[i] = i;
+		}
+		final Dimension[] thumbnailSizes = sizes;
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				long areaA = (long)thumbnailSizes[a].width * thumbnailSizes[a].height;
+				long areaB = (long)thumbnailSizes[b].width * thumbnailSizes[b].height;
+				return Long.compare(areaB, areaA);
+			}
+		});
+		
+		BufferedImage[] resized = new BufferedImage[count];
+		RenditionWriter[] writers = new RenditionWriter[count];
+		List<Future<?>> writes = new ArrayList<Future<?>>();
+		AtomicBoolean abandoned = new AtomicBoolean();
+		ImageAllocator allocator = BufferedImageBuilder.getCurrentAllocator();
+		try {
+			for (int i : order) {
+				ThumbnailParameter param = params.get(i);
+				Dimension size = sizes[i];
+				
+				BufferedImage base = sourceImage;
+				for (BufferedImage candidate : resized) {
+					if (candidate != null
+							&& candidate.getWidth() >= size.width
+							&& candidate.getHeight() >= size.height
+							&& (long)candidate.getWidth() * candidate.getHeight()
+								< (long)base.getWidth() * base.getHeight()) {
+						base = candidate;
+					}
+				}
+				
+				int imageType = param.getType();
+				if (param.useOriginalImageType()) {
+					imageType = RasterImages.getImageType(sourceImage);
+					if (imageType == BufferedImage.TYPE_CUSTOM) {
+						imageType = ThumbnailParameter.DEFAULT_IMAGE_TYPE;
+					}
+				}
+				
+				resized[i] =
+					new FixedSizeThumbnailMaker(size.width, size.height, false, true)
+						.imageType(imageType)
+						.resizerFactory(param.getResizerFactory())
+						.make(base);
+				
+				writers[i] = new RenditionWriter(
+						resized[i], param, destinations.get(i), inputFormatName, allocator, abandoned
+				);
+				FutureTask<Void> write = new FutureTask<Void>(writers[i]);
+				if (executor != null) {
+					executor.execute(write);
+				} else {
+					write.run();
+				}
+				writes.add(write);
+			}
+			
+			awaitAll(writes);
+			
+		} finally {
+			/*
+			 * Writes which have not started yet are skipped, but the images
+			 * are only released once no write can still be using them.
+			 */
+			abandoned.set(true);
+			awaitQuietly(writes);
+			for (int i = 0; i < count; i++) {
+				BufferedImage img = resized[i];
+				if (img == null || img == sourceImage) {
+					continue;
+				}
+				if (writers[i] != null && writers[i].isHandedOver()) {
+					// The image belongs to the caller now.
+					img.flush();
+				} else {
+					BufferedImageBuilder.release(img);
+				}
+			}
+			if (source.getSource() instanceof BufferedImage) {
+				sourceImage.flush();
+			} else {
+				BufferedImageBuilder.release(sourceImage);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the size a rendition should fit in, with the width and height
+	 * swapped if the filters rotate the thumbnail by 90 degrees.
+	 */
+	private static Dimension getRenditionSize(ThumbnailParameter param) {
+		Dimension size = param.getSize();
+		if (size == null) {
+			throw new IllegalArgumentException(
+					"The size of each rendition must be specified."
+			);
+		}
+		if (hasSwapDimensionsFilter(param.getImageFilters())) {
+			return new Dimension(size.height, size.width);
+		}
+		return size;
+	}
+	
+	/**
+	 * Waits for all writes to complete, and rethrows the exception of the
+	 * first write which failed.
+	 */
+	private static void awaitAll(List<Future<?>> writes) throws IOException {
+		boolean interrupted = false;
+		try {
+			for (Future<?> write : writes) {
+				while (true) {
+					try {
+						write.get();
+						break;
+					} catch (InterruptedException e) {
+						interrupted = true;
+					} catch (ExecutionException e) {
+						Throwable cause = e.getCause();
+						if (cause instanceof IOException) {
+							throw (IOException)cause;
+						} else if (cause instanceof RuntimeException) {
+							throw (RuntimeException)cause;
+						} else if (cause instanceof Error) {
+							throw (Error)cause;
+						}
+						throw new IOException(cause);
+					}
+				}
+			}
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+	
+	/**
+	 * Waits for all writes to complete, without throwing their exceptions.
+	 */
+	private static void awaitQuietly(List<Future<?>> writes) {
+		boolean interrupted = false;
+		for (Future<?> write : writes) {
+			while (true) {
+				try {
+					write.get();
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				} catch (ExecutionException e) {
+					break;
+				}
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Applies the image filters of a rendition to a resized image, and
+	 * writes the result to the destination of the rendition.
+	 */
+	private static final class RenditionWriter implements Callable<Void> {
+		private final BufferedImage img;
+		private final ThumbnailParameter param;
+		private final ImageSink<?> destination;
+		private final String inputFormatName;
+		private final ImageAllocator allocator;
+		private final AtomicBoolean abandoned;
+		
+		/**
+		 * Whether the resized image itself was given to a destination which
+		 * keeps it, such as a {@link BufferedImage} sink.
+		 */
+		private volatile boolean handedOver;
+		
+		RenditionWriter(BufferedImage img, ThumbnailParameter param, ImageSink<?> destination, String inputFormatName, ImageAllocator allocator, AtomicBoolean abandoned) {
+			this.img = img;
+			this.param = param;
+			this.destination = destination;
+			this.inputFormatName = inputFormatName;
+			this.allocator = allocator;
+			this.abandoned = abandoned;
+		}
+		
+		/**
+		 * Returns whether the resized image belongs to the destination, so
+		 * that it must not be released.
+		 */
+		boolean isHandedOver() {
+			return handedOver;
+		}
+		
+		public Void call() throws IOException {
+			if (abandoned.get()) {
+				// Another rendition has failed.
+				return null;
+			}
+			ImageAllocator previous = BufferedImageBuilder.setThreadAllocator(allocator);
+			try {
+				// The resized image is kept intact for smaller renditions.
+				BufferedImage thumbnail = img;
+				for (ImageFilter filter : param.getImageFilters()) {
+					BufferedImage filteredImage = filter.apply(thumbnail);
+					if (thumbnail != img) {
+						releaseIntermediate(thumbnail, filteredImage);
+					}
+					thumbnail = filteredImage;
+				}
+				
+				destination.setThumbnailParameter(param);
+				destination.setOutputFormatName(getOutputFormatName());
+				destination.write(thumbnail);
+				
+				if (destination.getSink() instanceof BufferedImage) {
+					handedOver = thumbnail == img;
+				} else if (thumbnail != img) {
+					BufferedImageBuilder.release(thumbnail);
+				}
+				return null;
+				
+			} finally {
+				BufferedImageBuilder.setThreadAllocator(previous);
+			}
+		}
+		
+		private String getOutputFormatName() {
+			String formatName = param.getOutputFormat();
+			if (ThumbnailParameter.DETERMINE_FORMAT.equals(formatName)) {
+				formatName = destination.preferredOutputFormatName();
+			}
+			if (formatName == ThumbnailParameter.ORIGINAL_FORMAT) {
+				return inputFormatName;
+			}
+			return formatName;
+		}
+	}
+	
+	/**
+	 * Releases an intermediate image which was replaced by the result of an
+	 * image filter, unless the result still refers to its pixel data.
+	 * 
+	 * @param previous		The image given to the filter.
+	 * @param result		The image returned by the filter.
+	 */
+	private static void releaseIntermediate(BufferedImage previous, BufferedImage result) {
+		if (previous == result) {
+			return;
+		}
+		if (previous.getRaster().getDataBuffer() == result.getRaster().getDataBuffer()) {
+			return;
+		}
+		BufferedImageBuilder.release(previous);
 	}
 
 	private static boolean hasSwapDimensionsFilter(List<ImageFilter> imageFilters) {
@@ -35,13 +35,25 @@ import java.io.OutputStream;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
+import java.util.Spliterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import javax.imageio.ImageIO;
 
+import net.evonit.thumbnailator2.builders.BufferedImageBuilder;
+import net.evonit.thumbnailator2.builders.ImageAllocator;
 import net.evonit.thumbnailator2.filters.Canvas;
 import net.evonit.thumbnailator2.filters.ImageFilter;
 import net.evonit.thumbnailator2.filters.Pipeline;
@@ -66,14 +78,20 @@ import net.evonit.thumbnailator2.resizers.configurations.Antialiasing;
 import net.evonit.thumbnailator2.resizers.configurations.Dithering;
 import net.evonit.thumbnailator2.resizers.configurations.Rendering;
 import net.evonit.thumbnailator2.resizers.configurations.ScalingMode;
-import net.evonit.thumbnailator2.tasks.SourceSinkThumbnailTask;
+import net.evonit.thumbnailator2.tasks.DestinationExistsException;
+import net.evonit.thumbnailator2.tasks.ImageLimitExceededException;
+import net.evonit.thumbnailator2.tasks.ThumbnailTimeoutException;
 import net.evonit.thumbnailator2.tasks.io.BufferedImageSink;
 import net.evonit.thumbnailator2.tasks.io.BufferedImageSource;
+import net.evonit.thumbnailator2.tasks.io.Cancellation;
 import net.evonit.thumbnailator2.tasks.io.FileImageSink;
 import net.evonit.thumbnailator2.tasks.io.FileImageSource;
+import net.evonit.thumbnailator2.tasks.io.ImageLimits;
+import net.evonit.thumbnailator2.tasks.io.ImageSink;
 import net.evonit.thumbnailator2.tasks.io.ImageSource;
 import net.evonit.thumbnailator2.tasks.io.InputStreamImageSource;
 import net.evonit.thumbnailator2.tasks.io.OutputStreamImageSink;
+import net.evonit.thumbnailator2.tasks.io.URLFetcher;
 import net.evonit.thumbnailator2.tasks.io.URLImageSource;
 import net.evonit.thumbnailator2.util.ThumbnailatorUtils;
 
@@ -240,7 +258,7 @@ public final class Thumbnails {
 	public static Builder<URL> of(URL... urls) {
 		checkForNull(urls, "Cannot specify null for input URLs.");
 		checkForEmpty(urls, "Cannot specify an empty array for input URLs.");
-		return Builder.ofUrls(Arrays.asList(urls));
+		return Builder.ofUrls(Arrays.asList(urls), null);
 	}
 	
 	/**
@@ -326,7 +344,27 @@ public final class Thumbnails {
 	public static Builder<URL> fromURLs(Iterable<URL> urls) {
 		checkForNull(urls, "Cannot specify null for input URLs.");
 		checkForEmpty(urls, "Cannot specify an empty collection for input URLs.");
-		return Builder.ofUrls(urls);
+		return Builder.ofUrls(urls, null);
+	}
+	
+	/**
+	 * Indicate to make thumbnails for images with the specified {@link URL}s,
+	 * retrieving the data at each URL with the given {@link URLFetcher}.
+	 * 
+	 * @param urls		URLs of the images for which thumbnails
+	 * 					are to be produced.
+	 * @param fetcher	The fetcher to use to retrieve the images, such as
+	 * 					an {@link net.evonit.thumbnailator2.tasks.io.HttpURLFetcher}.
+	 * @return			Reference to a builder object which is used to
+	 * 					specify the parameters for creating the thumbnail.
+	 * @throws NullPointerException		If an argument is {@code null}.
+	 * @throws IllegalArgumentException	If the argument is an empty collection.
+	 */
+	public static Builder<URL> fromURLs(Iterable<URL> urls, URLFetcher fetcher) {
+		checkForNull(urls, "Cannot specify null for input URLs.");
+		checkForEmpty(urls, "Cannot specify an empty collection for input URLs.");
+		checkForNull(fetcher, "Cannot specify null for fetcher.");
+		return Builder.ofUrls(urls, fetcher);
 	}
 	
 	/**
@@ -367,6 +405,22 @@ public final class Thumbnails {
 		return Builder.ofBufferedImages(images);
 	}
 
+	/**
+	 * Returns a builder which is used to compile a {@link ThumbnailPlan},
+	 * which applies the settings of the builder to source images which are
+	 * given later.
+	 * <p>
+	 * The builder has no source images, so {@link Builder#toPlan()} is the
+	 * only output method which should be called on it.
+	 * 
+	 * @return			Reference to a builder object which is used to
+	 * 					specify the parameters for creating the thumbnails.
+	 * @see Builder#toPlan()
+	 */
+	public static Builder<Void> newPlan() {
+		return new Builder<Void>(Collections.<ImageSource<Void>>emptyList());
+	}
+
 	/**
 	 * The builder interface for Thumbnailator to set up the thumbnail
 	 * generation task.
@@ -466,6 +520,15 @@ instance.asFiles("path/to/thumbnail");
 					}
 				};
 			}
+			
+			@Override
+			public Spliterator<ImageSource<File>> spliterator() {
+				return new ImageSourceSpliterator<String, File>(filenames.spliterator()) {
+					ImageSource<File> toImageSource(String filename) {
+						return new FileImageSource(filename);
+					}
+				};
+			}
 		}
 		
 		private static final class FileImageSourceIterator implements
@@ -494,15 +557,30 @@ instance.asFiles("path/to/thumbnail");
 					}
 				};
 			}
+			
+			@Override
+			public Spliterator<ImageSource<File>> spliterator() {
+				return new ImageSourceSpliterator<File, File>(files.spliterator()) {
+					ImageSource<File> toImageSource(File file) {
+						return new FileImageSource(file);
+					}
+				};
+			}
 		}
 		
 		private static final class URLImageSourceIterator implements
 				Iterable<ImageSource<URL>> {
 
 			private final Iterable<URL> urls;
+			private final URLFetcher fetcher;
 			
-			private URLImageSourceIterator(Iterable<URL> urls) {
+			private URLImageSourceIterator(Iterable<URL> urls, URLFetcher fetcher) {
 				this.urls = urls;
+				this.fetcher = fetcher;
+			}
+			
+			private ImageSource<URL> toImageSource(URL url) {
+				return fetcher == null ? new URLImageSource(url) : new URLImageSource(url, fetcher);
 			}
 			
 			public Iterator<ImageSource<URL>> iterator() {
@@ -514,7 +592,7 @@ instance.asFiles("path/to/thumbnail");
 					}
 					
 					public ImageSource<URL> next() {
-						return new URLImageSource(iter.next());
+						return toImageSource(iter.next());
 					}
 					
 					public void remove() {
@@ -522,6 +600,15 @@ instance.asFiles("path/to/thumbnail");
 					}
 				};
 			}
+			
+			@Override
+			public Spliterator<ImageSource<URL>> spliterator() {
+				return new ImageSourceSpliterator<URL, URL>(urls.spliterator()) {
+					ImageSource<URL> toImageSource(URL url) {
+						return URLImageSourceIterator.this.toImageSource(url);
+					}
+				};
+			}
 		}
 		
 		private static final class InputStreamImageSourceIterator implements
@@ -550,6 +637,15 @@ instance.asFiles("path/to/thumbnail");
 					}
 				};
 			}
+			
+			@Override
+			public Spliterator<ImageSource<InputStream>> spliterator() {
+				return new ImageSourceSpliterator<InputStream, InputStream>(inputStreams.spliterator()) {
+					ImageSource<InputStream> toImageSource(InputStream is) {
+						return new InputStreamImageSource(is);
+					}
+				};
+			}
 		}
 		
 		private static final class BufferedImageImageSourceIterator implements
@@ -578,6 +674,64 @@ instance.asFiles("path/to/thumbnail");
 					}
 				};
 			}
+			
+			@Override
+			public Spliterator<ImageSource<BufferedImage>> spliterator() {
+				return new ImageSourceSpliterator<BufferedImage, BufferedImage>(image.spliterator()) {
+					ImageSource<BufferedImage> toImageSource(BufferedImage img) {
+						return new BufferedImageSource(img);
+					}
+				};
+			}
+		}
+
+		/**
+		 * A {@link Spliterator} of image sources, which splits as the
+		 * spliterator of the files, URLs or images it creates them from.
+		 * 
+		 * @param <S>		The type of the files, URLs or images.
+		 * @param <T>		The type of the source images.
+		 */
+		private static abstract class ImageSourceSpliterator<S, T> implements
+				Spliterator<ImageSource<T>> {
+			
+			private final Spliterator<? extends S> spliterator;
+			
+			private ImageSourceSpliterator(Spliterator<? extends S> spliterator) {
+				this.spliterator = spliterator;
+			}
+			
+			abstract ImageSource<T> toImageSource(S source);
+			
+			public boolean tryAdvance(final Consumer<? super ImageSource<T>> action) {
+				return spliterator.tryAdvance(new Consumer<S>() {
+					public void accept(S source) {
+						action.accept(toImageSource(source));
+					}
+				});
+			}
+			
+			public Spliterator<ImageSource<T>> trySplit() {
+				Spliterator<? extends S> prefix = spliterator.trySplit();
+				if (prefix == null) {
+					return null;
+				}
+				
+				final ImageSourceSpliterator<S, T> parent = this;
+				return new ImageSourceSpliterator<S, T>(prefix) {
+					ImageSource<T> toImageSource(S source) {
+						return parent.toImageSource(source);
+					}
+				};
+			}
+			
+			public long estimateSize() {
+				return spliterator.estimateSize();
+			}
+			
+			public int characteristics() {
+				return (spliterator.characteristics() & (ORDERED | SIZED | SUBSIZED)) | NONNULL;
+			}
 		}
 
 		private static Builder<File> ofStrings(Iterable<String> filenames) {
@@ -590,8 +744,8 @@ instance.asFiles("path/to/thumbnail");
 			return new Builder<File>(iter);
 		}
 		
-		private static Builder<URL> ofUrls(Iterable<URL> urls) {
-			Iterable<ImageSource<URL>> iter = new URLImageSourceIterator(urls);
+		private static Builder<URL> ofUrls(Iterable<URL> urls, URLFetcher fetcher) {
+			Iterable<ImageSource<URL>> iter = new URLImageSourceIterator(urls, fetcher);
 			return new Builder<URL>(iter);
 		}
 		
@@ -607,8 +761,26 @@ instance.asFiles("path/to/thumbnail");
 
 		private final class BufferedImageIterable implements
 				Iterable<BufferedImage> {
+			
+			private final ThumbnailPlan plan;
+			private final int prefetchDepth;
+			private final long prefetchBytes;
+			private final Executor prefetchExecutor;
+			
+			private BufferedImageIterable(ThumbnailPlan plan) {
+				this.plan = plan;
+				this.prefetchDepth = Builder.this.prefetchDepth;
+				this.prefetchBytes = Builder.this.prefetchBytes;
+				this.prefetchExecutor = getAsyncExecutor();
+			}
 
 			public Iterator<BufferedImage> iterator() {
+				if (prefetchDepth > 0) {
+					return new PrefetchingIterator<T>(
+							plan, sources.iterator(), prefetchExecutor, prefetchDepth, prefetchBytes
+					);
+				}
+				
 				return new Iterator<BufferedImage>() {
 					Iterator<ImageSource<T>> sourceIter = sources.iterator();
 
@@ -621,9 +793,7 @@ instance.asFiles("path/to/thumbnail");
 						BufferedImageSink destination = new BufferedImageSink();
 						
 						try {
-							Thumbnailator.createThumbnail(
-									new SourceSinkThumbnailTask<T, BufferedImage>(makeParam(), source, destination)
-							);
+							plan.apply(source, destination);
 						} catch (IOException e) {
 							return null;
 						}
@@ -691,6 +861,15 @@ instance.asFiles("path/to/thumbnail");
 			ALLOW_OVERWRITE("allowOverwrite"),
 			CROP("crop"),
 			USE_EXIF_ORIENTATION("useExifOrientation"),
+			IMAGE_ALLOCATOR("imageAllocator"),
+			PARALLELISM("parallelism"),
+			EXECUTOR("executor"),
+			PIPELINE("pipeline"),
+			PREFETCH("prefetch"),
+			VIRTUAL_THREADS("virtualThreads"),
+			TIMEOUT("timeout"),
+			LIMITS("limits"),
+			LISTENER("listener"),
 			;
 			
 			private final String name;
@@ -733,6 +912,15 @@ instance.asFiles("path/to/thumbnail");
 			statusMap.put(Properties.ALLOW_OVERWRITE, Status.OPTIONAL);
 			statusMap.put(Properties.CROP, Status.OPTIONAL);
 			statusMap.put(Properties.USE_EXIF_ORIENTATION, Status.OPTIONAL);
+			statusMap.put(Properties.IMAGE_ALLOCATOR, Status.OPTIONAL);
+			statusMap.put(Properties.PARALLELISM, Status.OPTIONAL);
+			statusMap.put(Properties.EXECUTOR, Status.OPTIONAL);
+			statusMap.put(Properties.PIPELINE, Status.OPTIONAL);
+			statusMap.put(Properties.PREFETCH, Status.OPTIONAL);
+			statusMap.put(Properties.VIRTUAL_THREADS, Status.OPTIONAL);
+			statusMap.put(Properties.TIMEOUT, Status.OPTIONAL);
+			statusMap.put(Properties.LIMITS, Status.OPTIONAL);
+			statusMap.put(Properties.LISTENER, Status.OPTIONAL);
 		}
 
 		/**
@@ -814,6 +1002,74 @@ instance.asFiles("path/to/thumbnail");
 		 */
 		private Pipeline filterPipeline = new Pipeline();
 		
+		/**
+		 * The {@link ImageAllocator} used while creating thumbnails, or
+		 * {@code null} to use the allocator of the current thread.
+		 */
+		private ImageAllocator imageAllocator = null;
+		
+		/**
+		 * The maximum number of thumbnails created at the same time by the
+		 * output methods for multiple thumbnails, or {@code 0} if it has
+		 * not been set.
+		 */
+		private int parallelism = 0;
+		
+		/**
+		 * The executor on which the output methods for multiple thumbnails
+		 * create the thumbnails, or {@code null} if it has not been set.
+		 */
+		private Executor executor = null;
+		
+		/**
+		 * The pipeline in which the output methods for multiple thumbnails
+		 * create the thumbnails, or {@code null} if it has not been set.
+		 */
+		private ThumbnailPipeline pipeline = null;
+		
+		/**
+		 * Whether the output methods for multiple thumbnails create each
+		 * thumbnail on a virtual thread.
+		 */
+		private boolean virtualThreads = false;
+		
+		/**
+		 * The number of thumbnails in progress on virtual threads, when
+		 * {@link #parallelism(int)} is not set.
+		 */
+		private static final int DEFAULT_VIRTUAL_PARALLELISM = 256;
+		
+		/**
+		 * The number of thumbnails which {@link #iterableBufferedImages()}
+		 * creates ahead, or {@code 0} if they are not created ahead.
+		 */
+		private int prefetchDepth = 0;
+		
+		/**
+		 * The number of bytes of the thumbnails which
+		 * {@link #iterableBufferedImages()} creates ahead.
+		 */
+		private long prefetchBytes = Long.MAX_VALUE;
+		
+		/**
+		 * The time within which each thumbnail should be created, in
+		 * nanoseconds, or {@code 0} if the time is not limited.
+		 */
+		private long timeout = 0;
+		
+		/**
+		 * The limits on the source images, or {@code null} to use the
+		 * limits given by {@link net.evonit.thumbnailator2.util.Configurations}.
+		 */
+		private ImageLimits imageLimits = null;
+		
+		/**
+		 * The listener to tell about the stages of each thumbnail, or
+		 * {@code null} to only tell the listeners registered with
+		 * {@link Thumbnailator#addListener(ThumbnailListener)}.
+		 */
+		private ThumbnailListener listener = null;
+		
 		/**
 		 * Sets the size of the thumbnail.
 		 * <p>
@@ -1361,6 +1617,341 @@ Thumbnails.of(image)
 			return this;
 		}
 		
+		/**
+		 * Sets the {@link ImageAllocator} from which the images used while
+		 * creating thumbnails are obtained.
+		 * <p>
+		 * This can be used to keep very large images out of the Java heap,
+		 * for example by storing them in memory-mapped files using a
+		 * {@link net.evonit.thumbnailator2.builders.MappedImageAllocator}.
+		 * <p>
+		 * Calling this method to set this parameter is optional.
+		 * <p>
+		 * Calling this method multiple times will result in an
+		 * {@link IllegalStateException} to be thrown.
+		 * 
+		 * @param allocator		The allocator to use.
+		 * @return				Reference to this object.
+		 * @see BufferedImageBuilder#setDefaultAllocator(ImageAllocator)
+		 */
+		public Builder<T> imageAllocator(ImageAllocator allocator) {
+			checkForNull(allocator, "ImageAllocator is null.");
+			updateStatus(Properties.IMAGE_ALLOCATOR, Status.ALREADY_SET);
+			this.imageAllocator = allocator;
+			return this;
+		}
+		
+		/**
+		 * Sets the maximum number of thumbnails which are created at the same
+		 * time by the output methods which create multiple thumbnails, such as
+		 * {@link #asFiles(Rename)}, {@link #toFiles(Iterable)},
+		 * {@link #asBufferedImages()} and {@link #toOutputStreams(Iterable)}.
+		 * <p>
+		 * The thumbnails are created on the executor given by
+		 * {@link #executor(Executor)}, or on threads which are created for
+		 * each call of the output method if no executor is given. The
+		 * thumbnails are returned in the order of the source images, and the
+		 * destination file names are decided in that order as well, so
+		 * {@link Rename} functions and
+		 * {@link net.evonit.thumbnailator2.name.ConsecutivelyNumberedFilenames}
+		 * give the same names as when the thumbnails are created one after
+		 * the other.
+		 * <p>
+		 * When thumbnails are created concurrently, a failure does not stop
+		 * the other thumbnails from being created. Once all thumbnails have
+		 * been processed, the failures are thrown together as a
+		 * {@link ThumbnailBatchException}.
+		 * <p>
+		 * Calling this method to set this parameter is optional. By default,
+		 * the thumbnails are created one after the other on the calling
+		 * thread, or, if an executor is given, up to as many at the same time
+		 * as there are processors.
+		 * <p>
+		 * Calling this method multiple times will result in an
+		 * {@link IllegalStateException} to be thrown.
+		 * 
+		 * @param parallelism	The maximum number of thumbnails which are
+		 * 						created at the same time.
+		 * @return				Reference to this object.
+		 * @throws IllegalArgumentException	If the parallelism is less than 1.
+		 */
+		public Builder<T> parallelism(int parallelism) {
+			if (parallelism < 1) {
+				throw new IllegalArgumentException("Parallelism must be at least 1.");
+			}
+			updateStatus(Properties.PARALLELISM, Status.ALREADY_SET);
+			this.parallelism = parallelism;
+			return this;
+		}
+		
+		/**
+		 * Sets the executor on which the output methods which create multiple
+		 * thumbnails create the thumbnails.
+		 * <p>
+		 * The number of thumbnails which are given to the executor at the
+		 * same time is limited by {@link #parallelism(int)}, so that a batch
+		 * of source images does not fill the queue of a shared executor.
+		 * See {@link #parallelism(int)} for the order of the thumbnails and
+		 * the handling of failures.
+		 * <p>
+		 * Calling this method to set this parameter is optional.
+		 * <p>
+		 * Calling this method multiple times will result in an
+		 * {@link IllegalStateException} to be thrown.
+		 * <p>
+		 * This method cannot be called in conjunction with the
+		 * {@link #pipeline(ThumbnailPipeline)} or {@link #virtualThreads()}
+		 * methods.
+		 * 
+		 * @param executor		The executor on which thumbnails are created.
+		 * @return				Reference to this object.
+		 */
+		public Builder<T> executor(Executor executor) {
+			checkForNull(executor, "Executor is null.");
+			updateStatus(Properties.PIPELINE, Status.CANNOT_SET);
+			updateStatus(Properties.VIRTUAL_THREADS, Status.CANNOT_SET);
+			updateStatus(Properties.EXECUTOR, Status.ALREADY_SET);
+			this.executor = executor;
+			return this;
+		}
+		
+		/**
+		 * Sets the {@link ThumbnailPipeline} in which the output methods
+		 * which create multiple thumbnails create the thumbnails.
+		 * <p>
+		 * The pipeline reads, resizes and writes the thumbnails in separate
+		 * stages, each with its own threads. The number of thumbnails which
+		 * are given to the pipeline at the same time is limited by
+		 * {@link #parallelism(int)} if it is set, and otherwise by the
+		 * capacity of the pipeline. See {@link #parallelism(int)} for the
+		 * order of the thumbnails and the handling of failures.
+		 * <p>
+		 * Calling this method to set this parameter is optional.
+		 * <p>
+		 * Calling this method multiple times will result in an
+		 * {@link IllegalStateException} to be thrown.
+		 * <p>
+		 * This method cannot be called in conjunction with the
+		 * {@link #executor(Executor)} or {@link #virtualThreads()} methods.
+		 * 
+		 * @param pipeline		The pipeline in which thumbnails are created.
+		 * @return				Reference to this object.
+		 */
+		public Builder<T> pipeline(ThumbnailPipeline pipeline) {
+			checkForNull(pipeline, "Pipeline is null.");
+			updateStatus(Properties.EXECUTOR, Status.CANNOT_SET);
+			updateStatus(Properties.VIRTUAL_THREADS, Status.CANNOT_SET);
+			updateStatus(Properties.PIPELINE, Status.ALREADY_SET);
+			this.pipeline = pipeline;
+			return this;
+		}
+		
+		/**
+		 * Makes the output methods which create multiple thumbnails create
+		 * each thumbnail on a virtual thread, which suits source images that
+		 * are slow to arrive, such as those from {@link Thumbnails#fromURLs(Iterable)}.
+		 * <p>
+		 * The source images are read on the virtual threads, so that many of
+		 * them can be waited for at once without holding a platform thread
+		 * each. Resizing and writing the thumbnails only happens on as many
+		 * threads at the same time as there are processors.
+		 * <p>
+		 * The number of thumbnails in progress, and therefore of source
+		 * images read at the same time, is limited by {@link #parallelism(int)}
+		 * if it is set, and otherwise to 256.
+		 * See {@link #parallelism(int)} for the order of the thumbnails and
+		 * the handling of failures.
+		 * <p>
+		 * Calling this method to set this parameter is optional.
+		 * <p>
+		 * Calling this method multiple times will result in an
+		 * {@link IllegalStateException} to be thrown.
+		 * <p>
+		 * This method cannot be called in conjunction with the
+		 * {@link #executor(Executor)} or {@link #pipeline(ThumbnailPipeline)}
+		 * methods.
+		 * 
+		 * @return				Reference to this object.
+		 * @throws UnsupportedOperationException	If virtual threads are not
+		 * 											available, as they require
+		 * 											Java 21 or later.
+		 */
+		public Builder<T> virtualThreads() {
+			if (!VirtualThreads.isSupported()) {
+				throw new UnsupportedOperationException("Virtual threads require Java 21 or later.");
+			}
+			updateStatus(Properties.EXECUTOR, Status.CANNOT_SET);
+			updateStatus(Properties.PIPELINE, Status.CANNOT_SET);
+			updateStatus(Properties.VIRTUAL_THREADS, Status.ALREADY_SET);
+			this.virtualThreads = true;
+			return this;
+		}
+		
+		/**
+		 * Sets the number of thumbnails which {@link #iterableBufferedImages()}
+		 * creates ahead, while the caller handles the current thumbnail.
+		 * <p>
+		 * The thumbnails are created one at a time, in the order of the
+		 * source images, on the executor given by {@link #executor(Executor)},
+		 * or on the common {@link ForkJoinPool} if no executor is given.
+		 * <p>
+		 * The iterators of the {@link Iterable} implement {@link java.io.Closeable},
+		 * and closing an iterator stops the creation of thumbnails at once.
+		 * An iterator which is abandoned without being closed stops once it
+		 * has created the thumbnails ahead.
+		 * <p>
+		 * Calling this method to set this parameter is optional. By default,
+		 * each thumbnail is created when {@link Iterator#next()} is called.
+		 * <p>
+		 * Calling this method multiple times will result in an
+		 * {@link IllegalStateException} to be thrown.
+		 * 
+		 * @param thumbnails	The maximum number of thumbnails created
+		 * 						ahead.
+		 * @return				Reference to this object.
+		 * @throws IllegalArgumentException	If the number of thumbnails is
+		 * 									less than 1.
+		 * @see #prefetch(int, long)
+		 */
+		public Builder<T> prefetch(int thumbnails) {
+			return prefetch(thumbnails, Long.MAX_VALUE);
+		}
+		
+		/**
+		 * Sets the number of thumbnails which {@link #iterableBufferedImages()}
+		 * creates ahead, while the caller handles the current thumbnail, and
+		 * the number of bytes those thumbnails may use.
+		 * <p>
+		 * No further thumbnail is started once the pixel data of the
+		 * thumbnails created ahead and of one more thumbnail, estimated from
+		 * the last thumbnail, would exceed the number of bytes. At least one
+		 * thumbnail is always created ahead.
+		 * <p>
+		 * See {@link #prefetch(int)} for details.
+		 * 
+		 * @param thumbnails	The maximum number of thumbnails created
+		 * 						ahead.
+		 * @param maxBytes		The maximum number of bytes of pixel data of
+		 * 						the thumbnails created ahead.
+		 * @return				Reference to this object.
+		 * @throws IllegalArgumentException	If the number of thumbnails or
+		 * 									the number of bytes is less than
+		 * 									1.
+		 */
+		public Builder<T> prefetch(int thumbnails, long maxBytes) {
+			if (thumbnails < 1) {
+				throw new IllegalArgumentException("Number of prefetched thumbnails must be at least 1.");
+			}
+			if (maxBytes < 1) {
+				throw new IllegalArgumentException("Number of prefetched bytes must be at least 1.");
+			}
+			updateStatus(Properties.PREFETCH, Status.ALREADY_SET);
+			this.prefetchDepth = thumbnails;
+			this.prefetchBytes = maxBytes;
+			return this;
+		}
+		
+		/**
+		 * Sets the time within which each thumbnail should be created.
+		 * <p>
+		 * The time of a thumbnail starts when its source image starts to be
+		 * read. Once the time has passed, the creation of the thumbnail
+		 * stops with a {@link ThumbnailTimeoutException}: the
+		 * {@link javax.imageio.ImageReader} or {@link javax.imageio.ImageWriter}
+		 * in use is aborted, and decoding and resizing stop at the next row
+		 * or tile of the image. This keeps a single image which takes very
+		 * long to create, such as a very large PNG image, from holding a
+		 * thread for much longer than the time.
+		 * <p>
+		 * The output methods which create multiple thumbnails report a
+		 * thumbnail which timed out like any other failure, and continue
+		 * with the other thumbnails.
+		 * <p>
+		 * Calling this method to set this parameter is optional. By default,
+		 * the time is not limited.
+		 * <p>
+		 * Calling this method multiple times will result in an
+		 * {@link IllegalStateException} to be thrown.
+		 * 
+		 * @param timeout		The time within which each thumbnail should be
+		 * 						created.
+		 * @param unit			The unit of the time.
+		 * @return				Reference to this object.
+		 * @throws IllegalArgumentException	If the time is not positive.
+		 * @throws NullPointerException		If the unit is {@code null}.
+		 */
+		public Builder<T> timeout(long timeout, TimeUnit unit) {
+			checkForNull(unit, "Unit cannot be null.");
+			if (timeout <= 0) {
+				throw new IllegalArgumentException("Timeout must be positive.");
+			}
+			updateStatus(Properties.TIMEOUT, Status.ALREADY_SET);
+			this.timeout = Math.max(1, unit.toNanos(timeout));
+			return this;
+		}
+		
+		/**
+		 * Sets the limits on the dimensions and the number of frames of the
+		 * source images.
+		 * <p>
+		 * The limits are checked once the header of a source image has been
+		 * read. An image which exceeds them is not decoded, and its
+		 * thumbnail fails with an {@link ImageLimitExceededException}. This
+		 * keeps a small file which claims to be a very large image from
+		 * having its pixels allocated.
+		 * <p>
+		 * The limits apply to images which are read, and not to
+		 * {@link BufferedImage}s given as source images.
+		 * <p>
+		 * Calling this method to set this parameter is optional. By default,
+		 * the limits given by
+		 * {@link net.evonit.thumbnailator2.util.Configurations#MAX_PIXELS},
+		 * {@link net.evonit.thumbnailator2.util.Configurations#MAX_DIMENSION}
+		 * and {@link net.evonit.thumbnailator2.util.Configurations#MAX_FRAMES}
+		 * are used, which do not limit images unless they are set.
+		 * <p>
+		 * Calling this method multiple times will result in an
+		 * {@link IllegalStateException} to be thrown.
+		 * 
+		 * @param limits		The limits on the source images.
+		 * @return				Reference to this object.
+		 * @throws NullPointerException		If the limits are {@code null}.
+		 */
+		public Builder<T> limits(ImageLimits limits) {
+			checkForNull(limits, "Limits cannot be null.");
+			updateStatus(Properties.LIMITS, Status.ALREADY_SET);
+			this.imageLimits = limits;
+			return this;
+		}
+		
+		/**
+		 * Sets a listener which is told how long each stage of creating
+		 * each thumbnail took: reading the source image, resizing it,
+		 * applying each image filter, and writing the thumbnail.
+		 * <p>
+		 * The listener is told in addition to the listeners registered with
+		 * {@link Thumbnailator#addListener(ThumbnailListener)}. The stages of
+		 * thumbnails created by {@link #toRenditions(List)} are not
+		 * reported.
+		 * <p>
+		 * Calling this method to set this parameter is optional. By default,
+		 * only the registered listeners are told, and the stages are not
+		 * timed when there are none.
+		 * <p>
+		 * Calling this method multiple times will result in an
+		 * {@link IllegalStateException} to be thrown.
+		 * 
+		 * @param listener		The listener to tell about the stages.
+		 * @return				Reference to this object.
+		 * @throws NullPointerException		If the listener is {@code null}.
+		 */
+		public Builder<T> listener(ThumbnailListener listener) {
+			checkForNull(listener, "Listener cannot be null.");
+			updateStatus(Properties.LISTENER, Status.ALREADY_SET);
+			this.listener = listener;
+			return this;
+		}
+		
 		/**
 		 * Sets the alpha interpolation mode when performing the resizing
 		 * operation to generate the thumbnail.
@@ -2079,6 +2670,9 @@ watermark(Positions.CENTER, image, opacity);
 
 		/**
 		 * Returns a {@link ThumbnailParameter} from the current builder state.
+		 * <p>
+		 * The builder state is not changed, so that the parameters are the
+		 * same however many times this method is called.
 		 * 
 		 * @return			A {@link ThumbnailParameter} from the current
 		 * 					builder state.
@@ -2090,14 +2684,16 @@ watermark(Positions.CENTER, image, opacity);
 			if (imageType == IMAGE_TYPE_UNSPECIFIED) {
 				imageTypeToUse = ThumbnailParameter.ORIGINAL_IMAGE_TYPE;
 			}
-
+			
 			/*
 			 * croppingPosition being non-null means that a crop should
 			 * take place.
 			 */
+			List<ImageFilter> filters = new ArrayList<ImageFilter>();
 			if (croppingPosition != null) {
-				filterPipeline.addFirst(new Canvas(width, height, croppingPosition));
+				filters.add(new Canvas(width, height, croppingPosition));
 			}
+			filters.addAll(filterPipeline.getFilters());
 			
 			if (Double.isNaN(scaleWidth)) {
 				// If the dimensions were specified, do the following.
@@ -2116,22 +2712,24 @@ watermark(Positions.CENTER, image, opacity);
 				}
 				
 				// Set the unspecified dimension to a default value.
+				int widthToUse = width;
+				int heightToUse = height;
 				if (width == DIMENSION_NOT_SPECIFIED) {
-					width = Integer.MAX_VALUE;
+					widthToUse = Integer.MAX_VALUE;
 				}
 				if (height == DIMENSION_NOT_SPECIFIED) {
-					height = Integer.MAX_VALUE;
+					heightToUse = Integer.MAX_VALUE;
 				}
 				
 				return new ThumbnailParameter(
-						new Dimension(width, height),
+						new Dimension(widthToUse, heightToUse),
 						sourceRegion,
 						keepAspectRatio,
 						outputFormat,
 						outputFormatType,
 						outputQuality,
 						imageTypeToUse,
-						filterPipeline.getFilters(),
+						filters,
 						resizerFactory,
 						fitWithinDimenions,
 						useExifOrientation
@@ -2148,37 +2746,153 @@ watermark(Positions.CENTER, image, opacity);
 						outputFormatType,
 						outputQuality,
 						imageTypeToUse,
-						filterPipeline.getFilters(),
+						filters,
 						resizerFactory,
 						fitWithinDimenions,
 						useExifOrientation
 				);
 			}
 		}
-
+		
 		/**
+		 * Compiles the current builder state into a {@link ThumbnailPlan}.
 		 * <p>
-		 * Create the thumbnails and return as a {@link Iterable} of
-		 * {@link BufferedImage}s.
-		 * </p>
-		 * <p>
-		 * Thumbnail for a given input is lazily evaluated as the
-		 * {@link Iterator#next()} method is called on the iterator.
-		 * </p>
+		 * The plan keeps the size, resizer, image filters, output format,
+		 * output quality and the other settings of this builder as they are
+		 * when this method is called. Changing this builder afterwards does
+		 * not affect the plan.
 		 * <p>
-		 * For situations where multiple thumbnails are being generated, this
-		 * method is preferred over the {@link #asBufferedImages()} method,
-		 * as (1) the processing does not have to complete before the method
-		 * returns and (2) the thumbnails can be retrieved one at a time,
-		 * potentially reducing the number of thumbnails which need to be
-		 * retained in the heap memory, potentially reducing the chance of
-		 * {@link OutOfMemoryError}s from occurring.
-		 * </p>
+		 * A plan can be applied to any number of source images, by any
+		 * number of threads at the same time, without repeating the work
+		 * this builder does for each thumbnail. This makes it suitable for
+		 * services which create a thumbnail for each request:
+		 * <pre>
+ThumbnailPlan plan = Thumbnails.newPlan()
+    .size(200, 200)
+    .outputFormat("jpg")
+    .toPlan();
+
+plan.apply(sourceStream, destinationStream);
+		 * </pre>
+		 * 
+		 * @return		A plan which creates thumbnails with the settings
+		 * 				of this builder.
+		 * @throws IllegalStateException	If the size or scaling factor has
+		 * 									not been set.
+		 * @see Thumbnails#newPlan()
+		 */
+		public ThumbnailPlan toPlan() {
+			checkReadiness();
+			return new ThumbnailPlan(makeParam(), imageAllocator, allowOverwrite, timeout, imageLimits, listener);
+		}
+		
+		/**
+		 * Returns a {@link ThumbnailBatch} for the parallelism, executor,
+		 * pipeline and virtual threads set on this builder.
+		 */
+		private ThumbnailBatch newBatch() {
+			if (virtualThreads) {
+				return new ThumbnailBatch(
+						VirtualThreads.newThreadFactory("thumbnailator-virtual-"),
+						parallelism == 0 ? DEFAULT_VIRTUAL_PARALLELISM : parallelism,
+						Runtime.getRuntime().availableProcessors()
+				);
+			}
+			if (pipeline != null) {
+				return new ThumbnailBatch(pipeline, parallelism == 0 ? pipeline.getCapacity() : parallelism);
+			}
+			
+			int parallelismToUse = parallelism;
+			if (parallelismToUse == 0) {
+				parallelismToUse = executor == null ? 1 : Runtime.getRuntime().availableProcessors();
+			}
+			return new ThumbnailBatch(executor, parallelismToUse);
+		}
+		
+		/**
+		 * Returns the source images of this builder.
+		 */
+		Iterable<ImageSource<T>> getSources() {
+			return sources;
+		}
+		
+		/**
+		 * Returns the executor on which thumbnails are created
+		 * asynchronously: the executor set on this builder, or the common
+		 * pool if none is set.
+		 */
+		Executor getAsyncExecutor() {
+			return executor != null ? executor : ForkJoinPool.commonPool();
+		}
+		
+		/**
+		 * Returns the number of thumbnails which are created at once when
+		 * they are created asynchronously: the parallelism set on this
+		 * builder, or the number of processors if none is set.
+		 */
+		int getAsyncParallelism() {
+			return parallelism != 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+		}
+		
+		/**
+		 * Returns the files written by a batch, in the order of the source
+		 * images. Thumbnails which were not written because the destination
+		 * file exists are left out, as they are when the thumbnails are
+		 * created one after the other.
+		 * 
+		 * @param destinations		The destinations of the batch, with
+		 * 							{@code null} for destinations which were
+		 * 							not written.
+		 * @param failures			The failures of the batch.
+		 * @return					The files which were written.
+		 * @throws ThumbnailBatchException	If any other failures occurred.
+		 */
+		private static List<File> getWrittenFiles(List<FileImageSink> destinations, SortedMap<Integer, Throwable> failures) throws ThumbnailBatchException {
+			List<File> destinationFiles = new ArrayList<File>();
+			
+			for (int i = 0; i < destinations.size(); i++) {
+				Throwable failure = failures.get(i);
+				if (failure instanceof DestinationExistsException) {
+					failures.remove(i);
+				} else if (failure == null && destinations.get(i) != null) {
+					destinationFiles.add(destinations.get(i).getSink());
+				}
+			}
+			
+			if (!failures.isEmpty()) {
+				throw new ThumbnailBatchException(failures);
+			}
+			
+			return destinationFiles;
+		}
+
+		/**
+		 * <p>
+		 * Create the thumbnails and return as a {@link Iterable} of
+		 * {@link BufferedImage}s.
+		 * </p>
+		 * <p>
+		 * Thumbnail for a given input is lazily evaluated as the
+		 * {@link Iterator#next()} method is called on the iterator.
+		 * </p>
+		 * <p>
+		 * For situations where multiple thumbnails are being generated, this
+		 * method is preferred over the {@link #asBufferedImages()} method,
+		 * as (1) the processing does not have to complete before the method
+		 * returns and (2) the thumbnails can be retrieved one at a time,
+		 * potentially reducing the number of thumbnails which need to be
+		 * retained in the heap memory, potentially reducing the chance of
+		 * {@link OutOfMemoryError}s from occurring.
+		 * </p>
 		 * <p>
 		 * If an {@link IOException} occurs during the processing of the
 		 * thumbnail, the {@link Iterable} will return a {@code null} for that
 		 * element.
 		 * </p>
+		 * <p>
+		 * If {@link #prefetch(int)} is set, the next thumbnails are created
+		 * in the background while the caller handles the current one.
+		 * </p>
 		 * <p><strong>Notes on image types</strong></p>
 		 * <p>
 		 * The image type of the {@link BufferedImage} depends on the type
@@ -2216,7 +2930,48 @@ watermark(Positions.CENTER, image, opacity);
 			 * TODO To get the precise error information, there would have to
 			 * be an event notification mechanism.
 			 */
-			return new BufferedImageIterable();
+			return new BufferedImageIterable(toPlan());
+		}
+		
+		/**
+		 * Returns a {@link Stream} of the thumbnails, which are created as
+		 * the stream is traversed.
+		 * <p>
+		 * Each thumbnail is delivered as a {@link ThumbnailResult}, which
+		 * carries its source image and the position of the source image. A
+		 * thumbnail which could not be created is delivered as a result with
+		 * the failure, so that one failure does not end the stream.
+		 * <p>
+		 * The stream is sequential. A {@linkplain Stream#parallel() parallel}
+		 * stream creates the thumbnails on the common {@link ForkJoinPool},
+		 * or on the {@link ForkJoinPool} in which the terminal operation is
+		 * run:
+		 * <pre>
+List&lt;ThumbnailResult&lt;File&gt;&gt; results = pool.submit(() -&gt;
+    Thumbnails.of(files)
+        .size(200, 200)
+        .stream()
+        .parallel()
+        .collect(Collectors.toList())
+).get();
+		 * </pre>
+		 * The source images given as an array or a collection are split
+		 * evenly among the threads of a parallel stream.
+		 * <p>
+		 * The settings of this builder are captured when this method is
+		 * called. The parallelism and executor of this builder are not used
+		 * by the stream.
+		 * 
+		 * @return		A stream of the thumbnails.
+		 * @throws IllegalStateException	If the size or scaling factor has
+		 * 									not been set.
+		 */
+		public Stream<ThumbnailResult<T>> stream() {
+			checkReadiness();
+			return StreamSupport.stream(
+					new ThumbnailSpliterator<T>(toPlan(), sources.spliterator(), 0),
+					false
+			);
 		}
 		
 		/**
@@ -2277,16 +3032,30 @@ watermark(Positions.CENTER, image, opacity);
 		public List<BufferedImage> asBufferedImages() throws IOException {
 			checkReadiness();
 			
-			List<BufferedImage> thumbnails = new ArrayList<BufferedImage>();
+			List<BufferedImageSink> destinations = new ArrayList<BufferedImageSink>();
+			ThumbnailPlan plan = toPlan();
+			ThumbnailBatch batch = newBatch();
 			
-			// Create thumbnails
-			for (ImageSource<T> source : sources) {
-				BufferedImageSink destination = new BufferedImageSink();
+			try {
+				// Create thumbnails
+				for (ImageSource<T> source : sources) {
+					BufferedImageSink destination = new BufferedImageSink();
+					destinations.add(destination);
+					
+					batch.submit(plan, source, destination);
+				}
 				
-				Thumbnailator.createThumbnail(
-					new SourceSinkThumbnailTask<T, BufferedImage>(makeParam(), source, destination)
-				);
+				SortedMap<Integer, Throwable> failures = batch.await();
+				if (!failures.isEmpty()) {
+					throw new ThumbnailBatchException(failures);
+				}
 				
+			} finally {
+				batch.close();
+			}
+			
+			List<BufferedImage> thumbnails = new ArrayList<BufferedImage>();
+			for (BufferedImageSink destination : destinations) {
 				thumbnails.add(destination.getSink());
 			}
 			
@@ -2351,9 +3120,7 @@ watermark(Positions.CENTER, image, opacity);
 			
 			BufferedImageSink destination = new BufferedImageSink();
 			
-			Thumbnailator.createThumbnail(
-				new SourceSinkThumbnailTask<T, BufferedImage>(makeParam(), source, destination)
-			);
+			toPlan().apply(source, destination);
 				
 			return destination.getSink();
 		}
@@ -2389,38 +3156,44 @@ watermark(Positions.CENTER, image, opacity);
 				throw new NullPointerException("File name iterable is null.");
 			}
 			
-			List<File> destinationFiles = new ArrayList<File>();
+			List<FileImageSink> destinations = new ArrayList<FileImageSink>();
+			SortedMap<Integer, Throwable> failures;
 			
 			Iterator<File> filenameIter = iterable.iterator();
-			
-			for (ImageSource<T> source : sources) {
-				if (!filenameIter.hasNext()) {
-					throw new IndexOutOfBoundsException(
-							"Not enough file names provided by iterator."
-					);
+			ThumbnailPlan plan = toPlan();
+			ThumbnailBatch batch = newBatch();
+			
+			try {
+				for (ImageSource<T> source : sources) {
+					if (!filenameIter.hasNext()) {
+						throw new IndexOutOfBoundsException(
+								"Not enough file names provided by iterator."
+						);
+					}
+					
+					FileImageSink destination = new FileImageSink(filenameIter.next(), allowOverwrite);
+					destinations.add(destination);
+					
+					try {
+						batch.submit(plan, source, destination);
+						
+					} catch (DestinationExistsException e) {
+						/*
+						 * Handle the exception which is thrown when the
+						 * destination file already exists by not adding the
+						 * current file to the destinationFiles list.
+						 */
+						destinations.set(destinations.size() - 1, null);
+					}
 				}
 				
-				ThumbnailParameter param = makeParam();
-				
-				FileImageSink destination = new FileImageSink(filenameIter.next(), allowOverwrite);
+				failures = batch.await();
 				
-				try {
-					Thumbnailator.createThumbnail(
-							new SourceSinkThumbnailTask<T, File>(param, source, destination)
-					);
-					
-					destinationFiles.add(destination.getSink());
-
-				} catch (IllegalArgumentException e) {
-					/*
-					 * Handle the IllegalArgumentException which is thrown when
-					 * the destination file already exists by not adding the
-					 * current file to the destinationFiles list.
-					 */
-				}
+			} finally {
+				batch.close();
 			}
 			
-			return destinationFiles;
+			return getWrittenFiles(destinations, failures);
 		}
 		
 		/**
@@ -2527,39 +3300,47 @@ watermark(Positions.CENTER, image, opacity);
 				throw new IllegalArgumentException("Given destination is not a directory.");
 			}
 
-			List<File> destinationFiles = new ArrayList<File>();
-			
-			for (ImageSource<T> source : sources) {
-				if (!(source instanceof FileImageSource)) {
-					throw new IllegalStateException("Cannot create thumbnails to files if original images are not from files.");
+			List<FileImageSink> destinations = new ArrayList<FileImageSink>();
+			SortedMap<Integer, Throwable> failures;
+			ThumbnailPlan plan = toPlan();
+			ThumbnailBatch batch = newBatch();
+			
+			try {
+				for (ImageSource<T> source : sources) {
+					if (!(source instanceof FileImageSource)) {
+						throw new IllegalStateException("Cannot create thumbnails to files if original images are not from files.");
+					}
+					
+					ThumbnailParameter param = plan.getParameter();
+					
+					File f = ((FileImageSource)source).getSource();
+					
+					File actualDestDir = destinationDir == null ? f.getParentFile() : destinationDir;
+					File destinationFile = new File(actualDestDir, rename.apply(f.getName(), param));
+					
+					FileImageSink destination = new FileImageSink(destinationFile, allowOverwrite);
+					destinations.add(destination);
+					
+					try {
+						batch.submit(plan, source, destination);
+						
+					} catch (DestinationExistsException e) {
+						/*
+						 * Handle the exception which is thrown when the
+						 * destination file already exists by not adding the
+						 * current file to the destinationFiles list.
+						 */
+						destinations.set(destinations.size() - 1, null);
+					}
 				}
 				
-				ThumbnailParameter param = makeParam();
+				failures = batch.await();
 				
-				File f = ((FileImageSource)source).getSource();
-				
-				File actualDestDir = destinationDir == null ? f.getParentFile() : destinationDir;
-				File destinationFile = new File(actualDestDir, rename.apply(f.getName(), param));
-				
-				FileImageSink destination = new FileImageSink(destinationFile, allowOverwrite);
-				
-				try {
-					Thumbnailator.createThumbnail(
-							new SourceSinkThumbnailTask<T, File>(param, source, destination)
-					);
-					
-					destinationFiles.add(destination.getSink());
-
-				} catch (IllegalArgumentException e) {
-					/*
-					 * Handle the IllegalArgumentException which is thrown when
-					 * the destination file already exists by not adding the
-					 * current file to the destinationFiles list.
-					 */
-				}
+			} finally {
+				batch.close();
 			}
 			
-			return destinationFiles;
+			return getWrittenFiles(destinations, failures);
 		}
 
 		/**
@@ -2661,9 +3442,7 @@ watermark(Positions.CENTER, image, opacity);
 			
 			FileImageSink destination = new FileImageSink(outFile, allowOverwrite);
 			
-			Thumbnailator.createThumbnail(
-					new SourceSinkThumbnailTask<T, File>(makeParam(), source, destination)
-			);
+			toPlan().apply(source, destination);
 		}
 		
 		/**
@@ -2699,9 +3478,7 @@ watermark(Positions.CENTER, image, opacity);
 			
 			FileImageSink destination = new FileImageSink(outFilepath, allowOverwrite);
 			
-			Thumbnailator.createThumbnail(
-					new SourceSinkThumbnailTask<T, File>(makeParam(), source, destination)
-			);
+			toPlan().apply(source, destination);
 		}
 		
 		/**
@@ -2750,9 +3527,274 @@ watermark(Positions.CENTER, image, opacity);
 			
 			OutputStreamImageSink destination = new OutputStreamImageSink(os);
 			
-			Thumbnailator.createThumbnail(
-					new SourceSinkThumbnailTask<T, OutputStream>(makeParam(), source, destination)
-			);
+			toPlan().apply(source, destination);
+		}
+		
+		/**
+		 * Creates a thumbnail on an executor, and returns it as a
+		 * {@link BufferedImage} through a {@link CompletableFuture}.
+		 * <p>
+		 * The thumbnail is created on the executor given by
+		 * {@link #executor(Executor)}, or on the
+		 * {@link ForkJoinPool#commonPool() common pool} if none was given.
+		 * See {@link #asBufferedImageAsync(Executor)} for cancellation.
+		 * 
+		 * @return		A future which completes with the thumbnail.
+		 * @throws IllegalArgumentException		If multiple original images are
+		 * 										specified.
+		 * @see #asBufferedImage()
+		 */
+		public CompletableFuture<BufferedImage> asBufferedImageAsync() {
+			return asBufferedImageAsync(null);
+		}
+		
+		/**
+		 * Creates a thumbnail on the given executor, and returns it as a
+		 * {@link BufferedImage} through a {@link CompletableFuture}.
+		 * <p>
+		 * Cancelling the returned future stops the creation of the thumbnail:
+		 * the {@link javax.imageio.ImageReader} or
+		 * {@link javax.imageio.ImageWriter} which is reading or writing the
+		 * image is aborted, and the steps which have not started are skipped.
+		 * 
+		 * @param executor		The executor on which the thumbnail is created,
+		 * 						or {@code null} to use the executor given by
+		 * 						{@link #executor(Executor)} or the common pool.
+		 * @return				A future which completes with the thumbnail.
+		 * @throws IllegalArgumentException		If multiple original images are
+		 * 										specified.
+		 * @see #asBufferedImage()
+		 */
+		public CompletableFuture<BufferedImage> asBufferedImageAsync(Executor executor) {
+			final BufferedImageSink destination = new BufferedImageSink();
+			
+			AsyncThumbnail<BufferedImage> future = new AsyncThumbnail<BufferedImage>(
+					toPlan(), getSingleSource("Cannot create one thumbnail from multiple original images."), destination
+			) {
+				BufferedImage result() {
+					return destination.getSink();
+				}
+			};
+			return future.start(executor);
+		}
+		
+		/**
+		 * Creates a thumbnail on an executor, and writes it to a
+		 * {@link File}.
+		 * <p>
+		 * The thumbnail is created on the executor given by
+		 * {@link #executor(Executor)}, or on the
+		 * {@link ForkJoinPool#commonPool() common pool} if none was given.
+		 * See {@link #asBufferedImageAsync(Executor)} for cancellation.
+		 * 
+		 * @param outFile		The file to which the thumbnail is to be
+		 * 						written to.
+		 * @return				A future which completes with the file once the
+		 * 						thumbnail has been written.
+		 * @throws IllegalArgumentException		If multiple original image files
+		 * 										are	specified.
+		 * @see #toFile(File)
+		 */
+		public CompletableFuture<File> toFileAsync(File outFile) {
+			return toFileAsync(outFile, null);
+		}
+		
+		/**
+		 * Creates a thumbnail on the given executor, and writes it to a
+		 * {@link File}.
+		 * <p>
+		 * See {@link #asBufferedImageAsync(Executor)} for cancellation. When
+		 * the destination file exists, and overwriting files has been
+		 * disabled, the future completes with an
+		 * {@link IllegalArgumentException}.
+		 * 
+		 * @param outFile		The file to which the thumbnail is to be
+		 * 						written to.
+		 * @param executor		The executor on which the thumbnail is created,
+		 * 						or {@code null} to use the executor given by
+		 * 						{@link #executor(Executor)} or the common pool.
+		 * @return				A future which completes with the file once the
+		 * 						thumbnail has been written.
+		 * @throws IllegalArgumentException		If multiple original image files
+		 * 										are	specified.
+		 * @see #toFile(File)
+		 */
+		public CompletableFuture<File> toFileAsync(File outFile, Executor executor) {
+			final FileImageSink destination = new FileImageSink(outFile, allowOverwrite);
+			
+			AsyncThumbnail<File> future = new AsyncThumbnail<File>(
+					toPlan(), getSingleSource("Cannot output multiple thumbnails to one file."), destination
+			) {
+				File result() {
+					return destination.getSink();
+				}
+			};
+			return future.start(executor);
+		}
+		
+		/**
+		 * Creates a thumbnail on an executor, and writes it to a
+		 * {@link OutputStream}.
+		 * <p>
+		 * The thumbnail is created on the executor given by
+		 * {@link #executor(Executor)}, or on the
+		 * {@link ForkJoinPool#commonPool() common pool} if none was given.
+		 * See {@link #asBufferedImageAsync(Executor)} for cancellation.
+		 * <p>
+		 * Note that the {@link OutputStream#close()} method will not be
+		 * called upon the completion of the thumbnail being written to the
+		 * {@link OutputStream}.
+		 * 
+		 * @param os			The output stream to which the thumbnail
+		 * 						is to be written to.
+		 * @return				A future which completes once the thumbnail
+		 * 						has been written.
+		 * @throws IllegalArgumentException		If multiple original image files
+		 * 										are	specified.
+		 * @throws IllegalStateException		If the output format has not
+		 * 										been specified through the
+		 * 										{@link #outputFormat(String)}
+		 * 										method.
+		 * @see #toOutputStream(OutputStream)
+		 */
+		public CompletableFuture<Void> toOutputStreamAsync(OutputStream os) {
+			return toOutputStreamAsync(os, null);
+		}
+		
+		/**
+		 * Creates a thumbnail on the given executor, and writes it to a
+		 * {@link OutputStream}.
+		 * <p>
+		 * See {@link #asBufferedImageAsync(Executor)} for cancellation. A
+		 * cancelled thumbnail may have been partly written to the stream.
+		 * <p>
+		 * Note that the {@link OutputStream#close()} method will not be
+		 * called upon the completion of the thumbnail being written to the
+		 * {@link OutputStream}.
+		 * 
+		 * @param os			The output stream to which the thumbnail
+		 * 						is to be written to.
+		 * @param executor		The executor on which the thumbnail is created,
+		 * 						or {@code null} to use the executor given by
+		 * 						{@link #executor(Executor)} or the common pool.
+		 * @return				A future which completes once the thumbnail
+		 * 						has been written.
+		 * @throws IllegalArgumentException		If multiple original image files
+		 * 										are	specified.
+		 * @throws IllegalStateException		If the output format has not
+		 * 										been specified through the
+		 * 										{@link #outputFormat(String)}
+		 * 										method.
+		 * @see #toOutputStream(OutputStream)
+		 */
+		public CompletableFuture<Void> toOutputStreamAsync(OutputStream os, Executor executor) {
+			ImageSource<T> source = getSingleSource("Cannot output multiple thumbnails to a single OutputStream.");
+			
+			/*
+			 * if the image is from a BufferedImage, then we require that the
+			 * output format be set. (or else, we can't tell what format to
+			 * output as!)
+			 */
+			if (source instanceof BufferedImageSource) {
+				if (isOutputFormatNotSet()) {
+					throw new IllegalStateException(
+							"Output format not specified."
+					);
+				}
+			}
+			
+			AsyncThumbnail<Void> future = new AsyncThumbnail<Void>(
+					toPlan(), source, new OutputStreamImageSink(os)
+			) {
+				Void result() {
+					return null;
+				}
+			};
+			return future.start(executor);
+		}
+		
+		/**
+		 * Returns the only source of this builder.
+		 * 
+		 * @param message		The message of the exception which is thrown
+		 * 						when there are multiple sources.
+		 * @return				The source.
+		 * @throws IllegalArgumentException	If there are multiple sources.
+		 */
+		private ImageSource<T> getSingleSource(String message) {
+			checkReadiness();
+			
+			Iterator<ImageSource<T>> iter = sources.iterator();
+			ImageSource<T> source = iter.next();
+			
+			if (iter.hasNext()) {
+				throw new IllegalArgumentException(message);
+			}
+			return source;
+		}
+		
+		/**
+		 * A thumbnail which is created on an executor. Cancelling it aborts
+		 * the image readers and writers in use through a {@link Cancellation}.
+		 * 
+		 * @param <R>		The type of the result.
+		 */
+		private abstract class AsyncThumbnail<R> extends CompletableFuture<R> implements Runnable {
+			private final ThumbnailPlan plan;
+			private final ImageSource<T> source;
+			private final ImageSink<?> destination;
+			private final Cancellation cancellation = new Cancellation();
+			
+			private AsyncThumbnail(ThumbnailPlan plan, ImageSource<T> source, ImageSink<?> destination) {
+				this.plan = plan;
+				this.source = source;
+				this.destination = destination;
+			}
+			
+			/**
+			 * Returns the result once the thumbnail has been written.
+			 */
+			abstract R result();
+			
+			private CompletableFuture<R> start(Executor executorToUse) {
+				if (executorToUse == null) {
+					executorToUse = getAsyncExecutor();
+				}
+				try {
+					executorToUse.execute(this);
+				} catch (RuntimeException e) {
+					completeExceptionally(e);
+				}
+				return this;
+			}
+			
+			public void run() {
+				if (isDone()) {
+					// Cancelled before it started.
+					return;
+				}
+				
+				Cancellation previous = Cancellation.setThreadCancellation(cancellation);
+				try {
+					plan.apply(source, destination);
+					complete(result());
+					
+				} catch (Throwable t) {
+					completeExceptionally(t);
+					
+				} finally {
+					Cancellation.setThreadCancellation(previous);
+				}
+			}
+			
+			@Override
+			public boolean cancel(boolean mayInterruptIfRunning) {
+				boolean cancelled = super.cancel(mayInterruptIfRunning);
+				if (cancelled) {
+					cancellation.cancel();
+				}
+				return cancelled;
+			}
 		}
 		
 		/**
@@ -2782,33 +3824,206 @@ watermark(Positions.CENTER, image, opacity);
 			}
 			
 			Iterator<? extends OutputStream> osIter = iterable.iterator();
+			ThumbnailPlan plan = toPlan();
+			ThumbnailBatch batch = newBatch();
 			
-			for (ImageSource<T> source : sources) {
-				/*
-				 * if the image is from a BufferedImage, then we require that the
-				 * output format be set. (or else, we can't tell what format to
-				 * output as!)
-				 */
-				if (source instanceof BufferedImageSource) {
-					if (isOutputFormatNotSet()) {
-						throw new IllegalStateException(
-								"Output format not specified."
+			try {
+				for (ImageSource<T> source : sources) {
+					/*
+					 * if the image is from a BufferedImage, then we require that the
+					 * output format be set. (or else, we can't tell what format to
+					 * output as!)
+					 */
+					if (source instanceof BufferedImageSource) {
+						if (isOutputFormatNotSet()) {
+							throw new IllegalStateException(
+									"Output format not specified."
+							);
+						}
+					}
+					
+					if (!osIter.hasNext()) {
+						throw new IndexOutOfBoundsException(
+								"Not enough file names provided by iterator."
 						);
 					}
+					
+					OutputStreamImageSink destination = new OutputStreamImageSink(osIter.next());
+					
+					batch.submit(plan, source, destination);
 				}
 				
-				if (!osIter.hasNext()) {
-					throw new IndexOutOfBoundsException(
-							"Not enough file names provided by iterator."
-					);
+				SortedMap<Integer, Throwable> failures = batch.await();
+				if (!failures.isEmpty()) {
+					throw new ThumbnailBatchException(failures);
 				}
 				
-				OutputStreamImageSink destination = new OutputStreamImageSink(osIter.next());
-				
-				Thumbnailator.createThumbnail(
-						new SourceSinkThumbnailTask<T, OutputStream>(makeParam(), source, destination)
+			} finally {
+				batch.close();
+			}
+		}
+		
+		/**
+		 * Creates several thumbnails of different sizes from a single source
+		 * image, and writes each of them to its destination.
+		 * <p>
+		 * The source image is read only once, and the thumbnails are made
+		 * as a cascade, where each thumbnail is resized from the next larger
+		 * thumbnail rather than from the source image. This takes much less
+		 * time than creating each thumbnail from the source image.
+		 * <p>
+		 * The size of each thumbnail is given by its {@link Rendition}, so
+		 * the size or scale must not be set on this builder. All other
+		 * settings of this builder apply to every rendition, except that the
+		 * output format and quality can be set for each rendition.
+		 * <p>
+		 * To call this method, the thumbnails must be created from a single
+		 * source.
+		 * 
+		 * @param renditions		The thumbnails to create.
+		 * @throws IOException		If a problem occurs while reading the
+		 * 							original image or writing the thumbnails.
+		 * @throws IllegalArgumentException		If multiple original images
+		 * 										are specified, no renditions
+		 * 										are given, or the destination
+		 * 										file of a rendition exists, and
+		 * 										overwriting files is disabled.
+		 * @throws IllegalStateException		If the size or scale has been
+		 * 										set, or the output format is
+		 * 										needed but has not been set.
+		 */
+		public void toRenditions(List<Rendition> renditions) throws IOException {
+			toRenditions(renditions, null);
+		}
+		
+		/**
+		 * Creates several thumbnails of different sizes from a single source
+		 * image, as {@link #toRenditions(List)} does, and writes the
+		 * thumbnails with the given {@link Executor}.
+		 * <p>
+		 * Image filters are applied and the thumbnails are encoded on the
+		 * executor, while the next smaller thumbnail is being resized on the
+		 * calling thread. This method returns once all thumbnails have been
+		 * written.
+		 * 
+		 * @param renditions		The thumbnails to create.
+		 * @param executor			The executor on which the thumbnails are
+		 * 							written, or {@code null} to write them on
+		 * 							the calling thread.
+		 * @throws IOException		If a problem occurs while reading the
+		 * 							original image or writing the thumbnails.
+		 * @throws IllegalArgumentException		If multiple original images
+		 * 										are specified, no renditions
+		 * 										are given, or the destination
+		 * 										file of a rendition exists, and
+		 * 										overwriting files is disabled.
+		 * @throws IllegalStateException		If the size or scale has been
+		 * 										set, or the output format is
+		 * 										needed but has not been set.
+		 */
+		public void toRenditions(List<Rendition> renditions, Executor executor) throws IOException {
+			if (renditions == null) {
+				throw new NullPointerException("Renditions is null.");
+			}
+			if (renditions.isEmpty()) {
+				throw new IllegalArgumentException("No renditions specified.");
+			}
+			if (statusMap.get(Properties.SIZE) == Status.ALREADY_SET
+					|| statusMap.get(Properties.SCALE) == Status.ALREADY_SET) {
+				throw new IllegalStateException(
+						"The size is given by each rendition, and cannot be set."
 				);
 			}
+			
+			Iterator<ImageSource<T>> iter = sources.iterator();
+			ImageSource<T> source = iter.next();
+			
+			if (iter.hasNext()) {
+				throw new IllegalArgumentException("Cannot create renditions from multiple original images.");
+			}
+			
+			prepareResizerFactory();
+			
+			List<ThumbnailParameter> params = new ArrayList<ThumbnailParameter>();
+			List<ImageSink<?>> destinations = new ArrayList<ImageSink<?>>();
+			for (Rendition rendition : renditions) {
+				ThumbnailParameter param = makeRenditionParam(rendition);
+				
+				/*
+				 * if the image is from a BufferedImage, then we require that
+				 * the output format be set for streams.
+				 */
+				if (source instanceof BufferedImageSource
+						&& rendition.getDestination() instanceof OutputStream
+						&& (param.getOutputFormat() == ThumbnailParameter.ORIGINAL_FORMAT
+							|| ThumbnailParameter.DETERMINE_FORMAT.equals(param.getOutputFormat()))) {
+					throw new IllegalStateException(
+							"Output format not specified."
+					);
+				}
+				
+				params.add(param);
+				destinations.add(makeRenditionSink(rendition));
+			}
+			
+			if (imageAllocator == null) {
+				Thumbnailator.createRenditions(source, params, destinations, executor);
+				return;
+			}
+			
+			ImageAllocator previous = BufferedImageBuilder.setThreadAllocator(imageAllocator);
+			try {
+				Thumbnailator.createRenditions(source, params, destinations, executor);
+			} finally {
+				BufferedImageBuilder.setThreadAllocator(previous);
+			}
+		}
+		
+		/**
+		 * Returns a {@link ThumbnailParameter} for a rendition, from the
+		 * current builder state and the size, output format and output
+		 * quality of the rendition.
+		 */
+		private ThumbnailParameter makeRenditionParam(Rendition rendition) {
+			int imageTypeToUse = imageType;
+			if (imageType == IMAGE_TYPE_UNSPECIFIED) {
+				imageTypeToUse = ThumbnailParameter.ORIGINAL_IMAGE_TYPE;
+			}
+			
+			List<ImageFilter> filters = new ArrayList<ImageFilter>();
+			if (croppingPosition != null) {
+				filters.add(new Canvas(rendition.getWidth(), rendition.getHeight(), croppingPosition));
+			}
+			filters.addAll(filterPipeline.getFilters());
+			
+			String format = rendition.getOutputFormat() != null ?
+					rendition.getOutputFormat() : outputFormat;
+			float quality = !Float.isNaN(rendition.getOutputQuality()) ?
+					rendition.getOutputQuality() : outputQuality;
+			
+			return new ThumbnailParameter(
+					new Dimension(rendition.getWidth(), rendition.getHeight()),
+					sourceRegion,
+					keepAspectRatio,
+					format,
+					outputFormatType,
+					quality,
+					imageTypeToUse,
+					filters,
+					resizerFactory,
+					fitWithinDimenions,
+					useExifOrientation
+			);
+		}
+		
+		private ImageSink<?> makeRenditionSink(Rendition rendition) {
+			Object destination = rendition.getDestination();
+			if (destination instanceof File) {
+				return new FileImageSink((File)destination, allowOverwrite);
+			} else if (destination instanceof OutputStream) {
+				return new OutputStreamImageSink((OutputStream)destination);
+			}
+			return (ImageSink<?>)destination;
 		}
 	}
 }
@@ -0,0 +1,66 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2020 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates virtual threads, which are available from Java 21.
+ * <p>
+ * This class is replaced by a class of the same name in the Java 21 layer
+ * of the multi-release jar. On earlier versions of Java, virtual threads
+ * are not available.
+ * 
+ * @author coobird
+ *
+ */
+final class VirtualThreads {
+	/**
+	 * This class is not intended to be instantiated.
+	 */
+	private VirtualThreads() {}
+	
+	/**
+	 * Returns whether virtual threads are available.
+	 * 
+	 * @return			{@code true} if virtual threads are available.
+	 */
+	static boolean isSupported() {
+		return false;
+	}
+	
+	/**
+	 * Returns a factory of virtual threads.
+	 * 
+	 * @param prefix	The prefix of the names of the threads, which are
+	 * 					numbered from 1.
+	 * @return			The factory.
+	 * @throws UnsupportedOperationException	If virtual threads are not
+	 * 											available.
+	 */
+	static ThreadFactory newThreadFactory(String prefix) {
+		throw new UnsupportedOperationException("Virtual threads require Java 21 or later.");
+	}
+}
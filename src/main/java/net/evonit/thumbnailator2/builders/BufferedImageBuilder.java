@@ -56,6 +56,26 @@ public final class BufferedImageBuilder {
 	 */
 	private int height;
 	
+	/**
+	 * The {@link ImageAllocator} used by builders which have not been given
+	 * an allocator explicitly.
+	 */
+	private static volatile ImageAllocator defaultAllocator =
+			DefaultImageAllocator.getInstance();
+	
+	/**
+	 * The {@link ImageAllocator} which takes the place of the default
+	 * allocator on the current thread, if any.
+	 */
+	private static final ThreadLocal<ImageAllocator> threadAllocator =
+			new ThreadLocal<ImageAllocator>();
+	
+	/**
+	 * The {@link ImageAllocator} from which the {@link BufferedImage} is
+	 * obtained, or {@code null} to use the default allocator.
+	 */
+	private ImageAllocator allocator;
+	
 	/**
 	 * Instantiates a {@code BufferedImageBuilder} with the specified size, and
 	 * the default image type.
@@ -108,7 +128,124 @@ public final class BufferedImageBuilder {
 	 * 				parameters set in the {@link BufferedImageBuilder}.
 	 */
 	public BufferedImage build() {
-		return new BufferedImage(width, height, imageType);
+		return getAllocator().allocate(width, height, imageType);
+	}
+
+	/**
+	 * Generates a {@code BufferedImage} which is only used temporarily by the
+	 * calling method, such as an intermediate image used while resizing.
+	 * <p>
+	 * The image should be handed back through {@link #release(BufferedImage)}
+	 * by the same thread once it is no longer needed.
+	 * 
+	 * @return		Returns a {@link BufferedImage} from the parameters set
+	 * 				in the {@link BufferedImageBuilder}.
+	 * @see ImageAllocator#allocateScratch(int, int, int)
+	 */
+	public BufferedImage buildScratch() {
+		return getAllocator().allocateScratch(width, height, imageType);
+	}
+
+	/**
+	 * Sets the {@link ImageAllocator} from which the {@link BufferedImage}
+	 * is obtained.
+	 * 
+	 * @param allocator		The allocator to use, or {@code null} to use the
+	 * 						default allocator.
+	 * @return				This {@link BufferedImageBuilder} instance.
+	 */
+	public BufferedImageBuilder allocator(ImageAllocator allocator) {
+		this.allocator = allocator;
+		return this;
+	}
+
+	private ImageAllocator getAllocator() {
+		return allocator != null ? allocator : getCurrentAllocator();
+	}
+
+	/**
+	 * Hands back an image which was created by a {@link BufferedImageBuilder}
+	 * using the current allocator, so that its memory can be reused.
+	 * <p>
+	 * Images which were not obtained from the current allocator are ignored.
+	 * 
+	 * @param img			The image which is no longer used.
+	 * @see #getCurrentAllocator()
+	 */
+	public static void release(BufferedImage img) {
+		getCurrentAllocator().release(img);
+	}
+
+	/**
+	 * Returns the {@link ImageAllocator} used on the current thread by
+	 * builders which have not been given an allocator explicitly.
+	 * <p>
+	 * This is the allocator set by {@link #setThreadAllocator(ImageAllocator)}
+	 * if there is one, and the default allocator otherwise.
+	 * 
+	 * @return				The allocator for the current thread.
+	 */
+	public static ImageAllocator getCurrentAllocator() {
+		ImageAllocator allocator = threadAllocator.get();
+		return allocator != null ? allocator : defaultAllocator;
+	}
+
+	/**
+	 * Sets the {@link ImageAllocator} used on the current thread in place of
+	 * the default allocator.
+	 * <p>
+	 * The previous allocator is returned so that it can be restored once the
+	 * work which needs the allocator is done:
+	 * <pre>
+ImageAllocator previous = BufferedImageBuilder.setThreadAllocator(allocator);
+try {
+    ...
+} finally {
+    BufferedImageBuilder.setThreadAllocator(previous);
+}
+	 * </pre>
+	 * 
+	 * @param allocator		The allocator to use on the current thread, or
+	 * 						{@code null} to use the default allocator.
+	 * @return				The allocator previously set for the current
+	 * 						thread, or {@code null} if there was none.
+	 */
+	public static ImageAllocator setThreadAllocator(ImageAllocator allocator) {
+		ImageAllocator previous = threadAllocator.get();
+		if (allocator == null) {
+			threadAllocator.remove();
+		} else {
+			threadAllocator.set(allocator);
+		}
+		return previous;
+	}
+
+	/**
+	 * Returns the {@link ImageAllocator} used by builders which have not
+	 * been given an allocator explicitly.
+	 * 
+	 * @return				The default allocator.
+	 */
+	public static ImageAllocator getDefaultAllocator() {
+		return defaultAllocator;
+	}
+
+	/**
+	 * Sets the {@link ImageAllocator} used by builders which have not been
+	 * given an allocator explicitly.
+	 * <p>
+	 * Images handed out by the previous default allocator can still be
+	 * released through it, but releasing them through
+	 * {@link #release(BufferedImage)} will no longer recycle them.
+	 * 
+	 * @param allocator		The allocator to use by default.
+	 * @throws NullPointerException		If the allocator is {@code null}.
+	 */
+	public static void setDefaultAllocator(ImageAllocator allocator) {
+		if (allocator == null) {
+			throw new NullPointerException("Allocator is null.");
+		}
+		defaultAllocator = allocator;
 	}
 
 	/**
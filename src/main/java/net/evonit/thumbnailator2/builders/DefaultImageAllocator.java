@@ -0,0 +1,72 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2020 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.builders;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * An {@link ImageAllocator} which creates a new {@link BufferedImage} for
+ * every request, leaving the reclamation of memory to the garbage collector.
+ * <p>
+ * This is the allocator used by {@link BufferedImageBuilder} unless another
+ * one has been specified.
+ *
+ * @author coobird
+ *
+ */
+public final class DefaultImageAllocator implements ImageAllocator {
+	/**
+	 * The singleton instance of this class.
+	 */
+	private static final DefaultImageAllocator INSTANCE = new DefaultImageAllocator();
+
+	/**
+	 * This class is not intended to be instantiated.
+	 */
+	private DefaultImageAllocator() {}
+
+	/**
+	 * Returns an instance of this class.
+	 *
+	 * @return		An instance of this class.
+	 */
+	public static ImageAllocator getInstance() {
+		return INSTANCE;
+	}
+
+	public BufferedImage allocate(int width, int height, int imageType) {
+		return new BufferedImage(width, height, imageType);
+	}
+
+	public BufferedImage allocateScratch(int width, int height, int imageType) {
+		return new BufferedImage(width, height, imageType);
+	}
+
+	public void release(BufferedImage img) {
+		if (img != null) {
+			img.flush();
+		}
+	}
+}
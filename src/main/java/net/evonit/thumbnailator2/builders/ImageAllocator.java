@@ -0,0 +1,84 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2020 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.builders;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * An interface for classes which provide the {@link BufferedImage}s used by
+ * {@link BufferedImageBuilder}.
+ * <p>
+ * Implementations can choose to allocate new images every time, or to recycle
+ * images which were previously handed out and returned through the
+ * {@link #release(BufferedImage)} method.
+ * <p>
+ * Implementations must be safe to use from multiple threads.
+ *
+ * @author coobird
+ *
+ */
+public interface ImageAllocator {
+	/**
+	 * Returns an image with the specified dimensions and image type.
+	 * <p>
+	 * The returned image is blank, as if it had been newly created.
+	 *
+	 * @param width			The width of the image.
+	 * @param height		The height of the image.
+	 * @param imageType		The image type of the image.
+	 * @return				An image with the specified parameters.
+	 */
+	public BufferedImage allocate(int width, int height, int imageType);
+
+	/**
+	 * Returns a temporary image with the specified dimensions and image type.
+	 * <p>
+	 * Scratch images are intended for intermediate results which do not leave
+	 * the method which requested them, such as the temporary image used by a
+	 * {@link net.evonit.thumbnailator2.resizers.Resizer}. A scratch image
+	 * should be released by the same thread which allocated it, once it is
+	 * no longer used.
+	 * <p>
+	 * The returned image is blank, as if it had been newly created.
+	 *
+	 * @param width			The width of the image.
+	 * @param height		The height of the image.
+	 * @param imageType		The image type of the image.
+	 * @return				An image with the specified parameters.
+	 */
+	public BufferedImage allocateScratch(int width, int height, int imageType);
+
+	/**
+	 * Indicates that the specified image is no longer used, and that its
+	 * memory can be reused.
+	 * <p>
+	 * Images which were not obtained from this allocator are ignored, so it
+	 * is safe to call this method with any image. The image must not be used
+	 * after it has been released.
+	 *
+	 * @param img			The image which is no longer used.
+	 */
+	public void release(BufferedImage img);
+}
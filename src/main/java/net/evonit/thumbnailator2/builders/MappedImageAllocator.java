@@ -0,0 +1,150 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2020 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.builders;
+
+import java.io.File;
+import java.io.IOException;
+
+import net.evonit.thumbnailator2.util.raster.ByteBufferDataBuffer;
+import net.evonit.thumbnailator2.util.raster.MappedDataBuffer;
+
+/**
+ * An {@link ImageAllocator} which stores the pixels of large images in
+ * memory-mapped temporary files.
+ * <p>
+ * This allows images which do not fit in memory to be decoded and resized,
+ * as the operating system's page cache only keeps the parts of the file
+ * which are being worked on in memory. The {@link net.evonit.thumbnailator2.resizers.TileResizer}
+ * processes such images one tile at a time, and is chosen by the
+ * {@link net.evonit.thumbnailator2.resizers.DefaultResizerFactory} when
+ * an image is reduced to less than half its size.
+ * <p>
+ * As with any {@link java.awt.image.BufferedImage}, an image can hold at
+ * most {@link Integer#MAX_VALUE} samples, which is about 2 gigapixels for
+ * images with 32-bit pixels.
+ * <p>
+ * The following example creates a thumbnail of a large image, with the
+ * decoded image held in a file in {@code /var/tmp}:
+ * <pre>
+Thumbnails.of(largeImageFile)
+    .size(1024, 1024)
+    .imageAllocator(new MappedImageAllocator(new File("/var/tmp")))
+    .toFile(thumbnailFile);
+ * </pre>
+ * If the temporary file cannot be created, the image is allocated on the
+ * heap instead.
+ *
+ * @author coobird
+ *
+ */
+public class MappedImageAllocator extends OffHeapImageAllocator {
+	/**
+	 * The directory in which temporary files are created, or {@code null}
+	 * for the default temporary-file directory.
+	 */
+	private final File directory;
+
+	/**
+	 * The size of each mapped region of a temporary file.
+	 */
+	private final int chunkSize;
+
+	/**
+	 * Instantiates a {@link MappedImageAllocator} which creates files in the
+	 * default temporary-file directory for images with at least
+	 * {@link OffHeapImageAllocator#DEFAULT_PIXEL_THRESHOLD} pixels.
+	 */
+	public MappedImageAllocator() {
+		this(null);
+	}
+
+	/**
+	 * Instantiates a {@link MappedImageAllocator} which creates files in the
+	 * specified directory for images with at least
+	 * {@link OffHeapImageAllocator#DEFAULT_PIXEL_THRESHOLD} pixels.
+	 *
+	 * @param directory			The directory for temporary files, or
+	 * 							{@code null} for the default temporary-file
+	 * 							directory.
+	 */
+	public MappedImageAllocator(File directory) {
+		this(directory, DEFAULT_PIXEL_THRESHOLD);
+	}
+
+	/**
+	 * Instantiates a {@link MappedImageAllocator} which creates files in the
+	 * specified directory for images with at least the specified number of
+	 * pixels. Smaller images are obtained from the {@link DefaultImageAllocator}.
+	 *
+	 * @param directory			The directory for temporary files, or
+	 * 							{@code null} for the default temporary-file
+	 * 							directory.
+	 * @param pixelThreshold	The number of pixels at which images are
+	 * 							stored in files.
+	 */
+	public MappedImageAllocator(File directory, long pixelThreshold) {
+		this(directory, pixelThreshold, DefaultImageAllocator.getInstance());
+	}
+
+	/**
+	 * Instantiates a {@link MappedImageAllocator} which creates files in the
+	 * specified directory for images with at least the specified number of
+	 * pixels. Smaller images are obtained from the specified allocator.
+	 *
+	 * @param directory			The directory for temporary files, or
+	 * 							{@code null} for the default temporary-file
+	 * 							directory.
+	 * @param pixelThreshold	The number of pixels at which images are
+	 * 							stored in files.
+	 * @param heapAllocator		The allocator used for smaller images.
+	 */
+	public MappedImageAllocator(File directory, long pixelThreshold, ImageAllocator heapAllocator) {
+		this(directory, pixelThreshold, heapAllocator, MappedDataBuffer.DEFAULT_CHUNK_SIZE);
+	}
+
+	// Visible for testing only.
+	MappedImageAllocator(File directory, long pixelThreshold, ImageAllocator heapAllocator, int chunkSize) {
+		super(pixelThreshold, heapAllocator);
+
+		if (directory != null && !directory.isDirectory()) {
+			throw new IllegalArgumentException("Given directory is not a directory.");
+		}
+
+		this.directory = directory;
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Creates a buffer backed by a new memory-mapped temporary file.
+	 */
+	@Override
+	protected ByteBufferDataBuffer createBuffer(int dataType, int size) {
+		try {
+			return MappedDataBuffer.create(dataType, size, directory, chunkSize);
+		} catch (IOException e) {
+			return null;
+		}
+	}
+}
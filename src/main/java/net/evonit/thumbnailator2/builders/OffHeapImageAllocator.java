@@ -0,0 +1,207 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2020 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.builders;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import net.evonit.thumbnailator2.util.raster.ByteBufferDataBuffer;
+import net.evonit.thumbnailator2.util.raster.RasterImages;
+
+/**
+ * An {@link ImageAllocator} which places the pixels of large images in
+ * direct memory outside of the Java heap.
+ * <p>
+ * Images with at least as many pixels as the configured threshold are backed
+ * by a {@link ByteBufferDataBuffer}, and their memory is released as soon as
+ * they are handed back through {@link #release(BufferedImage)}, rather than
+ * when the garbage collector gets to them. Smaller images, and images of
+ * types which cannot be held off-heap, are obtained from another allocator.
+ * <p>
+ * Off-heap images have the {@link BufferedImage#TYPE_CUSTOM} image type, and
+ * Java 2D cannot accelerate drawing operations on them. Therefore, the
+ * threshold should be set so that only images which would otherwise put
+ * pressure on the heap are placed off-heap.
+ * <p>
+ * The amount of direct memory available is limited by the
+ * {@code -XX:MaxDirectMemorySize} option of the JVM. If direct memory runs
+ * out, the image is allocated on the heap instead.
+ *
+ * @author coobird
+ *
+ */
+public class OffHeapImageAllocator implements ImageAllocator {
+	/**
+	 * The default number of pixels at which images are placed off-heap.
+	 */
+	public static final long DEFAULT_PIXEL_THRESHOLD = 4096L * 4096L;
+
+	/**
+	 * The number of pixels at which images are placed off-heap.
+	 */
+	private final long pixelThreshold;
+
+	/**
+	 * The allocator used for images which are not placed off-heap.
+	 */
+	private final ImageAllocator heapAllocator;
+
+	/**
+	 * The off-heap images which are currently handed out. Guarded by itself.
+	 */
+	private final Map<BufferedImage, ByteBufferDataBuffer> leases =
+			new WeakHashMap<BufferedImage, ByteBufferDataBuffer>();
+
+	/**
+	 * Instantiates an {@link OffHeapImageAllocator} with the default
+	 * threshold, which obtains smaller images from the
+	 * {@link DefaultImageAllocator}.
+	 */
+	public OffHeapImageAllocator() {
+		this(DEFAULT_PIXEL_THRESHOLD);
+	}
+
+	/**
+	 * Instantiates an {@link OffHeapImageAllocator} with the specified
+	 * threshold, which obtains smaller images from the
+	 * {@link DefaultImageAllocator}.
+	 *
+	 * @param pixelThreshold	The number of pixels at which images are
+	 * 							placed off-heap.
+	 */
+	public OffHeapImageAllocator(long pixelThreshold) {
+		this(pixelThreshold, DefaultImageAllocator.getInstance());
+	}
+
+	/**
+	 * Instantiates an {@link OffHeapImageAllocator} with the specified
+	 * threshold, which obtains smaller images from the specified allocator.
+	 *
+	 * @param pixelThreshold	The number of pixels at which images are
+	 * 							placed off-heap.
+	 * @param heapAllocator		The allocator used for images which are not
+	 * 							placed off-heap.
+	 * @throws IllegalArgumentException	If the threshold is not positive.
+	 * @throws NullPointerException		If the allocator is {@code null}.
+	 */
+	public OffHeapImageAllocator(long pixelThreshold, ImageAllocator heapAllocator) {
+		if (pixelThreshold <= 0) {
+			throw new IllegalArgumentException("Pixel threshold must be greater than 0.");
+		}
+		if (heapAllocator == null) {
+			throw new NullPointerException("Allocator is null.");
+		}
+
+		this.pixelThreshold = pixelThreshold;
+		this.heapAllocator = heapAllocator;
+	}
+
+	public BufferedImage allocate(int width, int height, int imageType) {
+		BufferedImage img = allocateOffHeap(width, height, imageType);
+		return img != null ? img : heapAllocator.allocate(width, height, imageType);
+	}
+
+	public BufferedImage allocateScratch(int width, int height, int imageType) {
+		BufferedImage img = allocateOffHeap(width, height, imageType);
+		return img != null ? img : heapAllocator.allocateScratch(width, height, imageType);
+	}
+
+	public void release(BufferedImage img) {
+		if (img == null) {
+			return;
+		}
+
+		ByteBufferDataBuffer buffer;
+		synchronized (leases) {
+			buffer = leases.remove(img);
+		}
+
+		if (buffer != null) {
+			img.flush();
+			buffer.free();
+		} else {
+			heapAllocator.release(img);
+		}
+	}
+
+	/**
+	 * Returns whether the specified image is held outside of the Java heap.
+	 *
+	 * @param img			The image to check.
+	 * @return				{@code true} if the pixels of the image are held
+	 * 						in direct memory, including memory which is
+	 * 						mapped from a file.
+	 */
+	public static boolean isOffHeap(BufferedImage img) {
+		DataBuffer buffer = img.getRaster().getDataBuffer();
+		return buffer instanceof ByteBufferDataBuffer;
+	}
+
+	private BufferedImage allocateOffHeap(int width, int height, int imageType) {
+		if ((long)width * height < pixelThreshold || !RasterImages.isSupportedType(imageType)) {
+			return null;
+		}
+
+		long elements = RasterImages.getElementCount(width, height, imageType);
+		if (elements > Integer.MAX_VALUE) {
+			return null;
+		}
+
+		ByteBufferDataBuffer buffer = createBuffer(
+				RasterImages.getDataType(imageType), (int)elements
+		);
+		if (buffer == null) {
+			return null;
+		}
+
+		BufferedImage img = RasterImages.createImage(width, height, imageType, buffer);
+		synchronized (leases) {
+			leases.put(img, buffer);
+		}
+		return img;
+	}
+
+	/**
+	 * Creates the buffer which holds the pixels of an off-heap image.
+	 * <p>
+	 * This implementation allocates direct memory.
+	 *
+	 * @param dataType		The data type of the buffer.
+	 * @param size			The number of elements of the buffer.
+	 * @return				The buffer, or {@code null} if it could not be
+	 * 						created, in which case the image is allocated
+	 * 						on the heap instead.
+	 */
+	protected ByteBufferDataBuffer createBuffer(int dataType, int size) {
+		try {
+			return ByteBufferDataBuffer.allocateDirect(dataType, size);
+		} catch (OutOfMemoryError e) {
+			// Direct memory exhausted. Fall back to the heap.
+			return null;
+		}
+	}
+}
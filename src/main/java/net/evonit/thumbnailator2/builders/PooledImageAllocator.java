@@ -0,0 +1,413 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2020 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.builders;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * An {@link ImageAllocator} which recycles released images.
+ * <p>
+ * Released images are kept in a pool which is bucketed by the width, height
+ * and image type of the images, so that a later request for an image of the
+ * same size and type can be served without allocating a new pixel array.
+ * Scratch images are kept in a small per-thread arena instead, as they are
+ * typically requested and released repeatedly by the same thread while
+ * resizing.
+ * <p>
+ * Only images which were handed out by an instance of this class are
+ * recycled. Releasing any other image has no effect.
+ * <p>
+ * The following example makes all images created through
+ * {@link BufferedImageBuilder} come from a pool:
+ * <pre>
+BufferedImageBuilder.setDefaultAllocator(new PooledImageAllocator());
+ * </pre>
+ *
+ * @author coobird
+ *
+ */
+public class PooledImageAllocator implements ImageAllocator {
+	/**
+	 * The default number of images which are kept for each size and type.
+	 */
+	public static final int DEFAULT_MAX_IMAGES_PER_SIZE = 4;
+
+	/**
+	 * The default upper limit on the bytes retained by the shared pool.
+	 */
+	public static final long DEFAULT_MAX_POOLED_BYTES = 64L * 1024 * 1024;
+
+	/**
+	 * The default number of scratch images which are kept for each thread.
+	 */
+	public static final int DEFAULT_MAX_SCRATCH_IMAGES = 2;
+
+	/**
+	 * The default upper limit on the bytes retained by the scratch arena of
+	 * each thread.
+	 */
+	public static final long DEFAULT_MAX_SCRATCH_BYTES = 32L * 1024 * 1024;
+
+	/**
+	 * The maximum number of images which are kept for each size and type.
+	 */
+	private final int maxImagesPerSize;
+
+	/**
+	 * The upper limit on the bytes retained by the shared pool.
+	 */
+	private final long maxPooledBytes;
+
+	/**
+	 * The maximum number of scratch images which are kept for each thread.
+	 */
+	private final int maxScratchImages;
+
+	/**
+	 * The upper limit on the bytes retained by the scratch arena of each
+	 * thread.
+	 */
+	private final long maxScratchBytes;
+
+	/**
+	 * The shared pool of released images. Guarded by itself.
+	 */
+	private final Map<Key, ArrayDeque<BufferedImage>> pool =
+			new HashMap<Key, ArrayDeque<BufferedImage>>();
+
+	/**
+	 * The number of bytes currently held by the shared pool.
+	 * Guarded by {@link #pool}.
+	 */
+	private long pooledBytes = 0;
+
+	/**
+	 * The images which are currently handed out by this allocator.
+	 * Guarded by itself.
+	 */
+	private final Map<BufferedImage, Lease> leases =
+			new WeakHashMap<BufferedImage, Lease>();
+
+	/**
+	 * The per-thread arena of released scratch images.
+	 */
+	private final ThreadLocal<ScratchArena> scratchArena =
+			new ThreadLocal<ScratchArena>() {
+				@Override
+				protected ScratchArena initialValue() {
+					return new ScratchArena();
+				}
+			};
+
+	/**
+	 * Instantiates a {@link PooledImageAllocator} with the default limits.
+	 */
+	public PooledImageAllocator() {
+		this(DEFAULT_MAX_IMAGES_PER_SIZE, DEFAULT_MAX_POOLED_BYTES, DEFAULT_MAX_SCRATCH_IMAGES);
+	}
+
+	/**
+	 * Instantiates a {@link PooledImageAllocator} with the specified limits,
+	 * and the default limit on the bytes retained by the scratch arena of
+	 * each thread.
+	 *
+	 * @param maxImagesPerSize		The maximum number of released images
+	 * 								which are kept for each size and type.
+	 * @param maxPooledBytes		The maximum number of bytes which are
+	 * 								retained by the shared pool.
+	 * @param maxScratchImages		The maximum number of scratch images
+	 * 								which are kept for each thread.
+	 * @throws IllegalArgumentException	If any of the limits are negative.
+	 */
+	public PooledImageAllocator(int maxImagesPerSize, long maxPooledBytes, int maxScratchImages) {
+		this(maxImagesPerSize, maxPooledBytes, maxScratchImages, DEFAULT_MAX_SCRATCH_BYTES);
+	}
+
+	/**
+	 * Instantiates a {@link PooledImageAllocator} with the specified limits.
+	 *
+	 * @param maxImagesPerSize		The maximum number of released images
+	 * 								which are kept for each size and type.
+	 * @param maxPooledBytes		The maximum number of bytes which are
+	 * 								retained by the shared pool.
+	 * @param maxScratchImages		The maximum number of scratch images
+	 * 								which are kept for each thread.
+	 * @param maxScratchBytes		The maximum number of bytes which are
+	 * 								retained by the scratch arena of each
+	 * 								thread.
+	 * @throws IllegalArgumentException	If any of the limits are negative.
+	 */
+	public PooledImageAllocator(int maxImagesPerSize, long maxPooledBytes, int maxScratchImages, long maxScratchBytes) {
+		if (maxImagesPerSize < 0 || maxPooledBytes < 0 || maxScratchImages < 0 || maxScratchBytes < 0) {
+			throw new IllegalArgumentException("Limits must not be negative.");
+		}
+
+		this.maxImagesPerSize = maxImagesPerSize;
+		this.maxPooledBytes = maxPooledBytes;
+		this.maxScratchImages = maxScratchImages;
+		this.maxScratchBytes = maxScratchBytes;
+	}
+
+	public BufferedImage allocate(int width, int height, int imageType) {
+		Key key = new Key(width, height, imageType);
+
+		BufferedImage img = null;
+		synchronized (pool) {
+			ArrayDeque<BufferedImage> images = pool.get(key);
+			if (images != null && !images.isEmpty()) {
+				img = images.pop();
+				pooledBytes -= sizeOf(img);
+			}
+		}
+
+		if (img != null) {
+			clear(img);
+		} else {
+			img = new BufferedImage(width, height, imageType);
+		}
+
+		lease(img, key, false);
+		return img;
+	}
+
+	public BufferedImage allocateScratch(int width, int height, int imageType) {
+		Key key = new Key(width, height, imageType);
+
+		BufferedImage img = scratchArena.get().remove(key);
+		if (img != null) {
+			clear(img);
+		} else {
+			img = new BufferedImage(width, height, imageType);
+		}
+
+		lease(img, key, true);
+		return img;
+	}
+
+	public void release(BufferedImage img) {
+		if (img == null) {
+			return;
+		}
+
+		Lease lease;
+		synchronized (leases) {
+			lease = leases.remove(img);
+		}
+
+		if (lease == null) {
+			// Not handed out by this allocator, or already released.
+			return;
+		}
+
+		if (lease.scratch) {
+			if (!scratchArena.get().put(lease.key, img)) {
+				img.flush();
+			}
+			return;
+		}
+
+		long size = sizeOf(img);
+		synchronized (pool) {
+			ArrayDeque<BufferedImage> images = pool.get(lease.key);
+			if (images == null) {
+				images = new ArrayDeque<BufferedImage>();
+				pool.put(lease.key, images);
+			}
+
+			if (images.size() < maxImagesPerSize && pooledBytes + size <= maxPooledBytes) {
+				images.push(img);
+				pooledBytes += size;
+				return;
+			}
+		}
+
+		// Pool is full, so let the garbage collector reclaim the image.
+		img.flush();
+	}
+
+	/**
+	 * Discards all images held by the shared pool and by the scratch arena
+	 * of the calling thread.
+	 */
+	public void clear() {
+		synchronized (pool) {
+			pool.clear();
+			pooledBytes = 0;
+		}
+		scratchArena.remove();
+	}
+
+	/**
+	 * Returns the number of bytes currently held by the shared pool.
+	 *
+	 * @return		The number of bytes of image data held by the pool.
+	 */
+	public long getPooledBytes() {
+		synchronized (pool) {
+			return pooledBytes;
+		}
+	}
+
+	/**
+	 * Returns the number of bytes currently held by the scratch arena of the
+	 * calling thread.
+	 *
+	 * @return		The number of bytes of image data held by the scratch
+	 * 				arena of the calling thread.
+	 */
+	public long getScratchBytes() {
+		return scratchArena.get().bytes;
+	}
+
+	private void lease(BufferedImage img, Key key, boolean scratch) {
+		synchronized (leases) {
+			leases.put(img, new Lease(key, scratch));
+		}
+	}
+
+	/**
+	 * Makes a recycled image blank, as a newly created image would be.
+	 * <p>
+	 * The pixels are cleared through {@link Graphics2D} rather than through
+	 * the backing array, as obtaining the array would prevent Java 2D from
+	 * accelerating later operations on the image.
+	 */
+	private static void clear(BufferedImage img) {
+		Graphics2D g = img.createGraphics();
+		g.setComposite(AlphaComposite.Clear);
+		g.fillRect(0, 0, img.getWidth(), img.getHeight());
+		g.dispose();
+	}
+
+	/**
+	 * Returns the number of bytes used by the pixel data of an image.
+	 */
+	private static long sizeOf(BufferedImage img) {
+		DataBuffer db = img.getRaster().getDataBuffer();
+		return (long)db.getSize() * db.getNumBanks()
+				* DataBuffer.getDataTypeSize(db.getDataType()) / 8;
+	}
+
+	/**
+	 * The released scratch images of a single thread, limited both by count
+	 * and by size. The least recently used images are evicted first.
+	 */
+	private final class ScratchArena {
+		private final Map<Key, BufferedImage> images =
+				new LinkedHashMap<Key, BufferedImage>(16, 0.75f, true);
+
+		private long bytes = 0;
+
+		private BufferedImage remove(Key key) {
+			BufferedImage img = images.remove(key);
+			if (img != null) {
+				bytes -= sizeOf(img);
+			}
+			return img;
+		}
+
+		/**
+		 * Adds an image to the arena, evicting older images to stay within
+		 * the limits.
+		 *
+		 * @return		{@code true} if the image was retained.
+		 */
+		private boolean put(Key key, BufferedImage img) {
+			long size = sizeOf(img);
+			if (maxScratchImages == 0 || size > maxScratchBytes) {
+				return false;
+			}
+
+			BufferedImage previous = images.put(key, img);
+			if (previous != null) {
+				bytes -= sizeOf(previous);
+				previous.flush();
+			}
+			bytes += size;
+
+			Iterator<BufferedImage> it = images.values().iterator();
+			while (images.size() > maxScratchImages || bytes > maxScratchBytes) {
+				BufferedImage eldest = it.next();
+				it.remove();
+				bytes -= sizeOf(eldest);
+				eldest.flush();
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Key used to bucket images by size and type.
+	 */
+	private static final class Key {
+		private final int width;
+		private final int height;
+		private final int imageType;
+
+		private Key(int width, int height, int imageType) {
+			this.width = width;
+			this.height = height;
+			this.imageType = imageType;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key)o;
+			return width == other.width
+					&& height == other.height
+					&& imageType == other.imageType;
+		}
+
+		@Override
+		public int hashCode() {
+			return (width * 31 + height) * 31 + imageType;
+		}
+	}
+
+	/**
+	 * Records how an image which is handed out was obtained.
+	 */
+	private static final class Lease {
+		private final Key key;
+		private final boolean scratch;
+
+		private Lease(Key key, boolean scratch) {
+			this.key = key;
+			this.scratch = scratch;
+		}
+	}
+}
@@ -0,0 +1,158 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2020 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.builders;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+
+import net.evonit.thumbnailator2.util.raster.RasterImages;
+import net.evonit.thumbnailator2.util.raster.StripedImages;
+
+/**
+ * An {@link ImageAllocator} which splits the pixels of large images into
+ * strips of rows, so that no single array exceeds a size limit.
+ * <p>
+ * A 12 megapixel image held in one {@code int[]} needs a 48 MB array. With
+ * the G1 garbage collector, such an array is a humongous object which
+ * occupies whole regions of its own, fragmenting the heap and triggering
+ * concurrent cycles early. Images allocated by this class are instead held
+ * by a {@link net.evonit.thumbnailator2.util.raster.StripedDataBuffer}
+ * whose arrays are at most the configured size, unless a single row of the
+ * image is larger than that.
+ * <p>
+ * Striped images have the {@link BufferedImage#TYPE_CUSTOM} image type; the
+ * type they were allocated with can be obtained through
+ * {@link RasterImages#getImageType(BufferedImage)}. The resizers and filters
+ * of Thumbnailator draw into and from such images one strip at a time using
+ * {@link net.evonit.thumbnailator2.util.BufferedImages#paint(BufferedImage, net.evonit.thumbnailator2.util.BufferedImages.Painter)},
+ * so that Java 2D can still accelerate the drawing.
+ * <p>
+ * Images which fit within the limit, and images of types which cannot be
+ * striped, are obtained from another allocator.
+ *
+ * @author coobird
+ *
+ */
+public class StripedImageAllocator implements ImageAllocator {
+	/**
+	 * The default maximum size of an array holding pixels, in bytes.
+	 */
+	public static final int DEFAULT_MAX_ARRAY_BYTES = 1 << 20;
+
+	/**
+	 * The maximum size of an array holding pixels, in bytes.
+	 */
+	private final int maxArrayBytes;
+
+	/**
+	 * The allocator used for images which are not striped.
+	 */
+	private final ImageAllocator heapAllocator;
+
+	/**
+	 * Instantiates a {@link StripedImageAllocator} which limits arrays to
+	 * {@link #DEFAULT_MAX_ARRAY_BYTES}, and obtains smaller images from the
+	 * {@link DefaultImageAllocator}.
+	 */
+	public StripedImageAllocator() {
+		this(DEFAULT_MAX_ARRAY_BYTES);
+	}
+
+	/**
+	 * Instantiates a {@link StripedImageAllocator} which limits arrays to
+	 * the specified size, and obtains smaller images from the
+	 * {@link DefaultImageAllocator}.
+	 *
+	 * @param maxArrayBytes		The maximum size of an array, in bytes.
+	 */
+	public StripedImageAllocator(int maxArrayBytes) {
+		this(maxArrayBytes, DefaultImageAllocator.getInstance());
+	}
+
+	/**
+	 * Instantiates a {@link StripedImageAllocator} which limits arrays to
+	 * the specified size, and obtains smaller images from the specified
+	 * allocator.
+	 *
+	 * @param maxArrayBytes		The maximum size of an array, in bytes.
+	 * @param heapAllocator		The allocator used for images which are not
+	 * 							striped.
+	 * @throws IllegalArgumentException	If the size is not positive.
+	 * @throws NullPointerException		If the allocator is {@code null}.
+	 */
+	public StripedImageAllocator(int maxArrayBytes, ImageAllocator heapAllocator) {
+		if (maxArrayBytes <= 0) {
+			throw new IllegalArgumentException("Maximum array size must be greater than 0.");
+		}
+		if (heapAllocator == null) {
+			throw new NullPointerException("Allocator is null.");
+		}
+
+		this.maxArrayBytes = maxArrayBytes;
+		this.heapAllocator = heapAllocator;
+	}
+
+	public BufferedImage allocate(int width, int height, int imageType) {
+		int rowsPerStrip = getRowsPerStrip(width, height, imageType);
+		if (rowsPerStrip == 0) {
+			return heapAllocator.allocate(width, height, imageType);
+		}
+		return StripedImages.createImage(width, height, imageType, rowsPerStrip);
+	}
+
+	public BufferedImage allocateScratch(int width, int height, int imageType) {
+		int rowsPerStrip = getRowsPerStrip(width, height, imageType);
+		if (rowsPerStrip == 0) {
+			return heapAllocator.allocateScratch(width, height, imageType);
+		}
+		return StripedImages.createImage(width, height, imageType, rowsPerStrip);
+	}
+
+	public void release(BufferedImage img) {
+		// Striped images are left to the garbage collector.
+		if (!StripedImages.isStriped(img)) {
+			heapAllocator.release(img);
+		}
+	}
+
+	/**
+	 * Returns the number of rows in each strip of an image of the specified
+	 * size and type, or {@code 0} if the image should not be striped.
+	 */
+	private int getRowsPerStrip(int width, int height, int imageType) {
+		if (width <= 0 || height <= 0 || !RasterImages.isSupportedType(imageType)) {
+			return 0;
+		}
+
+		int elementBytes = DataBuffer.getDataTypeSize(RasterImages.getDataType(imageType)) / 8;
+		long rowBytes = RasterImages.getElementCount(width, 1, imageType) * elementBytes;
+		if (rowBytes * height <= maxArrayBytes
+				|| RasterImages.getElementCount(width, height, imageType) > Integer.MAX_VALUE) {
+			return 0;
+		}
+
+		return (int)Math.max(maxArrayBytes / rowBytes, 1);
+	}
+}
@@ -25,12 +25,14 @@
 package net.evonit.thumbnailator2.filters;
 
 import java.awt.Color;
-import java.awt.Graphics;
+import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.image.BufferedImage;
 
 import net.evonit.thumbnailator2.builders.BufferedImageBuilder;
 import net.evonit.thumbnailator2.geometry.Position;
+import net.evonit.thumbnailator2.util.BufferedImages;
+import net.evonit.thumbnailator2.util.raster.RasterImages;
 
 /**
  * An {@link ImageFilter} which will enclose an image into a specified
@@ -150,7 +152,7 @@ public class Canvas implements ImageFilter {
 		this.fillColor = fillColor;
 	}
 
-	public BufferedImage apply(BufferedImage img) {
+	public BufferedImage apply(final BufferedImage img) {
 		int widthToUse = width;
 		int heightToUse = height;
 		
@@ -167,7 +169,7 @@ public class Canvas implements ImageFilter {
 			heightToUse = img.getHeight();
 		}
 		
-		Point p = position.calculate(
+		final Point p = position.calculate(
 				widthToUse, heightToUse, img.getWidth(), img.getHeight(),
 				0, 0, 0, 0
 		);
@@ -175,26 +177,29 @@ public class Canvas implements ImageFilter {
 		BufferedImage finalImage = new BufferedImageBuilder(
 				widthToUse,
 				heightToUse,
-				img.getType()
+				RasterImages.getImageType(img)
 		).build();
 		
-		Graphics g = finalImage.getGraphics();
-		
-		if (fillColor == null && !img.getColorModel().hasAlpha()) {
-			/*
-			 * Fulfills the specification to use a black fill color for images
-			 * w/o alpha, if the fill color isn't specified.
-			 */
-			g.setColor(Color.black);
-			g.fillRect(0, 0, width, height);
+		final int fillWidth = widthToUse;
+		final int fillHeight = heightToUse;
+		BufferedImages.paint(finalImage, new BufferedImages.Painter() {
+			public void paint(Graphics2D g) {
+				if (fillColor == null && !img.getColorModel().hasAlpha()) {
+					/*
+					 * Fulfills the specification to use a black fill color for images
+					 * w/o alpha, if the fill color isn't specified.
+					 */
+					g.setColor(Color.black);
+					g.fillRect(0, 0, width, height);
 
-		} else if (fillColor != null) {
-			g.setColor(fillColor);
-			g.fillRect(0, 0, widthToUse, heightToUse);
-		}
-		
-		g.drawImage(img, p.x, p.y, null);
-		g.dispose();
+				} else if (fillColor != null) {
+					g.setColor(fillColor);
+					g.fillRect(0, 0, fillWidth, fillHeight);
+				}
+				
+				BufferedImages.drawImage(g, img, p.x, p.y);
+			}
+		});
 		
 		return finalImage;
 	}
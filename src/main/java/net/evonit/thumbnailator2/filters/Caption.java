@@ -133,33 +133,34 @@ public class Caption implements ImageFilter {
 		this(caption, font, c, 1.0f, position, insets);
 	}
 
-	public BufferedImage apply(BufferedImage img) {
+	public BufferedImage apply(final BufferedImage img) {
 		BufferedImage newImage = BufferedImages.copy(img);
 		
-		Graphics2D g = newImage.createGraphics();
-		g.setFont(font);
-		g.setColor(c);
-		g.setComposite(
-				AlphaComposite.getInstance(AlphaComposite.SRC_OVER, alpha)
-		);
-		
-		int imageWidth = img.getWidth();
-		int imageHeight = img.getHeight();
-		
-		int captionWidth = g.getFontMetrics().stringWidth(caption);
-		int captionHeight = g.getFontMetrics().getHeight() / 2;
-		
-		Point p = position.calculate(
-				imageWidth,	imageHeight, captionWidth, 0,
-				insets, insets, insets, insets
-		);
+		BufferedImages.paint(newImage, new BufferedImages.Painter() {
+			public void paint(Graphics2D g) {
+				g.setFont(font);
+				g.setColor(c);
+				g.setComposite(
+						AlphaComposite.getInstance(AlphaComposite.SRC_OVER, alpha)
+				);
+				
+				int imageWidth = img.getWidth();
+				int imageHeight = img.getHeight();
+				
+				int captionWidth = g.getFontMetrics().stringWidth(caption);
+				int captionHeight = g.getFontMetrics().getHeight() / 2;
+				
+				Point p = position.calculate(
+						imageWidth,	imageHeight, captionWidth, 0,
+						insets, insets, insets, insets
+				);
 
-		double yRatio = p.y / (double)img.getHeight();
-		int yOffset = (int)((1.0 - yRatio) * captionHeight);
-		
-		g.drawString(caption, p.x, p.y + yOffset);
-		
-		g.dispose();
+				double yRatio = p.y / (double)img.getHeight();
+				int yOffset = (int)((1.0 - yRatio) * captionHeight);
+				
+				g.drawString(caption, p.x, p.y + yOffset);
+			}
+		});
 		
 		return newImage;
 	}
@@ -30,6 +30,7 @@ import java.awt.image.BufferedImage;
 
 import net.evonit.thumbnailator2.builders.BufferedImageBuilder;
 import net.evonit.thumbnailator2.util.BufferedImages;
+import net.evonit.thumbnailator2.util.raster.RasterImages;
 
 /**
  * An image filter which will add a color tint to an image.
@@ -94,20 +95,23 @@ public final class Colorize implements ImageFilter {
 		this.c = new Color(r, g, b, a);
 	}
 	
-	public BufferedImage apply(BufferedImage img) {
-		int width = img.getWidth();
-		int height = img.getHeight();
+	public BufferedImage apply(final BufferedImage img) {
+		final int width = img.getWidth();
+		final int height = img.getHeight();
 		
 		BufferedImage newImage = new BufferedImageBuilder(width, height).build();
 		
-		Graphics2D g = newImage.createGraphics();
-		g.drawImage(img, 0, 0, null);
-		g.setColor(c);
-		g.fillRect(0, 0, width, height);
-		g.dispose();
+		BufferedImages.paint(newImage, new BufferedImages.Painter() {
+			public void paint(Graphics2D g) {
+				BufferedImages.drawImage(g, img, 0, 0);
+				g.setColor(c);
+				g.fillRect(0, 0, width, height);
+			}
+		});
 
-		if (img.getType() != newImage.getType()) {
-			return BufferedImages.copy(newImage, img.getType());
+		int imageType = RasterImages.getImageType(img);
+		if (imageType != RasterImages.getImageType(newImage)) {
+			return BufferedImages.copy(newImage, imageType);
 		}
 
 		return newImage;
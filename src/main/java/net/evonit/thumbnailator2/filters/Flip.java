@@ -24,10 +24,12 @@
 
 package net.evonit.thumbnailator2.filters;
 
-import java.awt.Graphics;
+import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 
 import net.evonit.thumbnailator2.builders.BufferedImageBuilder;
+import net.evonit.thumbnailator2.util.BufferedImages;
+import net.evonit.thumbnailator2.util.raster.RasterImages;
 
 /**
  * A class containing flip transformation filters.
@@ -41,16 +43,19 @@ public class Flip {
 	 * An image filter which performs a horizontal flip of the image.
 	 */
 	public static final ImageFilter HORIZONTAL = new ImageFilter() {
-		public BufferedImage apply(BufferedImage img) {
-			int width = img.getWidth();
-			int height = img.getHeight();
+		public BufferedImage apply(final BufferedImage img) {
+			final int width = img.getWidth();
+			final int height = img.getHeight();
 			
-			BufferedImage newImage =
-					new BufferedImageBuilder(width, height, img.getType()).build();
+			BufferedImage newImage = new BufferedImageBuilder(
+					width, height, RasterImages.getImageType(img)
+			).build();
 			
-			Graphics g = newImage.getGraphics();
-			g.drawImage(img, width, 0, 0, height, 0, 0, width, height, null);
-			g.dispose();
+			BufferedImages.paint(newImage, new BufferedImages.Painter() {
+				public void paint(Graphics2D g) {
+					BufferedImages.drawImage(g, img, width, 0, 0, height, 0, 0, width, height);
+				}
+			});
 			
 			return newImage;
 		}
@@ -60,16 +65,19 @@ public class Flip {
 	 * An image filter which performs a vertical flip of the image.
 	 */
 	public static final ImageFilter VERTICAL = new ImageFilter() {
-		public BufferedImage apply(BufferedImage img) {
-			int width = img.getWidth();
-			int height = img.getHeight();
+		public BufferedImage apply(final BufferedImage img) {
+			final int width = img.getWidth();
+			final int height = img.getHeight();
 			
-			BufferedImage newImage =
-					new BufferedImageBuilder(width, height, img.getType()).build();
+			BufferedImage newImage = new BufferedImageBuilder(
+					width, height, RasterImages.getImageType(img)
+			).build();
 			
-			Graphics g = newImage.getGraphics();
-			g.drawImage(img, 0, height, width, 0, 0, 0, width, height, null);
-			g.dispose();
+			BufferedImages.paint(newImage, new BufferedImages.Painter() {
+				public void paint(Graphics2D g) {
+					BufferedImages.drawImage(g, img, 0, height, width, 0, 0, 0, width, height);
+				}
+			});
 			
 			return newImage;
 		}
@@ -30,6 +30,7 @@ import java.awt.image.BufferedImage;
 
 import net.evonit.thumbnailator2.builders.BufferedImageBuilder;
 import net.evonit.thumbnailator2.util.BufferedImages;
+import net.evonit.thumbnailator2.util.raster.RasterImages;
 
 /**
  * A class containing rotation filters.
@@ -87,7 +88,7 @@ public class Rotation {
 				return new double[] {nx, ny};
 			}
 			
-			public BufferedImage apply(BufferedImage img) {
+			public BufferedImage apply(final BufferedImage img) {
 				int width = img.getWidth();
 				int height = img.getHeight();
 				
@@ -120,34 +121,36 @@ public class Rotation {
 				int newHeight = (int)Math.round(maxY - minY);
 				newImage = new BufferedImageBuilder(newWidth, newHeight).build();
 				
-				Graphics2D g = newImage.createGraphics();
+				final double w = newWidth / 2.0;
+				final double h = newHeight / 2.0;
+				final int centerX = (int)Math.round((newWidth - width) / 2.0);
+				final int centerY = (int)Math.round((newHeight - height) / 2.0);
 				
-				/*
-				 * TODO consider RenderingHints to use.
-				 * The following are hints which have been chosen to give
-				 * decent image quality. In the future, there may be a need
-				 * to have a way to change these settings.
-				 */
-				g.setRenderingHint(
-						RenderingHints.KEY_INTERPOLATION,
-						RenderingHints.VALUE_INTERPOLATION_BILINEAR
-				);
-				g.setRenderingHint(
-						RenderingHints.KEY_ANTIALIASING,
-						RenderingHints.VALUE_ANTIALIAS_ON
-				);
-				
-				double w = newWidth / 2.0;
-				double h = newHeight / 2.0;
-				g.rotate(Math.toRadians(angle), w, h);
-				int centerX = (int)Math.round((newWidth - width) / 2.0);
-				int centerY = (int)Math.round((newHeight - height) / 2.0);
-				
-				g.drawImage(img, centerX, centerY, null);
-				g.dispose();
+				BufferedImages.paint(newImage, new BufferedImages.Painter() {
+					public void paint(Graphics2D g) {
+						/*
+						 * TODO consider RenderingHints to use.
+						 * The following are hints which have been chosen to give
+						 * decent image quality. In the future, there may be a need
+						 * to have a way to change these settings.
+						 */
+						g.setRenderingHint(
+								RenderingHints.KEY_INTERPOLATION,
+								RenderingHints.VALUE_INTERPOLATION_BILINEAR
+						);
+						g.setRenderingHint(
+								RenderingHints.KEY_ANTIALIASING,
+								RenderingHints.VALUE_ANTIALIAS_ON
+						);
+						
+						g.rotate(Math.toRadians(angle), w, h);
+						BufferedImages.drawImage(g, img, centerX, centerY);
+					}
+				});
 
-				if (img.getType() != newImage.getType()) {
-					return BufferedImages.copy(newImage, img.getType());
+				int imageType = RasterImages.getImageType(img);
+				if (imageType != RasterImages.getImageType(newImage)) {
+					return BufferedImages.copy(newImage, imageType);
 				}
 
 				return newImage;
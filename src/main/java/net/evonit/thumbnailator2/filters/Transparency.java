@@ -26,6 +26,7 @@ package net.evonit.thumbnailator2.filters;
 
 import net.evonit.thumbnailator2.builders.BufferedImageBuilder;
 import net.evonit.thumbnailator2.util.BufferedImages;
+import net.evonit.thumbnailator2.util.raster.RasterImages;
 
 import java.awt.AlphaComposite;
 import java.awt.Graphics2D;
@@ -82,7 +83,7 @@ public class Transparency implements ImageFilter {
 		this((float)alpha);
 	}
 
-	public BufferedImage apply(BufferedImage img) {
+	public BufferedImage apply(final BufferedImage img) {
 		int width = img.getWidth();
 		int height = img.getHeight();
 		
@@ -92,13 +93,16 @@ public class Transparency implements ImageFilter {
 				BufferedImage.TYPE_INT_ARGB
 		).build();
 		
-		Graphics2D g = finalImage.createGraphics();
-		g.setComposite(composite);
-		g.drawImage(img, 0, 0, null);
-		g.dispose();
+		BufferedImages.paint(finalImage, new BufferedImages.Painter() {
+			public void paint(Graphics2D g) {
+				g.setComposite(composite);
+				BufferedImages.drawImage(g, img, 0, 0);
+			}
+		});
 
-		if (img.getType() != finalImage.getType()) {
-			return BufferedImages.copy(finalImage, img.getType());
+		int imageType = RasterImages.getImageType(img);
+		if (imageType != RasterImages.getImageType(finalImage)) {
+			return BufferedImages.copy(finalImage, imageType);
 		}
 
 		return finalImage;
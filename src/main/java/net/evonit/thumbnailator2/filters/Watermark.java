@@ -31,6 +31,8 @@ import java.awt.image.BufferedImage;
 
 import net.evonit.thumbnailator2.builders.BufferedImageBuilder;
 import net.evonit.thumbnailator2.geometry.Position;
+import net.evonit.thumbnailator2.util.BufferedImages;
+import net.evonit.thumbnailator2.util.raster.RasterImages;
 
 /**
  * This class applies a watermark to an image.
@@ -110,10 +112,10 @@ public class Watermark implements ImageFilter {
 		this(position, watermarkImg, opacity, 0);
 	}
 
-	public BufferedImage apply(BufferedImage img) {
+	public BufferedImage apply(final BufferedImage img) {
 		int width = img.getWidth();
 		int height = img.getHeight();
-		int type = img.getType();
+		int type = RasterImages.getImageType(img);
 
 		BufferedImage imgWithWatermark =
 			new BufferedImageBuilder(width, height, type).build();
@@ -121,24 +123,24 @@ public class Watermark implements ImageFilter {
 		int watermarkWidth = watermarkImg.getWidth();
 		int watermarkHeight = watermarkImg.getHeight();
 
-		Point p = position.calculate(
+		final Point p = position.calculate(
 				width, height, watermarkWidth, watermarkHeight,
 				insets, insets, insets, insets
 		);
 
-		Graphics2D g = imgWithWatermark.createGraphics();
-		
-		// Draw the actual image.
-		g.drawImage(img, 0, 0, null);
-		
-		// Draw the watermark on top.
-		g.setComposite(
-				AlphaComposite.getInstance(AlphaComposite.SRC_OVER, opacity)
-		);
-		
-		g.drawImage(watermarkImg, p.x, p.y, null);
-		
-		g.dispose();
+		BufferedImages.paint(imgWithWatermark, new BufferedImages.Painter() {
+			public void paint(Graphics2D g) {
+				// Draw the actual image.
+				BufferedImages.drawImage(g, img, 0, 0);
+				
+				// Draw the watermark on top.
+				g.setComposite(
+						AlphaComposite.getInstance(AlphaComposite.SRC_OVER, opacity)
+				);
+				
+				BufferedImages.drawImage(g, watermarkImg, p.x, p.y);
+			}
+		});
 
 		return imgWithWatermark;
 	}
@@ -156,6 +156,12 @@ public abstract class ThumbnailMaker {
 	 * destination images are known at that time.
 	 */
 	protected ResizerFactory resizerFactory;
+	
+	/**
+	 * The {@link Resizer} which made the last thumbnail, or {@code null}
+	 * if no thumbnail has been made.
+	 */
+	private Resizer lastResizer;
 
 	/**
 	 * Creates and initializes an instance of {@link ThumbnailMaker}.
@@ -216,9 +222,21 @@ public abstract class ThumbnailMaker {
 		Resizer resizer = resizerFactory.getResizer(imgSize, thumbnailSize);
 		
 		resizer.resize(img, thumbnailImage);
+		lastResizer = resizer;
 		
 		return thumbnailImage;
 	}
+	
+	/**
+	 * Returns the {@link Resizer} which made the last thumbnail made by this
+	 * {@link ThumbnailMaker}, as obtained from its {@link ResizerFactory}.
+	 * 
+	 * @return				The resizer, or {@code null} if no thumbnail has
+	 * 						been made.
+	 */
+	public Resizer getLastResizer() {
+		return lastResizer;
+	}
 
 	/**
 	 * Sets the type for the {@link BufferedImage} to produce.
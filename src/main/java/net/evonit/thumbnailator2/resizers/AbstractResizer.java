@@ -24,13 +24,18 @@
 
 package net.evonit.thumbnailator2.resizers;
 
+import java.awt.Composite;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
+import net.evonit.thumbnailator2.tasks.io.Cancellation;
+import net.evonit.thumbnailator2.util.BufferedImages;
+
 /**
  * A class which performs a resize operation on a source image and outputs the
  * result to a destination image.
@@ -51,6 +56,12 @@ public abstract class AbstractResizer implements Resizer {
 	
 	protected static final RenderingHints.Key KEY_INTERPOLATION =
 		RenderingHints.KEY_INTERPOLATION;
+	
+	/**
+	 * The number of destination rows drawn between checks of the
+	 * {@link Cancellation} of the current thread.
+	 */
+	static final int CANCELLATION_ROWS = 64;
 
 	/**
 	 * Initializes the {@link AbstractResizer}.
@@ -101,9 +112,148 @@ public abstract class AbstractResizer implements Resizer {
 		int width = destImage.getWidth();
 		int height = destImage.getHeight();
 		
-		Graphics2D g = createGraphics(destImage);
-		g.drawImage(srcImage, 0, 0, width, height, null);
-		g.dispose();
+		drawScaled(srcImage, destImage, null, width, height);
+	}
+	
+	/**
+	 * Draws the source image scaled to the specified size at the top-left
+	 * corner of the destination image, using the rendering hints of this
+	 * resizer.
+	 * <p>
+	 * Images which are not backed by a single Java array, such as images
+	 * held in strips, are drawn a strip at a time so that Java 2D can
+	 * accelerate the drawing. When the current thread has a
+	 * {@link Cancellation}, the destination is drawn a band of rows at a
+	 * time, and the cancellation is checked before each band.
+	 * 
+	 * @param srcImage		The image to draw.
+	 * @param destImage		The image to draw onto.
+	 * @param composite		The composite to draw with, or {@code null} to
+	 * 						use the default composite.
+	 * @param width			The width to draw the source image at.
+	 * @param height		The height to draw the source image at.
+	 */
+	protected void drawScaled(
+			final BufferedImage srcImage, BufferedImage destImage,
+			final Composite composite, final int width, final int height
+	) {
+		BufferedImages.paint(destImage, new ScaledPainter(composite, 0, 0, width, height) {
+			void draw(Graphics2D g) {
+				BufferedImages.drawImage(g, srcImage, 0, 0, width, height);
+			}
+		});
+	}
+	
+	/**
+	 * Draws a region of the source image scaled to a region of the
+	 * destination image, using the rendering hints of this resizer.
+	 * <p>
+	 * Images which are not backed by a single Java array, such as images
+	 * held in strips, are drawn a strip at a time so that Java 2D can
+	 * accelerate the drawing. When the current thread has a
+	 * {@link Cancellation}, the destination is drawn a band of rows at a
+	 * time, and the cancellation is checked before each band.
+	 * 
+	 * @param srcImage		The image to draw.
+	 * @param destImage		The image to draw onto, which may be the source
+	 * 						image when it is reduced in place.
+	 * @param composite		The composite to draw with, or {@code null} to
+	 * 						use the default composite.
+	 * @param dx1			The x coordinate of the first corner of the
+	 * 						destination region.
+	 * @param dy1			The y coordinate of the first corner of the
+	 * 						destination region.
+	 * @param dx2			The x coordinate of the second corner of the
+	 * 						destination region.
+	 * @param dy2			The y coordinate of the second corner of the
+	 * 						destination region.
+	 * @param sx1			The x coordinate of the first corner of the
+	 * 						source region.
+	 * @param sy1			The y coordinate of the first corner of the
+	 * 						source region.
+	 * @param sx2			The x coordinate of the second corner of the
+	 * 						source region.
+	 * @param sy2			The y coordinate of the second corner of the
+	 * 						source region.
+	 */
+	protected void drawScaled(
+			final BufferedImage srcImage, BufferedImage destImage,
+			final Composite composite,
+			final int dx1, final int dy1, final int dx2, final int dy2,
+			final int sx1, final int sy1, final int sx2, final int sy2
+	) {
+		BufferedImages.paint(destImage, new ScaledPainter(
+				composite,
+				Math.min(dx1, dx2), Math.min(dy1, dy2),
+				Math.abs(dx2 - dx1), Math.abs(dy2 - dy1)
+		) {
+			void draw(Graphics2D g) {
+				BufferedImages.drawImage(g, srcImage, dx1, dy1, dx2, dy2, sx1, sy1, sx2, sy2);
+			}
+		});
+	}
+	
+	/**
+	 * Paints a scaled image onto a region of the destination, using the
+	 * rendering hints of this resizer.
+	 * <p>
+	 * When the current thread has a {@link Cancellation}, the region is
+	 * painted a band of {@link #CANCELLATION_ROWS} rows at a time, by
+	 * clipping the drawing to each band, so that a large image can be
+	 * stopped partway rather than only once it has been drawn. The result
+	 * is the same as drawing the region as a whole, up to rounding.
+	 */
+	private abstract class ScaledPainter implements BufferedImages.Painter {
+		private final Composite composite;
+		private final int x;
+		private final int y;
+		private final int width;
+		private final int height;
+		
+		ScaledPainter(Composite composite, int x, int y, int width, int height) {
+			this.composite = composite;
+			this.x = x;
+			this.y = y;
+			this.width = width;
+			this.height = height;
+		}
+		
+		/**
+		 * Draws the scaled image with the specified {@link Graphics2D}.
+		 */
+		abstract void draw(Graphics2D g);
+		
+		public void paint(Graphics2D g) {
+			Cancellation.checkThread();
+			g.setRenderingHints(RENDERING_HINTS);
+			if (composite != null) {
+				g.setComposite(composite);
+			}
+			
+			if (Cancellation.getThreadCancellation() == null) {
+				draw(g);
+				return;
+			}
+			
+			int top = y;
+			int bottom = y + height;
+			Rectangle clip = g.getClipBounds();
+			if (clip != null) {
+				top = Math.max(top, clip.y);
+				bottom = Math.min(bottom, clip.y + clip.height);
+			}
+			
+			for (int bandY = top; bandY < bottom; bandY += CANCELLATION_ROWS) {
+				Cancellation.checkThread();
+				Graphics2D band = (Graphics2D)g.create();
+				try {
+					band.clipRect(x, bandY, width, Math.min(CANCELLATION_ROWS, bottom - bandY));
+					draw(band);
+				} finally {
+					band.dispose();
+				}
+			}
+		}
 	}
 	
 	/**
@@ -25,9 +25,9 @@
 package net.evonit.thumbnailator2.resizers;
 
 import net.evonit.thumbnailator2.builders.BufferedImageBuilder;
+import net.evonit.thumbnailator2.util.raster.RasterImages;
 
 import java.awt.AlphaComposite;
-import java.awt.Graphics2D;
 import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
 import java.util.Collections;
@@ -92,9 +92,7 @@ public class ProgressiveBilinearResizer extends AbstractResizer {
 		
 		// If multi-step downscaling is not required, perform one-step.
 		if ((targetWidth * 2 >= currentWidth) && (targetHeight * 2 >= currentHeight)) {
-			Graphics2D g = createGraphics(destImage);
-			g.drawImage(srcImage, 0, 0, targetWidth, targetHeight, null);
-			g.dispose();
+			drawScaled(srcImage, destImage, null, targetWidth, targetHeight);
 			return;
 		}
 		
@@ -102,57 +100,57 @@ public class ProgressiveBilinearResizer extends AbstractResizer {
 		BufferedImage tempImage = new BufferedImageBuilder(
 				currentWidth,
 				currentHeight,
-				destImage.getType()
-		).build();
+				RasterImages.getImageType(destImage)
+		).buildScratch();
 		
-		Graphics2D g = createGraphics(tempImage);
-		g.setComposite(AlphaComposite.Src);
-		
-		/*
-		 * Determine the size of the first resize step should be.
-		 * 1) Beginning from the target size
-		 * 2) Increase each dimension by 2
-		 * 3) Until reaching the original size
-		 */
-		int startWidth = targetWidth;
-		int startHeight = targetHeight;
-		
-		while (startWidth < currentWidth && startHeight < currentHeight) {
-			startWidth *= 2;
-			startHeight *= 2;
-		}
-		
-		currentWidth = startWidth / 2;
-		currentHeight = startHeight / 2;
-
-		// Perform first resize step.
-		g.drawImage(srcImage, 0, 0, currentWidth, currentHeight, null);
-		
-		// Perform an in-place progressive bilinear resize.
-		while (	(currentWidth >= targetWidth * 2) && (currentHeight >= targetHeight * 2) ) {
-			currentWidth /= 2;
-			currentHeight /= 2;
+		try {
+			/*
+			 * Determine the size of the first resize step should be.
+			 * 1) Beginning from the target size
+			 * 2) Increase each dimension by 2
+			 * 3) Until reaching the original size
+			 */
+			int startWidth = targetWidth;
+			int startHeight = targetHeight;
 			
-			if (currentWidth < targetWidth) {
-				currentWidth = targetWidth;
+			while (startWidth < currentWidth && startHeight < currentHeight) {
+				startWidth *= 2;
+				startHeight *= 2;
 			}
-			if (currentHeight < targetHeight) {
-				currentHeight = targetHeight;
+			
+			currentWidth = startWidth / 2;
+			currentHeight = startHeight / 2;
+
+			// Perform first resize step.
+			drawScaled(srcImage, tempImage, AlphaComposite.Src, currentWidth, currentHeight);
+			
+			// Perform an in-place progressive bilinear resize.
+			while (	(currentWidth >= targetWidth * 2) && (currentHeight >= targetHeight * 2) ) {
+				currentWidth /= 2;
+				currentHeight /= 2;
+			
+				if (currentWidth < targetWidth) {
+					currentWidth = targetWidth;
+				}
+				if (currentHeight < targetHeight) {
+					currentHeight = targetHeight;
+				}
+			
+				drawScaled(
+						tempImage, tempImage, AlphaComposite.Src,
+						0, 0, currentWidth, currentHeight,
+						0, 0, currentWidth * 2, currentHeight * 2
+				);
 			}
 			
-			g.drawImage(
-					tempImage,
-					0, 0, currentWidth, currentHeight,
-					0, 0, currentWidth * 2, currentHeight * 2,
-					null
+			// Draw the resized image onto the destination image.
+			drawScaled(
+					tempImage, destImage, null,
+					0, 0, targetWidth, targetHeight,
+					0, 0, currentWidth, currentHeight
 			);
+		} finally {
+			BufferedImageBuilder.release(tempImage);
 		}
-		
-		g.dispose();
-		
-		// Draw the resized image onto the destination image.
-		Graphics2D destg = createGraphics(destImage);
-		destg.drawImage(tempImage, 0, 0, targetWidth, targetHeight, 0, 0, currentWidth, currentHeight, null);
-		destg.dispose();
 	}
 }
@@ -0,0 +1,224 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2020 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.resizers;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+
+import net.evonit.thumbnailator2.builders.BufferedImageBuilder;
+
+/**
+ * A resizer which receives the pixels of the source image a row at a time
+ * while the image is being decoded, so that the source image never has to
+ * be held in memory as a whole.
+ * <p>
+ * Each pixel of the resized image is the mean of the source pixels which
+ * fall on it, weighted by their alpha when the image has transparency.
+ * Only the sums of the pixels of the resized image are kept, so rows can
+ * be added in any order, including the passes of an interlaced image.
+ * <p>
+ * This resizer is intended for reducing images. Reducing to an exact
+ * thumbnail size and further resizing are left to the {@link Resizer}s,
+ * which operate on the much smaller reduced image.
+ *
+ * @author coobird
+ *
+ */
+public class StreamingResizer {
+	private final int sourceWidth;
+	private final int sourceHeight;
+	private final int width;
+	private final int height;
+	private final boolean alpha;
+
+	/**
+	 * The column of the resized image each column of the source image falls
+	 * on.
+	 */
+	private final int[] columns;
+
+	/**
+	 * The sums of the alpha and the alpha-weighted red, green and blue
+	 * samples of each pixel, or only of the red, green and blue samples for
+	 * images without transparency.
+	 */
+	private final long[] sums;
+
+	/**
+	 * The number of source pixels which have been added to each pixel.
+	 */
+	private final int[] counts;
+
+	/**
+	 * Creates a resizer which reduces an image of the given size.
+	 *
+	 * @param sourceWidth	The width of the source image.
+	 * @param sourceHeight	The height of the source image.
+	 * @param width			The width of the resized image.
+	 * @param height		The height of the resized image.
+	 * @param alpha			Whether the source image has transparency.
+	 * @throws IllegalArgumentException	If a size is not positive, or the
+	 * 									resized image is larger than the
+	 * 									source image.
+	 */
+	public StreamingResizer(int sourceWidth, int sourceHeight, int width, int height, boolean alpha) {
+		if (width <= 0 || height <= 0 || sourceWidth < width || sourceHeight < height) {
+			throw new IllegalArgumentException(
+					"Cannot reduce " + sourceWidth + "x" + sourceHeight +
+					" to " + width + "x" + height + "."
+			);
+		}
+		this.sourceWidth = sourceWidth;
+		this.sourceHeight = sourceHeight;
+		this.width = width;
+		this.height = height;
+		this.alpha = alpha;
+
+		columns = new int[sourceWidth];
+		for (int x = 0; x < sourceWidth; x++) {
+			columns[x] = (int)((long)x * width / sourceWidth);
+		}
+		sums = new long[width * height * (alpha ? 4 : 3)];
+		counts = new int[width * height];
+	}
+
+	/**
+	 * Returns the width of the source image.
+	 *
+	 * @return		The width of the source image.
+	 */
+	public int getSourceWidth() {
+		return sourceWidth;
+	}
+
+	/**
+	 * Returns the height of the source image.
+	 *
+	 * @return		The height of the source image.
+	 */
+	public int getSourceHeight() {
+		return sourceHeight;
+	}
+
+	/**
+	 * Returns whether the source image has transparency.
+	 *
+	 * @return		{@code true} if the source image has transparency.
+	 */
+	public boolean hasAlpha() {
+		return alpha;
+	}
+
+	/**
+	 * Adds a complete row of the source image.
+	 *
+	 * @param y			The row of the source image.
+	 * @param pixels	The pixels of the row, as non-premultiplied ARGB
+	 * 					values.
+	 */
+	public void addRow(int y, int[] pixels) {
+		addPixels(y, 0, 1, pixels, sourceWidth);
+	}
+
+	/**
+	 * Adds evenly spaced pixels of a row of the source image.
+	 *
+	 * @param y			The row of the source image.
+	 * @param x			The column of the first pixel.
+	 * @param step		The distance between the columns of the pixels.
+	 * @param pixels	The pixels, as non-premultiplied ARGB values.
+	 * @param count		The number of pixels.
+	 */
+	public void addPixels(int y, int x, int step, int[] pixels, int count) {
+		int row = (int)((long)y * height / sourceHeight) * width;
+		if (alpha) {
+			for (int i = 0; i < count; i++, x += step) {
+				int pixel = pixels[i];
+				int index = row + columns[x];
+				int a = pixel >>> 24;
+				long[] sums = this.sums;
+				sums[index * 4] += a;
+				sums[index * 4 + 1] += ((pixel >> 16) & 0xFF) * a;
+				sums[index * 4 + 2] += ((pixel >> 8) & 0xFF) * a;
+				sums[index * 4 + 3] += (pixel & 0xFF) * a;
+				counts[index]++;
+			}
+		} else {
+			for (int i = 0; i < count; i++, x += step) {
+				int pixel = pixels[i];
+				int index = row + columns[x];
+				long[] sums = this.sums;
+				sums[index * 3] += (pixel >> 16) & 0xFF;
+				sums[index * 3 + 1] += (pixel >> 8) & 0xFF;
+				sums[index * 3 + 2] += pixel & 0xFF;
+				counts[index]++;
+			}
+		}
+	}
+
+	/**
+	 * Returns the resized image, which is of type
+	 * {@link BufferedImage#TYPE_INT_ARGB} if the source image has
+	 * transparency, and {@link BufferedImage#TYPE_INT_RGB} otherwise.
+	 * Pixels which no source pixels have been added to are transparent, or
+	 * black.
+	 *
+	 * @return		The resized image.
+	 */
+	public BufferedImage getImage() {
+		BufferedImage image = new BufferedImageBuilder(
+				width, height,
+				alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB
+		).build();
+		WritableRaster raster = image.getRaster();
+
+		int[] row = new int[width];
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int index = y * width + x;
+				int count = counts[index];
+				if (count == 0) {
+					row[x] = 0;
+				} else if (alpha) {
+					long a = sums[index * 4];
+					if (a == 0) {
+						row[x] = 0;
+						continue;
+					}
+					row[x] = (int)((a + count / 2) / count) << 24 |
+							(int)((sums[index * 4 + 1] + a / 2) / a) << 16 |
+							(int)((sums[index * 4 + 2] + a / 2) / a) << 8 |
+							(int)((sums[index * 4 + 3] + a / 2) / a);
+				} else {
+					row[x] = (int)((sums[index * 3] + count / 2) / count) << 16 |
+							(int)((sums[index * 3 + 1] + count / 2) / count) << 8 |
+							(int)((sums[index * 3 + 2] + count / 2) / count);
+				}
+			}
+			raster.setDataElements(0, y, width, 1, row);
+		}
+		return image;
+	}
+}
@@ -25,6 +25,9 @@
 package net.evonit.thumbnailator2.resizers;
 
 import net.evonit.thumbnailator2.builders.BufferedImageBuilder;
+import net.evonit.thumbnailator2.tasks.io.Cancellation;
+import net.evonit.thumbnailator2.util.BufferedImages;
+import net.evonit.thumbnailator2.util.raster.RasterImages;
 
 import javax.imageio.ImageIO;
 import java.awt.*;
@@ -86,9 +89,7 @@ public class TileResizer extends AbstractResizer {
 
 		// If multi-step downscaling is not required, perform one-step.
 		if ((targetWidth * 2 >= currentWidth) && (targetHeight * 2 >= currentHeight)) {
-			Graphics2D g = createGraphics(destImage);
-			g.drawImage(srcImage, 0, 0, targetWidth, targetHeight, null);
-			g.dispose();
+			drawScaled(srcImage, destImage, null, targetWidth, targetHeight);
 			return;
 		}
 
@@ -113,117 +114,143 @@ public class TileResizer extends AbstractResizer {
 		BufferedImage tempImage = new BufferedImageBuilder(
 				currentWidth,
 				currentHeight,
-				destImage.getType()
-		).build();
+				RasterImages.getImageType(destImage)
+		).buildScratch();
 
-		Graphics2D g = createGraphics(tempImage);
-		g.setComposite(AlphaComposite.Src);
-
-		/*
-		 * Determine the size of the first resize step should be.
-		 * 1) Beginning from the target size
-		 * 2) Increase each dimension by 2
-		 * 3) Until reaching the original size
-		 */
-		int startWidth = targetWidth;
-		int startHeight = targetHeight;
+		try {
+			/*
+			 * Determine the size of the first resize step should be.
+			 * 1) Beginning from the target size
+			 * 2) Increase each dimension by 2
+			 * 3) Until reaching the original size
+			 */
+			int startWidth = targetWidth;
+			int startHeight = targetHeight;
+
+			while (startWidth < currentWidth && startHeight < currentHeight) {
+				startWidth *= 2;
+				startHeight *= 2;
+			}
 
-		while (startWidth < currentWidth && startHeight < currentHeight) {
-			startWidth *= 2;
-			startHeight *= 2;
-		}
+			currentWidth = startWidth / 2;
+			currentHeight = startHeight / 2;
 
-		currentWidth = startWidth / 2;
-		currentHeight = startHeight / 2;
+			// Perform first resize step.
+			drawScaled(srcImage, tempImage, AlphaComposite.Src, currentWidth, currentHeight);
 
-		// Perform first resize step.
-		g.drawImage(srcImage, 0, 0, currentWidth, currentHeight, null);
+			// Perform an in-place progressive bilinear resize.
+			while (	(currentWidth >= targetWidth * 2) && (currentHeight >= targetHeight * 2) ) {
+				currentWidth /= 2;
+				currentHeight /= 2;
 
-		// Perform an in-place progressive bilinear resize.
-		while (	(currentWidth >= targetWidth * 2) && (currentHeight >= targetHeight * 2) ) {
-			currentWidth /= 2;
-			currentHeight /= 2;
+				if (currentWidth < targetWidth) {
+					currentWidth = targetWidth;
+				}
+				if (currentHeight < targetHeight) {
+					currentHeight = targetHeight;
+				}
 
-			if (currentWidth < targetWidth) {
-				currentWidth = targetWidth;
-			}
-			if (currentHeight < targetHeight) {
-				currentHeight = targetHeight;
+				drawScaled(
+						tempImage, tempImage, AlphaComposite.Src,
+						0, 0, currentWidth, currentHeight,
+						0, 0, currentWidth * 2, currentHeight * 2
+				);
 			}
 
-			g.drawImage(
-					tempImage,
-					0, 0, currentWidth, currentHeight,
-					0, 0, currentWidth * 2, currentHeight * 2,
-					null
+			// Draw the resized image onto the destination image.
+			drawScaled(
+					tempImage, destImage, null,
+					0, 0, targetWidth, targetHeight,
+					0, 0, currentWidth, currentHeight
 			);
+		} finally {
+			BufferedImageBuilder.release(tempImage);
 		}
-
-		g.dispose();
-
-		// Draw the resized image onto the destination image.
-		Graphics2D destg = createGraphics(destImage);
-		destg.drawImage(tempImage, 0, 0, targetWidth, targetHeight, 0, 0, currentWidth, currentHeight, null);
-		destg.dispose();
 	}
 
-	public void resizeDownScale(BufferedImage srcImage, BufferedImage destImage)
+	public void resizeDownScale(final BufferedImage srcImage, BufferedImage destImage)
 			throws NullPointerException {
 
 		final int targetWidth = destImage.getWidth();
 		final int targetHeight = destImage.getHeight();
 
-		Graphics2D g2d = destImage.createGraphics();
-
-		try {
-			int originalWidth = srcImage.getWidth();
-			int originalHeight = srcImage.getHeight();
-
-			int tileWidth = Math.min(originalWidth, 512);  // tile width 512 is the maximum size of the tile
-			int tileHeight = Math.min(originalHeight, 512); // tile height 512 is the maximum size of the tile
-
-			float scaleX = (float) targetWidth / originalWidth;
-			float scaleY = (float) targetHeight / originalHeight;
-
-			int scaledTileWidth = Math.round(tileWidth * scaleX);
-			int scaledTileHeight = Math.round(tileHeight * scaleY);
+		final int originalWidth = srcImage.getWidth();
+		final int originalHeight = srcImage.getHeight();
 
-			// process each tile
-			int scaledY = 0;
-			for (int y = 0; y < originalHeight; y += tileHeight) {
-				int currentTileHeight = Math.min(tileHeight, originalHeight - y);
-				int actualScaledTileHeight = (y + tileHeight >= originalHeight)
-						? targetHeight - scaledY
-						: scaledTileHeight;
+		final int tileWidth = Math.min(originalWidth, 512);  // tile width 512 is the maximum size of the tile
+		final int tileHeight = Math.min(originalHeight, 512); // tile height 512 is the maximum size of the tile
 
-				// src:x-currentTileWidth, +currentTileWidth -> dest:scaledX-actualScaledTileWidth, +actualScaledTileWidth
-
-				int scaledX = 0;
-				for (int x = 0; x < originalWidth; x += tileWidth) {
-					// calculate the current tile width
-					int currentTileWidth = Math.min(tileWidth, originalWidth - x);
-
-					// calculate the actual scaled tile width
-					int actualScaledTileWidth = (x + tileWidth >= originalWidth)
-							? targetWidth - scaledX
-							: scaledTileWidth;
+		/*
+		 * Java 2D cannot accelerate drawing from images which are not
+		 * backed by a Java array, such as images held off-heap.
+		 * Each tile of such an image is copied into an array-backed
+		 * image before it is drawn, so that only one tile at a time is
+		 * brought onto the heap.
+		 */
+		final BufferedImage tileBuffer = !BufferedImages.isArrayBacked(srcImage)
+				? BufferedImages.createCompatibleImage(srcImage, tileWidth, tileHeight)
+				: null;
 
-					// read the tile
-					BufferedImage tile = srcImage.getSubimage(x, y, currentTileWidth, currentTileHeight);
+		float scaleX = (float) targetWidth / originalWidth;
+		float scaleY = (float) targetHeight / originalHeight;
 
-					// resize the tile and draw it to the destination image
-					g2d.drawImage(tile, scaledX, scaledY, actualScaledTileWidth, actualScaledTileHeight, null);
+		final int scaledTileWidth = Math.round(tileWidth * scaleX);
+		final int scaledTileHeight = Math.round(tileHeight * scaleY);
 
-					// calculate the next X coordinate
-					scaledX += actualScaledTileWidth;
+		/*
+		 * A destination held in strips is painted one strip at a time,
+		 * in which case only the tiles which fall on the strip are drawn.
+		 */
+		BufferedImages.paint(destImage, new BufferedImages.Painter() {
+			public void paint(Graphics2D g2d) {
+				Rectangle clip = g2d.getClipBounds();
+
+				// process each tile
+				int scaledY = 0;
+				for (int y = 0; y < originalHeight; y += tileHeight) {
+					int currentTileHeight = Math.min(tileHeight, originalHeight - y);
+					int actualScaledTileHeight = (y + tileHeight >= originalHeight)
+							? targetHeight - scaledY
+							: scaledTileHeight;
+
+					if (clip != null && (scaledY >= clip.y + clip.height || scaledY + actualScaledTileHeight <= clip.y)) {
+						scaledY += scaledTileHeight;
+						continue;
+					}
+
+					// src:x-currentTileWidth, +currentTileWidth -> dest:scaledX-actualScaledTileWidth, +actualScaledTileWidth
+
+					int scaledX = 0;
+					for (int x = 0; x < originalWidth; x += tileWidth) {
+						Cancellation.checkThread();
+
+						// calculate the current tile width
+						int currentTileWidth = Math.min(tileWidth, originalWidth - x);
+
+						// calculate the actual scaled tile width
+						int actualScaledTileWidth = (x + tileWidth >= originalWidth)
+								? targetWidth - scaledX
+								: scaledTileWidth;
+
+						// read the tile
+						BufferedImage tile;
+						if (tileBuffer != null) {
+							tile = BufferedImages.copyRegion(srcImage, x, y, currentTileWidth, currentTileHeight, tileBuffer);
+						} else {
+							tile = srcImage.getSubimage(x, y, currentTileWidth, currentTileHeight);
+						}
+
+						// resize the tile and draw it to the destination image
+						g2d.drawImage(tile, scaledX, scaledY, actualScaledTileWidth, actualScaledTileHeight, null);
+
+						// calculate the next X coordinate
+						scaledX += actualScaledTileWidth;
+					}
+					// calculate the next Y coordinate
+					scaledY += scaledTileHeight;
 				}
-				// calculate the next Y coordinate
-				scaledY += scaledTileHeight;
 			}
-		} finally {
-			g2d.dispose(); // release resources
-		}
-
+		});
 	}
 
 
@@ -0,0 +1,52 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2020 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.tasks;
+
+/**
+ * An exception used to indicate that a thumbnail was not written because
+ * its destination file exists, and overwriting files is not permitted.
+ * <p>
+ * This is an {@link IllegalArgumentException}, as was thrown in this case
+ * before this exception was introduced.
+ * 
+ * @author coobird
+ *
+ */
+public class DestinationExistsException extends IllegalArgumentException {
+	/**
+	 * An ID used for serialization.
+	 */
+	private static final long serialVersionUID = 2931766217466098524L;
+
+	/**
+	 * Instantiates a {@link DestinationExistsException} with a detailed
+	 * message.
+	 * 
+	 * @param s				A message detailing the exception.
+	 */
+	public DestinationExistsException(String s) {
+		super(s);
+	}
+}
@@ -77,6 +77,21 @@ public class FileThumbnailTask extends ThumbnailTask<File, File> {
 		task.write(img);
 	}
 
+	@Override
+	public String getInputFormatName() {
+		return task.getInputFormatName();
+	}
+
+	@Override
+	public long getBytesWritten() {
+		return task.getBytesWritten();
+	}
+
+	@Override
+	public int getSourceSubsampling() {
+		return task.getSourceSubsampling();
+	}
+
 	@Override
 	public ThumbnailParameter getParam() {
 		return task.getParam();
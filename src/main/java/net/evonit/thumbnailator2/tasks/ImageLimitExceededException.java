@@ -0,0 +1,72 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2020 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.tasks;
+
+import java.io.IOException;
+
+import net.evonit.thumbnailator2.tasks.io.ImageLimits;
+
+/**
+ * An exception used to indicate that the dimensions or the number of frames
+ * of an image exceed the {@link ImageLimits} in effect.
+ * <p>
+ * The exception is thrown once the header of the image has been read, before
+ * the image is decoded.
+ * 
+ * @author coobird
+ *
+ */
+public class ImageLimitExceededException extends IOException {
+	/**
+	 * An ID used for serialization.
+	 */
+	private static final long serialVersionUID = 6203781354129472236L;
+	
+	/**
+	 * The format name of the image.
+	 */
+	private final String formatName;
+	
+	/**
+	 * Instantiates a {@link ImageLimitExceededException} with the format of
+	 * the image and a detailed message.
+	 * 
+	 * @param formatName	Format name.
+	 * @param s				A message detailing the exception.
+	 */
+	public ImageLimitExceededException(String formatName, String s) {
+		super(s);
+		this.formatName = formatName;
+	}
+	
+	/**
+	 * Returns the format name of the image which exceeded the limits.
+	 * 
+	 * @return			Format name.
+	 */
+	public String getFormatName() {
+		return formatName;
+	}
+}
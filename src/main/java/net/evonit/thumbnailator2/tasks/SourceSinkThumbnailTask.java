@@ -24,12 +24,30 @@
 
 package net.evonit.thumbnailator2.tasks;
 
+import java.awt.Dimension;
 import java.awt.image.BufferedImage;
+import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
 
 import net.evonit.thumbnailator2.ThumbnailParameter;
+import net.evonit.thumbnailator2.makers.FixedSizeThumbnailMaker;
+import net.evonit.thumbnailator2.makers.ScaledThumbnailMaker;
+import net.evonit.thumbnailator2.tasks.io.DegradableImageSource;
+import net.evonit.thumbnailator2.tasks.io.EncodedImageSink;
+import net.evonit.thumbnailator2.tasks.io.EncodedImageSource;
+import net.evonit.thumbnailator2.tasks.io.FileImageSink;
+import net.evonit.thumbnailator2.tasks.io.ImageHeader;
 import net.evonit.thumbnailator2.tasks.io.ImageSink;
 import net.evonit.thumbnailator2.tasks.io.ImageSource;
+import net.evonit.thumbnailator2.tasks.io.JpegCoefficientSource;
+import net.evonit.thumbnailator2.tasks.io.YCbCrImageSink;
+import net.evonit.thumbnailator2.tasks.io.YCbCrImageSource;
+import net.evonit.thumbnailator2.tasks.io.jpeg.JpegCoefficients;
+import net.evonit.thumbnailator2.tasks.io.jpeg.YCbCrImage;
+import net.evonit.thumbnailator2.util.Configurations;
+import net.evonit.thumbnailator2.util.exif.Orientation;
 
 /**
  * A {@link ThumbnailTask} which holds an {@link ImageSource} from which the
@@ -100,21 +118,247 @@ public class SourceSinkThumbnailTask<S, D> extends ThumbnailTask<S, D> {
 
 	@Override
 	public void write(BufferedImage img) throws IOException {
-		String paramOutputFormat = param.getOutputFormat();
-		String formatName = null;
+		destination.setOutputFormatName(getOutputFormatName());
+		destination.write(img);
+	}
+
+	/**
+	 * Copies the source image to the destination, if the
+	 * {@link Configurations#PASS_THROUGH} flag is set, the source can read
+	 * the header of the image, the destination accepts encoded images, no
+	 * source region, image filters, output quality or compression type are
+	 * given, and the header shows that the image has the dimensions of the
+	 * thumbnail, is in the output format, and has no Exif orientation which
+	 * would rotate or flip it.
+	 */
+	@Override
+	public boolean passThrough() throws IOException {
+		if (!Configurations.PASS_THROUGH.getBoolean()
+				|| !(source instanceof EncodedImageSource)
+				|| !(destination instanceof EncodedImageSink)
+				|| param.getSourceRegion() != null
+				|| !param.getImageFilters().isEmpty()
+				|| !isDefaultImageType(param.getType())
+				|| !Float.isNaN(param.getOutputQuality())
+				|| param.getOutputFormatType() != ThumbnailParameter.DEFAULT_FORMAT_TYPE) {
+			return false;
+		}
+
+		EncodedImageSource encodedSource = (EncodedImageSource)source;
+		ImageHeader header = encodedSource.readHeader();
+		if (header == null || !isThumbnailSize(header.getWidth(), header.getHeight())) {
+			return false;
+		}
+
+		/*
+		 * The orientation is checked even if the Exif orientation is not
+		 * used, as viewers would otherwise apply it to the copied image.
+		 */
+		Orientation orientation = header.getOrientation();
+		if (orientation != null && orientation != Orientation.TOP_LEFT) {
+			return false;
+		}
+
+		String formatName = resolveOutputFormat();
+		if (formatName != ThumbnailParameter.ORIGINAL_FORMAT && !header.isFormat(formatName)) {
+			return false;
+		}
+
+		destination.setOutputFormatName(
+				formatName == ThumbnailParameter.ORIGINAL_FORMAT ? header.getFormatName() : formatName
+		);
 		
-		if (ThumbnailParameter.DETERMINE_FORMAT.equals(paramOutputFormat)) {
-			paramOutputFormat = destination.preferredOutputFormatName();
+		// Opening the destination would truncate the source before it is copied.
+		if (isSameFile()) {
+			return false;
 		}
 		
-		if (paramOutputFormat == ThumbnailParameter.ORIGINAL_FORMAT) {
-			formatName = inputFormatName;
+		OutputStream os = ((EncodedImageSink)destination).openEncodedStream();
+		try {
+			encodedSource.transferTo(os);
+		} finally {
+			os.close();
+		}
+		inputFormatName = source.getInputFormatName();
+		return true;
+	}
+
+	/**
+	 * Returns whether the source image is read from the file the thumbnail
+	 * is written to.
+	 */
+	private boolean isSameFile() throws IOException {
+		if (!(source.getSource() instanceof File) || !(destination instanceof FileImageSink)) {
+			return false;
+		}
+		File sourceFile = (File)source.getSource();
+		File destinationFile = ((FileImageSink)destination).resolveDestinationFile();
+		if (!destinationFile.exists()) {
+			return false;
+		}
+		return Files.isSameFile(sourceFile.toPath(), destinationFile.toPath());
+	}
+
+	/**
+	 * Returns whether the thumbnail of an image of the given dimensions
+	 * would have the same dimensions.
+	 */
+	private boolean isThumbnailSize(int width, int height) {
+		Dimension size;
+		if (param.getSize() != null) {
+			size = new FixedSizeThumbnailMaker()
+					.size(param.getSize().width, param.getSize().height)
+					.keepAspectRatio(param.isKeepAspectRatio())
+					.fitWithinDimensions(param.fitWithinDimenions())
+					.calculateSize(width, height);
+
+		} else if (!Double.isNaN(param.getWidthScalingFactor())) {
+			size = new ScaledThumbnailMaker()
+					.scale(param.getWidthScalingFactor(), param.getHeightScalingFactor())
+					.calculateSize(width, height);
+
 		} else {
-			formatName = paramOutputFormat;
+			return false;
 		}
+		return size.width == width && size.height == height;
+	}
 
-		destination.setOutputFormatName(formatName);
-		destination.write(img);
+	/**
+	 * Transforms the source image losslessly, if the
+	 * {@link Configurations#LOSSLESS_JPEG_TRANSFORM} flag is set, the source
+	 * supports reading coefficients, the destination accepts encoded images,
+	 * the image is neither resized nor filtered, no output quality or
+	 * compression type is given and the thumbnail will be written as a JPEG
+	 * image.
+	 */
+	@Override
+	public boolean transformLosslessly() throws IOException {
+		if (!Configurations.LOSSLESS_JPEG_TRANSFORM.getBoolean()
+				|| !(source instanceof JpegCoefficientSource)
+				|| !(destination instanceof EncodedImageSink)
+				|| !isOriginalSize()
+				|| !param.getImageFilters().isEmpty()
+				|| !isDefaultImageType(param.getType())
+				|| !Float.isNaN(param.getOutputQuality())
+				|| param.getOutputFormatType() != ThumbnailParameter.DEFAULT_FORMAT_TYPE) {
+			return false;
+		}
+
+		// The source image is a JPEG image whenever coefficients are read.
+		String formatName = resolveOutputFormat();
+		if (formatName != ThumbnailParameter.ORIGINAL_FORMAT && !isJpeg(formatName)) {
+			return false;
+		}
+
+		JpegCoefficients coefficients = ((JpegCoefficientSource)source).readJpegCoefficients();
+		if (coefficients == null) {
+			return false;
+		}
+		inputFormatName = source.getInputFormatName();
+
+		destination.setOutputFormatName(getOutputFormatName());
+		OutputStream os = ((EncodedImageSink)destination).openEncodedStream();
+		try {
+			coefficients.write(os);
+		} finally {
+			os.close();
+		}
+		return true;
+	}
+
+	private boolean isOriginalSize() {
+		return param.getSize() == null
+				&& param.getWidthScalingFactor() == 1.0
+				&& param.getHeightScalingFactor() == 1.0;
+	}
+
+	/**
+	 * Reads the luma and chroma planes of the source image, if the
+	 * {@link Configurations#PLANAR_JPEG} flag is set, both the source and
+	 * the destination support planes, no image filters are applied and
+	 * the thumbnail will be written as a JPEG image.
+	 */
+	@Override
+	public YCbCrImage readYCbCr() throws IOException {
+		if (!Configurations.PLANAR_JPEG.getBoolean()
+				|| !(source instanceof YCbCrImageSource)
+				|| !(destination instanceof YCbCrImageSink)
+				|| !param.getImageFilters().isEmpty()
+				|| !isDefaultImageType(param.getType())) {
+			return null;
+		}
+
+		// The source image is a JPEG image whenever the planes are read.
+		String formatName = resolveOutputFormat();
+		if (formatName != ThumbnailParameter.ORIGINAL_FORMAT && !isJpeg(formatName)) {
+			return null;
+		}
+
+		YCbCrImage img = ((YCbCrImageSource)source).readYCbCr();
+		if (img != null) {
+			inputFormatName = source.getInputFormatName();
+		}
+		return img;
+	}
+
+	@Override
+	public void writeYCbCr(YCbCrImage img) throws IOException {
+		destination.setOutputFormatName(getOutputFormatName());
+		((YCbCrImageSink)destination).writeYCbCr(img);
+	}
+
+	private String getOutputFormatName() {
+		String formatName = resolveOutputFormat();
+		if (formatName == ThumbnailParameter.ORIGINAL_FORMAT) {
+			return inputFormatName;
+		}
+		return formatName;
+	}
+
+	/**
+	 * Returns the output format given by the parameters or the destination,
+	 * which may be {@link ThumbnailParameter#ORIGINAL_FORMAT}.
+	 */
+	private String resolveOutputFormat() {
+		String paramOutputFormat = param.getOutputFormat();
+		if (ThumbnailParameter.DETERMINE_FORMAT.equals(paramOutputFormat)) {
+			return destination.preferredOutputFormatName();
+		}
+		return paramOutputFormat;
+	}
+
+	private static boolean isDefaultImageType(int type) {
+		return type == ThumbnailParameter.DEFAULT_IMAGE_TYPE
+				|| type == ThumbnailParameter.ORIGINAL_IMAGE_TYPE;
+	}
+
+	private static boolean isJpeg(String formatName) {
+		return formatName.equalsIgnoreCase("jpg")
+				|| formatName.equalsIgnoreCase("jpeg");
+	}
+
+	/**
+	 * Returns the number of bytes written to the destination, if the
+	 * destination accepts encoded images.
+	 */
+	@Override
+	public long getBytesWritten() {
+		if (destination instanceof EncodedImageSink) {
+			return ((EncodedImageSink)destination).getBytesWritten();
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the subsampling of the source image, if the source is a
+	 * {@link DegradableImageSource}.
+	 */
+	@Override
+	public int getSourceSubsampling() {
+		if (source instanceof DegradableImageSource) {
+			return ((DegradableImageSource)source).getSubsampling();
+		}
+		return 1;
 	}
 
 	@Override
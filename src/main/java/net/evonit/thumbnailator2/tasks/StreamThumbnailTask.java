@@ -82,6 +82,21 @@ public class StreamThumbnailTask extends ThumbnailTask<InputStream, OutputStream
 		task.write(img);
 	}
 
+	@Override
+	public String getInputFormatName() {
+		return task.getInputFormatName();
+	}
+
+	@Override
+	public long getBytesWritten() {
+		return task.getBytesWritten();
+	}
+
+	@Override
+	public int getSourceSubsampling() {
+		return task.getSourceSubsampling();
+	}
+
 	@Override
 	public ThumbnailParameter getParam() {
 		return task.getParam();
@@ -28,6 +28,7 @@ import java.awt.image.BufferedImage;
 import java.io.IOException;
 
 import net.evonit.thumbnailator2.ThumbnailParameter;
+import net.evonit.thumbnailator2.tasks.io.jpeg.YCbCrImage;
 
 /**
  * This class is used by {@link ThumbnailTask} implementations which is used
@@ -101,6 +102,117 @@ public abstract class ThumbnailTask<S, D> {
 	 */
 	public abstract void write(BufferedImage img) throws IOException;
 	
+	/**
+	 * Writes the thumbnail by copying the encoded source image, when the
+	 * source image already is the thumbnail which would be created: it has
+	 * the size of the thumbnail, is in the output format, and is neither
+	 * rotated nor filtered.
+	 * <p>
+	 * This implementation returns {@code false}, so that the thumbnail is
+	 * created from the image returned by {@link #read()}.
+	 * 
+	 * @return					{@code true} if the thumbnail has been
+	 * 							written, {@code false} if it should be
+	 * 							created from the decoded image instead.
+	 * @throws IOException		Thrown when an I/O problem occurs when reading
+	 * 							the image or writing the thumbnail.
+	 */
+	public boolean passThrough() throws IOException {
+		return false;
+	}
+	
+	/**
+	 * Writes the thumbnail by transforming a JPEG source image losslessly,
+	 * when the thumbnail only differs from the source image by its
+	 * orientation and cropping, and is written as a JPEG image.
+	 * <p>
+	 * This implementation returns {@code false}, so that the thumbnail is
+	 * created from the image returned by {@link #read()}.
+	 * 
+	 * @return					{@code true} if the thumbnail has been
+	 * 							written, {@code false} if it should be
+	 * 							created from the decoded image instead.
+	 * @throws IOException		Thrown when an I/O problem occurs when reading
+	 * 							the image or writing the thumbnail.
+	 */
+	public boolean transformLosslessly() throws IOException {
+		return false;
+	}
+	
+	/**
+	 * Reads a JPEG source image as separate luma and chroma planes, when
+	 * the thumbnail can be created from the planes and written as a JPEG
+	 * image without converting them to RGB.
+	 * <p>
+	 * This implementation returns {@code null}, so that the image is read
+	 * by {@link #read()}.
+	 * 
+	 * @return					The planes of the source image, or
+	 * 							{@code null} if {@link #read()} should be
+	 * 							used instead.
+	 * @throws IOException		Thrown when an I/O problem occurs when reading
+	 * 							from the image source.
+	 */
+	public YCbCrImage readYCbCr() throws IOException {
+		return null;
+	}
+	
+	/**
+	 * Writes the luma and chroma planes of the thumbnail to the destination
+	 * as a JPEG image. Only called after {@link #readYCbCr()} returned the
+	 * planes of the source image.
+	 * <p>
+	 * This implementation converts the planes to an RGB image, and writes
+	 * it with {@link #write(BufferedImage)}. Subclasses which write the
+	 * planes directly should override this method.
+	 * 
+	 * @param img			The planes to write.
+	 * @throws IOException	Thrown when an I/O problem occurs when writing the
+	 * 						image.
+	 */
+	public void writeYCbCr(YCbCrImage img) throws IOException {
+		write(img.toBufferedImage());
+	}
+	
+	/**
+	 * Returns the format of the source image, once it has been read.
+	 * 
+	 * @return				The format of the source image, or {@code null}
+	 * 						if it is not known.
+	 */
+	public String getInputFormatName() {
+		return inputFormatName;
+	}
+	
+	/**
+	 * Returns the number of bytes of the thumbnail written to the
+	 * destination.
+	 * <p>
+	 * This implementation returns {@code -1}.
+	 * 
+	 * @return				The number of bytes, or {@code -1} if it is not
+	 * 						known.
+	 */
+	public long getBytesWritten() {
+		return -1;
+	}
+	
+	/**
+	 * Returns the factor by which the image returned by {@link #read()} was
+	 * subsampled when it was read, such as to conserve memory. The scaling
+	 * factors of the parameters are multiplied by this factor when the
+	 * image is resized, so that they apply to the image at its full
+	 * resolution.
+	 * <p>
+	 * This implementation returns {@code 1}.
+	 * 
+	 * @return				The subsampling factor, or {@code 1} if the
+	 * 						image was read at its full resolution.
+	 */
+	public int getSourceSubsampling() {
+		return 1;
+	}
+	
 	/**
 	 * Returns the {@link ThumbnailParameter} for this {@link ThumbnailTask},
 	 * used when performing a thumbnail generation operation.
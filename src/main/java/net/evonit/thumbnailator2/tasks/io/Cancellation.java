@@ -0,0 +1,300 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2020 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.tasks.io;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriter;
+import javax.imageio.event.IIOReadProgressListener;
+import javax.imageio.event.IIOWriteProgressListener;
+
+import net.evonit.thumbnailator2.tasks.ThumbnailTimeoutException;
+
+/**
+ * A signal which stops the creation of a thumbnail from another thread.
+ * <p>
+ * A cancellation is set for the thread which creates a thumbnail with
+ * {@link #setThreadCancellation(Cancellation)}. When {@link #cancel()} is
+ * called, the {@link ImageReader} or {@link ImageWriter} which is reading
+ * or writing an image on that thread is aborted, and the creation of the
+ * thumbnail stops with a {@link CancellationException} at the next step.
+ * <pre>
+Cancellation previous = Cancellation.setThreadCancellation(cancellation);
+try {
+    ...
+} finally {
+    Cancellation.setThreadCancellation(previous);
+}
+ * </pre>
+ * <p>
+ * A cancellation created by {@link #withTimeout(long, TimeUnit)} is also
+ * cancelled once its deadline has passed, in which case the creation of the
+ * thumbnail stops with a {@link ThumbnailTimeoutException}.
+ * <p>
+ * Some readers and writers, such as those for JPEG, can only be used by
+ * one thread at a time, including their {@code abort} method. The readers
+ * and writers are therefore aborted by the thread which uses them, the next
+ * time they report their progress. The decoders and resizers of this
+ * library check the cancellation for each row or tile of an image.
+ * 
+ * @author coobird
+ *
+ */
+public final class Cancellation {
+	/**
+	 * The cancellation of the current thread.
+	 */
+	private static final ThreadLocal<Cancellation> threadCancellation =
+			new ThreadLocal<Cancellation>();
+	
+	private volatile boolean cancelled;
+	
+	/**
+	 * The cancellation which also cancels this one, or {@code null}.
+	 */
+	private final Cancellation parent;
+	
+	/**
+	 * The value of {@link System#nanoTime()} at which this cancellation
+	 * times out, if {@link #hasDeadline}.
+	 */
+	private final long deadline;
+	private final boolean hasDeadline;
+	
+	/**
+	 * Creates a cancellation which is only cancelled by {@link #cancel()}.
+	 */
+	public Cancellation() {
+		this.parent = null;
+		this.deadline = 0;
+		this.hasDeadline = false;
+	}
+	
+	private Cancellation(Cancellation parent, long deadline) {
+		this.parent = parent;
+		this.deadline = deadline;
+		this.hasDeadline = true;
+	}
+	
+	/**
+	 * Creates a cancellation which times out after the given time, or when
+	 * the cancellation of the current thread, if any, is cancelled.
+	 * <p>
+	 * The time starts when this method is called.
+	 * 
+	 * @param timeout	The time after which the cancellation times out.
+	 * @param unit		The unit of the time.
+	 * @return			The cancellation.
+	 * @throws IllegalArgumentException	If the time is not positive.
+	 */
+	public static Cancellation withTimeout(long timeout, TimeUnit unit) {
+		if (timeout <= 0) {
+			throw new IllegalArgumentException("Timeout must be positive.");
+		}
+		// Bounded, so that the deadline does not overflow.
+		long nanos = Math.min(unit.toNanos(timeout), Long.MAX_VALUE / 2);
+		return new Cancellation(threadCancellation.get(), System.nanoTime() + nanos);
+	}
+	
+	/**
+	 * Cancels the creation of the thumbnail. The readers and writers which
+	 * are in use are aborted the next time they report their progress.
+	 * Calling this method more than once has no further effect.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+	
+	/**
+	 * Returns whether {@link #cancel()} has been called, or this
+	 * cancellation has timed out.
+	 * 
+	 * @return			{@code true} if cancelled.
+	 */
+	public boolean isCancelled() {
+		return isCancelledExplicitly() || isTimedOut();
+	}
+	
+	/**
+	 * Returns whether the deadline of this cancellation, or of the
+	 * cancellation it was created within, has passed.
+	 * 
+	 * @return			{@code true} if timed out.
+	 */
+	public boolean isTimedOut() {
+		if (hasDeadline && System.nanoTime() - deadline >= 0) {
+			return true;
+		}
+		return parent != null && parent.isTimedOut();
+	}
+	
+	private boolean isCancelledExplicitly() {
+		return cancelled || (parent != null && parent.isCancelledExplicitly());
+	}
+	
+	/**
+	 * Sets the cancellation for the current thread.
+	 * 
+	 * @param cancellation	The cancellation of the current thread, or
+	 * 						{@code null} to remove it.
+	 * @return				The cancellation previously set for the current
+	 * 						thread, or {@code null} if there was none.
+	 */
+	public static Cancellation setThreadCancellation(Cancellation cancellation) {
+		Cancellation previous = threadCancellation.get();
+		if (cancellation == null) {
+			threadCancellation.remove();
+		} else {
+			threadCancellation.set(cancellation);
+		}
+		return previous;
+	}
+	
+	/**
+	 * Returns the cancellation of the current thread.
+	 * <p>
+	 * Work which the thread hands to other threads, such as decoding parts
+	 * of an image in parallel, can check the returned cancellation with
+	 * {@link #check()}.
+	 * 
+	 * @return				The cancellation of the current thread, or
+	 * 						{@code null} if there is none.
+	 */
+	public static Cancellation getThreadCancellation() {
+		return threadCancellation.get();
+	}
+	
+	/**
+	 * Throws a {@link CancellationException} if this cancellation has been
+	 * cancelled, or a {@link ThumbnailTimeoutException} if it has timed out.
+	 * 
+	 * @throws CancellationException	If this cancellation has been
+	 * 									cancelled.
+	 * @throws ThumbnailTimeoutException	If this cancellation has timed
+	 * 										out.
+	 */
+	public void check() {
+		if (isCancelledExplicitly()) {
+			throw new CancellationException("The thumbnail has been cancelled.");
+		}
+		if (isTimedOut()) {
+			throw new ThumbnailTimeoutException("The thumbnail was not created before its deadline.");
+		}
+	}
+	
+	/**
+	 * Checks the cancellation of the current thread, if any, as described
+	 * in {@link #check()}.
+	 * 
+	 * @throws CancellationException	If the current thread has been
+	 * 									cancelled.
+	 * @throws ThumbnailTimeoutException	If the cancellation of the
+	 * 										current thread has timed out.
+	 */
+	public static void checkThread() {
+		Cancellation cancellation = threadCancellation.get();
+		if (cancellation != null) {
+			cancellation.check();
+		}
+	}
+	
+	/**
+	 * Attaches a reader to the cancellation of the current thread, so that
+	 * it is aborted when the thread is cancelled.
+	 * <p>
+	 * As an aborted reader returns the part of the image read so far,
+	 * {@link #checkThread()} should be called once the reader has finished.
+	 * 
+	 * @param reader		The reader.
+	 */
+	static void attach(final ImageReader reader) {
+		final Cancellation cancellation = threadCancellation.get();
+		if (cancellation == null) {
+			return;
+		}
+		reader.addIIOReadProgressListener(new IIOReadProgressListener() {
+			private void abortIfCancelled() {
+				if (cancellation.isCancelled()) {
+					reader.abort();
+				}
+			}
+			
+			public void imageStarted(ImageReader source, int imageIndex) {
+				abortIfCancelled();
+			}
+			
+			public void imageProgress(ImageReader source, float percentageDone) {
+				abortIfCancelled();
+			}
+			
+			public void sequenceStarted(ImageReader source, int minIndex) {}
+			public void sequenceComplete(ImageReader source) {}
+			public void imageComplete(ImageReader source) {}
+			public void thumbnailStarted(ImageReader source, int imageIndex, int thumbnailIndex) {}
+			public void thumbnailProgress(ImageReader source, float percentageDone) {}
+			public void thumbnailComplete(ImageReader source) {}
+			public void readAborted(ImageReader source) {}
+		});
+	}
+	
+	/**
+	 * Attaches a writer to the cancellation of the current thread, so that
+	 * it is aborted when the thread is cancelled.
+	 * <p>
+	 * As an aborted writer leaves an incomplete image, {@link #checkThread()}
+	 * should be called once the writer has finished.
+	 * 
+	 * @param writer		The writer.
+	 */
+	static void attach(final ImageWriter writer) {
+		final Cancellation cancellation = threadCancellation.get();
+		if (cancellation == null) {
+			return;
+		}
+		writer.addIIOWriteProgressListener(new IIOWriteProgressListener() {
+			private void abortIfCancelled() {
+				if (cancellation.isCancelled()) {
+					writer.abort();
+				}
+			}
+			
+			public void imageStarted(ImageWriter source, int imageIndex) {
+				abortIfCancelled();
+			}
+			
+			public void imageProgress(ImageWriter source, float percentageDone) {
+				abortIfCancelled();
+			}
+			
+			public void imageComplete(ImageWriter source) {}
+			public void thumbnailStarted(ImageWriter source, int imageIndex, int thumbnailIndex) {}
+			public void thumbnailProgress(ImageWriter source, float percentageDone) {}
+			public void thumbnailComplete(ImageWriter source) {}
+			public void writeAborted(ImageWriter source) {}
+		});
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2020 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.tasks.io;
+
+/**
+ * An {@link ImageSource} which may read the source image at a reduced
+ * resolution, rather than fail, when there is not enough memory to decode
+ * it at its full resolution.
+ * <p>
+ * This only happens when
+ * {@link net.evonit.thumbnailator2.util.Configurations#DEGRADE_ON_LOW_MEMORY}
+ * is enabled.
+ *
+ * @author coobird
+ *
+ */
+public interface DegradableImageSource {
+	/**
+	 * Returns the factor by which the source image was subsampled when it
+	 * was read, either to conserve memory, as enabled by
+	 * {@link net.evonit.thumbnailator2.util.Configurations#CONSERVE_MEMORY_WORKAROUND},
+	 * or as the image did not fit in the available memory.
+	 * <p>
+	 * The scaling factors of the thumbnail are meant for the image at its
+	 * full resolution, and are multiplied by this factor when the image is
+	 * resized.
+	 *
+	 * @return					The subsampling factor, or {@code 1} if the
+	 * 							image was read at its full resolution, or
+	 * 							has not been read yet.
+	 */
+	public int getSubsampling();
+
+	/**
+	 * Returns the factor by which the source image was subsampled when it
+	 * was read, as the image did not fit in the available memory.
+	 *
+	 * @return					The subsampling factor, or {@code 1} if the
+	 * 							image was read at its full resolution, or
+	 * 							has not been read yet.
+	 */
+	public int getDegradedSubsampling();
+
+	/**
+	 * Returns whether the source image was read at a reduced resolution, as
+	 * it did not fit in the available memory.
+	 *
+	 * @return					{@code true} if the image was read at a
+	 * 							reduced resolution.
+	 */
+	public boolean isDegraded();
+}
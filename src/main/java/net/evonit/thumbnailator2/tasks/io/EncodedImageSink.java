@@ -0,0 +1,60 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2020 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.tasks.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An {@link ImageSink} to which an image which is already encoded in the
+ * output format can be written as it is.
+ *
+ * @author coobird
+ *
+ */
+public interface EncodedImageSink {
+	/**
+	 * Opens a stream to which the encoded image is written, at the
+	 * destination the sink would write a thumbnail to. The output format
+	 * must have been set with {@link ImageSink#setOutputFormatName(String)}.
+	 * <p>
+	 * The caller writes the image to the stream and closes it.
+	 *
+	 * @return					The stream to write the encoded image to.
+	 * @throws IOException		When a problem occurs while opening the
+	 * 							destination.
+	 */
+	public OutputStream openEncodedStream() throws IOException;
+
+	/**
+	 * Returns the number of bytes of the image which was last written to
+	 * the destination, whether it was encoded by the sink or written to the
+	 * stream returned by {@link #openEncodedStream()}.
+	 *
+	 * @return					The number of bytes, or {@code -1} if it is
+	 * 							not known.
+	 */
+	public long getBytesWritten();
+}
@@ -0,0 +1,62 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2020 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.tasks.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An {@link ImageSource} which can read the header of the source image
+ * without decoding it, and copy the encoded image as it is, for source
+ * images which already are the requested thumbnail.
+ *
+ * @author coobird
+ *
+ */
+public interface EncodedImageSource {
+	/**
+	 * Reads the header of the image.
+	 * <p>
+	 * After the header is read, the image can still be read with
+	 * {@link ImageSource#read()}, or copied with
+	 * {@link #transferTo(OutputStream)}.
+	 *
+	 * @return					The header of the image, or {@code null} if
+	 * 							the format of the image is not known.
+	 * @throws IOException		When a problem occurs while reading the
+	 * 							image.
+	 */
+	public ImageHeader readHeader() throws IOException;
+
+	/**
+	 * Copies the encoded image, from its beginning, to the given stream.
+	 * The stream is not closed.
+	 *
+	 * @param os				The stream to copy the image to.
+	 * @throws IOException		When a problem occurs while reading the
+	 * 							image or writing to the stream.
+	 */
+	public void transferTo(OutputStream os) throws IOException;
+}
@@ -37,7 +37,9 @@ import javax.imageio.ImageReader;
 import javax.imageio.ImageWriter;
 
 import net.evonit.thumbnailator2.ThumbnailParameter;
+import net.evonit.thumbnailator2.tasks.DestinationExistsException;
 import net.evonit.thumbnailator2.tasks.UnsupportedFormatException;
+import net.evonit.thumbnailator2.tasks.io.jpeg.YCbCrImage;
 
 /**
  * An {@link ImageSink} which writes the resulting thumbnail to a file.
@@ -54,7 +56,8 @@ import net.evonit.thumbnailator2.tasks.UnsupportedFormatException;
  * @author coobird
  *
  */
-public class FileImageSink implements ImageSink<File> {
+public class FileImageSink implements ImageSink<File>, YCbCrImageSink,
+		EncodedImageSink {
 	/**
 	 * The file to which the thumbnail is written to.
 	 * <p>
@@ -267,35 +270,80 @@ public class FileImageSink implements ImageSink<File> {
 	 * @throws IOException					When a problem occurs while writing
 	 * 										the image.
 	 * @throws NullPointerException			If the image is {@code null}.
-	 * @throws IllegalArgumentException		If this {@code FileImageSink} does
+	 * @throws DestinationExistsException	If this {@code FileImageSink} does
 	 * 										not permit overwriting the
 	 * 										destination file and the destination
 	 * 										file already exists.
 	 */
 	public void write(BufferedImage img) throws IOException {
-		/*
-		 * Add or replace the file extension of the output file.
-		 * 
-		 * If the file extension matches the output format's extension,
-		 * then leave as is.
-		 * 
-		 * Else, append the extension for the output format to the filename.
-		 */
-		String fileExtension = getExtension(destinationFile);
-		
-		String formatName = outputFormat;
-		if (formatName != null && (fileExtension == null || !isMatchingFormat(formatName, fileExtension))) {
-			destinationFile = new File(destinationFile.getAbsolutePath() + "." + formatName);
+		OutputStreamImageSink sink = openSink();
+		try {
+			sink.write(img);
+		} finally {
+			sink.getSink().close();
+		}
+	}
+
+	/**
+	 * Writes the luma and chroma planes of a thumbnail to a JPEG file.
+	 * The destination file is determined in the same way as by
+	 * {@link #write(BufferedImage)}.
+	 *
+	 * @param img							The planes to write.
+	 * @throws UnsupportedFormatException	If the output format is not JPEG.
+	 * @throws IOException					When a problem occurs while writing
+	 * 										the image.
+	 * @throws NullPointerException			If the image is {@code null}.
+	 * @throws DestinationExistsException	If the destination file exists and
+	 * 										overwriting is not permitted.
+	 */
+	public void writeYCbCr(YCbCrImage img) throws IOException {
+		if (img == null) {
+			throw new NullPointerException("Cannot write a null image.");
 		}
+
+		OutputStreamImageSink sink = openSink();
+		try {
+			sink.writeYCbCr(img);
+		} finally {
+			sink.getSink().close();
+		}
+	}
+
+	/**
+	 * Opens the destination file for an image which is already encoded in
+	 * the output format. The destination file is determined in the same way
+	 * as by {@link #write(BufferedImage)}.
+	 *
+	 * @return								The stream to the destination file.
+	 * @throws UnsupportedFormatException	If the output format cannot be
+	 * 										determined.
+	 * @throws IOException					When a problem occurs while
+	 * 										opening the file.
+	 * @throws DestinationExistsException	If the destination file exists and
+	 * 										overwriting is not permitted.
+	 */
+	public OutputStream openEncodedStream() throws IOException {
+		return openSink().getSink();
+	}
+
+	/**
+	 * Determines the destination file and output format, and opens a sink
+	 * which writes to that file. The caller closes the sink's stream.
+	 */
+	private OutputStreamImageSink openSink() throws IOException {
+		String fileExtension = getExtension(destinationFile);
+		destinationFile = resolveDestinationFile();
 		
 		if (!allowOverwrite && destinationFile.exists()) {
-			throw new IllegalArgumentException("The destination file exists.");
+			throw new DestinationExistsException("The destination file exists.");
 		}
 		
 		/*
 		 * If a formatName is not specified, then attempt to determine it from
 		 * the file extension.
 		 */
+		String formatName = outputFormat;
 		if (formatName == null && fileExtension != null) {
 			Iterator<ImageReader> rIter = ImageIO.getImageReadersBySuffix(fileExtension);
 			
@@ -311,15 +359,41 @@ public class FileImageSink implements ImageSink<File> {
 			);
 		}
 
-		OutputStream os = createOutputStream(destinationFile);
-		imageSink = new OutputStreamImageSink(os);
-		imageSink.setThumbnailParameter(param);
-		imageSink.setOutputFormatName(formatName);
-		try {
-			imageSink.write(img);
-		} finally {
-			os.close();
+		OutputStreamImageSink sink =
+				new OutputStreamImageSink(createOutputStream(destinationFile));
+		sink.setThumbnailParameter(param);
+		sink.setOutputFormatName(formatName);
+		imageSink = sink;
+		return sink;
+	}
+
+	/**
+	 * Returns the file the image will be written to with the output format
+	 * which has been set. The file extension of the output format is
+	 * appended to the destination file, unless the file already has a
+	 * matching extension.
+	 *
+	 * @return								The file the image will be
+	 * 										written to.
+	 * @throws UnsupportedFormatException	If the output format is not
+	 * 										supported.
+	 */
+	public File resolveDestinationFile() throws UnsupportedFormatException {
+		/*
+		 * Add or replace the file extension of the output file.
+		 * 
+		 * If the file extension matches the output format's extension,
+		 * then leave as is.
+		 * 
+		 * Else, append the extension for the output format to the filename.
+		 */
+		String fileExtension = getExtension(destinationFile);
+		
+		String formatName = outputFormat;
+		if (formatName != null && (fileExtension == null || !isMatchingFormat(formatName, fileExtension))) {
+			return new File(destinationFile.getAbsolutePath() + "." + formatName);
 		}
+		return destinationFile;
 	}
 
 	// Visible for testing only.
@@ -327,6 +401,20 @@ public class FileImageSink implements ImageSink<File> {
 		return new FileOutputStream(destinationFile);
 	}
 
+	/**
+	 * Returns the size of the destination file, once an image has been
+	 * written to it.
+	 *
+	 * @return		The size of the file in bytes, or {@code -1} if no image
+	 * 				has been written yet.
+	 */
+	public long getBytesWritten() {
+		if (!(imageSink instanceof OutputStreamImageSink)) {
+			return -1;
+		}
+		return destinationFile.length();
+	}
+
 	/**
 	 * Returns the destination file of the thumbnail image.
 	 * <p>
@@ -28,10 +28,15 @@ import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 
 import net.evonit.thumbnailator2.ThumbnailParameter;
 import net.evonit.thumbnailator2.tasks.UnsupportedFormatException;
+import net.evonit.thumbnailator2.tasks.io.jpeg.JpegCoefficients;
+import net.evonit.thumbnailator2.tasks.io.jpeg.YCbCrImage;
 
 /**
  * An {@link ImageSource} which reads the source image from a file.
@@ -39,7 +44,8 @@ import net.evonit.thumbnailator2.tasks.UnsupportedFormatException;
  * @author coobird
  *
  */
-public class FileImageSource implements ImageSource<File> {
+public class FileImageSource implements ImageSource<File>, YCbCrImageSource,
+		JpegCoefficientSource, EncodedImageSource, DegradableImageSource {
 	/**
 	 * The file from which the image should be obtained.
 	 */
@@ -76,6 +82,31 @@ public class FileImageSource implements ImageSource<File> {
 		}
 	}
 	
+	/**
+	 * An {@link ImageSource} which stands in once the file has been copied
+	 * by {@link FileImageSource#transferTo(OutputStream)}, to report the
+	 * format of the copied image.
+	 */
+	private static class TransferredImageSource extends AbstractImageSource<Void> {
+		TransferredImageSource(String formatName) {
+			inputFormatName = formatName;
+			hasReadInput = true;
+		}
+
+		public BufferedImage read() throws IOException {
+			throw new IllegalStateException("The image has already been copied.");
+		}
+
+		public Void getSource() {
+			throw new IllegalStateException("This should not happen.");
+		}
+	}
+
+	/**
+	 * The format of the image, as given by {@link #readHeader()}.
+	 */
+	private String headerFormatName;
+	
 	/**
 	 * Instantiates a {@link FileImageSource} with the specified file as
 	 * the source image.
@@ -111,15 +142,7 @@ public class FileImageSource implements ImageSource<File> {
 	}
 
 	public BufferedImage read() throws IOException {
-		FileInputStream fis;
-		try {
-			fis = new FileInputStream(sourceFile);
-
-		} catch (FileNotFoundException e) {
-			throw new FileNotFoundException(
-					"Could not find file: " + sourceFile.getAbsolutePath()
-			);
-		}
+		FileInputStream fis = openSourceFile();
 
 		try {
 			imageSource = new InputStreamImageSource(fis);
@@ -137,6 +160,136 @@ public class FileImageSource implements ImageSource<File> {
 		}
 	}
 
+	/**
+	 * Reads a JPEG image as luma and chroma planes, as described in
+	 * {@link InputStreamImageSource#readYCbCr()}. If the planes are not
+	 * read, {@link #read()} reads the file again from the beginning.
+	 *
+	 * @return				The planes of the image, or {@code null} if the
+	 * 						image should be read by {@link #read()}.
+	 * @throws IOException	If the file could not be read.
+	 */
+	public YCbCrImage readYCbCr() throws IOException {
+		FileInputStream fis = openSourceFile();
+		try {
+			InputStreamImageSource source = new InputStreamImageSource(fis);
+			source.setThumbnailParameter(param);
+			YCbCrImage img = source.readYCbCr();
+			if (img != null) {
+				imageSource = source;
+			}
+			return img;
+
+		} finally {
+			fis.close();
+		}
+	}
+
+	/**
+	 * Reads the coefficients of a JPEG image with the Exif orientation and
+	 * the source region applied, as described in
+	 * {@link InputStreamImageSource#readJpegCoefficients()}. If the
+	 * coefficients are not read, {@link #read()} reads the file again from
+	 * the beginning.
+	 *
+	 * @return				The coefficients of the transformed image, or
+	 * 						{@code null} if the image should be read by
+	 * 						{@link #read()}.
+	 * @throws IOException	If the file could not be read.
+	 */
+	public JpegCoefficients readJpegCoefficients() throws IOException {
+		FileInputStream fis = openSourceFile();
+		try {
+			InputStreamImageSource source = new InputStreamImageSource(fis);
+			source.setThumbnailParameter(param);
+			JpegCoefficients coefficients = source.readJpegCoefficients();
+			if (coefficients != null) {
+				imageSource = source;
+			}
+			return coefficients;
+
+		} finally {
+			fis.close();
+		}
+	}
+
+	/**
+	 * Reads the header of the image, as described in
+	 * {@link InputStreamImageSource#readHeader()}.
+	 *
+	 * @return				The header of the image, or {@code null} if the
+	 * 						format of the image is not known.
+	 * @throws IOException	If the file could not be read.
+	 */
+	public ImageHeader readHeader() throws IOException {
+		FileInputStream fis = openSourceFile();
+		try {
+			InputStreamImageSource source = new InputStreamImageSource(fis);
+			source.setThumbnailParameter(param);
+			ImageHeader header = source.readHeader();
+			if (header != null) {
+				headerFormatName = header.getFormatName();
+			}
+			return header;
+
+		} finally {
+			fis.close();
+		}
+	}
+
+	/**
+	 * Copies the file to the given stream. When the stream writes to a
+	 * file, the data is transferred between the file channels, which
+	 * allows the operating system to copy it without passing it through
+	 * the Java heap.
+	 *
+	 * @param os			The stream to copy the file to.
+	 * @throws IOException	If the file could not be read, or the data could
+	 * 						not be written.
+	 */
+	public void transferTo(OutputStream os) throws IOException {
+		FileInputStream fis = openSourceFile();
+		try {
+			if (os instanceof FileOutputStream) {
+				FileChannel source = fis.getChannel();
+				FileChannel destination = ((FileOutputStream)os).getChannel();
+				long size = source.size();
+				long position = 0;
+				while (position < size) {
+					long transferred = source.transferTo(position, size - position, destination);
+					if (transferred == 0) {
+						// The file has become shorter while it was copied.
+						break;
+					}
+					position += transferred;
+				}
+
+			} else {
+				byte[] buffer = new byte[8192];
+				int n;
+				while ((n = fis.read(buffer)) != -1) {
+					os.write(buffer, 0, n);
+				}
+			}
+
+		} finally {
+			fis.close();
+		}
+
+		imageSource = new TransferredImageSource(headerFormatName);
+	}
+
+	private FileInputStream openSourceFile() throws FileNotFoundException {
+		try {
+			return new FileInputStream(sourceFile);
+
+		} catch (FileNotFoundException e) {
+			throw new FileNotFoundException(
+					"Could not find file: " + sourceFile.getAbsolutePath()
+			);
+		}
+	}
+
 	/**
 	 * Returns the source file from which an image is read.
 	 * 
@@ -150,6 +303,24 @@ public class FileImageSource implements ImageSource<File> {
 		return imageSource.getInputFormatName();
 	}
 
+	public int getSubsampling() {
+		if (imageSource instanceof DegradableImageSource) {
+			return ((DegradableImageSource)imageSource).getSubsampling();
+		}
+		return 1;
+	}
+
+	public int getDegradedSubsampling() {
+		if (imageSource instanceof DegradableImageSource) {
+			return ((DegradableImageSource)imageSource).getDegradedSubsampling();
+		}
+		return 1;
+	}
+
+	public boolean isDegraded() {
+		return getDegradedSubsampling() > 1;
+	}
+
 	public void setThumbnailParameter(ThumbnailParameter param) {
 		// We need to keep "param" when we replace "imageSource" in the
 		// "read" method.
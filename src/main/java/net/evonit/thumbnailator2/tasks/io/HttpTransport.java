@@ -0,0 +1,99 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2020 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.tasks.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Map;
+
+/**
+ * Sends the requests of {@link HttpURLFetcher}.
+ * <p>
+ * This version uses {@link HttpURLConnection}, which keeps connections
+ * alive between requests to the same server. The Java 11 layer of the
+ * multi-release jar replaces it with a version which uses
+ * {@code java.net.http.HttpClient}, which also supports HTTP/2.
+ * 
+ * @author coobird
+ *
+ */
+final class HttpTransport {
+	private final long connectTimeout;
+	
+	/**
+	 * Creates a transport.
+	 * 
+	 * @param connectTimeout	The time to wait for a connection, in
+	 * 							milliseconds.
+	 */
+	HttpTransport(long connectTimeout) {
+		this.connectTimeout = connectTimeout;
+	}
+	
+	/**
+	 * Sends a GET request.
+	 * 
+	 * @param url			The URL.
+	 * @param timeout		The time to wait for the response, and for each
+	 * 						read of the body, in milliseconds.
+	 * @param headers		The header fields of the request.
+	 * @return				The response.
+	 * @throws IOException	If the request could not be sent, or no response
+	 * 						was received in time.
+	 */
+	HttpTransportResponse get(URL url, long timeout, Map<String, String> headers) throws IOException {
+		URLConnection connection = url.openConnection();
+		connection.setConnectTimeout(toTimeout(connectTimeout));
+		connection.setReadTimeout(toTimeout(timeout));
+		for (Map.Entry<String, String> header : headers.entrySet()) {
+			connection.setRequestProperty(header.getKey(), header.getValue());
+		}
+		
+		if (!(connection instanceof HttpURLConnection)) {
+			// Such as file: URLs, which have no status.
+			return new HttpTransportResponse(
+					HttpURLConnection.HTTP_OK, connection.getHeaderFields(), connection.getInputStream()
+			);
+		}
+		
+		final HttpURLConnection http = (HttpURLConnection)connection;
+		int status = http.getResponseCode();
+		InputStream body = status >= 400 ? http.getErrorStream() : http.getInputStream();
+		return new HttpTransportResponse(status, http.getHeaderFields(), body, new Closeable() {
+			public void close() {
+				// Closes the socket, unless the body has been read.
+				http.disconnect();
+			}
+		});
+	}
+	
+	private static int toTimeout(long millis) {
+		return (int)Math.min(millis, Integer.MAX_VALUE);
+	}
+}
@@ -0,0 +1,157 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2020 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.tasks.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A response received by {@link HttpTransport}.
+ * 
+ * @author coobird
+ *
+ */
+final class HttpTransportResponse {
+	/**
+	 * The number of bytes which {@link #discard()} reads to reuse the
+	 * connection. Closing the connection is cheaper than reading a longer
+	 * body.
+	 */
+	private static final int MAX_DISCARDED_BYTES = 64 * 1024;
+	
+	private final int status;
+	private final Map<String, List<String>> headers;
+	private final InputStream body;
+	private final Closeable connection;
+	
+	/**
+	 * Creates a response.
+	 * 
+	 * @param status		The status code.
+	 * @param headers		The header fields.
+	 * @param body			The body, or {@code null} if there is none.
+	 */
+	HttpTransportResponse(int status, Map<String, List<String>> headers, InputStream body) {
+		this(status, headers, body, null);
+	}
+	
+	/**
+	 * Creates a response.
+	 * 
+	 * @param status		The status code.
+	 * @param headers		The header fields.
+	 * @param body			The body, or {@code null} if there is none.
+	 * @param connection	Closes the connection of the response, for
+	 * 						{@link #abort()}, or {@code null} if closing the
+	 * 						body closes a connection which has not been
+	 * 						read to the end.
+	 */
+	HttpTransportResponse(int status, Map<String, List<String>> headers, InputStream body, Closeable connection) {
+		this.status = status;
+		this.headers = headers;
+		this.body = body;
+		this.connection = connection;
+	}
+	
+	int getStatus() {
+		return status;
+	}
+	
+	/**
+	 * Returns the first value of a header field.
+	 * 
+	 * @param name			The name of the header field, in any case.
+	 * @return				The value, or {@code null} if the field is not
+	 * 						present.
+	 */
+	String getHeader(String name) {
+		for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+			if (name.equalsIgnoreCase(header.getKey()) && !header.getValue().isEmpty()) {
+				return header.getValue().get(0);
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Returns the body, which is closed by the caller.
+	 * 
+	 * @return				The body, or {@code null} if there is none.
+	 */
+	InputStream getBody() {
+		return body;
+	}
+	
+	/**
+	 * Discards the body, so that the connection can be reused. A body which
+	 * is longer than a few kilobytes is aborted instead.
+	 */
+	void discard() {
+		if (body == null) {
+			return;
+		}
+		try {
+			byte[] buffer = new byte[8192];
+			long discarded = 0;
+			int n;
+			while ((n = body.read(buffer)) != -1) {
+				// Reading to the end returns the connection to the pool.
+				discarded += n;
+				if (discarded > MAX_DISCARDED_BYTES) {
+					abort();
+					return;
+				}
+			}
+		} catch (IOException e) {
+			// The connection is not reused.
+		} finally {
+			try {
+				body.close();
+			} catch (IOException e) {
+				// Nothing more to release.
+			}
+		}
+	}
+	
+	/**
+	 * Closes the body and the connection without reading the rest of the
+	 * body, for a response which is not read to the end.
+	 */
+	void abort() {
+		try {
+			if (body != null) {
+				body.close();
+			}
+			if (connection != null) {
+				connection.close();
+			}
+		} catch (IOException e) {
+			// Nothing more to release.
+		}
+	}
+}
@@ -0,0 +1,423 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2020 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.tasks.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A {@link URLFetcher} for HTTP URLs, with timeouts, a limit on the size of
+ * the data, retries and conditional requests.
+ * <p>
+ * The fetcher reuses connections to the same server, and on Java 11 and
+ * later, it uses {@code java.net.http.HttpClient}, which also supports
+ * HTTP/2. It accepts compressed responses.
+ * <p>
+ * Connection failures, timeouts and responses with a status of 429 or
+ * 5xx are retried, with a delay which doubles after each attempt. When a
+ * cache is enabled, the data of responses with an {@code ETag} or
+ * {@code Last-Modified} header is kept, and is used when the server
+ * reports that it has not been modified.
+ * <p>
+ * Usage:
+ * <pre>
+URLFetcher fetcher = new HttpURLFetcher.Builder()
+    .connectTimeout(2, TimeUnit.SECONDS)
+    .timeout(10, TimeUnit.SECONDS)
+    .maxBytes(20 * 1024 * 1024)
+    .retries(3, 200, TimeUnit.MILLISECONDS)
+    .cache(100)
+    .build();
+
+Thumbnails.fromURLs(urls, fetcher)
+    .size(200, 200)
+    .asFiles(Rename.PREFIX_DOT_THUMBNAIL);
+ * </pre>
+ * A fetcher can be shared by threads.
+ * 
+ * @author coobird
+ *
+ */
+public final class HttpURLFetcher implements URLFetcher {
+	private final HttpTransport transport;
+	private final long timeout;
+	private final long maxBytes;
+	private final int retries;
+	private final long retryDelay;
+	private final Map<URL, CachedResponse> cache;
+	
+	/**
+	 * The data of a response, with the validators used to ask the server
+	 * whether it has been modified.
+	 */
+	private static final class CachedResponse {
+		private final String etag;
+		private final String lastModified;
+		private final byte[] data;
+		
+		private CachedResponse(String etag, String lastModified, byte[] data) {
+			this.etag = etag;
+			this.lastModified = lastModified;
+			this.data = data;
+		}
+	}
+	
+	/**
+	 * A builder of {@link HttpURLFetcher}s.
+	 */
+	public static final class Builder {
+		private long connectTimeout = 10000;
+		private long timeout = 30000;
+		private long maxBytes = Long.MAX_VALUE;
+		private int retries = 0;
+		private long retryDelay = 0;
+		private int cacheSize = 0;
+		
+		/**
+		 * Sets the time to wait for a connection to the server.
+		 * <p>
+		 * By default, it is 10 seconds.
+		 * 
+		 * @param timeout	The time to wait.
+		 * @param unit		The unit of the time.
+		 * @return			Reference to this object.
+		 * @throws IllegalArgumentException	If the time is not positive.
+		 */
+		public Builder connectTimeout(long timeout, TimeUnit unit) {
+			this.connectTimeout = toMillis(timeout, unit);
+			return this;
+		}
+		
+		/**
+		 * Sets the time to wait for a response from the server.
+		 * <p>
+		 * By default, it is 30 seconds.
+		 * 
+		 * @param timeout	The time to wait.
+		 * @param unit		The unit of the time.
+		 * @return			Reference to this object.
+		 * @throws IllegalArgumentException	If the time is not positive.
+		 */
+		public Builder timeout(long timeout, TimeUnit unit) {
+			this.timeout = toMillis(timeout, unit);
+			return this;
+		}
+		
+		/**
+		 * Sets the maximum number of bytes of the data at a URL, after it
+		 * has been decompressed. Reading more data fails with an
+		 * {@link IOException}.
+		 * <p>
+		 * By default, the data is not limited.
+		 * 
+		 * @param maxBytes	The maximum number of bytes.
+		 * @return			Reference to this object.
+		 * @throws IllegalArgumentException	If the number is not positive.
+		 */
+		public Builder maxBytes(long maxBytes) {
+			if (maxBytes < 1) {
+				throw new IllegalArgumentException("Maximum number of bytes must be positive.");
+			}
+			this.maxBytes = maxBytes;
+			return this;
+		}
+		
+		/**
+		 * Sets the number of times a failed request is retried, and the
+		 * delay before the first retry, which doubles for each further
+		 * retry.
+		 * <p>
+		 * By default, requests are not retried.
+		 * 
+		 * @param retries	The number of retries.
+		 * @param delay		The delay before the first retry.
+		 * @param unit		The unit of the delay.
+		 * @return			Reference to this object.
+		 * @throws IllegalArgumentException	If the number of retries or the
+		 * 									delay is negative.
+		 */
+		public Builder retries(int retries, long delay, TimeUnit unit) {
+			if (retries < 0) {
+				throw new IllegalArgumentException("Number of retries cannot be negative.");
+			}
+			if (delay < 0) {
+				throw new IllegalArgumentException("Retry delay cannot be negative.");
+			}
+			this.retries = retries;
+			this.retryDelay = unit.toMillis(delay);
+			return this;
+		}
+		
+		/**
+		 * Sets the number of responses which are kept for conditional
+		 * requests. The least recently used responses are discarded first.
+		 * <p>
+		 * By default, no responses are kept.
+		 * 
+		 * @param entries	The number of responses.
+		 * @return			Reference to this object.
+		 * @throws IllegalArgumentException	If the number is negative.
+		 */
+		public Builder cache(int entries) {
+			if (entries < 0) {
+				throw new IllegalArgumentException("Number of cache entries cannot be negative.");
+			}
+			this.cacheSize = entries;
+			return this;
+		}
+		
+		/**
+		 * Creates a fetcher with the settings of this builder.
+		 * 
+		 * @return			The fetcher.
+		 */
+		public HttpURLFetcher build() {
+			return new HttpURLFetcher(this);
+		}
+		
+		private static long toMillis(long timeout, TimeUnit unit) {
+			if (timeout <= 0) {
+				throw new IllegalArgumentException("Timeout must be positive.");
+			}
+			return Math.max(unit.toMillis(timeout), 1);
+		}
+	}
+	
+	private HttpURLFetcher(Builder builder) {
+		this.transport = new HttpTransport(builder.connectTimeout);
+		this.timeout = builder.timeout;
+		this.maxBytes = builder.maxBytes;
+		this.retries = builder.retries;
+		this.retryDelay = builder.retryDelay;
+		
+		final int cacheSize = builder.cacheSize;
+		this.cache = cacheSize == 0 ? null : new LinkedHashMap<URL, CachedResponse>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<URL, CachedResponse> eldest) {
+				return size() > cacheSize;
+			}
+		};
+	}
+	
+	public InputStream open(URL url) throws IOException {
+		CachedResponse cached = null;
+		if (cache != null) {
+			synchronized (cache) {
+				cached = cache.get(url);
+			}
+		}
+		
+		Map<String, String> headers = new HashMap<String, String>();
+		headers.put("Accept-Encoding", "gzip");
+		if (cached != null && cached.etag != null) {
+			headers.put("If-None-Match", cached.etag);
+		}
+		if (cached != null && cached.lastModified != null) {
+			headers.put("If-Modified-Since", cached.lastModified);
+		}
+		
+		for (int attempt = 0; ; attempt++) {
+			HttpTransportResponse response;
+			try {
+				response = transport.get(url, timeout, headers);
+			} catch (InterruptedIOException e) {
+				if (Thread.currentThread().isInterrupted() || attempt >= retries) {
+					throw e;
+				}
+				// A timeout, which is retried.
+				awaitRetry(attempt);
+				continue;
+			} catch (IOException e) {
+				if (attempt >= retries) {
+					throw e;
+				}
+				awaitRetry(attempt);
+				continue;
+			}
+			
+			int status = response.getStatus();
+			if (status == 304 && cached != null) {
+				response.discard();
+				return new ByteArrayInputStream(cached.data);
+			}
+			if (status >= 200 && status < 300) {
+				return readBody(url, response);
+			}
+			
+			response.discard();
+			if ((status == 429 || status >= 500) && attempt < retries) {
+				awaitRetry(attempt);
+				continue;
+			}
+			throw new IOException("Received status " + status + " from URL: " + url);
+		}
+	}
+	
+	/**
+	 * Requests a range of the bytes at a URL, for
+	 * {@link URLImageSource#probe()}. The request is not retried, and the
+	 * data is not compressed or cached.
+	 * 
+	 * @param url			The URL.
+	 * @param first			The position of the first byte.
+	 * @param last			The position of the last byte.
+	 * @return				The response, which has a status of 206 if the
+	 * 						server sent the range, or 200 if it sent all of
+	 * 						the data.
+	 * @throws IOException	If the request could not be sent, or no response
+	 * 						was received in time.
+	 */
+	HttpTransportResponse getRange(URL url, long first, long last) throws IOException {
+		Map<String, String> headers = new HashMap<String, String>();
+		headers.put("Accept-Encoding", "identity");
+		headers.put("Range", "bytes=" + first + "-" + last);
+		return transport.get(url, timeout, headers);
+	}
+	
+	/**
+	 * Returns the data of a successful response, keeping it in the cache
+	 * if the response can be validated later.
+	 */
+	private InputStream readBody(URL url, HttpTransportResponse response) throws IOException {
+		InputStream body = response.getBody();
+		if (body == null) {
+			return new ByteArrayInputStream(new byte[0]);
+		}
+		
+		String encoding = response.getHeader("Content-Encoding");
+		boolean compressed = encoding != null && encoding.trim().equalsIgnoreCase("gzip");
+		String length = response.getHeader("Content-Length");
+		if (!compressed && length != null) {
+			try {
+				if (Long.parseLong(length.trim()) > maxBytes) {
+					response.abort();
+					throw new IOException("The data at URL exceeds " + maxBytes + " bytes: " + url);
+				}
+			} catch (NumberFormatException e) {
+				// The limit is checked while the data is read.
+			}
+		}
+		
+		InputStream is = new LimitedInputStream(compressed ? new GZIPInputStream(body) : body, url);
+		
+		String etag = response.getHeader("ETag");
+		String lastModified = response.getHeader("Last-Modified");
+		if (cache == null || (etag == null && lastModified == null)) {
+			return is;
+		}
+		
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		try {
+			byte[] buffer = new byte[8192];
+			int n;
+			while ((n = is.read(buffer)) != -1) {
+				data.write(buffer, 0, n);
+			}
+		} finally {
+			is.close();
+		}
+		
+		CachedResponse cached = new CachedResponse(etag, lastModified, data.toByteArray());
+		synchronized (cache) {
+			cache.put(url, cached);
+		}
+		return new ByteArrayInputStream(cached.data);
+	}
+	
+	private void awaitRetry(int attempt) throws InterruptedIOException {
+		long delay = retryDelay << Math.min(attempt, 30);
+		if (delay < retryDelay) {
+			delay = Long.MAX_VALUE;
+		}
+		try {
+			Thread.sleep(delay);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting to retry.");
+		}
+	}
+	
+	/**
+	 * A stream which fails once more data than the limit has been read.
+	 */
+	private final class LimitedInputStream extends FilterInputStream {
+		private final URL url;
+		private long remaining = maxBytes;
+		
+		private LimitedInputStream(InputStream in, URL url) {
+			super(in);
+			this.url = url;
+		}
+		
+		private void count(long n) throws IOException {
+			remaining -= n;
+			if (remaining < 0) {
+				throw new IOException("The data at URL exceeds " + maxBytes + " bytes: " + url);
+			}
+		}
+		
+		@Override
+		public int read() throws IOException {
+			int b = in.read();
+			if (b != -1) {
+				count(1);
+			}
+			return b;
+		}
+		
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = in.read(b, off, len);
+			if (n > 0) {
+				count(n);
+			}
+			return n;
+		}
+		
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = in.skip(n);
+			count(skipped);
+			return skipped;
+		}
+		
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2020 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.tasks.io;
+
+import net.evonit.thumbnailator2.util.exif.Orientation;
+
+/**
+ * The format, dimensions and orientation of an encoded image, as read from
+ * the header of the image without decoding it.
+ *
+ * @author coobird
+ *
+ */
+public final class ImageHeader {
+	private final String formatName;
+	private final String[] formatNames;
+	private final int width;
+	private final int height;
+	private final Orientation orientation;
+
+	/**
+	 * Creates an image header.
+	 *
+	 * @param formatName		The name of the format of the image.
+	 * @param formatNames		All names which the format is known by, as
+	 * 							given by
+	 * 							{@link javax.imageio.spi.ImageReaderWriterSpi#getFormatNames()}.
+	 * @param width				The width of the image, as stored.
+	 * @param height			The height of the image, as stored.
+	 * @param orientation		The Exif orientation of the image, or
+	 * 							{@code null} if the image does not have one.
+	 */
+	public ImageHeader(String formatName, String[] formatNames, int width, int height, Orientation orientation) {
+		if (formatName == null) {
+			throw new NullPointerException("Format name cannot be null.");
+		}
+		this.formatName = formatName;
+		this.formatNames = formatNames == null ? new String[] {formatName} : formatNames.clone();
+		this.width = width;
+		this.height = height;
+		this.orientation = orientation;
+	}
+
+	/**
+	 * Returns the name of the format of the image.
+	 *
+	 * @return		The name of the format.
+	 */
+	public String getFormatName() {
+		return formatName;
+	}
+
+	/**
+	 * Returns whether the image is encoded in the given format.
+	 *
+	 * @param name	A name of a format, such as {@code jpg} or {@code PNG}.
+	 * @return		{@code true} if the name is one of the names of the
+	 * 				format of the image, ignoring case.
+	 */
+	public boolean isFormat(String name) {
+		for (String formatName : formatNames) {
+			if (formatName.equalsIgnoreCase(name)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the width of the image, as stored.
+	 *
+	 * @return		The width of the image.
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Returns the height of the image, as stored.
+	 *
+	 * @return		The height of the image.
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Returns the Exif orientation of the image.
+	 *
+	 * @return		The orientation, or {@code null} if the image does not
+	 * 				have one.
+	 */
+	public Orientation getOrientation() {
+		return orientation;
+	}
+
+	@Override
+	public String toString() {
+		return "ImageHeader [formatName=" + formatName + ", width=" + width
+				+ ", height=" + height + ", orientation=" + orientation + "]";
+	}
+}
@@ -0,0 +1,199 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2020 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.tasks.io;
+
+import net.evonit.thumbnailator2.tasks.ImageLimitExceededException;
+import net.evonit.thumbnailator2.util.Configurations;
+
+/**
+ * Limits on the dimensions and the number of frames of the images which are
+ * read, which keep a small file that claims to be a very large image from
+ * having its pixels allocated.
+ * <p>
+ * The limits are checked once the header of an image has been read, before
+ * it is decoded. An image which exceeds them is not decoded, and an
+ * {@link ImageLimitExceededException} is thrown instead.
+ * <p>
+ * The limits are set for the thread which reads images with
+ * {@link #setThreadLimits(ImageLimits)}, in the same way as a
+ * {@link Cancellation}. When no limits are set for the thread, the limits
+ * are given by {@link Configurations#MAX_PIXELS},
+ * {@link Configurations#MAX_DIMENSION} and {@link Configurations#MAX_FRAMES}.
+ * 
+ * @author coobird
+ *
+ */
+public final class ImageLimits {
+	/**
+	 * Limits which do not limit images.
+	 */
+	public static final ImageLimits NONE = new ImageLimits(0, 0, 0);
+	
+	/**
+	 * The limits of the current thread.
+	 */
+	private static final ThreadLocal<ImageLimits> threadLimits =
+			new ThreadLocal<ImageLimits>();
+	
+	private final long maxPixels;
+	private final int maxDimension;
+	private final int maxFrames;
+	
+	/**
+	 * Creates limits on the images which are read. A limit of {@code 0}
+	 * does not limit images.
+	 * 
+	 * @param maxPixels		The largest number of pixels of an image.
+	 * @param maxDimension	The largest width or height of an image.
+	 * @param maxFrames		The largest number of frames of an image, such
+	 * 						as of an animated GIF image.
+	 * @throws IllegalArgumentException	If a limit is negative.
+	 */
+	public ImageLimits(long maxPixels, int maxDimension, int maxFrames) {
+		if (maxPixels < 0 || maxDimension < 0 || maxFrames < 0) {
+			throw new IllegalArgumentException("Limits cannot be negative.");
+		}
+		this.maxPixels = maxPixels;
+		this.maxDimension = maxDimension;
+		this.maxFrames = maxFrames;
+	}
+	
+	/**
+	 * Returns the limits given by {@link Configurations#MAX_PIXELS},
+	 * {@link Configurations#MAX_DIMENSION} and
+	 * {@link Configurations#MAX_FRAMES}.
+	 * 
+	 * @return				The configured limits.
+	 */
+	public static ImageLimits fromConfigurations() {
+		long maxPixels = Configurations.MAX_PIXELS.getLong(0);
+		long maxDimension = Configurations.MAX_DIMENSION.getLong(0);
+		long maxFrames = Configurations.MAX_FRAMES.getLong(0);
+		if (maxPixels <= 0 && maxDimension <= 0 && maxFrames <= 0) {
+			return NONE;
+		}
+		return new ImageLimits(
+				Math.max(0, maxPixels),
+				(int)Math.max(0, Math.min(maxDimension, Integer.MAX_VALUE)),
+				(int)Math.max(0, Math.min(maxFrames, Integer.MAX_VALUE))
+		);
+	}
+	
+	/**
+	 * Sets the limits for the current thread.
+	 * 
+	 * @param limits		The limits of the current thread, or
+	 * 						{@code null} to use the configured limits.
+	 * @return				The limits previously set for the current
+	 * 						thread, or {@code null} if there were none.
+	 */
+	public static ImageLimits setThreadLimits(ImageLimits limits) {
+		ImageLimits previous = threadLimits.get();
+		if (limits == null) {
+			threadLimits.remove();
+		} else {
+			threadLimits.set(limits);
+		}
+		return previous;
+	}
+	
+	/**
+	 * Returns the limits of the current thread, or the configured limits if
+	 * none are set for the thread.
+	 * 
+	 * @return				The limits in effect on the current thread.
+	 */
+	public static ImageLimits getThreadLimits() {
+		ImageLimits limits = threadLimits.get();
+		return limits != null ? limits : fromConfigurations();
+	}
+	
+	/**
+	 * Returns the largest number of pixels of an image.
+	 * 
+	 * @return				The number of pixels, or {@code 0} if not
+	 * 						limited.
+	 */
+	public long getMaxPixels() {
+		return maxPixels;
+	}
+	
+	/**
+	 * Returns the largest width or height of an image.
+	 * 
+	 * @return				The dimension, or {@code 0} if not limited.
+	 */
+	public int getMaxDimension() {
+		return maxDimension;
+	}
+	
+	/**
+	 * Returns the largest number of frames of an image.
+	 * 
+	 * @return				The number of frames, or {@code 0} if not
+	 * 						limited.
+	 */
+	public int getMaxFrames() {
+		return maxFrames;
+	}
+	
+	/**
+	 * Checks the dimensions of an image against these limits.
+	 * 
+	 * @param formatName	The format of the image.
+	 * @param width			The width of the image.
+	 * @param height		The height of the image.
+	 * @throws ImageLimitExceededException	If the image exceeds the limits.
+	 */
+	public void check(String formatName, int width, int height) throws ImageLimitExceededException {
+		if (maxDimension > 0 && (width > maxDimension || height > maxDimension)) {
+			throw new ImageLimitExceededException(formatName,
+					"Image of " + width + " x " + height + " pixels exceeds the largest dimension of " +
+					maxDimension + " pixels."
+			);
+		}
+		if (maxPixels > 0 && (long)width * height > maxPixels) {
+			throw new ImageLimitExceededException(formatName,
+					"Image of " + width + " x " + height + " pixels exceeds the limit of " +
+					maxPixels + " pixels."
+			);
+		}
+	}
+	
+	/**
+	 * Checks the number of frames of an image against these limits.
+	 * 
+	 * @param formatName	The format of the image.
+	 * @param frames		The number of frames of the image.
+	 * @throws ImageLimitExceededException	If the image exceeds the limits.
+	 */
+	public void checkFrames(String formatName, int frames) throws ImageLimitExceededException {
+		if (maxFrames > 0 && frames > maxFrames) {
+			throw new ImageLimitExceededException(formatName,
+					"Image of " + frames + " frames exceeds the limit of " + maxFrames + " frames."
+			);
+		}
+	}
+}
@@ -24,25 +24,41 @@
 
 package net.evonit.thumbnailator2.tasks.io;
 
+import java.awt.Dimension;
 import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
 import java.io.IOException;
 import java.io.InputStream;
-import java.lang.reflect.Field;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CancellationException;
 
+import javax.imageio.IIOException;
 import javax.imageio.ImageIO;
 import javax.imageio.ImageReadParam;
 import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
 import javax.imageio.stream.ImageInputStream;
 
 import net.evonit.thumbnailator2.ThumbnailParameter;
+import net.evonit.thumbnailator2.builders.BufferedImageBuilder;
+import net.evonit.thumbnailator2.builders.DefaultImageAllocator;
+import net.evonit.thumbnailator2.builders.ImageAllocator;
 import net.evonit.thumbnailator2.filters.ImageFilter;
 import net.evonit.thumbnailator2.geometry.Region;
+import net.evonit.thumbnailator2.resizers.StreamingResizer;
+import net.evonit.thumbnailator2.tasks.ImageLimitExceededException;
 import net.evonit.thumbnailator2.tasks.UnsupportedFormatException;
+import net.evonit.thumbnailator2.tasks.io.jpeg.JpegCoefficients;
+import net.evonit.thumbnailator2.tasks.io.jpeg.JpegDecoder;
+import net.evonit.thumbnailator2.tasks.io.jpeg.JpegTransform;
+import net.evonit.thumbnailator2.tasks.io.jpeg.YCbCrImage;
+import net.evonit.thumbnailator2.tasks.io.png.PngDecoder;
+import net.evonit.thumbnailator2.util.BufferedImages;
 import net.evonit.thumbnailator2.util.Configurations;
 import net.evonit.thumbnailator2.util.exif.ExifFilterUtils;
 import net.evonit.thumbnailator2.util.exif.ExifUtils;
@@ -55,16 +71,52 @@ import net.evonit.thumbnailator2.util.exif.Orientation;
  * @author coobird
  *
  */
-public class InputStreamImageSource extends AbstractImageSource<InputStream> {
+public class InputStreamImageSource extends AbstractImageSource<InputStream>
+		implements YCbCrImageSource, JpegCoefficientSource, EncodedImageSource, DegradableImageSource {
 	/**
 	 * The index used to obtain the first image in an image file.
 	 */
 	private static final int FIRST_IMAGE_INDEX = 0;
+
+	/**
+	 * Packages of {@link ImageReader}s which are known to write decoded
+	 * pixels through the {@link java.awt.image.Raster} API, and can therefore
+	 * decode into images whose pixels are not held in a Java array.
+	 */
+	private static final String[] RASTER_API_READER_PACKAGES = {
+			"com.sun.imageio.plugins.jpeg.",
+			"com.sun.imageio.plugins.png.",
+	};
+
+	/**
+	 * The largest factor by which an image is subsampled when it does not
+	 * fit in the available memory.
+	 */
+	private static final int MAX_DEGRADED_SUBSAMPLING = 32;
 	
 	/**
 	 * A {@link InputStream} from which the source image is to be read.
 	 */
 	private InputStream is;
+
+	/**
+	 * A stream which reads the source image from the beginning, once
+	 * {@link #readYCbCr()}, {@link #readJpegCoefficients()} or
+	 * {@link #readHeader()} has read part of the image without using it.
+	 */
+	private InputStream replay;
+
+	/**
+	 * The factor by which the image was subsampled when it was read, to
+	 * conserve memory or as it did not fit in the available memory.
+	 */
+	private int subsampling = 1;
+
+	/**
+	 * The factor by which the image was subsampled, as it did not fit in
+	 * the available memory.
+	 */
+	private int degradedSubsampling = 1;
 	
 	/**
 	 * Instantiates an {@link InputStreamImageSource} with the
@@ -222,6 +274,10 @@ public class InputStreamImageSource extends AbstractImageSource<InputStream> {
 
 		@Override
 		public int read(byte[] b, int off, int len) throws IOException {
+			// Image readers may consume the whole stream before reporting
+			// any progress, such as when the metadata is read.
+			Cancellation.checkThread();
+
 			int bytesRead = is.read(b, off, len);
 			if (bytesRead == -1) {
 				return bytesRead;
@@ -430,7 +486,29 @@ public class InputStreamImageSource extends AbstractImageSource<InputStream> {
 	}
 
 	public BufferedImage read() throws IOException {
-		ImageInputStream iis = ImageIO.createImageInputStream(is);
+		InputStream input = currentInput();
+		if (isJpegDecoderApplicable()) {
+			JpegDecoder decoder = new JpegDecoder(input);
+			BufferedImage img = readWithJpegDecoder(decoder);
+			if (img != null) {
+				return finishedReading(img);
+			}
+
+			// Read the image with Image I/O from the beginning of the data.
+			input = decoder.replay();
+		}
+
+		if (isPngDecoderApplicable()) {
+			PngDecoder decoder = new PngDecoder(input);
+			BufferedImage img = readWithPngDecoder(decoder);
+			if (img != null) {
+				return finishedReading(img);
+			}
+
+			input = decoder.replay();
+		}
+
+		ImageInputStream iis = ImageIO.createImageInputStream(input);
 		
 		if (iis == null) {
 			throw new IOException("Could not open InputStream.");
@@ -447,10 +525,14 @@ public class InputStreamImageSource extends AbstractImageSource<InputStream> {
 		
 		ImageReader reader = readers.next();
 		reader.setInput(iis);
+		Cancellation.attach(reader);
 
 		boolean isExceptionThrown = false;
 		try {
 			BufferedImage img = readImage(reader);
+			
+			// An aborted reader returns the part of the image read so far.
+			Cancellation.checkThread();
 			return finishedReading(img);
 
 		} catch (IOException e) {
@@ -483,7 +565,532 @@ public class InputStreamImageSource extends AbstractImageSource<InputStream> {
 		}
 	}
 
+	/**
+	 * Reads a JPEG image as luma and chroma planes with the
+	 * {@link JpegDecoder}, reduced in the same way as by {@link #read()} when
+	 * the thumbnail is resized to a specific size.
+	 * <p>
+	 * The planes are only read if the image can be reduced while decoding.
+	 * They are not read if a source region is specified, or the Exif
+	 * orientation of the image requires it to be rotated or flipped, as
+	 * these are applied to RGB images. In that case, and for images which
+	 * are not JPEG images, {@link #read()} reads the image from the
+	 * beginning.
+	 *
+	 * @return				The planes of the image, or {@code null} if the
+	 * 						image should be read by {@link #read()}.
+	 * @throws IOException	If the stream could not be read, or the data of
+	 * 						a large image could not be decoded once decoding
+	 * 						has started.
+	 */
+	public YCbCrImage readYCbCr() throws IOException {
+		if (param == null || param.getSourceRegion() != null) {
+			return null;
+		}
+
+		JpegDecoder decoder = new JpegDecoder(currentInput());
+		int scale = 1;
+		try {
+			/*
+			 * At full size, Image I/O decodes faster than the JPEG decoder
+			 * saves by skipping the color conversion.
+			 */
+			if (decoder.readHeader() && checkLimits(decoder) && !needsOrientation(decoder)
+					&& decoder.hasFullSizeLuma() && isReducedDecodingApplicable()) {
+				scale = getJpegScale(decoder.getWidth(), decoder.getHeight());
+			}
+		} catch (CancellationException e) {
+			throw e;
+		} catch (ImageLimitExceededException e) {
+			throw e;
+		} catch (Exception e) {
+			// If Image I/O cannot read the image either, it will report why.
+			scale = 1;
+		}
+
+		if (scale == 1) {
+			replay = decoder.replay();
+			return null;
+		}
+
+		decoder.setPartialDecoding(Configurations.PARTIAL_PROGRESSIVE_JPEG.getBoolean());
+		YCbCrImage img;
+		try {
+			img = decoder.decodeYCbCr(scale);
+		} catch (IOException e) {
+			if (!fallBack(decoder, e)) {
+				throw e;
+			}
+			replay = decoder.replay();
+			return null;
+		} catch (RuntimeException e) {
+			if (!fallBack(decoder, e)) {
+				throw e;
+			}
+			replay = decoder.replay();
+			return null;
+		}
+		inputFormatName = "JPEG";
+		return finishedReading(img);
+	}
+
+	/**
+	 * Reads the quantized DCT coefficients of a JPEG image with the
+	 * {@link JpegDecoder}, and applies the Exif orientation and the source
+	 * region to them with a {@link JpegTransform}.
+	 * <p>
+	 * The coefficients are only read if the transform is lossless for the
+	 * image. Otherwise, and for images which are not JPEG images,
+	 * {@link #read()} reads the image from the beginning.
+	 *
+	 * @return				The coefficients of the transformed image, or
+	 * 						{@code null} if the image should be read by
+	 * 						{@link #read()}.
+	 * @throws IOException	If the stream could not be read, or the
+	 * 						coefficients of a large image could not be read
+	 * 						once reading them has started.
+	 */
+	public JpegCoefficients readJpegCoefficients() throws IOException {
+		if (param == null) {
+			return null;
+		}
+
+		JpegDecoder decoder = new JpegDecoder(currentInput());
+		JpegTransform transform = null;
+		try {
+			if (decoder.readHeader() && checkLimits(decoder)) {
+				Orientation orientation = null;
+				if (param.useExifOrientation() && decoder.getExifData() != null) {
+					orientation = ExifUtils.getOrientationFromExif(decoder.getExifData());
+				}
+
+				Rectangle region = null;
+				if (param.getSourceRegion() != null) {
+					region = calculateSourceRegion(
+							decoder.getWidth(), decoder.getHeight(),
+							orientation, param.getSourceRegion()
+					);
+				}
+
+				transform = new JpegTransform(orientation, region);
+				if (!transform.isLossless(decoder)) {
+					transform = null;
+				}
+			}
+		} catch (CancellationException e) {
+			throw e;
+		} catch (ImageLimitExceededException e) {
+			throw e;
+		} catch (Exception e) {
+			// If Image I/O cannot read the image either, it will report why.
+			transform = null;
+		}
+
+		if (transform == null) {
+			replay = decoder.replay();
+			return null;
+		}
+
+		JpegCoefficients coefficients;
+		try {
+			coefficients = transform.apply(decoder.readCoefficients());
+		} catch (IOException e) {
+			if (!fallBack(decoder, e)) {
+				throw e;
+			}
+			replay = decoder.replay();
+			return null;
+		} catch (RuntimeException e) {
+			if (!fallBack(decoder, e)) {
+				throw e;
+			}
+			replay = decoder.replay();
+			return null;
+		}
+		inputFormatName = "JPEG";
+		return finishedReading(coefficients);
+	}
+
+	/**
+	 * Reads the format, dimensions and Exif orientation of the image with
+	 * Image I/O, without decoding the image. The data read is kept, so that
+	 * the image can be read by {@link #read()} or copied by
+	 * {@link #transferTo(OutputStream)} from the beginning.
+	 *
+	 * @return				The header of the image, or {@code null} if no
+	 * 						{@link ImageReader} can read the image.
+	 * @throws IOException	If the stream could not be read.
+	 */
+	public ImageHeader readHeader() throws IOException {
+		RecordingInputStream input = new RecordingInputStream(currentInput());
+		ImageInputStream iis = ImageIO.createImageInputStream(input);
+		if (iis == null) {
+			throw new IOException("Could not open InputStream.");
+		}
+
+		ImageReader reader = null;
+		try {
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+			if (!readers.hasNext()) {
+				return null;
+			}
+
+			reader = readers.next();
+			reader.setInput(iis, true, true);
+
+			inputFormatName = reader.getFormatName();
+			Orientation orientation = null;
+			if (inputFormatName.equalsIgnoreCase("jpeg")) {
+				orientation = ExifUtils.getExifOrientation(reader, FIRST_IMAGE_INDEX);
+			}
+			return new ImageHeader(
+					reader.getFormatName(),
+					reader.getOriginatingProvider().getFormatNames(),
+					reader.getWidth(FIRST_IMAGE_INDEX),
+					reader.getHeight(FIRST_IMAGE_INDEX),
+					orientation
+			);
+
+		} catch (IIOException e) {
+			// Headers which Image I/O cannot make sense of are left to read().
+			return null;
+
+		} catch (RuntimeException e) {
+			return null;
+
+		} finally {
+			if (reader != null) {
+				reader.dispose();
+			}
+			iis.close();
+			replay = input.replay();
+		}
+	}
+
+	/**
+	 * Copies the data of the image, from its beginning, to the given
+	 * stream.
+	 *
+	 * @param os			The stream to copy the image to.
+	 * @throws IOException	If the stream could not be read, or the data
+	 * 						could not be written.
+	 */
+	public void transferTo(OutputStream os) throws IOException {
+		InputStream input = currentInput();
+		byte[] buffer = new byte[8192];
+		int n;
+		while ((n = input.read(buffer)) != -1) {
+			os.write(buffer, 0, n);
+		}
+		finishedReading(null);
+	}
+
+	/**
+	 * Returns the stream from which the image is read: the stream given
+	 * to this source, or a stream which reads it again from the beginning
+	 * once part of it has been read without being used.
+	 */
+	private InputStream currentInput() {
+		return replay != null ? replay : is;
+	}
+
+	/**
+	 * Returns whether the Exif orientation of an image requires it to be
+	 * rotated or flipped.
+	 *
+	 * @param decoder	The decoder which has read the header of the image.
+	 * @return			{@code true} if an orientation filter is needed.
+	 */
+	private boolean needsOrientation(JpegDecoder decoder) {
+		if (!param.useExifOrientation() || decoder.getExifData() == null) {
+			return false;
+		}
+		Orientation orientation = ExifUtils.getOrientationFromExif(decoder.getExifData());
+		return orientation != null && orientation != Orientation.TOP_LEFT;
+	}
+
+	/**
+	 * Returns whether the image may be decoded at a reduced size by the
+	 * {@link JpegDecoder}, which requires the thumbnail to be resized to a
+	 * specific size from the whole image.
+	 *
+	 * @return		{@code true} if the {@link JpegDecoder} may be used.
+	 */
+	private boolean isJpegDecoderApplicable() {
+		return (Configurations.USE_JPEG_DECODER.getBoolean() ||
+				Configurations.PARTIAL_PROGRESSIVE_JPEG.getBoolean()) &&
+				isReducedDecodingApplicable();
+	}
+
+	/**
+	 * Returns whether the image may be reduced while it is decoded by the
+	 * {@link PngDecoder}.
+	 *
+	 * @return		{@code true} if the {@link PngDecoder} may be used.
+	 */
+	private boolean isPngDecoderApplicable() {
+		return Configurations.USE_PNG_DECODER.getBoolean() &&
+				isReducedDecodingApplicable();
+	}
+
+	/**
+	 * Returns whether the thumbnail is resized to a specific size from the
+	 * whole image, which allows the image to be decoded at a reduced size.
+	 *
+	 * @return		{@code true} if the image may be decoded at a reduced
+	 * 				size.
+	 */
+	private boolean isReducedDecodingApplicable() {
+		return param != null &&
+				param.getSize() != null &&
+				param.getSourceRegion() == null;
+	}
+
+	/**
+	 * Reads the image with the {@link JpegDecoder} at a reduced size, if the
+	 * image is a JPEG image which the decoder supports and which is large
+	 * enough to be reduced for the thumbnail.
+	 * <p>
+	 * When partial decoding of progressive images is enabled, the decoder
+	 * stops reading a progressive image once it has enough detail for the
+	 * reduced size.
+	 * <p>
+	 * Once decoding has started, the data of a large image cannot be read by
+	 * Image I/O anymore, so errors in its image data are thrown rather than
+	 * left for Image I/O to report.
+	 *
+	 * @param decoder	The decoder to read the image with.
+	 * @return			The image, or {@code null} if the image should be
+	 * 					read by Image I/O instead.
+	 * @throws ImageLimitExceededException	If the image exceeds the
+	 * 										{@link ImageLimits}.
+	 * @throws IOException	If the image data could not be decoded.
+	 */
+	private BufferedImage readWithJpegDecoder(JpegDecoder decoder) throws IOException {
+		int scale;
+		try {
+			if (!decoder.readHeader()) {
+				return null;
+			}
+			checkLimits(decoder);
+
+			boolean partial = Configurations.PARTIAL_PROGRESSIVE_JPEG.getBoolean();
+			if (!Configurations.USE_JPEG_DECODER.getBoolean() && !(partial && decoder.isProgressive())) {
+				return null;
+			}
+			decoder.setPartialDecoding(partial);
+
+			scale = getJpegScale(decoder.getWidth(), decoder.getHeight());
+			if (scale == 1) {
+				return null;
+			}
+
+		} catch (CancellationException e) {
+			throw e;
+		} catch (ImageLimitExceededException e) {
+			throw e;
+		} catch (Exception e) {
+			// If Image I/O cannot read the image either, it will report why.
+			return null;
+		}
+
+		Orientation orientation = null;
+		try {
+			if (param.useExifOrientation() && decoder.getExifData() != null) {
+				orientation = ExifUtils.getOrientationFromExif(decoder.getExifData());
+			}
+		} catch (Exception e) {
+			// Skip the orientation-related processing, as Image I/O does.
+		}
+
+		BufferedImage img;
+		try {
+			img = decoder.decode(scale);
+		} catch (IOException e) {
+			if (!fallBack(decoder, e)) {
+				throw e;
+			}
+			return null;
+		} catch (RuntimeException e) {
+			if (!fallBack(decoder, e)) {
+				throw e;
+			}
+			return null;
+		}
+		addOrientationFilter(orientation);
+		inputFormatName = "JPEG";
+		return img;
+	}
+
+	/**
+	 * Returns whether an image which the {@link JpegDecoder} failed to
+	 * decode should be read by Image I/O from the beginning, which is only
+	 * possible while the decoder has kept the data it read.
+	 *
+	 * @param decoder	The decoder which failed.
+	 * @param e			The reason it failed.
+	 * @return			{@code true} if the image should be read by Image
+	 * 					I/O, {@code false} if the failure should be thrown.
+	 */
+	private static boolean fallBack(JpegDecoder decoder, Exception e) {
+		if (e instanceof CancellationException || e instanceof ImageLimitExceededException) {
+			return false;
+		}
+		// If Image I/O cannot read the image either, it will report why.
+		return decoder.canReplay();
+	}
+
+	/**
+	 * Reads the image with the {@link PngDecoder}, reducing it while it is
+	 * decoded, if the image is a PNG image which is large enough to be
+	 * reduced for the thumbnail.
+	 * <p>
+	 * Once decoding has started, the data cannot be read by Image I/O
+	 * anymore, so errors in the image data are thrown rather than left for
+	 * Image I/O to report.
+	 *
+	 * @param decoder	The decoder to read the image with.
+	 * @return			The reduced image, or {@code null} if the image
+	 * 					should be read by Image I/O instead.
+	 * @throws IOException	If the image data could not be decoded.
+	 */
+	private BufferedImage readWithPngDecoder(PngDecoder decoder) throws IOException {
+		int factor;
+		try {
+			if (!decoder.readHeader()) {
+				return null;
+			}
+			factor = getPngReduction(decoder.getWidth(), decoder.getHeight());
+			if (factor == 1) {
+				return null;
+			}
+		} catch (IOException e) {
+			// If Image I/O cannot read the image either, it will report why.
+			return null;
+		}
+		ImageLimits.getThreadLimits().check("png", decoder.getWidth(), decoder.getHeight());
+
+		StreamingResizer resizer = new StreamingResizer(
+				decoder.getWidth(), decoder.getHeight(),
+				(decoder.getWidth() + factor - 1) / factor,
+				(decoder.getHeight() + factor - 1) / factor,
+				decoder.hasAlpha()
+		);
+		decoder.decode(resizer);
+		inputFormatName = "png";
+		return resizer.getImage();
+	}
+
+	/**
+	 * Returns the largest factor a PNG image can be reduced by while
+	 * decoding, which still leaves enough pixels for the thumbnail, in the
+	 * same way as {@link #getJpegScale(int, int)} but without being limited
+	 * to powers of two.
+	 *
+	 * @param width		The width of the image.
+	 * @param height	The height of the image.
+	 * @return			The factor to reduce the image by, or {@code 1} if
+	 * 					the image should not be reduced.
+	 */
+	private int getPngReduction(int width, int height) {
+		return Math.max(1, Math.min(width, height) / getLongerTargetSide());
+	}
+
+	/**
+	 * Returns the longer side of the size the thumbnail is resized to.
+	 *
+	 * @return			The longer side of the target size.
+	 */
+	private int getLongerTargetSide() {
+		int targetWidth = param.getSize().width;
+		int targetHeight = param.getSize().height;
+
+		// Handle cases where .width() or .height() is called. (Issue 161)
+		targetWidth = targetWidth != Integer.MAX_VALUE ? targetWidth : targetHeight;
+		targetHeight = targetHeight != Integer.MAX_VALUE ? targetHeight : targetWidth;
+
+		return Math.max(targetWidth, targetHeight);
+	}
+
+	/**
+	 * Returns the largest factor a JPEG image can be reduced by while
+	 * decoding, which still leaves enough pixels for the thumbnail.
+	 * <p>
+	 * As the thumbnail may be rotated by the Exif orientation, or may fill
+	 * the target size rather than fit in it, the shorter side of the
+	 * reduced image must be at least as long as the longer side of the
+	 * target size.
+	 *
+	 * @param width		The width of the image.
+	 * @param height	The height of the image.
+	 * @return			The factor to reduce the image by, or {@code 1} if
+	 * 					the image should not be reduced.
+	 */
+	private int getJpegScale(int width, int height) {
+		int target = getLongerTargetSide();
+		int shorterSide = Math.min(width, height);
+		for (int scale = 8; scale > 1; scale /= 2) {
+			if ((shorterSide + scale - 1) / scale >= target) {
+				return scale;
+			}
+		}
+		return 1;
+	}
+
+	/**
+	 * Adds the filter which corrects the Exif orientation of the image to
+	 * the beginning of the image filters.
+	 *
+	 * @param orientation	The Exif orientation, or {@code null} if unknown.
+	 */
+	private void addOrientationFilter(Orientation orientation) {
+		// Skip this code block if there's no rotation needed.
+		if (orientation != null && orientation != Orientation.TOP_LEFT) {
+			List<ImageFilter> filters = param.getImageFilters();
+
+			// EXIF orientation filter is added to the beginning, as
+			// it should be performed early to prevent mis-orientation
+			// in later filters.
+			filters.add(0, ExifFilterUtils.getFilterForOrientation(orientation));
+		}
+	}
+
+	/**
+	 * Checks the dimensions of a JPEG image read by the {@link JpegDecoder}
+	 * against the {@link ImageLimits} of the current thread.
+	 *
+	 * @param decoder	The decoder which has read the header of the image.
+	 * @return			{@code true}, so that the check can be part of a
+	 * 					condition.
+	 * @throws ImageLimitExceededException	If the image exceeds the limits.
+	 */
+	private boolean checkLimits(JpegDecoder decoder) throws ImageLimitExceededException {
+		ImageLimits.getThreadLimits().check("JPEG", decoder.getWidth(), decoder.getHeight());
+		return true;
+	}
+
+	/**
+	 * Checks the dimensions, and the number of frames if it is limited, of
+	 * the image an {@link ImageReader} reads against the
+	 * {@link ImageLimits} of the current thread, before the image is
+	 * decoded.
+	 *
+	 * @param reader		The reader of the image.
+	 * @throws IOException	If the image exceeds the limits, or its header
+	 * 						could not be read.
+	 */
+	private void checkLimits(ImageReader reader) throws IOException {
+		ImageLimits limits = ImageLimits.getThreadLimits();
+		String formatName = reader.getFormatName();
+		limits.check(formatName, reader.getWidth(FIRST_IMAGE_INDEX), reader.getHeight(FIRST_IMAGE_INDEX));
+		if (limits.getMaxFrames() > 0) {
+			limits.checkFrames(formatName, reader.getNumImages(true));
+		}
+	}
+
 	private BufferedImage readImage(ImageReader reader) throws IOException {
+		checkLimits(reader);
+
 		Orientation orientation = null;
 		try {
 			if (param.useExifOrientation()) {
@@ -506,15 +1113,7 @@ public class InputStreamImageSource extends AbstractImageSource<InputStream> {
 					}
 				}
 
-				// Skip this code block if there's no rotation needed.
-				if (orientation != null && orientation != Orientation.TOP_LEFT) {
-					List<ImageFilter> filters = param.getImageFilters();
-
-					// EXIF orientation filter is added to the beginning, as
-					// it should be performed early to prevent mis-orientation
-					// in later filters.
-					filters.add(0, ExifFilterUtils.getFilterForOrientation(orientation));
-				}
+				addOrientationFilter(orientation);
 			}
 		} catch (Exception e) {
 			// If something goes wrong, then skip the orientation-related
@@ -570,27 +1169,206 @@ public class InputStreamImageSource extends AbstractImageSource<InputStream> {
 			// This will ensure that at least a 600 x 600 image will be used as source.
 			for (; (width / subsampling) < 600 || (height / subsampling) < 600; subsampling--);
 
-			// If scaling factor based resize is used, need to change the scaling factor.
-			if (param.getSize() == null) {
-				try {
-					Class<?> c = param.getClass();
-					Field heightField = c.getDeclaredField("heightScalingFactor");
-					Field widthField = c.getDeclaredField("widthScalingFactor");
-					heightField.setAccessible(true);
-					widthField.setAccessible(true);
-					heightField.set(param, param.getHeightScalingFactor() * (double)subsampling);
-					widthField.set(param, param.getWidthScalingFactor() * (double)subsampling);
+			// If scaling factor based resize is used, the task applies the
+			// scaling factors to the image at its full resolution.
+			this.subsampling = subsampling;
 
-				} catch (Exception e) {
-					// If we can't update the parameter, then disable subsampling.
-					subsampling = 1;
+			irParam.setSourceSubsampling(subsampling, subsampling, 0, 0);
+		}
+
+		if (param != null && Configurations.DEGRADE_ON_LOW_MEMORY.getBoolean()) {
+			return readDegradable(reader, irParam, width, height);
+		}
+
+		setAllocatedDestination(reader, irParam, width, height);
+
+		return reader.read(FIRST_IMAGE_INDEX, irParam);
+	}
+
+	/**
+	 * Reads the image, subsampling it when it does not fit in the memory
+	 * available, as enabled by {@link Configurations#DEGRADE_ON_LOW_MEMORY}.
+	 * <p>
+	 * The image is subsampled beforehand when its estimated size exceeds
+	 * half of the memory available to the heap. When reading it fails with
+	 * an {@link OutOfMemoryError} regardless, the destination image is
+	 * released, and the image is read again from its beginning with twice
+	 * the subsampling, until it is read or cannot be subsampled further.
+	 * <p>
+	 * The image is not subsampled below the size of the thumbnail, so that
+	 * the thumbnail is not enlarged from the subsampled image.
+	 *
+	 * @param reader		The reader of the image.
+	 * @param irParam		The parameters to read the image with.
+	 * @param width			The width of the image.
+	 * @param height		The height of the image.
+	 * @return				The image.
+	 * @throws IOException	If the image could not be read.
+	 */
+	private BufferedImage readDegradable(ImageReader reader, ImageReadParam irParam, int width, int height) throws IOException {
+		Rectangle region = new Rectangle(0, 0, width, height);
+		if (irParam.getSourceRegion() != null) {
+			region = region.intersection(irParam.getSourceRegion());
+		}
+
+		int initialSubsampling = irParam.getSourceXSubsampling();
+		int maxSubsampling = Math.min(MAX_DEGRADED_SUBSAMPLING, getCoveringSubsampling(region));
+		int subsampling = initialSubsampling;
+		long budget = getAvailableMemory() / 2;
+		while (subsampling * 2 <= maxSubsampling && estimateSize(region, subsampling) > budget) {
+			subsampling *= 2;
+		}
+
+		ImageInputStream iis = (ImageInputStream)reader.getInput();
+		BufferedImage img;
+		while (true) {
+			irParam.setSourceSubsampling(subsampling, subsampling, 0, 0);
+			try {
+				setAllocatedDestination(reader, irParam, width, height);
+				img = reader.read(FIRST_IMAGE_INDEX, irParam);
+				break;
+
+			} catch (OutOfMemoryError e) {
+				BufferedImage destination = irParam.getDestination();
+				irParam.setDestination(null);
+				if (destination != null) {
+					BufferedImageBuilder.release(destination);
 				}
+				if (subsampling * 2 > maxSubsampling) {
+					throw e;
+				}
+				subsampling *= 2;
+
+				// The reader starts again from the beginning of the stream,
+				// which is where the stream was given to it.
+				iis.seek(0);
+				reader.setInput(iis);
 			}
+		}
 
-			irParam.setSourceSubsampling(subsampling, subsampling, 0, 0);
+		this.subsampling = subsampling;
+		if (subsampling != initialSubsampling) {
+			degradedSubsampling = subsampling;
 		}
+		return img;
+	}
 
-		return reader.read(FIRST_IMAGE_INDEX, irParam);
+	/**
+	 * Returns the largest subsampling of the given region which leaves at
+	 * least as many pixels in each direction as the thumbnail has, and at
+	 * least one pixel.
+	 * <p>
+	 * As the width and height of the thumbnail may be swapped by an image
+	 * filter which rotates it, and the aspect ratio may be kept by either
+	 * dimension, the larger of the scales to each dimension is used.
+	 */
+	private int getCoveringSubsampling(Rectangle region) {
+		double scale;
+		Dimension size = param.getSize();
+		if (size != null) {
+			scale = 0;
+			for (int length : new int[] {size.width, size.height}) {
+				// The other dimension is unbounded when only one is set.
+				if (length != Integer.MAX_VALUE) {
+					scale = Math.max(scale, (double)length / Math.min(region.width, region.height));
+				}
+			}
+		} else {
+			scale = Math.max(param.getWidthScalingFactor(), param.getHeightScalingFactor());
+		}
+
+		int subsampling = scale > 0 ? (int)Math.floor(1 / scale) : Integer.MAX_VALUE;
+		subsampling = Math.min(subsampling, Math.min(region.width, region.height));
+		return Math.max(1, subsampling);
+	}
+
+	/**
+	 * Returns the estimated number of bytes of the given region when it is
+	 * subsampled by the given factor, at four bytes per pixel.
+	 */
+	private static long estimateSize(Rectangle region, int subsampling) {
+		long width = (region.width + subsampling - 1) / subsampling;
+		long height = (region.height + subsampling - 1) / subsampling;
+		return width * height * 4;
+	}
+
+	/**
+	 * Returns the number of bytes the heap can still grow by.
+	 */
+	private static long getAvailableMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		return runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+	}
+
+	/**
+	 * Lets the {@link ImageReader} decode into an image obtained from the
+	 * current {@link ImageAllocator}, when an allocator which recycles
+	 * images or stores them outside the heap is in use.
+	 * <p>
+	 * The destination is only set when the image type the reader decodes
+	 * to is one of the predefined {@link BufferedImage} types without a
+	 * palette, so that the decoded image is identical to the one the reader
+	 * would have created.
+	 *
+	 * @param reader		The reader which will decode the image.
+	 * @param irParam		The parameters which will be used for decoding.
+	 * @param width			The width of the image to decode.
+	 * @param height		The height of the image to decode.
+	 * @throws IOException	If the image type could not be determined.
+	 */
+	private void setAllocatedDestination(ImageReader reader, ImageReadParam irParam, int width, int height) throws IOException {
+		if (BufferedImageBuilder.getCurrentAllocator() == DefaultImageAllocator.getInstance()) {
+			return;
+		}
+
+		Iterator<ImageTypeSpecifier> imageTypes = reader.getImageTypes(FIRST_IMAGE_INDEX);
+		if (imageTypes == null || !imageTypes.hasNext()) {
+			return;
+		}
+
+		ImageTypeSpecifier imageTypeSpecifier = imageTypes.next();
+		int imageType = imageTypeSpecifier.getBufferedImageType();
+		if (imageType == BufferedImage.TYPE_CUSTOM) {
+			return;
+		}
+		if (imageTypeSpecifier.getColorModel() instanceof IndexColorModel) {
+			// A new image would not have the palette of the source image.
+			return;
+		}
+
+		Rectangle region = new Rectangle(0, 0, width, height);
+		if (irParam.getSourceRegion() != null) {
+			region = region.intersection(irParam.getSourceRegion());
+		}
+		if (region.isEmpty()) {
+			return;
+		}
+
+		int xSubsampling = irParam.getSourceXSubsampling();
+		int ySubsampling = irParam.getSourceYSubsampling();
+		int destWidth = (region.width + xSubsampling - 1) / xSubsampling;
+		int destHeight = (region.height + ySubsampling - 1) / ySubsampling;
+
+		BufferedImage destination =
+				new BufferedImageBuilder(destWidth, destHeight, imageType).build();
+
+		if (!BufferedImages.isArrayBacked(destination) && !writesThroughRaster(reader)) {
+			// The reader would fail to access the pixels of the destination.
+			BufferedImageBuilder.release(destination);
+			return;
+		}
+
+		irParam.setDestination(destination);
+	}
+
+	private static boolean writesThroughRaster(ImageReader reader) {
+		String className = reader.getClass().getName();
+		for (String prefix : RASTER_API_READER_PACKAGES) {
+			if (className.startsWith(prefix)) {
+				return true;
+			}
+		}
+		return false;
 	}
 
 	private Rectangle calculateSourceRegion(int width, int height, Orientation orientation, Region region) {
@@ -642,4 +1420,16 @@ public class InputStreamImageSource extends AbstractImageSource<InputStream> {
 	public InputStream getSource() {
 		return is;
 	}
+
+	public int getSubsampling() {
+		return subsampling;
+	}
+
+	public int getDegradedSubsampling() {
+		return degradedSubsampling;
+	}
+
+	public boolean isDegraded() {
+		return degradedSubsampling > 1;
+	}
 }
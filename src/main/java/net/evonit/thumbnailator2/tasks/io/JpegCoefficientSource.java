@@ -0,0 +1,55 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2020 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.tasks.io;
+
+import java.io.IOException;
+
+import net.evonit.thumbnailator2.tasks.io.jpeg.JpegCoefficients;
+
+/**
+ * An {@link ImageSource} which can read the quantized DCT coefficients of
+ * JPEG images, so that they can be rotated, flipped and cropped without
+ * decoding and encoding the image again.
+ *
+ * @author coobird
+ *
+ */
+public interface JpegCoefficientSource {
+	/**
+	 * Reads the coefficients of the image with the Exif orientation and the
+	 * source region applied, if the image is a JPEG image for which these
+	 * can be applied losslessly.
+	 * <p>
+	 * If {@code null} is returned, the image can still be read with
+	 * {@link ImageSource#read()}.
+	 *
+	 * @return					The coefficients of the transformed image, or
+	 * 							{@code null} if the image cannot be
+	 * 							transformed losslessly.
+	 * @throws IOException		When a problem occurs while reading the
+	 * 							image.
+	 */
+	public JpegCoefficients readJpegCoefficients() throws IOException;
+}
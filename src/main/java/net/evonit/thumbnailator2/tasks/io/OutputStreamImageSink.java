@@ -25,6 +25,7 @@
 package net.evonit.thumbnailator2.tasks.io;
 
 import java.awt.image.BufferedImage;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Iterator;
@@ -32,12 +33,16 @@ import java.util.List;
 
 import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
 import javax.imageio.ImageWriteParam;
 import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
 import javax.imageio.stream.ImageOutputStream;
 
 import net.evonit.thumbnailator2.ThumbnailParameter;
+import net.evonit.thumbnailator2.builders.BufferedImageBuilder;
 import net.evonit.thumbnailator2.tasks.UnsupportedFormatException;
+import net.evonit.thumbnailator2.tasks.io.jpeg.YCbCrImage;
 import net.evonit.thumbnailator2.util.BufferedImages;
 import net.evonit.thumbnailator2.util.ThumbnailatorUtils;
 
@@ -48,13 +53,20 @@ import net.evonit.thumbnailator2.util.ThumbnailatorUtils;
  * @author coobird
  *
  */
-public class OutputStreamImageSink extends AbstractImageSink<OutputStream> {
+public class OutputStreamImageSink extends AbstractImageSink<OutputStream>
+		implements YCbCrImageSink, EncodedImageSink {
 	/**
 	 * The {@link OutputStream} to which the thumbnail image is to be
 	 * written to.
 	 */
 	private final OutputStream os;
 	
+	/**
+	 * The number of bytes of the last image written to the
+	 * {@link OutputStream}, or {@code -1} if it is not known.
+	 */
+	private long bytesWritten = -1;
+	
 	/**
 	 * Instantiates an {@link OutputStreamImageSink} with the
 	 * {@link OutputStream} to which the thumbnail should be written to.
@@ -97,67 +109,8 @@ public class OutputStreamImageSink extends AbstractImageSink<OutputStream> {
 		}
 		
 		String formatName = outputFormat;
-			
-		Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(formatName);
-		
-		if (!writers.hasNext()) {
-			throw new UnsupportedFormatException(
-					formatName,
-					"No suitable ImageWriter found for " + formatName + "."
-			);
-		}
-		
-		ImageWriter writer = writers.next();
-		
-		ImageWriteParam writeParam = writer.getDefaultWriteParam();
-		if (writeParam.canWriteCompressed()) {
-			/*
-			 * Sets the compression format type, if specified.
-			 *
-			 * Note:
-			 * The value to denote that the codec's default compression type
-			 * should be used is null.
-			 */
-			String compressionType = null;
-			if (param != null && param.getOutputFormatType() != ThumbnailParameter.DEFAULT_FORMAT_TYPE) {
-				compressionType = param.getOutputFormatType();
-
-			} else {
-				List<String> supportedFormats =
-						ThumbnailatorUtils.getSupportedOutputFormatTypes(formatName);
-
-				if (!supportedFormats.isEmpty()) {
-					compressionType = supportedFormats.get(0);
-				}
-			}
-			if (compressionType != null) {
-				setCompressionModeExplicit(writeParam);
-				writeParam.setCompressionType(compressionType);
-			}
-
-			/*
-			 * Sets the compression quality, if specified.
-			 *
-			 * Note:
-			 * The value to denote that the codec's default compression quality
-			 * should be used is Float.NaN.
-			 */
-			if (param != null && !Float.isNaN(param.getOutputQuality())) {
-				setCompressionModeExplicit(writeParam);
-				writeParam.setCompressionQuality(param.getOutputQuality());
-
-			} else if (isPng(formatName) && isJava9OrNewer() && isDefaultPngWriter(writer)) {
-				/*
-				 * Before Java 9, the PNG writer bundled with the JRE was
-				 * using maximum compression.
-				 * To replicate the behavior in Java 9+, the compression
-				 * quality is set to 0.0f to trigger maximum compression.
-				 * See Issue #156: https://github.com/coobird/thumbnailator/issues/156
-				 */
-				setCompressionModeExplicit(writeParam);
-				writeParam.setCompressionQuality(0.0f);
-			}
-		}
+		ImageWriter writer = getWriter(formatName);
+		ImageWriteParam writeParam = createWriteParam(writer, formatName);
 
 		/*
 		 * The following line is not surrounded by a try-catch, as catching
@@ -210,12 +163,18 @@ public class OutputStreamImageSink extends AbstractImageSink<OutputStream> {
 		 * Also, the BMP writer appears not to support ARGB, so an RGB image
 		 * will be produced before saving.
 		 */
+		BufferedImage imageToWrite = img;
 		if (isJpegOrBmp(formatName)) {
-			img = BufferedImages.copy(img, BufferedImage.TYPE_INT_RGB);
+			imageToWrite = BufferedImages.copy(img, BufferedImage.TYPE_INT_RGB);
 		}
 		
 		writer.setOutput(ios);
-		writer.write(null, new IIOImage(img, null, null), writeParam);
+		Cancellation.attach(writer);
+		writer.write(null, new IIOImage(imageToWrite, null, null), writeParam);
+		
+		if (imageToWrite != img) {
+			BufferedImageBuilder.release(imageToWrite);
+		}
 		
 		/*
 		 * Dispose the writer to free resources.
@@ -228,7 +187,177 @@ public class OutputStreamImageSink extends AbstractImageSink<OutputStream> {
 		 */
 		writer.dispose();
 		
+		bytesWritten = lengthOf(ios);
+		ios.close();
+		
+		// An aborted writer leaves an incomplete image.
+		Cancellation.checkThread();
+	}
+
+	/**
+	 * Writes the luma and chroma planes of a thumbnail to the
+	 * {@link OutputStream} as a JPEG image, without converting them to RGB
+	 * first.
+	 *
+	 * @param img							The planes to write.
+	 * @throws UnsupportedFormatException	If the output format is not JPEG,
+	 * 										or no JPEG writer is available.
+	 * @throws IOException					When a problem occurs while writing
+	 * 										the image.
+	 * @throws NullPointerException			If the image is {@code null}.
+	 * @throws IllegalStateException		If the output format has not been
+	 * 										set.
+	 */
+	public void writeYCbCr(YCbCrImage img) throws IOException {
+		if (img == null) {
+			throw new NullPointerException("Cannot write a null image.");
+		}
+		if (outputFormat == null) {
+			throw new IllegalStateException("Output format has not been set.");
+		}
+
+		String formatName = outputFormat;
+		if (!isJpeg(formatName)) {
+			throw new UnsupportedFormatException(
+					formatName,
+					"Luma and chroma planes can only be written as JPEG."
+			);
+		}
+
+		ImageWriter writer = getWriter(formatName);
+		ImageWriteParam writeParam = createWriteParam(writer, formatName);
+
+		ImageOutputStream ios = ImageIO.createImageOutputStream(os);
+		if (ios == null) {
+			throw new IOException("Could not open OutputStream.");
+		}
+
+		/*
+		 * When given a Raster, the JPEG writer stores the bands as they are,
+		 * so the planes end up in the file as Y, Cb and Cr. The metadata
+		 * supplies the JFIF marker and the usual 2x2 chroma subsampling.
+		 */
+		int type = img.getPlaneCount() == 1
+				? BufferedImage.TYPE_BYTE_GRAY
+				: BufferedImage.TYPE_3BYTE_BGR;
+		IIOMetadata metadata = writer.getDefaultImageMetadata(
+				ImageTypeSpecifier.createFromBufferedImageType(type),
+				writeParam
+		);
+
+		writer.setOutput(ios);
+		Cancellation.attach(writer);
+		writer.write(null, new IIOImage(img.toRaster(), null, metadata), writeParam);
+		writer.dispose();
+
+		bytesWritten = lengthOf(ios);
 		ios.close();
+		Cancellation.checkThread();
+	}
+
+	/**
+	 * Returns the number of bytes which have been written to the given
+	 * stream, or {@code -1} if it is not known.
+	 */
+	private static long lengthOf(ImageOutputStream ios) throws IOException {
+		long length = ios.length();
+		return length != -1 ? length : ios.getStreamPosition();
+	}
+
+	/**
+	 * Returns a stream which writes an encoded image to the
+	 * {@link OutputStream} of this sink. Closing the returned stream
+	 * flushes the {@link OutputStream} without closing it.
+	 *
+	 * @return		The stream to write the encoded image to.
+	 */
+	public OutputStream openEncodedStream() {
+		bytesWritten = 0;
+		return new FilterOutputStream(os) {
+			@Override
+			public void write(int b) throws IOException {
+				out.write(b);
+				bytesWritten++;
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				out.write(b, off, len);
+				bytesWritten += len;
+			}
+
+			@Override
+			public void close() throws IOException {
+				flush();
+			}
+		};
+	}
+
+	private ImageWriter getWriter(String formatName) throws UnsupportedFormatException {
+		Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(formatName);
+		
+		if (!writers.hasNext()) {
+			throw new UnsupportedFormatException(
+					formatName,
+					"No suitable ImageWriter found for " + formatName + "."
+			);
+		}
+		
+		return writers.next();
+	}
+
+	private ImageWriteParam createWriteParam(ImageWriter writer, String formatName) {
+		ImageWriteParam writeParam = writer.getDefaultWriteParam();
+		if (writeParam.canWriteCompressed()) {
+			/*
+			 * Sets the compression format type, if specified.
+			 *
+			 * Note:
+			 * The value to denote that the codec's default compression type
+			 * should be used is null.
+			 */
+			String compressionType = null;
+			if (param != null && param.getOutputFormatType() != ThumbnailParameter.DEFAULT_FORMAT_TYPE) {
+				compressionType = param.getOutputFormatType();
+
+			} else {
+				List<String> supportedFormats =
+						ThumbnailatorUtils.getSupportedOutputFormatTypes(formatName);
+
+				if (!supportedFormats.isEmpty()) {
+					compressionType = supportedFormats.get(0);
+				}
+			}
+			if (compressionType != null) {
+				setCompressionModeExplicit(writeParam);
+				writeParam.setCompressionType(compressionType);
+			}
+
+			/*
+			 * Sets the compression quality, if specified.
+			 *
+			 * Note:
+			 * The value to denote that the codec's default compression quality
+			 * should be used is Float.NaN.
+			 */
+			if (param != null && !Float.isNaN(param.getOutputQuality())) {
+				setCompressionModeExplicit(writeParam);
+				writeParam.setCompressionQuality(param.getOutputQuality());
+
+			} else if (isPng(formatName) && isJava9OrNewer() && isDefaultPngWriter(writer)) {
+				/*
+				 * Before Java 9, the PNG writer bundled with the JRE was
+				 * using maximum compression.
+				 * To replicate the behavior in Java 9+, the compression
+				 * quality is set to 0.0f to trigger maximum compression.
+				 * See Issue #156: https://github.com/coobird/thumbnailator/issues/156
+				 */
+				setCompressionModeExplicit(writeParam);
+				writeParam.setCompressionQuality(0.0f);
+			}
+		}
+
+		return writeParam;
 	}
 
 	/**
@@ -245,9 +374,12 @@ public class OutputStreamImageSink extends AbstractImageSink<OutputStream> {
 	}
 
 	private boolean isJpegOrBmp(String formatName) {
+		return isJpeg(formatName) || formatName.equalsIgnoreCase("bmp");
+	}
+
+	private boolean isJpeg(String formatName) {
 		return formatName.equalsIgnoreCase("jpg")
-				|| formatName.equalsIgnoreCase("jpeg")
-				|| formatName.equalsIgnoreCase("bmp");
+				|| formatName.equalsIgnoreCase("jpeg");
 	}
 
 	private boolean isPng(String formatName) {
@@ -265,6 +397,18 @@ public class OutputStreamImageSink extends AbstractImageSink<OutputStream> {
 		return version != null && !version.contains(".");
 	}
 
+	/**
+	 * Returns the number of bytes of the image last written to the
+	 * {@link OutputStream}, by one of the {@code write} methods or through
+	 * the stream returned by {@link #openEncodedStream()}.
+	 *
+	 * @return		The number of bytes, or {@code -1} if no image has been
+	 * 				written yet.
+	 */
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+
 	public OutputStream getSink() {
 		return os;
 	}
@@ -0,0 +1,130 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2020 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.tasks.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.Arrays;
+
+/**
+ * An {@link InputStream} which records the data read from the underlying
+ * stream, so that the stream can be read again from the beginning after its
+ * header has been examined.
+ *
+ * @author coobird
+ *
+ */
+final class RecordingInputStream extends FilterInputStream {
+	private byte[] recorded = new byte[8192];
+	private int recordedLength;
+
+	/**
+	 * Creates a stream which records the data read from the given stream.
+	 *
+	 * @param is			The stream to read from.
+	 */
+	RecordingInputStream(InputStream is) {
+		super(is);
+	}
+
+	private void record(byte[] b, int off, int len) {
+		if (recordedLength + len > recorded.length) {
+			recorded = Arrays.copyOf(recorded, Math.max(recorded.length * 2, recordedLength + len));
+		}
+		System.arraycopy(b, off, recorded, recordedLength, len);
+		recordedLength += len;
+	}
+
+	@Override
+	public int read() throws IOException {
+		int b = in.read();
+		if (b != -1) {
+			record(new byte[] {(byte)b}, 0, 1);
+		}
+		return b;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		int n = in.read(b, off, len);
+		if (n > 0) {
+			record(b, off, n);
+		}
+		return n;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		// Skipped data is read, so that it is recorded as well.
+		byte[] buffer = new byte[(int)Math.min(n, 8192)];
+		long skipped = 0;
+		while (skipped < n) {
+			int read = read(buffer, 0, (int)Math.min(n - skipped, buffer.length));
+			if (read < 0) {
+				break;
+			}
+			skipped += read;
+		}
+		return skipped;
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+	@Override
+	public void mark(int readlimit) {
+	}
+
+	@Override
+	public void reset() throws IOException {
+		throw new IOException("mark/reset not supported");
+	}
+
+	/**
+	 * Closing the stream has no effect, as the data which has not been read
+	 * yet is needed by {@link #replay()}.
+	 */
+	@Override
+	public void close() {
+	}
+
+	/**
+	 * Returns a stream which reads the data from the beginning: the
+	 * recorded data, followed by the rest of the underlying stream.
+	 *
+	 * @return				A stream of the complete data.
+	 */
+	InputStream replay() {
+		return new SequenceInputStream(
+				new ByteArrayInputStream(recorded, 0, recordedLength),
+				in
+		);
+	}
+}
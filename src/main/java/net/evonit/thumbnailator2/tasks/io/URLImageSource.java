@@ -25,11 +25,21 @@
 package net.evonit.thumbnailator2.tasks.io;
 
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.Proxy;
 import java.net.URL;
+import java.net.URLConnection;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import net.evonit.thumbnailator2.tasks.ImageLimitExceededException;
 
 /**
  * An {@link ImageSource} which retrieves a source image from a URL.
@@ -37,7 +47,18 @@ import java.net.URL;
  * @author coobird
  *
  */
-public class URLImageSource extends AbstractImageSource<URL> {
+public class URLImageSource extends AbstractImageSource<URL> implements DegradableImageSource {
+	/**
+	 * The number of bytes requested by the first request of
+	 * {@link #probe(int)}.
+	 */
+	private static final int PROBE_INITIAL_BYTES = 4096;
+	
+	/**
+	 * The number of bytes which {@link #probe()} reads at most.
+	 */
+	private static final int PROBE_MAX_BYTES = 256 * 1024;
+	
 	/**
 	 * The URL from which to retrieve the source image.
 	 */
@@ -49,6 +70,24 @@ public class URLImageSource extends AbstractImageSource<URL> {
 	 * If a proxy is not required, then this field will be {@code null}.
 	 */
 	private final Proxy proxy;
+	
+	/**
+	 * The fetcher to use to retrieve the data at the image URL.
+	 * <p>
+	 * If the URL is opened directly, then this field will be {@code null}.
+	 */
+	private final URLFetcher fetcher;
+
+	/**
+	 * The factor by which the image was subsampled when it was read.
+	 */
+	private int subsampling = 1;
+
+	/**
+	 * The factor by which the image was subsampled when it was read, as it
+	 * did not fit in the available memory.
+	 */
+	private int degradedSubsampling = 1;
 
 	/**
 	 * Instantiates an {@link URLImageSource} with the URL from which the
@@ -66,6 +105,7 @@ public class URLImageSource extends AbstractImageSource<URL> {
 		
 		this.url = url;
 		this.proxy = null;
+		this.fetcher = null;
 	}
 	
 	/**
@@ -85,6 +125,7 @@ public class URLImageSource extends AbstractImageSource<URL> {
 		
 		this.url = new URL(url);
 		this.proxy = null;
+		this.fetcher = null;
 	}
 	
 	/**
@@ -107,6 +148,7 @@ public class URLImageSource extends AbstractImageSource<URL> {
 		
 		this.url = url;
 		this.proxy = proxy;
+		this.fetcher = null;
 	}
 	
 	/**
@@ -130,19 +172,45 @@ public class URLImageSource extends AbstractImageSource<URL> {
 		
 		this.url = new URL(url);
 		this.proxy = proxy;
+		this.fetcher = null;
+	}
+	
+	/**
+	 * Instantiates an {@link URLImageSource} with the URL from which the
+	 * source image should be retrieved from, along with the fetcher to use
+	 * to retrieve the data at the aforementioned URL.
+	 * 
+	 * @param url		URL to the source image.
+	 * @param fetcher	Fetcher to use to retrieve the data at the URL.
+	 * @throws NullPointerException		If the URL and or the fetcher is null
+	 */
+	public URLImageSource(URL url, URLFetcher fetcher) {
+		super();
+		
+		if (url == null) {
+			throw new NullPointerException("URL cannot be null.");
+		} else if (fetcher == null) {
+			throw new NullPointerException("Fetcher cannot be null.");
+		}
+		
+		this.url = url;
+		this.proxy = null;
+		this.fetcher = fetcher;
 	}
 
 	public BufferedImage read() throws IOException {
 		InputStream is;
 		try {
-			if (proxy != null) {
+			if (fetcher != null) {
+				is = fetcher.open(url);
+			} else if (proxy != null) {
 				is = url.openConnection(proxy).getInputStream();
 			} else {
 				is = url.openStream();
 			}
 
 		} catch (IOException e) {
-			throw new IOException("Could not open connection to URL: " + url);
+			throw new IOException("Could not open connection to URL: " + url, e);
 		}
 
 		InputStreamImageSource source = new InputStreamImageSource(is);
@@ -151,6 +219,10 @@ public class URLImageSource extends AbstractImageSource<URL> {
 		BufferedImage img;
 		try {
 			img = source.read();
+		} catch (CancellationException e) {
+			throw e;
+		} catch (ImageLimitExceededException e) {
+			throw e;
 		} catch (Exception e) {
 			throw new IOException("Could not obtain image from URL: " + url);
 		} finally {
@@ -158,10 +230,184 @@ public class URLImageSource extends AbstractImageSource<URL> {
 		}
 
 		this.inputFormatName = source.getInputFormatName();
+		this.subsampling = source.getSubsampling();
+		this.degradedSubsampling = source.getDegradedSubsampling();
 		
 		return finishedReading(img);
 	}
 
+	/**
+	 * Reads the format, dimensions and Exif orientation of the image from
+	 * the beginning of the data at the URL, without retrieving all of it,
+	 * as described in {@link #probe(int)}. At most 256 KiB are read.
+	 * 
+	 * @return				The header of the image, or {@code null} if the
+	 * 						header could not be read from the data.
+	 * @throws IOException	If the data could not be retrieved.
+	 */
+	public ImageHeader probe() throws IOException {
+		return probe(PROBE_MAX_BYTES);
+	}
+	
+	/**
+	 * Reads the format, dimensions and Exif orientation of the image from
+	 * the beginning of the data at the URL, without retrieving all of it.
+	 * This allows deciding whether an image is worth retrieving, for
+	 * example whether it already is smaller than the thumbnail.
+	 * <p>
+	 * For HTTP URLs, the first 4 KiB are requested with a {@code Range}
+	 * header. While the header of the image cannot be read from the data,
+	 * the following bytes are requested, doubling the data each time, up to
+	 * the given number of bytes. If the server ignores the range and sends
+	 * all of the data, only as much of it as is needed is read, and the
+	 * connection is closed.
+	 * <p>
+	 * A {@link URLFetcher} other than {@link HttpURLFetcher} is read in the
+	 * same way as a server which ignores ranges.
+	 * <p>
+	 * This method does not affect {@link #read()}, which still retrieves
+	 * the image from the beginning.
+	 * 
+	 * @param maxBytes		The number of bytes to read at most.
+	 * @return				The header of the image, or {@code null} if the
+	 * 						header could not be read from the data.
+	 * @throws IOException	If the data could not be retrieved.
+	 * @throws IllegalArgumentException	If the number of bytes is not
+	 * 									positive.
+	 */
+	public ImageHeader probe(int maxBytes) throws IOException {
+		if (maxBytes < 1) {
+			throw new IllegalArgumentException("Maximum number of bytes must be positive.");
+		}
+		
+		byte[] data = new byte[Math.min(PROBE_INITIAL_BYTES, maxBytes)];
+		int length = 0;
+		
+		// The response of a server which ignores ranges, which is read
+		// further instead of being requested again.
+		HttpTransportResponse whole = null;
+		try {
+			while (true) {
+				InputStream body;
+				HttpTransportResponse response = null;
+				if (whole != null) {
+					body = whole.getBody();
+				} else {
+					response = openRange(length, data.length - 1);
+					int status = response.getStatus();
+					if (status == 416) {
+						// The data ends before the requested range.
+						response.discard();
+						return readProbedHeader(data, length);
+					} else if (status == 200) {
+						whole = response;
+						response = null;
+						length = 0;
+					} else if (status == 206) {
+						String range = response.getHeader("Content-Range");
+						if (range != null && !range.trim().startsWith("bytes " + length + "-")) {
+							response.abort();
+							throw new IOException("Received unexpected range " + range + " from URL: " + url);
+						}
+					} else {
+						response.discard();
+						throw new IOException("Received status " + status + " from URL: " + url);
+					}
+					body = (whole != null ? whole : response).getBody();
+				}
+				
+				boolean complete = body == null;
+				while (!complete && length < data.length) {
+					int n = body.read(data, length, data.length - length);
+					if (n == -1) {
+						complete = true;
+					} else {
+						length += n;
+					}
+				}
+				if (response != null) {
+					response.discard();
+					if (complete && length < rangeTotal(response)) {
+						// The server sent less than the requested range.
+						complete = false;
+					}
+				}
+				
+				ImageHeader header = readProbedHeader(data, length);
+				if (header != null || complete || data.length >= maxBytes) {
+					return header;
+				}
+				data = Arrays.copyOf(data, (int)Math.min((long)data.length * 2, maxBytes));
+			}
+			
+		} finally {
+			if (whole != null) {
+				whole.abort();
+			}
+		}
+	}
+	
+	/**
+	 * Returns the length of all of the data, as given by the
+	 * {@code Content-Range} header of a response to a range request.
+	 */
+	private static long rangeTotal(HttpTransportResponse response) {
+		String range = response.getHeader("Content-Range");
+		if (range != null) {
+			int slash = range.lastIndexOf('/');
+			try {
+				return Long.parseLong(range.substring(slash + 1).trim());
+			} catch (NumberFormatException e) {
+				// The length is given as "*" when it is not known.
+			}
+		}
+		return -1;
+	}
+	
+	private ImageHeader readProbedHeader(byte[] data, int length) {
+		InputStreamImageSource source = new InputStreamImageSource(new ByteArrayInputStream(data, 0, length));
+		source.setThumbnailParameter(param);
+		try {
+			return source.readHeader();
+		} catch (IOException e) {
+			// The data ends before the header does.
+			return null;
+		}
+	}
+	
+	/**
+	 * Requests a range of the bytes at the URL.
+	 */
+	private HttpTransportResponse openRange(long first, long last) throws IOException {
+		if (fetcher instanceof HttpURLFetcher) {
+			return ((HttpURLFetcher)fetcher).getRange(url, first, last);
+		} else if (fetcher != null) {
+			return new HttpTransportResponse(
+					HttpURLConnection.HTTP_OK,
+					Collections.<String, List<String>>emptyMap(),
+					fetcher.open(url)
+			);
+		}
+		
+		URLConnection connection = proxy != null ? url.openConnection(proxy) : url.openConnection();
+		if (!(connection instanceof HttpURLConnection)) {
+			return new HttpTransportResponse(
+					HttpURLConnection.HTTP_OK, connection.getHeaderFields(), connection.getInputStream()
+			);
+		}
+		
+		final HttpURLConnection http = (HttpURLConnection)connection;
+		http.setRequestProperty("Accept-Encoding", "identity");
+		http.setRequestProperty("Range", "bytes=" + first + "-" + last);
+		int status = http.getResponseCode();
+		InputStream body = status >= 400 ? http.getErrorStream() : http.getInputStream();
+		return new HttpTransportResponse(status, http.getHeaderFields(), body, new Closeable() {
+			public void close() {
+				http.disconnect();
+			}
+		});
+	}
+
 	/**
 	 * Returns the URL from which the source image is retrieved from.
 	 * 
@@ -180,4 +426,26 @@ public class URLImageSource extends AbstractImageSource<URL> {
 	public Proxy getProxy() {
 		return proxy;
 	}
+	
+	/**
+	 * Returns the fetcher to use to retrieve the data at the URL.
+	 * 
+	 * @return the fetcher	The fetcher, or {@code null} if the URL is
+	 * 						opened directly.
+	 */
+	public URLFetcher getFetcher() {
+		return fetcher;
+	}
+
+	public int getSubsampling() {
+		return subsampling;
+	}
+
+	public int getDegradedSubsampling() {
+		return degradedSubsampling;
+	}
+
+	public boolean isDegraded() {
+		return degradedSubsampling > 1;
+	}
 }
@@ -0,0 +1,48 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2020 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.tasks.io;
+
+import java.io.IOException;
+
+import net.evonit.thumbnailator2.tasks.io.jpeg.YCbCrImage;
+
+/**
+ * An {@link ImageSink} which can write luma and chroma planes directly as
+ * a JPEG image, without converting them from RGB.
+ *
+ * @author coobird
+ *
+ */
+public interface YCbCrImageSink {
+	/**
+	 * Writes the planes of an image as a JPEG image.
+	 *
+	 * @param img				The planes of the image to write.
+	 * @throws IOException		When a problem occurs while writing the
+	 * 							image.
+	 * @throws NullPointerException		If the image is {@code null}.
+	 */
+	public void writeYCbCr(YCbCrImage img) throws IOException;
+}
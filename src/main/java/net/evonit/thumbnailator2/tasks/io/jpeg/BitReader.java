@@ -0,0 +1,156 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2020 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.tasks.io.jpeg;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads bits from the entropy-coded data of a restart interval.
+ * <p>
+ * The data has already had its stuffed zero bytes removed, and the end of
+ * the data is padded with zero bits, as is done by libjpeg for truncated
+ * segments.
+ *
+ * @author coobird
+ *
+ */
+final class BitReader {
+	private final byte[] data;
+	private final ByteBuffer words;
+	private final int end;
+	private int position;
+
+	/**
+	 * Bits which have been read from the data but not yet consumed, in the
+	 * lowest {@link #count} bits.
+	 */
+	private long buffer;
+	private int count;
+
+	/**
+	 * Creates a reader for a range of the entropy-coded data.
+	 *
+	 * @param data			The entropy-coded data.
+	 * @param start			The index of the first byte to read.
+	 * @param end			The index after the last byte to read.
+	 */
+	BitReader(byte[] data, int start, int end) {
+		this.data = data;
+		this.words = ByteBuffer.wrap(data);
+		this.position = start;
+		this.end = end;
+	}
+
+	private void fill() {
+		if (position + 8 <= end) {
+			// Read as many whole bytes as fit into the buffer at once.
+			int n = (64 - count) >> 3;
+			long word = words.getLong(position);
+			buffer = n == 8 ? word : (buffer << (n << 3)) | (word >>> (64 - (n << 3)));
+			position += n;
+			count += n << 3;
+			return;
+		}
+
+		while (count <= 56) {
+			int b = position < end ? data[position++] & 0xFF : 0;
+			buffer = (buffer << 8) | b;
+			count += 8;
+		}
+	}
+
+	/**
+	 * Reads a single bit.
+	 *
+	 * @return				The bit.
+	 */
+	int bit() {
+		if (count < 1) {
+			fill();
+		}
+		count--;
+		return (int)(buffer >>> count) & 1;
+	}
+
+	/**
+	 * Reads an unsigned value.
+	 *
+	 * @param length		The number of bits to read, up to 16.
+	 * @return				The value.
+	 */
+	int bits(int length) {
+		if (count < length) {
+			fill();
+		}
+		count -= length;
+		return (int)(buffer >>> count) & ((1 << length) - 1);
+	}
+
+	/**
+	 * Reads a value of the given length, and extends it to a signed value
+	 * as described in section F.2.2.1 of ITU T.81.
+	 *
+	 * @param length		The number of bits to read, up to 16.
+	 * @return				The signed value.
+	 */
+	int receiveExtend(int length) {
+		if (length == 0) {
+			return 0;
+		}
+		int value = bits(length);
+		return value < (1 << (length - 1)) ? value - (1 << length) + 1 : value;
+	}
+
+	/**
+	 * Decodes a Huffman-coded symbol.
+	 *
+	 * @param table			The table to decode with.
+	 * @return				The symbol.
+	 * @throws IOException	If the bits are not a code of the table.
+	 */
+	int decode(HuffmanTable table) throws IOException {
+		if (count < 16) {
+			fill();
+		}
+
+		int entry = table.lookup[(int)(buffer >>> (count - HuffmanTable.LOOKUP_BITS)) & ((1 << HuffmanTable.LOOKUP_BITS) - 1)];
+		if (entry != 0) {
+			count -= entry >> 8;
+			return entry & 0xFF;
+		}
+
+		int bits = (int)(buffer >>> (count - 16)) & 0xFFFF;
+		for (int length = HuffmanTable.LOOKUP_BITS + 1; length <= 16; length++) {
+			int code = bits >>> (16 - length);
+			if (code <= table.maxCode[length]) {
+				count -= length;
+				return table.symbols[table.valueOffset[length] + code] & 0xFF;
+			}
+		}
+
+		throw new IOException("Corrupt JPEG data: bad Huffman code.");
+	}
+}
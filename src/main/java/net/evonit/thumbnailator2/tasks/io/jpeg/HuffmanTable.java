@@ -0,0 +1,103 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2020 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.tasks.io.jpeg;
+
+import java.io.IOException;
+
+/**
+ * A Huffman table defined by a DHT marker segment.
+ * <p>
+ * Codes of up to {@link #LOOKUP_BITS} bits are decoded with a single table
+ * lookup; longer codes are decoded by comparing against the largest code of
+ * each length.
+ *
+ * @author coobird
+ *
+ */
+final class HuffmanTable {
+	/**
+	 * The number of bits decoded with a single lookup.
+	 */
+	static final int LOOKUP_BITS = 9;
+
+	/**
+	 * Lookup table indexed by the next {@link #LOOKUP_BITS} bits of the
+	 * bitstream. Each entry holds the code length in the upper bits and
+	 * the symbol in the lowest 8 bits, or {@code 0} if the code is longer.
+	 */
+	final int[] lookup = new int[1 << LOOKUP_BITS];
+
+	/**
+	 * The largest code of each length, or {@code -1} if there are no codes
+	 * of that length.
+	 */
+	final int[] maxCode = new int[17];
+
+	/**
+	 * The offset which turns a code of each length into an index of
+	 * {@link #symbols}.
+	 */
+	final int[] valueOffset = new int[17];
+
+	/**
+	 * The symbols, ordered by their codes.
+	 */
+	final byte[] symbols;
+
+	/**
+	 * Creates a Huffman table.
+	 *
+	 * @param counts		The number of codes of each length, from 1 to 16
+	 * 						bits.
+	 * @param symbols		The symbols, ordered by their codes.
+	 * @throws IOException	If the table is malformed.
+	 */
+	HuffmanTable(int[] counts, byte[] symbols) throws IOException {
+		this.symbols = symbols;
+
+		int code = 0;
+		int index = 0;
+		for (int length = 1; length <= 16; length++) {
+			int count = counts[length - 1];
+			valueOffset[length] = index - code;
+			maxCode[length] = count == 0 ? -1 : code + count - 1;
+
+			for (int i = 0; i < count; i++, code++, index++) {
+				if (code >= (1 << length)) {
+					throw new IOException("Malformed Huffman table.");
+				}
+				if (length <= LOOKUP_BITS) {
+					int shift = LOOKUP_BITS - length;
+					int entry = (length << 8) | (symbols[index] & 0xFF);
+					int first = code << shift;
+					for (int j = 0; j < (1 << shift); j++) {
+						lookup[first + j] = entry;
+					}
+				}
+			}
+			code <<= 1;
+		}
+	}
+}
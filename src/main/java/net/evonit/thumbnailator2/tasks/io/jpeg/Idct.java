@@ -0,0 +1,166 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2020 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.tasks.io.jpeg;
+
+/**
+ * Inverse discrete cosine transforms which produce blocks of 1, 2, 4 or 8
+ * pixels in each direction from the coefficients of an 8&times;8 block.
+ * <p>
+ * Each pixel of a reduced block is the mean of the pixels it covers in the
+ * full-size block, up to rounding. As the mean of a basis function over a
+ * group of pixels is its value at the center of the group scaled by a
+ * constant factor, a reduced transform costs a fraction of a full-size
+ * transform.
+ *
+ * @author coobird
+ *
+ */
+final class Idct {
+	/**
+	 * The transform matrices, indexed by output block size. The element for
+	 * output sample {@code m} and frequency {@code k} is at
+	 * {@code m * 8 + k}.
+	 */
+	private static final float[][] MATRICES = new float[9][];
+
+	static {
+		for (int size = 1; size <= 8; size <<= 1) {
+			// The number of full-size pixels averaged into each pixel.
+			int group = 8 / size;
+
+			float[] matrix = new float[size * 8];
+			for (int m = 0; m < size; m++) {
+				for (int k = 0; k < 8; k++) {
+					double scale = k == 0 ? Math.sqrt(1.0 / 8) : Math.sqrt(2.0 / 8);
+					double attenuation = k == 0 ? 1 :
+							Math.sin(group * k * Math.PI / 16) / (group * Math.sin(k * Math.PI / 16));
+					if (size == 1 && k != 0) {
+						// Basis functions other than the constant one average
+						// to zero over a whole block.
+						attenuation = 0;
+					}
+
+					matrix[m * 8 + k] = (float)(scale * attenuation * Math.cos((2 * m + 1) * group * k * Math.PI / 16));
+				}
+			}
+			MATRICES[size] = matrix;
+		}
+	}
+
+	private Idct() {
+	}
+
+	/**
+	 * Transforms a block of dequantized coefficients into pixels.
+	 *
+	 * @param coefficients	The coefficients of the block in natural
+	 * 						(row-major) order.
+	 * @param width			The width of the output block, which is one of
+	 * 						1, 2, 4 or 8.
+	 * @param height		The height of the output block, which is one of
+	 * 						1, 2, 4 or 8.
+	 * @param out			The array to write pixels to.
+	 * @param offset		The index of the top-left pixel of the block.
+	 * @param stride		The number of elements in a row of {@code out}.
+	 * @param work			A work array with at least {@code 8 * width}
+	 * 						elements.
+	 */
+	static void transform(int[] coefficients, int width, int height, byte[] out, int offset, int stride, float[] work) {
+		// Only the lowest frequency contributes to a single pixel.
+		int horizontalFrequencies = width == 1 ? 1 : 8;
+		int verticalFrequencies = height == 1 ? 1 : 8;
+
+		// Rows of coefficients which are all zero are skipped.
+		int rows = 0;
+		for (int u = 0; u < verticalFrequencies; u++) {
+			int base = u * 8;
+			for (int v = 0; v < horizontalFrequencies; v++) {
+				if (coefficients[base + v] != 0) {
+					rows |= 1 << u;
+					break;
+				}
+			}
+		}
+
+		if (rows == 0 || (rows == 1 && isDcOnly(coefficients, horizontalFrequencies))) {
+			byte value = clamp(coefficients[0] / 8f);
+			for (int y = 0; y < height; y++) {
+				int index = offset + y * stride;
+				for (int x = 0; x < width; x++) {
+					out[index + x] = value;
+				}
+			}
+			return;
+		}
+
+		float[] horizontal = MATRICES[width];
+		float[] vertical = MATRICES[height];
+
+		// Horizontal pass: each row of frequencies into a row of samples.
+		for (int u = 0; u < verticalFrequencies; u++) {
+			if ((rows & (1 << u)) == 0) {
+				continue;
+			}
+			int base = u * 8;
+			for (int x = 0; x < width; x++) {
+				int m = x * 8;
+				float sum = 0;
+				for (int v = 0; v < horizontalFrequencies; v++) {
+					sum += horizontal[m + v] * coefficients[base + v];
+				}
+				work[u * width + x] = sum;
+			}
+		}
+
+		// Vertical pass.
+		for (int y = 0; y < height; y++) {
+			int m = y * 8;
+			int index = offset + y * stride;
+			for (int x = 0; x < width; x++) {
+				float sum = 0;
+				for (int u = 0; u < verticalFrequencies; u++) {
+					if ((rows & (1 << u)) != 0) {
+						sum += vertical[m + u] * work[u * width + x];
+					}
+				}
+				out[index + x] = clamp(sum);
+			}
+		}
+	}
+
+	private static boolean isDcOnly(int[] coefficients, int frequencies) {
+		for (int v = 1; v < frequencies; v++) {
+			if (coefficients[v] != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static byte clamp(float value) {
+		int sample = Math.round(value) + 128;
+		return (byte)(sample < 0 ? 0 : sample > 255 ? 255 : sample);
+	}
+}
@@ -0,0 +1,171 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2020 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.tasks.io.jpeg;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The quantized DCT coefficients of a JPEG image, as read by
+ * {@link JpegDecoder#readCoefficients()}.
+ * <p>
+ * The coefficients can be rearranged by a {@link JpegTransform} to rotate,
+ * flip or crop the image, and written to a new JPEG image with
+ * {@link #write(OutputStream)}, without decoding the image or quantizing it
+ * again.
+ *
+ * @author coobird
+ *
+ */
+public final class JpegCoefficients {
+	private final int width;
+	private final int height;
+	final Plane[] planes;
+	final int maxH;
+	final int maxV;
+
+	final byte[] jfifData;
+	final byte[] exifData;
+	final byte[] adobeData;
+
+	/**
+	 * The coefficients of a component of the image.
+	 */
+	static final class Plane {
+		final int id;
+		final int h;
+		final int v;
+
+		/**
+		 * The quantization table, in natural order. Components which share
+		 * a table in the image refer to the same array.
+		 */
+		final int[] quantization;
+
+		/**
+		 * The number of blocks, including blocks which pad the component to
+		 * a whole number of MCUs.
+		 */
+		final int blocksPerLine;
+		final int blocksPerColumn;
+
+		/**
+		 * The coefficients of all blocks, 64 per block in natural order.
+		 */
+		final short[] coefficients;
+
+		Plane(int id, int h, int v, int[] quantization, int blocksPerLine, int blocksPerColumn, short[] coefficients) {
+			this.id = id;
+			this.h = h;
+			this.v = v;
+			this.quantization = quantization;
+			this.blocksPerLine = blocksPerLine;
+			this.blocksPerColumn = blocksPerColumn;
+			this.coefficients = coefficients;
+		}
+	}
+
+	JpegCoefficients(int width, int height, Plane[] planes, byte[] jfifData, byte[] exifData, byte[] adobeData) {
+		this.width = width;
+		this.height = height;
+		this.planes = planes;
+		this.jfifData = jfifData;
+		this.exifData = exifData;
+		this.adobeData = adobeData;
+
+		int maxH = 1;
+		int maxV = 1;
+		for (Plane plane : planes) {
+			maxH = Math.max(maxH, plane.h);
+			maxV = Math.max(maxV, plane.v);
+		}
+		this.maxH = maxH;
+		this.maxV = maxV;
+	}
+
+	/**
+	 * Returns the width of the image.
+	 *
+	 * @return		The width of the image.
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Returns the height of the image.
+	 *
+	 * @return		The height of the image.
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Returns the width of the minimum coded unit of the image, which
+	 * crops and flips must be aligned to.
+	 *
+	 * @return		The width of a minimum coded unit in pixels.
+	 */
+	public int getMcuWidth() {
+		return 8 * maxH;
+	}
+
+	/**
+	 * Returns the height of the minimum coded unit of the image, which
+	 * crops and flips must be aligned to.
+	 *
+	 * @return		The height of a minimum coded unit in pixels.
+	 */
+	public int getMcuHeight() {
+		return 8 * maxV;
+	}
+
+	/**
+	 * Returns the payload of the APP1 marker segment holding Exif data,
+	 * starting with the {@code Exif} identifier.
+	 *
+	 * @return		The Exif data, or {@code null} if the image has none.
+	 */
+	public byte[] getExifData() {
+		return exifData;
+	}
+
+	/**
+	 * Writes the coefficients as a baseline JPEG image, which uses the
+	 * typical Huffman tables given in the JPEG standard.
+	 * <p>
+	 * The JFIF, Exif and Adobe marker segments of the original image are
+	 * written as well. Other marker segments are not retained.
+	 *
+	 * @param os			The stream to write the image to.
+	 * @throws IOException	If the stream could not be written to, or a
+	 * 						coefficient is out of the range of 8-bit JPEG
+	 * 						images.
+	 */
+	public void write(OutputStream os) throws IOException {
+		new JpegEncoder(this).write(os);
+	}
+}
@@ -0,0 +1,1424 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2020 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.tasks.io.jpeg;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import net.evonit.thumbnailator2.builders.BufferedImageBuilder;
+import net.evonit.thumbnailator2.tasks.io.Cancellation;
+
+/**
+ * A decoder for baseline and progressive JPEG images, which can decode
+ * images at 1/2, 1/4 or 1/8 of their size.
+ * <p>
+ * Decoding at a reduced size only performs the inverse transform for the
+ * low frequency coefficients of each block, and produces the smaller image
+ * directly, rather than decoding the full-size image and resizing it.
+ * When the image contains restart markers, the restart intervals are decoded
+ * in parallel using the {@link ForkJoinPool#commonPool() common pool}.
+ * <p>
+ * Only 8-bit Huffman-coded grayscale and YCbCr (or RGB) images without an
+ * embedded ICC profile are supported, and are decoded to
+ * {@link BufferedImage#TYPE_BYTE_GRAY} and {@link BufferedImage#TYPE_3BYTE_BGR}
+ * images, respectively, as the JPEG reader of Image I/O does.
+ * For other images, {@link #readHeader()} returns {@code false}, and the
+ * image can be read with another decoder from the stream returned by
+ * {@link #replay()}. Once decoding has started, the data read from the
+ * stream is only kept for {@link #replay()} while it is small, as shown by
+ * {@link #canReplay()}.
+ * <p>
+ * Subsampled chroma components are transformed to larger blocks when
+ * decoding at a reduced size, and are otherwise upsampled by linear
+ * interpolation between sample centers. Images are created by
+ * {@link BufferedImageBuilder}.
+ * <p>
+ * The quantized coefficients of an image can also be read without decoding
+ * the image with {@link #readCoefficients()}, to transform the image
+ * losslessly.
+ * <p>
+ * Instances of this class are not thread-safe, and can only decode a single
+ * image.
+ *
+ * @author coobird
+ *
+ */
+public final class JpegDecoder {
+	private static final int SOF0 = 0xC0;
+	private static final int SOF1 = 0xC1;
+	private static final int SOF2 = 0xC2;
+	private static final int DHT = 0xC4;
+	private static final int RST0 = 0xD0;
+	private static final int RST7 = 0xD7;
+	private static final int SOI = 0xD8;
+	private static final int EOI = 0xD9;
+	private static final int SOS = 0xDA;
+	private static final int DQT = 0xDB;
+	private static final int DRI = 0xDD;
+	private static final int APP0 = 0xE0;
+	private static final int APP1 = 0xE1;
+	private static final int APP2 = 0xE2;
+	private static final int APP14 = 0xEE;
+	private static final int APP15 = 0xEF;
+	private static final int COM = 0xFE;
+
+	/**
+	 * The natural (row-major) index of each coefficient in zig-zag order.
+	 * The extra entries guard against corrupt data which runs past the end
+	 * of the block.
+	 */
+	static final int[] ZIGZAG = {
+			0,  1,  8, 16,  9,  2,  3, 10,
+			17, 24, 32, 25, 18, 11,  4,  5,
+			12, 19, 26, 33, 40, 48, 41, 34,
+			27, 20, 13,  6,  7, 14, 21, 28,
+			35, 42, 49, 56, 57, 50, 43, 36,
+			29, 22, 15, 23, 30, 37, 44, 51,
+			58, 59, 52, 45, 38, 31, 39, 46,
+			53, 60, 61, 54, 47, 55, 62, 63,
+			63, 63, 63, 63, 63, 63, 63, 63,
+			63, 63, 63, 63, 63, 63, 63, 63,
+	};
+
+	/**
+	 * The number of least significant bits of coefficients which may be
+	 * missing when decoding stops early.
+	 *
+	 * @see #setPartialDecoding(boolean)
+	 */
+	static final int MAX_PARTIAL_PRECISION_LOSS = 1;
+
+	/**
+	 * The precision of coefficients which have not been decoded yet.
+	 */
+	private static final int UNKNOWN_PRECISION = 16;
+
+	private final JpegInput input;
+	private final JpegInput.EntropyData entropyData = new JpegInput.EntropyData();
+
+	private final int[][] quantizationTables = new int[4][];
+	private final HuffmanTable[] dcTables = new HuffmanTable[4];
+	private final HuffmanTable[] acTables = new HuffmanTable[4];
+	private int restartInterval;
+
+	private boolean headerRead;
+	private boolean supported;
+	private boolean decoded;
+	private boolean progressive;
+	private int width;
+	private int height;
+	private Component[] components;
+	private int maxH;
+	private int maxV;
+	private int mcusPerLine;
+	private int mcusPerColumn;
+
+	private boolean jfif;
+	private byte[] jfifData;
+	private int adobeTransform = -1;
+	private byte[] adobeData;
+	private boolean iccProfile;
+	private byte[] exifData;
+
+	private boolean parallel = true;
+	private boolean partial;
+	private int scanCount;
+
+	/**
+	 * Whether the coefficients of baseline images are kept, rather than
+	 * transformed as they are decoded.
+	 */
+	private boolean coefficientsOnly;
+
+	/**
+	 * The size of a block of the decoded image, which is 8 divided by the
+	 * scale.
+	 */
+	private int blockSize;
+
+	/**
+	 * The cancellation of the thread which created this decoder, which is
+	 * checked for each row of blocks, including by the threads which decode
+	 * restart intervals in parallel.
+	 */
+	private final Cancellation cancellation = Cancellation.getThreadCancellation();
+
+	/**
+	 * Creates a decoder which reads an image from the given stream.
+	 *
+	 * @param is		The stream to read the image from.
+	 * @throws NullPointerException		If the stream is {@code null}.
+	 */
+	public JpegDecoder(InputStream is) {
+		if (is == null) {
+			throw new NullPointerException("InputStream cannot be null.");
+		}
+		this.input = new JpegInput(is);
+	}
+
+	/**
+	 * Sets whether restart intervals may be decoded in parallel.
+	 * This is enabled by default.
+	 *
+	 * @param parallel	{@code true} to decode in parallel.
+	 */
+	public void setParallel(boolean parallel) {
+		this.parallel = parallel;
+	}
+
+	/**
+	 * Sets whether decoding of a progressive image may stop as soon as the
+	 * scans decoded so far are sufficient for the requested scale.
+	 * This is disabled by default, and has no effect on images which are
+	 * decoded at full size.
+	 * <p>
+	 * Decoding stops once all coefficients which contribute to the low
+	 * frequencies of the reduced blocks are known to within
+	 * {@value #MAX_PARTIAL_PRECISION_LOSS} bits. The remaining scans are
+	 * neither decoded nor read from the stream. Coefficients which are
+	 * known up to their least significant bits are reconstructed at the
+	 * middle of their possible range.
+	 *
+	 * @param partial	{@code true} to stop decoding early.
+	 */
+	public void setPartialDecoding(boolean partial) {
+		this.partial = partial;
+	}
+
+	/**
+	 * Reads the stream up to and including the frame header, which
+	 * describes the size and components of the image.
+	 * <p>
+	 * Calling this method more than once has no further effect.
+	 *
+	 * @return				{@code true} if the image can be decoded by this
+	 * 						decoder, {@code false} if the data is not a JPEG
+	 * 						image, or uses features this decoder does not
+	 * 						support.
+	 * @throws IOException	If the stream could not be read, or the data is
+	 * 						corrupt.
+	 */
+	public boolean readHeader() throws IOException {
+		if (headerRead) {
+			return supported;
+		}
+		headerRead = true;
+
+		if (input.read() != 0xFF || input.read() != SOI) {
+			return false;
+		}
+
+		while (true) {
+			int marker = input.readMarker();
+			if (marker == SOF0 || marker == SOF1 || marker == SOF2) {
+				supported = readFrame(marker == SOF2) && !iccProfile;
+				return supported;
+			}
+			if (!readMiscellaneous(marker)) {
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Returns the width of the image, once the header has been read.
+	 *
+	 * @return		The width of the image.
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Returns the height of the image, once the header has been read.
+	 *
+	 * @return		The height of the image.
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Returns the width of the minimum coded unit of the image, once the
+	 * header has been read.
+	 *
+	 * @return		The width of a minimum coded unit in pixels.
+	 */
+	public int getMcuWidth() {
+		return 8 * maxH;
+	}
+
+	/**
+	 * Returns the height of the minimum coded unit of the image, once the
+	 * header has been read.
+	 *
+	 * @return		The height of a minimum coded unit in pixels.
+	 */
+	public int getMcuHeight() {
+		return 8 * maxV;
+	}
+
+	/**
+	 * Returns whether the image has luma and chroma components with a luma
+	 * component of the size of the image, or is a grayscale image, once the
+	 * header has been read. Only such images can be decoded by
+	 * {@link #decodeYCbCr(int)}.
+	 *
+	 * @return		{@code true} if the image can be decoded into planes.
+	 */
+	public boolean hasFullSizeLuma() {
+		return components.length != 3 ||
+				(!isRgb() && components[0].h == maxH && components[0].v == maxV);
+	}
+
+	/**
+	 * Returns whether the image is a progressive JPEG image, once the header
+	 * has been read.
+	 *
+	 * @return		{@code true} if the image is progressive.
+	 */
+	public boolean isProgressive() {
+		return progressive;
+	}
+
+	/**
+	 * Returns the payload of the first APP1 marker segment holding Exif data,
+	 * starting with the {@code Exif} identifier.
+	 *
+	 * @return		The Exif data, or {@code null} if none was found before
+	 * 				the frame header.
+	 */
+	public byte[] getExifData() {
+		return exifData;
+	}
+
+	/**
+	 * Returns the number of scans which have been decoded.
+	 *
+	 * @return		The number of scans decoded.
+	 */
+	public int getScanCount() {
+		return scanCount;
+	}
+
+	/**
+	 * Returns a stream which reads the data of the original stream from the
+	 * beginning, including the data this decoder has already read.
+	 * <p>
+	 * This is used to read the image with another decoder, when this decoder
+	 * cannot decode the image.
+	 *
+	 * @return		A stream of the complete image data.
+	 * @throws IllegalStateException	If {@link #canReplay()} returns
+	 * 									{@code false}.
+	 */
+	public InputStream replay() {
+		return input.replay();
+	}
+
+	/**
+	 * Returns whether the data read by this decoder can still be read again
+	 * by {@link #replay()}. Once decoding has started, the data is no longer
+	 * kept when the image is larger than 1 MB, as the decoder already holds
+	 * the image data.
+	 *
+	 * @return		{@code true} if {@link #replay()} can be called.
+	 */
+	public boolean canReplay() {
+		return input.canReplay();
+	}
+
+	/**
+	 * Decodes the image.
+	 * <p>
+	 * The decoded image is {@code ceil(width / scale)} by
+	 * {@code ceil(height / scale)} pixels.
+	 *
+	 * @param scale			The factor to reduce the image by, which is one
+	 * 						of 1, 2, 4 or 8.
+	 * @return				The decoded image.
+	 * @throws IOException	If the stream could not be read, the data is
+	 * 						corrupt, or uses features this decoder does not
+	 * 						support.
+	 * @throws IllegalArgumentException	If the scale is not supported.
+	 * @throws IllegalStateException	If this decoder has already decoded
+	 * 									an image.
+	 */
+	public BufferedImage decode(int scale) throws IOException {
+		decodeComponents(scale, false);
+		return createImage();
+	}
+
+	/**
+	 * Decodes the image into its luma and chroma planes, without upsampling
+	 * the chroma planes or converting the image to RGB.
+	 * <p>
+	 * The luma plane is {@code ceil(width / scale)} by
+	 * {@code ceil(height / scale)} pixels. The chroma planes are reduced by
+	 * the same factor from their size in the JPEG image.
+	 *
+	 * @param scale			The factor to reduce the image by, which is one
+	 * 						of 1, 2, 4 or 8.
+	 * @return				The decoded planes.
+	 * @throws IOException	If the stream could not be read, the data is
+	 * 						corrupt, uses features this decoder does not
+	 * 						support, or the color components of the image
+	 * 						are not luma and chroma components.
+	 * @throws IllegalArgumentException	If the scale is not supported.
+	 * @throws IllegalStateException	If this decoder has already decoded
+	 * 									an image.
+	 */
+	public YCbCrImage decodeYCbCr(int scale) throws IOException {
+		decodeComponents(scale, true);
+
+		BufferedImage[] planes = new BufferedImage[components.length];
+		for (int i = 0; i < components.length; i++) {
+			Component c = components[i];
+			BufferedImage plane = new BufferedImageBuilder(c.planeWidth, c.planeHeight, BufferedImage.TYPE_BYTE_GRAY).build();
+			WritableRaster raster = plane.getRaster();
+			byte[] row = new byte[c.planeWidth];
+			for (int y = 0; y < c.planeHeight; y++) {
+				System.arraycopy(c.plane, y * c.planeStride, row, 0, c.planeWidth);
+				raster.setDataElements(0, y, c.planeWidth, 1, row);
+			}
+			planes[i] = plane;
+		}
+		return new YCbCrImage(planes);
+	}
+
+	/**
+	 * Decodes the scans of the image into the planes of its components.
+	 *
+	 * @param ycbcr		Whether the planes must be luma and chroma planes,
+	 * 					with a luma plane of the size of the image.
+	 */
+	private void decodeComponents(int scale, boolean ycbcr) throws IOException {
+		if (scale != 1 && scale != 2 && scale != 4 && scale != 8) {
+			throw new IllegalArgumentException("Scale must be 1, 2, 4 or 8.");
+		}
+		if (decoded) {
+			throw new IllegalStateException("The image has already been decoded.");
+		}
+		decoded = true;
+
+		if (!readHeader()) {
+			throw new IOException("Unsupported JPEG image.");
+		}
+		if (ycbcr && !hasFullSizeLuma()) {
+			throw new IOException("The JPEG image does not have a full size luma component.");
+		}
+		input.limitRecording();
+
+		blockSize = 8 / scale;
+		for (Component c : components) {
+			// Subsampled components are transformed to larger blocks where
+			// possible, rather than upsampled, as libjpeg does.
+			c.blockWidth = blockSize;
+			while (c.blockWidth < 8 && blockSize * maxH / c.h % (c.blockWidth * 2) == 0) {
+				c.blockWidth *= 2;
+			}
+			c.blockHeight = blockSize;
+			while (c.blockHeight < 8 && blockSize * maxV / c.v % (c.blockHeight * 2) == 0) {
+				c.blockHeight *= 2;
+			}
+
+			c.planeStride = c.blocksPerLine * c.blockWidth;
+			c.plane = new byte[c.planeStride * c.blocksPerColumn * c.blockHeight];
+			c.planeWidth = (c.width * c.blockWidth + 7) / 8;
+			c.planeHeight = (c.height * c.blockHeight + 7) / 8;
+			if (progressive) {
+				c.coefficients = new short[c.blocksPerLine * c.blocksPerColumn * 64];
+			}
+		}
+
+		readScans(partial && progressive && blockSize < 8);
+
+		if (progressive) {
+			transformCoefficients();
+		}
+	}
+
+	/**
+	 * Reads the quantized DCT coefficients of all blocks of the image,
+	 * without transforming them to samples. The coefficients can be
+	 * rearranged by a {@link JpegTransform} and written to a new JPEG image
+	 * without any loss.
+	 *
+	 * @return				The coefficients of the image.
+	 * @throws IOException	If the stream could not be read, the data is
+	 * 						corrupt, or uses features this decoder does not
+	 * 						support.
+	 * @throws IllegalStateException	If this decoder has already decoded
+	 * 									an image.
+	 */
+	public JpegCoefficients readCoefficients() throws IOException {
+		if (decoded) {
+			throw new IllegalStateException("The image has already been decoded.");
+		}
+		decoded = true;
+
+		if (!readHeader()) {
+			throw new IOException("Unsupported JPEG image.");
+		}
+
+		input.limitRecording();
+		coefficientsOnly = true;
+		for (Component c : components) {
+			c.coefficients = new short[c.blocksPerLine * c.blocksPerColumn * 64];
+		}
+
+		readScans(false);
+
+		JpegCoefficients.Plane[] planes = new JpegCoefficients.Plane[components.length];
+		for (int i = 0; i < components.length; i++) {
+			Component c = components[i];
+			planes[i] = new JpegCoefficients.Plane(
+					c.id, c.h, c.v, c.quantization,
+					c.blocksPerLine, c.blocksPerColumn, c.coefficients
+			);
+		}
+		return new JpegCoefficients(width, height, planes, jfifData, exifData, adobeData);
+	}
+
+	/**
+	 * Reads and decodes the scans of the image up to the end of the image.
+	 *
+	 * @param stopEarly		Whether to stop once the scans read so far are
+	 * 						sufficient for the reduced size of the image.
+	 */
+	private void readScans(boolean stopEarly) throws IOException {
+		int marker = input.readMarker();
+		while (marker != EOI) {
+			if (marker == SOS) {
+				marker = readScan();
+				if (stopEarly && hasSufficientPrecision()) {
+					break;
+				}
+				continue;
+			}
+			if (!readMiscellaneous(marker)) {
+				throw new IOException(String.format("Unsupported JPEG marker 0x%02X.", marker));
+			}
+			marker = input.readMarker();
+		}
+
+		for (Component c : components) {
+			if (!c.scanned) {
+				throw new IOException("Corrupt JPEG data: a component has no scan.");
+			}
+		}
+	}
+
+	/**
+	 * Reads a marker segment which may appear before the frame header or
+	 * between scans.
+	 *
+	 * @return		{@code false} if the marker is not supported.
+	 */
+	private boolean readMiscellaneous(int marker) throws IOException {
+		if (marker == DQT) {
+			readQuantizationTables();
+		} else if (marker == DHT) {
+			readHuffmanTables();
+		} else if (marker == DRI) {
+			if (input.readUnsignedShort() != 4) {
+				throw new IOException("Corrupt JPEG data: bad DRI length.");
+			}
+			restartInterval = input.readUnsignedShort();
+		} else if (marker >= APP0 && marker <= APP15) {
+			readApplicationSegment(marker);
+		} else if (marker == COM) {
+			input.skip(readLength());
+		} else if (marker < RST0 || marker > RST7) {
+			return false;
+		}
+		return true;
+	}
+
+	private int readLength() throws IOException {
+		int length = input.readUnsignedShort() - 2;
+		if (length < 0) {
+			throw new IOException("Corrupt JPEG data: bad segment length.");
+		}
+		return length;
+	}
+
+	private void readApplicationSegment(int marker) throws IOException {
+		int length = readLength();
+		if (marker != APP0 && marker != APP1 && marker != APP2 && marker != APP14) {
+			input.skip(length);
+			return;
+		}
+
+		byte[] payload = new byte[length];
+		input.readFully(payload);
+
+		if (marker == APP0 && startsWith(payload, "JFIF\0")) {
+			jfif = true;
+			jfifData = payload;
+		} else if (marker == APP1 && exifData == null && startsWith(payload, "Exif\0")) {
+			exifData = payload;
+		} else if (marker == APP2 && startsWith(payload, "ICC_PROFILE\0")) {
+			iccProfile = true;
+		} else if (marker == APP14 && length >= 12 && startsWith(payload, "Adobe")) {
+			adobeTransform = payload[11] & 0xFF;
+			adobeData = payload;
+		}
+	}
+
+	private static boolean startsWith(byte[] payload, String identifier) {
+		if (payload.length < identifier.length()) {
+			return false;
+		}
+		for (int i = 0; i < identifier.length(); i++) {
+			if (payload[i] != identifier.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void readQuantizationTables() throws IOException {
+		int length = readLength();
+		while (length > 0) {
+			int info = input.read();
+			int precision = info >> 4;
+			int index = info & 0x0F;
+			if (precision > 1 || index > 3) {
+				throw new IOException("Corrupt JPEG data: bad DQT table.");
+			}
+
+			int[] table = new int[64];
+			for (int k = 0; k < 64; k++) {
+				table[ZIGZAG[k]] = precision == 0 ? input.read() : input.readUnsignedShort();
+			}
+			quantizationTables[index] = table;
+			length -= 1 + 64 * (precision + 1);
+		}
+		if (length != 0) {
+			throw new IOException("Corrupt JPEG data: bad DQT length.");
+		}
+	}
+
+	private void readHuffmanTables() throws IOException {
+		int length = readLength();
+		while (length > 0) {
+			int info = input.read();
+			int tableClass = info >> 4;
+			int index = info & 0x0F;
+			if (tableClass > 1 || index > 3) {
+				throw new IOException("Corrupt JPEG data: bad DHT table.");
+			}
+
+			int[] counts = new int[16];
+			int total = 0;
+			for (int i = 0; i < 16; i++) {
+				counts[i] = input.read();
+				total += counts[i];
+			}
+			if (total > 256) {
+				throw new IOException("Corrupt JPEG data: bad DHT table.");
+			}
+			byte[] symbols = new byte[total];
+			input.readFully(symbols);
+
+			HuffmanTable table = new HuffmanTable(counts, symbols);
+			if (tableClass == 0) {
+				dcTables[index] = table;
+			} else {
+				acTables[index] = table;
+			}
+			length -= 17 + total;
+		}
+		if (length != 0) {
+			throw new IOException("Corrupt JPEG data: bad DHT length.");
+		}
+	}
+
+	/**
+	 * Reads the frame header.
+	 *
+	 * @return		{@code false} if the frame is not supported.
+	 */
+	private boolean readFrame(boolean progressive) throws IOException {
+		this.progressive = progressive;
+
+		int length = readLength();
+		int precision = input.read();
+		height = input.readUnsignedShort();
+		width = input.readUnsignedShort();
+		int count = input.read();
+		if (length != 6 + count * 3) {
+			throw new IOException("Corrupt JPEG data: bad SOF length.");
+		}
+
+		int[] ids = new int[count];
+		int[] samplingFactors = new int[count];
+		int[] tables = new int[count];
+		for (int i = 0; i < count; i++) {
+			ids[i] = input.read();
+			samplingFactors[i] = input.read();
+			tables[i] = input.read();
+		}
+
+		if (precision != 8 || width == 0 || height == 0 || (count != 1 && count != 3)) {
+			return false;
+		}
+		if (count == 3 && adobeTransform >= 2) {
+			return false;
+		}
+
+		components = new Component[count];
+		for (int i = 0; i < count; i++) {
+			// The sampling factors of a single component have no effect.
+			int h = count == 1 ? 1 : samplingFactors[i] >> 4;
+			int v = count == 1 ? 1 : samplingFactors[i] & 0x0F;
+			if (h < 1 || h > 4 || v < 1 || v > 4 || tables[i] > 3) {
+				return false;
+			}
+			components[i] = new Component(ids[i], h, v, tables[i]);
+			maxH = Math.max(maxH, h);
+			maxV = Math.max(maxV, v);
+		}
+
+		mcusPerLine = (width + 8 * maxH - 1) / (8 * maxH);
+		mcusPerColumn = (height + 8 * maxV - 1) / (8 * maxV);
+
+		for (Component c : components) {
+			if (maxH % c.h != 0 || maxV % c.v != 0) {
+				return false;
+			}
+			c.width = (width * c.h + maxH - 1) / maxH;
+			c.height = (height * c.v + maxV - 1) / maxV;
+			c.blocksPerLine = mcusPerLine * c.h;
+			c.blocksPerColumn = mcusPerColumn * c.v;
+			c.scanBlocksPerLine = (c.width + 7) / 8;
+			c.scanBlocksPerColumn = (c.height + 7) / 8;
+			if ((long)c.blocksPerLine * c.blocksPerColumn * 64 > Integer.MAX_VALUE) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Reads a scan header and the entropy-coded data which follows it, and
+	 * decodes the scan.
+	 *
+	 * @return		The marker which follows the scan.
+	 */
+	private int readScan() throws IOException {
+		int length = readLength();
+		int count = input.read();
+		if (count < 1 || count > components.length || length != 4 + count * 2) {
+			throw new IOException("Corrupt JPEG data: bad SOS header.");
+		}
+
+		Component[] scanComponents = new Component[count];
+		for (int i = 0; i < count; i++) {
+			int id = input.read();
+			int tables = input.read();
+			for (Component c : components) {
+				if (c.id == id) {
+					scanComponents[i] = c;
+				}
+			}
+			Component c = scanComponents[i];
+			if (c == null || (tables >> 4) > 3 || (tables & 0x0F) > 3) {
+				throw new IOException("Corrupt JPEG data: bad SOS header.");
+			}
+			c.dcTable = dcTables[tables >> 4];
+			c.acTable = acTables[tables & 0x0F];
+		}
+
+		int ss = input.read();
+		int se = input.read();
+		int approximation = input.read();
+		int ah = approximation >> 4;
+		int al = approximation & 0x0F;
+
+		if (!progressive) {
+			ss = 0;
+			se = 63;
+			ah = 0;
+			al = 0;
+		} else if ((ss == 0 ? se != 0 : se < ss || se > 63 || count != 1) || al > 13) {
+			throw new IOException("Corrupt JPEG data: bad progression parameters.");
+		}
+
+		for (Component c : scanComponents) {
+			if (c.quantization == null) {
+				// Tables are latched when a component is first scanned.
+				c.quantization = quantizationTables[c.quantizationTable];
+				if (c.quantization == null) {
+					throw new IOException("Corrupt JPEG data: missing quantization table.");
+				}
+			}
+			if ((ss == 0 && ah == 0 && c.dcTable == null) || (se > 0 && c.acTable == null)) {
+				throw new IOException("Corrupt JPEG data: missing Huffman table.");
+			}
+			if (ss == 0) {
+				c.scanned = true;
+			}
+		}
+
+		if (progressive) {
+			for (Component c : scanComponents) {
+				for (int k = ss; k <= se; k++) {
+					c.precision[ZIGZAG[k]] = al;
+				}
+			}
+		}
+
+		int marker = input.readEntropyData(entropyData);
+		decodeScan(scanComponents, ss, se, ah, al);
+		scanCount++;
+		return marker;
+	}
+
+	/**
+	 * Returns whether the coefficients which contribute to the low
+	 * frequencies of the reduced blocks of all components are known to
+	 * within {@link #MAX_PARTIAL_PRECISION_LOSS} bits.
+	 */
+	private boolean hasSufficientPrecision() {
+		for (Component c : components) {
+			for (int u = 0; u < c.blockHeight; u++) {
+				for (int v = 0; v < c.blockWidth; v++) {
+					if (c.precision[u * 8 + v] > MAX_PARTIAL_PRECISION_LOSS) {
+						return false;
+					}
+				}
+			}
+		}
+		return true;
+	}
+
+	private void decodeScan(final Component[] scanComponents, final int ss, final int se, final int ah, final int al) throws IOException {
+		final int mcuCount;
+		if (scanComponents.length == 1) {
+			mcuCount = scanComponents[0].scanBlocksPerLine * scanComponents[0].scanBlocksPerColumn;
+		} else {
+			mcuCount = mcusPerLine * mcusPerColumn;
+		}
+
+		int intervals = restartInterval == 0 ? 1 : (mcuCount + restartInterval - 1) / restartInterval;
+		if (entropyData.restartCount < intervals - 1 && !entropyData.truncated) {
+			throw new IOException("Corrupt JPEG data: missing restart markers.");
+		}
+
+		forEach(intervals, new Task() {
+			@Override
+			void run(int interval) throws IOException {
+				new IntervalDecoder(scanComponents, ss, se, ah, al).decode(interval, mcuCount);
+			}
+		});
+	}
+
+	/**
+	 * Performs the inverse transform of the coefficients of a progressive
+	 * image, once all scans have been decoded.
+	 */
+	private void transformCoefficients() throws IOException {
+		for (final Component c : components) {
+			forEach(c.scanBlocksPerColumn, new Task() {
+				@Override
+				void run(int row) {
+					if (cancellation != null) {
+						cancellation.check();
+					}
+					int[] block = new int[64];
+					float[] work = new float[64];
+					int[] quantization = c.quantization;
+
+					// Coefficients whose least significant bits have not been
+					// decoded are reconstructed at the middle of their range,
+					// in units of half a quantization step.
+					int[] missing = new int[64];
+					for (int z = 0; z < 64; z++) {
+						int precision = c.precision[z];
+						missing[z] = precision == UNKNOWN_PRECISION ? 0 : (1 << precision) - 1;
+					}
+
+					for (int col = 0; col < c.scanBlocksPerLine; col++) {
+						int offset = (row * c.blocksPerLine + col) * 64;
+
+						// The missing bits of the DC coefficient are never negative.
+						int dc = c.coefficients[offset];
+						block[0] = (2 * dc + missing[0]) * quantization[0] / 2;
+
+						for (int z = 1; z < 64; z++) {
+							int coefficient = c.coefficients[offset + z];
+							if (coefficient > 0) {
+								block[z] = (2 * coefficient + missing[z]) * quantization[z] / 2;
+							} else if (coefficient < 0) {
+								block[z] = (2 * coefficient - missing[z]) * quantization[z] / 2;
+							} else {
+								block[z] = 0;
+							}
+						}
+						Idct.transform(
+								block, c.blockWidth, c.blockHeight, c.plane,
+								row * c.blockHeight * c.planeStride + col * c.blockWidth,
+								c.planeStride, work
+						);
+					}
+				}
+			});
+		}
+	}
+
+	private BufferedImage createImage() {
+		int outWidth = (width * blockSize + 7) / 8;
+		int outHeight = (height * blockSize + 7) / 8;
+
+		if (components.length == 1) {
+			Component c = components[0];
+			BufferedImage image = new BufferedImageBuilder(outWidth, outHeight, BufferedImage.TYPE_BYTE_GRAY).build();
+			WritableRaster raster = image.getRaster();
+			byte[] row = new byte[outWidth];
+			for (int y = 0; y < outHeight; y++) {
+				System.arraycopy(c.plane, y * c.planeStride, row, 0, outWidth);
+				raster.setDataElements(0, y, outWidth, 1, row);
+			}
+			return image;
+		}
+
+		boolean rgb = isRgb();
+
+		Upsampler[] upsamplers = new Upsampler[3];
+		int[][] samples = new int[3][];
+		for (int i = 0; i < 3; i++) {
+			Component c = components[i];
+			upsamplers[i] = new Upsampler(
+					c,
+					blockSize * maxH / c.h / c.blockWidth,
+					blockSize * maxV / c.v / c.blockHeight,
+					outWidth
+			);
+			samples[i] = new int[outWidth];
+		}
+
+		BufferedImage image = new BufferedImageBuilder(outWidth, outHeight, BufferedImage.TYPE_3BYTE_BGR).build();
+		WritableRaster raster = image.getRaster();
+		byte[] row = new byte[outWidth * 3];
+		for (int y = 0; y < outHeight; y++) {
+			for (int i = 0; i < 3; i++) {
+				upsamplers[i].upsample(y, samples[i]);
+			}
+
+			int[] c0 = samples[0];
+			int[] c1 = samples[1];
+			int[] c2 = samples[2];
+			for (int x = 0, index = 0; x < outWidth; x++, index += 3) {
+				// Data elements are in band order, which is red, green, blue.
+				if (rgb) {
+					row[index] = (byte)c0[x];
+					row[index + 1] = (byte)c1[x];
+					row[index + 2] = (byte)c2[x];
+					continue;
+				}
+
+				// YCbCr to RGB conversion as defined by JFIF, in 16-bit fixed point.
+				int luma = c0[x];
+				int cb = c1[x] - 128;
+				int cr = c2[x] - 128;
+				row[index] = clamp(luma + ((91881 * cr + 32768) >> 16));
+				row[index + 1] = clamp(luma + ((-22554 * cb - 46802 * cr + 32768) >> 16));
+				row[index + 2] = clamp(luma + ((116130 * cb + 32768) >> 16));
+			}
+			raster.setDataElements(0, y, outWidth, 1, row);
+		}
+		return image;
+	}
+
+	/**
+	 * Returns whether the components of a color image are red, green and
+	 * blue, rather than luma and chroma.
+	 */
+	private boolean isRgb() {
+		if (adobeTransform >= 0) {
+			return adobeTransform == 0;
+		}
+		return !jfif && components[0].id == 'R' && components[1].id == 'G' && components[2].id == 'B';
+	}
+
+	/**
+	 * Returns the sample value of a block with only a DC coefficient.
+	 */
+	private static byte clampSample(int dc) {
+		return clamp(Math.round(dc / 8f) + 128);
+	}
+
+	private static byte clamp(int value) {
+		return (byte)(value < 0 ? 0 : value > 255 ? 255 : value);
+	}
+
+	/**
+	 * Runs a task for each index, in parallel if enabled.
+	 */
+	private void forEach(int count, Task task) throws IOException {
+		int parallelism = ForkJoinPool.getCommonPoolParallelism();
+		if (!parallel || count < 2 || parallelism < 2) {
+			for (int i = 0; i < count; i++) {
+				task.run(i);
+			}
+			return;
+		}
+
+		int grain = Math.max(1, count / (parallelism * 4));
+		try {
+			ForkJoinPool.commonPool().invoke(new RangeAction(task, 0, count, grain));
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	private abstract static class Task {
+		abstract void run(int index) throws IOException;
+	}
+
+	private static final class RangeAction extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final Task task;
+		private final int from;
+		private final int to;
+		private final int grain;
+
+		private RangeAction(Task task, int from, int to, int grain) {
+			this.task = task;
+			this.from = from;
+			this.to = to;
+			this.grain = grain;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= grain) {
+				try {
+					for (int i = from; i < to; i++) {
+						task.run(i);
+					}
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				return;
+			}
+
+			int middle = (from + to) >>> 1;
+			invokeAll(
+					new RangeAction(task, from, middle, grain),
+					new RangeAction(task, middle, to, grain)
+			);
+		}
+	}
+
+	/**
+	 * Decodes the blocks of a restart interval of a scan.
+	 */
+	private final class IntervalDecoder {
+		private final Component[] scanComponents;
+		private final int ss;
+		private final int se;
+		private final int ah;
+		private final int al;
+
+		private BitReader reader;
+		private final int[] predictions;
+		private int eobrun;
+		private final int[] block = new int[64];
+		private final float[] work = new float[64];
+
+		private IntervalDecoder(Component[] scanComponents, int ss, int se, int ah, int al) {
+			this.scanComponents = scanComponents;
+			this.ss = ss;
+			this.se = se;
+			this.ah = ah;
+			this.al = al;
+			this.predictions = new int[scanComponents.length];
+		}
+
+		private void decode(int interval, int mcuCount) throws IOException {
+			reader = new BitReader(entropyData.bytes, entropyData.start(interval), entropyData.end(interval));
+
+			int first = restartInterval == 0 ? 0 : interval * restartInterval;
+			int last = restartInterval == 0 ? mcuCount : Math.min(mcuCount, first + restartInterval);
+
+			int mcusPerRow = scanComponents.length == 1 ? scanComponents[0].scanBlocksPerLine : mcusPerLine;
+			for (int mcu = first; mcu < last; mcu++) {
+				if (cancellation != null && mcu % mcusPerRow == 0) {
+					cancellation.check();
+				}
+				if (scanComponents.length == 1) {
+					Component c = scanComponents[0];
+					decodeBlock(0, c, mcu / c.scanBlocksPerLine, mcu % c.scanBlocksPerLine);
+					continue;
+				}
+
+				int mcuRow = mcu / mcusPerLine;
+				int mcuCol = mcu % mcusPerLine;
+				for (int i = 0; i < scanComponents.length; i++) {
+					Component c = scanComponents[i];
+					for (int y = 0; y < c.v; y++) {
+						for (int x = 0; x < c.h; x++) {
+							decodeBlock(i, c, mcuRow * c.v + y, mcuCol * c.h + x);
+						}
+					}
+				}
+			}
+		}
+
+		private void decodeBlock(int index, Component c, int row, int col) throws IOException {
+			int offset = (row * c.blocksPerLine + col) * 64;
+			if (!progressive) {
+				if (coefficientsOnly) {
+					decodeBaselineCoefficients(index, c, offset);
+				} else {
+					decodeBaseline(index, c, row, col);
+				}
+				return;
+			}
+
+			if (ss == 0) {
+				if (ah == 0) {
+					decodeDcFirst(index, c, offset);
+				} else {
+					decodeDcRefine(c, offset);
+				}
+			} else if (ah == 0) {
+				decodeAcFirst(c, offset);
+			} else {
+				decodeAcRefine(c, offset);
+			}
+		}
+
+		private void decodeBaseline(int index, Component c, int row, int col) throws IOException {
+			int[] quantization = c.quantization;
+
+			// Only the DC coefficient contributes to a single pixel.
+			boolean dcOnly = c.blockWidth == 1 && c.blockHeight == 1;
+			if (!dcOnly) {
+				Arrays.fill(block, 0);
+			}
+
+			int t = reader.decode(c.dcTable);
+			predictions[index] += reader.receiveExtend(t);
+			block[0] = predictions[index] * quantization[0];
+
+			for (int k = 1; k < 64; k++) {
+				int rs = reader.decode(c.acTable);
+				int r = rs >> 4;
+				int s = rs & 0x0F;
+				if (s == 0) {
+					if (r != 15) {
+						break;
+					}
+					k += 15;
+					continue;
+				}
+				k += r;
+				if (dcOnly) {
+					reader.bits(s);
+				} else {
+					int z = ZIGZAG[k];
+					block[z] = reader.receiveExtend(s) * quantization[z];
+				}
+			}
+
+			if (dcOnly) {
+				c.plane[row * c.planeStride + col] = clampSample(block[0]);
+				return;
+			}
+
+			Idct.transform(
+					block, c.blockWidth, c.blockHeight, c.plane,
+					row * c.blockHeight * c.planeStride + col * c.blockWidth,
+					c.planeStride, work
+			);
+		}
+
+		private void decodeBaselineCoefficients(int index, Component c, int offset) throws IOException {
+			short[] coefficients = c.coefficients;
+
+			int t = reader.decode(c.dcTable);
+			predictions[index] += reader.receiveExtend(t);
+			coefficients[offset] = (short)predictions[index];
+
+			for (int k = 1; k < 64; k++) {
+				int rs = reader.decode(c.acTable);
+				int r = rs >> 4;
+				int s = rs & 0x0F;
+				if (s == 0) {
+					if (r != 15) {
+						break;
+					}
+					k += 15;
+					continue;
+				}
+				k += r;
+				coefficients[offset + ZIGZAG[k]] = (short)reader.receiveExtend(s);
+			}
+		}
+
+		private void decodeDcFirst(int index, Component c, int offset) throws IOException {
+			int t = reader.decode(c.dcTable);
+			predictions[index] += reader.receiveExtend(t);
+			c.coefficients[offset] = (short)(predictions[index] << al);
+		}
+
+		private void decodeDcRefine(Component c, int offset) {
+			if (reader.bit() != 0) {
+				c.coefficients[offset] |= 1 << al;
+			}
+		}
+
+		private void decodeAcFirst(Component c, int offset) throws IOException {
+			if (eobrun > 0) {
+				eobrun--;
+				return;
+			}
+
+			short[] coefficients = c.coefficients;
+			for (int k = ss; k <= se; k++) {
+				int rs = reader.decode(c.acTable);
+				int r = rs >> 4;
+				int s = rs & 0x0F;
+				if (s == 0) {
+					if (r < 15) {
+						eobrun = (1 << r) - 1;
+						if (r > 0) {
+							eobrun += reader.bits(r);
+						}
+						break;
+					}
+					k += 15;
+					continue;
+				}
+				k += r;
+				coefficients[offset + ZIGZAG[k]] = (short)(reader.receiveExtend(s) * (1 << al));
+			}
+		}
+
+		private void decodeAcRefine(Component c, int offset) throws IOException {
+			short[] coefficients = c.coefficients;
+			int p1 = 1 << al;
+			int m1 = -1 << al;
+			int k = ss;
+
+			if (eobrun == 0) {
+				for (; k <= se; k++) {
+					int rs = reader.decode(c.acTable);
+					int r = rs >> 4;
+					int s = rs & 0x0F;
+					int value = 0;
+					if (s != 0) {
+						value = reader.bit() != 0 ? p1 : m1;
+					} else if (r != 15) {
+						eobrun = 1 << r;
+						if (r > 0) {
+							eobrun += reader.bits(r);
+						}
+						break;
+					}
+
+					// Refine nonzero coefficients, and skip r zero coefficients.
+					for (; k <= se; k++) {
+						int z = offset + ZIGZAG[k];
+						if (coefficients[z] != 0) {
+							refine(coefficients, z, p1, m1);
+						} else if (--r < 0) {
+							break;
+						}
+					}
+
+					if (value != 0 && k <= se) {
+						coefficients[offset + ZIGZAG[k]] = (short)value;
+					}
+				}
+			}
+
+			if (eobrun > 0) {
+				for (; k <= se; k++) {
+					int z = offset + ZIGZAG[k];
+					if (coefficients[z] != 0) {
+						refine(coefficients, z, p1, m1);
+					}
+				}
+				eobrun--;
+			}
+		}
+
+		private void refine(short[] coefficients, int index, int p1, int m1) {
+			if (reader.bit() != 0 && (coefficients[index] & p1) == 0) {
+				coefficients[index] += coefficients[index] >= 0 ? p1 : m1;
+			}
+		}
+	}
+
+	/**
+	 * Upsamples rows of a component to the size of the decoded image.
+	 */
+	private static final class Upsampler {
+		private final Component component;
+		private final int fx;
+		private final int fy;
+		private final int outWidth;
+		private final int[] left;
+		private final int[] right;
+		private final int[] weights;
+		private final int[] column;
+
+		private Upsampler(Component component, int fx, int fy, int outWidth) {
+			this.component = component;
+			this.fx = fx;
+			this.fy = fy;
+			this.outWidth = outWidth;
+			this.left = new int[outWidth];
+			this.right = new int[outWidth];
+			this.weights = new int[outWidth];
+			this.column = new int[component.planeWidth];
+
+			int maxX = component.planeWidth - 1;
+			for (int x = 0; x < outWidth; x++) {
+				// Sample centers of the output, in units of 1/(2*fx) samples.
+				int n = 2 * x + 1 - fx;
+				int x0 = Math.floorDiv(n, 2 * fx);
+				weights[x] = n - x0 * 2 * fx;
+				left[x] = Math.max(0, Math.min(x0, maxX));
+				right[x] = Math.max(0, Math.min(x0 + 1, maxX));
+			}
+		}
+
+		private void upsample(int y, int[] out) {
+			Component c = component;
+			byte[] plane = c.plane;
+			int maxY = c.planeHeight - 1;
+
+			if (fx == 1 && fy == 1) {
+				int offset = Math.min(y, maxY) * c.planeStride;
+				for (int x = 0; x < outWidth; x++) {
+					out[x] = plane[offset + x] & 0xFF;
+				}
+				return;
+			}
+
+			int n = 2 * y + 1 - fy;
+			int y0 = Math.floorDiv(n, 2 * fy);
+			int wy = n - y0 * 2 * fy;
+			int top = Math.max(0, Math.min(y0, maxY)) * c.planeStride;
+			int bottom = Math.max(0, Math.min(y0 + 1, maxY)) * c.planeStride;
+			for (int x = 0; x < c.planeWidth; x++) {
+				column[x] = (plane[top + x] & 0xFF) * (2 * fy - wy) + (plane[bottom + x] & 0xFF) * wy;
+			}
+
+			int denominator = 4 * fx * fy;
+			int half = denominator / 2;
+			for (int x = 0; x < outWidth; x++) {
+				int w = weights[x];
+				out[x] = (column[left[x]] * (2 * fx - w) + column[right[x]] * w + half) / denominator;
+			}
+		}
+	}
+
+	/**
+	 * A component of the image, and its decoded samples.
+	 */
+	private static final class Component {
+		private final int id;
+		private final int h;
+		private final int v;
+		private final int quantizationTable;
+
+		/**
+		 * The quantization table latched when the component was first
+		 * scanned, in natural order.
+		 */
+		private int[] quantization;
+		private HuffmanTable dcTable;
+		private HuffmanTable acTable;
+		private boolean scanned;
+
+		/**
+		 * The size of the component in samples at full size.
+		 */
+		private int width;
+		private int height;
+
+		/**
+		 * The number of blocks, including blocks which pad the component to
+		 * a whole number of MCUs.
+		 */
+		private int blocksPerLine;
+		private int blocksPerColumn;
+
+		/**
+		 * The number of blocks coded in a scan of only this component.
+		 */
+		private int scanBlocksPerLine;
+		private int scanBlocksPerColumn;
+
+		/**
+		 * The coefficients of all blocks of a progressive image, in natural
+		 * order.
+		 */
+		private short[] coefficients;
+
+		/**
+		 * The bit position of the least significant bit of each coefficient
+		 * which has been decoded so far, in natural order.
+		 */
+		private final int[] precision = new int[64];
+
+		/**
+		 * The size each block is transformed to.
+		 */
+		private int blockWidth;
+		private int blockHeight;
+
+		/**
+		 * The decoded samples, which are upsampled to the size of the
+		 * decoded image if the blocks are smaller than the area they cover.
+		 */
+		private byte[] plane;
+		private int planeStride;
+		private int planeWidth;
+		private int planeHeight;
+
+		private Component(int id, int h, int v, int quantizationTable) {
+			this.id = id;
+			this.h = h;
+			this.v = v;
+			this.quantizationTable = quantizationTable;
+			Arrays.fill(precision, UNKNOWN_PRECISION);
+		}
+	}
+}
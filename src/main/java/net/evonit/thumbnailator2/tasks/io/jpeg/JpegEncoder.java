@@ -0,0 +1,358 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2020 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.tasks.io.jpeg;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.imageio.plugins.jpeg.JPEGHuffmanTable;
+
+/**
+ * Writes the coefficients of an image as a baseline JPEG image, with the
+ * typical Huffman tables given in Annex K of the JPEG standard.
+ *
+ * @author coobird
+ *
+ */
+final class JpegEncoder {
+	private static final int SOF0 = 0xC0;
+	private static final int SOF1 = 0xC1;
+	private static final int DHT = 0xC4;
+	private static final int SOI = 0xD8;
+	private static final int EOI = 0xD9;
+	private static final int SOS = 0xDA;
+	private static final int DQT = 0xDB;
+	private static final int APP0 = 0xE0;
+	private static final int APP1 = 0xE1;
+	private static final int APP14 = 0xEE;
+
+	private static final JPEGHuffmanTable[] DC_TABLES = {
+			JPEGHuffmanTable.StdDCLuminance, JPEGHuffmanTable.StdDCChrominance
+	};
+	private static final JPEGHuffmanTable[] AC_TABLES = {
+			JPEGHuffmanTable.StdACLuminance, JPEGHuffmanTable.StdACChrominance
+	};
+
+	private final JpegCoefficients image;
+
+	/**
+	 * The distinct quantization tables, and the table of each component.
+	 */
+	private final List<int[]> quantizationTables = new ArrayList<int[]>();
+	private final int[] quantizationIndex;
+
+	/**
+	 * The Huffman tables of each component, where the first component uses
+	 * the luminance tables and the others the chrominance tables.
+	 */
+	private final int[] huffmanIndex;
+	private final HuffmanCode[] dcCodes = new HuffmanCode[2];
+	private final HuffmanCode[] acCodes = new HuffmanCode[2];
+
+	private OutputStream out;
+	private int bitBuffer;
+	private int bitCount;
+
+	JpegEncoder(JpegCoefficients image) {
+		this.image = image;
+
+		int count = image.planes.length;
+		quantizationIndex = new int[count];
+		huffmanIndex = new int[count];
+		for (int i = 0; i < count; i++) {
+			int[] table = image.planes[i].quantization;
+			int index = -1;
+			for (int j = 0; j < quantizationTables.size(); j++) {
+				if (quantizationTables.get(j) == table) {
+					index = j;
+				}
+			}
+			if (index == -1) {
+				index = quantizationTables.size();
+				quantizationTables.add(table);
+			}
+			quantizationIndex[i] = index;
+			huffmanIndex[i] = i == 0 ? 0 : 1;
+		}
+
+		for (int i = 0; i < 2; i++) {
+			dcCodes[i] = new HuffmanCode(DC_TABLES[i]);
+			acCodes[i] = new HuffmanCode(AC_TABLES[i]);
+		}
+	}
+
+	void write(OutputStream os) throws IOException {
+		out = new BufferedOutputStream(os, 1 << 16);
+
+		writeMarker(SOI);
+		if (image.jfifData != null) {
+			writeSegment(APP0, image.jfifData);
+		}
+		if (image.exifData != null) {
+			writeSegment(APP1, image.exifData);
+		}
+		if (image.adobeData != null) {
+			writeSegment(APP14, image.adobeData);
+		}
+
+		boolean extended = writeQuantizationTables();
+		writeFrame(extended);
+		writeHuffmanTables();
+		writeScan();
+		writeMarker(EOI);
+
+		out.flush();
+	}
+
+	private void writeMarker(int marker) throws IOException {
+		out.write(0xFF);
+		out.write(marker);
+	}
+
+	private void writeShort(int value) throws IOException {
+		out.write(value >> 8);
+		out.write(value);
+	}
+
+	private void writeSegment(int marker, byte[] payload) throws IOException {
+		if (payload.length > 0xFFFF - 2) {
+			throw new IOException("A marker segment is too large.");
+		}
+		writeMarker(marker);
+		writeShort(payload.length + 2);
+		out.write(payload);
+	}
+
+	/**
+	 * Writes the quantization tables.
+	 *
+	 * @return		{@code true} if a table needs 16-bit precision, which
+	 * 				requires an extended sequential frame.
+	 */
+	private boolean writeQuantizationTables() throws IOException {
+		boolean extended = false;
+		for (int i = 0; i < quantizationTables.size(); i++) {
+			int[] table = quantizationTables.get(i);
+			boolean precise = false;
+			for (int value : table) {
+				precise |= value > 255;
+			}
+			extended |= precise;
+
+			writeMarker(DQT);
+			writeShort(2 + 1 + 64 * (precise ? 2 : 1));
+			out.write((precise ? 0x10 : 0) | i);
+			for (int k = 0; k < 64; k++) {
+				int value = table[JpegDecoder.ZIGZAG[k]];
+				if (precise) {
+					writeShort(value);
+				} else {
+					out.write(value);
+				}
+			}
+		}
+		return extended;
+	}
+
+	private void writeFrame(boolean extended) throws IOException {
+		JpegCoefficients.Plane[] planes = image.planes;
+		writeMarker(extended ? SOF1 : SOF0);
+		writeShort(8 + planes.length * 3);
+		out.write(8);
+		writeShort(image.getHeight());
+		writeShort(image.getWidth());
+		out.write(planes.length);
+		for (int i = 0; i < planes.length; i++) {
+			out.write(planes[i].id);
+			out.write((planes[i].h << 4) | planes[i].v);
+			out.write(quantizationIndex[i]);
+		}
+	}
+
+	private void writeHuffmanTables() throws IOException {
+		int tables = image.planes.length == 1 ? 1 : 2;
+		for (int i = 0; i < tables; i++) {
+			writeHuffmanTable(0x00 | i, DC_TABLES[i]);
+			writeHuffmanTable(0x10 | i, AC_TABLES[i]);
+		}
+	}
+
+	private void writeHuffmanTable(int info, JPEGHuffmanTable table) throws IOException {
+		short[] lengths = table.getLengths();
+		short[] values = table.getValues();
+		writeMarker(DHT);
+		writeShort(2 + 1 + 16 + values.length);
+		out.write(info);
+		for (short length : lengths) {
+			out.write(length);
+		}
+		for (short value : values) {
+			out.write(value);
+		}
+	}
+
+	private void writeScan() throws IOException {
+		JpegCoefficients.Plane[] planes = image.planes;
+		writeMarker(SOS);
+		writeShort(6 + planes.length * 2);
+		out.write(planes.length);
+		for (int i = 0; i < planes.length; i++) {
+			out.write(planes[i].id);
+			out.write((huffmanIndex[i] << 4) | huffmanIndex[i]);
+		}
+		out.write(0);
+		out.write(63);
+		out.write(0);
+
+		int[] predictions = new int[planes.length];
+		if (planes.length == 1) {
+			// A scan of a single component codes the blocks which cover the
+			// image, rather than whole MCUs.
+			JpegCoefficients.Plane p = planes[0];
+			int blocksPerLine = (image.getWidth() + 7) / 8;
+			int blocksPerColumn = (image.getHeight() + 7) / 8;
+			for (int row = 0; row < blocksPerColumn; row++) {
+				for (int col = 0; col < blocksPerLine; col++) {
+					writeBlock(0, p, (row * p.blocksPerLine + col) * 64, predictions);
+				}
+			}
+
+		} else {
+			int mcusPerLine = (image.getWidth() + image.getMcuWidth() - 1) / image.getMcuWidth();
+			int mcusPerColumn = (image.getHeight() + image.getMcuHeight() - 1) / image.getMcuHeight();
+			for (int mcuRow = 0; mcuRow < mcusPerColumn; mcuRow++) {
+				for (int mcuCol = 0; mcuCol < mcusPerLine; mcuCol++) {
+					for (int i = 0; i < planes.length; i++) {
+						JpegCoefficients.Plane p = planes[i];
+						for (int y = 0; y < p.v; y++) {
+							for (int x = 0; x < p.h; x++) {
+								int row = mcuRow * p.v + y;
+								int col = mcuCol * p.h + x;
+								writeBlock(i, p, (row * p.blocksPerLine + col) * 64, predictions);
+							}
+						}
+					}
+				}
+			}
+		}
+
+		// Pad the last byte with 1-bits.
+		if (bitCount > 0) {
+			writeBits(0x7F, 8 - bitCount);
+		}
+	}
+
+	private void writeBlock(int index, JpegCoefficients.Plane p, int offset, int[] predictions) throws IOException {
+		short[] coefficients = p.coefficients;
+		HuffmanCode dc = dcCodes[huffmanIndex[index]];
+		HuffmanCode ac = acCodes[huffmanIndex[index]];
+
+		int diff = coefficients[offset] - predictions[index];
+		predictions[index] = coefficients[offset];
+		writeValue(dc, 0, diff);
+
+		int run = 0;
+		for (int k = 1; k < 64; k++) {
+			int value = coefficients[offset + JpegDecoder.ZIGZAG[k]];
+			if (value == 0) {
+				run++;
+				continue;
+			}
+			while (run > 15) {
+				writeCode(ac, 0xF0);
+				run -= 16;
+			}
+			writeValue(ac, run << 4, value);
+			run = 0;
+		}
+		if (run > 0) {
+			// End of block.
+			writeCode(ac, 0x00);
+		}
+	}
+
+	/**
+	 * Writes the code of a symbol which combines the given bits with the
+	 * size of the value, followed by the bits of the value.
+	 */
+	private void writeValue(HuffmanCode code, int symbol, int value) throws IOException {
+		int magnitude = value < 0 ? -value : value;
+		int size = 32 - Integer.numberOfLeadingZeros(magnitude);
+		writeCode(code, symbol | size);
+		if (size > 0) {
+			// Negative values are written as their one's complement.
+			writeBits(value < 0 ? value - 1 : value, size);
+		}
+	}
+
+	private void writeCode(HuffmanCode code, int symbol) throws IOException {
+		int length = code.lengths[symbol];
+		if (length == 0) {
+			throw new IOException("A coefficient is out of range for a baseline JPEG image.");
+		}
+		writeBits(code.codes[symbol], length);
+	}
+
+	private void writeBits(int bits, int count) throws IOException {
+		bitBuffer = (bitBuffer << count) | (bits & ((1 << count) - 1));
+		bitCount += count;
+		while (bitCount >= 8) {
+			int b = (bitBuffer >> (bitCount - 8)) & 0xFF;
+			out.write(b);
+			if (b == 0xFF) {
+				// Byte stuffing.
+				out.write(0);
+			}
+			bitCount -= 8;
+		}
+	}
+
+	/**
+	 * The code and code length of each symbol of a Huffman table.
+	 */
+	private static final class HuffmanCode {
+		private final int[] codes = new int[256];
+		private final int[] lengths = new int[256];
+
+		private HuffmanCode(JPEGHuffmanTable table) {
+			short[] counts = table.getLengths();
+			short[] values = table.getValues();
+			int code = 0;
+			int k = 0;
+			for (int length = 1; length <= 16; length++) {
+				for (int i = 0; i < counts[length - 1]; i++) {
+					codes[values[k]] = code;
+					lengths[values[k]] = length;
+					code++;
+					k++;
+				}
+				code <<= 1;
+			}
+		}
+	}
+}
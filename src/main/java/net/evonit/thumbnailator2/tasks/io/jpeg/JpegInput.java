@@ -0,0 +1,364 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2020 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.tasks.io.jpeg;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.Arrays;
+
+import net.evonit.thumbnailator2.tasks.io.Cancellation;
+
+/**
+ * Reads marker segments and entropy-coded data from a JPEG stream.
+ * <p>
+ * The data read from the underlying {@link InputStream} is recorded, so
+ * that the stream can be read again from the beginning by another decoder
+ * if this decoder cannot handle the image. Once the decoder starts to
+ * decode the image data, which it keeps itself, the recording is limited
+ * to {@link #MAX_RECORDED_LENGTH} bytes, so that a large image is not held
+ * twice. Beyond that, the stream can no longer be replayed.
+ * <p>
+ * Entropy-coded data which is cut off by the end of the stream is ended
+ * as if it were followed by an EOI marker, so that a truncated image is
+ * decoded as far as it goes, as is done by libjpeg.
+ *
+ * @author coobird
+ *
+ */
+final class JpegInput {
+	private static final int BUFFER_SIZE = 8192;
+
+	/**
+	 * The number of bytes which are recorded at most, once the recording
+	 * has been limited by {@link #limitRecording()}.
+	 */
+	static final int MAX_RECORDED_LENGTH = 1 << 20;
+
+	/**
+	 * The byte which is followed by a stuffed zero byte.
+	 */
+	private static final byte[] STUFFED_BYTE = {(byte)0xFF};
+
+	/**
+	 * The EOI marker, which is assumed at the end of truncated data.
+	 */
+	private static final int EOI = 0xD9;
+
+	private final InputStream is;
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+	private int position;
+	private int limit;
+
+	private byte[] recorded = new byte[BUFFER_SIZE];
+	private int recordedLength;
+	private boolean recording = true;
+	private boolean limited;
+
+	/**
+	 * Creates a reader for the given stream.
+	 *
+	 * @param is			The stream to read from.
+	 */
+	JpegInput(InputStream is) {
+		this.is = is;
+	}
+
+	private void fill() throws IOException {
+		if (!tryFill()) {
+			throw new EOFException("Unexpected end of JPEG data.");
+		}
+	}
+
+	/**
+	 * Fills the buffer, unless the end of the stream has been reached.
+	 *
+	 * @return				{@code false} if the end of the stream was
+	 * 						reached.
+	 */
+	private boolean tryFill() throws IOException {
+		// Slowly arriving data is checked for each buffer.
+		Cancellation.checkThread();
+		int n;
+		do {
+			n = is.read(buffer, 0, buffer.length);
+		} while (n == 0);
+
+		if (n < 0) {
+			return false;
+		}
+
+		if (recording && limited && recordedLength + n > MAX_RECORDED_LENGTH) {
+			stopRecording();
+		}
+		if (recording) {
+			if (recordedLength + n > recorded.length) {
+				recorded = Arrays.copyOf(recorded, Math.max(recorded.length * 2, recordedLength + n));
+			}
+			System.arraycopy(buffer, 0, recorded, recordedLength, n);
+			recordedLength += n;
+		}
+
+		position = 0;
+		limit = n;
+		return true;
+	}
+
+	/**
+	 * Reads a byte.
+	 *
+	 * @return				The byte, as an unsigned value.
+	 * @throws IOException	If the end of the stream was reached, or the
+	 * 						stream could not be read.
+	 */
+	int read() throws IOException {
+		if (position == limit) {
+			fill();
+		}
+		return buffer[position++] & 0xFF;
+	}
+
+	/**
+	 * Reads a big-endian 16-bit value.
+	 *
+	 * @return				The value, as an unsigned value.
+	 * @throws IOException	If the end of the stream was reached, or the
+	 * 						stream could not be read.
+	 */
+	int readUnsignedShort() throws IOException {
+		return (read() << 8) | read();
+	}
+
+	/**
+	 * Fills an array with bytes from the stream.
+	 *
+	 * @param b				The array to fill.
+	 * @throws IOException	If the end of the stream was reached, or the
+	 * 						stream could not be read.
+	 */
+	void readFully(byte[] b) throws IOException {
+		int offset = 0;
+		while (offset < b.length) {
+			if (position == limit) {
+				fill();
+			}
+			int n = Math.min(b.length - offset, limit - position);
+			System.arraycopy(buffer, position, b, offset, n);
+			position += n;
+			offset += n;
+		}
+	}
+
+	/**
+	 * Skips bytes of the stream.
+	 *
+	 * @param n				The number of bytes to skip.
+	 * @throws IOException	If the end of the stream was reached, or the
+	 * 						stream could not be read.
+	 */
+	void skip(int n) throws IOException {
+		while (n > 0) {
+			if (position == limit) {
+				fill();
+			}
+			int skipped = Math.min(n, limit - position);
+			position += skipped;
+			n -= skipped;
+		}
+	}
+
+	/**
+	 * Reads up to and including the next marker, skipping any bytes which
+	 * are not part of a marker.
+	 *
+	 * @return				The marker code, without the leading {@code 0xFF}.
+	 * @throws IOException	If the end of the stream was reached, or the
+	 * 						stream could not be read.
+	 */
+	int readMarker() throws IOException {
+		while (true) {
+			if (read() != 0xFF) {
+				continue;
+			}
+			int marker = read();
+			while (marker == 0xFF) {
+				marker = read();
+			}
+			if (marker != 0) {
+				return marker;
+			}
+		}
+	}
+
+	/**
+	 * Reads the entropy-coded data following a SOS marker segment, up to
+	 * the next marker which is not a restart marker.
+	 * <p>
+	 * Stuffed zero bytes are removed from the data, and the positions of
+	 * restart markers are recorded. If the stream ends before a marker, the
+	 * data is marked as {@link EntropyData#truncated truncated}, and
+	 * {@code EOI} is returned.
+	 *
+	 * @param data			Receives the entropy-coded data.
+	 * @return				The code of the marker following the data.
+	 * @throws IOException	If the stream could not be read.
+	 */
+	int readEntropyData(EntropyData data) throws IOException {
+		data.length = 0;
+		data.restartCount = 0;
+		data.truncated = false;
+
+		while (true) {
+			if (position == limit && !tryFill()) {
+				data.truncated = true;
+				return EOI;
+			}
+
+			int start = position;
+			while (position < limit && buffer[position] != (byte)0xFF) {
+				position++;
+			}
+			data.append(buffer, start, position - start);
+			if (position == limit) {
+				continue;
+			}
+
+			position++;
+			int marker;
+			do {
+				if (position == limit && !tryFill()) {
+					data.truncated = true;
+					return EOI;
+				}
+				marker = buffer[position++] & 0xFF;
+			} while (marker == 0xFF);
+
+			if (marker == 0) {
+				data.append(STUFFED_BYTE, 0, 1);
+			} else if (marker >= 0xD0 && marker <= 0xD7) {
+				data.addRestart();
+			} else {
+				return marker;
+			}
+		}
+	}
+
+	/**
+	 * Limits the recording to {@link #MAX_RECORDED_LENGTH} bytes. Once more
+	 * data has been read, recording stops, and the stream can no longer be
+	 * replayed.
+	 */
+	void limitRecording() {
+		limited = true;
+		if (recordedLength > MAX_RECORDED_LENGTH) {
+			stopRecording();
+		}
+	}
+
+	private void stopRecording() {
+		recording = false;
+		recorded = null;
+	}
+
+	/**
+	 * Returns whether the stream can still be replayed.
+	 *
+	 * @return				{@code true} if {@link #replay()} can be called.
+	 */
+	boolean canReplay() {
+		return recording;
+	}
+
+	/**
+	 * Returns a stream which reads the data of the underlying stream from
+	 * the beginning, including the data already read by this reader.
+	 *
+	 * @return				A stream of the complete data.
+	 * @throws IllegalStateException	If recording has been stopped.
+	 */
+	InputStream replay() {
+		if (!recording) {
+			throw new IllegalStateException("The image data has already been read.");
+		}
+		return new SequenceInputStream(
+				new ByteArrayInputStream(recorded, 0, recordedLength),
+				is
+		);
+	}
+
+	/**
+	 * Entropy-coded data of a scan, with stuffed zero bytes removed.
+	 */
+	static final class EntropyData {
+		byte[] bytes = new byte[BUFFER_SIZE];
+		int length;
+
+		/**
+		 * The positions in {@link #bytes} where restart markers were found.
+		 */
+		int[] restarts = new int[16];
+		int restartCount;
+
+		/**
+		 * Whether the data was cut off by the end of the stream. The
+		 * restart intervals which are missing are empty.
+		 */
+		boolean truncated;
+
+		private void append(byte[] b, int offset, int n) {
+			if (length + n > bytes.length) {
+				bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + n));
+			}
+			System.arraycopy(b, offset, bytes, length, n);
+			length += n;
+		}
+
+		private void addRestart() {
+			if (restartCount == restarts.length) {
+				restarts = Arrays.copyOf(restarts, restarts.length * 2);
+			}
+			restarts[restartCount++] = length;
+		}
+
+		/**
+		 * Returns the index of the first byte of a restart interval.
+		 */
+		int start(int interval) {
+			if (interval == 0) {
+				return 0;
+			}
+			return interval <= restartCount ? restarts[interval - 1] : length;
+		}
+
+		/**
+		 * Returns the index after the last byte of a restart interval.
+		 */
+		int end(int interval) {
+			return interval < restartCount ? restarts[interval] : length;
+		}
+	}
+}
@@ -0,0 +1,249 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2020 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.tasks.io.jpeg;
+
+import java.awt.Rectangle;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import net.evonit.thumbnailator2.util.exif.ExifUtils;
+import net.evonit.thumbnailator2.util.exif.Orientation;
+
+/**
+ * A lossless transform of a JPEG image, which crops the image and then
+ * rotates or flips it into the orientation given by its Exif metadata, by
+ * rearranging the quantized DCT coefficients of the image.
+ * <p>
+ * Mirroring a block only changes the signs of its odd frequencies, and
+ * transposing a block transposes its coefficients, so the transformed image
+ * is identical to decoding, transforming and encoding the image without
+ * any loss of quality, as {@code jpegtran} does.
+ * <p>
+ * The transform is lossless only when the top and left edges of the crop
+ * are aligned to minimum coded units (MCUs), and the edges of the image
+ * which become the top or left edges after flipping are whole MCUs, as the
+ * partial MCUs at the right and bottom edges cannot be moved. Use
+ * {@link #isLossless(JpegDecoder)} to find out whether this is the case.
+ *
+ * @author coobird
+ *
+ */
+public final class JpegTransform {
+	private final Orientation orientation;
+	private final Rectangle region;
+	private final boolean transpose;
+	private final boolean mirrorX;
+	private final boolean mirrorY;
+
+	/**
+	 * Natural index of the source coefficient and its sign for each
+	 * coefficient of a transformed block.
+	 */
+	private final int[] sourceIndex = new int[64];
+	private final int[] sign = new int[64];
+
+	/**
+	 * Creates a transform.
+	 *
+	 * @param orientation	The Exif orientation of the image, which the image
+	 * 						is rotated or flipped from, or {@code null} to
+	 * 						keep the orientation and the Exif metadata as
+	 * 						they are.
+	 * @param region		The region of the image to keep, in the
+	 * 						coordinates of the image before it is rotated or
+	 * 						flipped, or {@code null} to keep the whole image.
+	 */
+	public JpegTransform(Orientation orientation, Rectangle region) {
+		this.orientation = orientation;
+		this.region = region == null ? null : new Rectangle(region);
+
+		/*
+		 * The sample at (x, y) of the transformed image is the sample at
+		 * (a, b) of the original image, where (a, b) is (y, x) if the image
+		 * is transposed, and a or b are counted from the right or bottom
+		 * edge if the image is mirrored along that axis.
+		 */
+		boolean transpose = false;
+		boolean mirrorX = false;
+		boolean mirrorY = false;
+		if (orientation == Orientation.TOP_RIGHT) {
+			mirrorX = true;
+		} else if (orientation == Orientation.BOTTOM_RIGHT) {
+			mirrorX = true;
+			mirrorY = true;
+		} else if (orientation == Orientation.BOTTOM_LEFT) {
+			mirrorY = true;
+		} else if (orientation == Orientation.LEFT_TOP) {
+			transpose = true;
+		} else if (orientation == Orientation.RIGHT_TOP) {
+			transpose = true;
+			mirrorY = true;
+		} else if (orientation == Orientation.RIGHT_BOTTOM) {
+			transpose = true;
+			mirrorX = true;
+			mirrorY = true;
+		} else if (orientation == Orientation.LEFT_BOTTOM) {
+			transpose = true;
+			mirrorX = true;
+		}
+		this.transpose = transpose;
+		this.mirrorX = mirrorX;
+		this.mirrorY = mirrorY;
+
+		for (int u = 0; u < 8; u++) {
+			for (int v = 0; v < 8; v++) {
+				int su = transpose ? v : u;
+				int sv = transpose ? u : v;
+				boolean negate = (mirrorX && (sv & 1) == 1) ^ (mirrorY && (su & 1) == 1);
+				sourceIndex[u * 8 + v] = su * 8 + sv;
+				sign[u * 8 + v] = negate ? -1 : 1;
+			}
+		}
+	}
+
+	/**
+	 * Returns whether this transform is lossless for the image whose header
+	 * has been read by the given decoder.
+	 *
+	 * @param decoder		A decoder which has read the header of an image.
+	 * @return				{@code true} if the transform is lossless.
+	 */
+	public boolean isLossless(JpegDecoder decoder) {
+		return isLossless(decoder.getWidth(), decoder.getHeight(), decoder.getMcuWidth(), decoder.getMcuHeight());
+	}
+
+	private boolean isLossless(int width, int height, int mcuWidth, int mcuHeight) {
+		Rectangle r = getRegion(width, height);
+		if (r.isEmpty()) {
+			return false;
+		}
+		return r.x % mcuWidth == 0
+				&& r.y % mcuHeight == 0
+				&& (!mirrorX || r.width % mcuWidth == 0)
+				&& (!mirrorY || r.height % mcuHeight == 0);
+	}
+
+	private Rectangle getRegion(int width, int height) {
+		Rectangle bounds = new Rectangle(0, 0, width, height);
+		return region == null ? bounds : bounds.intersection(region);
+	}
+
+	/**
+	 * Applies this transform to the coefficients of an image.
+	 *
+	 * @param source		The coefficients of the image.
+	 * @return				The coefficients of the transformed image.
+	 * @throws IllegalArgumentException	If this transform is not lossless
+	 * 									for the image.
+	 */
+	public JpegCoefficients apply(JpegCoefficients source) {
+		if (!isLossless(source.getWidth(), source.getHeight(), source.getMcuWidth(), source.getMcuHeight())) {
+			throw new IllegalArgumentException("The transform is not lossless for this image.");
+		}
+
+		Rectangle r = getRegion(source.getWidth(), source.getHeight());
+		int width = transpose ? r.height : r.width;
+		int height = transpose ? r.width : r.height;
+		int maxH = transpose ? source.maxV : source.maxH;
+		int maxV = transpose ? source.maxH : source.maxV;
+		int mcusPerLine = (width + 8 * maxH - 1) / (8 * maxH);
+		int mcusPerColumn = (height + 8 * maxV - 1) / (8 * maxV);
+
+		Map<int[], int[]> tables = new IdentityHashMap<int[], int[]>();
+		JpegCoefficients.Plane[] planes = new JpegCoefficients.Plane[source.planes.length];
+		for (int i = 0; i < planes.length; i++) {
+			JpegCoefficients.Plane p = source.planes[i];
+			int h = transpose ? p.v : p.h;
+			int v = transpose ? p.h : p.v;
+			int blocksPerLine = mcusPerLine * h;
+			int blocksPerColumn = mcusPerColumn * v;
+
+			// The region in blocks of this component. Its size is only used
+			// along mirrored axes, where the region is made of whole MCUs.
+			int blockX = r.x / source.getMcuWidth() * p.h;
+			int blockY = r.y / source.getMcuHeight() * p.v;
+			int regionBlocksX = r.width / source.getMcuWidth() * p.h;
+			int regionBlocksY = r.height / source.getMcuHeight() * p.v;
+
+			short[] coefficients = new short[blocksPerLine * blocksPerColumn * 64];
+			for (int by = 0; by < blocksPerColumn; by++) {
+				for (int bx = 0; bx < blocksPerLine; bx++) {
+					int a = transpose ? by : bx;
+					int b = transpose ? bx : by;
+					int sx = blockX + (mirrorX ? regionBlocksX - 1 - a : a);
+					int sy = blockY + (mirrorY ? regionBlocksY - 1 - b : b);
+					if (sx < 0 || sy < 0 || sx >= p.blocksPerLine || sy >= p.blocksPerColumn) {
+						// Padding beyond the original image is left empty.
+						continue;
+					}
+					transformBlock(
+							p.coefficients, (sy * p.blocksPerLine + sx) * 64,
+							coefficients, (by * blocksPerLine + bx) * 64
+					);
+				}
+			}
+
+			int[] quantization = p.quantization;
+			if (transpose) {
+				quantization = tables.get(p.quantization);
+				if (quantization == null) {
+					quantization = new int[64];
+					for (int z = 0; z < 64; z++) {
+						quantization[z] = p.quantization[sourceIndex[z]];
+					}
+					tables.put(p.quantization, quantization);
+				}
+			}
+
+			planes[i] = new JpegCoefficients.Plane(
+					p.id, h, v, quantization, blocksPerLine, blocksPerColumn, coefficients
+			);
+		}
+
+		byte[] jfifData = source.jfifData;
+		if (transpose && jfifData != null && jfifData.length >= 12) {
+			// Swap the horizontal and vertical pixel densities.
+			jfifData = jfifData.clone();
+			for (int k = 8; k < 10; k++) {
+				byte tmp = jfifData[k];
+				jfifData[k] = jfifData[k + 2];
+				jfifData[k + 2] = tmp;
+			}
+		}
+
+		byte[] exifData = source.exifData;
+		if (orientation != null && exifData != null) {
+			exifData = ExifUtils.resetOrientation(exifData);
+		}
+
+		return new JpegCoefficients(width, height, planes, jfifData, exifData, source.adobeData);
+	}
+
+	private void transformBlock(short[] source, int sourceOffset, short[] destination, int destinationOffset) {
+		for (int z = 0; z < 64; z++) {
+			destination[destinationOffset + z] = (short)(sign[z] * source[sourceOffset + sourceIndex[z]]);
+		}
+	}
+}
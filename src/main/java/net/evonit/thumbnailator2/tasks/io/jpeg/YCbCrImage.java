@@ -0,0 +1,215 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2020 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.tasks.io.jpeg;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+
+import net.evonit.thumbnailator2.builders.BufferedImageBuilder;
+
+/**
+ * An image held as separate luma and chroma planes, each at its own
+ * resolution, as they are stored in a JPEG image.
+ * <p>
+ * Each plane is a {@link BufferedImage#TYPE_BYTE_GRAY} image, so that the
+ * planes can be resized by the {@link net.evonit.thumbnailator2.resizers.Resizer}s
+ * like any other image. The first plane is the luma plane, whose size is
+ * the size of the image. Color images have two more planes, the blue and
+ * red chroma planes, which are usually smaller than the luma plane.
+ *
+ * @author coobird
+ *
+ */
+public final class YCbCrImage {
+	private final BufferedImage[] planes;
+
+	/**
+	 * Creates an image from its planes.
+	 *
+	 * @param planes	The luma plane, optionally followed by the blue and red
+	 * 					chroma planes.
+	 * @throws IllegalArgumentException	If the number of planes is not 1 or
+	 * 									3, a plane is not of type
+	 * 									{@link BufferedImage#TYPE_BYTE_GRAY},
+	 * 									or a chroma plane is larger than the
+	 * 									luma plane.
+	 */
+	public YCbCrImage(BufferedImage... planes) {
+		if (planes.length != 1 && planes.length != 3) {
+			throw new IllegalArgumentException("An image must have 1 or 3 planes.");
+		}
+		for (BufferedImage plane : planes) {
+			if (plane.getType() != BufferedImage.TYPE_BYTE_GRAY) {
+				throw new IllegalArgumentException("Planes must be of type TYPE_BYTE_GRAY.");
+			}
+			if (plane.getWidth() > planes[0].getWidth() || plane.getHeight() > planes[0].getHeight()) {
+				throw new IllegalArgumentException("Chroma planes cannot be larger than the luma plane.");
+			}
+		}
+		this.planes = planes.clone();
+	}
+
+	/**
+	 * Returns the width of the image, which is the width of the luma plane.
+	 *
+	 * @return		The width of the image.
+	 */
+	public int getWidth() {
+		return planes[0].getWidth();
+	}
+
+	/**
+	 * Returns the height of the image, which is the height of the luma
+	 * plane.
+	 *
+	 * @return		The height of the image.
+	 */
+	public int getHeight() {
+		return planes[0].getHeight();
+	}
+
+	/**
+	 * Returns the number of planes, which is 1 for grayscale images and 3
+	 * for color images.
+	 *
+	 * @return		The number of planes.
+	 */
+	public int getPlaneCount() {
+		return planes.length;
+	}
+
+	/**
+	 * Returns a plane of the image.
+	 *
+	 * @param index		The index of the plane, where 0 is the luma plane,
+	 * 					1 the blue chroma plane and 2 the red chroma plane.
+	 * @return			The plane.
+	 */
+	public BufferedImage getPlane(int index) {
+		return planes[index];
+	}
+
+	/**
+	 * Returns a raster of the size of the image with a band for each plane,
+	 * which holds the luma and chroma samples of each pixel.
+	 * <p>
+	 * Smaller chroma planes are enlarged by repeating their samples, so
+	 * that a JPEG writer which subsamples the chroma by averaging, as the
+	 * Image I/O writer does, restores the original chroma samples.
+	 *
+	 * @return		The raster holding the samples of the image.
+	 */
+	public WritableRaster toRaster() {
+		int width = getWidth();
+		int height = getHeight();
+		int bands = planes.length;
+		WritableRaster raster = Raster.createInterleavedRaster(
+				DataBuffer.TYPE_BYTE, width, height, bands, null
+		);
+
+		int[][] columns = new int[bands][width];
+		byte[][] rows = new byte[bands][];
+		for (int b = 0; b < bands; b++) {
+			int planeWidth = planes[b].getWidth();
+			for (int x = 0; x < width; x++) {
+				columns[b][x] = (int)((long)x * planeWidth / width);
+			}
+			rows[b] = new byte[planeWidth];
+		}
+
+		byte[] row = new byte[width * bands];
+		for (int y = 0; y < height; y++) {
+			for (int b = 0; b < bands; b++) {
+				BufferedImage plane = planes[b];
+				int planeY = (int)((long)y * plane.getHeight() / height);
+				plane.getRaster().getDataElements(0, planeY, plane.getWidth(), 1, rows[b]);
+
+				byte[] samples = rows[b];
+				int[] column = columns[b];
+				for (int x = 0, index = b; x < width; x++, index += bands) {
+					row[index] = samples[column[x]];
+				}
+			}
+			raster.setDataElements(0, y, width, 1, row);
+		}
+		return raster;
+	}
+
+	/**
+	 * Returns the image as a {@link BufferedImage#TYPE_3BYTE_BGR} image,
+	 * or as a {@link BufferedImage#TYPE_BYTE_GRAY} image if it only has a
+	 * luma plane.
+	 * <p>
+	 * Smaller chroma planes are enlarged as by {@link #toRaster()}, and the
+	 * samples are converted to RGB as defined by JFIF.
+	 *
+	 * @return		A new image holding the pixels of this image.
+	 */
+	public BufferedImage toBufferedImage() {
+		int width = getWidth();
+		int height = getHeight();
+		if (planes.length == 1) {
+			BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+			img.getRaster().setRect(planes[0].getRaster());
+			return img;
+		}
+
+		WritableRaster samples = toRaster();
+		BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+		WritableRaster raster = img.getRaster();
+		byte[] row = new byte[width * 3];
+		for (int y = 0; y < height; y++) {
+			samples.getDataElements(0, y, width, 1, row);
+			for (int index = 0; index < row.length; index += 3) {
+				// Data elements are in band order, which is red, green, blue.
+				int luma = row[index] & 0xFF;
+				int cb = (row[index + 1] & 0xFF) - 128;
+				int cr = (row[index + 2] & 0xFF) - 128;
+				row[index] = clamp(luma + ((91881 * cr + 32768) >> 16));
+				row[index + 1] = clamp(luma + ((-22554 * cb - 46802 * cr + 32768) >> 16));
+				row[index + 2] = clamp(luma + ((116130 * cb + 32768) >> 16));
+			}
+			raster.setDataElements(0, y, width, 1, row);
+		}
+		return img;
+	}
+
+	private static byte clamp(int value) {
+		return (byte)(value < 0 ? 0 : value > 255 ? 255 : value);
+	}
+
+	/**
+	 * Hands the planes back to the current
+	 * {@link net.evonit.thumbnailator2.builders.ImageAllocator}, after which
+	 * this image must not be used anymore.
+	 */
+	public void release() {
+		for (BufferedImage plane : planes) {
+			BufferedImageBuilder.release(plane);
+		}
+	}
+}
@@ -0,0 +1,581 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2020 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.tasks.io.png;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import net.evonit.thumbnailator2.resizers.StreamingResizer;
+import net.evonit.thumbnailator2.tasks.io.Cancellation;
+
+/**
+ * A decoder for PNG images, which passes the decoded image to a
+ * {@link StreamingResizer} a row at a time rather than building the whole
+ * image.
+ * <p>
+ * Only a few rows of the image are held in memory while decoding, so that a
+ * thumbnail can be made from an image which would not fit in memory when
+ * decoded. Interlaced images are passed to the resizer pass by pass.
+ * <p>
+ * All color types and bit depths are supported, along with transparency
+ * given by a {@code tRNS} chunk. Samples with a bit depth of 16 are reduced
+ * to 8 bits, and samples with a bit depth below 8 are scaled to 8 bits.
+ * Gamma and color space chunks are ignored, as they are by Image I/O.
+ * <p>
+ * Instances of this class are not thread-safe, and can only decode a single
+ * image.
+ *
+ * @author coobird
+ *
+ */
+public final class PngDecoder {
+	private static final byte[] SIGNATURE = {
+			(byte)0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'
+	};
+
+	private static final int IHDR = 0x49484452;
+	private static final int PLTE = 0x504C5445;
+	private static final int TRNS = 0x74524E53;
+	private static final int IDAT = 0x49444154;
+	private static final int IEND = 0x49454E44;
+
+	private static final int GRAY = 0;
+	private static final int RGB = 2;
+	private static final int PALETTE = 3;
+	private static final int GRAY_ALPHA = 4;
+	private static final int RGB_ALPHA = 6;
+
+	/**
+	 * The first column, first row, column step and row step of each of the
+	 * seven passes of an Adam7 interlaced image.
+	 */
+	private static final int[][] ADAM7_PASSES = {
+			{0, 0, 8, 8},
+			{4, 0, 8, 8},
+			{0, 4, 4, 8},
+			{2, 0, 4, 4},
+			{0, 2, 2, 4},
+			{1, 0, 2, 2},
+			{0, 1, 1, 2},
+	};
+
+	private final PngInput input;
+
+	private boolean headerRead;
+	private boolean supported;
+	private boolean decoded;
+
+	private int width;
+	private int height;
+	private int bitDepth;
+	private int colorType;
+	private int channels;
+	private boolean interlaced;
+
+	/**
+	 * The colors of the palette as non-premultiplied ARGB values, padded
+	 * with opaque black to 256 entries.
+	 */
+	private int[] palette;
+
+	/**
+	 * The samples of the transparent color of a gray or RGB image, or
+	 * {@code null} if there is none.
+	 */
+	private int[] transparentColor;
+	private boolean paletteAlpha;
+
+	/**
+	 * The number of bytes remaining in the current {@code IDAT} chunk.
+	 */
+	private int chunkRemaining;
+
+	/**
+	 * Creates a decoder which reads an image from the given stream.
+	 *
+	 * @param is		The stream to read the image from.
+	 * @throws NullPointerException		If the stream is {@code null}.
+	 */
+	public PngDecoder(InputStream is) {
+		if (is == null) {
+			throw new NullPointerException("InputStream cannot be null.");
+		}
+		this.input = new PngInput(is);
+	}
+
+	/**
+	 * Reads the stream up to the start of the image data, which includes the
+	 * size, format and palette of the image.
+	 * <p>
+	 * Calling this method more than once has no further effect.
+	 *
+	 * @return				{@code true} if the image can be decoded by this
+	 * 						decoder, {@code false} if the data is not a PNG
+	 * 						image, or its header is invalid.
+	 * @throws IOException	If the stream could not be read.
+	 */
+	public boolean readHeader() throws IOException {
+		if (headerRead) {
+			return supported;
+		}
+		headerRead = true;
+
+		for (byte b : SIGNATURE) {
+			if (input.read() != (b & 0xFF)) {
+				return false;
+			}
+		}
+		if (input.readInt() != 13 || input.readInt() != IHDR) {
+			return false;
+		}
+
+		width = input.readInt();
+		height = input.readInt();
+		bitDepth = input.read();
+		colorType = input.read();
+		int compression = input.read();
+		int filter = input.read();
+		int interlace = input.read();
+		input.skip(4);
+
+		if (width <= 0 || height <= 0 || compression != 0 || filter != 0 || interlace > 1) {
+			return false;
+		}
+		interlaced = interlace == 1;
+
+		switch (colorType) {
+		case GRAY:
+			channels = 1;
+			break;
+		case RGB:
+			channels = 3;
+			break;
+		case PALETTE:
+			channels = 1;
+			break;
+		case GRAY_ALPHA:
+			channels = 2;
+			break;
+		case RGB_ALPHA:
+			channels = 4;
+			break;
+		default:
+			return false;
+		}
+		if (!isValidBitDepth()) {
+			return false;
+		}
+
+		while (true) {
+			int length = input.readInt();
+			int type = input.readInt();
+			if (length < 0) {
+				return false;
+			}
+
+			if (type == IDAT) {
+				chunkRemaining = length;
+				break;
+			} else if (type == IEND) {
+				return false;
+			} else if (type == PLTE) {
+				readPalette(length);
+			} else if (type == TRNS) {
+				readTransparency(length);
+			} else {
+				input.skip(length);
+			}
+			input.skip(4);
+		}
+
+		supported = colorType != PALETTE || palette != null;
+		return supported;
+	}
+
+	private boolean isValidBitDepth() {
+		switch (colorType) {
+		case GRAY:
+			return bitDepth == 1 || bitDepth == 2 || bitDepth == 4 || bitDepth == 8 || bitDepth == 16;
+		case PALETTE:
+			return bitDepth == 1 || bitDepth == 2 || bitDepth == 4 || bitDepth == 8;
+		default:
+			return bitDepth == 8 || bitDepth == 16;
+		}
+	}
+
+	private void readPalette(int length) throws IOException {
+		byte[] data = new byte[length];
+		input.readFully(data);
+
+		// The palette is only used by indexed-color images.
+		if (colorType != PALETTE) {
+			return;
+		}
+
+		int[] colors = new int[256];
+		Arrays.fill(colors, 0xFF000000);
+		for (int i = 0; i < Math.min(length / 3, 256); i++) {
+			colors[i] = 0xFF000000 |
+					(data[i * 3] & 0xFF) << 16 |
+					(data[i * 3 + 1] & 0xFF) << 8 |
+					(data[i * 3 + 2] & 0xFF);
+		}
+
+		// A tRNS chunk may only follow the palette, but is applied here in
+		// case it was found first.
+		if (palette != null) {
+			for (int i = 0; i < 256; i++) {
+				colors[i] = (colors[i] & 0xFFFFFF) | (palette[i] & 0xFF000000);
+			}
+		}
+		palette = colors;
+	}
+
+	private void readTransparency(int length) throws IOException {
+		byte[] data = new byte[length];
+		input.readFully(data);
+
+		if (colorType == PALETTE) {
+			if (palette == null) {
+				palette = new int[256];
+				Arrays.fill(palette, 0xFF000000);
+			}
+			for (int i = 0; i < Math.min(length, 256); i++) {
+				palette[i] = (palette[i] & 0xFFFFFF) | (data[i] & 0xFF) << 24;
+			}
+			paletteAlpha = true;
+
+		} else if ((colorType == GRAY && length >= 2) || (colorType == RGB && length >= 6)) {
+			transparentColor = new int[channels];
+			for (int i = 0; i < channels; i++) {
+				transparentColor[i] = (data[i * 2] & 0xFF) << 8 | (data[i * 2 + 1] & 0xFF);
+			}
+		}
+	}
+
+	/**
+	 * Returns the width of the image, once the header has been read.
+	 *
+	 * @return		The width of the image.
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Returns the height of the image, once the header has been read.
+	 *
+	 * @return		The height of the image.
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Returns whether the image is interlaced, once the header has been
+	 * read.
+	 *
+	 * @return		{@code true} if the image is interlaced.
+	 */
+	public boolean isInterlaced() {
+		return interlaced;
+	}
+
+	/**
+	 * Returns whether the image has transparency, either from an alpha
+	 * channel or from a {@code tRNS} chunk, once the header has been read.
+	 *
+	 * @return		{@code true} if the image has transparency.
+	 */
+	public boolean hasAlpha() {
+		return colorType == GRAY_ALPHA || colorType == RGB_ALPHA ||
+				transparentColor != null || paletteAlpha;
+	}
+
+	/**
+	 * Returns a stream which reads the data of the original stream from the
+	 * beginning, including the data this decoder has already read.
+	 * <p>
+	 * This can only be used before the image is decoded.
+	 *
+	 * @return		A stream which reads the original data.
+	 * @throws IllegalStateException	If the image has been decoded.
+	 */
+	public InputStream replay() {
+		return input.replay();
+	}
+
+	/**
+	 * Decodes the image, passing each row to the given resizer.
+	 * <p>
+	 * The image data is read from the stream as it is decoded, and is not
+	 * kept, so the stream cannot be replayed afterwards.
+	 *
+	 * @param resizer		The resizer which receives the rows of the image.
+	 * @throws IOException	If the stream could not be read, or the data is
+	 * 						not a valid PNG image.
+	 * @throws IllegalArgumentException	If the resizer is not for an image
+	 * 									of the size of this image.
+	 * @throws IllegalStateException	If this decoder has already decoded
+	 * 									an image.
+	 */
+	public void decode(StreamingResizer resizer) throws IOException {
+		if (decoded) {
+			throw new IllegalStateException("The image has already been decoded.");
+		}
+		decoded = true;
+
+		if (!readHeader()) {
+			throw new IOException("Unsupported PNG image.");
+		}
+		if (resizer.getSourceWidth() != width || resizer.getSourceHeight() != height) {
+			throw new IllegalArgumentException("The resizer does not match the size of the image.");
+		}
+		input.stopRecording();
+
+		Inflater inflater = new Inflater();
+		try {
+			InputStream data = new InflaterInputStream(new ImageDataInputStream(), inflater);
+			if (interlaced) {
+				for (int[] pass : ADAM7_PASSES) {
+					decodePass(data, resizer, pass[0], pass[1], pass[2], pass[3]);
+				}
+			} else {
+				decodePass(data, resizer, 0, 0, 1, 1);
+			}
+		} finally {
+			inflater.end();
+		}
+	}
+
+	/**
+	 * Decodes the rows of a pass of an interlaced image, or of the whole
+	 * image if it is not interlaced.
+	 */
+	private void decodePass(InputStream data, StreamingResizer resizer, int x0, int y0, int dx, int dy) throws IOException {
+		int passWidth = (width - x0 + dx - 1) / dx;
+		int passHeight = (height - y0 + dy - 1) / dy;
+		if (passWidth <= 0 || passHeight <= 0) {
+			return;
+		}
+
+		int bitsPerPixel = channels * bitDepth;
+		int rowBytes = (int)(((long)passWidth * bitsPerPixel + 7) / 8);
+		int bytesPerPixel = Math.max(1, bitsPerPixel / 8);
+
+		byte[] previous = new byte[rowBytes];
+		byte[] current = new byte[rowBytes];
+		int[] pixels = new int[passWidth];
+
+		for (int row = 0; row < passHeight; row++) {
+			Cancellation.checkThread();
+			int filter = data.read();
+			if (filter < 0) {
+				throw new EOFException("Unexpected end of PNG image data.");
+			}
+			for (int offset = 0; offset < rowBytes; ) {
+				int n = data.read(current, offset, rowBytes - offset);
+				if (n < 0) {
+					throw new EOFException("Unexpected end of PNG image data.");
+				}
+				offset += n;
+			}
+
+			unfilter(filter, current, previous, bytesPerPixel);
+			convert(current, pixels, passWidth);
+			resizer.addPixels(y0 + row * dy, x0, dx, pixels, passWidth);
+
+			byte[] swap = previous;
+			previous = current;
+			current = swap;
+		}
+	}
+
+	/**
+	 * Reverses the filter applied to a row.
+	 */
+	private static void unfilter(int filter, byte[] current, byte[] previous, int bytesPerPixel) throws IOException {
+		int length = current.length;
+		switch (filter) {
+		case 0:
+			break;
+		case 1:
+			for (int i = bytesPerPixel; i < length; i++) {
+				current[i] += current[i - bytesPerPixel];
+			}
+			break;
+		case 2:
+			for (int i = 0; i < length; i++) {
+				current[i] += previous[i];
+			}
+			break;
+		case 3:
+			for (int i = 0; i < bytesPerPixel; i++) {
+				current[i] += (previous[i] & 0xFF) >> 1;
+			}
+			for (int i = bytesPerPixel; i < length; i++) {
+				current[i] += ((current[i - bytesPerPixel] & 0xFF) + (previous[i] & 0xFF)) >> 1;
+			}
+			break;
+		case 4:
+			for (int i = 0; i < bytesPerPixel; i++) {
+				current[i] += previous[i];
+			}
+			for (int i = bytesPerPixel; i < length; i++) {
+				int a = current[i - bytesPerPixel] & 0xFF;
+				int b = previous[i] & 0xFF;
+				int c = previous[i - bytesPerPixel] & 0xFF;
+				int pa = Math.abs(b - c);
+				int pb = Math.abs(a - c);
+				int pc = Math.abs(a + b - 2 * c);
+				current[i] += (pa <= pb && pa <= pc) ? a : (pb <= pc ? b : c);
+			}
+			break;
+		default:
+			throw new IOException("Corrupt PNG data: unknown filter type " + filter + ".");
+		}
+	}
+
+	/**
+	 * Converts the samples of an unfiltered row to non-premultiplied ARGB
+	 * values.
+	 */
+	private void convert(byte[] row, int[] pixels, int count) {
+		switch (colorType) {
+		case GRAY:
+			for (int i = 0; i < count; i++) {
+				int sample = sample(row, i);
+				int gray = scale(sample);
+				int alpha = transparentColor != null && sample == transparentColor[0] ? 0 : 0xFF;
+				pixels[i] = alpha << 24 | gray << 16 | gray << 8 | gray;
+			}
+			break;
+		case PALETTE:
+			for (int i = 0; i < count; i++) {
+				pixels[i] = palette[sample(row, i)];
+			}
+			break;
+		case GRAY_ALPHA:
+			for (int i = 0; i < count; i++) {
+				int gray = sample(row, i * 2) >> (bitDepth - 8);
+				int alpha = sample(row, i * 2 + 1) >> (bitDepth - 8);
+				pixels[i] = alpha << 24 | gray << 16 | gray << 8 | gray;
+			}
+			break;
+		case RGB:
+			for (int i = 0; i < count; i++) {
+				int r = sample(row, i * 3);
+				int g = sample(row, i * 3 + 1);
+				int b = sample(row, i * 3 + 2);
+				int alpha = transparentColor != null &&
+						r == transparentColor[0] && g == transparentColor[1] && b == transparentColor[2]
+						? 0 : 0xFF;
+				int shift = bitDepth - 8;
+				pixels[i] = alpha << 24 | (r >> shift) << 16 | (g >> shift) << 8 | (b >> shift);
+			}
+			break;
+		default:
+			for (int i = 0; i < count; i++) {
+				int shift = bitDepth - 8;
+				int r = sample(row, i * 4) >> shift;
+				int g = sample(row, i * 4 + 1) >> shift;
+				int b = sample(row, i * 4 + 2) >> shift;
+				int alpha = sample(row, i * 4 + 3) >> shift;
+				pixels[i] = alpha << 24 | r << 16 | g << 8 | b;
+			}
+			break;
+		}
+	}
+
+	/**
+	 * Returns a sample of a row at its original bit depth.
+	 */
+	private int sample(byte[] row, int index) {
+		switch (bitDepth) {
+		case 8:
+			return row[index] & 0xFF;
+		case 16:
+			return (row[index * 2] & 0xFF) << 8 | (row[index * 2 + 1] & 0xFF);
+		default:
+			int bit = index * bitDepth;
+			return (row[bit >> 3] >> (8 - bitDepth - (bit & 7))) & ((1 << bitDepth) - 1);
+		}
+	}
+
+	/**
+	 * Scales a gray sample to 8 bits.
+	 */
+	private int scale(int sample) {
+		switch (bitDepth) {
+		case 8:
+			return sample;
+		case 16:
+			return sample >> 8;
+		default:
+			return sample * 255 / ((1 << bitDepth) - 1);
+		}
+	}
+
+	/**
+	 * Reads the data of consecutive {@code IDAT} chunks as a single stream.
+	 * The chunk CRCs are not verified, as Image I/O does not verify them
+	 * either.
+	 */
+	private final class ImageDataInputStream extends InputStream {
+		private boolean ended;
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int offset, int length) throws IOException {
+			if (length == 0) {
+				return 0;
+			}
+			while (chunkRemaining == 0) {
+				if (ended) {
+					return -1;
+				}
+				input.skip(4);
+				int chunkLength = input.readInt();
+				if (input.readInt() != IDAT || chunkLength < 0) {
+					ended = true;
+					return -1;
+				}
+				chunkRemaining = chunkLength;
+			}
+			int n = input.read(b, offset, Math.min(length, chunkRemaining));
+			chunkRemaining -= n;
+			return n;
+		}
+	}
+}
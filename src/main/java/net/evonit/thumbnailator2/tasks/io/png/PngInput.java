@@ -0,0 +1,189 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2020 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.tasks.io.png;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.Arrays;
+
+/**
+ * Reads chunks from a PNG stream.
+ * <p>
+ * The data read from the underlying {@link InputStream} is recorded until
+ * the image data is reached, so that the stream can be read again from the
+ * beginning by another decoder if this decoder is not used for the image.
+ * The image data itself is not recorded, as it can be much larger than the
+ * memory a thumbnail needs.
+ *
+ * @author coobird
+ *
+ */
+final class PngInput {
+	private static final int BUFFER_SIZE = 8192;
+
+	private final InputStream is;
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+	private int position;
+	private int limit;
+
+	private byte[] recorded = new byte[BUFFER_SIZE];
+	private int recordedLength;
+	private boolean recording = true;
+
+	/**
+	 * Creates a reader for the given stream.
+	 *
+	 * @param is			The stream to read from.
+	 */
+	PngInput(InputStream is) {
+		this.is = is;
+	}
+
+	private void fill() throws IOException {
+		int n;
+		do {
+			n = is.read(buffer, 0, buffer.length);
+		} while (n == 0);
+
+		if (n < 0) {
+			throw new EOFException("Unexpected end of PNG data.");
+		}
+
+		if (recording) {
+			if (recordedLength + n > recorded.length) {
+				recorded = Arrays.copyOf(recorded, Math.max(recorded.length * 2, recordedLength + n));
+			}
+			System.arraycopy(buffer, 0, recorded, recordedLength, n);
+			recordedLength += n;
+		}
+
+		position = 0;
+		limit = n;
+	}
+
+	/**
+	 * Reads a byte.
+	 *
+	 * @return				The byte, as an unsigned value.
+	 * @throws IOException	If the end of the stream was reached, or the
+	 * 						stream could not be read.
+	 */
+	int read() throws IOException {
+		if (position == limit) {
+			fill();
+		}
+		return buffer[position++] & 0xFF;
+	}
+
+	/**
+	 * Reads a big-endian 32-bit value.
+	 *
+	 * @return				The value.
+	 * @throws IOException	If the end of the stream was reached, or the
+	 * 						stream could not be read.
+	 */
+	int readInt() throws IOException {
+		return (read() << 24) | (read() << 16) | (read() << 8) | read();
+	}
+
+	/**
+	 * Reads at least one and at most the given number of bytes.
+	 *
+	 * @param b				The array to read into.
+	 * @param offset		The offset to read into.
+	 * @param length		The maximum number of bytes to read.
+	 * @return				The number of bytes read.
+	 * @throws IOException	If the end of the stream was reached, or the
+	 * 						stream could not be read.
+	 */
+	int read(byte[] b, int offset, int length) throws IOException {
+		if (position == limit) {
+			fill();
+		}
+		int n = Math.min(length, limit - position);
+		System.arraycopy(buffer, position, b, offset, n);
+		position += n;
+		return n;
+	}
+
+	/**
+	 * Fills an array with bytes from the stream.
+	 *
+	 * @param b				The array to fill.
+	 * @throws IOException	If the end of the stream was reached, or the
+	 * 						stream could not be read.
+	 */
+	void readFully(byte[] b) throws IOException {
+		for (int offset = 0; offset < b.length; ) {
+			offset += read(b, offset, b.length - offset);
+		}
+	}
+
+	/**
+	 * Skips bytes of the stream.
+	 *
+	 * @param n				The number of bytes to skip.
+	 * @throws IOException	If the end of the stream was reached, or the
+	 * 						stream could not be read.
+	 */
+	void skip(long n) throws IOException {
+		while (n > 0) {
+			if (position == limit) {
+				fill();
+			}
+			int skipped = (int)Math.min(n, limit - position);
+			position += skipped;
+			n -= skipped;
+		}
+	}
+
+	/**
+	 * Stops recording the data read from the stream, after which the stream
+	 * can no longer be replayed.
+	 */
+	void stopRecording() {
+		recording = false;
+		recorded = null;
+	}
+
+	/**
+	 * Returns a stream which reads the data of the original stream from the
+	 * beginning.
+	 *
+	 * @return		A stream which reads the original data.
+	 * @throws IllegalStateException	If recording has been stopped.
+	 */
+	InputStream replay() {
+		if (!recording) {
+			throw new IllegalStateException("The image data has already been read.");
+		}
+		return new SequenceInputStream(
+				new ByteArrayInputStream(recorded, 0, recordedLength), is
+		);
+	}
+}
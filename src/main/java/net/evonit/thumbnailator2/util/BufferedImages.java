@@ -25,9 +25,26 @@
 package net.evonit.thumbnailator2.util;
 
 import net.evonit.thumbnailator2.builders.BufferedImageBuilder;
+import net.evonit.thumbnailator2.util.raster.RasterImages;
+import net.evonit.thumbnailator2.util.raster.StripedImages;
 
 import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferDouble;
+import java.awt.image.DataBufferFloat;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DataBufferShort;
+import java.awt.image.DataBufferUShort;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
 
 /**
  * This class provides convenience methods for using {@link BufferedImage}s.
@@ -49,7 +66,7 @@ public final class BufferedImages {
 	 * @return			A copy of the specified image.
 	 */
 	public static BufferedImage copy(BufferedImage img) {
-		return copy(img, img.getType());
+		return copy(img, RasterImages.getImageType(img));
 	}
 	
 	/**
@@ -60,16 +77,345 @@ public final class BufferedImages {
 	 * @param imageType	The image type for the image to return.
 	 * @return			A copy of the specified image.
 	 */
-	public static BufferedImage copy(BufferedImage img, int imageType) {
+	public static BufferedImage copy(final BufferedImage img, int imageType) {
 		int width = img.getWidth();
 		int height = img.getHeight();
 
 		BufferedImage newImage = new BufferedImageBuilder(width, height, imageType).build();
 
-		Graphics g = newImage.createGraphics();
-		g.drawImage(img, 0, 0, null);
-		g.dispose();
+		paint(newImage, new Painter() {
+			public void paint(Graphics2D g) {
+				drawImage(g, img, 0, 0);
+			}
+		});
 		
 		return newImage;
 	}
+
+	/**
+	 * Paints onto an image.
+	 * <p>
+	 * Java 2D cannot accelerate painting onto images whose pixels are not
+	 * held in a single Java array. For images held in strips, as created by
+	 * {@link StripedImages}, the {@link Painter} is called once for each
+	 * strip, with a {@link Graphics2D} which paints onto that strip and is
+	 * clipped to it. Painting operations which fall outside of the clip can
+	 * be skipped by the painter, by checking
+	 * {@link Graphics2D#getClipBounds()}. For other images, the painter is
+	 * called once.
+	 * 
+	 * @param img		The image to paint onto.
+	 * @param painter	The painter.
+	 */
+	public static void paint(BufferedImage img, Painter painter) {
+		if (!StripedImages.isStriped(img)) {
+			Graphics2D g = img.createGraphics();
+			try {
+				painter.paint(g);
+			} finally {
+				g.dispose();
+			}
+			return;
+		}
+
+		int strips = StripedImages.getStripCount(img);
+		for (int i = 0; i < strips; i++) {
+			Graphics2D g = StripedImages.getStrip(img, i).createGraphics();
+			try {
+				g.translate(0, -StripedImages.getStripY(img, i));
+				painter.paint(g);
+			} finally {
+				g.dispose();
+			}
+		}
+	}
+
+	/**
+	 * Performs painting operations on a {@link Graphics2D} provided by
+	 * {@link BufferedImages#paint(BufferedImage, Painter)}.
+	 * <p>
+	 * As the painter may be called more than once for the same image, it
+	 * should give the same result each time, and must not replace the
+	 * transform or the clip of the {@link Graphics2D}, although it may
+	 * modify them further.
+	 */
+	public interface Painter {
+		/**
+		 * Paints using the specified {@link Graphics2D}.
+		 * 
+		 * @param g		The {@link Graphics2D} to paint with.
+		 */
+		void paint(Graphics2D g);
+	}
+
+	/**
+	 * Draws an image, in the same way as
+	 * {@link Graphics#drawImage(java.awt.Image, int, int, java.awt.image.ImageObserver)}.
+	 * <p>
+	 * Images which are not backed by a Java array are drawn a strip at a time
+	 * through an array-backed copy, so that Java 2D can accelerate drawing
+	 * them.
+	 * 
+	 * @param g			The {@link Graphics2D} to draw with.
+	 * @param img		The image to draw.
+	 * @param x			The x coordinate to draw the image at.
+	 * @param y			The y coordinate to draw the image at.
+	 */
+	public static void drawImage(Graphics2D g, BufferedImage img, int x, int y) {
+		if (isArrayBacked(img)) {
+			g.drawImage(img, x, y, null);
+			return;
+		}
+
+		int width = img.getWidth();
+		int height = img.getHeight();
+		drawImage(g, img, x, y, x + width, y + height, 0, 0, width, height);
+	}
+
+	/**
+	 * Draws an image scaled to the specified rectangle, in the same way as
+	 * {@link Graphics#drawImage(java.awt.Image, int, int, int, int, java.awt.image.ImageObserver)}.
+	 * <p>
+	 * Images which are not backed by a Java array are drawn a strip at a time
+	 * through an array-backed copy, so that Java 2D can accelerate drawing
+	 * them.
+	 * 
+	 * @param g			The {@link Graphics2D} to draw with.
+	 * @param img		The image to draw.
+	 * @param x			The x coordinate to draw the image at.
+	 * @param y			The y coordinate to draw the image at.
+	 * @param width		The width to draw the image at.
+	 * @param height	The height to draw the image at.
+	 */
+	public static void drawImage(Graphics2D g, BufferedImage img, int x, int y, int width, int height) {
+		if (isArrayBacked(img)) {
+			g.drawImage(img, x, y, width, height, null);
+			return;
+		}
+
+		drawImage(g, img, x, y, x + width, y + height, 0, 0, img.getWidth(), img.getHeight());
+	}
+
+	/**
+	 * Draws a region of an image scaled to the specified region, in the same
+	 * way as {@link Graphics#drawImage(java.awt.Image, int, int, int, int, int, int, int, int, java.awt.image.ImageObserver)}.
+	 * <p>
+	 * Images which are not backed by a Java array are drawn a strip at a time
+	 * through an array-backed copy, so that Java 2D can accelerate drawing
+	 * them. Each copied strip includes a few rows above and below it, so
+	 * that interpolation at the boundaries of strips gives the same result,
+	 * up to rounding, as drawing the image as a whole. Strips which fall outside of the clip
+	 * of the {@link Graphics2D} are skipped.
+	 * <p>
+	 * The image may be drawn onto itself, provided that the destination
+	 * region is not larger than the source region and does not start below
+	 * it, as when an image is reduced in place.
+	 * 
+	 * @param g			The {@link Graphics2D} to draw with.
+	 * @param img		The image to draw.
+	 * @param dx1		The x coordinate of the first corner of the destination.
+	 * @param dy1		The y coordinate of the first corner of the destination.
+	 * @param dx2		The x coordinate of the second corner of the destination.
+	 * @param dy2		The y coordinate of the second corner of the destination.
+	 * @param sx1		The x coordinate of the first corner of the source.
+	 * @param sy1		The y coordinate of the first corner of the source.
+	 * @param sx2		The x coordinate of the second corner of the source.
+	 * @param sy2		The y coordinate of the second corner of the source.
+	 */
+	public static void drawImage(
+			Graphics2D g, BufferedImage img,
+			int dx1, int dy1, int dx2, int dy2,
+			int sx1, int sy1, int sx2, int sy2
+	) {
+		int stripRows = isArrayBacked(img) ? 0 : getCopyRows(img, Math.abs(sx2 - sx1));
+		if (stripRows < MIN_COPY_ROWS) {
+			g.drawImage(img, dx1, dy1, dx2, dy2, sx1, sy1, sx2, sy2, null);
+			return;
+		}
+
+		// Let the source coordinates increase, flipping the destination.
+		if (sx2 < sx1) {
+			int t = sx1; sx1 = sx2; sx2 = t;
+			t = dx1; dx1 = dx2; dx2 = t;
+		}
+		if (sy2 < sy1) {
+			int t = sy1; sy1 = sy2; sy2 = t;
+			t = dy1; dy1 = dy2; dy2 = t;
+		}
+
+		int srcWidth = sx2 - sx1;
+		int srcHeight = sy2 - sy1;
+		if (srcWidth == 0 || srcHeight == 0) {
+			return;
+		}
+
+		double scaleX = (dx2 - dx1) / (double)srcWidth;
+		double scaleY = (dy2 - dy1) / (double)srcHeight;
+
+		/*
+		 * Strips are only clipped against each other. On the outer edges,
+		 * the clip extends beyond the image, so that the edges can still be
+		 * antialiased when the image is drawn with a rotation.
+		 */
+		double outside = Math.max(Math.abs(dx2 - dx1), Math.abs(dy2 - dy1)) + 2;
+		double left = Math.min(dx1, dx2) - outside;
+		double width = Math.abs(dx2 - dx1) + 2 * outside;
+		boolean topToBottom = dy1 <= dy2;
+
+		int step = stripRows - 2 * COPY_MARGIN;
+		BufferedImage buffer = createCompatibleImage(img, srcWidth, stripRows);
+		Rectangle clip = g.getClipBounds();
+
+		for (int y = sy1; y < sy2; y += step) {
+			int y2 = Math.min(y + step, sy2);
+
+			double top = dy1 + (y - sy1) * scaleY;
+			double bottom = dy1 + (y2 - sy1) * scaleY;
+			if (top > bottom) {
+				double t = top; top = bottom; bottom = t;
+			}
+			if (clip != null && (bottom + 1 <= clip.y || top - 1 >= clip.y + clip.height)) {
+				continue;
+			}
+
+			int copyY1 = Math.max(sy1, y - COPY_MARGIN);
+			int copyY2 = Math.min(sy2, y2 + COPY_MARGIN);
+			BufferedImage strip = copyRegion(img, sx1, copyY1, srcWidth, copyY2 - copyY1, buffer);
+
+			boolean first = y == sy1;
+			boolean last = y2 == sy2;
+			if (topToBottom ? first : last) {
+				top -= outside;
+			}
+			if (topToBottom ? last : first) {
+				bottom += outside;
+			}
+
+			Graphics2D sg = (Graphics2D)g.create();
+			try {
+				sg.clip(new Rectangle2D.Double(left, top, width, bottom - top));
+				sg.drawImage(
+						strip,
+						new AffineTransform(
+								scaleX, 0, 0, scaleY,
+								dx1, dy1 + (copyY1 - sy1) * scaleY
+						),
+						null
+				);
+			} finally {
+				sg.dispose();
+			}
+		}
+	}
+
+	/**
+	 * The number of rows above and below each strip which are copied along
+	 * with it, which covers the neighborhood used by bicubic interpolation.
+	 */
+	private static final int COPY_MARGIN = 2;
+
+	/**
+	 * The smallest number of rows copied at a time.
+	 */
+	private static final int MIN_COPY_ROWS = 8 * COPY_MARGIN;
+
+	/**
+	 * The number of bytes copied at a time from images which are not held
+	 * in strips.
+	 */
+	private static final int COPY_BYTES = 1 << 20;
+
+	/**
+	 * Returns how many rows of an image to copy at a time in
+	 * {@link #drawImage(Graphics2D, BufferedImage, int, int, int, int, int, int, int, int)}.
+	 */
+	private static int getCopyRows(BufferedImage img, int width) {
+		int rows;
+		if (StripedImages.isStriped(img)) {
+			rows = StripedImages.getRowsPerStrip(img);
+		} else {
+			SampleModel sm = img.getSampleModel();
+			long rowBytes = (long)width * sm.getNumDataElements()
+					* DataBuffer.getDataTypeSize(sm.getDataType()) / 8;
+			rows = (int)Math.min(COPY_BYTES / Math.max(rowBytes, 1), Integer.MAX_VALUE);
+		}
+		return Math.min(Math.max(rows, MIN_COPY_ROWS), img.getHeight() + 2 * COPY_MARGIN);
+	}
+
+	/**
+	 * Returns whether the pixels of the specified image are held in one of
+	 * the Java arrays wrapped by the {@link DataBuffer} classes of the
+	 * {@code java.awt.image} package.
+	 * <p>
+	 * Java 2D can only accelerate drawing operations for such images. Images
+	 * backed by other {@link DataBuffer} implementations, such as those held
+	 * outside of the Java heap, are best processed a region at a time by
+	 * copying each region with {@link #copyRegion(BufferedImage, int, int, int, int, BufferedImage)}.
+	 * 
+	 * @param img		The image to check.
+	 * @return			{@code true} if the image is backed by a Java array.
+	 */
+	public static boolean isArrayBacked(BufferedImage img) {
+		DataBuffer buffer = img.getRaster().getDataBuffer();
+		return buffer instanceof DataBufferInt
+				|| buffer instanceof DataBufferByte
+				|| buffer instanceof DataBufferUShort
+				|| buffer instanceof DataBufferShort
+				|| buffer instanceof DataBufferFloat
+				|| buffer instanceof DataBufferDouble;
+	}
+
+	/**
+	 * Creates an array-backed image which has the same {@link ColorModel}
+	 * as the specified image, and can therefore receive regions copied from
+	 * it by {@link #copyRegion(BufferedImage, int, int, int, int, BufferedImage)}.
+	 * 
+	 * @param img		The image whose color model should be used.
+	 * @param width		The width of the image to create.
+	 * @param height	The height of the image to create.
+	 * @return			A new image.
+	 */
+	public static BufferedImage createCompatibleImage(BufferedImage img, int width, int height) {
+		ColorModel cm = img.getColorModel();
+		WritableRaster raster = cm.createCompatibleWritableRaster(width, height);
+		return new BufferedImage(cm, raster, cm.isAlphaPremultiplied(), null);
+	}
+
+	/**
+	 * Copies the pixels of a region of an image into the top-left corner of
+	 * another image with the same {@link ColorModel}, and returns the portion
+	 * of the destination which holds the copied region.
+	 * 
+	 * @param img		The image to copy from.
+	 * @param x			The x coordinate of the region.
+	 * @param y			The y coordinate of the region.
+	 * @param width		The width of the region.
+	 * @param height	The height of the region.
+	 * @param dest		The image to copy to, which should have been created
+	 * 					by {@link #createCompatibleImage(BufferedImage, int, int)}
+	 * 					and be at least as large as the region.
+	 * @return			An image sharing its pixels with {@code dest}, which
+	 * 					contains the copied region.
+	 */
+	public static BufferedImage copyRegion(BufferedImage img, int x, int y, int width, int height, BufferedImage dest) {
+		if (StripedImages.isStriped(img)) {
+			// Copy from each strip, which lets the rows be copied in bulk.
+			int rowsPerStrip = StripedImages.getRowsPerStrip(img);
+			for (int row = y; row < y + height; ) {
+				int strip = row / rowsPerStrip;
+				int stripY = strip * rowsPerStrip;
+				int rows = Math.min(stripY + rowsPerStrip, y + height) - row;
+
+				Raster region = StripedImages.getStrip(img, strip).getRaster()
+						.createChild(x, row - stripY, width, rows, 0, 0, null);
+				dest.getRaster().setDataElements(0, row - y, region);
+				row += rows;
+			}
+
+		} else {
+			Raster region = img.getRaster().createChild(x, y, width, height, 0, 0, null);
+			dest.getRaster().setDataElements(0, 0, region);
+		}
+		return dest.getSubimage(0, 0, width, height);
+	}
 }
\ No newline at end of file
@@ -84,7 +84,166 @@ public enum Configurations {
      *       than 1/4 of the available JVM free memory</li>
      * </ul>
      */
-    CONSERVE_MEMORY_WORKAROUND("thumbnailator.conserveMemoryWorkaround")
+    CONSERVE_MEMORY_WORKAROUND("thumbnailator.conserveMemoryWorkaround"),
+
+    /**
+     * Enable decoding of JPEG images at a reduced size with the built-in
+     * {@link net.evonit.thumbnailator2.tasks.io.jpeg.JpegDecoder}.
+     * <br>
+     * Property name: {@code thumbnailator.useJpegDecoder}
+     * <p>
+     * When enabled, a JPEG image which is resized to a specific size is
+     * decoded at 1/2, 1/4 or 1/8 of its original size, as long as the
+     * decoded image is still large enough for the thumbnail. This avoids
+     * decoding the full-size image, which is much faster for thumbnails of
+     * large photos.
+     * <p>
+     * Images which the decoder does not support, such as CMYK images or
+     * images with an embedded ICC profile, are read by Image I/O as usual.
+     */
+    USE_JPEG_DECODER("thumbnailator.useJpegDecoder"),
+
+    /**
+     * Enable partial decoding of progressive JPEG images.
+     * <br>
+     * Property name: {@code thumbnailator.partialProgressiveJpeg}
+     * <p>
+     * When enabled, a progressive JPEG image which is resized to a specific
+     * size is read with the built-in
+     * {@link net.evonit.thumbnailator2.tasks.io.jpeg.JpegDecoder}, which
+     * stops reading the image once the scans read so far give enough detail
+     * for the reduced size it is decoded at. The remaining scans are
+     * neither decoded nor read from the source, which saves most of the
+     * data of small thumbnails from images on a network.
+     * <p>
+     * This applies to progressive images even when
+     * {@link #USE_JPEG_DECODER} is disabled.
+     */
+    PARTIAL_PROGRESSIVE_JPEG("thumbnailator.partialProgressiveJpeg"),
+
+    /**
+     * Enable streaming decoding of PNG images with the built-in
+     * {@link net.evonit.thumbnailator2.tasks.io.png.PngDecoder}.
+     * <br>
+     * Property name: {@code thumbnailator.usePngDecoder}
+     * <p>
+     * When enabled, a PNG image which is resized to a specific size is
+     * reduced while it is decoded, as long as the reduced image is still
+     * large enough for the thumbnail. Only a few rows of the source image
+     * and the reduced image are held in memory, rather than the whole
+     * source image.
+     */
+    USE_PNG_DECODER("thumbnailator.usePngDecoder"),
+
+    /**
+     * Enable creating JPEG thumbnails of JPEG images from their luma and
+     * chroma planes.
+     * <br>
+     * Property name: {@code thumbnailator.planarJpeg}
+     * <p>
+     * When enabled, and a JPEG image is made into a JPEG thumbnail without
+     * image filters, the luma and chroma planes are decoded by the built-in
+     * {@link net.evonit.thumbnailator2.tasks.io.jpeg.JpegDecoder}, each
+     * resized at its own resolution and written without converting them to
+     * RGB and back. As the chroma planes are usually a quarter of the size
+     * of the luma plane, they take a quarter of the work to resize.
+     */
+    PLANAR_JPEG("thumbnailator.planarJpeg"),
+
+    /**
+     * Enable lossless rotation, flipping and cropping of JPEG images.
+     * <br>
+     * Property name: {@code thumbnailator.losslessJpegTransform}
+     * <p>
+     * When enabled, and a JPEG image is written as a JPEG image at its
+     * original size without image filters or an output quality, the Exif
+     * orientation and the source region are applied to the DCT coefficients
+     * of the image by a
+     * {@link net.evonit.thumbnailator2.tasks.io.jpeg.JpegTransform}, and the
+     * orientation in the Exif metadata is reset. The image is not decoded
+     * and is not encoded again, so there is no loss in quality.
+     * <p>
+     * This only applies when the crop is aligned to the MCUs of the image,
+     * and flipped edges are whole MCUs. Other images are processed as usual.
+     */
+    LOSSLESS_JPEG_TRANSFORM("thumbnailator.losslessJpegTransform"),
+
+    /**
+     * Enables copying source images which already are the requested
+     * thumbnail.
+     * <br>
+     * Property name: {@code thumbnailator.passThrough}
+     * <p>
+     * When enabled, the header of the source image is read first. If the
+     * image is in the output format, the thumbnail would have the same
+     * dimensions as the image, the image has no Exif orientation other than
+     * the default, and no source region, image filters, output quality or
+     * compression type are given, the encoded image is copied to the
+     * destination as it is, including its metadata. Other images are
+     * processed as usual.
+     */
+    PASS_THROUGH("thumbnailator.passThrough"),
+
+    /**
+     * Enables reading source images at a reduced resolution when there is
+     * not enough memory to read them at their full resolution.
+     * <br>
+     * Property name: {@code thumbnailator.degradeOnLowMemory}
+     * <p>
+     * When enabled, an image read by Image I/O is subsampled beforehand
+     * when its estimated size exceeds half of the memory available to the
+     * heap. When reading the image fails with an {@link OutOfMemoryError}
+     * regardless, it is read again with twice the subsampling, until it is
+     * read or cannot be subsampled further. An image is not subsampled to
+     * fewer pixels than the thumbnail has.
+     * <p>
+     * A thumbnail created from a subsampled image has the requested size,
+     * but less detail. The source image reports this through
+     * {@link net.evonit.thumbnailator2.tasks.io.DegradableImageSource}, and
+     * {@link net.evonit.thumbnailator2.ThumbnailResult#isDegraded()} for the
+     * thumbnails delivered one at a time. Unlike
+     * {@link #CONSERVE_MEMORY_WORKAROUND}, images which fit in the memory
+     * are read at their full resolution.
+     */
+    DEGRADE_ON_LOW_MEMORY("thumbnailator.degradeOnLowMemory"),
+
+    /**
+     * The largest number of pixels of an image which is read.
+     * <br>
+     * Property name: {@code thumbnailator.maxPixels}
+     * <p>
+     * An image whose width multiplied by its height exceeds this number is
+     * not decoded, and an
+     * {@link net.evonit.thumbnailator2.tasks.ImageLimitExceededException}
+     * is thrown once its header has been read. This keeps a small file
+     * which claims to be a very large image from having its pixels
+     * allocated. The number is read with {@link #getLong(long)}, and images
+     * are not limited when it is not set.
+     *
+     * @see net.evonit.thumbnailator2.tasks.io.ImageLimits
+     */
+    MAX_PIXELS("thumbnailator.maxPixels"),
+
+    /**
+     * The largest width or height of an image which is read.
+     * <br>
+     * Property name: {@code thumbnailator.maxDimension}
+     * <p>
+     * Images are limited in the same way as by {@link #MAX_PIXELS}.
+     */
+    MAX_DIMENSION("thumbnailator.maxDimension"),
+
+    /**
+     * The largest number of frames of an image which is read, such as of
+     * an animated GIF image.
+     * <br>
+     * Property name: {@code thumbnailator.maxFrames}
+     * <p>
+     * Images are limited in the same way as by {@link #MAX_PIXELS}. As
+     * the frames of some formats can only be counted by reading the whole
+     * image, the frames are only counted when this is set.
+     */
+    MAX_FRAMES("thumbnailator.maxFrames")
     ;
 
     private final String key;
@@ -147,4 +306,25 @@ public enum Configurations {
         }
         return Boolean.getBoolean(key);
     }
+
+    /**
+     * Returns the number the specified configuration is set to.
+     * @param defaultValue  The number to return if the configuration is not
+     *                      set, or is not a number.
+     * @return  The number the configuration is set to, or the given default.
+     */
+    public long getLong(long defaultValue) {
+        String propertyValue = properties.getProperty(key);
+        if (propertyValue == null) {
+            propertyValue = System.getProperty(key);
+        }
+        if (propertyValue == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(propertyValue.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
 }
@@ -156,6 +156,52 @@ public final class ExifUtils {
 		return null;
 	}
 
+	/**
+	 * Returns a copy of the Exif metadata in which the orientation is set
+	 * to {@link Orientation#TOP_LEFT}, for an image which has been rotated
+	 * or flipped into its intended orientation.
+	 *
+	 * @param exifData		A byte array containing Exif data.
+	 * @return				A copy of the Exif data with the orientation
+	 * 						reset. If the Exif data does not contain an
+	 * 						orientation, it is copied unchanged.
+	 */
+	public static byte[] resetOrientation(byte[] exifData) {
+		byte[] copy = exifData.clone();
+		try {
+			ByteBuffer buffer = ByteBuffer.wrap(copy);
+
+			byte[] exifId = new byte[4];
+			buffer.get(exifId);
+			if (!EXIF_MAGIC_STRING.equals(new String(exifId))) {
+				return copy;
+			}
+
+			// The TIFF header follows "Exif", the \0 and the padding byte.
+			int tiffStart = 6;
+			if (copy[tiffStart] == 'I' && copy[tiffStart + 1] == 'I') {
+				buffer.order(ByteOrder.LITTLE_ENDIAN);
+			} else {
+				buffer.order(ByteOrder.BIG_ENDIAN);
+			}
+
+			int ifdStart = tiffStart + buffer.getInt(tiffStart + 4);
+			int nFields = buffer.getShort(ifdStart) & 0xFFFF;
+			for (int i = 0; i < nFields; i++) {
+				int entry = ifdStart + 2 + i * 12;
+				if (buffer.getShort(entry) == 0x0112) {
+					// The orientation is a SHORT, stored in the value field.
+					buffer.putShort(entry + 8, (short)1);
+					break;
+				}
+			}
+
+		} catch (RuntimeException e) {
+			// Malformed Exif data is left as it is.
+		}
+		return copy;
+	}
+
 	private static IfdStructure readIFD(byte[] ifd, ByteOrder bo) {
 		ByteBuffer buffer = ByteBuffer.wrap(ifd).order(bo);
 
@@ -0,0 +1,282 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2020 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.util.raster;
+
+import java.awt.image.DataBuffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link DataBuffer} whose elements are stored in {@link ByteBuffer}s
+ * rather than in a Java array.
+ * <p>
+ * When backed by direct buffers, the pixels of an image do not occupy the
+ * Java heap, which keeps large images from inflating garbage collection
+ * pauses and the heap size required by an application.
+ * <p>
+ * The elements are spread over fixed-size chunks, so that a buffer can hold
+ * more than the 2 GB which a single {@link ByteBuffer} can address.
+ * Only {@link DataBuffer#TYPE_BYTE} and {@link DataBuffer#TYPE_INT} with a
+ * single bank are supported, which covers the sample models of the
+ * predefined {@link java.awt.image.BufferedImage} types used by Thumbnailator.
+ * <p>
+ * Once {@link #free()} has been called, accessing the buffer results in a
+ * {@link NullPointerException}. Element accesses are not guarded against a
+ * concurrent call to {@link #free()}, as that would slow down every access.
+ * Thumbnailator only frees an image once all stages which use it have
+ * ended. Code which uses the image on another thread, and cannot tell when
+ * it will be freed, holds a {@link #lease()} for the whole operation,
+ * which defers the release of the memory until the lease ends.
+ *
+ * @author coobird
+ *
+ */
+public class ByteBufferDataBuffer extends DataBuffer {
+	/**
+	 * The default size of each chunk, in bytes.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 30;
+
+	/**
+	 * The flag of {@link #state} which is set once {@link #free()} has been
+	 * called.
+	 */
+	private static final int FREED = 1 << 31;
+
+	/**
+	 * The buffers holding the elements, or {@code null} once their memory
+	 * has been released.
+	 */
+	private volatile ByteBuffer[] chunks;
+
+	/**
+	 * The number of leases in progress, together with the {@link #FREED}
+	 * flag.
+	 */
+	private final AtomicInteger state = new AtomicInteger();
+
+	/**
+	 * {@code log2} of the chunk size in bytes.
+	 */
+	private final int chunkShift;
+
+	/**
+	 * Mask to obtain the offset within a chunk from a byte offset.
+	 */
+	private final long chunkMask;
+
+	/**
+	 * {@code log2} of the size of an element in bytes.
+	 */
+	private final int elementShift;
+
+	/**
+	 * Instantiates a {@link ByteBufferDataBuffer} over the specified chunks.
+	 *
+	 * @param dataType		The data type, either {@link DataBuffer#TYPE_BYTE}
+	 * 						or {@link DataBuffer#TYPE_INT}.
+	 * @param size			The number of elements.
+	 * @param chunks		The buffers holding the elements. Every chunk but
+	 * 						the last must have a capacity of {@code chunkSize}.
+	 * @param chunkSize		The size of each chunk in bytes, which must be a
+	 * 						power of two of at least 4.
+	 * @throws IllegalArgumentException	If the data type is not supported,
+	 * 									or if the chunks cannot hold the
+	 * 									specified number of elements.
+	 */
+	public ByteBufferDataBuffer(int dataType, int size, ByteBuffer[] chunks, int chunkSize) {
+		super(checkDataType(dataType), size);
+
+		if (chunkSize < 4 || Integer.bitCount(chunkSize) != 1) {
+			throw new IllegalArgumentException("Chunk size must be a power of two.");
+		}
+
+		this.elementShift = dataType == TYPE_INT ? 2 : 0;
+		this.chunkShift = Integer.numberOfTrailingZeros(chunkSize);
+		this.chunkMask = chunkSize - 1;
+
+		long requiredBytes = (long)size << elementShift;
+		long availableBytes = 0;
+		for (int i = 0; i < chunks.length; i++) {
+			if (i < chunks.length - 1 && chunks[i].capacity() != chunkSize) {
+				throw new IllegalArgumentException("Chunk " + i + " is not of the chunk size.");
+			}
+			chunks[i].order(ByteOrder.nativeOrder());
+			availableBytes += chunks[i].capacity();
+		}
+		if (availableBytes < requiredBytes) {
+			throw new IllegalArgumentException("Chunks are too small for " + size + " elements.");
+		}
+
+		this.chunks = chunks;
+	}
+
+	/**
+	 * Creates a {@link ByteBufferDataBuffer} backed by newly allocated direct
+	 * buffers, whose elements are all zero.
+	 *
+	 * @param dataType		The data type, either {@link DataBuffer#TYPE_BYTE}
+	 * 						or {@link DataBuffer#TYPE_INT}.
+	 * @param size			The number of elements.
+	 * @return				A new buffer.
+	 */
+	public static ByteBufferDataBuffer allocateDirect(int dataType, int size) {
+		long bytes = (long)size * (DataBuffer.getDataTypeSize(checkDataType(dataType)) / 8);
+		int chunkCount = (int)((bytes + DEFAULT_CHUNK_SIZE - 1) / DEFAULT_CHUNK_SIZE);
+
+		ByteBuffer[] chunks = new ByteBuffer[Math.max(chunkCount, 1)];
+		try {
+			for (int i = 0; i < chunks.length; i++) {
+				long remaining = bytes - (long)i * DEFAULT_CHUNK_SIZE;
+				chunks[i] = ByteBuffer.allocateDirect((int)Math.min(remaining, DEFAULT_CHUNK_SIZE));
+			}
+		} catch (OutOfMemoryError e) {
+			for (ByteBuffer chunk : chunks) {
+				DirectBuffers.free(chunk);
+			}
+			throw e;
+		}
+
+		return new ByteBufferDataBuffer(dataType, size, chunks, DEFAULT_CHUNK_SIZE);
+	}
+
+	private static int checkDataType(int dataType) {
+		if (dataType != TYPE_BYTE && dataType != TYPE_INT) {
+			throw new IllegalArgumentException("Unsupported data type: " + dataType);
+		}
+		return dataType;
+	}
+
+	@Override
+	public int getElem(int bank, int i) {
+		long offset = (long)(i + offsets[bank]) << elementShift;
+		ByteBuffer chunk = chunks[(int)(offset >>> chunkShift)];
+		int index = (int)(offset & chunkMask);
+
+		if (elementShift == 0) {
+			return chunk.get(index) & 0xff;
+		}
+		return chunk.getInt(index);
+	}
+
+	@Override
+	public void setElem(int bank, int i, int val) {
+		long offset = (long)(i + offsets[bank]) << elementShift;
+		ByteBuffer chunk = chunks[(int)(offset >>> chunkShift)];
+		int index = (int)(offset & chunkMask);
+
+		if (elementShift == 0) {
+			chunk.put(index, (byte)val);
+		} else {
+			chunk.putInt(index, val);
+		}
+	}
+
+	/**
+	 * Keeps the memory of this buffer from being released until
+	 * {@link #endLease()} is called, so that an operation on another thread
+	 * can use the image while it may be freed.
+	 *
+	 * @return		{@code true} if the lease was taken, {@code false} if
+	 * 				{@link #free()} has already been called, in which case
+	 * 				{@link #endLease()} must not be called.
+	 */
+	public boolean lease() {
+		while (true) {
+			int current = state.get();
+			if ((current & FREED) != 0) {
+				return false;
+			}
+			if (state.compareAndSet(current, current + 1)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Ends a lease taken by {@link #lease()}, and releases the memory if
+	 * {@link #free()} was called during the lease and no other lease is in
+	 * progress.
+	 */
+	public void endLease() {
+		if (state.decrementAndGet() == FREED) {
+			releaseChunks();
+		}
+	}
+
+	/**
+	 * Returns whether the memory of this buffer has been released.
+	 *
+	 * @return		{@code true} if {@link #free()} has been called.
+	 */
+	public boolean isFreed() {
+		return (state.get() & FREED) != 0;
+	}
+
+	/**
+	 * Releases the memory held by this buffer.
+	 * <p>
+	 * The image which uses this buffer must not be used afterwards. When
+	 * leases are in progress, the memory is released once the last of them
+	 * ends. Calling this method more than once has no effect.
+	 */
+	public void free() {
+		while (true) {
+			int current = state.get();
+			if ((current & FREED) != 0) {
+				return;
+			}
+			if (state.compareAndSet(current, current | FREED)) {
+				if (current == 0) {
+					releaseChunks();
+				}
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Releases the memory of the chunks. This is called exactly once, after
+	 * {@link #free()} has been called and no lease is in progress.
+	 */
+	private void releaseChunks() {
+		ByteBuffer[] toFree = chunks;
+		chunks = null;
+		release(toFree);
+	}
+
+	/**
+	 * Releases the memory of the given chunks, once no element of this
+	 * buffer can be accessed anymore.
+	 *
+	 * @param chunks		The buffers which held the elements.
+	 */
+	protected void release(ByteBuffer[] chunks) {
+		for (ByteBuffer chunk : chunks) {
+			DirectBuffers.free(chunk);
+		}
+	}
+}
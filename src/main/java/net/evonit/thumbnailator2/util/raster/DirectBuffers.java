@@ -0,0 +1,106 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2020 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.util.raster;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+/**
+ * Utility methods to release the memory of direct {@link ByteBuffer}s
+ * without waiting for the garbage collector.
+ *
+ * @author coobird
+ *
+ */
+final class DirectBuffers {
+	/**
+	 * {@code sun.misc.Unsafe} instance on Java 9 and newer, otherwise
+	 * {@code null}.
+	 */
+	private static final Object UNSAFE;
+
+	/**
+	 * {@code sun.misc.Unsafe.invokeCleaner(ByteBuffer)} on Java 9 and newer,
+	 * otherwise {@code null}.
+	 */
+	private static final Method INVOKE_CLEANER;
+
+	static {
+		Object unsafe = null;
+		Method invokeCleaner = null;
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			unsafe = theUnsafe.get(null);
+		} catch (Exception e) {
+			// Java 8, or Unsafe is not accessible. Fall back below.
+			invokeCleaner = null;
+		}
+		UNSAFE = unsafe;
+		INVOKE_CLEANER = invokeCleaner;
+	}
+
+	/**
+	 * This class is not intended to be instantiated.
+	 */
+	private DirectBuffers() {}
+
+	/**
+	 * Releases the memory held by a direct {@link ByteBuffer}.
+	 * <p>
+	 * If the memory cannot be released explicitly on the running JVM, then
+	 * it will be released when the buffer is garbage collected.
+	 * The buffer must not be accessed after calling this method.
+	 *
+	 * @param buffer	The buffer to release.
+	 */
+	static void free(ByteBuffer buffer) {
+		if (buffer == null || !buffer.isDirect()) {
+			return;
+		}
+
+		try {
+			if (INVOKE_CLEANER != null) {
+				INVOKE_CLEANER.invoke(UNSAFE, buffer);
+				return;
+			}
+
+			// Java 8: ((DirectBuffer) buffer).cleaner().clean()
+			Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+			cleanerMethod.setAccessible(true);
+			Object cleaner = cleanerMethod.invoke(buffer);
+			if (cleaner != null) {
+				Method clean = cleaner.getClass().getMethod("clean");
+				clean.setAccessible(true);
+				clean.invoke(cleaner);
+			}
+		} catch (Exception e) {
+			// Leave it to the garbage collector.
+		}
+	}
+}
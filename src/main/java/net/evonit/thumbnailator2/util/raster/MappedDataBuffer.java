@@ -0,0 +1,151 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2020 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.util.raster;
+
+import java.awt.image.DataBuffer;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A {@link ByteBufferDataBuffer} whose elements are stored in a temporary
+ * file which is mapped into memory.
+ * <p>
+ * The operating system keeps only the recently accessed parts of the file in
+ * memory, so images larger than the available memory can be held, as long as
+ * they are accessed a region at a time.
+ * <p>
+ * Where the platform permits it, the temporary file is removed from the
+ * directory as soon as it is mapped, so that it does not outlive the
+ * process. Otherwise it is deleted when the buffer is freed, or when the
+ * JVM exits.
+ *
+ * @author coobird
+ *
+ */
+public class MappedDataBuffer extends ByteBufferDataBuffer {
+	/**
+	 * The default size of each mapped chunk, in bytes.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 28;
+
+	/**
+	 * The temporary file which still has to be deleted, or {@code null} if
+	 * it has already been removed.
+	 */
+	private final File file;
+
+	private MappedDataBuffer(int dataType, int size, ByteBuffer[] chunks, int chunkSize, File file) {
+		super(dataType, size, chunks, chunkSize);
+		this.file = file;
+	}
+
+	/**
+	 * Creates a {@link MappedDataBuffer} backed by a new temporary file,
+	 * whose elements are all zero.
+	 *
+	 * @param dataType		The data type, either {@link DataBuffer#TYPE_BYTE}
+	 * 						or {@link DataBuffer#TYPE_INT}.
+	 * @param size			The number of elements.
+	 * @param directory		The directory in which to create the temporary
+	 * 						file, or {@code null} to use the default
+	 * 						temporary-file directory.
+	 * @param chunkSize		The size of each mapped region of the file in
+	 * 						bytes, which must be a power of two of at
+	 * 						least 4.
+	 * @return				A new buffer.
+	 * @throws IOException	If the temporary file could not be created or
+	 * 						mapped.
+	 */
+	public static MappedDataBuffer create(int dataType, int size, File directory, int chunkSize) throws IOException {
+		if (chunkSize < 4 || Integer.bitCount(chunkSize) != 1) {
+			throw new IllegalArgumentException("Chunk size must be a power of two.");
+		}
+
+		long bytes = (long)size * (DataBuffer.getDataTypeSize(dataType) / 8);
+		int chunkCount = (int)Math.max((bytes + chunkSize - 1) / chunkSize, 1);
+		ByteBuffer[] chunks = new ByteBuffer[chunkCount];
+
+		File file = File.createTempFile("thumbnailator", ".raster", directory);
+		RandomAccessFile raf = null;
+		try {
+			raf = new RandomAccessFile(file, "rw");
+			// Extending the file leaves a sparse, zero-filled file.
+			raf.setLength(Math.max(bytes, 1));
+
+			FileChannel channel = raf.getChannel();
+			for (int i = 0; i < chunkCount; i++) {
+				long position = (long)i * chunkSize;
+				long length = Math.min(Math.max(bytes, 1) - position, chunkSize);
+				chunks[i] = channel.map(FileChannel.MapMode.READ_WRITE, position, length);
+			}
+
+		} catch (IOException e) {
+			for (ByteBuffer chunk : chunks) {
+				DirectBuffers.free(chunk);
+			}
+			closeQuietly(raf);
+			file.delete();
+			throw e;
+		}
+
+		// Mappings remain valid after the file is closed.
+		closeQuietly(raf);
+
+		if (file.delete()) {
+			file = null;
+		} else {
+			file.deleteOnExit();
+		}
+
+		return new MappedDataBuffer(dataType, size, chunks, chunkSize, file);
+	}
+
+	/**
+	 * Unmaps the temporary file, and deletes it if it has not been removed
+	 * yet.
+	 */
+	@Override
+	protected void release(ByteBuffer[] chunks) {
+		super.release(chunks);
+
+		if (file != null) {
+			file.delete();
+		}
+	}
+
+	private static void closeQuietly(RandomAccessFile raf) {
+		if (raf == null) {
+			return;
+		}
+		try {
+			raf.close();
+		} catch (IOException e) {
+			// Nothing can be done about it; the mappings are still valid.
+		}
+	}
+}
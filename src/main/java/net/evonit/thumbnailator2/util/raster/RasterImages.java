@@ -0,0 +1,217 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2020 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.util.raster;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+
+/**
+ * Utility methods to create {@link BufferedImage}s of the predefined image
+ * types on top of a custom {@link DataBuffer}.
+ * <p>
+ * Images created by this class use the same {@link ColorModel} and the
+ * same kind of {@link SampleModel} as an image created through
+ * {@link BufferedImage#BufferedImage(int, int, int)}. However, as their
+ * pixels are not held in a Java array, {@link BufferedImage#getType()} will
+ * return {@link BufferedImage#TYPE_CUSTOM}.
+ *
+ * @author coobird
+ *
+ */
+public final class RasterImages {
+	/**
+	 * Prototypes of the supported image types, used to identify the layout
+	 * of images.
+	 */
+	private static final BufferedImage[] PROTOTYPES = {
+			new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB),
+			new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB),
+			new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB_PRE),
+			new BufferedImage(1, 1, BufferedImage.TYPE_INT_BGR),
+			new BufferedImage(1, 1, BufferedImage.TYPE_3BYTE_BGR),
+			new BufferedImage(1, 1, BufferedImage.TYPE_4BYTE_ABGR),
+			new BufferedImage(1, 1, BufferedImage.TYPE_4BYTE_ABGR_PRE),
+			new BufferedImage(1, 1, BufferedImage.TYPE_BYTE_GRAY),
+	};
+
+	/**
+	 * This class is not intended to be instantiated.
+	 */
+	private RasterImages() {}
+
+	/**
+	 * Returns whether images of the specified type can be created by this
+	 * class.
+	 *
+	 * @param imageType		The image type.
+	 * @return				{@code true} if the image type is supported.
+	 */
+	public static boolean isSupportedType(int imageType) {
+		switch (imageType) {
+			case BufferedImage.TYPE_INT_RGB:
+			case BufferedImage.TYPE_INT_ARGB:
+			case BufferedImage.TYPE_INT_ARGB_PRE:
+			case BufferedImage.TYPE_INT_BGR:
+			case BufferedImage.TYPE_3BYTE_BGR:
+			case BufferedImage.TYPE_4BYTE_ABGR:
+			case BufferedImage.TYPE_4BYTE_ABGR_PRE:
+			case BufferedImage.TYPE_BYTE_GRAY:
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Returns the {@link DataBuffer} data type used by images of the
+	 * specified type.
+	 *
+	 * @param imageType		The image type.
+	 * @return				Either {@link DataBuffer#TYPE_INT} or
+	 * 						{@link DataBuffer#TYPE_BYTE}.
+	 * @throws IllegalArgumentException	If the image type is not supported.
+	 */
+	public static int getDataType(int imageType) {
+		return getElementsPerPixel(imageType) == 1 && imageType != BufferedImage.TYPE_BYTE_GRAY
+				? DataBuffer.TYPE_INT
+				: DataBuffer.TYPE_BYTE;
+	}
+
+	/**
+	 * Returns the number of {@link DataBuffer} elements needed to hold an
+	 * image of the specified size and type.
+	 *
+	 * @param width			The width of the image.
+	 * @param height		The height of the image.
+	 * @param imageType		The image type.
+	 * @return				The number of elements.
+	 * @throws IllegalArgumentException	If the image type is not supported.
+	 */
+	public static long getElementCount(int width, int height, int imageType) {
+		return (long)width * height * getElementsPerPixel(imageType);
+	}
+
+	private static int getElementsPerPixel(int imageType) {
+		switch (imageType) {
+			case BufferedImage.TYPE_INT_RGB:
+			case BufferedImage.TYPE_INT_ARGB:
+			case BufferedImage.TYPE_INT_ARGB_PRE:
+			case BufferedImage.TYPE_INT_BGR:
+			case BufferedImage.TYPE_BYTE_GRAY:
+				return 1;
+			case BufferedImage.TYPE_3BYTE_BGR:
+				return 3;
+			case BufferedImage.TYPE_4BYTE_ABGR:
+			case BufferedImage.TYPE_4BYTE_ABGR_PRE:
+				return 4;
+			default:
+				throw new IllegalArgumentException("Unsupported image type: " + imageType);
+		}
+	}
+
+	/**
+	 * Returns the predefined image type which the specified image is laid
+	 * out as.
+	 * <p>
+	 * For images created by {@link #createImage(int, int, int, DataBuffer)},
+	 * this is the image type they were created with, although
+	 * {@link BufferedImage#getType()} returns
+	 * {@link BufferedImage#TYPE_CUSTOM}. For other images, this is the value
+	 * of {@link BufferedImage#getType()}.
+	 *
+	 * @param img			The image.
+	 * @return				The image type.
+	 */
+	public static int getImageType(BufferedImage img) {
+		int imageType = img.getType();
+		if (imageType != BufferedImage.TYPE_CUSTOM) {
+			return imageType;
+		}
+
+		ColorModel cm = img.getColorModel();
+		SampleModel sm = img.getSampleModel();
+		for (BufferedImage prototype : PROTOTYPES) {
+			if (cm.equals(prototype.getColorModel())
+					&& isSameLayout(sm, prototype.getSampleModel())) {
+				return prototype.getType();
+			}
+		}
+		return BufferedImage.TYPE_CUSTOM;
+	}
+
+	private static boolean isSameLayout(SampleModel sm, SampleModel prototype) {
+		if (sm.getClass() != prototype.getClass()
+				|| sm.getDataType() != prototype.getDataType()) {
+			return false;
+		}
+		if (sm instanceof SinglePixelPackedSampleModel) {
+			return Arrays.equals(
+					((SinglePixelPackedSampleModel)sm).getBitMasks(),
+					((SinglePixelPackedSampleModel)prototype).getBitMasks()
+			);
+		}
+		if (sm instanceof ComponentSampleModel) {
+			ComponentSampleModel csm = (ComponentSampleModel)sm;
+			ComponentSampleModel cproto = (ComponentSampleModel)prototype;
+			return csm.getPixelStride() == cproto.getPixelStride()
+					&& Arrays.equals(csm.getBandOffsets(), cproto.getBandOffsets());
+		}
+		return false;
+	}
+
+	/**
+	 * Creates an image of the specified size and type, whose pixels are held
+	 * by the specified {@link DataBuffer}.
+	 *
+	 * @param width			The width of the image.
+	 * @param height		The height of the image.
+	 * @param imageType		The image type whose color and sample model
+	 * 						should be used.
+	 * @param buffer		The buffer holding the pixels, which must hold
+	 * 						at least as many elements as returned by
+	 * 						{@link #getElementCount(int, int, int)}.
+	 * @return				The image.
+	 * @throws IllegalArgumentException	If the image type is not supported.
+	 */
+	public static BufferedImage createImage(int width, int height, int imageType, DataBuffer buffer) {
+		if (!isSupportedType(imageType)) {
+			throw new IllegalArgumentException("Unsupported image type: " + imageType);
+		}
+
+		BufferedImage prototype = new BufferedImage(1, 1, imageType);
+		ColorModel cm = prototype.getColorModel();
+		SampleModel sm = prototype.getSampleModel().createCompatibleSampleModel(width, height);
+
+		WritableRaster raster = Raster.createWritableRaster(sm, buffer, null);
+		return new BufferedImage(cm, raster, cm.isAlphaPremultiplied(), null);
+	}
+}
@@ -0,0 +1,191 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2020 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.util.raster;
+
+import java.awt.image.DataBuffer;
+
+/**
+ * A {@link DataBuffer} whose elements are held in several Java arrays, each
+ * holding a strip of consecutive rows of an image.
+ * <p>
+ * Large images held in a single array need an allocation the size of the
+ * whole image, which garbage collectors such as G1 treat as a humongous
+ * object. Splitting the image into strips keeps every array below a chosen
+ * size, while each strip can still be wrapped in a standard
+ * {@link java.awt.image.BufferedImage} which Java 2D can accelerate.
+ * See {@link StripedImages}.
+ *
+ * @author coobird
+ *
+ */
+public final class StripedDataBuffer extends DataBuffer {
+	/**
+	 * The strips, if the data type is {@link DataBuffer#TYPE_INT}.
+	 */
+	private final int[][] intStrips;
+
+	/**
+	 * The strips, if the data type is {@link DataBuffer#TYPE_BYTE}.
+	 */
+	private final byte[][] byteStrips;
+
+	/**
+	 * The number of elements in each row.
+	 */
+	private final int rowElements;
+
+	/**
+	 * The number of rows in each strip but the last.
+	 */
+	private final int rowsPerStrip;
+
+	/**
+	 * The number of elements in each strip but the last.
+	 */
+	private final int stripElements;
+
+	/**
+	 * Instantiates a {@link StripedDataBuffer} with newly allocated strips,
+	 * whose elements are all zero.
+	 *
+	 * @param dataType		The data type, either {@link DataBuffer#TYPE_BYTE}
+	 * 						or {@link DataBuffer#TYPE_INT}.
+	 * @param rowElements	The number of elements in a row.
+	 * @param rows			The number of rows.
+	 * @param rowsPerStrip	The number of rows in each strip.
+	 * @throws IllegalArgumentException	If the data type is not supported,
+	 * 									or if the sizes are not positive.
+	 */
+	public StripedDataBuffer(int dataType, int rowElements, int rows, int rowsPerStrip) {
+		super(checkDataType(dataType), checkSize(rowElements, rows, rowsPerStrip));
+
+		this.rowElements = rowElements;
+		this.rowsPerStrip = Math.min(rowsPerStrip, rows);
+		this.stripElements = rowElements * this.rowsPerStrip;
+
+		int stripCount = (rows + this.rowsPerStrip - 1) / this.rowsPerStrip;
+		if (dataType == TYPE_INT) {
+			intStrips = new int[stripCount][];
+			byteStrips = null;
+		} else {
+			intStrips = null;
+			byteStrips = new byte[stripCount][];
+		}
+
+		for (int i = 0; i < stripCount; i++) {
+			int stripRows = Math.min(this.rowsPerStrip, rows - i * this.rowsPerStrip);
+			if (intStrips != null) {
+				intStrips[i] = new int[stripRows * rowElements];
+			} else {
+				byteStrips[i] = new byte[stripRows * rowElements];
+			}
+		}
+	}
+
+	private static int checkDataType(int dataType) {
+		if (dataType != TYPE_BYTE && dataType != TYPE_INT) {
+			throw new IllegalArgumentException("Unsupported data type: " + dataType);
+		}
+		return dataType;
+	}
+
+	private static int checkSize(int rowElements, int rows, int rowsPerStrip) {
+		if (rowElements <= 0 || rows <= 0 || rowsPerStrip <= 0) {
+			throw new IllegalArgumentException("Sizes must be greater than 0.");
+		}
+		long size = (long)rowElements * rows;
+		if (size > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Too many elements: " + size);
+		}
+		return (int)size;
+	}
+
+	/**
+	 * Returns the number of strips.
+	 *
+	 * @return		The number of strips.
+	 */
+	public int getStripCount() {
+		return intStrips != null ? intStrips.length : byteStrips.length;
+	}
+
+	/**
+	 * Returns the number of rows in each strip but the last, which may have
+	 * fewer rows.
+	 *
+	 * @return		The number of rows per strip.
+	 */
+	public int getRowsPerStrip() {
+		return rowsPerStrip;
+	}
+
+	/**
+	 * Returns the number of elements in each row.
+	 *
+	 * @return		The number of elements in a row.
+	 */
+	public int getRowElements() {
+		return rowElements;
+	}
+
+	/**
+	 * Returns the array holding the specified strip.
+	 * <p>
+	 * The array is not copied, so changes to it are visible through this
+	 * buffer.
+	 *
+	 * @param strip		The index of the strip.
+	 * @return			Either an {@code int[]} or a {@code byte[]},
+	 * 					depending on the data type.
+	 */
+	public Object getStripData(int strip) {
+		return intStrips != null ? intStrips[strip] : byteStrips[strip];
+	}
+
+	@Override
+	public int getElem(int bank, int i) {
+		i += offsets[bank];
+		int strip = i / stripElements;
+		int index = i - strip * stripElements;
+
+		if (intStrips != null) {
+			return intStrips[strip][index];
+		}
+		return byteStrips[strip][index] & 0xff;
+	}
+
+	@Override
+	public void setElem(int bank, int i, int val) {
+		i += offsets[bank];
+		int strip = i / stripElements;
+		int index = i - strip * stripElements;
+
+		if (intStrips != null) {
+			intStrips[strip][index] = val;
+		} else {
+			byteStrips[strip][index] = (byte)val;
+		}
+	}
+}
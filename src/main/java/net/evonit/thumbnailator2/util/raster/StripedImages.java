@@ -0,0 +1,161 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2020 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.util.raster;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * Utility methods for images whose pixels are held by a
+ * {@link StripedDataBuffer}.
+ * <p>
+ * Each strip of such an image can be obtained as a standard
+ * {@link BufferedImage} sharing its pixels with the image, through
+ * {@link #getStrip(BufferedImage, int)}. Drawing into or from the strips lets
+ * Java 2D use its accelerated loops, which it cannot do for the image as a
+ * whole.
+ *
+ * @author coobird
+ *
+ */
+public final class StripedImages {
+	/**
+	 * This class is not intended to be instantiated.
+	 */
+	private StripedImages() {}
+
+	/**
+	 * Creates an image whose pixels are split into strips of at most the
+	 * specified number of rows.
+	 *
+	 * @param width			The width of the image.
+	 * @param height		The height of the image.
+	 * @param imageType		The image type whose color and sample model
+	 * 						should be used.
+	 * @param rowsPerStrip	The number of rows in each strip.
+	 * @return				The image, whose pixels are all zero.
+	 * @throws IllegalArgumentException	If the image type is not supported
+	 * 									by {@link RasterImages}.
+	 */
+	public static BufferedImage createImage(int width, int height, int imageType, int rowsPerStrip) {
+		int rowElements = (int)RasterImages.getElementCount(width, 1, imageType);
+		StripedDataBuffer buffer = new StripedDataBuffer(
+				RasterImages.getDataType(imageType), rowElements, height, rowsPerStrip
+		);
+		return RasterImages.createImage(width, height, imageType, buffer);
+	}
+
+	/**
+	 * Returns whether the specified image is held in strips which can be
+	 * obtained through {@link #getStrip(BufferedImage, int)}.
+	 * <p>
+	 * Sub-images of striped images are not considered to be striped.
+	 *
+	 * @param img		The image to check.
+	 * @return			{@code true} if the image is striped.
+	 */
+	public static boolean isStriped(BufferedImage img) {
+		WritableRaster raster = img.getRaster();
+		return raster.getDataBuffer() instanceof StripedDataBuffer
+				&& raster.getSampleModelTranslateX() == 0
+				&& raster.getSampleModelTranslateY() == 0
+				&& raster.getParent() == null;
+	}
+
+	/**
+	 * Returns the number of strips of a striped image.
+	 *
+	 * @param img		A striped image.
+	 * @return			The number of strips.
+	 */
+	public static int getStripCount(BufferedImage img) {
+		return getBuffer(img).getStripCount();
+	}
+
+	/**
+	 * Returns the y coordinate of the first row of a strip.
+	 *
+	 * @param img		A striped image.
+	 * @param strip		The index of the strip.
+	 * @return			The y coordinate of the strip.
+	 */
+	public static int getStripY(BufferedImage img, int strip) {
+		return strip * getBuffer(img).getRowsPerStrip();
+	}
+
+	/**
+	 * Returns the number of rows in each strip but the last.
+	 *
+	 * @param img		A striped image.
+	 * @return			The number of rows per strip.
+	 */
+	public static int getRowsPerStrip(BufferedImage img) {
+		return getBuffer(img).getRowsPerStrip();
+	}
+
+	/**
+	 * Returns a standard, array-backed image which shares its pixels with
+	 * the specified strip of a striped image.
+	 * <p>
+	 * The returned image has the width of the striped image and the height
+	 * of the strip. Its pixel {@code (x, y)} is the pixel
+	 * {@code (x, getStripY(img, strip) + y)} of the striped image.
+	 *
+	 * @param img		A striped image.
+	 * @param strip		The index of the strip.
+	 * @return			An image of the strip.
+	 */
+	public static BufferedImage getStrip(BufferedImage img, int strip) {
+		StripedDataBuffer buffer = getBuffer(img);
+		int y = strip * buffer.getRowsPerStrip();
+		int rows = Math.min(buffer.getRowsPerStrip(), img.getHeight() - y);
+
+		Object data = buffer.getStripData(strip);
+		DataBuffer stripBuffer;
+		if (data instanceof int[]) {
+			stripBuffer = new DataBufferInt((int[])data, ((int[])data).length);
+		} else {
+			stripBuffer = new DataBufferByte((byte[])data, ((byte[])data).length);
+		}
+
+		SampleModel sm = img.getSampleModel().createCompatibleSampleModel(img.getWidth(), rows);
+		WritableRaster raster = Raster.createWritableRaster(sm, stripBuffer, null);
+		return new BufferedImage(
+				img.getColorModel(), raster, img.isAlphaPremultiplied(), null
+		);
+	}
+
+	private static StripedDataBuffer getBuffer(BufferedImage img) {
+		if (!isStriped(img)) {
+			throw new IllegalArgumentException("Image is not striped.");
+		}
+		return (StripedDataBuffer)img.getRaster().getDataBuffer();
+	}
+}
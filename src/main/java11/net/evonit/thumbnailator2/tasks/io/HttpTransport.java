@@ -0,0 +1,208 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2020 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.tasks.io;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends the requests of {@link HttpURLFetcher}.
+ * <p>
+ * This is the Java 11 version of this class in the multi-release jar,
+ * which uses an {@link HttpClient}. The client reuses connections and
+ * uses HTTP/2 where the server supports it.
+ * <p>
+ * The timeout of the client only applies until the header fields of the
+ * response are received. As {@link java.net.HttpURLConnection} does, each
+ * read of the body also waits for no longer than the timeout, after which
+ * the body is closed.
+ * 
+ * @author coobird
+ *
+ */
+final class HttpTransport {
+	/**
+	 * Closes the bodies which have not received data in time.
+	 */
+	private static final ScheduledThreadPoolExecutor TIMER;
+	
+	static {
+		TIMER = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "thumbnailator-http-timeout");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		TIMER.setRemoveOnCancelPolicy(true);
+	}
+	
+	private final HttpClient client;
+	
+	/**
+	 * Creates a transport.
+	 * 
+	 * @param connectTimeout	The time to wait for a connection, in
+	 * 							milliseconds.
+	 */
+	HttpTransport(long connectTimeout) {
+		this.client = HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_2)
+				.followRedirects(HttpClient.Redirect.NORMAL)
+				.connectTimeout(Duration.ofMillis(connectTimeout))
+				.build();
+	}
+	
+	/**
+	 * Sends a GET request.
+	 * 
+	 * @param url			The URL.
+	 * @param timeout		The time to wait for the response, and for each
+	 * 						read of the body, in milliseconds.
+	 * @param headers		The header fields of the request.
+	 * @return				The response.
+	 * @throws IOException	If the request could not be sent, or no response
+	 * 						was received in time.
+	 */
+	HttpTransportResponse get(URL url, long timeout, Map<String, String> headers) throws IOException {
+		HttpRequest.Builder request;
+		try {
+			request = HttpRequest.newBuilder(url.toURI())
+					.timeout(Duration.ofMillis(timeout))
+					.GET();
+		} catch (URISyntaxException e) {
+			throw new IOException("Invalid URL: " + url, e);
+		} catch (IllegalArgumentException e) {
+			// Such as file: URLs, which the client does not support.
+			return new HttpTransportResponse(200, Map.of(), url.openStream());
+		}
+		for (Map.Entry<String, String> header : headers.entrySet()) {
+			request.header(header.getKey(), header.getValue());
+		}
+		
+		HttpResponse<InputStream> response;
+		try {
+			response = client.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for " + url);
+		}
+		return new HttpTransportResponse(
+				response.statusCode(), response.headers().map(), new TimedInputStream(response.body(), timeout)
+		);
+	}
+	
+	/**
+	 * A body which is closed when a read does not return in time.
+	 */
+	private static final class TimedInputStream extends FilterInputStream {
+		private final long timeout;
+		private volatile boolean timedOut;
+		
+		private TimedInputStream(InputStream in, long timeout) {
+			super(in);
+			this.timeout = timeout;
+		}
+		
+		/**
+		 * Closes the body once the timeout elapses, which ends a read which
+		 * is blocked.
+		 */
+		private Future<?> startTimer() throws IOException {
+			if (timedOut) {
+				throw new SocketTimeoutException("Read timed out");
+			}
+			return TIMER.schedule(new Runnable() {
+				public void run() {
+					timedOut = true;
+					try {
+						in.close();
+					} catch (IOException e) {
+						// The read fails either way.
+					}
+				}
+			}, timeout, TimeUnit.MILLISECONDS);
+		}
+		
+		private IOException translate(IOException e) {
+			if (!timedOut) {
+				return e;
+			}
+			SocketTimeoutException timeout = new SocketTimeoutException("Read timed out");
+			timeout.initCause(e);
+			return timeout;
+		}
+		
+		@Override
+		public int read() throws IOException {
+			Future<?> timer = startTimer();
+			try {
+				return in.read();
+			} catch (IOException e) {
+				throw translate(e);
+			} finally {
+				timer.cancel(false);
+			}
+		}
+		
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			Future<?> timer = startTimer();
+			try {
+				return in.read(b, off, len);
+			} catch (IOException e) {
+				throw translate(e);
+			} finally {
+				timer.cancel(false);
+			}
+		}
+		
+		@Override
+		public long skip(long n) throws IOException {
+			Future<?> timer = startTimer();
+			try {
+				return in.skip(n);
+			} catch (IOException e) {
+				throw translate(e);
+			} finally {
+				timer.cancel(false);
+			}
+		}
+	}
+}
@@ -0,0 +1,142 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2020 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+
+import net.evonit.thumbnailator2.tasks.io.ImageSource;
+
+/**
+ * A {@link Flow.Publisher} of the thumbnails of a {@link Thumbnails.Builder},
+ * which creates the thumbnails as they are requested by its subscribers.
+ * <p>
+ * No more thumbnails are created ahead than a subscriber has requested and
+ * not yet received. Within that window, thumbnails are created on the
+ * executor of the builder, or the common pool, with up to the parallelism
+ * of the builder, or the number of processors, at once. Thumbnails can
+ * therefore be streamed to a slow consumer, such as an upload, without
+ * holding more of them in the heap than the consumer asks for.
+ * <pre>
+Flow.Publisher&lt;ThumbnailResult&lt;File&gt;&gt; publisher =
+    ThumbnailPublisher.of(
+        Thumbnails.of(files)
+            .size(200, 200)
+            .parallelism(4)
+    );
+
+publisher.subscribe(uploader);
+ * </pre>
+ * <p>
+ * The results are delivered in the order in which the thumbnails are
+ * created, and carry their source image and its position. A thumbnail
+ * which could not be created is delivered as a result with the failure;
+ * {@link Flow.Subscriber#onError(Throwable)} is only called when the source
+ * images themselves could not be obtained.
+ * <p>
+ * Each subscriber receives the thumbnails of all source images, created
+ * for that subscriber. Cancelling a subscription aborts the thumbnails
+ * which are being created for it.
+ * <p>
+ * This class requires Java 9 or later.
+ * 
+ * @param <T>		The type of the source images.
+ * @author coobird
+ *
+ */
+public final class ThumbnailPublisher<T> implements Flow.Publisher<ThumbnailResult<T>> {
+	private final ThumbnailPlan plan;
+	private final Iterable<ImageSource<T>> sources;
+	private final Executor executor;
+	private final int parallelism;
+	
+	private ThumbnailPublisher(ThumbnailPlan plan, Iterable<ImageSource<T>> sources, Executor executor, int parallelism) {
+		this.plan = plan;
+		this.sources = sources;
+		this.executor = executor;
+		this.parallelism = parallelism;
+	}
+	
+	/**
+	 * Returns a publisher of the thumbnails of the given builder. The
+	 * settings of the builder are captured when this method is called.
+	 * 
+	 * @param builder		The builder of the thumbnails.
+	 * @param <T>			The type of the source images.
+	 * @return				A publisher of the thumbnails.
+	 * @throws NullPointerException		If the builder is {@code null}.
+	 * @throws IllegalStateException	If the size or scaling factor has
+	 * 									not been set.
+	 */
+	public static <T> ThumbnailPublisher<T> of(Thumbnails.Builder<T> builder) {
+		if (builder == null) {
+			throw new NullPointerException("Builder cannot be null.");
+		}
+		
+		return new ThumbnailPublisher<T>(
+				builder.toPlan(),
+				builder.getSources(),
+				builder.getAsyncExecutor(),
+				builder.getAsyncParallelism()
+		);
+	}
+	
+	public void subscribe(final Flow.Subscriber<? super ThumbnailResult<T>> subscriber) {
+		if (subscriber == null) {
+			throw new NullPointerException("Subscriber cannot be null.");
+		}
+		
+		final ThumbnailEmitter<T> emitter = new ThumbnailEmitter<T>(
+				plan,
+				sources.iterator(),
+				executor,
+				parallelism,
+				new ThumbnailEmitter.Receiver<T>() {
+					public void onNext(ThumbnailResult<T> result) {
+						subscriber.onNext(result);
+					}
+					
+					public void onError(Throwable t) {
+						subscriber.onError(t);
+					}
+					
+					public void onComplete() {
+						subscriber.onComplete();
+					}
+				}
+		);
+		
+		subscriber.onSubscribe(new Flow.Subscription() {
+			public void request(long n) {
+				emitter.request(n);
+			}
+			
+			public void cancel() {
+				emitter.cancel();
+			}
+		});
+		emitter.start();
+	}
+}
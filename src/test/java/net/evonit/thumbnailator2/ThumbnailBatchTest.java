@@ -0,0 +1,136 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2022 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+import net.evonit.thumbnailator2.tasks.io.BufferedImageSink;
+import net.evonit.thumbnailator2.tasks.io.BufferedImageSource;
+import net.evonit.thumbnailator2.tasks.io.URLImageSource;
+import net.evonit.thumbnailator2.tasks.io.jpeg.JpegTestImages;
+import net.evonit.thumbnailator2.test.LocalImageServer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link ThumbnailBatch} with a thread for each thumbnail and a
+ * limit on the thumbnails which are resized at the same time.
+ */
+public class ThumbnailBatchTest {
+
+	@Test
+	public void readsMoreSourcesThanThumbnailsResizedAtOnce() throws Exception {
+		// given
+		ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+		ImageIO.write(JpegTestImages.createPhoto(200, 150, BufferedImage.TYPE_INT_RGB), "jpg", encoded);
+
+		// Every request waits until all of them have arrived.
+		int count = 8;
+		CountDownLatch requests = new CountDownLatch(count);
+		AtomicInteger resizing = new AtomicInteger();
+		AtomicInteger maxResizing = new AtomicInteger();
+
+		ThumbnailPlan plan = Thumbnails.newPlan()
+				.size(100, 100)
+				.addFilter(img -> {
+					maxResizing.accumulateAndGet(resizing.incrementAndGet(), Math::max);
+					try {
+						Thread.sleep(20);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					resizing.decrementAndGet();
+					return img;
+				})
+				.toPlan();
+
+		try (LocalImageServer server = new LocalImageServer(exchange -> {
+			requests.countDown();
+			try {
+				requests.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			LocalImageServer.respond(exchange, 200, encoded.toByteArray(), "image/jpeg");
+		})) {
+			ThumbnailBatch batch = new ThumbnailBatch(Executors.defaultThreadFactory(), count, 2);
+			List<BufferedImageSink> destinations = new ArrayList<>();
+
+			// when
+			for (int i = 0; i < count; i++) {
+				BufferedImageSink destination = new BufferedImageSink();
+				destinations.add(destination);
+				batch.submit(plan, new URLImageSource(server.url("/image/" + i)), destination);
+			}
+			batch.close();
+
+			// then
+			assertTrue(batch.await().isEmpty());
+			assertEquals(0, requests.getCount());
+			assertTrue(maxResizing.get() <= 2, "resized at once: " + maxResizing.get());
+			for (BufferedImageSink destination : destinations) {
+				assertEquals(100, destination.getSink().getWidth());
+			}
+		}
+	}
+
+	@Test
+	public void createsThumbnailsOnThreadsOfFactory() throws Exception {
+		// given
+		List<String> threadNames = new ArrayList<>();
+		ThumbnailPlan plan = Thumbnails.newPlan()
+				.size(50, 50)
+				.addFilter(img -> {
+					synchronized (threadNames) {
+						threadNames.add(Thread.currentThread().getName());
+					}
+					return img;
+				})
+				.toPlan();
+		ThumbnailBatch batch = new ThumbnailBatch(r -> new Thread(r, "batch-test"), 4, 1);
+
+		// when
+		for (int i = 0; i < 3; i++) {
+			BufferedImage source = new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB);
+			batch.submit(plan, new BufferedImageSource(source), new BufferedImageSink());
+		}
+		batch.close();
+
+		// then
+		assertTrue(batch.await().isEmpty());
+		assertEquals(List.of("batch-test", "batch-test", "batch-test"), threadNames);
+	}
+}
@@ -0,0 +1,349 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2022 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import net.evonit.thumbnailator2.ThumbnailStageEvent.Stage;
+import net.evonit.thumbnailator2.filters.Colorize;
+import net.evonit.thumbnailator2.filters.Transparency;
+import net.evonit.thumbnailator2.resizers.BicubicResizer;
+import net.evonit.thumbnailator2.resizers.BilinearResizer;
+import net.evonit.thumbnailator2.resizers.Resizer;
+import net.evonit.thumbnailator2.resizers.ResizerFactory;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link ThumbnailListener}, registered with
+ * {@link Thumbnails.Builder#listener(ThumbnailListener)} and
+ * {@link Thumbnailator#addListener(ThumbnailListener)}.
+ */
+public class ThumbnailListenerTest {
+
+	private static class RecordingListener implements ThumbnailListener {
+		final List<ThumbnailStageEvent> events =
+				Collections.synchronizedList(new ArrayList<ThumbnailStageEvent>());
+
+		public void stageCompleted(ThumbnailStageEvent event) {
+			events.add(event);
+		}
+
+		List<Stage> stages() {
+			List<Stage> stages = new ArrayList<Stage>();
+			for (ThumbnailStageEvent event : events) {
+				stages.add(event.getStage());
+			}
+			return stages;
+		}
+	}
+
+	private static byte[] png(int width, int height) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", baos);
+		return baos.toByteArray();
+	}
+
+	@BeforeEach @AfterEach
+	public void clearSystemProperties() {
+		System.clearProperty("thumbnailator.passThrough");
+	}
+
+	@Test
+	public void stagesAreReportedInOrder() throws IOException {
+		// given
+		RecordingListener listener = new RecordingListener();
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+		// when
+		Thumbnails.of(new ByteArrayInputStream(png(200, 100)))
+				.size(50, 50)
+				.addFilter(new Transparency(0.5))
+				.addFilter(new Colorize(Color.RED))
+				.outputFormat("png")
+				.listener(listener)
+				.toOutputStream(os);
+
+		// then
+		assertEquals(
+				Arrays.asList(Stage.READ, Stage.RESIZE, Stage.FILTER, Stage.FILTER, Stage.WRITE),
+				listener.stages()
+		);
+		for (ThumbnailStageEvent event : listener.events) {
+			assertNull(event.getFailure());
+			assertTrue(event.getDurationNanos() >= 0);
+			assertNotNull(event.getSource());
+			assertEquals("png", event.getSourceFormatName().toLowerCase());
+			assertEquals(200, event.getSourceWidth());
+			assertEquals(100, event.getSourceHeight());
+		}
+
+		ThumbnailStageEvent read = listener.events.get(0);
+		assertEquals(-1, read.getThumbnailWidth());
+		assertNull(read.getResizerClass());
+
+		ThumbnailStageEvent resize = listener.events.get(1);
+		assertEquals(50, resize.getThumbnailWidth());
+		assertEquals(25, resize.getThumbnailHeight());
+		assertNotNull(resize.getResizerClass());
+		assertNull(resize.getFilterClass());
+
+		assertEquals(Transparency.class, listener.events.get(2).getFilterClass());
+		assertEquals(Colorize.class, listener.events.get(3).getFilterClass());
+		assertEquals(resize.getResizerClass(), listener.events.get(3).getResizerClass());
+
+		ThumbnailStageEvent write = listener.events.get(4);
+		assertEquals(os.size(), write.getBytesWritten());
+		assertEquals(-1, resize.getBytesWritten());
+	}
+
+	@Test
+	public void resizerWhichWasUsedIsReported() throws IOException {
+		// given
+		RecordingListener listener = new RecordingListener();
+		List<Class<?>> used = new ArrayList<Class<?>>();
+		ResizerFactory alternating = new ResizerFactory() {
+			private int calls;
+
+			public Resizer getResizer() {
+				return getResizer(null, null);
+			}
+
+			public Resizer getResizer(Dimension originalSize, Dimension thumbnailSize) {
+				Resizer resizer = calls++ % 2 == 0 ? new BilinearResizer() : new BicubicResizer();
+				used.add(resizer.getClass());
+				return resizer;
+			}
+		};
+
+		// when
+		Thumbnails.of(new ByteArrayInputStream(png(200, 100)))
+				.size(50, 50)
+				.resizerFactory(alternating)
+				.outputFormat("png")
+				.listener(listener)
+				.toOutputStream(new ByteArrayOutputStream());
+
+		// then
+		assertEquals(Collections.singletonList(BilinearResizer.class), used);
+		assertEquals(BilinearResizer.class, listener.events.get(1).getResizerClass());
+	}
+
+	@Test
+	public void bytesWrittenToFileAreReported() throws IOException {
+		// given
+		RecordingListener listener = new RecordingListener();
+		File source = File.createTempFile("listener", ".png");
+		File destination = File.createTempFile("listener", ".jpg");
+		source.deleteOnExit();
+		destination.deleteOnExit();
+		ImageIO.write(new BufferedImage(200, 100, BufferedImage.TYPE_INT_RGB), "png", source);
+
+		// when
+		Thumbnails.of(source)
+				.size(50, 50)
+				.outputFormat("jpg")
+				.allowOverwrite(true)
+				.listener(listener)
+				.toFile(destination);
+
+		// then
+		assertEquals(Arrays.asList(Stage.READ, Stage.RESIZE, Stage.WRITE), listener.stages());
+		assertEquals(source, listener.events.get(0).getSource());
+		assertEquals(destination.length(), listener.events.get(2).getBytesWritten());
+	}
+
+	@Test
+	public void registeredListenerIsToldAboutAllThumbnails() throws IOException {
+		// given
+		RecordingListener listener = new RecordingListener();
+		Thumbnailator.addListener(listener);
+
+		// when
+		try {
+			Thumbnails.of(new ByteArrayInputStream(png(200, 100)), new ByteArrayInputStream(png(100, 100)))
+					.size(50, 50)
+					.asBufferedImages();
+		} finally {
+			Thumbnailator.removeListener(listener);
+		}
+
+		// then
+		assertEquals(
+				Arrays.asList(Stage.READ, Stage.RESIZE, Stage.WRITE, Stage.READ, Stage.RESIZE, Stage.WRITE),
+				listener.stages()
+		);
+		assertEquals(-1, listener.events.get(2).getBytesWritten());
+	}
+
+	@Test
+	public void removedListenerIsNotTold() throws IOException {
+		// given
+		RecordingListener listener = new RecordingListener();
+		Thumbnailator.addListener(listener);
+		Thumbnailator.removeListener(listener);
+
+		// when
+		Thumbnails.of(new ByteArrayInputStream(png(200, 100)))
+				.size(50, 50)
+				.asBufferedImage();
+
+		// then
+		assertTrue(listener.events.isEmpty());
+	}
+
+	@Test
+	public void registeredAndBuilderListenersAreBothTold() throws IOException {
+		// given
+		RecordingListener registered = new RecordingListener();
+		RecordingListener builder = new RecordingListener();
+		Thumbnailator.addListener(registered);
+
+		// when
+		try {
+			Thumbnails.of(new ByteArrayInputStream(png(200, 100)))
+					.size(50, 50)
+					.listener(builder)
+					.asBufferedImage();
+		} finally {
+			Thumbnailator.removeListener(registered);
+		}
+
+		// then
+		assertEquals(3, registered.events.size());
+		assertEquals(registered.events, builder.events);
+	}
+
+	@Test
+	public void failedStageIsReported() {
+		// given
+		RecordingListener listener = new RecordingListener();
+		Thumbnails.Builder<?> builder = Thumbnails.of(new ByteArrayInputStream(new byte[] {1, 2, 3, 4}))
+				.size(50, 50)
+				.listener(listener);
+
+		// when
+		IOException e = assertThrows(IOException.class, builder::asBufferedImage);
+
+		// then
+		assertEquals(Arrays.asList(Stage.READ), listener.stages());
+		assertSame(e, listener.events.get(0).getFailure());
+		assertEquals(-1, listener.events.get(0).getSourceWidth());
+	}
+
+	@Test
+	public void failingListenerDoesNotFailThumbnail() throws IOException {
+		// given
+		ThumbnailListener listener = new ThumbnailListener() {
+			public void stageCompleted(ThumbnailStageEvent event) {
+				throw new IllegalStateException();
+			}
+		};
+
+		// when
+		BufferedImage thumbnail = Thumbnails.of(new ByteArrayInputStream(png(200, 100)))
+				.size(50, 50)
+				.listener(listener)
+				.asBufferedImage();
+
+		// then
+		assertEquals(50, thumbnail.getWidth());
+	}
+
+	@Test
+	public void passThroughIsReportedAsWrite() throws IOException {
+		// given
+		System.setProperty("thumbnailator.passThrough", "true");
+		RecordingListener listener = new RecordingListener();
+		byte[] source = png(50, 25);
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+		// when
+		Thumbnails.of(new ByteArrayInputStream(source))
+				.scale(1.0)
+				.outputFormat("png")
+				.listener(listener)
+				.toOutputStream(os);
+
+		// then
+		assertArrayEquals(source, os.toByteArray());
+		assertEquals(Arrays.asList(Stage.WRITE), listener.stages());
+		assertEquals(source.length, listener.events.get(0).getBytesWritten());
+	}
+
+	@Test
+	public void planKeepsListener() throws IOException {
+		// given
+		RecordingListener listener = new RecordingListener();
+		ThumbnailPlan plan = Thumbnails.newPlan()
+				.size(50, 50)
+				.outputFormat("png")
+				.listener(listener)
+				.toPlan();
+
+		// when
+		plan.apply(new ByteArrayInputStream(png(200, 100)), new ByteArrayOutputStream());
+		plan.apply(new ByteArrayInputStream(png(100, 200)), new ByteArrayOutputStream());
+
+		// then
+		assertEquals(6, listener.events.size());
+		assertEquals(100, listener.events.get(3).getSourceWidth());
+	}
+
+	@Test
+	public void listenerCannotBeNull() {
+		// when, then
+		assertThrows(NullPointerException.class, () -> Thumbnailator.addListener(null));
+		assertThrows(NullPointerException.class,
+				() -> Thumbnails.of(new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB)).listener(null));
+	}
+
+	@Test
+	public void listenerCannotBeSetTwice() {
+		// given
+		RecordingListener listener = new RecordingListener();
+		Thumbnails.Builder<?> builder = Thumbnails.of(new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB))
+				.listener(listener);
+
+		// when, then
+		assertThrows(IllegalStateException.class, () -> builder.listener(listener));
+	}
+}
@@ -0,0 +1,388 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2022 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.evonit.thumbnailator2.builders.ImageAllocator;
+import net.evonit.thumbnailator2.filters.ImageFilter;
+import net.evonit.thumbnailator2.tasks.io.AbstractImageSink;
+import net.evonit.thumbnailator2.tasks.io.BufferedImageSink;
+import net.evonit.thumbnailator2.tasks.io.BufferedImageSource;
+import net.evonit.thumbnailator2.tasks.io.InputStreamImageSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static net.evonit.thumbnailator2.test.TestImages.images;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the {@link ThumbnailPipeline}.
+ */
+public class ThumbnailPipelineTest {
+
+	private ThumbnailPipeline pipeline;
+
+	@BeforeEach
+	public void createPipeline() {
+		pipeline = new ThumbnailPipeline(2, 2, 2, 4);
+	}
+
+	@AfterEach
+	public void closePipeline() {
+		pipeline.close();
+	}
+
+	/**
+	 * An allocator which keeps track of the images which have been
+	 * allocated and not released.
+	 */
+	private static final class TrackingAllocator implements ImageAllocator {
+		private final Set<BufferedImage> outstanding =
+				Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+
+		public BufferedImage allocate(int width, int height, int imageType) {
+			BufferedImage img = new BufferedImage(width, height, imageType);
+			outstanding.add(img);
+			return img;
+		}
+
+		public BufferedImage allocateScratch(int width, int height, int imageType) {
+			return allocate(width, height, imageType);
+		}
+
+		public void release(BufferedImage img) {
+			outstanding.remove(img);
+		}
+
+		void awaitAllReleased() throws InterruptedException {
+			for (int i = 0; i < 100 && !outstanding.isEmpty(); i++) {
+				Thread.sleep(50);
+			}
+			assertTrue(outstanding.isEmpty(), "not released: " + outstanding.size());
+		}
+	}
+
+	@Test
+	public void submitCreatesThumbnail() throws Exception {
+		// given
+		ThumbnailPlan plan = Thumbnails.newPlan().size(50, 50).toPlan();
+		BufferedImageSink destination = new BufferedImageSink();
+
+		// when
+		pipeline.submit(plan, new BufferedImageSource(new BufferedImage(200, 100, BufferedImage.TYPE_INT_RGB)), destination)
+				.get(10, TimeUnit.SECONDS);
+
+		// then
+		assertEquals(50, destination.getSink().getWidth());
+		assertEquals(25, destination.getSink().getHeight());
+	}
+
+	@Test
+	public void builderKeepsOrderOfSources() throws IOException {
+		// given
+		List<BufferedImage> images = images(20);
+
+		// when
+		List<BufferedImage> thumbnails = Thumbnails.fromImages(images)
+				.size(400, 40)
+				.pipeline(pipeline)
+				.asBufferedImages();
+
+		// then
+		assertEquals(20, thumbnails.size());
+		for (int i = 0; i < thumbnails.size(); i++) {
+			assertEquals(10 * (i + 1), thumbnails.get(i).getWidth());
+		}
+	}
+
+	@Test
+	public void statisticsCountEachStage() throws IOException {
+		// when
+		Thumbnails.fromImages(images(10))
+				.size(40, 40)
+				.pipeline(pipeline)
+				.asBufferedImages();
+
+		// then
+		for (ThumbnailPipeline.Stage stage : new ThumbnailPipeline.Stage[] {
+				pipeline.getDecodeStage(), pipeline.getResizeStage(), pipeline.getEncodeStage()
+		}) {
+			assertEquals(10, stage.getCompletedCount());
+			assertEquals(0, stage.getQueueDepth());
+			assertEquals(4, stage.getQueueCapacity());
+			assertEquals(2, stage.getThreadCount());
+			assertTrue(stage.getUtilization() > 0.0);
+			assertTrue(stage.getUtilization() <= 1.0);
+		}
+		assertEquals("decode", pipeline.getDecodeStage().getName());
+		assertEquals("resize", pipeline.getResizeStage().getName());
+		assertEquals("encode", pipeline.getEncodeStage().getName());
+	}
+
+	@Test
+	public void decodeFailureCompletesFutureExceptionally() throws Exception {
+		// given
+		ThumbnailPlan plan = Thumbnails.newPlan().size(50, 50).toPlan();
+		InputStreamImageSource source = new InputStreamImageSource(
+				new ByteArrayInputStream(new byte[] {1, 2, 3, 4})
+		);
+
+		// when
+		CompletableFuture<Void> future = pipeline.submit(plan, source, new BufferedImageSink());
+
+		// then
+		ExecutionException e = assertThrows(ExecutionException.class, () ->
+				future.get(10, TimeUnit.SECONDS)
+		);
+		assertTrue(e.getCause() instanceof IOException);
+	}
+
+	@Test
+	public void encodeFailureCompletesFutureExceptionally() throws Exception {
+		// given
+		ThumbnailPlan plan = Thumbnails.newPlan().size(50, 50).toPlan();
+		AbstractImageSink<Void> failing = new AbstractImageSink<Void>() {
+			public void write(BufferedImage img) throws IOException {
+				throw new IOException("failed");
+			}
+
+			public Void getSink() {
+				return null;
+			}
+		};
+
+		// when
+		CompletableFuture<Void> future = pipeline.submit(
+				plan, new BufferedImageSource(new BufferedImage(200, 100, BufferedImage.TYPE_INT_RGB)), failing
+		);
+
+		// then
+		ExecutionException e = assertThrows(ExecutionException.class, () ->
+				future.get(10, TimeUnit.SECONDS)
+		);
+		assertEquals("failed", e.getCause().getMessage());
+	}
+
+	@Test
+	public void fullQueuesHoldBackSubmission() throws Exception {
+		// given
+		ThumbnailPipeline small = new ThumbnailPipeline(1, 1, 1, 1);
+		final CountDownLatch resizeBlocked = new CountDownLatch(1);
+		ThumbnailPlan plan = Thumbnails.newPlan()
+				.size(10, 10)
+				.addFilter(new ImageFilter() {
+					public BufferedImage apply(BufferedImage img) {
+						try {
+							resizeBlocked.await();
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+						return img;
+					}
+				})
+				.toPlan();
+		AtomicInteger submitted = new AtomicInteger();
+		List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+		try {
+			// when
+			Thread submitter = new Thread(() -> {
+				for (int i = 0; i < 8; i++) {
+					futures.add(small.submit(
+							plan,
+							new BufferedImageSource(new BufferedImage(20, 20, BufferedImage.TYPE_INT_RGB)),
+							new BufferedImageSink()
+					));
+					submitted.incrementAndGet();
+				}
+			});
+			submitter.start();
+			Thread.sleep(500);
+
+			// then
+			// One image in each thread and in each queue before the encode stage.
+			int heldBack = submitted.get();
+			assertTrue(heldBack < 8, "submitted: " + heldBack);
+			assertTrue(heldBack >= 3, "submitted: " + heldBack);
+
+			resizeBlocked.countDown();
+			submitter.join(10000);
+			assertEquals(8, submitted.get());
+			for (CompletableFuture<Void> future : futures) {
+				future.get(10, TimeUnit.SECONDS);
+			}
+
+		} finally {
+			resizeBlocked.countDown();
+			small.close();
+		}
+	}
+
+	@Test
+	public void closeCancelsQueuedThumbnails() throws Exception {
+		// given
+		ThumbnailPipeline small = new ThumbnailPipeline(1, 1, 1, 4);
+		final CountDownLatch resizeBlocked = new CountDownLatch(1);
+		ThumbnailPlan plan = Thumbnails.newPlan()
+				.size(10, 10)
+				.addFilter(new ImageFilter() {
+					public BufferedImage apply(BufferedImage img) {
+						try {
+							resizeBlocked.await();
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+						return img;
+					}
+				})
+				.toPlan();
+		List<CompletableFuture<Void>> futures = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			futures.add(small.submit(
+					plan,
+					new BufferedImageSource(new BufferedImage(20, 20, BufferedImage.TYPE_INT_RGB)),
+					new BufferedImageSink()
+			));
+		}
+		Thread.sleep(200);
+
+		// when
+		small.close();
+		resizeBlocked.countDown();
+
+		// then
+		int cancelled = 0;
+		for (CompletableFuture<Void> future : futures) {
+			try {
+				future.get(10, TimeUnit.SECONDS);
+			} catch (CancellationException e) {
+				assertTrue(future.isCancelled());
+				cancelled++;
+			}
+		}
+		assertTrue(cancelled > 0);
+		assertThrows(IllegalStateException.class, () ->
+				small.submit(plan, new BufferedImageSource(new BufferedImage(20, 20, BufferedImage.TYPE_INT_RGB)), new BufferedImageSink())
+		);
+	}
+
+	@Test
+	public void constructorRejectsEmptyStages() {
+		assertThrows(IllegalArgumentException.class, () -> new ThumbnailPipeline(0, 1, 1, 1));
+		assertThrows(IllegalArgumentException.class, () -> new ThumbnailPipeline(1, 0, 1, 1));
+		assertThrows(IllegalArgumentException.class, () -> new ThumbnailPipeline(1, 1, 0, 1));
+		assertThrows(IllegalArgumentException.class, () -> new ThumbnailPipeline(1, 1, 1, 0));
+	}
+
+	@Test
+	public void pipelineCannotBeCombinedWithExecutor() {
+		assertThrows(IllegalStateException.class, () ->
+				Thumbnails.fromImages(images(1))
+						.executor(Executors.newSingleThreadExecutor())
+						.pipeline(pipeline)
+		);
+		assertThrows(IllegalStateException.class, () ->
+				Thumbnails.fromImages(images(1))
+						.pipeline(pipeline)
+						.executor(Executors.newSingleThreadExecutor())
+		);
+	}
+
+	@Test
+	public void failedThumbnailReleasesImages() throws Exception {
+		// given
+		TrackingAllocator allocator = new TrackingAllocator();
+		ThumbnailPlan plan = Thumbnails.newPlan().size(50, 50).imageAllocator(allocator).toPlan();
+		AbstractImageSink<Void> failing = new AbstractImageSink<Void>() {
+			public void write(BufferedImage img) throws IOException {
+				throw new IOException("failed");
+			}
+
+			public Void getSink() {
+				return null;
+			}
+		};
+
+		// when
+		CompletableFuture<Void> future = pipeline.submit(
+				plan, new BufferedImageSource(new BufferedImage(200, 100, BufferedImage.TYPE_INT_RGB)), failing
+		);
+
+		// then
+		assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+		allocator.awaitAllReleased();
+	}
+
+	@Test
+	public void cancelledThumbnailReleasesImages() throws Exception {
+		// given
+		TrackingAllocator allocator = new TrackingAllocator();
+		final CountDownLatch filterStarted = new CountDownLatch(1);
+		final CountDownLatch filterBlocked = new CountDownLatch(1);
+		ThumbnailPlan plan = Thumbnails.newPlan()
+				.size(50, 50)
+				.imageAllocator(allocator)
+				.addFilter(new ImageFilter() {
+					public BufferedImage apply(BufferedImage img) {
+						filterStarted.countDown();
+						try {
+							filterBlocked.await();
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+						return img;
+					}
+				})
+				.toPlan();
+		CompletableFuture<Void> future = pipeline.submit(
+				plan, new BufferedImageSource(new BufferedImage(200, 100, BufferedImage.TYPE_INT_RGB)), new BufferedImageSink()
+		);
+		assertTrue(filterStarted.await(10, TimeUnit.SECONDS));
+
+		// when
+		future.cancel(false);
+		filterBlocked.countDown();
+
+		// then
+		allocator.awaitAllReleased();
+	}
+}
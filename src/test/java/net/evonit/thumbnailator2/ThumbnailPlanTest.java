@@ -0,0 +1,269 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2022 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.imageio.ImageIO;
+
+import net.evonit.thumbnailator2.filters.Canvas;
+import net.evonit.thumbnailator2.filters.ImageFilter;
+import net.evonit.thumbnailator2.geometry.Positions;
+import net.evonit.thumbnailator2.tasks.io.jpeg.JpegTestImages;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the {@link ThumbnailPlan} compiled by
+ * {@link Thumbnails.Builder#toPlan()}.
+ */
+public class ThumbnailPlanTest {
+
+	private static final BufferedImage SOURCE =
+			JpegTestImages.createPhoto(400, 300, BufferedImage.TYPE_INT_RGB);
+
+	private static void assertSamePixels(BufferedImage expected, BufferedImage actual) {
+		assertEquals(expected.getWidth(), actual.getWidth());
+		assertEquals(expected.getHeight(), actual.getHeight());
+		for (int y = 0; y < expected.getHeight(); y++) {
+			for (int x = 0; x < expected.getWidth(); x++) {
+				assertEquals(expected.getRGB(x, y), actual.getRGB(x, y));
+			}
+		}
+	}
+
+	@Test
+	public void planCreatesSameThumbnailAsBuilder() throws IOException {
+		// given
+		BufferedImage expected = Thumbnails.of(SOURCE)
+				.size(100, 100)
+				.asBufferedImage();
+
+		// when
+		ThumbnailPlan plan = Thumbnails.newPlan()
+				.size(100, 100)
+				.toPlan();
+		BufferedImage thumbnail = plan.apply(SOURCE);
+
+		// then
+		assertSamePixels(expected, thumbnail);
+	}
+
+	@Test
+	public void planCanBeAppliedToManySources() throws IOException {
+		// given
+		ThumbnailPlan plan = Thumbnails.newPlan()
+				.size(80, 80)
+				.toPlan();
+
+		// when
+		BufferedImage landscape = plan.apply(new BufferedImage(200, 100, BufferedImage.TYPE_INT_RGB));
+		BufferedImage portrait = plan.apply(new BufferedImage(100, 200, BufferedImage.TYPE_INT_RGB));
+		BufferedImage again = plan.apply(new BufferedImage(200, 100, BufferedImage.TYPE_INT_RGB));
+
+		// then
+		assertEquals(80, landscape.getWidth());
+		assertEquals(40, landscape.getHeight());
+		assertEquals(40, portrait.getWidth());
+		assertEquals(80, portrait.getHeight());
+		assertEquals(80, again.getWidth());
+		assertEquals(40, again.getHeight());
+	}
+
+	@Test
+	public void exifOrientationOfOneSourceDoesNotAffectTheNext() throws IOException {
+		// given
+		ThumbnailPlan plan = Thumbnails.newPlan()
+				.size(100, 100)
+				.toPlan();
+		File rotated = new File("src/test/resources/Exif/orientation_6.jpg");
+		File upright = new File("src/test/resources/Exif/orientation_1.jpg");
+		BufferedImage expectedRotated = Thumbnails.of(rotated).size(100, 100).asBufferedImage();
+		BufferedImage expectedUpright = Thumbnails.of(upright).size(100, 100).asBufferedImage();
+
+		for (int i = 0; i < 3; i++) {
+			File rotatedOut = File.createTempFile("thumbnailator-plan-", ".jpg");
+			File uprightOut = File.createTempFile("thumbnailator-plan-", ".jpg");
+			try {
+				// when
+				plan.apply(rotated, rotatedOut);
+				plan.apply(upright, uprightOut);
+
+				// then
+				BufferedImage rotatedThumbnail = ImageIO.read(rotatedOut);
+				BufferedImage uprightThumbnail = ImageIO.read(uprightOut);
+				assertEquals(expectedRotated.getWidth(), rotatedThumbnail.getWidth());
+				assertEquals(expectedRotated.getHeight(), rotatedThumbnail.getHeight());
+				assertEquals(expectedUpright.getWidth(), uprightThumbnail.getWidth());
+				assertEquals(expectedUpright.getHeight(), uprightThumbnail.getHeight());
+
+			} finally {
+				rotatedOut.delete();
+				uprightOut.delete();
+			}
+		}
+		assertEquals(0, plan.getParameter().getImageFilters().size());
+	}
+
+	@Test
+	public void planIsNotAffectedByLaterChangesToBuilder() throws IOException {
+		// given
+		Thumbnails.Builder<Void> builder = Thumbnails.newPlan().size(100, 100);
+		ThumbnailPlan plan = builder.toPlan();
+		String format = plan.getParameter().getOutputFormat();
+
+		// when
+		builder.outputFormat("png").outputQuality(0.5);
+
+		// then
+		assertEquals(format, plan.getParameter().getOutputFormat());
+		assertTrue(Float.isNaN(plan.getParameter().getOutputQuality()));
+		assertEquals(100, plan.apply(SOURCE).getWidth());
+	}
+
+	@Test
+	public void getParameterReturnsCopy() {
+		// given
+		ThumbnailPlan plan = Thumbnails.newPlan()
+				.size(100, 100)
+				.toPlan();
+
+		// when
+		ThumbnailParameter param = plan.getParameter();
+		param.getImageFilters().add(new Canvas(10, 10, Positions.CENTER));
+
+		// then
+		assertNotSame(param, plan.getParameter());
+		assertEquals(0, plan.getParameter().getImageFilters().size());
+	}
+
+	@Test
+	public void cropIsAddedOnceHoweverOftenBuilderIsUsed() throws IOException {
+		// given
+		Thumbnails.Builder<BufferedImage> builder = Thumbnails.of(SOURCE, SOURCE, SOURCE)
+				.size(50, 50)
+				.crop(Positions.CENTER);
+
+		// when
+		builder.asBufferedImages();
+		builder.asBufferedImages();
+		List<ImageFilter> filters = builder.toPlan().getParameter().getImageFilters();
+
+		// then
+		assertEquals(1, filters.size());
+		assertTrue(filters.get(0) instanceof Canvas);
+		for (BufferedImage thumbnail : builder.asBufferedImages()) {
+			assertEquals(50, thumbnail.getWidth());
+			assertEquals(50, thumbnail.getHeight());
+		}
+	}
+
+	@Test
+	public void sizeWithOneDimensionCanBeUsedRepeatedly() throws IOException {
+		// given
+		Thumbnails.Builder<BufferedImage> builder = Thumbnails.of(SOURCE).width(100);
+
+		// when
+		ThumbnailPlan first = builder.toPlan();
+		builder.height(50);
+		BufferedImage thumbnail = builder.asBufferedImage();
+
+		// then
+		assertEquals(100, first.apply(SOURCE).getWidth());
+		assertEquals(50, thumbnail.getHeight());
+		assertEquals(67, thumbnail.getWidth());
+	}
+
+	@Test
+	public void planWritesStreams() throws IOException {
+		// given
+		ByteArrayOutputStream source = new ByteArrayOutputStream();
+		ImageIO.write(SOURCE, "png", source);
+		ThumbnailPlan plan = Thumbnails.newPlan()
+				.size(100, 100)
+				.outputFormat("jpg")
+				.toPlan();
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+		// when
+		plan.apply(new ByteArrayInputStream(source.toByteArray()), os);
+
+		// then
+		BufferedImage thumbnail = ImageIO.read(new ByteArrayInputStream(os.toByteArray()));
+		assertEquals(100, thumbnail.getWidth());
+		assertEquals(75, thumbnail.getHeight());
+	}
+
+	@Test
+	public void planCanBeSharedByThreads() throws Exception {
+		// given
+		final ThumbnailPlan plan = Thumbnails.newPlan()
+				.size(120, 120)
+				.toPlan();
+		final BufferedImage expected = plan.apply(SOURCE);
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+
+		try {
+			// when
+			List<Future<BufferedImage>> results = new ArrayList<>();
+			for (int i = 0; i < 64; i++) {
+				results.add(executor.submit(new Callable<BufferedImage>() {
+					public BufferedImage call() throws IOException {
+						return plan.apply(SOURCE);
+					}
+				}));
+			}
+
+			// then
+			for (Future<BufferedImage> result : results) {
+				assertSamePixels(expected, result.get());
+			}
+
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void toPlanWithoutSizeThrows() {
+		// given
+		Thumbnails.Builder<Void> builder = Thumbnails.newPlan();
+
+		// when, then
+		assertThrows(IllegalStateException.class, builder::toPlan);
+	}
+}
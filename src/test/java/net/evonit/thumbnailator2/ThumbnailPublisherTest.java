@@ -0,0 +1,304 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2022 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import net.evonit.thumbnailator2.tasks.io.jpeg.JpegTestImages;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link ThumbnailPublisher}.
+ */
+public class ThumbnailPublisherTest {
+
+	private ExecutorService executor;
+
+	@BeforeEach
+	public void createExecutor() {
+		executor = Executors.newFixedThreadPool(4);
+	}
+
+	@AfterEach
+	public void shutdownExecutor() {
+		executor.shutdownNow();
+	}
+
+	private static BufferedImage[] images(int count) {
+		BufferedImage[] images = new BufferedImage[count];
+		for (int i = 0; i < count; i++) {
+			images[i] = JpegTestImages.createPhoto(200, 150, BufferedImage.TYPE_INT_RGB);
+		}
+		return images;
+	}
+
+	/**
+	 * A subscriber which records the signals it receives.
+	 */
+	private static final class RecordingSubscriber<T> implements Flow.Subscriber<ThumbnailResult<T>> {
+		private final BlockingQueue<ThumbnailResult<T>> results = new LinkedBlockingQueue<>();
+		private final CountDownLatch terminated = new CountDownLatch(1);
+		private final AtomicReference<Throwable> error = new AtomicReference<>();
+		private volatile boolean completed;
+		private Flow.Subscription subscription;
+
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+		}
+
+		public void onNext(ThumbnailResult<T> result) {
+			results.add(result);
+		}
+
+		public void onError(Throwable t) {
+			error.set(t);
+			terminated.countDown();
+		}
+
+		public void onComplete() {
+			completed = true;
+			terminated.countDown();
+		}
+
+		private ThumbnailResult<T> take() throws InterruptedException {
+			ThumbnailResult<T> result = results.poll(10, TimeUnit.SECONDS);
+			assertNotNull(result, "no result received");
+			return result;
+		}
+	}
+
+	@Test
+	public void publishesAllThumbnailsWithTheirSources() throws Exception {
+		// given
+		BufferedImage[] sources = images(5);
+		RecordingSubscriber<BufferedImage> subscriber = new RecordingSubscriber<>();
+
+		// when
+		ThumbnailPublisher.of(Thumbnails.of(sources).size(100, 100).executor(executor))
+				.subscribe(subscriber);
+		subscriber.subscription.request(Long.MAX_VALUE);
+
+		// then
+		assertTrue(subscriber.terminated.await(10, TimeUnit.SECONDS));
+		assertTrue(subscriber.completed);
+		assertEquals(5, subscriber.results.size());
+
+		Set<Integer> indices = new HashSet<>();
+		for (ThumbnailResult<BufferedImage> result : subscriber.results) {
+			assertTrue(result.isSuccessful());
+			assertSame(sources[result.getIndex()], result.getSource());
+			assertEquals(100, result.getThumbnail().getWidth());
+			assertEquals(75, result.getThumbnail().getHeight());
+			indices.add(result.getIndex());
+		}
+		assertEquals(5, indices.size());
+	}
+
+	@Test
+	public void createsNoMoreThumbnailsThanRequested() throws Exception {
+		// given
+		AtomicInteger created = new AtomicInteger();
+		RecordingSubscriber<BufferedImage> subscriber = new RecordingSubscriber<>();
+		ThumbnailPublisher<BufferedImage> publisher = ThumbnailPublisher.of(
+				Thumbnails.of(images(10))
+						.size(100, 100)
+						.addFilter(img -> {
+							created.incrementAndGet();
+							return img;
+						})
+						.executor(executor)
+						.parallelism(4)
+		);
+		publisher.subscribe(subscriber);
+
+		// when
+		subscriber.subscription.request(2);
+		subscriber.take();
+		subscriber.take();
+		Thread.sleep(200);
+
+		// then
+		assertEquals(2, created.get());
+		assertEquals(0, subscriber.results.size());
+
+		// when
+		subscriber.subscription.request(1);
+		subscriber.take();
+		Thread.sleep(200);
+
+		// then
+		assertEquals(3, created.get());
+		assertFalse(subscriber.completed);
+	}
+
+	@Test
+	public void createsThumbnailsInParallelWithinTheWindow() throws Exception {
+		// given
+		CountDownLatch started = new CountDownLatch(3);
+		RecordingSubscriber<BufferedImage> subscriber = new RecordingSubscriber<>();
+		ThumbnailPublisher<BufferedImage> publisher = ThumbnailPublisher.of(
+				Thumbnails.of(images(3))
+						.size(100, 100)
+						.addFilter(img -> {
+							// Each thumbnail waits until all of them have started.
+							started.countDown();
+							try {
+								started.await(10, TimeUnit.SECONDS);
+							} catch (InterruptedException e) {
+								Thread.currentThread().interrupt();
+							}
+							return img;
+						})
+						.executor(executor)
+						.parallelism(3)
+		);
+
+		// when
+		publisher.subscribe(subscriber);
+		subscriber.subscription.request(3);
+
+		// then
+		assertTrue(subscriber.terminated.await(5, TimeUnit.SECONDS));
+		assertEquals(0, started.getCount());
+		assertEquals(3, subscriber.results.size());
+	}
+
+	@Test
+	public void failedThumbnailIsDeliveredAsResult() throws Exception {
+		// given
+		File missing = new File("src/test/resources/Thumbnailator/does-not-exist.jpg");
+		RecordingSubscriber<File> subscriber = new RecordingSubscriber<>();
+
+		// when
+		ThumbnailPublisher.of(Thumbnails.of(missing).size(100, 100).executor(executor))
+				.subscribe(subscriber);
+		subscriber.subscription.request(1);
+
+		// then
+		ThumbnailResult<File> result = subscriber.take();
+		assertFalse(result.isSuccessful());
+		assertSame(missing, result.getSource());
+		assertNull(result.getThumbnail());
+		assertTrue(result.getFailure() instanceof FileNotFoundException);
+		assertTrue(subscriber.terminated.await(10, TimeUnit.SECONDS));
+		assertTrue(subscriber.completed);
+	}
+
+	@Test
+	public void nonPositiveRequestSignalsError() throws Exception {
+		// given
+		RecordingSubscriber<BufferedImage> subscriber = new RecordingSubscriber<>();
+		ThumbnailPublisher.of(Thumbnails.of(images(2)).size(100, 100).executor(executor))
+				.subscribe(subscriber);
+
+		// when
+		subscriber.subscription.request(0);
+
+		// then
+		assertTrue(subscriber.terminated.await(10, TimeUnit.SECONDS));
+		assertTrue(subscriber.error.get() instanceof IllegalArgumentException);
+		assertFalse(subscriber.completed);
+	}
+
+	@Test
+	public void cancelStopsDelivery() throws Exception {
+		// given
+		AtomicInteger created = new AtomicInteger();
+		RecordingSubscriber<BufferedImage> subscriber = new RecordingSubscriber<>();
+		ThumbnailPublisher.of(
+				Thumbnails.of(images(5))
+						.size(100, 100)
+						.addFilter(img -> {
+							created.incrementAndGet();
+							return img;
+						})
+						.executor(executor)
+		).subscribe(subscriber);
+		subscriber.subscription.request(1);
+		subscriber.take();
+
+		// when
+		subscriber.subscription.cancel();
+		subscriber.subscription.request(4);
+		Thread.sleep(200);
+
+		// then
+		assertEquals(1, created.get());
+		assertEquals(0, subscriber.results.size());
+		assertEquals(1, subscriber.terminated.getCount());
+	}
+
+	@Test
+	public void eachSubscriberReceivesAllThumbnails() throws Exception {
+		// given
+		ThumbnailPublisher<BufferedImage> publisher = ThumbnailPublisher.of(
+				Thumbnails.of(images(3)).size(100, 100).executor(executor)
+		);
+		List<RecordingSubscriber<BufferedImage>> subscribers = new ArrayList<>();
+
+		// when
+		for (int i = 0; i < 2; i++) {
+			RecordingSubscriber<BufferedImage> subscriber = new RecordingSubscriber<>();
+			publisher.subscribe(subscriber);
+			subscriber.subscription.request(Long.MAX_VALUE);
+			subscribers.add(subscriber);
+		}
+
+		// then
+		for (RecordingSubscriber<BufferedImage> subscriber : subscribers) {
+			assertTrue(subscriber.terminated.await(10, TimeUnit.SECONDS));
+			assertEquals(3, subscriber.results.size());
+		}
+	}
+
+	@Test
+	public void builderWithoutSizeThrows() {
+		// given
+		Thumbnails.Builder<BufferedImage> builder = Thumbnails.of(images(1));
+
+		// when, then
+		assertThrows(IllegalStateException.class, () -> ThumbnailPublisher.of(builder));
+	}
+}
@@ -0,0 +1,323 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2022 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.imageio.ImageIO;
+
+import net.evonit.thumbnailator2.tasks.io.jpeg.JpegTestImages;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the asynchronous output methods of {@link Thumbnails.Builder}.
+ */
+public class ThumbnailsBuilderAsyncTest {
+
+	private static final BufferedImage SOURCE =
+			JpegTestImages.createPhoto(400, 300, BufferedImage.TYPE_INT_RGB);
+
+	private ExecutorService executor;
+
+	@BeforeEach
+	public void createExecutor() {
+		executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "async-test"));
+	}
+
+	@AfterEach
+	public void shutdownExecutor() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * A stream which waits at the given position until it is released.
+	 */
+	private static final class BlockingInputStream extends FilterInputStream {
+		private final long blockAt;
+		private final CountDownLatch reached = new CountDownLatch(1);
+		private final CountDownLatch released = new CountDownLatch(1);
+		private long position;
+
+		private BlockingInputStream(InputStream in, long blockAt) {
+			super(in);
+			this.blockAt = blockAt;
+		}
+
+		private void await() throws IOException {
+			if (position >= blockAt) {
+				reached.countDown();
+				try {
+					released.await();
+				} catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+			}
+		}
+
+		@Override
+		public int read() throws IOException {
+			await();
+			int b = super.read();
+			if (b != -1) {
+				position++;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			await();
+			int n = super.read(b, off, (int)Math.max(1, Math.min(len, blockAt - position > 0 ? blockAt - position : len)));
+			if (n > 0) {
+				position += n;
+			}
+			return n;
+		}
+	}
+
+	@Test
+	public void asBufferedImageAsyncRunsOnExecutor() throws Exception {
+		// given
+		AtomicReference<String> threadName = new AtomicReference<>();
+
+		// when
+		BufferedImage thumbnail = Thumbnails.of(SOURCE)
+				.size(100, 100)
+				.addFilter(img -> {
+					threadName.set(Thread.currentThread().getName());
+					return img;
+				})
+				.asBufferedImageAsync(executor)
+				.get(10, TimeUnit.SECONDS);
+
+		// then
+		assertEquals(100, thumbnail.getWidth());
+		assertEquals(75, thumbnail.getHeight());
+		assertEquals("async-test", threadName.get());
+	}
+
+	@Test
+	public void builderExecutorIsUsedByDefault() throws Exception {
+		// given
+		AtomicReference<String> threadName = new AtomicReference<>();
+
+		// when
+		Thumbnails.of(SOURCE)
+				.size(100, 100)
+				.addFilter(img -> {
+					threadName.set(Thread.currentThread().getName());
+					return img;
+				})
+				.executor(executor)
+				.asBufferedImageAsync()
+				.get(10, TimeUnit.SECONDS);
+
+		// then
+		assertEquals("async-test", threadName.get());
+	}
+
+	@Test
+	public void toFileAsyncWritesFile() throws Exception {
+		// given
+		File outFile = File.createTempFile("thumbnailator-async-", ".png");
+
+		try {
+			// when
+			File written = Thumbnails.of(SOURCE)
+					.size(100, 100)
+					.toFileAsync(outFile, executor)
+					.get(10, TimeUnit.SECONDS);
+
+			// then
+			assertEquals(outFile, written);
+			assertEquals(100, ImageIO.read(outFile).getWidth());
+
+		} finally {
+			outFile.delete();
+		}
+	}
+
+	@Test
+	public void toOutputStreamAsyncWritesStream() throws Exception {
+		// given
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+		// when
+		Thumbnails.of(SOURCE)
+				.size(100, 100)
+				.outputFormat("png")
+				.toOutputStreamAsync(os, executor)
+				.get(10, TimeUnit.SECONDS);
+
+		// then
+		assertEquals(100, ImageIO.read(new ByteArrayInputStream(os.toByteArray())).getWidth());
+	}
+
+	@Test
+	public void toOutputStreamAsyncWithoutFormatThrows() {
+		assertThrows(IllegalStateException.class, () ->
+				Thumbnails.of(SOURCE)
+						.size(100, 100)
+						.toOutputStreamAsync(new ByteArrayOutputStream(), executor)
+		);
+	}
+
+	@Test
+	public void failureCompletesFutureExceptionally() {
+		// given
+		InputStream is = new ByteArrayInputStream(new byte[] {1, 2, 3, 4});
+
+		// when
+		// The Exif metadata is not read, as reading it scans the whole image.
+		CompletableFuture<BufferedImage> future = Thumbnails.of(is)
+				.size(100, 100)
+				.useExifOrientation(false)
+				.asBufferedImageAsync(executor);
+
+		// then
+		ExecutionException e = assertThrows(ExecutionException.class, () ->
+				future.get(10, TimeUnit.SECONDS)
+		);
+		assertTrue(e.getCause() instanceof IOException);
+	}
+
+	@Test
+	public void cancelBeforeStartSkipsThumbnail() throws Exception {
+		// given
+		List<Runnable> queued = new ArrayList<>();
+		AtomicLong read = new AtomicLong();
+		ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+		ImageIO.write(SOURCE, "png", encoded);
+		InputStream is = new FilterInputStream(new ByteArrayInputStream(encoded.toByteArray())) {
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				read.incrementAndGet();
+				return super.read(b, off, len);
+			}
+		};
+		CompletableFuture<BufferedImage> future = Thumbnails.of(is)
+				.size(100, 100)
+				.asBufferedImageAsync(queued::add);
+
+		// when
+		assertTrue(future.cancel(true));
+		queued.get(0).run();
+
+		// then
+		assertTrue(future.isCancelled());
+		assertEquals(0, read.get());
+	}
+
+	@Test
+	public void cancelAbortsImageReader() throws Exception {
+		// given
+		ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+		ImageIO.write(JpegTestImages.createPhoto(1600, 1600, BufferedImage.TYPE_INT_RGB), "jpg", encoded);
+		int length = encoded.size();
+		BlockingInputStream is = new BlockingInputStream(
+				new ByteArrayInputStream(encoded.toByteArray()), length / 4
+		);
+		// The Exif metadata is not read, as reading it scans the whole image.
+		CompletableFuture<BufferedImage> future = Thumbnails.of(is)
+				.size(100, 100)
+				.useExifOrientation(false)
+				.asBufferedImageAsync(executor);
+		assertTrue(is.reached.await(10, TimeUnit.SECONDS));
+
+		// when
+		future.cancel(true);
+		is.released.countDown();
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+		// then
+		assertTrue(future.isCancelled());
+		assertTrue(is.position < length, "read " + is.position + " of " + length);
+	}
+
+	@Test
+	public void cancelAbortsImageWriter() throws Exception {
+		// given
+		BufferedImage large = JpegTestImages.createPhoto(1600, 1600, BufferedImage.TYPE_INT_RGB);
+		ByteArrayOutputStream complete = new ByteArrayOutputStream();
+		Thumbnails.of(large).scale(1.0).outputFormat("png").toOutputStream(complete);
+
+		CountDownLatch reached = new CountDownLatch(1);
+		CountDownLatch released = new CountDownLatch(1);
+		ByteArrayOutputStream partial = new ByteArrayOutputStream();
+		OutputStream os = new FilterOutputStream(partial) {
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				reached.countDown();
+				try {
+					released.await();
+				} catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+				out.write(b, off, len);
+			}
+		};
+		CompletableFuture<Void> future = Thumbnails.of(large)
+				.scale(1.0)
+				.outputFormat("png")
+				.toOutputStreamAsync(os, executor);
+		assertTrue(reached.await(10, TimeUnit.SECONDS));
+
+		// when
+		future.cancel(true);
+		released.countDown();
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+		// then
+		assertTrue(future.isCancelled());
+		assertThrows(CancellationException.class, future::join);
+		assertTrue(partial.size() < complete.size(), "wrote " + partial.size() + " of " + complete.size());
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2022 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import net.evonit.thumbnailator2.tasks.ImageLimitExceededException;
+import net.evonit.thumbnailator2.tasks.io.ImageLimits;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link Thumbnails.Builder#limits(ImageLimits)}.
+ */
+public class ThumbnailsBuilderLimitsTest {
+
+	private static byte[] png(int width, int height) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", baos);
+		return baos.toByteArray();
+	}
+
+	@Test
+	public void imageExceedingLimitsFails() throws IOException {
+		// given
+		Thumbnails.Builder<?> builder = Thumbnails.of(new ByteArrayInputStream(png(200, 100)))
+				.size(50, 50)
+				.limits(new ImageLimits(0, 150, 0));
+
+		// when, then
+		assertThrows(ImageLimitExceededException.class, builder::asBufferedImage);
+		assertNull(ImageLimits.setThreadLimits(null));
+	}
+
+	@Test
+	public void imageWithinLimitsIsRead() throws IOException {
+		// when
+		BufferedImage thumbnail = Thumbnails.of(new ByteArrayInputStream(png(200, 100)))
+				.size(50, 50)
+				.limits(new ImageLimits(20000, 200, 1))
+				.asBufferedImage();
+
+		// then
+		assertEquals(50, thumbnail.getWidth());
+	}
+
+	@Test
+	public void planKeepsLimits() throws IOException {
+		// given
+		ThumbnailPlan plan = Thumbnails.newPlan()
+				.size(50, 50)
+				.limits(new ImageLimits(100, 0, 0))
+				.toPlan();
+
+		// when, then
+		assertThrows(ImageLimitExceededException.class,
+				() -> plan.apply(new ByteArrayInputStream(png(20, 20)), new ByteArrayOutputStream()));
+		plan.apply(new ByteArrayInputStream(png(10, 10)), new ByteArrayOutputStream());
+	}
+
+	@Test
+	public void givenImagesAreNotLimited() throws IOException {
+		// when
+		BufferedImage thumbnail = Thumbnails.of(new BufferedImage(200, 100, BufferedImage.TYPE_INT_RGB))
+				.size(50, 50)
+				.limits(new ImageLimits(1, 1, 1))
+				.asBufferedImage();
+
+		// then
+		assertEquals(50, thumbnail.getWidth());
+	}
+
+	@Test
+	public void limitsCannotBeNull() {
+		Thumbnails.Builder<BufferedImage> builder = Thumbnails.of(new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB));
+
+		assertThrows(NullPointerException.class, () -> builder.limits(null));
+	}
+
+	@Test
+	public void limitsCannotBeSetTwice() {
+		Thumbnails.Builder<BufferedImage> builder = Thumbnails.of(new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB))
+				.limits(ImageLimits.NONE);
+
+		assertThrows(IllegalStateException.class, () -> builder.limits(ImageLimits.NONE));
+	}
+}
@@ -0,0 +1,342 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2022 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+import net.evonit.thumbnailator2.filters.ImageFilter;
+import net.evonit.thumbnailator2.name.ConsecutivelyNumberedFilenames;
+import net.evonit.thumbnailator2.name.Rename;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static net.evonit.thumbnailator2.test.TestImages.images;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the concurrent creation of thumbnails by the output methods of
+ * {@link Thumbnails.Builder} which create multiple thumbnails.
+ */
+public class ThumbnailsBuilderParallelTest {
+
+	private File dir;
+
+	@BeforeEach
+	public void createDirectory() throws IOException {
+		dir = Files.createTempDirectory("thumbnailator-parallel-").toFile();
+	}
+
+	@AfterEach
+	public void deleteDirectory() {
+		for (File f : dir.listFiles()) {
+			f.delete();
+		}
+		dir.delete();
+	}
+
+	/**
+	 * Returns images whose widths are 100, 200, 300 and so on, so that the
+	 * thumbnail of each image can be told apart by its height.
+	 */
+	private List<File> files(int count) throws IOException {
+		List<File> files = new ArrayList<>();
+		int i = 0;
+		for (BufferedImage img : images(count)) {
+			File f = new File(dir, "source" + (i++) + ".png");
+			ImageIO.write(img, "png", f);
+			files.add(f);
+		}
+		return files;
+	}
+
+	/**
+	 * A filter which records how many thumbnails it is applied to at the
+	 * same time.
+	 */
+	private static final class ConcurrencyRecorder implements ImageFilter {
+		private final AtomicInteger active = new AtomicInteger();
+		private final AtomicInteger max = new AtomicInteger();
+
+		public BufferedImage apply(BufferedImage img) {
+			int n = active.incrementAndGet();
+			max.accumulateAndGet(n, Math::max);
+			try {
+				Thread.sleep(20);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				active.decrementAndGet();
+			}
+			return img;
+		}
+	}
+
+	@Test
+	public void asBufferedImagesKeepsOrderOfSources() throws IOException {
+		// given
+		List<BufferedImage> images = images(12);
+
+		// when
+		List<BufferedImage> thumbnails = Thumbnails.fromImages(images)
+				.size(400, 40)
+				.parallelism(4)
+				.asBufferedImages();
+
+		// then
+		assertEquals(12, thumbnails.size());
+		for (int i = 0; i < thumbnails.size(); i++) {
+			assertEquals(10 * (i + 1), thumbnails.get(i).getWidth());
+		}
+	}
+
+	@Test
+	public void parallelismLimitsThumbnailsInProgress() throws IOException {
+		// given
+		ConcurrencyRecorder recorder = new ConcurrencyRecorder();
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+
+		try {
+			// when
+			Thumbnails.fromImages(images(16))
+					.size(40, 40)
+					.addFilter(recorder)
+					.executor(executor)
+					.parallelism(3)
+					.asBufferedImages();
+
+		} finally {
+			executor.shutdown();
+		}
+
+		// then
+		assertTrue(recorder.max.get() > 1);
+		assertTrue(recorder.max.get() <= 3);
+	}
+
+	@Test
+	public void executorIsUsedForThumbnails() throws IOException {
+		// given
+		AtomicInteger executed = new AtomicInteger();
+		ExecutorService pool = Executors.newFixedThreadPool(2);
+
+		try {
+			// when
+			List<BufferedImage> thumbnails = Thumbnails.fromImages(images(5))
+					.size(40, 40)
+					.executor(command -> {
+						executed.incrementAndGet();
+						pool.execute(command);
+					})
+					.asBufferedImages();
+
+			// then
+			assertEquals(5, executed.get());
+			assertEquals(5, thumbnails.size());
+
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void failuresAreCollectedForEachSource() throws IOException {
+		// given
+		List<ByteArrayOutputStream> outputs = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			outputs.add(new ByteArrayOutputStream());
+		}
+		List<OutputStream> streams = new ArrayList<>(outputs);
+		OutputStream failing = new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				throw new IOException("failed");
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				throw new IOException("failed");
+			}
+		};
+		streams.set(1, failing);
+		streams.set(3, failing);
+
+		// when
+		ThumbnailBatchException e = assertThrows(ThumbnailBatchException.class, () ->
+				Thumbnails.fromImages(images(5))
+						.size(40, 40)
+						.outputFormat("png")
+						.parallelism(2)
+						.toOutputStreams(streams)
+		);
+
+		// then
+		assertEquals(Arrays.asList(1, 3), new ArrayList<>(e.getFailures().keySet()));
+		assertSame(e.getFailures().get(1), e.getCause());
+		assertTrue(outputs.get(0).size() > 0);
+		assertTrue(outputs.get(2).size() > 0);
+		assertTrue(outputs.get(4).size() > 0);
+	}
+
+	@Test
+	public void sequentialFailureIsThrownAsItIs() {
+		// given
+		OutputStream failing = new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				throw new IOException("failed");
+			}
+		};
+
+		// when
+		IOException e = assertThrows(IOException.class, () ->
+				Thumbnails.fromImages(images(2))
+						.size(40, 40)
+						.outputFormat("png")
+						.toOutputStreams(Arrays.asList(failing, new ByteArrayOutputStream()))
+		);
+
+		// then
+		assertFalse(e instanceof ThumbnailBatchException);
+	}
+
+	@Test
+	public void asFilesWithRenameGivesSameNamesAsSequential() throws IOException {
+		// given
+		List<File> sources = files(8);
+
+		// when
+		List<File> parallel = Thumbnails.fromFiles(sources)
+				.size(400, 40)
+				.parallelism(4)
+				.asFiles(Rename.PREFIX_DOT_THUMBNAIL);
+
+		// then
+		assertEquals(8, parallel.size());
+		for (int i = 0; i < parallel.size(); i++) {
+			assertEquals("thumbnail.source" + i + ".png", parallel.get(i).getName());
+			assertEquals(10 * (i + 1), ImageIO.read(parallel.get(i)).getWidth());
+		}
+	}
+
+	@Test
+	public void asFilesWithNumberedFilenamesIsDeterministic() throws IOException {
+		// given
+		List<File> sources = files(8);
+
+		// when
+		List<File> parallel = Thumbnails.fromFiles(sources)
+				.size(400, 40)
+				.parallelism(4)
+				.asFiles(new ConsecutivelyNumberedFilenames(dir, "thumbnail%d.png"));
+
+		// then
+		assertEquals(8, parallel.size());
+		for (int i = 0; i < parallel.size(); i++) {
+			assertEquals("thumbnail" + i + ".png", parallel.get(i).getName());
+			assertEquals(10 * (i + 1), ImageIO.read(parallel.get(i)).getWidth());
+		}
+	}
+
+	@Test
+	public void existingFilesAreSkippedWithoutFailure() throws IOException {
+		// given
+		List<File> sources = files(4);
+		File existing = new File(dir, "thumbnail.source2.png");
+		ImageIO.write(new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB), "png", existing);
+
+		// when
+		List<File> written = Thumbnails.fromFiles(sources)
+				.size(400, 40)
+				.allowOverwrite(false)
+				.parallelism(2)
+				.asFiles(Rename.PREFIX_DOT_THUMBNAIL);
+
+		// then
+		assertEquals(3, written.size());
+		assertFalse(written.contains(existing));
+		assertEquals(1, ImageIO.read(existing).getWidth());
+	}
+
+	@Test
+	public void otherIllegalArgumentsAreNotSkipped() throws IOException {
+		// given
+		List<File> sources = files(4);
+		ImageFilter rejecting = img -> {
+			if (img.getWidth() == 20) {
+				throw new IllegalArgumentException("rejected");
+			}
+			return img;
+		};
+
+		// when
+		ThumbnailBatchException e = assertThrows(ThumbnailBatchException.class, () ->
+				Thumbnails.fromFiles(sources)
+						.size(400, 40)
+						.addFilter(rejecting)
+						.parallelism(2)
+						.asFiles(Rename.PREFIX_DOT_THUMBNAIL)
+		);
+
+		// then
+		assertEquals(Arrays.asList(1), new ArrayList<>(e.getFailures().keySet()));
+		assertTrue(e.getFailures().get(1) instanceof IllegalArgumentException);
+	}
+
+	@Test
+	public void parallelismMustBePositive() {
+		assertThrows(IllegalArgumentException.class, () ->
+				Thumbnails.fromImages(images(1)).parallelism(0)
+		);
+	}
+
+	@Test
+	public void parallelismCannotBeSetTwice() {
+		assertThrows(IllegalStateException.class, () ->
+				Thumbnails.fromImages(images(1)).parallelism(2).parallelism(3)
+		);
+	}
+
+	@Test
+	public void executorCannotBeNull() {
+		assertThrows(NullPointerException.class, () ->
+				Thumbnails.fromImages(images(1)).executor(null)
+		);
+	}
+}
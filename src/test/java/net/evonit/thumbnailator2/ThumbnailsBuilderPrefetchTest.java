@@ -0,0 +1,262 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2022 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2;
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.File;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import net.evonit.thumbnailator2.tasks.io.jpeg.JpegTestImages;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link Thumbnails.Builder#prefetch(int)} with
+ * {@link Thumbnails.Builder#iterableBufferedImages()}.
+ */
+public class ThumbnailsBuilderPrefetchTest {
+
+	private ExecutorService executor;
+
+	@BeforeEach
+	public void createExecutor() {
+		executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "prefetch-test"));
+	}
+
+	@AfterEach
+	public void shutdownExecutor() {
+		executor.shutdownNow();
+	}
+
+	private static BufferedImage[] images(int count) {
+		BufferedImage[] images = new BufferedImage[count];
+		for (int i = 0; i < count; i++) {
+			images[i] = JpegTestImages.createPhoto(200 + i * 40, 150, BufferedImage.TYPE_INT_RGB);
+		}
+		return images;
+	}
+
+	/**
+	 * Waits until the counter reaches the given value, and a little longer
+	 * to see whether it goes beyond it.
+	 */
+	private static void settle(AtomicInteger counter, int expected) throws InterruptedException {
+		for (int i = 0; i < 100 && counter.get() < expected; i++) {
+			Thread.sleep(50);
+		}
+		Thread.sleep(200);
+	}
+
+	private Thumbnails.Builder<BufferedImage> countingBuilder(int count, AtomicInteger created) {
+		return Thumbnails.of(images(count))
+				.size(100, 100)
+				.addFilter(img -> {
+					created.incrementAndGet();
+					return img;
+				})
+				.executor(executor);
+	}
+
+	@Test
+	public void createsThumbnailsAheadUpToDepth() throws Exception {
+		// given
+		AtomicInteger created = new AtomicInteger();
+
+		// when
+		Iterator<BufferedImage> iter = countingBuilder(5, created)
+				.prefetch(2)
+				.iterableBufferedImages()
+				.iterator();
+		settle(created, 2);
+
+		// then
+		assertEquals(2, created.get());
+
+		// when
+		iter.next();
+		settle(created, 3);
+
+		// then
+		assertEquals(3, created.get());
+	}
+
+	@Test
+	public void stopsAtByteLimit() throws Exception {
+		// given
+		AtomicInteger created = new AtomicInteger();
+
+		// when
+		// A 100 x 75 INT_RGB thumbnail uses 30000 bytes.
+		Iterator<BufferedImage> iter = Thumbnails.of(JpegTestImages.createPhoto(200, 150, BufferedImage.TYPE_INT_RGB),
+						JpegTestImages.createPhoto(200, 150, BufferedImage.TYPE_INT_RGB),
+						JpegTestImages.createPhoto(200, 150, BufferedImage.TYPE_INT_RGB))
+				.size(100, 100)
+				.addFilter(img -> {
+					created.incrementAndGet();
+					return img;
+				})
+				.executor(executor)
+				.prefetch(10, 50000)
+				.iterableBufferedImages()
+				.iterator();
+		settle(created, 1);
+
+		// then
+		assertEquals(1, created.get());
+		assertNotNull(iter.next());
+		settle(created, 2);
+		assertEquals(2, created.get());
+	}
+
+	@Test
+	public void returnsThumbnailsInOrder() throws Exception {
+		// given
+		BufferedImage[] sources = images(4);
+
+		// when
+		Iterable<BufferedImage> thumbnails = Thumbnails.of(sources)
+				.scale(0.5)
+				.executor(executor)
+				.prefetch(3)
+				.iterableBufferedImages();
+
+		// then
+		int i = 0;
+		for (BufferedImage thumbnail : thumbnails) {
+			assertEquals(sources[i].getWidth() / 2, thumbnail.getWidth());
+			i++;
+		}
+		assertEquals(4, i);
+	}
+
+	@Test
+	public void createsThumbnailsOnExecutor() throws Exception {
+		// given
+		AtomicReference<String> threadName = new AtomicReference<>();
+
+		// when
+		Iterator<BufferedImage> iter = Thumbnails.of(images(1))
+				.size(100, 100)
+				.addFilter(img -> {
+					threadName.set(Thread.currentThread().getName());
+					return img;
+				})
+				.executor(executor)
+				.prefetch(1)
+				.iterableBufferedImages()
+				.iterator();
+
+		// then
+		assertNotNull(iter.next());
+		assertFalse(iter.hasNext());
+		assertEquals("prefetch-test", threadName.get());
+	}
+
+	@Test
+	public void failedThumbnailIsNull() throws Exception {
+		// given
+		File missing = new File("src/test/resources/Thumbnailator/does-not-exist.jpg");
+		File existing = new File("src/test/resources/Thumbnailator/grid.jpg");
+
+		// when
+		Iterator<BufferedImage> iter = Thumbnails.of(missing, existing)
+				.size(50, 50)
+				.executor(executor)
+				.prefetch(2)
+				.iterableBufferedImages()
+				.iterator();
+
+		// then
+		assertNull(iter.next());
+		assertNotNull(iter.next());
+		assertFalse(iter.hasNext());
+	}
+
+	@Test
+	public void closeStopsPrefetching() throws Exception {
+		// given
+		AtomicInteger created = new AtomicInteger();
+		Iterator<BufferedImage> iter = countingBuilder(5, created)
+				.prefetch(2)
+				.iterableBufferedImages()
+				.iterator();
+		iter.next();
+
+		// when
+		((Closeable)iter).close();
+		settle(created, 3);
+
+		// then
+		assertFalse(iter.hasNext());
+		assertTrue(created.get() <= 3);
+	}
+
+	@Test
+	public void createsThumbnailsOnCallerWhenExecutorRejects() throws Exception {
+		// given
+		executor.shutdown();
+
+		// when
+		Iterator<BufferedImage> iter = Thumbnails.of(images(2))
+				.size(100, 100)
+				.executor(executor)
+				.prefetch(2)
+				.iterableBufferedImages()
+				.iterator();
+
+		// then
+		assertNotNull(iter.next());
+		assertNotNull(iter.next());
+		assertFalse(iter.hasNext());
+	}
+
+	@Test
+	public void prefetchRejectsInvalidArguments() {
+		// given
+		Thumbnails.Builder<BufferedImage> builder = Thumbnails.of(images(1));
+
+		// when, then
+		assertThrows(IllegalArgumentException.class, () -> builder.prefetch(0));
+		assertThrows(IllegalArgumentException.class, () -> builder.prefetch(1, 0));
+	}
+
+	@Test
+	public void prefetchCannotBeSetTwice() {
+		// given
+		Thumbnails.Builder<BufferedImage> builder = Thumbnails.of(images(1)).prefetch(2);
+
+		// when, then
+		assertThrows(IllegalStateException.class, () -> builder.prefetch(3));
+	}
+}
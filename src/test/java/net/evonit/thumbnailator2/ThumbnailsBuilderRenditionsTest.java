@@ -0,0 +1,388 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2022 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.imageio.ImageIO;
+
+import net.evonit.thumbnailator2.builders.BufferedImageBuilder;
+import net.evonit.thumbnailator2.builders.ImageAllocator;
+import net.evonit.thumbnailator2.builders.OffHeapImageAllocator;
+import net.evonit.thumbnailator2.geometry.Positions;
+import net.evonit.thumbnailator2.tasks.io.BufferedImageSink;
+import net.evonit.thumbnailator2.tasks.io.jpeg.JpegTestImages;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the creation of several thumbnails from one source image with
+ * {@link Thumbnails.Builder#toRenditions(List)}.
+ */
+public class ThumbnailsBuilderRenditionsTest {
+
+	private static final BufferedImage SOURCE =
+			JpegTestImages.createPhoto(800, 600, BufferedImage.TYPE_INT_RGB);
+
+	private static BufferedImage read(ByteArrayOutputStream os) throws IOException {
+		return ImageIO.read(new ByteArrayInputStream(os.toByteArray()));
+	}
+
+	@Test
+	public void writesEachRendition() throws IOException {
+		// given
+		int[] sizes = {400, 200, 800, 100, 50};
+		ByteArrayOutputStream[] outputs = new ByteArrayOutputStream[sizes.length];
+		Rendition[] renditions = new Rendition[sizes.length];
+		for (int i = 0; i < sizes.length; i++) {
+			outputs[i] = new ByteArrayOutputStream();
+			renditions[i] = new Rendition(sizes[i], sizes[i], outputs[i]);
+		}
+
+		// when
+		Thumbnails.of(SOURCE)
+				.outputFormat("jpg")
+				.toRenditions(Arrays.asList(renditions));
+
+		// then
+		for (int i = 0; i < sizes.length; i++) {
+			BufferedImage thumbnail = read(outputs[i]);
+			assertEquals(sizes[i], thumbnail.getWidth());
+			assertEquals(Math.round(sizes[i] * 0.75f), thumbnail.getHeight());
+		}
+	}
+
+	@Test
+	public void renditionsResembleSingleThumbnails() throws IOException {
+		// given
+		BufferedImageSink large = new BufferedImageSink();
+		BufferedImageSink small = new BufferedImageSink();
+
+		// when
+		Thumbnails.of(SOURCE).toRenditions(Arrays.asList(
+				new Rendition(400, 400, large),
+				new Rendition(100, 100, small)
+		));
+
+		// then
+		BufferedImage expected = Thumbnails.of(SOURCE).size(100, 100).asBufferedImage();
+		assertEquals(400, large.getSink().getWidth());
+		assertEquals(expected.getWidth(), small.getSink().getWidth());
+		assertEquals(expected.getHeight(), small.getSink().getHeight());
+		// Both are compared to the mean of each 8x8 area of the source.
+		double cascaded = JpegTestImages.meanDifference(SOURCE, small.getSink(), 8);
+		double direct = JpegTestImages.meanDifference(SOURCE, expected, 8);
+		assertTrue(cascaded < direct + 0.5, cascaded + " " + direct);
+	}
+
+	@Test
+	public void outputFormatAndQualityPerRendition() throws IOException {
+		// given
+		ByteArrayOutputStream png = new ByteArrayOutputStream();
+		ByteArrayOutputStream lowQuality = new ByteArrayOutputStream();
+		ByteArrayOutputStream highQuality = new ByteArrayOutputStream();
+
+		// when
+		Thumbnails.of(SOURCE)
+				.outputFormat("jpg")
+				.outputQuality(0.9f)
+				.toRenditions(Arrays.asList(
+						new Rendition(200, 200, png).outputFormat("png"),
+						new Rendition(200, 200, lowQuality).outputQuality(0.1f),
+						new Rendition(200, 200, highQuality)
+				));
+
+		// then
+		assertEquals("png", TestUtils.getFormatName(new ByteArrayInputStream(png.toByteArray())));
+		assertEquals("JPEG", TestUtils.getFormatName(new ByteArrayInputStream(lowQuality.toByteArray())));
+		assertTrue(lowQuality.size() < highQuality.size());
+	}
+
+	@Test
+	public void filtersApplyToEachRenditionOnly() throws IOException {
+		// given
+		BufferedImageSink large = new BufferedImageSink();
+		BufferedImageSink small = new BufferedImageSink();
+
+		// when
+		Thumbnails.of(SOURCE)
+				.rotate(90)
+				.toRenditions(Arrays.asList(
+						new Rendition(300, 400, large),
+						new Rendition(60, 100, small)
+				));
+
+		// then
+		BufferedImage expectedLarge = Thumbnails.of(SOURCE).size(300, 400).rotate(90).asBufferedImage();
+		BufferedImage expectedSmall = Thumbnails.of(SOURCE).size(60, 100).rotate(90).asBufferedImage();
+		assertEquals(expectedLarge.getWidth(), large.getSink().getWidth());
+		assertEquals(expectedLarge.getHeight(), large.getSink().getHeight());
+		assertEquals(expectedSmall.getWidth(), small.getSink().getWidth());
+		assertEquals(expectedSmall.getHeight(), small.getSink().getHeight());
+	}
+
+	@Test
+	public void cropsEachRendition() throws IOException {
+		// given
+		BufferedImageSink large = new BufferedImageSink();
+		BufferedImageSink small = new BufferedImageSink();
+
+		// when
+		Thumbnails.of(SOURCE)
+				.crop(Positions.CENTER)
+				.toRenditions(Arrays.asList(
+						new Rendition(200, 200, large),
+						new Rendition(50, 50, small)
+				));
+
+		// then
+		assertEquals(200, large.getSink().getWidth());
+		assertEquals(200, large.getSink().getHeight());
+		assertEquals(50, small.getSink().getWidth());
+		assertEquals(50, small.getSink().getHeight());
+	}
+
+	@Test
+	public void writesOnExecutor() throws IOException {
+		// given
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		BufferedImageSink[] sinks = new BufferedImageSink[4];
+		Rendition[] renditions = new Rendition[sinks.length];
+		for (int i = 0; i < sinks.length; i++) {
+			sinks[i] = new BufferedImageSink();
+			renditions[i] = new Rendition(400 >> i, 400 >> i, sinks[i]);
+		}
+
+		try {
+			// when
+			Thumbnails.of(SOURCE).toRenditions(Arrays.asList(renditions), executor);
+
+		} finally {
+			executor.shutdown();
+		}
+
+		// then
+		for (int i = 0; i < sinks.length; i++) {
+			assertEquals(400 >> i, sinks[i].getSink().getWidth());
+		}
+	}
+
+	@Test
+	public void readsFileOnceWithExifOrientation() throws IOException {
+		// given
+		File sourceFile = File.createTempFile("renditions", ".jpg");
+		File largeFile = File.createTempFile("renditions", ".jpg");
+		ByteArrayOutputStream small = new ByteArrayOutputStream();
+		try {
+			TestUtils.copyResourceToFile("Exif/sourceWide_6.jpg", sourceFile);
+
+			// when
+			Thumbnails.of(sourceFile).toRenditions(Arrays.asList(
+					new Rendition(160, 160, largeFile),
+					new Rendition(80, 80, small)
+			));
+
+			// then
+			BufferedImage large = ImageIO.read(largeFile);
+			assertEquals(160, large.getWidth());
+			assertEquals(80, large.getHeight());
+			assertEquals("JPEG", TestUtils.getFormatName(new ByteArrayInputStream(small.toByteArray())));
+			assertEquals(80, read(small).getWidth());
+			assertEquals(40, read(small).getHeight());
+
+		} finally {
+			sourceFile.delete();
+			largeFile.delete();
+		}
+	}
+
+	@Test
+	public void sizeCannotBeSet() throws IOException {
+		// given
+		Thumbnails.Builder<BufferedImage> builder = Thumbnails.of(SOURCE).size(100, 100);
+		List<Rendition> renditions = Collections.singletonList(
+				new Rendition(50, 50, new BufferedImageSink())
+		);
+
+		// when, then
+		try {
+			builder.toRenditions(renditions);
+			fail();
+		} catch (IllegalStateException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void multipleSourcesNotAllowed() throws IOException {
+		// given
+		Thumbnails.Builder<BufferedImage> builder = Thumbnails.of(SOURCE, SOURCE);
+		List<Rendition> renditions = Collections.singletonList(
+				new Rendition(50, 50, new BufferedImageSink())
+		);
+
+		// when, then
+		try {
+			builder.toRenditions(renditions);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void outputFormatRequiredForStreamsFromImages() throws IOException {
+		// given
+		List<Rendition> renditions = Collections.singletonList(
+				new Rendition(50, 50, new ByteArrayOutputStream())
+		);
+
+		// when, then
+		try {
+			Thumbnails.of(SOURCE).toRenditions(renditions);
+			fail();
+		} catch (IllegalStateException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void writeFailureIsReported() throws IOException {
+		// given
+		OutputStream failing = new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				throw new IOException("write failed");
+			}
+		};
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+
+		// when, then
+		try {
+			Thumbnails.of(SOURCE)
+					.outputFormat("png")
+					.toRenditions(Arrays.asList(
+							new Rendition(200, 200, new BufferedImageSink()),
+							new Rendition(100, 100, failing)
+					), executor);
+			fail();
+		} catch (IOException e) {
+			// expected
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void imagesForBufferedImageSinksAreNotReleased() throws IOException {
+		// given
+		BufferedImageSink sink = new BufferedImageSink();
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		ImageAllocator previous = BufferedImageBuilder.setThreadAllocator(new OffHeapImageAllocator(1));
+
+		// when
+		try {
+			Thumbnails.of(SOURCE)
+					.outputFormat("png")
+					.toRenditions(Arrays.asList(
+							new Rendition(200, 200, sink),
+							new Rendition(100, 100, os)
+					));
+		} finally {
+			BufferedImageBuilder.setThreadAllocator(previous);
+		}
+
+		// then
+		BufferedImage thumbnail = sink.getSink();
+		assertEquals(200, thumbnail.getWidth());
+		thumbnail.getRGB(100, 75);
+		assertEquals(100, read(os).getWidth());
+	}
+
+	@Test
+	public void failureWaitsForRunningWrites() throws Exception {
+		// given
+		final CountDownLatch started = new CountDownLatch(1);
+		final AtomicBoolean finished = new AtomicBoolean();
+		OutputStream slow = new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				if (started.getCount() == 0) {
+					return;
+				}
+				started.countDown();
+				try {
+					Thread.sleep(200);
+				} catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+				finished.set(true);
+			}
+		};
+		OutputStream failing = new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				try {
+					started.await(5, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					// ignored
+				}
+				throw new IOException("write failed");
+			}
+		};
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+
+		// when
+		try {
+			Thumbnails.of(SOURCE)
+					.outputFormat("png")
+					.toRenditions(Arrays.asList(
+							new Rendition(200, 200, failing),
+							new Rendition(100, 100, slow)
+					), executor);
+			fail();
+		} catch (IOException e) {
+			// then
+			assertTrue(finished.get());
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
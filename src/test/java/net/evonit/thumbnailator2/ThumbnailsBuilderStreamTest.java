@@ -0,0 +1,219 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2022 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.stream.Collectors;
+
+import net.evonit.thumbnailator2.tasks.io.jpeg.JpegTestImages;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link Thumbnails.Builder#stream()}.
+ */
+public class ThumbnailsBuilderStreamTest {
+
+	private static BufferedImage[] images(int count) {
+		BufferedImage[] images = new BufferedImage[count];
+		for (int i = 0; i < count; i++) {
+			images[i] = JpegTestImages.createPhoto(100 + i * 4, 80, BufferedImage.TYPE_INT_RGB);
+		}
+		return images;
+	}
+
+	private static <T> void assertIndicesMatchSources(T[] sources, List<ThumbnailResult<T>> results) {
+		assertEquals(sources.length, results.size());
+		Set<Integer> indices = new HashSet<>();
+		for (ThumbnailResult<T> result : results) {
+			assertTrue(result.isSuccessful());
+			assertSame(sources[result.getIndex()], result.getSource());
+			indices.add(result.getIndex());
+		}
+		assertEquals(sources.length, indices.size());
+	}
+
+	@Test
+	public void sequentialStreamCreatesThumbnailsInOrder() {
+		// given
+		BufferedImage[] sources = images(5);
+
+		// when
+		List<ThumbnailResult<BufferedImage>> results = Thumbnails.of(sources)
+				.scale(0.5)
+				.stream()
+				.collect(Collectors.toList());
+
+		// then
+		assertEquals(5, results.size());
+		for (int i = 0; i < 5; i++) {
+			ThumbnailResult<BufferedImage> result = results.get(i);
+			assertEquals(i, result.getIndex());
+			assertSame(sources[i], result.getSource());
+			assertEquals(sources[i].getWidth() / 2, result.getThumbnail().getWidth());
+		}
+	}
+
+	@Test
+	public void streamOfArrayIsSizedAndSplitsEvenly() {
+		// given
+		Spliterator<ThumbnailResult<BufferedImage>> spliterator = Thumbnails.of(images(8))
+				.scale(0.5)
+				.stream()
+				.spliterator();
+
+		// when
+		Spliterator<ThumbnailResult<BufferedImage>> prefix = spliterator.trySplit();
+
+		// then
+		assertTrue(spliterator.hasCharacteristics(Spliterator.SIZED));
+		assertTrue(spliterator.hasCharacteristics(Spliterator.SUBSIZED));
+		assertEquals(4, prefix.getExactSizeIfKnown());
+		assertEquals(4, spliterator.getExactSizeIfKnown());
+	}
+
+	@Test
+	public void parallelStreamKeepsSourcePositions() {
+		// given
+		BufferedImage[] sources = images(20);
+
+		// when
+		List<ThumbnailResult<BufferedImage>> results = Thumbnails.of(sources)
+				.scale(0.5)
+				.stream()
+				.parallel()
+				.collect(Collectors.toList());
+
+		// then
+		assertIndicesMatchSources(sources, results);
+	}
+
+	@Test
+	public void parallelStreamOfIterableKeepsSourcePositions() {
+		// given
+		BufferedImage[] sources = images(20);
+		List<BufferedImage> list = Arrays.asList(sources);
+		Iterable<BufferedImage> iterable = () -> list.iterator();
+
+		// when
+		List<ThumbnailResult<BufferedImage>> results = Thumbnails.fromImages(iterable)
+				.scale(0.5)
+				.stream()
+				.parallel()
+				.collect(Collectors.toList());
+
+		// then
+		assertIndicesMatchSources(sources, results);
+	}
+
+	@Test
+	public void parallelStreamRunsInCustomPool() throws Exception {
+		// given
+		ForkJoinPool pool = new ForkJoinPool(3);
+		Set<ForkJoinPool> pools = Collections.synchronizedSet(new HashSet<>());
+
+		try {
+			// when
+			List<ThumbnailResult<BufferedImage>> results = pool.submit(() ->
+					Thumbnails.of(images(12))
+							.scale(0.5)
+							.addFilter(img -> {
+								Thread thread = Thread.currentThread();
+								pools.add(thread instanceof ForkJoinWorkerThread ? ((ForkJoinWorkerThread)thread).getPool() : null);
+								return img;
+							})
+							.stream()
+							.parallel()
+							.collect(Collectors.toList())
+			).get();
+
+			// then
+			assertEquals(12, results.size());
+			assertEquals(Collections.singleton(pool), pools);
+
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void failedThumbnailIsDeliveredAsResult() {
+		// given
+		File missing = new File("src/test/resources/Thumbnailator/does-not-exist.jpg");
+		File existing = new File("src/test/resources/Thumbnailator/grid.jpg");
+
+		// when
+		List<ThumbnailResult<File>> results = Thumbnails.of(missing, existing)
+				.size(50, 50)
+				.stream()
+				.collect(Collectors.toList());
+
+		// then
+		assertEquals(2, results.size());
+		assertFalse(results.get(0).isSuccessful());
+		assertSame(missing, results.get(0).getSource());
+		assertNotNull(results.get(0).getFailure());
+		assertTrue(results.get(1).isSuccessful());
+	}
+
+	@Test
+	public void streamIsLazy() {
+		// given
+		int[] created = new int[1];
+
+		// when
+		Thumbnails.of(images(3))
+				.scale(0.5)
+				.addFilter(img -> {
+					created[0]++;
+					return img;
+				})
+				.stream()
+				.findFirst();
+
+		// then
+		assertEquals(1, created[0]);
+	}
+
+	@Test
+	public void streamWithoutSizeThrows() {
+		// given
+		Thumbnails.Builder<BufferedImage> builder = Thumbnails.of(images(1));
+
+		// when, then
+		assertThrows(IllegalStateException.class, builder::stream);
+	}
+}
@@ -0,0 +1,225 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2022 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import net.evonit.thumbnailator2.resizers.ProgressiveBilinearResizer;
+import net.evonit.thumbnailator2.resizers.TileResizer;
+import net.evonit.thumbnailator2.tasks.SourceSinkThumbnailTask;
+import net.evonit.thumbnailator2.tasks.ThumbnailTimeoutException;
+import net.evonit.thumbnailator2.tasks.io.BufferedImageSink;
+import net.evonit.thumbnailator2.tasks.io.Cancellation;
+import net.evonit.thumbnailator2.tasks.io.InputStreamImageSource;
+import net.evonit.thumbnailator2.tasks.io.jpeg.JpegTestImages;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link Thumbnails.Builder#timeout(long, TimeUnit)} and
+ * {@link Thumbnailator#createThumbnail(net.evonit.thumbnailator2.tasks.ThumbnailTask, long, TimeUnit)}.
+ */
+public class ThumbnailsBuilderTimeoutTest {
+
+	/**
+	 * A stream which delivers its data slowly, as from a slow network.
+	 */
+	private static final class SlowInputStream extends FilterInputStream {
+		private SlowInputStream(byte[] data) {
+			super(new ByteArrayInputStream(data));
+		}
+
+		private static void pause() throws IOException {
+			try {
+				Thread.sleep(2);
+			} catch (InterruptedException e) {
+				throw new IOException(e);
+			}
+		}
+
+		@Override
+		public int read() throws IOException {
+			pause();
+			return super.read();
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			pause();
+			return super.read(b, off, Math.min(len, 512));
+		}
+	}
+
+	private static byte[] encode(BufferedImage img, String format) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		ImageIO.write(img, format, baos);
+		return baos.toByteArray();
+	}
+
+	@Test
+	public void thumbnailWithinTimeoutIsCreated() throws Exception {
+		// given
+		BufferedImage img = new BufferedImage(200, 200, BufferedImage.TYPE_INT_RGB);
+
+		// when
+		BufferedImage thumbnail = Thumbnails.of(img)
+				.size(100, 100)
+				.timeout(10, TimeUnit.SECONDS)
+				.asBufferedImage();
+
+		// then
+		assertEquals(100, thumbnail.getWidth());
+	}
+
+	@Test
+	public void timeoutStopsBetweenFilters() {
+		// given
+		BufferedImage img = new BufferedImage(200, 200, BufferedImage.TYPE_INT_RGB);
+		Thumbnails.Builder<BufferedImage> builder = Thumbnails.of(img)
+				.size(100, 100)
+				.timeout(20, TimeUnit.MILLISECONDS)
+				.addFilter(image -> {
+					try {
+						Thread.sleep(100);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					return image;
+				})
+				.addFilter(image -> {
+					fail("The filter should not be applied after the deadline.");
+					return image;
+				});
+
+		// when, then
+		assertThrows(ThumbnailTimeoutException.class, builder::asBufferedImage);
+	}
+
+	@Test
+	public void timeoutStopsPngDecoder() throws Exception {
+		// given
+		byte[] png = encode(JpegTestImages.createPhoto(2000, 2000, BufferedImage.TYPE_INT_RGB), "png");
+		Thumbnails.Builder<? extends InputStream> builder = Thumbnails.of(new SlowInputStream(png))
+				.size(100, 100)
+				.timeout(200, TimeUnit.MILLISECONDS);
+
+		// when
+		long start = System.nanoTime();
+		assertThrows(ThumbnailTimeoutException.class, builder::asBufferedImage);
+
+		// then
+		assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+	}
+
+	@Test
+	public void timeoutStopsJpegDecoder() throws Exception {
+		// given
+		byte[] jpeg = JpegTestImages.write(JpegTestImages.createPhoto(2000, 2000, BufferedImage.TYPE_INT_RGB));
+		Thumbnails.Builder<? extends InputStream> builder = Thumbnails.of(new SlowInputStream(jpeg))
+				.size(100, 100)
+				.timeout(200, TimeUnit.MILLISECONDS);
+
+		// when
+		long start = System.nanoTime();
+		assertThrows(ThumbnailTimeoutException.class, builder::asBufferedImage);
+
+		// then
+		assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+	}
+
+	@Test
+	public void timeoutAbortsImageReader() throws Exception {
+		// given
+		byte[] bmp = encode(new BufferedImage(1000, 1000, BufferedImage.TYPE_INT_RGB), "bmp");
+		Thumbnails.Builder<? extends InputStream> builder = Thumbnails.of(new SlowInputStream(bmp))
+				.size(100, 100)
+				.timeout(200, TimeUnit.MILLISECONDS);
+
+		// when
+		long start = System.nanoTime();
+		assertThrows(ThumbnailTimeoutException.class, builder::asBufferedImage);
+
+		// then
+		assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+	}
+
+	@Test
+	public void timeoutStopsResizers() throws Exception {
+		// given
+		BufferedImage src = new BufferedImage(2000, 2000, BufferedImage.TYPE_INT_RGB);
+		BufferedImage dest = new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB);
+		Cancellation previous = Cancellation.setThreadCancellation(Cancellation.withTimeout(1, TimeUnit.MILLISECONDS));
+		try {
+			Thread.sleep(10);
+
+			// when, then
+			assertThrows(ThumbnailTimeoutException.class, () -> new TileResizer().resize(src, dest));
+			assertThrows(ThumbnailTimeoutException.class, () -> new ProgressiveBilinearResizer().resize(src, dest));
+		} finally {
+			Cancellation.setThreadCancellation(previous);
+		}
+	}
+
+	@Test
+	public void createThumbnailWithTimeout() throws Exception {
+		// given
+		byte[] png = encode(JpegTestImages.createPhoto(2000, 2000, BufferedImage.TYPE_INT_RGB), "png");
+		ThumbnailParameter param = Thumbnails.newPlan().size(100, 100).toPlan().getParameter();
+		SourceSinkThumbnailTask<InputStream, BufferedImage> task = new SourceSinkThumbnailTask<>(
+				param, new InputStreamImageSource(new SlowInputStream(png)), new BufferedImageSink()
+		);
+
+		// when, then
+		assertThrows(ThumbnailTimeoutException.class,
+				() -> Thumbnailator.createThumbnail(task, 100, TimeUnit.MILLISECONDS));
+		Cancellation.checkThread();
+	}
+
+	@Test
+	public void timeoutMustBePositive() {
+		Thumbnails.Builder<BufferedImage> builder = Thumbnails.of(new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB));
+
+		assertThrows(IllegalArgumentException.class, () -> builder.timeout(0, TimeUnit.SECONDS));
+		assertThrows(NullPointerException.class, () -> builder.timeout(1, null));
+	}
+
+	@Test
+	public void timeoutCannotBeSetTwice() {
+		Thumbnails.Builder<BufferedImage> builder = Thumbnails.of(new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB))
+				.timeout(1, TimeUnit.SECONDS);
+
+		assertThrows(IllegalStateException.class, () -> builder.timeout(1, TimeUnit.SECONDS));
+	}
+}
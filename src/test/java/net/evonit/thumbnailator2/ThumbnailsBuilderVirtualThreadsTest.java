@@ -0,0 +1,120 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2022 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+import javax.imageio.ImageIO;
+
+import net.evonit.thumbnailator2.tasks.io.jpeg.JpegTestImages;
+import net.evonit.thumbnailator2.test.LocalImageServer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link Thumbnails.Builder#virtualThreads()}.
+ */
+public class ThumbnailsBuilderVirtualThreadsTest {
+
+	private static final boolean JAVA_21 = Runtime.version().feature() >= 21;
+
+	@Test
+	public void virtualThreadsAreSupportedFromJava21() {
+		assertEquals(JAVA_21, VirtualThreads.isSupported());
+	}
+
+	@Test
+	public void virtualThreadsRequireJava21() {
+		// given
+		Thumbnails.Builder<BufferedImage> builder = Thumbnails.of(new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB));
+
+		// when, then
+		if (!JAVA_21) {
+			assertThrows(UnsupportedOperationException.class, builder::virtualThreads);
+		} else {
+			assertSame(builder, builder.virtualThreads());
+		}
+	}
+
+	@Test
+	public void createsThumbnailsOfUrlsOnVirtualThreads() throws Exception {
+		if (!JAVA_21) {
+			return;
+		}
+
+		// given
+		ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+		ImageIO.write(JpegTestImages.createPhoto(200, 150, BufferedImage.TYPE_INT_RGB), "jpg", encoded);
+		List<String> threadNames = Collections.synchronizedList(new ArrayList<>());
+
+		try (LocalImageServer server = new LocalImageServer(LocalImageServer.serving(encoded.toByteArray(), "image/jpeg"))) {
+			List<URL> urls = new ArrayList<>();
+			for (int i = 0; i < 20; i++) {
+				urls.add(server.url("/image/" + i));
+			}
+
+			// when
+			List<BufferedImage> thumbnails = Thumbnails.fromURLs(urls)
+					.size(100, 100)
+					.addFilter(img -> {
+						threadNames.add(Thread.currentThread().getName());
+						return img;
+					})
+					.virtualThreads()
+					.asBufferedImages();
+
+			// then
+			assertEquals(20, thumbnails.size());
+			for (BufferedImage thumbnail : thumbnails) {
+				assertEquals(100, thumbnail.getWidth());
+			}
+			for (String name : threadNames) {
+				assertTrue(name.startsWith("thumbnailator-virtual-"), name);
+			}
+		}
+	}
+
+	@Test
+	public void virtualThreadsCannotBeCombinedWithExecutor() {
+		if (!JAVA_21) {
+			return;
+		}
+
+		// given
+		Thumbnails.Builder<BufferedImage> builder = Thumbnails.of(new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB))
+				.executor(Executors.newSingleThreadExecutor());
+
+		// when, then
+		assertThrows(IllegalStateException.class, builder::virtualThreads);
+	}
+}
@@ -0,0 +1,221 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2022 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.builders;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import javax.imageio.ImageIO;
+
+import net.evonit.thumbnailator2.Thumbnails;
+import net.evonit.thumbnailator2.util.raster.MappedDataBuffer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static net.evonit.thumbnailator2.test.TestImages.fillHalves;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappedImageAllocatorTest {
+
+	private File directory;
+
+	@BeforeEach
+	public void createDirectory() throws IOException {
+		directory = Files.createTempDirectory("thumbnailator").toFile();
+	}
+
+	@AfterEach
+	public void deleteDirectory() {
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		directory.delete();
+	}
+
+	@Test
+	public void imageBelowThresholdIsOnHeap() {
+		// given
+		MappedImageAllocator allocator = new MappedImageAllocator(directory, 100 * 100);
+
+		// when
+		BufferedImage img = allocator.allocate(99, 100, BufferedImage.TYPE_INT_ARGB);
+
+		// then
+		assertFalse(OffHeapImageAllocator.isOffHeap(img));
+		assertEquals(BufferedImage.TYPE_INT_ARGB, img.getType());
+	}
+
+	@Test
+	public void imageAtThresholdIsMapped() {
+		// given
+		MappedImageAllocator allocator = new MappedImageAllocator(directory, 100 * 100);
+
+		// when
+		BufferedImage img = allocator.allocate(100, 100, BufferedImage.TYPE_INT_ARGB);
+
+		// then
+		assertTrue(OffHeapImageAllocator.isOffHeap(img));
+		assertTrue(img.getRaster().getDataBuffer() instanceof MappedDataBuffer);
+		assertEquals(0, img.getRGB(50, 50));
+	}
+
+	@Test
+	public void pixelsSpanningChunksAreHeld() {
+		int[] types = {
+				BufferedImage.TYPE_INT_RGB,
+				BufferedImage.TYPE_3BYTE_BGR,
+				BufferedImage.TYPE_4BYTE_ABGR,
+		};
+
+		for (int type : types) {
+			// given
+			MappedImageAllocator allocator = new MappedImageAllocator(
+					directory, 1, DefaultImageAllocator.getInstance(), 4096
+			);
+			BufferedImage img = allocator.allocate(301, 200, type);
+
+			// when
+			fillHalves(img);
+
+			// then
+			for (int y = 0; y < img.getHeight(); y++) {
+				assertEquals(Color.red.getRGB(), img.getRGB(149, y));
+				assertEquals(Color.blue.getRGB(), img.getRGB(150, y));
+			}
+			allocator.release(img);
+		}
+	}
+
+	@Test
+	public void releaseUnmapsAndRemovesFile() {
+		// given
+		MappedImageAllocator allocator = new MappedImageAllocator(directory, 1);
+		BufferedImage img = allocator.allocate(100, 100, BufferedImage.TYPE_INT_ARGB);
+		MappedDataBuffer buffer = (MappedDataBuffer)img.getRaster().getDataBuffer();
+
+		// when
+		allocator.release(img);
+
+		// then
+		assertTrue(buffer.isFreed());
+		assertEquals(0, directory.listFiles().length);
+	}
+
+	@Test
+	public void thumbnailDecodedIntoMappedImage() throws IOException {
+		// given
+		BufferedImage img = new BufferedImage(2000, 1000, BufferedImage.TYPE_INT_RGB);
+		fillHalves(img);
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		ImageIO.write(img, "png", baos);
+		byte[] data = baos.toByteArray();
+
+		final int[] mappedImages = {0};
+		final MappedImageAllocator mapped = new MappedImageAllocator(
+				directory, 1000 * 1000, DefaultImageAllocator.getInstance(), 4096
+		);
+		ImageAllocator allocator = new ImageAllocator() {
+			public BufferedImage allocate(int width, int height, int imageType) {
+				BufferedImage img = mapped.allocate(width, height, imageType);
+				if (OffHeapImageAllocator.isOffHeap(img)) {
+					mappedImages[0]++;
+				}
+				return img;
+			}
+
+			public BufferedImage allocateScratch(int width, int height, int imageType) {
+				return mapped.allocateScratch(width, height, imageType);
+			}
+
+			public void release(BufferedImage img) {
+				mapped.release(img);
+			}
+		};
+
+		// when
+		BufferedImage thumbnail = Thumbnails.of(new ByteArrayInputStream(data))
+				.size(200, 200)
+				.imageAllocator(allocator)
+				.asBufferedImage();
+
+		// then
+		assertEquals(1, mappedImages[0]);
+		assertEquals(0, directory.listFiles().length);
+		assertFalse(OffHeapImageAllocator.isOffHeap(thumbnail));
+		assertEquals(200, thumbnail.getWidth());
+		assertEquals(100, thumbnail.getHeight());
+		assertEquals(Color.red.getRGB(), thumbnail.getRGB(10, 50));
+		assertEquals(Color.blue.getRGB(), thumbnail.getRGB(190, 50));
+	}
+
+	@Test
+	public void builderRestoresThreadAllocator() throws IOException {
+		// given
+		BufferedImage img = new BufferedImage(200, 100, BufferedImage.TYPE_INT_RGB);
+
+		// when
+		Thumbnails.of(img)
+				.size(20, 20)
+				.imageAllocator(new MappedImageAllocator(directory, 1))
+				.asBufferedImage();
+
+		// then
+		assertSame(
+				BufferedImageBuilder.getDefaultAllocator(),
+				BufferedImageBuilder.getCurrentAllocator()
+		);
+	}
+
+	@Test
+	public void builderAllocatorCannotBeSetTwice() {
+		// given
+		BufferedImage img = new BufferedImage(200, 100, BufferedImage.TYPE_INT_RGB);
+		MappedImageAllocator allocator = new MappedImageAllocator(directory, 1);
+
+		// when, then
+		assertThrows(IllegalStateException.class, () ->
+				Thumbnails.of(img).imageAllocator(allocator).imageAllocator(allocator)
+		);
+	}
+
+	@Test
+	public void invalidDirectoryIsRejected() throws IOException {
+		// given
+		File file = new File(directory, "file");
+		file.createNewFile();
+
+		// when, then
+		assertThrows(IllegalArgumentException.class, () -> new MappedImageAllocator(file));
+	}
+}
@@ -0,0 +1,155 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2022 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.builders;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+import net.evonit.thumbnailator2.Thumbnails;
+import net.evonit.thumbnailator2.util.raster.ByteBufferDataBuffer;
+import org.junit.jupiter.api.Test;
+
+import static net.evonit.thumbnailator2.test.TestImages.fillHalves;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OffHeapImageAllocatorTest {
+
+	@Test
+	public void imageBelowThresholdIsOnHeap() {
+		// given
+		OffHeapImageAllocator allocator = new OffHeapImageAllocator(100 * 100);
+
+		// when
+		BufferedImage img = allocator.allocate(99, 100, BufferedImage.TYPE_INT_ARGB);
+
+		// then
+		assertFalse(OffHeapImageAllocator.isOffHeap(img));
+		assertEquals(BufferedImage.TYPE_INT_ARGB, img.getType());
+	}
+
+	@Test
+	public void imageAtThresholdIsOffHeap() {
+		// given
+		OffHeapImageAllocator allocator = new OffHeapImageAllocator(100 * 100);
+
+		// when
+		BufferedImage img = allocator.allocate(100, 100, BufferedImage.TYPE_INT_ARGB);
+
+		// then
+		assertTrue(OffHeapImageAllocator.isOffHeap(img));
+		assertEquals(100, img.getWidth());
+		assertEquals(100, img.getHeight());
+		assertEquals(0, img.getRGB(50, 50));
+	}
+
+	@Test
+	public void unsupportedTypeIsOnHeap() {
+		// given
+		OffHeapImageAllocator allocator = new OffHeapImageAllocator(1);
+
+		// when
+		BufferedImage img = allocator.allocate(100, 100, BufferedImage.TYPE_USHORT_GRAY);
+
+		// then
+		assertFalse(OffHeapImageAllocator.isOffHeap(img));
+	}
+
+	@Test
+	public void offHeapImagesHoldPixels() {
+		int[] types = {
+				BufferedImage.TYPE_INT_RGB,
+				BufferedImage.TYPE_INT_ARGB,
+				BufferedImage.TYPE_INT_BGR,
+				BufferedImage.TYPE_3BYTE_BGR,
+				BufferedImage.TYPE_4BYTE_ABGR,
+		};
+
+		for (int type : types) {
+			// given
+			OffHeapImageAllocator allocator = new OffHeapImageAllocator(1);
+			BufferedImage img = allocator.allocate(100, 100, type);
+
+			// when
+			fillHalves(img);
+
+			// then
+			assertEquals(Color.red.getRGB(), img.getRGB(10, 50));
+			assertEquals(Color.blue.getRGB(), img.getRGB(90, 50));
+		}
+	}
+
+	@Test
+	public void releaseFreesMemory() {
+		// given
+		OffHeapImageAllocator allocator = new OffHeapImageAllocator(1);
+		BufferedImage img = allocator.allocate(100, 100, BufferedImage.TYPE_INT_ARGB);
+		ByteBufferDataBuffer buffer = (ByteBufferDataBuffer)img.getRaster().getDataBuffer();
+
+		// when
+		allocator.release(img);
+
+		// then
+		assertTrue(buffer.isFreed());
+	}
+
+	@Test
+	public void releaseOfHeapImageIsDelegated() {
+		// given
+		PooledImageAllocator pool = new PooledImageAllocator();
+		OffHeapImageAllocator allocator = new OffHeapImageAllocator(100 * 100, pool);
+		BufferedImage img = allocator.allocate(10, 10, BufferedImage.TYPE_INT_ARGB);
+
+		// when
+		allocator.release(img);
+
+		// then
+		assertEquals(10 * 10 * 4, pool.getPooledBytes());
+	}
+
+	@Test
+	public void thumbnailFromOffHeapImage() throws IOException {
+		// given
+		OffHeapImageAllocator allocator = new OffHeapImageAllocator(1);
+		BufferedImage img = allocator.allocate(2000, 1000, BufferedImage.TYPE_INT_RGB);
+		fillHalves(img);
+
+		// when
+		BufferedImage thumbnail = Thumbnails.of(img)
+				.size(200, 200)
+				.asBufferedImage();
+
+		// then
+		assertEquals(200, thumbnail.getWidth());
+		assertEquals(100, thumbnail.getHeight());
+		assertEquals(Color.red.getRGB(), thumbnail.getRGB(10, 50));
+		assertEquals(Color.blue.getRGB(), thumbnail.getRGB(190, 50));
+	}
+
+	@Test
+	public void invalidThresholdIsRejected() {
+		assertThrows(IllegalArgumentException.class, () -> new OffHeapImageAllocator(0));
+	}
+}
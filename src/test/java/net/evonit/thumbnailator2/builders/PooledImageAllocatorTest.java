@@ -0,0 +1,237 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2022 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.builders;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PooledImageAllocatorTest {
+
+	@Test
+	public void allocateReturnsImageWithRequestedParameters() {
+		// given
+		PooledImageAllocator allocator = new PooledImageAllocator();
+
+		// when
+		BufferedImage img = allocator.allocate(100, 50, BufferedImage.TYPE_INT_RGB);
+
+		// then
+		assertEquals(100, img.getWidth());
+		assertEquals(50, img.getHeight());
+		assertEquals(BufferedImage.TYPE_INT_RGB, img.getType());
+	}
+
+	@Test
+	public void releasedImageIsReusedAndBlank() {
+		// given
+		PooledImageAllocator allocator = new PooledImageAllocator();
+		BufferedImage img = allocator.allocate(100, 100, BufferedImage.TYPE_INT_ARGB);
+		fill(img, Color.red);
+
+		// when
+		allocator.release(img);
+		BufferedImage reused = allocator.allocate(100, 100, BufferedImage.TYPE_INT_ARGB);
+
+		// then
+		assertSame(img, reused);
+		assertEquals(0, reused.getRGB(50, 50));
+		assertEquals(0, allocator.getPooledBytes());
+	}
+
+	@Test
+	public void releasedImageIsNotReusedForDifferentSize() {
+		// given
+		PooledImageAllocator allocator = new PooledImageAllocator();
+		BufferedImage img = allocator.allocate(100, 100, BufferedImage.TYPE_INT_ARGB);
+
+		// when
+		allocator.release(img);
+		BufferedImage other = allocator.allocate(100, 99, BufferedImage.TYPE_INT_ARGB);
+
+		// then
+		assertNotSame(img, other);
+		assertEquals(100 * 100 * 4, allocator.getPooledBytes());
+	}
+
+	@Test
+	public void releasedImageIsNotReusedForDifferentType() {
+		// given
+		PooledImageAllocator allocator = new PooledImageAllocator();
+		BufferedImage img = allocator.allocate(100, 100, BufferedImage.TYPE_INT_ARGB);
+
+		// when
+		allocator.release(img);
+		BufferedImage other = allocator.allocate(100, 100, BufferedImage.TYPE_INT_RGB);
+
+		// then
+		assertNotSame(img, other);
+	}
+
+	@Test
+	public void imagesNotFromAllocatorAreIgnored() {
+		// given
+		PooledImageAllocator allocator = new PooledImageAllocator();
+		BufferedImage img = new BufferedImage(100, 100, BufferedImage.TYPE_INT_ARGB);
+
+		// when
+		allocator.release(img);
+		BufferedImage other = allocator.allocate(100, 100, BufferedImage.TYPE_INT_ARGB);
+
+		// then
+		assertNotSame(img, other);
+		assertEquals(0, allocator.getPooledBytes());
+	}
+
+	@Test
+	public void releasingTwiceDoesNotPoolTwice() {
+		// given
+		PooledImageAllocator allocator = new PooledImageAllocator();
+		BufferedImage img = allocator.allocate(10, 10, BufferedImage.TYPE_INT_ARGB);
+
+		// when
+		allocator.release(img);
+		allocator.release(img);
+
+		// then
+		assertEquals(10 * 10 * 4, allocator.getPooledBytes());
+	}
+
+	@Test
+	public void poolIsLimitedPerSize() {
+		// given
+		PooledImageAllocator allocator = new PooledImageAllocator(1, Long.MAX_VALUE, 0);
+		BufferedImage img1 = allocator.allocate(10, 10, BufferedImage.TYPE_INT_ARGB);
+		BufferedImage img2 = allocator.allocate(10, 10, BufferedImage.TYPE_INT_ARGB);
+
+		// when
+		allocator.release(img1);
+		allocator.release(img2);
+
+		// then
+		assertEquals(10 * 10 * 4, allocator.getPooledBytes());
+	}
+
+	@Test
+	public void poolIsLimitedByBytes() {
+		// given
+		PooledImageAllocator allocator = new PooledImageAllocator(4, 10 * 10 * 4 - 1, 0);
+		BufferedImage img = allocator.allocate(10, 10, BufferedImage.TYPE_INT_ARGB);
+
+		// when
+		allocator.release(img);
+
+		// then
+		assertEquals(0, allocator.getPooledBytes());
+		assertNotSame(img, allocator.allocate(10, 10, BufferedImage.TYPE_INT_ARGB));
+	}
+
+	@Test
+	public void scratchImageIsReusedOnSameThread() {
+		// given
+		PooledImageAllocator allocator = new PooledImageAllocator();
+		BufferedImage img = allocator.allocateScratch(100, 100, BufferedImage.TYPE_INT_ARGB);
+		fill(img, Color.blue);
+
+		// when
+		allocator.release(img);
+		BufferedImage reused = allocator.allocateScratch(100, 100, BufferedImage.TYPE_INT_ARGB);
+
+		// then
+		assertSame(img, reused);
+		assertEquals(0, reused.getRGB(0, 0));
+		assertEquals(0, allocator.getPooledBytes());
+	}
+
+	@Test
+	public void scratchImageIsNotSharedWithOtherThreads() throws InterruptedException {
+		// given
+		final PooledImageAllocator allocator = new PooledImageAllocator();
+		BufferedImage img = allocator.allocateScratch(100, 100, BufferedImage.TYPE_INT_ARGB);
+		allocator.release(img);
+
+		// when
+		final BufferedImage[] fromOtherThread = new BufferedImage[1];
+		Thread t = new Thread(new Runnable() {
+			public void run() {
+				fromOtherThread[0] = allocator.allocateScratch(100, 100, BufferedImage.TYPE_INT_ARGB);
+			}
+		});
+		t.start();
+		t.join();
+
+		// then
+		assertNotSame(img, fromOtherThread[0]);
+	}
+
+	@Test
+	public void scratchArenaIsLimitedByBytes() {
+		// given
+		PooledImageAllocator allocator = new PooledImageAllocator(4, 0, 4, 10 * 10 * 4 + 20 * 20 * 4 - 1);
+		BufferedImage small = allocator.allocateScratch(10, 10, BufferedImage.TYPE_INT_ARGB);
+		BufferedImage large = allocator.allocateScratch(20, 20, BufferedImage.TYPE_INT_ARGB);
+
+		// when
+		allocator.release(small);
+		allocator.release(large);
+
+		// then
+		assertEquals(20 * 20 * 4, allocator.getScratchBytes());
+		assertNotSame(small, allocator.allocateScratch(10, 10, BufferedImage.TYPE_INT_ARGB));
+		assertSame(large, allocator.allocateScratch(20, 20, BufferedImage.TYPE_INT_ARGB));
+		assertEquals(0, allocator.getScratchBytes());
+	}
+
+	@Test
+	public void scratchImageLargerThanArenaIsNotKept() {
+		// given
+		PooledImageAllocator allocator = new PooledImageAllocator(4, 0, 4, 10 * 10 * 4 - 1);
+		BufferedImage img = allocator.allocateScratch(10, 10, BufferedImage.TYPE_INT_ARGB);
+
+		// when
+		allocator.release(img);
+
+		// then
+		assertEquals(0, allocator.getScratchBytes());
+		assertNotSame(img, allocator.allocateScratch(10, 10, BufferedImage.TYPE_INT_ARGB));
+	}
+
+	@Test
+	public void negativeLimitsAreRejected() {
+		assertThrows(IllegalArgumentException.class, () -> new PooledImageAllocator(-1, 0, 0));
+		assertThrows(IllegalArgumentException.class, () -> new PooledImageAllocator(0, 0, 0, -1));
+	}
+
+	private static void fill(BufferedImage img, Color c) {
+		Graphics2D g = img.createGraphics();
+		g.setColor(c);
+		g.fillRect(0, 0, img.getWidth(), img.getHeight());
+		g.dispose();
+	}
+}
@@ -0,0 +1,246 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2022 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.builders;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+import net.evonit.thumbnailator2.Thumbnails;
+import net.evonit.thumbnailator2.filters.Flip;
+import net.evonit.thumbnailator2.filters.Rotation;
+import net.evonit.thumbnailator2.util.BufferedImages;
+import net.evonit.thumbnailator2.util.raster.RasterImages;
+import net.evonit.thumbnailator2.util.raster.StripedDataBuffer;
+import net.evonit.thumbnailator2.util.raster.StripedImages;
+import org.junit.jupiter.api.Test;
+
+import static net.evonit.thumbnailator2.test.TestImages.fillHalves;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StripedImageAllocatorTest {
+
+	@Test
+	public void imageWithinLimitIsNotStriped() {
+		// given
+		StripedImageAllocator allocator = new StripedImageAllocator(100 * 100 * 4);
+
+		// when
+		BufferedImage img = allocator.allocate(100, 100, BufferedImage.TYPE_INT_ARGB);
+
+		// then
+		assertFalse(StripedImages.isStriped(img));
+		assertEquals(BufferedImage.TYPE_INT_ARGB, img.getType());
+	}
+
+	@Test
+	public void imageAboveLimitIsStriped() {
+		// given
+		StripedImageAllocator allocator = new StripedImageAllocator(100 * 10 * 4);
+
+		// when
+		BufferedImage img = allocator.allocate(100, 95, BufferedImage.TYPE_INT_ARGB);
+
+		// then
+		assertTrue(StripedImages.isStriped(img));
+		assertEquals(BufferedImage.TYPE_CUSTOM, img.getType());
+		assertEquals(BufferedImage.TYPE_INT_ARGB, RasterImages.getImageType(img));
+		assertEquals(10, StripedImages.getStripCount(img));
+		assertEquals(10, StripedImages.getRowsPerStrip(img));
+		assertEquals(5, StripedImages.getStrip(img, 9).getHeight());
+	}
+
+	@Test
+	public void arraysDoNotExceedLimit() {
+		int[] types = {
+				BufferedImage.TYPE_INT_RGB,
+				BufferedImage.TYPE_3BYTE_BGR,
+				BufferedImage.TYPE_4BYTE_ABGR,
+				BufferedImage.TYPE_BYTE_GRAY,
+		};
+
+		for (int type : types) {
+			// given
+			StripedImageAllocator allocator = new StripedImageAllocator(4096);
+
+			// when
+			BufferedImage img = allocator.allocate(123, 77, type);
+
+			// then
+			StripedDataBuffer buffer = (StripedDataBuffer)img.getRaster().getDataBuffer();
+			for (int i = 0; i < buffer.getStripCount(); i++) {
+				Object data = buffer.getStripData(i);
+				int bytes = data instanceof int[] ? ((int[])data).length * 4 : ((byte[])data).length;
+				assertTrue(bytes <= 4096);
+			}
+			assertEquals(type, RasterImages.getImageType(img));
+		}
+	}
+
+	@Test
+	public void rowLargerThanLimitGivesOneRowPerStrip() {
+		// given
+		StripedImageAllocator allocator = new StripedImageAllocator(100);
+
+		// when
+		BufferedImage img = allocator.allocate(100, 10, BufferedImage.TYPE_INT_RGB);
+
+		// then
+		assertEquals(1, StripedImages.getRowsPerStrip(img));
+		assertEquals(10, StripedImages.getStripCount(img));
+	}
+
+	@Test
+	public void stripsSharePixelsWithImage() {
+		// given
+		StripedImageAllocator allocator = new StripedImageAllocator(100 * 10 * 4);
+		BufferedImage img = allocator.allocate(100, 100, BufferedImage.TYPE_INT_RGB);
+
+		// when
+		StripedImages.getStrip(img, 3).setRGB(5, 2, Color.green.getRGB());
+		img.setRGB(6, 32, Color.red.getRGB());
+
+		// then
+		assertEquals(Color.green.getRGB(), img.getRGB(5, 32));
+		assertEquals(Color.red.getRGB(), StripedImages.getStrip(img, 3).getRGB(6, 2));
+		assertEquals(BufferedImage.TYPE_INT_RGB, StripedImages.getStrip(img, 3).getType());
+	}
+
+	@Test
+	public void paintCoversAllStrips() {
+		// given
+		StripedImageAllocator allocator = new StripedImageAllocator(100 * 10 * 4);
+		BufferedImage img = allocator.allocate(100, 100, BufferedImage.TYPE_INT_RGB);
+
+		// when
+		fillHalves(img);
+
+		// then
+		for (int y = 0; y < 100; y++) {
+			assertEquals(Color.red.getRGB(), img.getRGB(49, y));
+			assertEquals(Color.blue.getRGB(), img.getRGB(50, y));
+		}
+	}
+
+	@Test
+	public void copyOfStripedImageHasOriginalType() {
+		// given
+		StripedImageAllocator allocator = new StripedImageAllocator(100 * 10 * 3);
+		BufferedImage img = allocator.allocate(100, 100, BufferedImage.TYPE_3BYTE_BGR);
+		fillHalves(img);
+
+		// when
+		BufferedImage copy = BufferedImages.copy(img);
+
+		// then
+		assertEquals(BufferedImage.TYPE_3BYTE_BGR, copy.getType());
+		assertEquals(Color.red.getRGB(), copy.getRGB(49, 99));
+		assertEquals(Color.blue.getRGB(), copy.getRGB(50, 0));
+	}
+
+	@Test
+	public void thumbnailFromStripedImage() throws IOException {
+		// given
+		BufferedImage img = new StripedImageAllocator(1024)
+				.allocate(2000, 1000, BufferedImage.TYPE_INT_RGB);
+		fillHalves(img);
+
+		// when
+		BufferedImage thumbnail = Thumbnails.of(img)
+				.size(200, 200)
+				.asBufferedImage();
+
+		// then
+		assertEquals(BufferedImage.TYPE_INT_RGB, thumbnail.getType());
+		assertEquals(200, thumbnail.getWidth());
+		assertEquals(100, thumbnail.getHeight());
+		assertEquals(Color.red.getRGB(), thumbnail.getRGB(10, 50));
+		assertEquals(Color.blue.getRGB(), thumbnail.getRGB(190, 50));
+	}
+
+	@Test
+	public void thumbnailsThroughAllocatorMatchHeapThumbnails() throws IOException {
+		// given
+		BufferedImage img = new BufferedImage(800, 600, BufferedImage.TYPE_INT_RGB);
+		fillHalves(img);
+		Graphics2D g = img.createGraphics();
+		g.setColor(Color.white);
+		g.fillOval(200, 150, 400, 300);
+		g.dispose();
+
+		// when
+		BufferedImage expected = Thumbnails.of(img)
+				.size(300, 300)
+				.rotate(90)
+				.addFilter(Flip.HORIZONTAL)
+				.asBufferedImage();
+		BufferedImage actual = Thumbnails.of(img)
+				.size(300, 300)
+				.rotate(90)
+				.addFilter(Flip.HORIZONTAL)
+				.imageAllocator(new StripedImageAllocator(4096))
+				.asBufferedImage();
+
+		// then
+		assertEquals(expected.getWidth(), actual.getWidth());
+		assertEquals(expected.getHeight(), actual.getHeight());
+		for (int y = 0; y < expected.getHeight(); y++) {
+			for (int x = 0; x < expected.getWidth(); x++) {
+				assertSimilar(expected.getRGB(x, y), actual.getRGB(x, y));
+			}
+		}
+	}
+
+	@Test
+	public void rotationOfStripedImage() {
+		// given
+		BufferedImage img = new StripedImageAllocator(1024)
+				.allocate(200, 100, BufferedImage.TYPE_INT_RGB);
+		fillHalves(img);
+
+		// when
+		BufferedImage rotated = Rotation.RIGHT_90_DEGREES.apply(img);
+
+		// then
+		assertEquals(BufferedImage.TYPE_INT_RGB, RasterImages.getImageType(rotated));
+		assertEquals(100, rotated.getWidth());
+		assertEquals(200, rotated.getHeight());
+		assertEquals(Color.red.getRGB(), rotated.getRGB(50, 10));
+		assertEquals(Color.blue.getRGB(), rotated.getRGB(50, 190));
+	}
+
+	@Test
+	public void invalidLimitIsRejected() {
+		assertThrows(IllegalArgumentException.class, () -> new StripedImageAllocator(0));
+	}
+
+	private static void assertSimilar(int expected, int actual) {
+		for (int shift = 0; shift < 32; shift += 8) {
+			int difference = Math.abs(((expected >> shift) & 0xff) - ((actual >> shift) & 0xff));
+			assertTrue(difference <= 1);
+		}
+	}
+}
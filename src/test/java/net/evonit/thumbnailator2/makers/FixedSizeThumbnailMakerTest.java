@@ -539,4 +539,19 @@ public class FixedSizeThumbnailMakerTest {
 		assertEquals(10, thumbnail.getWidth());
 		assertEquals(10, thumbnail.getHeight());
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void calculateSizeMatchesThumbnail() {
+		BufferedImage img = new BufferedImageBuilder(100, 60).build();
+
+		FixedSizeThumbnailMaker maker = new FixedSizeThumbnailMaker(50, 50)
+				.keepAspectRatio(true)
+				.fitWithinDimensions(true);
+		Dimension size = maker.calculateSize(100, 60);
+		BufferedImage thumbnail = maker.make(img);
+
+		assertEquals(new Dimension(50, 30), size);
+		assertEquals(size.width, thumbnail.getWidth());
+		assertEquals(size.height, thumbnail.getHeight());
+	}
+}
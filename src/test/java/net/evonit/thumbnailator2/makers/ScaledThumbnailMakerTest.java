@@ -313,4 +313,17 @@ public class ScaledThumbnailMakerTest {
 		assertEquals(10, thumbnail.getWidth());
 		assertEquals(1, thumbnail.getHeight());
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void calculateSizeMatchesThumbnail() {
+		BufferedImage img = new BufferedImageBuilder(100, 9).build();
+
+		ScaledThumbnailMaker maker = new ScaledThumbnailMaker(0.5, 0.1);
+		Dimension size = maker.calculateSize(100, 9);
+		BufferedImage thumbnail = maker.make(img);
+
+		assertEquals(new Dimension(50, 1), size);
+		assertEquals(size.width, thumbnail.getWidth());
+		assertEquals(size.height, thumbnail.getHeight());
+	}
+}
@@ -24,12 +24,23 @@
 
 package net.evonit.thumbnailator2.resizers;
 
+import net.evonit.thumbnailator2.builders.BufferedImageBuilder;
+import net.evonit.thumbnailator2.builders.ImageAllocator;
+import net.evonit.thumbnailator2.tasks.io.Cancellation;
 import org.junit.jupiter.api.Test;
 
 import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class ProgressiveBilinearResizerTest {
 
@@ -106,4 +117,82 @@ public class ProgressiveBilinearResizerTest {
 				});
 	}
 
+	private static BufferedImage noise(int width, int height) {
+		BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Random random = new Random(42);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				img.setRGB(x, y, random.nextInt());
+			}
+		}
+		return img;
+	}
+
+	private static int[] resize(BufferedImage srcImage, int width, int height, Cancellation cancellation) {
+		BufferedImage destImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Cancellation previous = Cancellation.setThreadCancellation(cancellation);
+		try {
+			new ProgressiveBilinearResizer().resize(srcImage, destImage);
+		} finally {
+			Cancellation.setThreadCancellation(previous);
+		}
+		return destImage.getRGB(0, 0, width, height, null, 0, width);
+	}
+
+	@Test
+	public void resizeWithDeadlineGivesSameResultUpToRounding() {
+		BufferedImage srcImage = noise(1000, 700);
+
+		for (int[] size : new int[][] {{120, 84}, {600, 420}}) {
+			// when
+			int[] whole = resize(srcImage, size[0], size[1], null);
+			int[] banded = resize(srcImage, size[0], size[1], Cancellation.withTimeout(1, TimeUnit.HOURS));
+
+			// then
+			assertEquals(whole.length, banded.length);
+			for (int i = 0; i < whole.length; i++) {
+				for (int shift = 0; shift < 24; shift += 8) {
+					int difference = ((whole[i] >> shift) & 0xff) - ((banded[i] >> shift) & 0xff);
+					assertTrue(Math.abs(difference) <= 1, "pixel " + i);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void cancelledResizeReleasesScratchImage() {
+		// given
+		final Set<BufferedImage> outstanding =
+				Collections.newSetFromMap(new IdentityHashMap<BufferedImage, Boolean>());
+		ImageAllocator allocator = new ImageAllocator() {
+			public BufferedImage allocate(int width, int height, int imageType) {
+				BufferedImage img = new BufferedImage(width, height, imageType);
+				outstanding.add(img);
+				return img;
+			}
+
+			public BufferedImage allocateScratch(int width, int height, int imageType) {
+				return allocate(width, height, imageType);
+			}
+
+			public void release(BufferedImage img) {
+				outstanding.remove(img);
+			}
+		};
+		Cancellation cancellation = new Cancellation();
+		cancellation.cancel();
+		ImageAllocator previous = BufferedImageBuilder.setThreadAllocator(allocator);
+
+		// when
+		try {
+			assertThrows(CancellationException.class, () ->
+					resize(noise(1000, 700), 120, 84, cancellation)
+			);
+		} finally {
+			BufferedImageBuilder.setThreadAllocator(previous);
+		}
+
+		// then
+		assertTrue(outstanding.isEmpty());
+	}
 }
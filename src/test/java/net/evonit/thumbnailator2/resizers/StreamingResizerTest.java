@@ -0,0 +1,124 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2022 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.resizers;
+
+import java.awt.image.BufferedImage;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StreamingResizerTest {
+
+	@Test
+	public void pixelsAreMeanOfSourcePixels() {
+		// given
+		StreamingResizer resizer = new StreamingResizer(4, 2, 2, 1, false);
+
+		// when
+		resizer.addRow(0, new int[] {0x000000, 0x102030, 0xFFFFFF, 0xFF0000});
+		resizer.addRow(1, new int[] {0x000000, 0x102030, 0x00FF00, 0x0000FF});
+
+		// then
+		BufferedImage img = resizer.getImage();
+		assertEquals(BufferedImage.TYPE_INT_RGB, img.getType());
+		assertEquals(2, img.getWidth());
+		assertEquals(1, img.getHeight());
+		assertEquals(0xFF081018, img.getRGB(0, 0));
+		assertEquals(0xFF808080, img.getRGB(1, 0));
+	}
+
+	@Test
+	public void colorsAreWeightedByAlpha() {
+		// given
+		StreamingResizer resizer = new StreamingResizer(2, 2, 1, 1, true);
+
+		// when
+		resizer.addRow(0, new int[] {0x00FF0000, 0xFF0000FF});
+		resizer.addRow(1, new int[] {0x00FF0000, 0xFF0000FF});
+
+		// then
+		BufferedImage img = resizer.getImage();
+		assertEquals(BufferedImage.TYPE_INT_ARGB, img.getType());
+		assertEquals(0x800000FF, img.getRGB(0, 0));
+	}
+
+	@Test
+	public void pixelsCanBeAddedInAnyOrder() {
+		// given
+		int[][] rows = new int[9][9];
+		for (int y = 0; y < 9; y++) {
+			for (int x = 0; x < 9; x++) {
+				rows[y][x] = (x * 25) << 16 | (y * 25) << 8 | (x * y);
+			}
+		}
+		StreamingResizer byRow = new StreamingResizer(9, 9, 4, 3, false);
+		StreamingResizer byColumn = new StreamingResizer(9, 9, 4, 3, false);
+
+		// when
+		for (int y = 0; y < 9; y++) {
+			byRow.addRow(y, rows[y]);
+		}
+		for (int x = 8; x >= 0; x--) {
+			for (int y = 0; y < 9; y++) {
+				byColumn.addPixels(y, x, 1, new int[] {rows[y][x]}, 1);
+			}
+		}
+
+		// then
+		BufferedImage expected = byRow.getImage();
+		BufferedImage img = byColumn.getImage();
+		for (int y = 0; y < 3; y++) {
+			for (int x = 0; x < 4; x++) {
+				assertEquals(expected.getRGB(x, y), img.getRGB(x, y));
+			}
+		}
+	}
+
+	@Test
+	public void evenlySpacedPixels() {
+		// given
+		StreamingResizer resizer = new StreamingResizer(4, 1, 2, 1, false);
+
+		// when
+		resizer.addPixels(0, 0, 2, new int[] {0x202020, 0x404040}, 2);
+		resizer.addPixels(0, 1, 2, new int[] {0x606060, 0x808080}, 2);
+
+		// then
+		BufferedImage img = resizer.getImage();
+		assertEquals(0xFF404040, img.getRGB(0, 0));
+		assertEquals(0xFF606060, img.getRGB(1, 0));
+	}
+
+	@Test
+	public void cannotEnlarge() {
+		assertThrows(IllegalArgumentException.class, () -> new StreamingResizer(10, 10, 11, 10, false));
+	}
+
+	@Test
+	public void sizeMustBePositive() {
+		assertThrows(IllegalArgumentException.class, () -> new StreamingResizer(10, 10, 0, 10, false));
+	}
+}
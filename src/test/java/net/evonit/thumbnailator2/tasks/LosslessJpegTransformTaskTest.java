@@ -0,0 +1,300 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2022 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.tasks;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import net.evonit.thumbnailator2.TestUtils;
+import net.evonit.thumbnailator2.ThumbnailParameter;
+import net.evonit.thumbnailator2.Thumbnailator;
+import net.evonit.thumbnailator2.builders.ThumbnailParameterBuilder;
+import net.evonit.thumbnailator2.geometry.AbsoluteSize;
+import net.evonit.thumbnailator2.geometry.Coordinate;
+import net.evonit.thumbnailator2.geometry.Region;
+import net.evonit.thumbnailator2.tasks.io.BufferedImageSink;
+import net.evonit.thumbnailator2.tasks.io.FileImageSink;
+import net.evonit.thumbnailator2.tasks.io.FileImageSource;
+import net.evonit.thumbnailator2.tasks.io.ImageSink;
+import net.evonit.thumbnailator2.tasks.io.ImageSource;
+import net.evonit.thumbnailator2.tasks.io.InputStreamImageSource;
+import net.evonit.thumbnailator2.tasks.io.OutputStreamImageSink;
+import net.evonit.thumbnailator2.util.exif.ExifUtils;
+import net.evonit.thumbnailator2.util.exif.Orientation;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LosslessJpegTransformTaskTest {
+
+	/**
+	 * A task which records whether the image was transformed losslessly.
+	 */
+	private static class RecordingTask<S, D> extends SourceSinkThumbnailTask<S, D> {
+		boolean lossless;
+
+		RecordingTask(ThumbnailParameter param, ImageSource<S> source, ImageSink<D> destination) {
+			super(param, source, destination);
+		}
+
+		@Override
+		public boolean transformLosslessly() throws IOException {
+			lossless = super.transformLosslessly();
+			return lossless;
+		}
+	}
+
+	@BeforeEach @AfterEach
+	public void clearSystemProperty() {
+		System.clearProperty("thumbnailator.losslessJpegTransform");
+	}
+
+	private static byte[] createThumbnail(String resourceName, ThumbnailParameter param, boolean expectLossless) throws IOException {
+		InputStream is = TestUtils.getResourceStream(resourceName);
+		try {
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			RecordingTask<?, ?> task = new RecordingTask<>(
+					param, new InputStreamImageSource(is), new OutputStreamImageSink(baos)
+			);
+			Thumbnailator.createThumbnail(task);
+			assertEquals(expectLossless, task.lossless, resourceName);
+			return baos.toByteArray();
+
+		} finally {
+			is.close();
+		}
+	}
+
+	private static BufferedImage createReference(String resourceName, ThumbnailParameter param) throws IOException {
+		InputStream is = TestUtils.getResourceStream(resourceName);
+		try {
+			BufferedImageSink sink = new BufferedImageSink();
+			Thumbnailator.createThumbnail(
+					new SourceSinkThumbnailTask<>(param, new InputStreamImageSource(is), sink)
+			);
+			return sink.getSink();
+
+		} finally {
+			is.close();
+		}
+	}
+
+	private static BufferedImage read(byte[] data) throws IOException {
+		return ImageIO.read(new ByteArrayInputStream(data));
+	}
+
+	private static Orientation orientationOf(byte[] data) throws IOException {
+		ImageInputStream iis = ImageIO.createImageInputStream(new ByteArrayInputStream(data));
+		Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+		ImageReader reader = readers.next();
+		try {
+			reader.setInput(iis);
+			return ExifUtils.getExifOrientation(reader, 0);
+
+		} finally {
+			reader.dispose();
+		}
+	}
+
+	private static double meanDifference(BufferedImage a, BufferedImage b) {
+		double sum = 0;
+		for (int y = 0; y < a.getHeight(); y++) {
+			for (int x = 0; x < a.getWidth(); x++) {
+				int p = a.getRGB(x, y);
+				int q = b.getRGB(x, y);
+				for (int shift = 0; shift < 24; shift += 8) {
+					sum += Math.abs(((p >> shift) & 0xff) - ((q >> shift) & 0xff));
+				}
+			}
+		}
+		return sum / (a.getWidth() * a.getHeight() * 3);
+	}
+
+	@Test
+	public void notUsedWhenDisabled() throws IOException {
+		// given
+		// The "thumbnailator.losslessJpegTransform" system property is not set.
+		ThumbnailParameter param = new ThumbnailParameterBuilder().scale(1.0).format("jpg").build();
+
+		// when
+		BufferedImage thumbnail = read(createThumbnail("Exif/source_6.jpg", param, false));
+
+		// then
+		assertEquals(160, thumbnail.getWidth());
+		assertEquals(160, thumbnail.getHeight());
+	}
+
+	@Test
+	public void appliesExifOrientation() throws IOException {
+		System.setProperty("thumbnailator.losslessJpegTransform", "true");
+
+		for (String prefix : new String[] {"Exif/source_", "Exif/sourceWide_", "Exif/sourceTall_"}) {
+			for (int i = 1; i <= 8; i++) {
+				// given
+				String resourceName = prefix + i + ".jpg";
+				ThumbnailParameterBuilder builder = new ThumbnailParameterBuilder()
+						.scale(1.0)
+						.format(ThumbnailParameter.ORIGINAL_FORMAT);
+				BufferedImage expected = createReference(resourceName, builder.build());
+
+				// when
+				byte[] data = createThumbnail(resourceName, builder.build(), true);
+
+				// then
+				BufferedImage thumbnail = read(data);
+				assertEquals(expected.getWidth(), thumbnail.getWidth(), resourceName);
+				assertEquals(expected.getHeight(), thumbnail.getHeight(), resourceName);
+				assertTrue(meanDifference(expected, thumbnail) < 1.0, resourceName);
+				if (i != 1) {
+					assertEquals(Orientation.TOP_LEFT, orientationOf(data), resourceName);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void cropsRegionAlignedToMcus() throws IOException {
+		// given
+		System.setProperty("thumbnailator.losslessJpegTransform", "true");
+		ThumbnailParameterBuilder builder = new ThumbnailParameterBuilder()
+				.region(new Region(new Coordinate(16, 32), new AbsoluteSize(64, 48)))
+				.scale(1.0)
+				.format("jpg");
+		BufferedImage expected = createReference("Exif/source_6.jpg", builder.build());
+
+		// when
+		BufferedImage thumbnail = read(createThumbnail("Exif/source_6.jpg", builder.build(), true));
+
+		// then
+		assertEquals(64, thumbnail.getWidth());
+		assertEquals(48, thumbnail.getHeight());
+		assertTrue(meanDifference(expected, thumbnail) < 1.0);
+	}
+
+	@Test
+	public void notUsedForUnalignedRegion() throws IOException {
+		// given
+		System.setProperty("thumbnailator.losslessJpegTransform", "true");
+		ThumbnailParameter param = new ThumbnailParameterBuilder()
+				.region(new Region(new Coordinate(5, 7), new AbsoluteSize(64, 48)))
+				.scale(1.0)
+				.format("jpg")
+				.build();
+
+		// when
+		BufferedImage thumbnail = read(createThumbnail("Exif/source_6.jpg", param, false));
+
+		// then
+		assertEquals(64, thumbnail.getWidth());
+		assertEquals(48, thumbnail.getHeight());
+	}
+
+	@Test
+	public void notUsedWhenResized() throws IOException {
+		// given
+		System.setProperty("thumbnailator.losslessJpegTransform", "true");
+		ThumbnailParameter param = new ThumbnailParameterBuilder().size(80, 80).format("jpg").build();
+
+		// when
+		BufferedImage thumbnail = read(createThumbnail("Exif/source_6.jpg", param, false));
+
+		// then
+		assertEquals(80, thumbnail.getWidth());
+		assertEquals(80, thumbnail.getHeight());
+	}
+
+	@Test
+	public void notUsedWithOutputQuality() throws IOException {
+		// given
+		System.setProperty("thumbnailator.losslessJpegTransform", "true");
+		ThumbnailParameter param = new ThumbnailParameterBuilder()
+				.scale(1.0)
+				.quality(0.5f)
+				.format("jpg")
+				.build();
+
+		// when
+		BufferedImage thumbnail = read(createThumbnail("Exif/source_6.jpg", param, false));
+
+		// then
+		assertEquals(160, thumbnail.getWidth());
+	}
+
+	@Test
+	public void notUsedForOtherOutputFormats() throws IOException {
+		// given
+		System.setProperty("thumbnailator.losslessJpegTransform", "true");
+		ThumbnailParameter param = new ThumbnailParameterBuilder().scale(1.0).format("png").build();
+
+		// when
+		byte[] data = createThumbnail("Exif/source_6.jpg", param, false);
+
+		// then
+		assertEquals("png", TestUtils.getFormatName(new ByteArrayInputStream(data)));
+	}
+
+	@Test
+	public void transformsFileToFile() throws IOException {
+		// given
+		System.setProperty("thumbnailator.losslessJpegTransform", "true");
+		File sourceFile = File.createTempFile("lossless", ".jpg");
+		File destinationFile = File.createTempFile("lossless", ".jpg");
+		try {
+			TestUtils.copyResourceToFile("Exif/source_8.jpg", sourceFile);
+			ThumbnailParameter param = new ThumbnailParameterBuilder()
+					.scale(1.0)
+					.format(ThumbnailParameter.ORIGINAL_FORMAT)
+					.build();
+			FileImageSink sink = new FileImageSink(destinationFile, true);
+			RecordingTask<File, File> task =
+					new RecordingTask<>(param, new FileImageSource(sourceFile), sink);
+
+			// when
+			Thumbnailator.createThumbnail(task);
+
+			// then
+			assertTrue(task.lossless);
+			BufferedImage thumbnail = ImageIO.read(destinationFile);
+			assertEquals(160, thumbnail.getWidth());
+			assertEquals(160, thumbnail.getHeight());
+
+		} finally {
+			sourceFile.delete();
+			destinationFile.delete();
+		}
+	}
+}
@@ -0,0 +1,359 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2022 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.tasks;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.imageio.ImageIO;
+
+import net.evonit.thumbnailator2.TestUtils;
+import net.evonit.thumbnailator2.ThumbnailParameter;
+import net.evonit.thumbnailator2.Thumbnailator;
+import net.evonit.thumbnailator2.builders.ThumbnailParameterBuilder;
+import net.evonit.thumbnailator2.filters.Rotation;
+import net.evonit.thumbnailator2.tasks.io.FileImageSink;
+import net.evonit.thumbnailator2.tasks.io.FileImageSource;
+import net.evonit.thumbnailator2.tasks.io.ImageSink;
+import net.evonit.thumbnailator2.tasks.io.ImageSource;
+import net.evonit.thumbnailator2.tasks.io.InputStreamImageSource;
+import net.evonit.thumbnailator2.tasks.io.OutputStreamImageSink;
+import net.evonit.thumbnailator2.tasks.io.jpeg.JpegTestImages;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PassThroughTaskTest {
+
+	private static byte[] jpegByteArray;
+	private static byte[] pngByteArray;
+
+	static {
+		try {
+			BufferedImage img = JpegTestImages.createPhoto(200, 150, BufferedImage.TYPE_INT_RGB);
+			jpegByteArray = JpegTestImages.write(img);
+
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			ImageIO.write(img, "png", baos);
+			pngByteArray = baos.toByteArray();
+
+		} catch (IOException e) {
+			fail();
+		}
+	}
+
+	/**
+	 * A task which records whether the source image was copied.
+	 */
+	private static class RecordingTask<S, D> extends SourceSinkThumbnailTask<S, D> {
+		boolean passedThrough;
+		boolean lossless;
+
+		RecordingTask(ThumbnailParameter param, ImageSource<S> source, ImageSink<D> destination) {
+			super(param, source, destination);
+		}
+
+		@Override
+		public boolean passThrough() throws IOException {
+			passedThrough = super.passThrough();
+			return passedThrough;
+		}
+
+		@Override
+		public boolean transformLosslessly() throws IOException {
+			lossless = super.transformLosslessly();
+			return lossless;
+		}
+	}
+
+	@BeforeEach @AfterEach
+	public void clearSystemProperties() {
+		System.clearProperty("thumbnailator.passThrough");
+		System.clearProperty("thumbnailator.losslessJpegTransform");
+	}
+
+	private static byte[] createThumbnail(InputStream is, ThumbnailParameter param, boolean expectPassThrough) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		RecordingTask<?, ?> task = new RecordingTask<>(
+				param, new InputStreamImageSource(is), new OutputStreamImageSink(baos)
+		);
+		Thumbnailator.createThumbnail(task);
+		assertEquals(expectPassThrough, task.passedThrough);
+		return baos.toByteArray();
+	}
+
+	private static byte[] createThumbnail(byte[] data, ThumbnailParameter param, boolean expectPassThrough) throws IOException {
+		return createThumbnail(new ByteArrayInputStream(data), param, expectPassThrough);
+	}
+
+	private static BufferedImage read(byte[] data) throws IOException {
+		return ImageIO.read(new ByteArrayInputStream(data));
+	}
+
+	@Test
+	public void notUsedWhenDisabled() throws IOException {
+		// given
+		// The "thumbnailator.passThrough" system property is not set.
+		ThumbnailParameter param = new ThumbnailParameterBuilder().size(200, 150).format("jpg").build();
+
+		// when
+		byte[] data = createThumbnail(jpegByteArray, param, false);
+
+		// then
+		assertFalse(Arrays.equals(jpegByteArray, data));
+		assertEquals(200, read(data).getWidth());
+	}
+
+	@Test
+	public void copiesJpegOfThumbnailSize() throws IOException {
+		// given
+		System.setProperty("thumbnailator.passThrough", "true");
+		ThumbnailParameter param = new ThumbnailParameterBuilder().size(200, 150).format("jpg").build();
+
+		// when
+		byte[] data = createThumbnail(jpegByteArray, param, true);
+
+		// then
+		assertArrayEquals(jpegByteArray, data);
+	}
+
+	@Test
+	public void copiesImageWhichFitsWithinSize() throws IOException {
+		// given
+		System.setProperty("thumbnailator.passThrough", "true");
+		ThumbnailParameter param = new ThumbnailParameterBuilder()
+				.size(200, 200)
+				.format(ThumbnailParameter.ORIGINAL_FORMAT)
+				.build();
+
+		// when
+		byte[] data = createThumbnail(pngByteArray, param, true);
+
+		// then
+		assertArrayEquals(pngByteArray, data);
+	}
+
+	@Test
+	public void copiesImageAtScaleOfOne() throws IOException {
+		// given
+		System.setProperty("thumbnailator.passThrough", "true");
+		ThumbnailParameter param = new ThumbnailParameterBuilder().scale(1.0).format("PNG").build();
+
+		// when
+		byte[] data = createThumbnail(pngByteArray, param, true);
+
+		// then
+		assertArrayEquals(pngByteArray, data);
+	}
+
+	@Test
+	public void notUsedWhenResized() throws IOException {
+		// given
+		System.setProperty("thumbnailator.passThrough", "true");
+		ThumbnailParameter param = new ThumbnailParameterBuilder().size(100, 100).format("jpg").build();
+
+		// when
+		BufferedImage thumbnail = read(createThumbnail(jpegByteArray, param, false));
+
+		// then
+		assertEquals(100, thumbnail.getWidth());
+		assertEquals(75, thumbnail.getHeight());
+	}
+
+	@Test
+	public void notUsedForOtherOutputFormats() throws IOException {
+		// given
+		System.setProperty("thumbnailator.passThrough", "true");
+		ThumbnailParameter param = new ThumbnailParameterBuilder().scale(1.0).format("png").build();
+
+		// when
+		byte[] data = createThumbnail(jpegByteArray, param, false);
+
+		// then
+		assertEquals("png", TestUtils.getFormatName(new ByteArrayInputStream(data)));
+	}
+
+	@Test
+	public void notUsedWithOutputQuality() throws IOException {
+		// given
+		System.setProperty("thumbnailator.passThrough", "true");
+		ThumbnailParameter param = new ThumbnailParameterBuilder()
+				.scale(1.0)
+				.quality(0.5f)
+				.format("jpg")
+				.build();
+
+		// when
+		byte[] data = createThumbnail(jpegByteArray, param, false);
+
+		// then
+		assertFalse(Arrays.equals(jpegByteArray, data));
+	}
+
+	@Test
+	public void notUsedWithFilters() throws IOException {
+		// given
+		System.setProperty("thumbnailator.passThrough", "true");
+		ThumbnailParameter param = new ThumbnailParameterBuilder()
+				.scale(1.0)
+				.filters(Collections.singletonList(Rotation.RIGHT_90_DEGREES))
+				.format("png")
+				.build();
+
+		// when
+		BufferedImage thumbnail = read(createThumbnail(pngByteArray, param, false));
+
+		// then
+		assertEquals(150, thumbnail.getWidth());
+		assertEquals(200, thumbnail.getHeight());
+	}
+
+	@Test
+	public void notUsedForExifOrientation() throws IOException {
+		// given
+		System.setProperty("thumbnailator.passThrough", "true");
+		ThumbnailParameter param = new ThumbnailParameterBuilder()
+				.scale(1.0)
+				.format(ThumbnailParameter.ORIGINAL_FORMAT)
+				.build();
+		InputStream is = TestUtils.getResourceStream("Exif/sourceWide_6.jpg");
+
+		// when
+		BufferedImage thumbnail = read(createThumbnail(is, param, false));
+		is.close();
+
+		// then
+		assertEquals(160, thumbnail.getWidth());
+		assertEquals(80, thumbnail.getHeight());
+	}
+
+	@Test
+	public void transformsLosslesslyAfterHeaderIsRead() throws IOException {
+		// given
+		System.setProperty("thumbnailator.passThrough", "true");
+		System.setProperty("thumbnailator.losslessJpegTransform", "true");
+		ThumbnailParameter param = new ThumbnailParameterBuilder()
+				.scale(1.0)
+				.format(ThumbnailParameter.ORIGINAL_FORMAT)
+				.build();
+		InputStream is = TestUtils.getResourceStream("Exif/source_6.jpg");
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		RecordingTask<?, ?> task = new RecordingTask<>(
+				param, new InputStreamImageSource(is), new OutputStreamImageSink(baos)
+		);
+
+		// when
+		Thumbnailator.createThumbnail(task);
+		is.close();
+
+		// then
+		assertFalse(task.passedThrough);
+		assertTrue(task.lossless);
+		assertEquals(160, read(baos.toByteArray()).getWidth());
+	}
+
+	@Test
+	public void unknownFormatIsStillReported() throws IOException {
+		// given
+		System.setProperty("thumbnailator.passThrough", "true");
+		ThumbnailParameter param = new ThumbnailParameterBuilder().scale(1.0).build();
+
+		// when, then
+		try {
+			createThumbnail("not an image".getBytes("US-ASCII"), param, false);
+			fail();
+		} catch (UnsupportedFormatException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void copiesFileToFile() throws IOException {
+		// given
+		System.setProperty("thumbnailator.passThrough", "true");
+		File sourceFile = File.createTempFile("passThrough", ".png");
+		File destinationFile = File.createTempFile("passThrough", ".png");
+		try {
+			Files.write(sourceFile.toPath(), pngByteArray);
+			ThumbnailParameter param = new ThumbnailParameterBuilder()
+					.size(400, 150)
+					.format(ThumbnailParameter.ORIGINAL_FORMAT)
+					.build();
+			RecordingTask<File, File> task = new RecordingTask<>(
+					param, new FileImageSource(sourceFile), new FileImageSink(destinationFile, true)
+			);
+
+			// when
+			Thumbnailator.createThumbnail(task);
+
+			// then
+			assertTrue(task.passedThrough);
+			assertArrayEquals(pngByteArray, Files.readAllBytes(destinationFile.toPath()));
+
+		} finally {
+			sourceFile.delete();
+			destinationFile.delete();
+		}
+	}
+
+	@Test
+	public void notUsedWhenWritingToSourceFile() throws IOException {
+		// given
+		System.setProperty("thumbnailator.passThrough", "true");
+		File file = File.createTempFile("passThrough", ".png");
+		try {
+			Files.write(file.toPath(), pngByteArray);
+			ThumbnailParameter param = new ThumbnailParameterBuilder()
+					.scale(1.0)
+					.format(ThumbnailParameter.ORIGINAL_FORMAT)
+					.build();
+			RecordingTask<File, File> task = new RecordingTask<>(
+					param, new FileImageSource(file), new FileImageSink(file, true)
+			);
+
+			// when
+			Thumbnailator.createThumbnail(task);
+
+			// then
+			assertFalse(task.passedThrough);
+			BufferedImage img = ImageIO.read(file);
+			assertEquals(200, img.getWidth());
+			assertEquals(150, img.getHeight());
+
+		} finally {
+			file.delete();
+		}
+	}
+}
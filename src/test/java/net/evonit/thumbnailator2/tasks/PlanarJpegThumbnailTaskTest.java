@@ -0,0 +1,340 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2022 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.tasks;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import javax.imageio.ImageIO;
+
+import net.evonit.thumbnailator2.ThumbnailParameter;
+import net.evonit.thumbnailator2.Thumbnailator;
+import net.evonit.thumbnailator2.builders.ThumbnailParameterBuilder;
+import net.evonit.thumbnailator2.filters.Rotation;
+import net.evonit.thumbnailator2.tasks.io.FileImageSink;
+import net.evonit.thumbnailator2.tasks.io.FileImageSource;
+import net.evonit.thumbnailator2.tasks.io.ImageSink;
+import net.evonit.thumbnailator2.tasks.io.ImageSource;
+import net.evonit.thumbnailator2.tasks.io.InputStreamImageSource;
+import net.evonit.thumbnailator2.tasks.io.OutputStreamImageSink;
+import net.evonit.thumbnailator2.tasks.io.jpeg.JpegTestImages;
+import net.evonit.thumbnailator2.tasks.io.jpeg.YCbCrImage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PlanarJpegThumbnailTaskTest {
+
+	private static BufferedImage sourceImage;
+	private static byte[] sourceByteArray;
+
+	static {
+		try {
+			sourceImage = JpegTestImages.createPhoto(400, 300, BufferedImage.TYPE_3BYTE_BGR);
+			sourceByteArray = JpegTestImages.write(sourceImage);
+		} catch (IOException e) {
+			fail();
+		}
+	}
+
+	/**
+	 * A task which records whether the planes of the source image were read.
+	 */
+	private static class RecordingTask<S, D> extends SourceSinkThumbnailTask<S, D> {
+		boolean planar;
+
+		RecordingTask(ThumbnailParameter param, ImageSource<S> source, ImageSink<D> destination) {
+			super(param, source, destination);
+		}
+
+		@Override
+		public YCbCrImage readYCbCr() throws IOException {
+			YCbCrImage img = super.readYCbCr();
+			planar = img != null;
+			return img;
+		}
+	}
+
+	@BeforeEach @AfterEach
+	public void clearSystemProperty() {
+		System.clearProperty("thumbnailator.planarJpeg");
+	}
+
+	private static byte[] createThumbnail(byte[] data, ThumbnailParameter param, boolean expectPlanar) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		RecordingTask<?, ?> task = new RecordingTask<>(
+				param,
+				new InputStreamImageSource(new ByteArrayInputStream(data)),
+				new OutputStreamImageSink(baos)
+		);
+		Thumbnailator.createThumbnail(task);
+		assertEquals(expectPlanar, task.planar);
+		return baos.toByteArray();
+	}
+
+	private static BufferedImage read(byte[] data) throws IOException {
+		return ImageIO.read(new ByteArrayInputStream(data));
+	}
+
+	private static double differenceFromSource(BufferedImage thumbnail) {
+		BufferedImage img = new BufferedImage(
+				thumbnail.getWidth(), thumbnail.getHeight(), BufferedImage.TYPE_3BYTE_BGR
+		);
+		img.getGraphics().drawImage(thumbnail, 0, 0, null);
+		return JpegTestImages.meanDifference(sourceImage, img, 4);
+	}
+
+	private static String formatOf(byte[] data) throws IOException {
+		return ImageIO.getImageReaders(
+				ImageIO.createImageInputStream(new ByteArrayInputStream(data))
+		).next().getFormatName();
+	}
+
+	@Test
+	public void planesNotUsedWhenDisabled() throws IOException {
+		// given
+		// The "thumbnailator.planarJpeg" system property is not set.
+		ThumbnailParameter param = new ThumbnailParameterBuilder().size(100, 100).format("jpg").build();
+
+		// when
+		BufferedImage thumbnail = read(createThumbnail(sourceByteArray, param, false));
+
+		// then
+		assertEquals(100, thumbnail.getWidth());
+		assertEquals(75, thumbnail.getHeight());
+	}
+
+	@Test
+	public void planesUsedWhenEnabled() throws IOException {
+		// given
+		ThumbnailParameter param = new ThumbnailParameterBuilder().size(100, 100).format("jpg").build();
+		BufferedImage expected = read(createThumbnail(sourceByteArray, param, false));
+		System.setProperty("thumbnailator.planarJpeg", "true");
+
+		// when
+		byte[] data = createThumbnail(sourceByteArray, param, true);
+
+		// then
+		BufferedImage thumbnail = read(data);
+		assertEquals("JPEG", formatOf(data));
+		assertEquals(100, thumbnail.getWidth());
+		assertEquals(75, thumbnail.getHeight());
+		assertTrue(differenceFromSource(thumbnail) < differenceFromSource(expected) + 0.5);
+	}
+
+	@Test
+	public void planesAreWrittenAsImageByDefault() throws IOException {
+		// given
+		ThumbnailParameter param = new ThumbnailParameterBuilder().size(100, 100).format("jpg").build();
+		BufferedImage expected = read(createThumbnail(sourceByteArray, param, false));
+		System.setProperty("thumbnailator.planarJpeg", "true");
+		InputStreamImageSource source = new InputStreamImageSource(new ByteArrayInputStream(sourceByteArray));
+		source.setThumbnailParameter(param);
+		BufferedImage[] written = new BufferedImage[1];
+		ThumbnailTask<byte[], BufferedImage> task = new ThumbnailTask<byte[], BufferedImage>(param) {
+			@Override
+			public YCbCrImage readYCbCr() throws IOException {
+				return source.readYCbCr();
+			}
+
+			@Override
+			public BufferedImage read() throws IOException {
+				return source.read();
+			}
+
+			@Override
+			public void write(BufferedImage img) {
+				written[0] = img;
+			}
+
+			@Override
+			public byte[] getSource() {
+				return sourceByteArray;
+			}
+
+			@Override
+			public BufferedImage getDestination() {
+				return written[0];
+			}
+		};
+
+		// when
+		Thumbnailator.createThumbnail(task);
+
+		// then
+		BufferedImage thumbnail = written[0];
+		assertEquals(100, thumbnail.getWidth());
+		assertEquals(75, thumbnail.getHeight());
+		assertEquals(BufferedImage.TYPE_3BYTE_BGR, thumbnail.getType());
+		assertTrue(differenceFromSource(thumbnail) < differenceFromSource(expected) + 0.5);
+	}
+
+	@Test
+	public void planesNotUsedWithoutReducedDecoding() throws IOException {
+		// given
+		System.setProperty("thumbnailator.planarJpeg", "true");
+		ThumbnailParameter param = new ThumbnailParameterBuilder().size(300, 300).format("jpg").build();
+
+		// when
+		BufferedImage thumbnail = read(createThumbnail(sourceByteArray, param, false));
+
+		// then
+		assertEquals(300, thumbnail.getWidth());
+		assertEquals(225, thumbnail.getHeight());
+	}
+
+	@Test
+	public void planesNotUsedForScalingFactor() throws IOException {
+		// given
+		System.setProperty("thumbnailator.planarJpeg", "true");
+		ThumbnailParameter param = new ThumbnailParameterBuilder().scale(0.25).format("jpeg").build();
+
+		// when
+		BufferedImage thumbnail = read(createThumbnail(sourceByteArray, param, false));
+
+		// then
+		assertEquals(100, thumbnail.getWidth());
+		assertEquals(75, thumbnail.getHeight());
+	}
+
+	@Test
+	public void planesUsedForOriginalFormat() throws IOException {
+		// given
+		System.setProperty("thumbnailator.planarJpeg", "true");
+		ThumbnailParameter param = new ThumbnailParameterBuilder()
+				.size(100, 100)
+				.format(ThumbnailParameter.ORIGINAL_FORMAT)
+				.build();
+
+		// when
+		byte[] data = createThumbnail(sourceByteArray, param, true);
+
+		// then
+		assertEquals("JPEG", formatOf(data));
+	}
+
+	@Test
+	public void planesNotUsedForOtherOutputFormats() throws IOException {
+		// given
+		System.setProperty("thumbnailator.planarJpeg", "true");
+		ThumbnailParameter param = new ThumbnailParameterBuilder().size(100, 100).format("png").build();
+
+		// when
+		byte[] data = createThumbnail(sourceByteArray, param, false);
+
+		// then
+		assertEquals("png", formatOf(data));
+		assertEquals(100, read(data).getWidth());
+	}
+
+	@Test
+	public void planesNotUsedWithImageFilters() throws IOException {
+		// given
+		System.setProperty("thumbnailator.planarJpeg", "true");
+		ThumbnailParameter param = new ThumbnailParameterBuilder()
+				.size(100, 100)
+				.format("jpg")
+				.filters(Collections.singletonList(Rotation.RIGHT_90_DEGREES))
+				.build();
+
+		// when
+		BufferedImage thumbnail = read(createThumbnail(sourceByteArray, param, false));
+
+		// then
+		assertEquals(75, thumbnail.getWidth());
+		assertEquals(100, thumbnail.getHeight());
+	}
+
+	@Test
+	public void planesNotUsedForOtherInputFormats() throws IOException {
+		// given
+		System.setProperty("thumbnailator.planarJpeg", "true");
+		ByteArrayOutputStream png = new ByteArrayOutputStream();
+		ImageIO.write(JpegTestImages.createPhoto(400, 300, BufferedImage.TYPE_INT_RGB), "png", png);
+		ThumbnailParameter param = new ThumbnailParameterBuilder().size(100, 100).format("jpg").build();
+
+		// when
+		byte[] data = createThumbnail(png.toByteArray(), param, false);
+
+		// then
+		assertEquals("JPEG", formatOf(data));
+		assertEquals(100, read(data).getWidth());
+	}
+
+	@Test
+	public void grayscaleImage() throws IOException {
+		// given
+		System.setProperty("thumbnailator.planarJpeg", "true");
+		byte[] gray = JpegTestImages.write(JpegTestImages.createPhoto(400, 300, BufferedImage.TYPE_BYTE_GRAY));
+		ThumbnailParameter param = new ThumbnailParameterBuilder().size(100, 100).format("jpg").build();
+
+		// when
+		BufferedImage thumbnail = read(createThumbnail(gray, param, true));
+
+		// then
+		assertEquals(100, thumbnail.getWidth());
+		assertEquals(75, thumbnail.getHeight());
+		assertEquals(1, thumbnail.getRaster().getNumBands());
+	}
+
+	@Test
+	public void fileToFile() throws IOException {
+		// given
+		System.setProperty("thumbnailator.planarJpeg", "true");
+		File sourceFile = File.createTempFile("planar", ".jpg");
+		File destinationFile = File.createTempFile("planar-thumbnail", ".jpg");
+		try {
+			Files.write(sourceFile.toPath(), sourceByteArray);
+			ThumbnailParameter param = new ThumbnailParameterBuilder()
+					.size(100, 100)
+					.format(ThumbnailParameter.DETERMINE_FORMAT)
+					.build();
+			RecordingTask<File, File> task = new RecordingTask<>(
+					param, new FileImageSource(sourceFile), new FileImageSink(destinationFile)
+			);
+
+			// when
+			Thumbnailator.createThumbnail(task);
+
+			// then
+			assertTrue(task.planar);
+			BufferedImage thumbnail = ImageIO.read(destinationFile);
+			assertEquals(100, thumbnail.getWidth());
+			assertEquals(75, thumbnail.getHeight());
+
+		} finally {
+			sourceFile.delete();
+			destinationFile.delete();
+		}
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2022 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.tasks.io;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+import net.evonit.thumbnailator2.tasks.ThumbnailTimeoutException;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link Cancellation}.
+ */
+public class CancellationTest {
+
+	@Test
+	public void cancellationWithoutTimeoutDoesNotTimeOut() {
+		// given
+		Cancellation cancellation = new Cancellation();
+
+		// when, then
+		assertFalse(cancellation.isCancelled());
+		assertFalse(cancellation.isTimedOut());
+		cancellation.check();
+	}
+
+	@Test
+	public void cancelledCancellationThrowsCancellationException() {
+		// given
+		Cancellation cancellation = new Cancellation();
+
+		// when
+		cancellation.cancel();
+
+		// then
+		assertTrue(cancellation.isCancelled());
+		CancellationException e = assertThrows(CancellationException.class, cancellation::check);
+		assertFalse(e instanceof ThumbnailTimeoutException);
+	}
+
+	@Test
+	public void cancellationTimesOutAfterDeadline() throws Exception {
+		// given
+		Cancellation cancellation = Cancellation.withTimeout(20, TimeUnit.MILLISECONDS);
+		assertFalse(cancellation.isTimedOut());
+
+		// when
+		Thread.sleep(50);
+
+		// then
+		assertTrue(cancellation.isTimedOut());
+		assertTrue(cancellation.isCancelled());
+		assertThrows(ThumbnailTimeoutException.class, cancellation::check);
+	}
+
+	@Test
+	public void cancellationWithTimeoutIsCancelledWithThreadCancellation() {
+		// given
+		Cancellation outer = new Cancellation();
+		Cancellation previous = Cancellation.setThreadCancellation(outer);
+		Cancellation cancellation;
+		try {
+			cancellation = Cancellation.withTimeout(1, TimeUnit.HOURS);
+		} finally {
+			Cancellation.setThreadCancellation(previous);
+		}
+
+		// when
+		outer.cancel();
+
+		// then
+		assertTrue(cancellation.isCancelled());
+		assertFalse(cancellation.isTimedOut());
+		CancellationException e = assertThrows(CancellationException.class, cancellation::check);
+		assertFalse(e instanceof ThumbnailTimeoutException);
+	}
+
+	@Test
+	public void checkThreadThrowsForTimedOutThreadCancellation() throws Exception {
+		// given
+		Cancellation previous = Cancellation.setThreadCancellation(Cancellation.withTimeout(1, TimeUnit.MILLISECONDS));
+		try {
+			Thread.sleep(10);
+
+			// when, then
+			assertThrows(ThumbnailTimeoutException.class, Cancellation::checkThread);
+		} finally {
+			Cancellation.setThreadCancellation(previous);
+		}
+		Cancellation.checkThread();
+	}
+
+	@Test
+	public void longTimeoutDoesNotOverflow() {
+		// given
+		Cancellation cancellation = Cancellation.withTimeout(Long.MAX_VALUE, TimeUnit.DAYS);
+
+		// when, then
+		assertFalse(cancellation.isTimedOut());
+	}
+
+	@Test
+	public void timeoutMustBePositive() {
+		assertThrows(IllegalArgumentException.class, () -> Cancellation.withTimeout(0, TimeUnit.SECONDS));
+	}
+}
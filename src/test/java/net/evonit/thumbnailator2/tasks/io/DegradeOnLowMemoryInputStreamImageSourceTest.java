@@ -0,0 +1,262 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2022 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.tasks.io;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import net.evonit.thumbnailator2.ThumbnailParameter;
+import net.evonit.thumbnailator2.ThumbnailResult;
+import net.evonit.thumbnailator2.Thumbnails;
+import net.evonit.thumbnailator2.builders.BufferedImageBuilder;
+import net.evonit.thumbnailator2.builders.ImageAllocator;
+import net.evonit.thumbnailator2.builders.ThumbnailParameterBuilder;
+import net.evonit.thumbnailator2.tasks.io.jpeg.JpegTestImages;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests reading images at a reduced resolution, as enabled by the
+ * {@code thumbnailator.degradeOnLowMemory} configuration.
+ */
+public class DegradeOnLowMemoryInputStreamImageSourceTest {
+
+	private static final int WIDTH = 800;
+	private static final int HEIGHT = 600;
+
+	private static byte[] sourceByteArray;
+
+	static {
+		try {
+			sourceByteArray = JpegTestImages.write(
+					JpegTestImages.createPhoto(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB)
+			);
+		} catch (IOException e) {
+			fail();
+		}
+	}
+
+	/**
+	 * An allocator which runs out of memory for images of more than a
+	 * number of pixels.
+	 */
+	private static final class LimitedAllocator implements ImageAllocator {
+		private final int maxPixels;
+		private int failures;
+
+		private LimitedAllocator(int maxPixels) {
+			this.maxPixels = maxPixels;
+		}
+
+		public BufferedImage allocate(int width, int height, int imageType) {
+			if ((long)width * height > maxPixels) {
+				failures++;
+				throw new OutOfMemoryError("Java heap space");
+			}
+			return new BufferedImage(width, height, imageType);
+		}
+
+		public BufferedImage allocateScratch(int width, int height, int imageType) {
+			return allocate(width, height, imageType);
+		}
+
+		public void release(BufferedImage img) {
+		}
+	}
+
+	@BeforeEach
+	public void setUp() {
+		System.setProperty("thumbnailator.degradeOnLowMemory", "true");
+	}
+
+	@AfterEach
+	public void tearDown() {
+		System.clearProperty("thumbnailator.degradeOnLowMemory");
+		BufferedImageBuilder.setThreadAllocator(null);
+	}
+
+	private static InputStreamImageSource createSource(ThumbnailParameter param) {
+		InputStreamImageSource source = new InputStreamImageSource(new ByteArrayInputStream(sourceByteArray));
+		source.setThumbnailParameter(param);
+		return source;
+	}
+
+	@Test
+	public void imageIsReadAtFullResolutionWhenItFits() throws IOException {
+		// given
+		InputStreamImageSource source = createSource(new ThumbnailParameterBuilder().size(100, 100).build());
+
+		// when
+		BufferedImage img = source.read();
+
+		// then
+		assertEquals(WIDTH, img.getWidth());
+		assertEquals(HEIGHT, img.getHeight());
+		assertFalse(source.isDegraded());
+		assertEquals(1, source.getDegradedSubsampling());
+	}
+
+	@Test
+	public void imageIsSubsampledWhenOutOfMemory() throws IOException {
+		// given
+		LimitedAllocator allocator = new LimitedAllocator(WIDTH * HEIGHT / 16);
+		BufferedImageBuilder.setThreadAllocator(allocator);
+		InputStreamImageSource source = createSource(new ThumbnailParameterBuilder().size(100, 100).build());
+
+		// when
+		BufferedImage img = source.read();
+
+		// then
+		assertEquals(WIDTH / 4, img.getWidth());
+		assertEquals(HEIGHT / 4, img.getHeight());
+		assertEquals(2, allocator.failures);
+		assertTrue(source.isDegraded());
+		assertEquals(4, source.getDegradedSubsampling());
+	}
+
+	@Test
+	public void outOfMemoryIsThrownWhenDisabled() {
+		// given
+		System.clearProperty("thumbnailator.degradeOnLowMemory");
+		BufferedImageBuilder.setThreadAllocator(new LimitedAllocator(WIDTH * HEIGHT / 16));
+		InputStreamImageSource source = createSource(new ThumbnailParameterBuilder().size(100, 100).build());
+
+		// when, then
+		assertThrows(OutOfMemoryError.class, source::read);
+	}
+
+	@Test
+	public void outOfMemoryIsThrownWhenImageCannotBeSubsampledFurther() {
+		// given
+		BufferedImageBuilder.setThreadAllocator(new LimitedAllocator(0));
+		InputStreamImageSource source = createSource(new ThumbnailParameterBuilder().size(100, 100).build());
+
+		// when, then
+		assertThrows(OutOfMemoryError.class, source::read);
+	}
+
+	@Test
+	public void imageIsNotSubsampledBelowThumbnailSize() {
+		// given
+		BufferedImageBuilder.setThreadAllocator(new LimitedAllocator(WIDTH * HEIGHT / 16));
+		InputStreamImageSource source = createSource(new ThumbnailParameterBuilder().size(300, 300).build());
+
+		// when, then
+		assertThrows(OutOfMemoryError.class, source::read);
+	}
+
+	@Test
+	public void imageIsNotSubsampledBelowScalingFactors() {
+		// given
+		BufferedImageBuilder.setThreadAllocator(new LimitedAllocator(WIDTH * HEIGHT / 16));
+		ThumbnailParameter param = new ThumbnailParameterBuilder().scale(0.5).build();
+		InputStreamImageSource source = createSource(param);
+
+		// when, then
+		assertThrows(OutOfMemoryError.class, source::read);
+		assertEquals(0.5, param.getWidthScalingFactor(), 0.0001);
+	}
+
+	@Test
+	public void subsamplingIsReportedWithoutChangingScalingFactors() throws IOException {
+		// given
+		BufferedImageBuilder.setThreadAllocator(new LimitedAllocator(WIDTH * HEIGHT / 4));
+		ThumbnailParameter param = new ThumbnailParameterBuilder().scale(0.25).build();
+		InputStreamImageSource source = createSource(param);
+
+		// when
+		BufferedImage img = source.read();
+
+		// then
+		assertEquals(WIDTH / 2, img.getWidth());
+		assertEquals(2, source.getSubsampling());
+		assertEquals(0.25, param.getWidthScalingFactor(), 0.0001);
+		assertEquals(0.25, param.getHeightScalingFactor(), 0.0001);
+	}
+
+	@Test
+	public void thumbnailHasRequestedSizeFromDegradedImage() throws IOException {
+		// when
+		BufferedImage thumbnail = Thumbnails.of(new ByteArrayInputStream(sourceByteArray))
+				.scale(0.25)
+				.imageAllocator(new LimitedAllocator(WIDTH * HEIGHT / 4))
+				.asBufferedImage();
+
+		// then
+		assertEquals(WIDTH / 4, thumbnail.getWidth());
+		assertEquals(HEIGHT / 4, thumbnail.getHeight());
+	}
+
+	@Test
+	public void fileImageSourceReportsDegradedImage() throws IOException {
+		// given
+		File file = File.createTempFile("degraded", ".jpg");
+		file.deleteOnExit();
+		FileOutputStream fos = new FileOutputStream(file);
+		fos.write(sourceByteArray);
+		fos.close();
+		BufferedImageBuilder.setThreadAllocator(new LimitedAllocator(WIDTH * HEIGHT / 4));
+		FileImageSource source = new FileImageSource(file);
+		source.setThumbnailParameter(new ThumbnailParameterBuilder().size(100, 100).build());
+
+		// when
+		source.read();
+
+		// then
+		assertTrue(source.isDegraded());
+		assertEquals(2, source.getDegradedSubsampling());
+	}
+
+	@Test
+	public void resultsReportDegradedThumbnails() throws IOException {
+		// given
+		InputStream fits = new ByteArrayInputStream(sourceByteArray);
+		InputStream large = new ByteArrayInputStream(JpegTestImages.write(
+				JpegTestImages.createPhoto(WIDTH * 2, HEIGHT * 2, BufferedImage.TYPE_INT_RGB)
+		));
+
+		// when
+		List<? extends ThumbnailResult<? extends InputStream>> results = Thumbnails.of(fits, large)
+				.size(100, 100)
+				.imageAllocator(new LimitedAllocator(WIDTH * HEIGHT))
+				.stream()
+				.collect(Collectors.toList());
+
+		// then
+		assertFalse(results.get(0).isDegraded());
+		assertTrue(results.get(1).isDegraded());
+		assertEquals(100, results.get(1).getThumbnail().getWidth());
+	}
+}
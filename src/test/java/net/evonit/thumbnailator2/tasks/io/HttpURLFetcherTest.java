@@ -0,0 +1,375 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2022 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.tasks.io;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import javax.imageio.ImageIO;
+
+import net.evonit.thumbnailator2.Thumbnails;
+import net.evonit.thumbnailator2.test.LocalImageServer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link HttpURLFetcher}.
+ */
+public class HttpURLFetcherTest {
+
+	private static byte[] data(int length) {
+		byte[] data = new byte[length];
+		for (int i = 0; i < length; i++) {
+			data[i] = (byte)i;
+		}
+		return data;
+	}
+
+	private static byte[] readAll(InputStream is) throws IOException {
+		try (InputStream in = is) {
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int n;
+			while ((n = in.read(buffer)) != -1) {
+				baos.write(buffer, 0, n);
+			}
+			return baos.toByteArray();
+		}
+	}
+
+	@Test
+	public void fetchesData() throws Exception {
+		// given
+		byte[] data = data(100000);
+		HttpURLFetcher fetcher = new HttpURLFetcher.Builder().build();
+
+		try (LocalImageServer server = new LocalImageServer(LocalImageServer.serving(data, "application/octet-stream"))) {
+			// when
+			byte[] fetched = readAll(fetcher.open(server.url("/data")));
+
+			// then
+			assertArrayEquals(data, fetched);
+		}
+	}
+
+	@Test
+	public void failsWhenContentLengthExceedsMaxBytes() throws Exception {
+		// given
+		HttpURLFetcher fetcher = new HttpURLFetcher.Builder().maxBytes(1000).build();
+
+		try (LocalImageServer server = new LocalImageServer(LocalImageServer.serving(data(1001), "application/octet-stream"))) {
+			// when, then
+			assertThrows(IOException.class, () -> fetcher.open(server.url("/data")));
+		}
+	}
+
+	@Test
+	public void failsWhenChunkedDataExceedsMaxBytes() throws Exception {
+		// given
+		HttpURLFetcher fetcher = new HttpURLFetcher.Builder().maxBytes(1000).build();
+
+		try (LocalImageServer server = new LocalImageServer(exchange -> {
+			exchange.sendResponseHeaders(200, 0);
+			try (OutputStream os = exchange.getResponseBody()) {
+				os.write(data(5000));
+			}
+		})) {
+			// when
+			InputStream is = fetcher.open(server.url("/data"));
+
+			// then
+			assertThrows(IOException.class, () -> readAll(is));
+		}
+	}
+
+	@Test
+	public void readsDataWithinMaxBytes() throws Exception {
+		// given
+		byte[] data = data(1000);
+		HttpURLFetcher fetcher = new HttpURLFetcher.Builder().maxBytes(1000).build();
+
+		try (LocalImageServer server = new LocalImageServer(LocalImageServer.serving(data, "application/octet-stream"))) {
+			// when
+			byte[] fetched = readAll(fetcher.open(server.url("/data")));
+
+			// then
+			assertArrayEquals(data, fetched);
+		}
+	}
+
+	@Test
+	public void retriesServerErrors() throws Exception {
+		// given
+		byte[] data = data(100);
+		AtomicInteger requests = new AtomicInteger();
+		HttpURLFetcher fetcher = new HttpURLFetcher.Builder()
+				.retries(2, 10, TimeUnit.MILLISECONDS)
+				.build();
+
+		try (LocalImageServer server = new LocalImageServer(exchange -> {
+			if (requests.incrementAndGet() <= 2) {
+				LocalImageServer.respond(exchange, 503, new byte[0], "text/plain");
+			} else {
+				LocalImageServer.respond(exchange, 200, data, "application/octet-stream");
+			}
+		})) {
+			// when
+			byte[] fetched = readAll(fetcher.open(server.url("/data")));
+
+			// then
+			assertArrayEquals(data, fetched);
+			assertEquals(3, requests.get());
+		}
+	}
+
+	@Test
+	public void failsOnceRetriesAreExhausted() throws Exception {
+		// given
+		AtomicInteger requests = new AtomicInteger();
+		HttpURLFetcher fetcher = new HttpURLFetcher.Builder()
+				.retries(2, 1, TimeUnit.MILLISECONDS)
+				.build();
+
+		try (LocalImageServer server = new LocalImageServer(exchange -> {
+			requests.incrementAndGet();
+			LocalImageServer.respond(exchange, 429, new byte[0], "text/plain");
+		})) {
+			// when
+			IOException e = assertThrows(IOException.class, () -> fetcher.open(server.url("/data")));
+
+			// then
+			assertTrue(e.getMessage().contains("429"));
+			assertEquals(3, requests.get());
+		}
+	}
+
+	@Test
+	public void doesNotRetryClientErrors() throws Exception {
+		// given
+		AtomicInteger requests = new AtomicInteger();
+		HttpURLFetcher fetcher = new HttpURLFetcher.Builder()
+				.retries(2, 1, TimeUnit.MILLISECONDS)
+				.build();
+
+		try (LocalImageServer server = new LocalImageServer(exchange -> {
+			requests.incrementAndGet();
+			LocalImageServer.respond(exchange, 404, "not found".getBytes("UTF-8"), "text/plain");
+		})) {
+			// when, then
+			assertThrows(IOException.class, () -> fetcher.open(server.url("/data")));
+			assertEquals(1, requests.get());
+		}
+	}
+
+	@Test
+	public void failsWhenResponseIsNotReceivedInTime() throws Exception {
+		// given
+		HttpURLFetcher fetcher = new HttpURLFetcher.Builder()
+				.timeout(200, TimeUnit.MILLISECONDS)
+				.build();
+
+		try (LocalImageServer server = new LocalImageServer(exchange -> {
+			try {
+				Thread.sleep(5000);
+			} catch (InterruptedException e) {
+				// The server is stopped.
+			}
+			LocalImageServer.respond(exchange, 200, data(10), "application/octet-stream");
+		})) {
+			// when
+			long start = System.nanoTime();
+			assertThrows(IOException.class, () -> fetcher.open(server.url("/data")));
+
+			// then
+			assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(4));
+		}
+	}
+
+	@Test
+	public void failsWhenBodyIsNotReceivedInTime() throws Exception {
+		// given
+		HttpURLFetcher fetcher = new HttpURLFetcher.Builder()
+				.timeout(200, TimeUnit.MILLISECONDS)
+				.build();
+
+		try (LocalImageServer server = new LocalImageServer(exchange -> {
+			exchange.sendResponseHeaders(200, 0);
+			try (OutputStream os = exchange.getResponseBody()) {
+				os.write(data(10));
+				os.flush();
+				Thread.sleep(5000);
+				os.write(data(10));
+			} catch (InterruptedException e) {
+				// The server is stopped.
+			}
+		})) {
+			InputStream is = fetcher.open(server.url("/data"));
+
+			// when
+			long start = System.nanoTime();
+			assertThrows(IOException.class, () -> readAll(is));
+
+			// then
+			assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(4));
+		}
+	}
+
+	@Test
+	public void usesCachedDataWhenNotModified() throws Exception {
+		// given
+		byte[] data = data(1000);
+		AtomicInteger notModified = new AtomicInteger();
+		HttpURLFetcher fetcher = new HttpURLFetcher.Builder().cache(10).build();
+
+		try (LocalImageServer server = new LocalImageServer(exchange -> {
+			if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+				notModified.incrementAndGet();
+				exchange.sendResponseHeaders(304, -1);
+				exchange.close();
+			} else {
+				exchange.getResponseHeaders().set("ETag", "\"v1\"");
+				LocalImageServer.respond(exchange, 200, data, "application/octet-stream");
+			}
+		})) {
+			URL url = server.url("/data");
+
+			// when
+			byte[] first = readAll(fetcher.open(url));
+			byte[] second = readAll(fetcher.open(url));
+
+			// then
+			assertArrayEquals(data, first);
+			assertArrayEquals(data, second);
+			assertEquals(1, notModified.get());
+		}
+	}
+
+	@Test
+	public void failsWhenNotModifiedWithoutCachedData() throws Exception {
+		// given
+		HttpURLFetcher fetcher = new HttpURLFetcher.Builder().build();
+
+		try (LocalImageServer server = new LocalImageServer(exchange -> {
+			exchange.sendResponseHeaders(304, -1);
+			exchange.close();
+		})) {
+			// when, then
+			assertThrows(IOException.class, () -> fetcher.open(server.url("/data")));
+		}
+	}
+
+	@Test
+	public void decompressesGzipResponses() throws Exception {
+		// given
+		byte[] data = data(10000);
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+			gzip.write(data);
+		}
+		HttpURLFetcher fetcher = new HttpURLFetcher.Builder().build();
+
+		try (LocalImageServer server = new LocalImageServer(exchange -> {
+			String accepted = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+			assertTrue(accepted != null && accepted.contains("gzip"));
+			exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+			LocalImageServer.respond(exchange, 200, compressed.toByteArray(), "application/octet-stream");
+		})) {
+			// when
+			byte[] fetched = readAll(fetcher.open(server.url("/data")));
+
+			// then
+			assertArrayEquals(data, fetched);
+		}
+	}
+
+	@Test
+	public void invalidSettingsAreRejected() {
+		HttpURLFetcher.Builder builder = new HttpURLFetcher.Builder();
+
+		assertThrows(IllegalArgumentException.class, () -> builder.maxBytes(0));
+		assertThrows(IllegalArgumentException.class, () -> builder.timeout(0, TimeUnit.SECONDS));
+		assertThrows(IllegalArgumentException.class, () -> builder.connectTimeout(-1, TimeUnit.SECONDS));
+		assertThrows(IllegalArgumentException.class, () -> builder.retries(-1, 1, TimeUnit.SECONDS));
+		assertThrows(IllegalArgumentException.class, () -> builder.cache(-1));
+	}
+
+	@Test
+	public void createsThumbnailsOfUrlsWithFetcher() throws Exception {
+		// given
+		ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+		ImageIO.write(new BufferedImage(200, 150, BufferedImage.TYPE_INT_RGB), "png", encoded);
+		AtomicInteger requests = new AtomicInteger();
+		HttpURLFetcher fetcher = new HttpURLFetcher.Builder()
+				.retries(1, 1, TimeUnit.MILLISECONDS)
+				.build();
+
+		try (LocalImageServer server = new LocalImageServer(exchange -> {
+			if (requests.incrementAndGet() % 2 == 1) {
+				LocalImageServer.respond(exchange, 503, new byte[0], "text/plain");
+			} else {
+				LocalImageServer.respond(exchange, 200, encoded.toByteArray(), "image/png");
+			}
+		})) {
+			// when
+			BufferedImage thumbnail = Thumbnails.fromURLs(Arrays.asList(server.url("/image")), fetcher)
+					.size(100, 100)
+					.asBufferedImage();
+
+			// then
+			assertEquals(100, thumbnail.getWidth());
+			assertEquals(75, thumbnail.getHeight());
+			assertEquals(2, requests.get());
+		}
+	}
+
+	@Test
+	public void urlImageSourceUsesFetcher() throws Exception {
+		// given
+		URL url = new URL("http://example.invalid/image.png");
+		ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+		ImageIO.write(new BufferedImage(20, 10, BufferedImage.TYPE_INT_RGB), "png", encoded);
+		URLFetcher fetcher = u -> new ByteArrayInputStream(encoded.toByteArray());
+		URLImageSource source = new URLImageSource(url, fetcher);
+
+		// when
+		BufferedImage img = source.read();
+
+		// then
+		assertSame(fetcher, source.getFetcher());
+		assertEquals(20, img.getWidth());
+		assertEquals("png", source.getInputFormatName());
+	}
+}
@@ -0,0 +1,279 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2022 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.tasks.io;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+import net.evonit.thumbnailator2.ThumbnailParameter;
+import net.evonit.thumbnailator2.builders.ThumbnailParameterBuilder;
+import net.evonit.thumbnailator2.tasks.ImageLimitExceededException;
+import net.evonit.thumbnailator2.tasks.io.jpeg.JpegTestImages;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link ImageLimits}, and their use by {@link InputStreamImageSource}.
+ */
+public class ImageLimitsTest {
+
+	@BeforeEach @AfterEach
+	public void clearLimits() {
+		ImageLimits.setThreadLimits(null);
+		System.clearProperty("thumbnailator.maxPixels");
+		System.clearProperty("thumbnailator.maxDimension");
+		System.clearProperty("thumbnailator.maxFrames");
+		System.clearProperty("thumbnailator.usePngDecoder");
+		System.clearProperty("thumbnailator.useJpegDecoder");
+	}
+
+	/**
+	 * Returns a PNG image of a few bytes, whose header claims the given
+	 * dimensions.
+	 */
+	static byte[] pngBomb(int width, int height) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(baos);
+		out.write(new byte[] {(byte)0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'});
+
+		ByteArrayOutputStream ihdr = new ByteArrayOutputStream();
+		DataOutputStream header = new DataOutputStream(ihdr);
+		header.writeInt(width);
+		header.writeInt(height);
+		header.write(new byte[] {8, 2, 0, 0, 0});
+		writeChunk(out, "IHDR", ihdr.toByteArray());
+
+		Deflater deflater = new Deflater();
+		deflater.setInput(new byte[64]);
+		deflater.finish();
+		byte[] idat = new byte[64];
+		writeChunk(out, "IDAT", Arrays.copyOf(idat, deflater.deflate(idat)));
+		writeChunk(out, "IEND", new byte[0]);
+		return baos.toByteArray();
+	}
+
+	private static void writeChunk(DataOutputStream out, String type, byte[] data) throws IOException {
+		out.writeInt(data.length);
+		byte[] typeBytes = type.getBytes("US-ASCII");
+		out.write(typeBytes);
+		out.write(data);
+		CRC32 crc = new CRC32();
+		crc.update(typeBytes);
+		crc.update(data);
+		out.writeInt((int)crc.getValue());
+	}
+
+	/**
+	 * Returns a JPEG image whose frame header claims the given dimensions.
+	 */
+	private static byte[] jpegBomb(int width, int height) throws IOException {
+		byte[] jpeg = JpegTestImages.write(JpegTestImages.createPhoto(64, 64, BufferedImage.TYPE_INT_RGB));
+		for (int i = 2; i < jpeg.length - 9; i++) {
+			if ((jpeg[i] & 0xFF) == 0xFF && (jpeg[i + 1] & 0xFF) == 0xC0) {
+				jpeg[i + 5] = (byte)(height >> 8);
+				jpeg[i + 6] = (byte)height;
+				jpeg[i + 7] = (byte)(width >> 8);
+				jpeg[i + 8] = (byte)width;
+				return jpeg;
+			}
+		}
+		throw new IllegalStateException("No frame header.");
+	}
+
+	private static byte[] animatedGif(int frames) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		ImageWriter writer = ImageIO.getImageWritersByFormatName("gif").next();
+		ImageOutputStream ios = ImageIO.createImageOutputStream(baos);
+		writer.setOutput(ios);
+		writer.prepareWriteSequence(null);
+		for (int i = 0; i < frames; i++) {
+			writer.writeToSequence(new IIOImage(
+					new BufferedImage(20, 20, BufferedImage.TYPE_BYTE_INDEXED), null, null
+			), null);
+		}
+		writer.endWriteSequence();
+		ios.close();
+		writer.dispose();
+		return baos.toByteArray();
+	}
+
+	private static InputStreamImageSource createSource(byte[] data) {
+		InputStreamImageSource source = new InputStreamImageSource(new ByteArrayInputStream(data));
+		ThumbnailParameter param = new ThumbnailParameterBuilder().size(100, 100).build();
+		source.setThumbnailParameter(param);
+		return source;
+	}
+
+	@Test
+	public void imageWithinLimitsPasses() throws IOException {
+		// given
+		ImageLimits limits = new ImageLimits(100, 10, 1);
+
+		// when, then
+		limits.check("png", 10, 10);
+		limits.checkFrames("gif", 1);
+		ImageLimits.NONE.check("png", Integer.MAX_VALUE, Integer.MAX_VALUE);
+	}
+
+	@Test
+	public void imageExceedingLimitsFails() {
+		// given
+		ImageLimits limits = new ImageLimits(100, 20, 1);
+
+		// when, then
+		ImageLimitExceededException e = assertThrows(ImageLimitExceededException.class, () -> limits.check("png", 11, 10));
+		assertEquals("png", e.getFormatName());
+		assertThrows(ImageLimitExceededException.class, () -> limits.check("png", 21, 1));
+		assertThrows(ImageLimitExceededException.class, () -> limits.checkFrames("gif", 2));
+	}
+
+	@Test
+	public void pixelsDoNotOverflow() {
+		ImageLimits limits = new ImageLimits(Integer.MAX_VALUE, 0, 0);
+
+		assertThrows(ImageLimitExceededException.class, () -> limits.check("png", 65536, 65536));
+	}
+
+	@Test
+	public void negativeLimitsAreRejected() {
+		assertThrows(IllegalArgumentException.class, () -> new ImageLimits(-1, 0, 0));
+		assertThrows(IllegalArgumentException.class, () -> new ImageLimits(0, -1, 0));
+		assertThrows(IllegalArgumentException.class, () -> new ImageLimits(0, 0, -1));
+	}
+
+	@Test
+	public void limitsAreReadFromConfigurations() {
+		// given
+		assertSame(ImageLimits.NONE, ImageLimits.getThreadLimits());
+		System.setProperty("thumbnailator.maxPixels", "1000");
+		System.setProperty("thumbnailator.maxDimension", "50");
+
+		// when
+		ImageLimits limits = ImageLimits.getThreadLimits();
+
+		// then
+		assertEquals(1000, limits.getMaxPixels());
+		assertEquals(50, limits.getMaxDimension());
+		assertEquals(0, limits.getMaxFrames());
+	}
+
+	@Test
+	public void threadLimitsOverrideConfigurations() {
+		// given
+		System.setProperty("thumbnailator.maxPixels", "1000");
+		ImageLimits limits = new ImageLimits(5, 0, 0);
+
+		// when
+		ImageLimits previous = ImageLimits.setThreadLimits(limits);
+
+		// then
+		assertNull(previous);
+		assertSame(limits, ImageLimits.getThreadLimits());
+	}
+
+	@Test
+	public void pngBombIsRejectedBeforeDecoding() throws IOException {
+		// given
+		ImageLimits.setThreadLimits(new ImageLimits(100000000, 0, 0));
+		byte[] png = pngBomb(60000, 60000);
+		assertTrue(png.length < 120);
+
+		// when, then
+		assertThrows(ImageLimitExceededException.class, () -> createSource(png).read());
+	}
+
+	@Test
+	public void pngBombIsRejectedByPngDecoder() throws IOException {
+		// given
+		System.setProperty("thumbnailator.usePngDecoder", "true");
+		ImageLimits.setThreadLimits(new ImageLimits(0, 10000, 0));
+
+		// when, then
+		assertThrows(ImageLimitExceededException.class, () -> createSource(pngBomb(60000, 600)).read());
+	}
+
+	@Test
+	public void jpegBombIsRejected() throws IOException {
+		// given
+		ImageLimits.setThreadLimits(new ImageLimits(100000000, 0, 0));
+		byte[] jpeg = jpegBomb(60000, 60000);
+
+		// when, then
+		assertThrows(ImageLimitExceededException.class, () -> createSource(jpeg).read());
+	}
+
+	@Test
+	public void jpegBombIsRejectedByJpegDecoder() throws IOException {
+		// given
+		System.setProperty("thumbnailator.useJpegDecoder", "true");
+		ImageLimits.setThreadLimits(new ImageLimits(100000000, 0, 0));
+		// Larger images would exceed the coefficients the decoder supports.
+		byte[] jpeg = jpegBomb(30000, 30000);
+
+		// when, then
+		assertThrows(ImageLimitExceededException.class, () -> createSource(jpeg).read());
+		assertThrows(ImageLimitExceededException.class, () -> createSource(jpeg).readYCbCr());
+	}
+
+	@Test
+	public void framesAreLimited() throws IOException {
+		// given
+		byte[] gif = animatedGif(3);
+		ImageLimits.setThreadLimits(new ImageLimits(0, 0, 2));
+
+		// when, then
+		assertThrows(ImageLimitExceededException.class, () -> createSource(gif).read());
+
+		ImageLimits.setThreadLimits(new ImageLimits(0, 0, 3));
+		assertEquals(20, createSource(gif).read().getWidth());
+	}
+
+	@Test
+	public void imagesAreNotLimitedByDefault() throws IOException {
+		// given
+		byte[] gif = animatedGif(3);
+
+		// when
+		BufferedImage img = createSource(gif).read();
+
+		// then
+		assertEquals(20, img.getWidth());
+	}
+}
@@ -34,6 +34,7 @@ import java.io.IOException;
 import javax.imageio.ImageIO;
 
 import net.evonit.thumbnailator2.ThumbnailParameter;
+import net.evonit.thumbnailator2.Thumbnails;
 import net.evonit.thumbnailator2.builders.ThumbnailParameterBuilder;
 
 import org.junit.jupiter.api.AfterEach;
@@ -139,5 +140,20 @@ public class Issue69InputStreamImageSourceTest {
 		assertTrue(img.getWidth() >= 600);
 		assertTrue(img.getHeight() < SIZE);
 		assertTrue(img.getHeight() >= 600);
+		assertEquals((SIZE + source.getSubsampling() - 1) / source.getSubsampling(), img.getWidth());
+		assertEquals(0.1, param.getWidthScalingFactor(), 0.0001);
+	}
+
+	@Test
+	public void usingThumbnailsScaleWorkaroundEnabled() throws IOException {
+		// given
+		System.setProperty("thumbnailator.conserveMemoryWorkaround", "true");
+
+		// when
+		BufferedImage img = Thumbnails.of(new ByteArrayInputStream(sourceByteArray)).scale(0.1).asBufferedImage();
+
+		// then
+		assertEquals(SIZE / 10, img.getWidth());
+		assertEquals(SIZE / 10, img.getHeight());
 	}
 }
\ No newline at end of file
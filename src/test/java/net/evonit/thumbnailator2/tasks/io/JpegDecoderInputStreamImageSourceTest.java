@@ -0,0 +1,302 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2022 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.tasks.io;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import net.evonit.thumbnailator2.TestUtils;
+import net.evonit.thumbnailator2.ThumbnailParameter;
+import net.evonit.thumbnailator2.builders.ThumbnailParameterBuilder;
+import net.evonit.thumbnailator2.geometry.AbsoluteSize;
+import net.evonit.thumbnailator2.geometry.Positions;
+import net.evonit.thumbnailator2.geometry.Region;
+import net.evonit.thumbnailator2.tasks.io.jpeg.JpegTestImages;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JpegDecoderInputStreamImageSourceTest {
+
+	private static final int WIDTH = 2000;
+	private static final int HEIGHT = 1600;
+
+	private static byte[] sourceByteArray;
+
+	static {
+		try {
+			sourceByteArray = JpegTestImages.write(
+					JpegTestImages.createPhoto(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB)
+			);
+		} catch (IOException e) {
+			fail();
+		}
+	}
+
+	@BeforeEach @AfterEach
+	public void clearSystemProperty() {
+		System.clearProperty("thumbnailator.useJpegDecoder");
+		System.clearProperty("thumbnailator.partialProgressiveJpeg");
+	}
+
+	private static BufferedImage read(byte[] data, ThumbnailParameter param) throws IOException {
+		InputStreamImageSource source = new InputStreamImageSource(new ByteArrayInputStream(data));
+		source.setThumbnailParameter(param);
+		BufferedImage img = source.read();
+		assertNotNull(source.getInputFormatName());
+		return img;
+	}
+
+	@Test
+	public void fullSizeWhenDisabled() throws IOException {
+		// given
+		// The "thumbnailator.useJpegDecoder" system property is not set.
+		ThumbnailParameter param = new ThumbnailParameterBuilder().size(200, 200).build();
+
+		// when
+		BufferedImage img = read(sourceByteArray, param);
+
+		// then
+		assertEquals(WIDTH, img.getWidth());
+		assertEquals(HEIGHT, img.getHeight());
+	}
+
+	@Test
+	public void reducedSizeWhenEnabled() throws IOException {
+		// given
+		System.setProperty("thumbnailator.useJpegDecoder", "true");
+		ThumbnailParameter param = new ThumbnailParameterBuilder().size(200, 200).build();
+		InputStreamImageSource source = new InputStreamImageSource(new ByteArrayInputStream(sourceByteArray));
+		source.setThumbnailParameter(param);
+
+		// when
+		BufferedImage img = source.read();
+
+		// then
+		assertEquals(WIDTH / 8, img.getWidth());
+		assertEquals(HEIGHT / 8, img.getHeight());
+		assertEquals(BufferedImage.TYPE_3BYTE_BGR, img.getType());
+		assertEquals("JPEG", source.getInputFormatName());
+	}
+
+	@Test
+	public void reducedSizeCoversLongerSideOfTarget() throws IOException {
+		// given
+		System.setProperty("thumbnailator.useJpegDecoder", "true");
+		ThumbnailParameter param = new ThumbnailParameterBuilder().size(100, 500).build();
+
+		// when
+		BufferedImage img = read(sourceByteArray, param);
+
+		// then
+		assertEquals(WIDTH / 2, img.getWidth());
+		assertEquals(HEIGHT / 2, img.getHeight());
+	}
+
+	@Test
+	public void fullSizeWhenTargetIsLarge() throws IOException {
+		// given
+		System.setProperty("thumbnailator.useJpegDecoder", "true");
+		ThumbnailParameter param = new ThumbnailParameterBuilder().size(1000, 1000).build();
+
+		// when
+		BufferedImage img = read(sourceByteArray, param);
+
+		// then
+		assertEquals(WIDTH, img.getWidth());
+		assertEquals(HEIGHT, img.getHeight());
+	}
+
+	@Test
+	public void fullSizeWhenScaled() throws IOException {
+		// given
+		System.setProperty("thumbnailator.useJpegDecoder", "true");
+		ThumbnailParameter param = new ThumbnailParameterBuilder().scale(0.1).build();
+
+		// when
+		BufferedImage img = read(sourceByteArray, param);
+
+		// then
+		assertEquals(WIDTH, img.getWidth());
+		assertEquals(HEIGHT, img.getHeight());
+	}
+
+	@Test
+	public void fullSizeWithSourceRegion() throws IOException {
+		// given
+		System.setProperty("thumbnailator.useJpegDecoder", "true");
+		ThumbnailParameter param = new ThumbnailParameterBuilder()
+				.size(100, 100)
+				.region(new Region(Positions.CENTER, new AbsoluteSize(1000, 1000)))
+				.build();
+
+		// when
+		BufferedImage img = read(sourceByteArray, param);
+
+		// then
+		assertEquals(1000, img.getWidth());
+		assertEquals(1000, img.getHeight());
+	}
+
+	@Test
+	public void otherFormatsAreReadByImageIO() throws IOException {
+		// given
+		System.setProperty("thumbnailator.useJpegDecoder", "true");
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		ImageIO.write(new BufferedImage(800, 800, BufferedImage.TYPE_INT_RGB), "png", baos);
+		ThumbnailParameter param = new ThumbnailParameterBuilder().size(50, 50).build();
+		InputStreamImageSource source = new InputStreamImageSource(new ByteArrayInputStream(baos.toByteArray()));
+		source.setThumbnailParameter(param);
+
+		// when
+		BufferedImage img = source.read();
+
+		// then
+		assertEquals(800, img.getWidth());
+		assertEquals("png", source.getInputFormatName());
+	}
+
+	@Test
+	public void corruptImagesAreReadByImageIO() throws IOException {
+		// given
+		System.setProperty("thumbnailator.useJpegDecoder", "true");
+		// The decoder fails on invalid Huffman codes, which Image I/O skips.
+		byte[] data = JpegTestImages.corruptScan(sourceByteArray);
+		ThumbnailParameter param = new ThumbnailParameterBuilder().size(200, 200).build();
+
+		// when
+		BufferedImage img = read(data, param);
+
+		// then
+		assertEquals(WIDTH, img.getWidth());
+		assertEquals(HEIGHT, img.getHeight());
+	}
+
+	@Test
+	public void truncatedLargeImagesAreDecoded() throws IOException {
+		// given
+		System.setProperty("thumbnailator.useJpegDecoder", "true");
+		BufferedImage noise = new BufferedImage(1600, 1600, BufferedImage.TYPE_INT_RGB);
+		Random random = new Random(1);
+		for (int y = 0; y < noise.getHeight(); y++) {
+			for (int x = 0; x < noise.getWidth(); x++) {
+				noise.setRGB(x, y, random.nextInt());
+			}
+		}
+		byte[] data = JpegTestImages.write(noise);
+		// Too large to be read again by Image I/O once decoding has started.
+		byte[] truncated = Arrays.copyOf(data, data.length * 3 / 4);
+		assertTrue(truncated.length > 1 << 20);
+		ThumbnailParameter param = new ThumbnailParameterBuilder().size(100, 100).build();
+
+		// when
+		BufferedImage img = read(truncated, param);
+
+		// then
+		assertEquals(200, img.getWidth());
+		assertEquals(200, img.getHeight());
+	}
+
+	@Test
+	public void exifOrientationIsApplied() throws IOException {
+		// given
+		System.setProperty("thumbnailator.useJpegDecoder", "true");
+		ThumbnailParameter param = new ThumbnailParameterBuilder().size(40, 40).build();
+		InputStream is = TestUtils.getResourceStream("Exif/source_6.jpg");
+		InputStreamImageSource source = new InputStreamImageSource(is);
+		source.setThumbnailParameter(param);
+
+		// when
+		BufferedImage img = source.read();
+		is.close();
+
+		// then
+		assertEquals(40, img.getWidth());
+		assertEquals(1, param.getImageFilters().size());
+	}
+
+	@Test
+	public void partialProgressiveStopsReadingEarly() throws IOException {
+		// given
+		System.setProperty("thumbnailator.partialProgressiveJpeg", "true");
+		byte[] data = JpegTestImages.write(
+				JpegTestImages.createPhoto(800, 600, BufferedImage.TYPE_INT_RGB), true, 0, 0, 0
+		);
+		ByteArrayInputStream is = new ByteArrayInputStream(data);
+		InputStreamImageSource source = new InputStreamImageSource(is);
+		source.setThumbnailParameter(new ThumbnailParameterBuilder().size(75, 75).build());
+
+		// when
+		BufferedImage img = source.read();
+
+		// then
+		assertEquals(100, img.getWidth());
+		assertEquals(75, img.getHeight());
+		assertEquals("JPEG", source.getInputFormatName());
+		assertTrue(is.available() > 0);
+	}
+
+	@Test
+	public void partialProgressiveReadsAllScansWhenNotReduced() throws IOException {
+		// given
+		System.setProperty("thumbnailator.partialProgressiveJpeg", "true");
+		byte[] data = JpegTestImages.write(
+				JpegTestImages.createPhoto(800, 600, BufferedImage.TYPE_INT_RGB), true, 0, 0, 0
+		);
+		ThumbnailParameter param = new ThumbnailParameterBuilder().size(800, 800).build();
+
+		// when
+		BufferedImage img = read(data, param);
+
+		// then
+		assertEquals(800, img.getWidth());
+		assertEquals(600, img.getHeight());
+	}
+
+	@Test
+	public void partialProgressiveDoesNotDecodeBaselineImages() throws IOException {
+		// given
+		System.setProperty("thumbnailator.partialProgressiveJpeg", "true");
+		// The "thumbnailator.useJpegDecoder" system property is not set.
+		ThumbnailParameter param = new ThumbnailParameterBuilder().size(200, 200).build();
+
+		// when
+		BufferedImage img = read(sourceByteArray, param);
+
+		// then
+		assertEquals(WIDTH, img.getWidth());
+		assertEquals(HEIGHT, img.getHeight());
+	}
+}
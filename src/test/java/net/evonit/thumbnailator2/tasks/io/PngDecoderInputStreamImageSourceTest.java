@@ -0,0 +1,193 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2022 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.tasks.io;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import net.evonit.thumbnailator2.ThumbnailParameter;
+import net.evonit.thumbnailator2.builders.ThumbnailParameterBuilder;
+import net.evonit.thumbnailator2.geometry.AbsoluteSize;
+import net.evonit.thumbnailator2.geometry.Positions;
+import net.evonit.thumbnailator2.geometry.Region;
+import net.evonit.thumbnailator2.tasks.io.jpeg.JpegTestImages;
+import net.evonit.thumbnailator2.tasks.io.png.PngTestImages;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PngDecoderInputStreamImageSourceTest {
+
+	private static final int WIDTH = 1000;
+	private static final int HEIGHT = 800;
+
+	private static byte[] sourceByteArray;
+
+	static {
+		try {
+			sourceByteArray = PngTestImages.write(
+					JpegTestImages.createPhoto(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB), false
+			);
+		} catch (IOException e) {
+			fail();
+		}
+	}
+
+	@BeforeEach @AfterEach
+	public void clearSystemProperty() {
+		System.clearProperty("thumbnailator.usePngDecoder");
+		System.clearProperty("thumbnailator.useJpegDecoder");
+	}
+
+	private static InputStreamImageSource createSource(byte[] data, ThumbnailParameter param) {
+		InputStreamImageSource source = new InputStreamImageSource(new ByteArrayInputStream(data));
+		source.setThumbnailParameter(param);
+		return source;
+	}
+
+	@Test
+	public void fullSizeWhenDisabled() throws IOException {
+		// given
+		// The "thumbnailator.usePngDecoder" system property is not set.
+		InputStreamImageSource source = createSource(sourceByteArray, new ThumbnailParameterBuilder().size(100, 100).build());
+
+		// when
+		BufferedImage img = source.read();
+
+		// then
+		assertEquals(WIDTH, img.getWidth());
+		assertEquals(HEIGHT, img.getHeight());
+	}
+
+	@Test
+	public void reducedSizeWhenEnabled() throws IOException {
+		// given
+		System.setProperty("thumbnailator.usePngDecoder", "true");
+		InputStreamImageSource source = createSource(sourceByteArray, new ThumbnailParameterBuilder().size(100, 100).build());
+
+		// when
+		BufferedImage img = source.read();
+
+		// then
+		assertEquals(WIDTH / 8, img.getWidth());
+		assertEquals(HEIGHT / 8, img.getHeight());
+		assertEquals(BufferedImage.TYPE_INT_ARGB, img.getType());
+		assertEquals("png", source.getInputFormatName());
+	}
+
+	@Test
+	public void reducedSizeCoversLongerSideOfTarget() throws IOException {
+		// given
+		System.setProperty("thumbnailator.usePngDecoder", "true");
+		InputStreamImageSource source = createSource(sourceByteArray, new ThumbnailParameterBuilder().size(90, 300).build());
+
+		// when
+		BufferedImage img = source.read();
+
+		// then
+		assertEquals(WIDTH / 2, img.getWidth());
+		assertEquals(HEIGHT / 2, img.getHeight());
+	}
+
+	@Test
+	public void fullSizeWhenTargetIsLarge() throws IOException {
+		// given
+		System.setProperty("thumbnailator.usePngDecoder", "true");
+		InputStreamImageSource source = createSource(sourceByteArray, new ThumbnailParameterBuilder().size(900, 900).build());
+
+		// when
+		BufferedImage img = source.read();
+
+		// then
+		assertEquals(WIDTH, img.getWidth());
+		assertEquals(HEIGHT, img.getHeight());
+		assertEquals("png", source.getInputFormatName());
+	}
+
+	@Test
+	public void fullSizeWhenRegionIsSpecified() throws IOException {
+		// given
+		System.setProperty("thumbnailator.usePngDecoder", "true");
+		ThumbnailParameter param = new ThumbnailParameterBuilder()
+				.region(new Region(Positions.CENTER, new AbsoluteSize(400, 400)))
+				.size(100, 100)
+				.build();
+		InputStreamImageSource source = createSource(sourceByteArray, param);
+
+		// when
+		BufferedImage img = source.read();
+
+		// then
+		assertEquals(400, img.getWidth());
+		assertEquals(400, img.getHeight());
+	}
+
+	@Test
+	public void jpegIsReadByImageIO() throws IOException {
+		// given
+		System.setProperty("thumbnailator.usePngDecoder", "true");
+		byte[] data = JpegTestImages.write(JpegTestImages.createPhoto(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB));
+		InputStreamImageSource source = createSource(data, new ThumbnailParameterBuilder().size(100, 100).build());
+
+		// when
+		BufferedImage img = source.read();
+
+		// then
+		assertEquals(WIDTH, img.getWidth());
+		assertEquals(HEIGHT, img.getHeight());
+		assertEquals("JPEG", source.getInputFormatName());
+	}
+
+	@Test
+	public void pngIsReadAfterJpegDecoder() throws IOException {
+		// given
+		System.setProperty("thumbnailator.usePngDecoder", "true");
+		System.setProperty("thumbnailator.useJpegDecoder", "true");
+		InputStreamImageSource source = createSource(sourceByteArray, new ThumbnailParameterBuilder().size(100, 100).build());
+
+		// when
+		BufferedImage img = source.read();
+
+		// then
+		assertEquals(WIDTH / 8, img.getWidth());
+		assertEquals(HEIGHT / 8, img.getHeight());
+	}
+
+	@Test
+	public void corruptImageDataFails() throws IOException {
+		// given
+		System.setProperty("thumbnailator.usePngDecoder", "true");
+		byte[] truncated = Arrays.copyOf(sourceByteArray, sourceByteArray.length / 2);
+		InputStreamImageSource source = createSource(truncated, new ThumbnailParameterBuilder().size(100, 100).build());
+
+		// when, then
+		assertThrows(IOException.class, source::read);
+	}
+}
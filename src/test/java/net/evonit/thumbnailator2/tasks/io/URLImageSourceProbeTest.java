@@ -0,0 +1,332 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2022 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.tasks.io;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import net.evonit.thumbnailator2.TestUtils;
+import net.evonit.thumbnailator2.tasks.io.jpeg.JpegTestImages;
+import net.evonit.thumbnailator2.test.LocalImageServer;
+import net.evonit.thumbnailator2.util.exif.Orientation;
+
+import com.sun.net.httpserver.HttpHandler;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link URLImageSource#probe()}.
+ */
+public class URLImageSourceProbeTest {
+
+	private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d+)");
+
+	private static byte[] readResource(String name) throws IOException {
+		try (InputStream is = TestUtils.getResourceStream(name)) {
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int n;
+			while ((n = is.read(buffer)) != -1) {
+				baos.write(buffer, 0, n);
+			}
+			return baos.toByteArray();
+		}
+	}
+
+	/**
+	 * Returns a handler which sends the requested ranges of the data, and
+	 * records the ranges and the number of bytes sent.
+	 */
+	private static HttpHandler ranged(byte[] data, List<String> ranges, AtomicLong sent) {
+		return exchange -> {
+			String range = exchange.getRequestHeaders().getFirst("Range");
+			ranges.add(range);
+			Matcher m = RANGE.matcher(range == null ? "" : range);
+			if (!m.matches()) {
+				sent.addAndGet(data.length);
+				LocalImageServer.respond(exchange, 200, data, "image/jpeg");
+				return;
+			}
+
+			int first = Integer.parseInt(m.group(1));
+			if (first >= data.length) {
+				exchange.getResponseHeaders().set("Content-Range", "bytes */" + data.length);
+				LocalImageServer.respond(exchange, 416, new byte[0], "text/plain");
+				return;
+			}
+			int last = Math.min(Integer.parseInt(m.group(2)), data.length - 1);
+			byte[] part = new byte[last - first + 1];
+			System.arraycopy(data, first, part, 0, part.length);
+			sent.addAndGet(part.length);
+			exchange.getResponseHeaders().set("Content-Range", "bytes " + first + "-" + last + "/" + data.length);
+			LocalImageServer.respond(exchange, 206, part, "image/jpeg");
+		};
+	}
+
+	/**
+	 * Returns a JPEG image with comment segments of the given length after
+	 * the JFIF segment, which place the frame header further in.
+	 */
+	private static byte[] jpegWithComment(int width, int height, int commentLength) throws IOException {
+		byte[] jpeg = JpegTestImages.write(JpegTestImages.createPhoto(width, height, BufferedImage.TYPE_INT_RGB));
+		int jfifEnd = 4 + (((jpeg[4] & 0xFF) << 8) | (jpeg[5] & 0xFF));
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		baos.write(jpeg, 0, jfifEnd);
+		for (int remaining = commentLength; remaining > 0; remaining -= 65533) {
+			int n = Math.min(remaining, 65533);
+			baos.write(0xFF);
+			baos.write(0xFE);
+			baos.write((n + 2) >> 8);
+			baos.write((n + 2) & 0xFF);
+			baos.write(new byte[n]);
+		}
+		baos.write(jpeg, jfifEnd, jpeg.length - jfifEnd);
+		return baos.toByteArray();
+	}
+
+	@Test
+	public void readsHeaderFromFirstRange() throws Exception {
+		// given
+		byte[] jpeg = JpegTestImages.write(JpegTestImages.createPhoto(1600, 1200, BufferedImage.TYPE_INT_RGB));
+		List<String> ranges = Collections.synchronizedList(new ArrayList<>());
+		AtomicLong sent = new AtomicLong();
+
+		try (LocalImageServer server = new LocalImageServer(ranged(jpeg, ranges, sent))) {
+			URLImageSource source = new URLImageSource(server.url("/image.jpg"));
+
+			// when
+			ImageHeader header = source.probe();
+
+			// then
+			assertTrue(header.isFormat("jpeg"));
+			assertEquals(1600, header.getWidth());
+			assertEquals(1200, header.getHeight());
+			assertEquals(Collections.singletonList("bytes=0-4095"), ranges);
+			assertEquals(4096, sent.get());
+		}
+	}
+
+	@Test
+	public void extendsRangeUntilHeaderIsRead() throws Exception {
+		// given
+		byte[] jpeg = jpegWithComment(400, 300, 10000);
+		List<String> ranges = Collections.synchronizedList(new ArrayList<>());
+		AtomicLong sent = new AtomicLong();
+
+		try (LocalImageServer server = new LocalImageServer(ranged(jpeg, ranges, sent))) {
+			URLImageSource source = new URLImageSource(server.url("/image.jpg"));
+
+			// when
+			ImageHeader header = source.probe();
+
+			// then
+			assertEquals(400, header.getWidth());
+			assertEquals(300, header.getHeight());
+			assertEquals(3, ranges.size());
+			assertEquals("bytes=0-4095", ranges.get(0));
+			assertEquals("bytes=4096-8191", ranges.get(1));
+			assertEquals("bytes=8192-16383", ranges.get(2));
+			assertTrue(sent.get() < jpeg.length);
+		}
+	}
+
+	@Test
+	public void readsOrientationOfImage() throws Exception {
+		// given
+		byte[] jpeg = readResource("Exif/source_6.jpg");
+		List<String> ranges = Collections.synchronizedList(new ArrayList<>());
+
+		try (LocalImageServer server = new LocalImageServer(ranged(jpeg, ranges, new AtomicLong()))) {
+			URLImageSource source = new URLImageSource(server.url("/image.jpg"));
+
+			// when
+			ImageHeader header = source.probe();
+
+			// then
+			assertEquals(Orientation.typeOf(6), header.getOrientation());
+		}
+	}
+
+	@Test
+	public void stopsAtMaximumNumberOfBytes() throws Exception {
+		// given
+		byte[] jpeg = jpegWithComment(400, 300, 100000);
+		List<String> ranges = Collections.synchronizedList(new ArrayList<>());
+		AtomicLong sent = new AtomicLong();
+
+		try (LocalImageServer server = new LocalImageServer(ranged(jpeg, ranges, sent))) {
+			URLImageSource source = new URLImageSource(server.url("/image.jpg"));
+
+			// when
+			ImageHeader header = source.probe(10000);
+
+			// then
+			assertNull(header);
+			assertEquals(10000, sent.get());
+			assertEquals("bytes=8192-9999", ranges.get(ranges.size() - 1));
+		}
+	}
+
+	@Test
+	public void returnsNullForDataWhichIsNotAnImage() throws Exception {
+		// given
+		byte[] text = "not an image".getBytes("UTF-8");
+		List<String> ranges = Collections.synchronizedList(new ArrayList<>());
+
+		try (LocalImageServer server = new LocalImageServer(ranged(text, ranges, new AtomicLong()))) {
+			URLImageSource source = new URLImageSource(server.url("/image.jpg"));
+
+			// when
+			ImageHeader header = source.probe();
+
+			// then
+			assertNull(header);
+			assertEquals(1, ranges.size());
+		}
+	}
+
+	@Test
+	public void closesConnectionWhenServerIgnoresRange() throws Exception {
+		// given
+		byte[] png = readResource("Thumbnailator/grid.png");
+		long length = 64L * 1024 * 1024;
+		AtomicLong written = new AtomicLong();
+		AtomicBoolean aborted = new AtomicBoolean();
+		CountDownLatch done = new CountDownLatch(1);
+
+		try (LocalImageServer server = new LocalImageServer(exchange -> {
+			try {
+				exchange.sendResponseHeaders(200, length);
+				OutputStream os = exchange.getResponseBody();
+				os.write(png);
+				written.addAndGet(png.length);
+				byte[] padding = new byte[65536];
+				while (written.get() < length) {
+					int n = (int)Math.min(padding.length, length - written.get());
+					os.write(padding, 0, n);
+					written.addAndGet(n);
+				}
+				os.close();
+			} catch (IOException e) {
+				aborted.set(true);
+			} finally {
+				done.countDown();
+			}
+		})) {
+			URLImageSource source = new URLImageSource(server.url("/image.png"));
+
+			// when
+			ImageHeader header = source.probe();
+
+			// then
+			assertEquals(100, header.getWidth());
+			assertTrue(done.await(10, TimeUnit.SECONDS));
+			assertTrue(aborted.get());
+			assertTrue(written.get() < length);
+		}
+	}
+
+	@Test
+	public void probesWithHttpURLFetcher() throws Exception {
+		// given
+		byte[] jpeg = jpegWithComment(400, 300, 5000);
+		List<String> ranges = Collections.synchronizedList(new ArrayList<>());
+		HttpURLFetcher fetcher = new HttpURLFetcher.Builder().build();
+
+		try (LocalImageServer server = new LocalImageServer(ranged(jpeg, ranges, new AtomicLong()))) {
+			URLImageSource source = new URLImageSource(server.url("/image.jpg"), fetcher);
+
+			// when
+			ImageHeader header = source.probe();
+
+			// then
+			assertEquals(400, header.getWidth());
+			assertEquals(2, ranges.size());
+			assertEquals("bytes=4096-8191", ranges.get(1));
+		}
+	}
+
+	@Test
+	public void probesWithOtherFetcher() throws Exception {
+		// given
+		byte[] png = readResource("Thumbnailator/grid.png");
+		URLImageSource source = new URLImageSource(new URL("http://example.invalid/image.png"),
+				url -> new ByteArrayInputStream(png));
+
+		// when
+		ImageHeader header = source.probe();
+
+		// then
+		assertTrue(header.isFormat("png"));
+		assertEquals(100, header.getHeight());
+	}
+
+	@Test
+	public void probesFileUrl() throws Exception {
+		// given
+		URLImageSource source = new URLImageSource(TestUtils.getResource("Thumbnailator/grid.gif"));
+
+		// when
+		ImageHeader header = source.probe();
+
+		// then
+		assertTrue(header.isFormat("gif"));
+		assertEquals(100, header.getWidth());
+	}
+
+	@Test
+	public void failsForErrorStatus() throws Exception {
+		try (LocalImageServer server = new LocalImageServer(exchange ->
+				LocalImageServer.respond(exchange, 404, "not found".getBytes("UTF-8"), "text/plain"))) {
+			URLImageSource source = new URLImageSource(server.url("/image.jpg"));
+
+			// when, then
+			assertThrows(IOException.class, source::probe);
+		}
+	}
+
+	@Test
+	public void invalidMaximumIsRejected() throws Exception {
+		URLImageSource source = new URLImageSource(new URL("http://example.invalid/image.png"));
+
+		assertThrows(IllegalArgumentException.class, () -> source.probe(0));
+	}
+}
@@ -0,0 +1,489 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2022 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.tasks.io.jpeg;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JpegDecoderTest {
+
+	private static final int[] SCALES = {1, 2, 4, 8};
+
+	private static BufferedImage decode(byte[] data, int scale) throws IOException {
+		JpegDecoder decoder = new JpegDecoder(new ByteArrayInputStream(data));
+		assertTrue(decoder.readHeader());
+		return decoder.decode(scale);
+	}
+
+	private static byte[] pixels(BufferedImage img) {
+		return ((DataBufferByte)img.getRaster().getDataBuffer()).getData();
+	}
+
+	@Test
+	public void readsHeader() throws IOException {
+		// given
+		byte[] data = JpegTestImages.write(JpegTestImages.createPhoto(101, 77, BufferedImage.TYPE_INT_RGB));
+		JpegDecoder decoder = new JpegDecoder(new ByteArrayInputStream(data));
+
+		// when
+		boolean supported = decoder.readHeader();
+
+		// then
+		assertTrue(supported);
+		assertEquals(101, decoder.getWidth());
+		assertEquals(77, decoder.getHeight());
+		assertFalse(decoder.isProgressive());
+	}
+
+	@Test
+	public void decodesFullSizeLikeImageIO() throws IOException {
+		// given
+		byte[] data = JpegTestImages.write(JpegTestImages.createPhoto(203, 157, BufferedImage.TYPE_INT_RGB));
+		BufferedImage expected = ImageIO.read(new ByteArrayInputStream(data));
+
+		// when
+		BufferedImage img = decode(data, 1);
+
+		// then
+		assertEquals(BufferedImage.TYPE_3BYTE_BGR, img.getType());
+		assertEquals(203, img.getWidth());
+		assertEquals(157, img.getHeight());
+		assertTrue(JpegTestImages.meanDifference(expected, img, 1) < 0.5);
+	}
+
+	@Test
+	public void reducedSizeIsMeanOfFullSize() throws IOException {
+		// given
+		byte[] data = JpegTestImages.write(
+				JpegTestImages.createPhoto(203, 157, BufferedImage.TYPE_INT_RGB), false, 0, 1, 1
+		);
+		BufferedImage expected = ImageIO.read(new ByteArrayInputStream(data));
+
+		for (int scale : SCALES) {
+			// when
+			BufferedImage img = decode(data, scale);
+
+			// then
+			assertEquals((203 + scale - 1) / scale, img.getWidth());
+			assertEquals((157 + scale - 1) / scale, img.getHeight());
+			assertTrue(JpegTestImages.meanDifference(expected, img, scale) < 1, "scale " + scale);
+		}
+	}
+
+	@Test
+	public void decodesGrayscale() throws IOException {
+		// given
+		BufferedImage gray = new BufferedImage(203, 157, BufferedImage.TYPE_BYTE_GRAY);
+		gray.createGraphics().drawImage(JpegTestImages.createPhoto(203, 157, BufferedImage.TYPE_INT_RGB), 0, 0, null);
+		byte[] data = JpegTestImages.write(gray);
+		BufferedImage expected = ImageIO.read(new ByteArrayInputStream(data));
+
+		for (int scale : SCALES) {
+			// when
+			BufferedImage img = decode(data, scale);
+
+			// then
+			assertEquals(BufferedImage.TYPE_BYTE_GRAY, img.getType());
+			assertTrue(JpegTestImages.meanDifference(expected, img, scale) < 1, "scale " + scale);
+		}
+	}
+
+	@Test
+	public void decodesSubsampledChroma() throws IOException {
+		BufferedImage source = JpegTestImages.createPhoto(203, 157, BufferedImage.TYPE_INT_RGB);
+		int[][] samplingFactors = {{2, 2}, {2, 1}};
+
+		for (int[] factors : samplingFactors) {
+			// given
+			byte[] data = JpegTestImages.write(source, false, 0, factors[0], factors[1]);
+			BufferedImage expected = ImageIO.read(new ByteArrayInputStream(data));
+
+			for (int scale : SCALES) {
+				// when
+				BufferedImage img = decode(data, scale);
+
+				// then
+				assertEquals((203 + scale - 1) / scale, img.getWidth());
+				assertEquals((157 + scale - 1) / scale, img.getHeight());
+				// Colors differ from the mean at edges, as chroma is not upsampled
+				// before averaging.
+				double tolerance = scale == 1 ? 0.5 : 3;
+				assertTrue(JpegTestImages.meanDifference(expected, img, scale) < tolerance, "scale " + scale);
+			}
+		}
+	}
+
+	@Test
+	public void progressiveDecodesSameAsBaseline() throws IOException {
+		// given
+		BufferedImage source = JpegTestImages.createPhoto(203, 157, BufferedImage.TYPE_INT_RGB);
+		byte[] baseline = JpegTestImages.write(source, false, 0, 0, 0);
+		byte[] progressive = JpegTestImages.write(source, true, 0, 0, 0);
+
+		for (int scale : SCALES) {
+			// when
+			BufferedImage expected = decode(baseline, scale);
+			JpegDecoder decoder = new JpegDecoder(new ByteArrayInputStream(progressive));
+			BufferedImage img = decoder.decode(scale);
+
+			// then
+			assertTrue(decoder.isProgressive());
+			assertArrayEquals(pixels(expected), pixels(img), "scale " + scale);
+		}
+	}
+
+	@Test
+	public void restartIntervalsDecodeSameInParallel() throws IOException {
+		// given
+		BufferedImage source = JpegTestImages.createPhoto(403, 301, BufferedImage.TYPE_INT_RGB);
+		byte[] expectedData = JpegTestImages.write(source, false, 0, 0, 0);
+
+		for (boolean progressive : new boolean[] {false, true}) {
+			byte[] data = JpegTestImages.write(source, progressive, 3, 0, 0);
+
+			// when
+			JpegDecoder sequential = new JpegDecoder(new ByteArrayInputStream(data));
+			sequential.setParallel(false);
+			JpegDecoder parallel = new JpegDecoder(new ByteArrayInputStream(data));
+			parallel.setParallel(true);
+
+			// then
+			byte[] expected = pixels(decode(expectedData, 2));
+			assertArrayEquals(expected, pixels(sequential.decode(2)));
+			assertArrayEquals(expected, pixels(parallel.decode(2)));
+		}
+	}
+
+	@Test
+	public void partialDecodingIsDisabledByDefault() throws IOException {
+		// given
+		byte[] data = JpegTestImages.write(JpegTestImages.createPhoto(203, 157, BufferedImage.TYPE_INT_RGB), true, 0, 0, 0);
+		JpegDecoder decoder = new JpegDecoder(new ByteArrayInputStream(data));
+
+		// when
+		decoder.decode(8);
+
+		// then
+		assertEquals(JpegTestImages.countScans(data), decoder.getScanCount());
+	}
+
+	@Test
+	public void partialDecodingStopsEarlyAtReducedSize() throws IOException {
+		// given
+		byte[] data = JpegTestImages.write(JpegTestImages.createPhoto(403, 301, BufferedImage.TYPE_INT_RGB), true, 0, 0, 0);
+		int scans = JpegTestImages.countScans(data);
+
+		for (int scale : new int[] {2, 4, 8}) {
+			ByteArrayInputStream is = new ByteArrayInputStream(data);
+			JpegDecoder decoder = new JpegDecoder(is);
+			decoder.setPartialDecoding(true);
+
+			// when
+			BufferedImage img = decoder.decode(scale);
+
+			// then
+			assertTrue(decoder.getScanCount() < scans, "scale " + scale);
+			assertTrue(is.available() > 0, "scale " + scale);
+
+			// The missing least significant bits mostly affect the noise.
+			assertTrue(JpegTestImages.meanDifference(decode(data, scale), img, 1) < 4, "scale " + scale);
+		}
+	}
+
+	@Test
+	public void partialDecodingReadsAllScansAtFullSize() throws IOException {
+		// given
+		byte[] data = JpegTestImages.write(JpegTestImages.createPhoto(203, 157, BufferedImage.TYPE_INT_RGB), true, 0, 0, 0);
+		JpegDecoder decoder = new JpegDecoder(new ByteArrayInputStream(data));
+		decoder.setPartialDecoding(true);
+
+		// when
+		BufferedImage img = decoder.decode(1);
+
+		// then
+		assertEquals(JpegTestImages.countScans(data), decoder.getScanCount());
+		assertArrayEquals(pixels(decode(data, 1)), pixels(img));
+	}
+
+	@Test
+	public void partialDecodingOfImagesWithFewerScans() throws IOException {
+		// given
+		byte[] data = JpegTestImages.write(JpegTestImages.createPhoto(203, 157, BufferedImage.TYPE_INT_RGB), true, 0, 0, 0);
+		JpegDecoder complete = new JpegDecoder(new ByteArrayInputStream(data));
+		complete.setPartialDecoding(true);
+		BufferedImage expected = complete.decode(8);
+		int sufficientScans = complete.getScanCount();
+
+		for (int scans = 1; scans <= JpegTestImages.countScans(data); scans++) {
+			byte[] truncated = JpegTestImages.truncateScans(data, scans);
+			JpegDecoder decoder = new JpegDecoder(new ByteArrayInputStream(truncated));
+			decoder.setPartialDecoding(true);
+
+			// when
+			BufferedImage img = decoder.decode(8);
+
+			// then
+			assertEquals(Math.min(scans, sufficientScans), decoder.getScanCount(), "scans " + scans);
+			if (scans >= sufficientScans) {
+				assertArrayEquals(pixels(expected), pixels(img), "scans " + scans);
+			}
+		}
+	}
+
+	@Test
+	public void partialDecodingDoesNotAffectBaselineImages() throws IOException {
+		// given
+		byte[] data = JpegTestImages.write(JpegTestImages.createPhoto(203, 157, BufferedImage.TYPE_INT_RGB));
+		JpegDecoder decoder = new JpegDecoder(new ByteArrayInputStream(data));
+		decoder.setPartialDecoding(true);
+
+		// when
+		BufferedImage img = decoder.decode(8);
+
+		// then
+		assertEquals(1, decoder.getScanCount());
+		assertArrayEquals(pixels(decode(data, 8)), pixels(img));
+	}
+
+	@Test
+	public void unsupportedDataCanBeReplayed() throws IOException {
+		// given
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		ImageIO.write(JpegTestImages.createPhoto(50, 50, BufferedImage.TYPE_INT_RGB), "png", baos);
+		byte[] data = baos.toByteArray();
+		JpegDecoder decoder = new JpegDecoder(new ByteArrayInputStream(data));
+
+		// when
+		boolean supported = decoder.readHeader();
+
+		// then
+		assertFalse(supported);
+		InputStream replay = decoder.replay();
+		ByteArrayOutputStream replayed = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+		for (int n; (n = replay.read(buffer)) != -1; ) {
+			replayed.write(buffer, 0, n);
+		}
+		assertTrue(Arrays.equals(data, replayed.toByteArray()));
+	}
+
+	@Test
+	public void truncatedHeaderFails() throws IOException {
+		// given
+		byte[] data = JpegTestImages.write(JpegTestImages.createPhoto(101, 77, BufferedImage.TYPE_INT_RGB));
+		byte[] truncated = Arrays.copyOf(data, 100);
+		JpegDecoder decoder = new JpegDecoder(new ByteArrayInputStream(truncated));
+
+		// when, then
+		assertThrows(IOException.class, () -> decoder.decode(2));
+	}
+
+	@Test
+	public void truncatedDataIsPadded() throws IOException {
+		// given
+		byte[] data = JpegTestImages.write(JpegTestImages.createPhoto(101, 77, BufferedImage.TYPE_INT_RGB));
+		byte[] truncated = Arrays.copyOf(data, data.length / 2);
+		BufferedImage expected = decode(data, 2);
+
+		// when
+		BufferedImage img = decode(truncated, 2);
+
+		// then
+		assertEquals(51, img.getWidth());
+		assertEquals(39, img.getHeight());
+		assertEquals(expected.getRGB(0, 0), img.getRGB(0, 0));
+	}
+
+	@Test
+	public void truncatedDataWithRestartIntervalsIsPadded() throws IOException {
+		// given
+		byte[] data = JpegTestImages.write(
+				JpegTestImages.createPhoto(101, 77, BufferedImage.TYPE_INT_RGB), false, 2, 0, 0
+		);
+		byte[] truncated = Arrays.copyOf(data, data.length / 2);
+		BufferedImage expected = decode(data, 2);
+
+		// when
+		BufferedImage img = decode(truncated, 2);
+
+		// then
+		assertEquals(51, img.getWidth());
+		assertEquals(39, img.getHeight());
+		assertEquals(expected.getRGB(0, 0), img.getRGB(0, 0));
+	}
+
+	@Test
+	public void invalidHuffmanCodeFails() throws IOException {
+		// given
+		byte[] data = JpegTestImages.write(JpegTestImages.createPhoto(101, 77, BufferedImage.TYPE_INT_RGB));
+		JpegDecoder decoder = new JpegDecoder(new ByteArrayInputStream(JpegTestImages.corruptScan(data)));
+
+		// when, then
+		assertThrows(IOException.class, () -> decoder.decode(2));
+	}
+
+	@Test
+	public void unsupportedScale() throws IOException {
+		// given
+		byte[] data = JpegTestImages.write(JpegTestImages.createPhoto(16, 16, BufferedImage.TYPE_INT_RGB));
+		JpegDecoder decoder = new JpegDecoder(new ByteArrayInputStream(data));
+
+		// when, then
+		assertThrows(IllegalArgumentException.class, () -> decoder.decode(3));
+	}
+
+	@Test
+	public void decodesOnlyOnce() throws IOException {
+		// given
+		byte[] data = JpegTestImages.write(JpegTestImages.createPhoto(16, 16, BufferedImage.TYPE_INT_RGB));
+		JpegDecoder decoder = new JpegDecoder(new ByteArrayInputStream(data));
+		decoder.decode(1);
+
+		// when, then
+		assertThrows(IllegalStateException.class, () -> decoder.decode(1));
+	}
+
+	@Test
+	public void decodeYCbCrKeepsChromaSubsampled() throws IOException {
+		// given
+		byte[] data = JpegTestImages.write(JpegTestImages.createPhoto(100, 75, BufferedImage.TYPE_INT_RGB));
+		JpegDecoder decoder = new JpegDecoder(new ByteArrayInputStream(data));
+		decoder.readHeader();
+
+		// when
+		YCbCrImage img = decoder.decodeYCbCr(1);
+
+		// then
+		assertEquals(3, img.getPlaneCount());
+		assertEquals(100, img.getPlane(0).getWidth());
+		assertEquals(75, img.getPlane(0).getHeight());
+		for (int i = 1; i < 3; i++) {
+			assertEquals(50, img.getPlane(i).getWidth());
+			assertEquals(38, img.getPlane(i).getHeight());
+		}
+	}
+
+	@Test
+	public void decodeYCbCrOfGrayscaleImage() throws IOException {
+		// given
+		byte[] data = JpegTestImages.write(JpegTestImages.createPhoto(100, 75, BufferedImage.TYPE_BYTE_GRAY));
+		JpegDecoder decoder = new JpegDecoder(new ByteArrayInputStream(data));
+		decoder.readHeader();
+
+		// when
+		YCbCrImage img = decoder.decodeYCbCr(2);
+
+		// then
+		assertEquals(1, img.getPlaneCount());
+		assertEquals(50, img.getWidth());
+		assertEquals(38, img.getHeight());
+		assertArrayEquals(pixels(decode(data, 2)), pixels(img.getPlane(0)));
+	}
+
+	@Test
+	public void decodeYCbCrMatchesDecodedImage() throws IOException {
+		// given
+		// At half size, the chroma planes of a 4:2:0 image are decoded at
+		// the size of the image, so that no upsampling is involved.
+		byte[] data = JpegTestImages.write(JpegTestImages.createPhoto(100, 75, BufferedImage.TYPE_INT_RGB));
+		BufferedImage expected = decode(data, 2);
+		JpegDecoder decoder = new JpegDecoder(new ByteArrayInputStream(data));
+		decoder.readHeader();
+
+		// when
+		YCbCrImage img = decoder.decodeYCbCr(2);
+
+		// then
+		double total = 0;
+		for (int y = 0; y < 38; y++) {
+			for (int x = 0; x < 50; x++) {
+				double luma = img.getPlane(0).getRaster().getSample(x, y, 0);
+				double cb = img.getPlane(1).getRaster().getSample(x, y, 0) - 128;
+				double cr = img.getPlane(2).getRaster().getSample(x, y, 0) - 128;
+				int rgb = expected.getRGB(x, y);
+				total += Math.abs(clamp(luma + 1.402 * cr) - ((rgb >> 16) & 0xff));
+				total += Math.abs(clamp(luma - 0.344136 * cb - 0.714136 * cr) - ((rgb >> 8) & 0xff));
+				total += Math.abs(clamp(luma + 1.772 * cb) - (rgb & 0xff));
+			}
+		}
+		assertTrue(total / (50 * 38 * 3) < 1);
+	}
+
+
+	@Test
+	public void smallImageCanBeReplayedAfterDecoding() throws IOException {
+		// given
+		byte[] data = JpegTestImages.write(JpegTestImages.createPhoto(101, 77, BufferedImage.TYPE_INT_RGB));
+		JpegDecoder decoder = new JpegDecoder(new ByteArrayInputStream(data));
+		assertTrue(decoder.readHeader());
+
+		// when
+		decoder.decode(2);
+
+		// then
+		assertTrue(decoder.canReplay());
+		assertNotNull(ImageIO.read(decoder.replay()));
+	}
+
+	@Test
+	public void largeImageIsNotRecordedWhileDecoding() throws IOException {
+		// given
+		BufferedImage noise = new BufferedImage(1200, 1200, BufferedImage.TYPE_INT_RGB);
+		Random random = new Random(1);
+		for (int y = 0; y < noise.getHeight(); y++) {
+			for (int x = 0; x < noise.getWidth(); x++) {
+				noise.setRGB(x, y, random.nextInt());
+			}
+		}
+		byte[] data = JpegTestImages.write(noise);
+		assertTrue(data.length > JpegInput.MAX_RECORDED_LENGTH);
+		JpegDecoder decoder = new JpegDecoder(new ByteArrayInputStream(data));
+		assertTrue(decoder.readHeader());
+		assertTrue(decoder.canReplay());
+
+		// when
+		BufferedImage img = decoder.decode(8);
+
+		// then
+		assertEquals(150, img.getWidth());
+		assertFalse(decoder.canReplay());
+		assertThrows(IllegalStateException.class, decoder::replay);
+	}
+	private static double clamp(double value) {
+		return Math.max(0, Math.min(255, value));
+	}
+}
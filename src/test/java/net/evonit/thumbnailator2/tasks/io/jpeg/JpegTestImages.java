@@ -0,0 +1,261 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2022 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.tasks.io.jpeg;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Creates JPEG images with specific encoding options for tests, using the
+ * JPEG writer of Image I/O.
+ */
+public final class JpegTestImages {
+	private static final String METADATA_FORMAT = "javax_imageio_jpeg_image_1.0";
+
+	private JpegTestImages() {
+	}
+
+	/**
+	 * Creates an image with gradients, shapes and noise, which resembles a
+	 * photo more than a flat image does.
+	 */
+	public static BufferedImage createPhoto(int width, int height, int type) {
+		BufferedImage img = new BufferedImage(width, height, type);
+		Graphics2D g = img.createGraphics();
+		g.setPaint(new GradientPaint(0, 0, Color.orange, width, height, Color.blue));
+		g.fillRect(0, 0, width, height);
+
+		Random random = new Random(1);
+		for (int i = 0; i < 30; i++) {
+			g.setColor(new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256)));
+			g.fillOval(
+					random.nextInt(width), random.nextInt(height),
+					1 + random.nextInt(width / 3 + 1), 1 + random.nextInt(height / 3 + 1)
+			);
+		}
+		g.dispose();
+
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int noise = random.nextInt(9) - 4;
+				int rgb = img.getRGB(x, y);
+				int r = clamp(((rgb >> 16) & 0xFF) + noise);
+				int gr = clamp(((rgb >> 8) & 0xFF) + noise);
+				int b = clamp((rgb & 0xFF) + noise);
+				img.setRGB(x, y, (r << 16) | (gr << 8) | b);
+			}
+		}
+		return img;
+	}
+
+	private static int clamp(int value) {
+		return Math.max(0, Math.min(255, value));
+	}
+
+	/**
+	 * Encodes an image as a baseline JPEG image with default options.
+	 */
+	public static byte[] write(BufferedImage img) throws IOException {
+		return write(img, false, 0, 0, 0);
+	}
+
+	/**
+	 * Encodes an image as a JPEG image.
+	 *
+	 * @param img				The image to encode.
+	 * @param progressive		Whether to encode a progressive image.
+	 * @param restartInterval	The restart interval in MCUs, or {@code 0}
+	 * 							for no restart markers.
+	 * @param h					The horizontal sampling factor of the first
+	 * 							component, or {@code 0} for the default.
+	 * @param v					The vertical sampling factor of the first
+	 * 							component, or {@code 0} for the default.
+	 */
+	public static byte[] write(BufferedImage img, boolean progressive, int restartInterval, int h, int v) throws IOException {
+		ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+		try {
+			ImageWriteParam param = writer.getDefaultWriteParam();
+			param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+			param.setCompressionQuality(0.9f);
+			if (progressive) {
+				param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+			}
+
+			IIOMetadata metadata = writer.getDefaultImageMetadata(new ImageTypeSpecifier(img), param);
+			IIOMetadataNode tree = (IIOMetadataNode)metadata.getAsTree(METADATA_FORMAT);
+			IIOMetadataNode markers = (IIOMetadataNode)tree.getElementsByTagName("markerSequence").item(0);
+			if (restartInterval > 0) {
+				IIOMetadataNode dri = new IIOMetadataNode("dri");
+				dri.setAttribute("interval", Integer.toString(restartInterval));
+				markers.insertBefore(dri, markers.getElementsByTagName("sof").item(0));
+			}
+			if (h > 0) {
+				IIOMetadataNode component = (IIOMetadataNode)tree.getElementsByTagName("componentSpec").item(0);
+				component.setAttribute("HsamplingFactor", Integer.toString(h));
+				component.setAttribute("VsamplingFactor", Integer.toString(v));
+			}
+			metadata.setFromTree(METADATA_FORMAT, tree);
+
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			ImageOutputStream ios = ImageIO.createImageOutputStream(baos);
+			writer.setOutput(ios);
+			writer.write(null, new IIOImage(img, null, metadata), param);
+			ios.close();
+			return baos.toByteArray();
+
+		} finally {
+			writer.dispose();
+		}
+	}
+
+	/**
+	 * Returns the number of scans of a JPEG image.
+	 */
+	public static int countScans(byte[] data) {
+		return findScans(data).size();
+	}
+
+	/**
+	 * Returns a JPEG image which consists of the first scans of the given
+	 * image, as a progressive image which has only been partly encoded.
+	 * Image I/O cannot write progressive images with a custom sequence of
+	 * scans, so the scans of a complete image are cut off instead.
+	 *
+	 * @param data		The JPEG image.
+	 * @param scans		The number of scans to keep.
+	 */
+	public static byte[] truncateScans(byte[] data, int scans) {
+		List<Integer> offsets = findScans(data);
+		if (scans >= offsets.size()) {
+			return data.clone();
+		}
+		int end = offsets.get(scans);
+		byte[] truncated = Arrays.copyOf(data, end + 2);
+		truncated[end] = (byte)0xFF;
+		truncated[end + 1] = (byte)0xD9;
+		return truncated;
+	}
+
+	/**
+	 * Returns a copy of a JPEG image with an invalid Huffman code in the
+	 * middle of its first scan. Image I/O decodes such an image with a
+	 * warning.
+	 *
+	 * @param data		The JPEG image.
+	 */
+	public static byte[] corruptScan(byte[] data) {
+		int sos = findScans(data).get(0);
+		int start = sos + 2 + (((data[sos + 2] & 0xFF) << 8) | (data[sos + 3] & 0xFF));
+		int i = start + (data.length - start) / 2;
+		while ((data[i - 1] & 0xFF) == 0xFF) {
+			i++;
+		}
+
+		// A code of all ones is not assigned in any Huffman table.
+		byte[] corrupt = data.clone();
+		for (int k = 0; k < 8; k += 2) {
+			corrupt[i + k] = (byte)0xFF;
+			corrupt[i + k + 1] = 0;
+		}
+		return corrupt;
+	}
+
+	/**
+	 * Returns the offsets of the SOS markers of a JPEG image.
+	 */
+	private static List<Integer> findScans(byte[] data) {
+		List<Integer> offsets = new ArrayList<Integer>();
+		int i = 2;
+		while (i + 4 <= data.length) {
+			int marker = data[i + 1] & 0xFF;
+			if (marker == 0xD9) {
+				break;
+			}
+			int length = ((data[i + 2] & 0xFF) << 8) | (data[i + 3] & 0xFF);
+			if (marker != 0xDA) {
+				i += 2 + length;
+				continue;
+			}
+
+			// The entropy-coded data ends at the next marker which is
+			// neither a stuffed byte nor a restart marker.
+			offsets.add(i);
+			i += 2 + length;
+			while (i + 1 < data.length) {
+				int next = data[i + 1] & 0xFF;
+				if ((data[i] & 0xFF) == 0xFF && next != 0 && (next < 0xD0 || next > 0xD7)) {
+					break;
+				}
+				i++;
+			}
+		}
+		return offsets;
+	}
+
+	/**
+	 * Returns the mean difference between the samples of an image and the
+	 * mean of the corresponding samples of an image which is larger by the
+	 * given factor.
+	 */
+	public static double meanDifference(BufferedImage reference, BufferedImage img, int scale) {
+		Raster ref = reference.getRaster();
+		Raster raster = img.getRaster();
+		double total = 0;
+		for (int y = 0; y < img.getHeight(); y++) {
+			for (int x = 0; x < img.getWidth(); x++) {
+				for (int b = 0; b < raster.getNumBands(); b++) {
+					double sum = 0;
+					int count = 0;
+					for (int ry = y * scale; ry < Math.min(reference.getHeight(), (y + 1) * scale); ry++) {
+						for (int rx = x * scale; rx < Math.min(reference.getWidth(), (x + 1) * scale); rx++) {
+							sum += ref.getSample(rx, ry, b);
+							count++;
+						}
+					}
+					total += Math.abs(sum / count - raster.getSample(x, y, b));
+				}
+			}
+		}
+		return total / ((double)img.getWidth() * img.getHeight() * raster.getNumBands());
+	}
+}
@@ -0,0 +1,196 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2022 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.tasks.io.jpeg;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.imageio.ImageIO;
+
+import net.evonit.thumbnailator2.TestUtils;
+import net.evonit.thumbnailator2.filters.ImageFilter;
+import net.evonit.thumbnailator2.util.exif.ExifFilterUtils;
+import net.evonit.thumbnailator2.util.exif.ExifUtils;
+import net.evonit.thumbnailator2.util.exif.Orientation;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JpegTransformTest {
+
+	private static JpegDecoder openDecoder(byte[] data) throws IOException {
+		JpegDecoder decoder = new JpegDecoder(new ByteArrayInputStream(data));
+		assertTrue(decoder.readHeader());
+		return decoder;
+	}
+
+	private static byte[] transform(byte[] data, JpegTransform transform) throws IOException {
+		JpegDecoder decoder = openDecoder(data);
+		assertTrue(transform.isLossless(decoder));
+		JpegCoefficients coefficients = transform.apply(decoder.readCoefficients());
+
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		coefficients.write(os);
+		return os.toByteArray();
+	}
+
+	private static double meanDifference(BufferedImage a, BufferedImage b) {
+		double sum = 0;
+		for (int y = 0; y < a.getHeight(); y++) {
+			for (int x = 0; x < a.getWidth(); x++) {
+				int p = a.getRGB(x, y);
+				int q = b.getRGB(x, y);
+				for (int shift = 0; shift < 24; shift += 8) {
+					sum += Math.abs(((p >> shift) & 0xff) - ((q >> shift) & 0xff));
+				}
+			}
+		}
+		return sum / (a.getWidth() * a.getHeight() * 3);
+	}
+
+	@Test
+	public void identityKeepsPixelsUnchanged() throws IOException {
+		for (boolean progressive : new boolean[] {false, true}) {
+			// given
+			byte[] data = JpegTestImages.write(
+					JpegTestImages.createPhoto(320, 240, BufferedImage.TYPE_INT_RGB),
+					progressive, 0, 0, 0
+			);
+			BufferedImage expected = ImageIO.read(new ByteArrayInputStream(data));
+
+			// when
+			byte[] result = transform(data, new JpegTransform(null, null));
+
+			// then
+			BufferedImage img = ImageIO.read(new ByteArrayInputStream(result));
+			assertEquals(320, img.getWidth());
+			assertEquals(240, img.getHeight());
+			assertEquals(0.0, meanDifference(expected, img), "progressive=" + progressive);
+		}
+	}
+
+	@Test
+	public void orientationsMatchExifFilters() throws IOException {
+		for (int type : new int[] {BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_BYTE_GRAY}) {
+			// given
+			byte[] data = JpegTestImages.write(JpegTestImages.createPhoto(320, 240, type));
+			BufferedImage source = ImageIO.read(new ByteArrayInputStream(data));
+
+			for (Orientation orientation : Orientation.values()) {
+				ImageFilter filter = ExifFilterUtils.getFilterForOrientation(orientation);
+				BufferedImage expected = filter == null ? source : filter.apply(source);
+
+				// when
+				byte[] result = transform(data, new JpegTransform(orientation, null));
+
+				// then
+				BufferedImage img = ImageIO.read(new ByteArrayInputStream(result));
+				assertEquals(expected.getWidth(), img.getWidth(), orientation.toString());
+				assertEquals(expected.getHeight(), img.getHeight(), orientation.toString());
+				assertTrue(meanDifference(expected, img) < 0.5, orientation.toString());
+			}
+		}
+	}
+
+	@Test
+	public void cropsAtMcuBoundaries() throws IOException {
+		// given
+		byte[] data = JpegTestImages.write(JpegTestImages.createPhoto(320, 240, BufferedImage.TYPE_INT_RGB));
+		BufferedImage source = ImageIO.read(new ByteArrayInputStream(data));
+		Rectangle region = new Rectangle(32, 16, 100, 90);
+
+		// when
+		byte[] result = transform(data, new JpegTransform(null, region));
+
+		// then
+		BufferedImage img = ImageIO.read(new ByteArrayInputStream(result));
+		assertEquals(100, img.getWidth());
+		assertEquals(90, img.getHeight());
+		// Chroma upsampling differs only along the new edges of the image.
+		assertTrue(meanDifference(source.getSubimage(32, 16, 100, 90), img) < 0.5);
+	}
+
+	@Test
+	public void unalignedCropIsNotLossless() throws IOException {
+		// given
+		byte[] data = JpegTestImages.write(JpegTestImages.createPhoto(320, 240, BufferedImage.TYPE_INT_RGB));
+		JpegDecoder decoder = openDecoder(data);
+		JpegTransform transform = new JpegTransform(null, new Rectangle(5, 16, 100, 90));
+
+		// when
+		boolean lossless = transform.isLossless(decoder);
+
+		// then
+		assertFalse(lossless);
+		try {
+			transform.apply(decoder.readCoefficients());
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void flipOfPartialMcuIsNotLossless() throws IOException {
+		// given
+		byte[] data = JpegTestImages.write(JpegTestImages.createPhoto(100, 75, BufferedImage.TYPE_INT_RGB));
+		JpegDecoder decoder = openDecoder(data);
+
+		// when
+		boolean flipped = new JpegTransform(Orientation.TOP_RIGHT, null).isLossless(decoder);
+		boolean unchanged = new JpegTransform(Orientation.TOP_LEFT, null).isLossless(decoder);
+
+		// then
+		assertFalse(flipped);
+		assertTrue(unchanged);
+	}
+
+	@Test
+	public void resetsExifOrientation() throws IOException {
+		// given
+		InputStream is = TestUtils.getResourceStream("Exif/source_6.jpg");
+		JpegDecoder decoder = new JpegDecoder(is);
+		assertTrue(decoder.readHeader());
+		JpegTransform transform = new JpegTransform(Orientation.RIGHT_TOP, null);
+		assertTrue(transform.isLossless(decoder));
+
+		// when
+		JpegCoefficients coefficients = transform.apply(decoder.readCoefficients());
+		is.close();
+
+		// then
+		assertEquals(Orientation.TOP_LEFT, ExifUtils.getOrientationFromExif(coefficients.getExifData()));
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		coefficients.write(os);
+		JpegDecoder written = openDecoder(os.toByteArray());
+		assertEquals(160, written.getWidth());
+		assertEquals(160, written.getHeight());
+	}
+}
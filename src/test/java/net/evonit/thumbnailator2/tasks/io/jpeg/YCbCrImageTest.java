@@ -0,0 +1,150 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2022 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.tasks.io.jpeg;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class YCbCrImageTest {
+
+	private static BufferedImage createPlane(int width, int height, int offset) {
+		BufferedImage plane = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				plane.getRaster().setSample(x, y, 0, offset + y * width + x);
+			}
+		}
+		return plane;
+	}
+
+	@Test
+	public void sizeIsSizeOfLumaPlane() {
+		// given
+		YCbCrImage img = new YCbCrImage(
+				createPlane(4, 3, 0), createPlane(2, 2, 0), createPlane(2, 2, 0)
+		);
+
+		// when, then
+		assertEquals(4, img.getWidth());
+		assertEquals(3, img.getHeight());
+		assertEquals(3, img.getPlaneCount());
+	}
+
+	@Test
+	public void toRasterRepeatsChromaSamples() {
+		// given
+		YCbCrImage img = new YCbCrImage(
+				createPlane(4, 4, 0), createPlane(2, 2, 100), createPlane(2, 2, 200)
+		);
+
+		// when
+		Raster raster = img.toRaster();
+
+		// then
+		assertEquals(4, raster.getWidth());
+		assertEquals(4, raster.getHeight());
+		assertEquals(3, raster.getNumBands());
+		for (int y = 0; y < 4; y++) {
+			for (int x = 0; x < 4; x++) {
+				assertEquals(y * 4 + x, raster.getSample(x, y, 0));
+				assertEquals(100 + (y / 2) * 2 + x / 2, raster.getSample(x, y, 1));
+				assertEquals(200 + (y / 2) * 2 + x / 2, raster.getSample(x, y, 2));
+			}
+		}
+	}
+
+	@Test
+	public void toRasterOfGrayscaleImage() {
+		// given
+		YCbCrImage img = new YCbCrImage(createPlane(3, 2, 10));
+
+		// when
+		Raster raster = img.toRaster();
+
+		// then
+		assertEquals(1, raster.getNumBands());
+		assertEquals(10, raster.getSample(0, 0, 0));
+		assertEquals(15, raster.getSample(2, 1, 0));
+	}
+
+	@Test
+	public void toBufferedImageConvertsToRgb() {
+		// given
+		BufferedImage luma = createPlane(2, 2, 100);
+		BufferedImage cb = createPlane(1, 1, 128);
+		BufferedImage cr = createPlane(1, 1, 228);
+		YCbCrImage img = new YCbCrImage(luma, cb, cr);
+
+		// when
+		BufferedImage rgb = img.toBufferedImage();
+
+		// then
+		assertEquals(BufferedImage.TYPE_3BYTE_BGR, rgb.getType());
+		assertEquals(2, rgb.getWidth());
+		assertEquals(2, rgb.getHeight());
+		// Red is raised by 1.402 * 100, green lowered by 0.714 * 100.
+		assertEquals(0xFFF01D64, rgb.getRGB(0, 0));
+		assertEquals(0xFFF32067, rgb.getRGB(1, 1));
+	}
+
+	@Test
+	public void toBufferedImageOfGrayscaleImage() {
+		// given
+		YCbCrImage img = new YCbCrImage(createPlane(3, 2, 10));
+
+		// when
+		BufferedImage gray = img.toBufferedImage();
+
+		// then
+		assertEquals(BufferedImage.TYPE_BYTE_GRAY, gray.getType());
+		assertEquals(10, gray.getRaster().getSample(0, 0, 0));
+		assertEquals(15, gray.getRaster().getSample(2, 1, 0));
+	}
+
+	@Test
+	public void rejectsTwoPlanes() {
+		assertThrows(IllegalArgumentException.class, () ->
+				new YCbCrImage(createPlane(2, 2, 0), createPlane(2, 2, 0))
+		);
+	}
+
+	@Test
+	public void rejectsChromaLargerThanLuma() {
+		assertThrows(IllegalArgumentException.class, () ->
+				new YCbCrImage(createPlane(2, 2, 0), createPlane(4, 2, 0), createPlane(2, 2, 0))
+		);
+	}
+
+	@Test
+	public void rejectsPlanesOfOtherTypes() {
+		assertThrows(IllegalArgumentException.class, () ->
+				new YCbCrImage(new BufferedImage(2, 2, BufferedImage.TYPE_INT_RGB))
+		);
+	}
+}
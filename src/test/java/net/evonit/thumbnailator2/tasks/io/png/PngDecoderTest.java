@@ -0,0 +1,263 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2022 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.tasks.io.png;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import javax.imageio.ImageIO;
+
+import net.evonit.thumbnailator2.resizers.StreamingResizer;
+import net.evonit.thumbnailator2.tasks.io.jpeg.JpegTestImages;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PngDecoderTest {
+
+	/**
+	 * The color types and bit depths of PNG images.
+	 */
+	private static final int[][] FORMATS = {
+			{0, 1}, {0, 2}, {0, 4}, {0, 8}, {0, 16},
+			{2, 8}, {2, 16},
+			{3, 1}, {3, 2}, {3, 4}, {3, 8},
+			{4, 8}, {4, 16},
+			{6, 8}, {6, 16},
+	};
+
+	private static BufferedImage decode(byte[] data, int width, int height) throws IOException {
+		PngDecoder decoder = new PngDecoder(new ByteArrayInputStream(data));
+		assertTrue(decoder.readHeader());
+		StreamingResizer resizer = new StreamingResizer(
+				decoder.getWidth(), decoder.getHeight(), width, height, decoder.hasAlpha()
+		);
+		decoder.decode(resizer);
+		return resizer.getImage();
+	}
+
+	private static void assertPixelsEqual(BufferedImage expected, BufferedImage img, String message) {
+		assertEquals(expected.getWidth(), img.getWidth(), message);
+		assertEquals(expected.getHeight(), img.getHeight(), message);
+		for (int y = 0; y < img.getHeight(); y++) {
+			for (int x = 0; x < img.getWidth(); x++) {
+				int argb = PngTestImages.getArgb(expected, x, y);
+				if (!img.getColorModel().hasAlpha()) {
+					argb |= 0xFF000000;
+				} else if (argb >>> 24 == 0) {
+					// The color of fully transparent pixels is not kept.
+					argb = 0;
+				}
+				assertEquals(argb, img.getRGB(x, y), message + " at " + x + "," + y);
+			}
+		}
+	}
+
+	@Test
+	public void readsHeader() throws IOException {
+		// given
+		byte[] data = PngTestImages.write(PngTestImages.createImage(101, 77, 6, 8, false), true);
+		PngDecoder decoder = new PngDecoder(new ByteArrayInputStream(data));
+
+		// when
+		boolean supported = decoder.readHeader();
+
+		// then
+		assertTrue(supported);
+		assertEquals(101, decoder.getWidth());
+		assertEquals(77, decoder.getHeight());
+		assertTrue(decoder.isInterlaced());
+		assertTrue(decoder.hasAlpha());
+	}
+
+	@Test
+	public void decodesAllFormatsAtFullSize() throws IOException {
+		for (int[] format : FORMATS) {
+			for (boolean interlaced : new boolean[] {false, true}) {
+				// given
+				BufferedImage source = PngTestImages.createImage(37, 29, format[0], format[1], false);
+				byte[] data = PngTestImages.write(source, interlaced);
+				String message = "color type " + format[0] + ", bit depth " + format[1] + ", interlaced " + interlaced;
+				assertEquals(format[1], data[24], message);
+				assertEquals(format[0], data[25], message);
+
+				// when
+				BufferedImage img = decode(data, 37, 29);
+
+				// then
+				assertPixelsEqual(source, img, message);
+			}
+		}
+	}
+
+	@Test
+	public void decodesTransparentPalette() throws IOException {
+		for (int bitDepth : new int[] {1, 2, 4, 8}) {
+			// given
+			BufferedImage source = PngTestImages.createImage(37, 29, 3, bitDepth, true);
+			byte[] data = PngTestImages.write(source, false);
+
+			// when
+			BufferedImage img = decode(data, 37, 29);
+
+			// then
+			assertEquals(BufferedImage.TYPE_INT_ARGB, img.getType());
+			assertPixelsEqual(source, img, "bit depth " + bitDepth);
+		}
+	}
+
+	@Test
+	public void decodesTransparentGray() throws IOException {
+		// given
+		BufferedImage source = PngTestImages.createImage(37, 29, 0, 16, false);
+		int transparent = source.getRaster().getSample(0, 0, 0);
+		byte[] data = PngTestImages.insertChunk(
+				PngTestImages.write(source, false), "tRNS",
+				new byte[] {(byte)(transparent >> 8), (byte)transparent}
+		);
+
+		// when
+		BufferedImage img = decode(data, 37, 29);
+
+		// then
+		for (int y = 0; y < 29; y++) {
+			for (int x = 0; x < 37; x++) {
+				int sample = source.getRaster().getSample(x, y, 0);
+				int gray = sample >> 8;
+				int expected = sample == transparent ? 0 : 0xFF000000 | gray << 16 | gray << 8 | gray;
+				assertEquals(expected, img.getRGB(x, y));
+			}
+		}
+	}
+
+	@Test
+	public void decodesTransparentRgb() throws IOException {
+		// given
+		BufferedImage source = PngTestImages.createImage(37, 29, 2, 8, false);
+		int transparent = PngTestImages.getArgb(source, 0, 0);
+		byte[] data = PngTestImages.insertChunk(
+				PngTestImages.write(source, true), "tRNS",
+				new byte[] {0, (byte)(transparent >> 16), 0, (byte)(transparent >> 8), 0, (byte)transparent}
+		);
+
+		// when
+		BufferedImage img = decode(data, 37, 29);
+
+		// then
+		for (int y = 0; y < 29; y++) {
+			for (int x = 0; x < 37; x++) {
+				int argb = PngTestImages.getArgb(source, x, y);
+				assertEquals(argb == transparent ? 0 : argb, img.getRGB(x, y));
+			}
+		}
+	}
+
+	@Test
+	public void reducedSizeIsSameAsResizingDecodedImage() throws IOException {
+		for (boolean interlaced : new boolean[] {false, true}) {
+			// given
+			BufferedImage source = PngTestImages.createImage(203, 157, 6, 8, false);
+			byte[] data = PngTestImages.write(source, interlaced);
+			StreamingResizer expected = new StreamingResizer(203, 157, 51, 40, true);
+			int[] row = new int[203];
+			for (int y = 0; y < 157; y++) {
+				source.getRGB(0, y, 203, 1, row, 0, 203);
+				expected.addRow(y, row);
+			}
+
+			// when
+			BufferedImage img = decode(data, 51, 40);
+
+			// then
+			BufferedImage expectedImage = expected.getImage();
+			for (int y = 0; y < 40; y++) {
+				for (int x = 0; x < 51; x++) {
+					assertEquals(expectedImage.getRGB(x, y), img.getRGB(x, y), "interlaced " + interlaced);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void notPngCanBeReplayed() throws IOException {
+		// given
+		byte[] data = JpegTestImages.write(JpegTestImages.createPhoto(50, 50, BufferedImage.TYPE_INT_RGB));
+		PngDecoder decoder = new PngDecoder(new ByteArrayInputStream(data));
+
+		// when
+		boolean supported = decoder.readHeader();
+
+		// then
+		assertFalse(supported);
+		InputStream replay = decoder.replay();
+		ByteArrayOutputStream replayed = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+		for (int n; (n = replay.read(buffer)) != -1; ) {
+			replayed.write(buffer, 0, n);
+		}
+		assertTrue(Arrays.equals(data, replayed.toByteArray()));
+		assertNotNull(ImageIO.read(new ByteArrayInputStream(replayed.toByteArray())));
+	}
+
+	@Test
+	public void truncatedDataFails() throws IOException {
+		// given
+		byte[] data = PngTestImages.write(PngTestImages.createImage(101, 77, 2, 8, false), false);
+		byte[] truncated = Arrays.copyOf(data, data.length / 2);
+		PngDecoder decoder = new PngDecoder(new ByteArrayInputStream(truncated));
+		assertTrue(decoder.readHeader());
+		StreamingResizer resizer = new StreamingResizer(101, 77, 101, 77, false);
+
+		// when, then
+		assertThrows(IOException.class, () -> decoder.decode(resizer));
+	}
+
+	@Test
+	public void resizerMustMatchImageSize() throws IOException {
+		// given
+		byte[] data = PngTestImages.write(PngTestImages.createImage(16, 16, 2, 8, false), false);
+		PngDecoder decoder = new PngDecoder(new ByteArrayInputStream(data));
+		StreamingResizer resizer = new StreamingResizer(32, 16, 16, 16, false);
+
+		// when, then
+		assertThrows(IllegalArgumentException.class, () -> decoder.decode(resizer));
+	}
+
+	@Test
+	public void decodesOnlyOnce() throws IOException {
+		// given
+		byte[] data = PngTestImages.write(PngTestImages.createImage(16, 16, 2, 8, false), false);
+		PngDecoder decoder = new PngDecoder(new ByteArrayInputStream(data));
+		decoder.decode(new StreamingResizer(16, 16, 16, 16, false));
+
+		// when, then
+		assertThrows(IllegalStateException.class, () -> decoder.decode(new StreamingResizer(16, 16, 16, 16, false)));
+	}
+}
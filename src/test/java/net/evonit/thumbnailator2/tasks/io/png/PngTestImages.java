@@ -0,0 +1,233 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2022 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.tasks.io.png;
+
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.IndexColorModel;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Creates PNG images of every color type and bit depth for tests, using
+ * the PNG writer of Image I/O.
+ */
+public final class PngTestImages {
+	private PngTestImages() {
+	}
+
+	/**
+	 * Creates an image with random pixels, which Image I/O writes as a PNG
+	 * image of the given color type and bit depth.
+	 *
+	 * @param colorType		The PNG color type.
+	 * @param bitDepth		The PNG bit depth.
+	 * @param alphaPalette	Whether the palette of an indexed-color image
+	 * 						has transparent colors.
+	 */
+	public static BufferedImage createImage(int width, int height, int colorType, int bitDepth, boolean alphaPalette) {
+		BufferedImage img;
+		int dataType = bitDepth == 16 ? DataBuffer.TYPE_USHORT : DataBuffer.TYPE_BYTE;
+		switch (colorType) {
+		case 0:
+			if (bitDepth < 8) {
+				// Image I/O writes palettes of evenly spaced grays as gray images.
+				img = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_BINARY, grayRamp(bitDepth));
+			} else {
+				img = createComponentImage(width, height, ColorSpace.CS_GRAY, false, dataType);
+			}
+			break;
+		case 2:
+			img = createComponentImage(width, height, ColorSpace.CS_sRGB, false, dataType);
+			break;
+		case 3:
+			IndexColorModel palette = randomPalette(bitDepth, alphaPalette);
+			img = bitDepth == 8
+					? new BufferedImage(width, height, BufferedImage.TYPE_BYTE_INDEXED, palette)
+					: new BufferedImage(width, height, BufferedImage.TYPE_BYTE_BINARY, palette);
+			break;
+		case 4:
+			img = createComponentImage(width, height, ColorSpace.CS_GRAY, true, dataType);
+			break;
+		case 6:
+			img = createComponentImage(width, height, ColorSpace.CS_sRGB, true, dataType);
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown color type: " + colorType);
+		}
+
+		// Runs of equal pixels let the writer choose different filters.
+		Random random = new Random(colorType * 100 + bitDepth);
+		WritableRaster raster = img.getRaster();
+		int maxSample = (1 << bitDepth) - 1;
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				for (int b = 0; b < raster.getNumBands(); b++) {
+					int sample = random.nextInt(4) == 0 && x > 0
+							? raster.getSample(x - 1, y, b)
+							: random.nextInt(maxSample + 1);
+					raster.setSample(x, y, b, sample);
+				}
+			}
+		}
+		return img;
+	}
+
+	private static BufferedImage createComponentImage(int width, int height, int colorSpace, boolean alpha, int dataType) {
+		ColorModel cm = new ComponentColorModel(
+				ColorSpace.getInstance(colorSpace), alpha, false,
+				alpha ? Transparency.TRANSLUCENT : Transparency.OPAQUE, dataType
+		);
+		return new BufferedImage(cm, cm.createCompatibleWritableRaster(width, height), false, null);
+	}
+
+	private static IndexColorModel grayRamp(int bitDepth) {
+		int size = 1 << bitDepth;
+		byte[] gray = new byte[size];
+		for (int i = 0; i < size; i++) {
+			gray[i] = (byte)(i * 255 / (size - 1));
+		}
+		return new IndexColorModel(bitDepth, size, gray, gray, gray);
+	}
+
+	private static IndexColorModel randomPalette(int bitDepth, boolean alpha) {
+		int size = 1 << bitDepth;
+		Random random = new Random(size);
+		byte[] r = new byte[size];
+		byte[] g = new byte[size];
+		byte[] b = new byte[size];
+		byte[] a = new byte[size];
+		random.nextBytes(r);
+		random.nextBytes(g);
+		random.nextBytes(b);
+		random.nextBytes(a);
+		a[0] = 0;
+		return alpha
+				? new IndexColorModel(bitDepth, size, r, g, b, a)
+				: new IndexColorModel(bitDepth, size, r, g, b);
+	}
+
+	/**
+	 * Returns the color of a pixel as a non-premultiplied ARGB value, with
+	 * samples of 16 bits reduced to 8 bits.
+	 */
+	public static int getArgb(BufferedImage img, int x, int y) {
+		ColorModel cm = img.getColorModel();
+		WritableRaster raster = img.getRaster();
+		if (cm instanceof IndexColorModel) {
+			return ((IndexColorModel)cm).getRGB(raster.getSample(x, y, 0));
+		}
+
+		int shift = raster.getSampleModel().getSampleSize(0) - 8;
+		int[] samples = new int[raster.getNumBands()];
+		for (int b = 0; b < samples.length; b++) {
+			samples[b] = raster.getSample(x, y, b) >> shift;
+		}
+		switch (samples.length) {
+		case 1:
+			return 0xFF000000 | samples[0] << 16 | samples[0] << 8 | samples[0];
+		case 2:
+			return samples[1] << 24 | samples[0] << 16 | samples[0] << 8 | samples[0];
+		case 3:
+			return 0xFF000000 | samples[0] << 16 | samples[1] << 8 | samples[2];
+		default:
+			return samples[3] << 24 | samples[0] << 16 | samples[1] << 8 | samples[2];
+		}
+	}
+
+	/**
+	 * Encodes an image as a PNG image.
+	 *
+	 * @param img			The image to encode.
+	 * @param interlaced	Whether to encode an Adam7 interlaced image.
+	 */
+	public static byte[] write(BufferedImage img, boolean interlaced) throws IOException {
+		ImageWriter writer = ImageIO.getImageWritersByFormatName("png").next();
+		try {
+			ImageWriteParam param = writer.getDefaultWriteParam();
+			param.setProgressiveMode(interlaced ? ImageWriteParam.MODE_DEFAULT : ImageWriteParam.MODE_DISABLED);
+
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			ImageOutputStream ios = ImageIO.createImageOutputStream(baos);
+			writer.setOutput(ios);
+			writer.write(null, new IIOImage(img, null, null), param);
+			ios.close();
+			return baos.toByteArray();
+
+		} finally {
+			writer.dispose();
+		}
+	}
+
+	/**
+	 * Inserts a chunk before the first {@code IDAT} chunk of a PNG image.
+	 */
+	public static byte[] insertChunk(byte[] png, String type, byte[] data) {
+		int offset = 8;
+		while (!new String(png, offset + 4, 4, StandardCharsets.US_ASCII).equals("IDAT")) {
+			int length = (png[offset] & 0xFF) << 24 | (png[offset + 1] & 0xFF) << 16 |
+					(png[offset + 2] & 0xFF) << 8 | (png[offset + 3] & 0xFF);
+			offset += 12 + length;
+		}
+
+		ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+		chunk.write(data.length >>> 24);
+		chunk.write(data.length >>> 16);
+		chunk.write(data.length >>> 8);
+		chunk.write(data.length);
+		byte[] typeAndData = new byte[4 + data.length];
+		System.arraycopy(type.getBytes(StandardCharsets.US_ASCII), 0, typeAndData, 0, 4);
+		System.arraycopy(data, 0, typeAndData, 4, data.length);
+		chunk.write(typeAndData, 0, typeAndData.length);
+		CRC32 crc = new CRC32();
+		crc.update(typeAndData);
+		long value = crc.getValue();
+		chunk.write((int)(value >>> 24));
+		chunk.write((int)(value >>> 16));
+		chunk.write((int)(value >>> 8));
+		chunk.write((int)value);
+
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		result.write(png, 0, offset);
+		byte[] chunkBytes = chunk.toByteArray();
+		result.write(chunkBytes, 0, chunkBytes.length);
+		result.write(png, offset, png.length - offset);
+		return result.toByteArray();
+	}
+}
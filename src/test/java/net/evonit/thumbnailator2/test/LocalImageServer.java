@@ -0,0 +1,110 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2022 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * An HTTP server on the loopback interface, which stands in for a remote
+ * origin of images in tests.
+ */
+public final class LocalImageServer implements AutoCloseable {
+	private final HttpServer server;
+	private final ExecutorService executor;
+
+	/**
+	 * Starts a server on a free port, which handles every request with the
+	 * given handler on a thread of its own.
+	 *
+	 * @param handler		The handler of the requests.
+	 * @throws IOException	If the server could not be started.
+	 */
+	public LocalImageServer(HttpHandler handler) throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.createContext("/", handler);
+		executor = Executors.newCachedThreadPool();
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	/**
+	 * Returns a handler which responds with the given data.
+	 *
+	 * @param body			The data of the response.
+	 * @param contentType	The content type of the response.
+	 * @return				The handler.
+	 */
+	public static HttpHandler serving(byte[] body, String contentType) {
+		return exchange -> respond(exchange, 200, body, contentType);
+	}
+
+	/**
+	 * Sends a response and closes the exchange.
+	 *
+	 * @param exchange		The exchange.
+	 * @param status		The status code.
+	 * @param body			The data of the response.
+	 * @param contentType	The content type of the response.
+	 * @throws IOException	If the response could not be sent.
+	 */
+	public static void respond(HttpExchange exchange, int status, byte[] body, String contentType) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+		try (OutputStream os = exchange.getResponseBody()) {
+			os.write(body);
+		}
+	}
+
+	/**
+	 * Returns the URL of the given path on this server.
+	 *
+	 * @param path			The path, starting with a {@code /}.
+	 * @return				The URL.
+	 */
+	public URL url(String path) {
+		try {
+			return new URL("http", server.getAddress().getHostString(), server.getAddress().getPort(), path);
+		} catch (MalformedURLException e) {
+			throw new IllegalArgumentException(e);
+		}
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2022 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.evonit.thumbnailator2.util.BufferedImages;
+
+/**
+ * Creates and paints images which are shared by several tests.
+ */
+public final class TestImages {
+	private TestImages() {
+	}
+
+	/**
+	 * Paints the left half of an image red and the right half blue.
+	 * <p>
+	 * The image is painted through {@link BufferedImages#paint}, so images
+	 * held in strips are painted as well.
+	 *
+	 * @param img		The image to paint onto.
+	 */
+	public static void fillHalves(BufferedImage img) {
+		final int half = img.getWidth() / 2;
+		final int height = img.getHeight();
+		final int width = img.getWidth();
+		BufferedImages.paint(img, new BufferedImages.Painter() {
+			public void paint(Graphics2D g) {
+				g.setColor(Color.red);
+				g.fillRect(0, 0, half, height);
+				g.setColor(Color.blue);
+				g.fillRect(half, 0, width - half, height);
+			}
+		});
+	}
+
+	/**
+	 * Creates blank RGB images which are 400 pixels high, and whose widths
+	 * are 100, 200, 300 and so on, so that each image is distinguishable by
+	 * its size.
+	 *
+	 * @param count		The number of images to create.
+	 * @return			The images.
+	 */
+	public static List<BufferedImage> images(int count) {
+		List<BufferedImage> images = new ArrayList<BufferedImage>();
+		for (int i = 0; i < count; i++) {
+			images.add(new BufferedImage(100 * (i + 1), 400, BufferedImage.TYPE_INT_RGB));
+		}
+		return images;
+	}
+}
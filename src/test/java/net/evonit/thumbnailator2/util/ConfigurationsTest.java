@@ -7,12 +7,23 @@ import org.junit.jupiter.api.extension.TestInstancePostProcessor;
 
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.util.EnumSet;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class ConfigurationsTest {
 
+    /**
+     * The configurations which are numbers, rather than booleans.
+     */
+    private static final EnumSet<Configurations> NUMBERS = EnumSet.of(
+            Configurations.MAX_PIXELS,
+            Configurations.MAX_DIMENSION,
+            Configurations.MAX_FRAMES
+    );
+
     @TestInstance(TestInstance.Lifecycle.PER_CLASS)
     public static class Base {
         @BeforeEach
@@ -31,7 +42,7 @@ public class ConfigurationsTest {
     public class AllTruePropertiesTest extends Base {
         @Test
         public void test() {
-            for (Configurations config : Configurations.values()) {
+            for (Configurations config : EnumSet.complementOf(NUMBERS)) {
                 assertTrue(config.getBoolean());
             }
         }
@@ -42,12 +53,32 @@ public class ConfigurationsTest {
     public class AllFalsePropertiesTest extends Base {
         @Test
         public void test() {
-            for (Configurations config : Configurations.values()) {
+            for (Configurations config : EnumSet.complementOf(NUMBERS)) {
                 assertFalse(config.getBoolean());
             }
         }
     }
 
+    @Nested
+    @ExtendWith(LimitsPropertiesTestExtension.class)
+    public class LimitsPropertiesTest extends Base {
+        @Test
+        public void numbersAreRead() {
+            assertEquals(1000000L, Configurations.MAX_PIXELS.getLong(0));
+            assertEquals(4000L, Configurations.MAX_DIMENSION.getLong(0));
+        }
+
+        @Test
+        public void invalidNumberReturnsDefault() {
+            assertEquals(-1L, Configurations.MAX_FRAMES.getLong(-1));
+        }
+
+        @Test
+        public void missingNumberReturnsDefault() {
+            assertEquals(-1L, Configurations.PASS_THROUGH.getLong(-1));
+        }
+    }
+
     public static class PropertiesFileRedirectingClassLoader extends URLClassLoader {
         private final String resourceForPropertiesFile;
 
@@ -77,6 +108,17 @@ class AllTruePropertiesTestExtension implements TestInstancePostProcessor {
     }
 }
 
+class LimitsPropertiesTestExtension implements TestInstancePostProcessor {
+    @Override
+    public void postProcessTestInstance(Object testInstance, ExtensionContext context) {
+        Thread.currentThread().setContextClassLoader(getCustomClassLoader());
+    }
+
+    protected ClassLoader getCustomClassLoader() {
+        return new ConfigurationsTest.PropertiesFileRedirectingClassLoader("Configurations/limits.txt");
+    }
+}
+
 class AllFalsePropertiesTestExtension implements TestInstancePostProcessor {
     @Override
     public void postProcessTestInstance(Object testInstance, ExtensionContext context) {
@@ -30,9 +30,12 @@ import javax.imageio.ImageIO;
 import javax.imageio.ImageReader;
 
 import net.evonit.thumbnailator2.TestUtils;
+import net.evonit.thumbnailator2.tasks.io.jpeg.JpegDecoder;
 import org.junit.jupiter.api.Test;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 
 /**
  * Tests the {@link ExifUtils} class to check that the Exif Orientation
@@ -166,4 +169,35 @@ public class ExifUtilsTest {
 		// then
 		assertEquals(Orientation.typeOf(8), orientation);
 	}
+	
+	@Test
+	public void resetOrientation() throws Exception {
+		// given
+		InputStream is = TestUtils.getResourceStream("Exif/orientation_6.jpg");
+		JpegDecoder decoder = new JpegDecoder(is);
+		decoder.readHeader();
+		is.close();
+		byte[] exifData = decoder.getExifData();
+		
+		// when
+		byte[] result = ExifUtils.resetOrientation(exifData);
+		
+		// then
+		assertEquals(Orientation.TOP_LEFT, ExifUtils.getOrientationFromExif(result));
+		assertEquals(Orientation.typeOf(6), ExifUtils.getOrientationFromExif(exifData));
+		assertEquals(exifData.length, result.length);
+	}
+	
+	@Test
+	public void resetOrientationLeavesOtherDataUnchanged() throws Exception {
+		// given
+		byte[] data = "XMP data".getBytes("US-ASCII");
+		
+		// when
+		byte[] result = ExifUtils.resetOrientation(data);
+		
+		// then
+		assertNotSame(data, result);
+		assertArrayEquals(data, result);
+	}
 }
@@ -0,0 +1,144 @@
+/*
+ * Thumbnailator - a thumbnail generation library
+ *
+ * Copyright (c) 2008-2022 Chris Kroells
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.evonit.thumbnailator2.util.raster;
+
+import java.awt.image.DataBuffer;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ByteBufferDataBufferTest {
+
+	/**
+	 * A buffer which counts how often its memory is released.
+	 */
+	private static class CountingBuffer extends ByteBufferDataBuffer {
+		final AtomicInteger releases = new AtomicInteger();
+
+		CountingBuffer(int size) {
+			super(DataBuffer.TYPE_INT, size, new ByteBuffer[] {ByteBuffer.allocate(size * 4)}, 1 << 20);
+		}
+
+		@Override
+		protected void release(ByteBuffer[] chunks) {
+			releases.incrementAndGet();
+		}
+	}
+
+	@Test
+	public void elementsAreStored() {
+		// given
+		ByteBufferDataBuffer buffer = new CountingBuffer(16);
+
+		// when
+		buffer.setElem(0, 5, 0x12345678);
+
+		// then
+		assertEquals(0x12345678, buffer.getElem(0, 5));
+		assertEquals(0, buffer.getElem(0, 4));
+	}
+
+	@Test
+	public void accessAfterFreeThrowsNullPointerException() {
+		// given
+		CountingBuffer buffer = new CountingBuffer(16);
+
+		// when
+		buffer.free();
+		buffer.free();
+
+		// then
+		assertTrue(buffer.isFreed());
+		assertEquals(1, buffer.releases.get());
+		assertThrows(NullPointerException.class, () -> buffer.getElem(0, 0));
+		assertThrows(NullPointerException.class, () -> buffer.setElem(0, 0, 1));
+	}
+
+	@Test
+	public void freeDuringLeaseReleasesAfterLeaseEnds() {
+		// given
+		CountingBuffer buffer = new CountingBuffer(16);
+		assertTrue(buffer.lease());
+
+		// when
+		buffer.free();
+
+		// then
+		assertTrue(buffer.isFreed());
+		assertEquals(0, buffer.releases.get());
+		assertFalse(buffer.lease());
+		buffer.setElem(0, 0, 1);
+		assertEquals(1, buffer.getElem(0, 0));
+
+		buffer.endLease();
+		assertEquals(1, buffer.releases.get());
+		assertThrows(NullPointerException.class, () -> buffer.getElem(0, 0));
+	}
+
+	@Test
+	public void freeDuringConcurrentLeasesReleasesOnce() throws InterruptedException {
+		// given
+		final CountingBuffer buffer = new CountingBuffer(1024);
+		final AtomicReference<Throwable> unexpected = new AtomicReference<Throwable>();
+		final AtomicBoolean done = new AtomicBoolean();
+		final CountDownLatch started = new CountDownLatch(4);
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread(() -> {
+				assertTrue(buffer.lease());
+				started.countDown();
+				try {
+					for (int i = 0; !done.get(); i = (i + 1) % 1024) {
+						buffer.setElem(0, i, buffer.getElem(0, i) + 1);
+					}
+				} catch (Throwable e) {
+					unexpected.set(e);
+				} finally {
+					buffer.endLease();
+				}
+			});
+			threads[t].start();
+		}
+		started.await();
+
+		// when
+		buffer.free();
+		assertEquals(0, buffer.releases.get());
+		done.set(true);
+		for (Thread thread : threads) {
+			thread.join(10000);
+		}
+
+		// then
+		assertNull(unexpected.get());
+		assertEquals(1, buffer.releases.get());
+	}
+}